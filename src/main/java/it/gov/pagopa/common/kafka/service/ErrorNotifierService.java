@@ -2,7 +2,9 @@ package it.gov.pagopa.common.kafka.service;
 
 import it.gov.pagopa.idpay.transactions.config.KafkaConfiguration;
 import org.springframework.messaging.Message;
+import reactor.core.publisher.Mono;
 
 public interface ErrorNotifierService {
-    boolean notify(KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO, Message<?> message, String description, boolean retryable, boolean resendApplication, Throwable exception);
+    /** It will emit true when the error notification has been published */
+    Mono<Boolean> notify(KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO, Message<?> message, String description, boolean retryable, boolean resendApplication, Throwable exception);
 }
\ No newline at end of file
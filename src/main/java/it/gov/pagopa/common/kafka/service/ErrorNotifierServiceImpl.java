@@ -2,6 +2,7 @@ package it.gov.pagopa.common.kafka.service;
 
 import it.gov.pagopa.common.kafka.utils.KafkaConstants;
 import it.gov.pagopa.idpay.transactions.config.KafkaConfiguration;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,34 +10,190 @@ import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * It will enqueue the error notifications into a bounded queue, publishing them in batches through a dedicated thread.<br />
+ * Inside each batch, the notifications having the same stack trace are fingerprinted: the stack trace is sent just once, together with its occurrences, while the others will carry just its fingerprint.<br />
+ * {@link #notify} will emit when its notification has been published, without blocking the caller, thus the source record can be committed just after it.<br />
+ * If the queue is full, or the notification is not published within the configured timeout, {@link #notify} will emit false, thus the caller could retry it later.
+ */
 @Service
 @Slf4j
 public class ErrorNotifierServiceImpl implements ErrorNotifierService {
 
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
     private final ErrorPublisher errorPublisher;
     private final String applicationName;
+    private final int maxBatchSize;
+    private final long maxWaitMillis;
+    private final long publishTimeoutMillis;
+
+    private final BlockingQueue<ErrorNotification> queue;
+    private final AtomicLong unpublishedNotifications = new AtomicLong();
+    private final Thread publisherThread;
+    private volatile boolean running = true;
+
+    record ErrorNotification(KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO, Message<?> message, String description, boolean retryable, boolean resendApplication, Throwable exception,
+                             CompletableFuture<Boolean> published) {}
 
     public ErrorNotifierServiceImpl(
             @Value("${spring.application.name}") String applicationName,
+            @Value("${app.kafka.error-notifier.queue-capacity}") int queueCapacity,
+            @Value("${app.kafka.error-notifier.max-batch-size}") int maxBatchSize,
+            @Value("${app.kafka.error-notifier.max-wait-millis}") long maxWaitMillis,
+            @Value("${app.kafka.error-notifier.publish-timeout-millis}") long publishTimeoutMillis,
 
             ErrorPublisher errorPublisher) {
         this.errorPublisher = errorPublisher;
         this.applicationName = applicationName;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.publishTimeoutMillis = publishTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.publisherThread = Thread.ofPlatform()
+                .name("error-notifier")
+                .daemon()
+                .start(this::publishLoop);
     }
 
     @Override
-    public boolean notify(KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO, Message<?> message, String description, boolean retryable, boolean resendApplication, Throwable exception) {
-        log.info("[ERROR_NOTIFIER] notifying error: {}", description, exception);
+    public Mono<Boolean> notify(KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO, Message<?> message, String description, boolean retryable, boolean resendApplication, Throwable exception) {
+        return Mono.defer(() -> {
+                    ErrorNotification notification = new ErrorNotification(baseKafkaInfoDTO, message, description, retryable, resendApplication, exception, new CompletableFuture<>());
+                    if (!running || !queue.offer(notification)) {
+                        return Mono.just(false);
+                    }
+                    return Mono.fromFuture(notification.published(), true)
+                            .timeout(Duration.ofMillis(publishTimeoutMillis), Mono.just(false));
+                })
+                .doOnNext(published -> {
+                    if (!published) {
+                        log.error("[ERROR_NOTIFIER] Cannot publish error {} (total unpublished: {})", description, unpublishedNotifications.incrementAndGet());
+                    }
+                });
+    }
+
+    /** The number of notifications not published, since the queue was full or the timeout expired */
+    public long getUnpublishedNotifications() {
+        return unpublishedNotifications.get();
+    }
+
+    /** The number of notifications waiting to be published */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        publisherThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        if (!queue.isEmpty()) {
+            log.error("[ERROR_NOTIFIER] Shutdown before publishing {} error notifications", queue.size());
+            List<ErrorNotification> unpublished = new ArrayList<>();
+            queue.drainTo(unpublished);
+            unpublished.forEach(n -> n.published().complete(false));
+        }
+    }
+
+    private void publishLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                List<ErrorNotification> batch = pollBatch();
+                if (!batch.isEmpty()) {
+                    publishBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<ErrorNotification> pollBatch() throws InterruptedException {
+        List<ErrorNotification> batch = new ArrayList<>(maxBatchSize);
+        ErrorNotification first = queue.poll(maxWaitMillis, TimeUnit.MILLISECONDS);
+        if (first != null) {
+            batch.add(first);
+            long deadline = System.currentTimeMillis() + maxWaitMillis;
+            while (batch.size() < maxBatchSize) {
+                long remaining = deadline - System.currentTimeMillis();
+                ErrorNotification next = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : queue.poll();
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        }
+        return batch;
+    }
+
+    private void publishBatch(List<ErrorNotification> batch) {
+        try {
+            publishFingerprintedBatch(batch);
+        } catch (Exception e) {
+            log.error("[ERROR_NOTIFIER] Something gone wrong while publishing error notifications", e);
+        } finally {
+            // notifications not published due to an unexpected error
+            batch.forEach(n -> n.published().complete(false));
+        }
+    }
+
+    private void publishFingerprintedBatch(List<ErrorNotification> batch) {
+        Map<String, List<ErrorNotification>> stackTrace2Notifications = new LinkedHashMap<>();
+        for (ErrorNotification notification : batch) {
+            stackTrace2Notifications.computeIfAbsent(ExceptionUtils.getStackTrace(notification.exception()), s -> new ArrayList<>())
+                    .add(notification);
+        }
+
+        stackTrace2Notifications.forEach((stackTrace, notifications) -> {
+            String fingerprint = UUID.nameUUIDFromBytes(stackTrace.getBytes(StandardCharsets.UTF_8)).toString();
+            log.info("[ERROR_NOTIFIER] notifying error: {} (fingerprint {}, {} occurrences)", notifications.getFirst().description(), fingerprint, notifications.size(), notifications.getFirst().exception());
+
+            for (int i = 0; i < notifications.size(); i++) {
+                MessageBuilder<?> errorMessage = buildErrorMessage(notifications.get(i))
+                        .setHeader(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE_FINGERPRINT, fingerprint);
+                if (i == 0) {
+                    errorMessage
+                            .setHeader(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE, stackTrace)
+                            .setHeader(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE_OCCURRENCES, notifications.size());
+                }
+
+                boolean published = errorPublisher.send(errorMessage.build());
+                if (!published) {
+                    log.error("[ERROR_NOTIFIER] Something gone wrong while notifying error");
+                }
+                notifications.get(i).published().complete(published);
+            }
+        });
+    }
+
+    private MessageBuilder<?> buildErrorMessage(ErrorNotification notification) {
+        KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO = notification.baseKafkaInfoDTO();
+        Message<?> message = notification.message();
+        Throwable exception = notification.exception();
+
         final MessageBuilder<?> errorMessage = MessageBuilder.fromMessage(message)
                 .setHeader(KafkaConstants.ERROR_MSG_HEADER_SRC_TYPE, baseKafkaInfoDTO.getType())
                 .setHeader(KafkaConstants.ERROR_MSG_HEADER_SRC_SERVER, baseKafkaInfoDTO.getBrokers())
                 .setHeader(KafkaConstants.ERROR_MSG_HEADER_SRC_TOPIC, baseKafkaInfoDTO.getDestination())
-                .setHeader(KafkaConstants.ERROR_MSG_HEADER_DESCRIPTION, description)
-                .setHeader(KafkaConstants.ERROR_MSG_HEADER_RETRYABLE, retryable)
-                .setHeader(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE, ExceptionUtils.getStackTrace(exception));
+                .setHeader(KafkaConstants.ERROR_MSG_HEADER_DESCRIPTION, notification.description())
+                .setHeader(KafkaConstants.ERROR_MSG_HEADER_RETRYABLE, notification.retryable());
 
         addExceptionInfo(errorMessage, "rootCause", ExceptionUtils.getRootCause(exception));
         addExceptionInfo(errorMessage, "cause", exception.getCause());
@@ -46,17 +203,11 @@ public class ErrorNotifierServiceImpl implements ErrorNotifierService {
             errorMessage.setHeader(KafkaHeaders.KEY, new String(receivedKey, StandardCharsets.UTF_8));
         }
 
-        if (resendApplication){
+        if (notification.resendApplication()){
             errorMessage.setHeader(KafkaConstants.ERROR_MSG_HEADER_APPLICATION_NAME, applicationName);
             errorMessage.setHeader(KafkaConstants.ERROR_MSG_HEADER_GROUP, baseKafkaInfoDTO.getGroup());
         }
-
-        if (!errorPublisher.send(errorMessage.build())) {
-            log.error("[ERROR_NOTIFIER] Something gone wrong while notifying error");
-            return false;
-        } else {
-            return true;
-        }
+        return errorMessage;
     }
 
     private void addExceptionInfo(MessageBuilder<?> errorMessage, String exceptionHeaderPrefix, Throwable rootCause) {
@@ -0,0 +1,76 @@
+package it.gov.pagopa.common.kafka.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The formats supported for the payload of a Kafka message, selected through its {@link MessageHeaders#CONTENT_TYPE} header.<br />
+ * The binary formats are the Jackson ones, thus the same mapping configuration used for JSON applies to them.
+ * Messages without a content type, or with an unknown one, are considered JSON.
+ */
+public enum KafkaPayloadFormat {
+    JSON("application/json", null),
+    CBOR("application/cbor", new CBORFactory()),
+    SMILE("application/x-jackson-smile", new SmileFactory());
+
+    private final String contentType;
+    private final MimeType mimeType;
+    private final JsonFactory factory;
+
+    KafkaPayloadFormat(String contentType, JsonFactory factory) {
+        this.contentType = contentType;
+        this.mimeType = MimeType.valueOf(contentType);
+        this.factory = factory;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /** It will return the given JSON reader adapted in order to read this format */
+    public ObjectReader adapt(ObjectReader jsonReader) {
+        return factory != null ? jsonReader.with(factory) : jsonReader;
+    }
+
+    /** It will return a copy of the given JSON mapper adapted in order to read and write this format */
+    public ObjectMapper adapt(ObjectMapper jsonMapper) {
+        return factory != null ? jsonMapper.copyWith(factory) : jsonMapper;
+    }
+
+    /** It will return the format of the given message, looking at its {@link MessageHeaders#CONTENT_TYPE} header */
+    public static KafkaPayloadFormat fromMessage(Message<?> message) {
+        return fromContentType(message.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+    }
+
+    /** It will return the format of the given content type, which could be a {@link MimeType}, a String or its bytes */
+    public static KafkaPayloadFormat fromContentType(Object contentType) {
+        MimeType mimeType;
+        try {
+            mimeType = switch (contentType) {
+                case MimeType m -> m;
+                case String s -> MimeType.valueOf(s);
+                case byte[] b -> MimeType.valueOf(new String(b, StandardCharsets.UTF_8));
+                case null, default -> null;
+            };
+        } catch (IllegalArgumentException e) {
+            mimeType = null;
+        }
+
+        if (mimeType != null) {
+            for (KafkaPayloadFormat format : values()) {
+                if (format.mimeType.equalsTypeAndSubtype(mimeType)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+}
@@ -3,22 +3,27 @@ package it.gov.pagopa.common.reactive.kafka.consumer;
 import com.fasterxml.jackson.databind.ObjectReader;
 import it.gov.pagopa.common.reactive.kafka.exception.UncommittableError;
 import it.gov.pagopa.common.kafka.utils.KafkaConstants;
+import it.gov.pagopa.common.kafka.utils.KafkaPayloadFormat;
+import it.gov.pagopa.common.reactive.mongo.retry.MongoRequestRateTooLargeRetryer;
+import it.gov.pagopa.common.reactive.utils.AdaptiveConcurrencyLimiter;
 import it.gov.pagopa.common.reactive.utils.PerformanceLogger;
 import it.gov.pagopa.common.utils.CommonUtilities;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.tuple.Pair;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.context.Context;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
-import java.util.stream.Collector;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -34,31 +39,27 @@ import java.util.stream.Collectors;
 @Slf4j
 public abstract class BaseKafkaConsumer<T, R> {
 
-    /** Key used inside the {@link Context} to store the startTime */
-    protected static final String CONTEXT_KEY_START_TIME = "START_TIME";
-    /** Key used inside the {@link Context} to store a msg identifier used for logging purpose */
-    protected static final String CONTEXT_KEY_MSG_ID = "MSG_ID";
+    private static final long DRAIN_POLL_MILLIS = 10;
+    private static final long SPILL_DRAIN_POLL_MILLIS = 1000;
+    private static final Duration SPILL_FULL_RETRY_DELAY = Duration.ofMillis(100);
 
     private final String applicationName;
-
-    private static final Collector<KafkaAcknowledgeResult<?>, ?, Map<Integer, Pair<Long, KafkaAcknowledgeResult<?>>>> kafkaAcknowledgeResultMapCollector =
-            Collectors.groupingBy(KafkaAcknowledgeResult::partition
-                    , Collectors.teeing(
-                            Collectors.minBy(Comparator.comparing(KafkaAcknowledgeResult::offset)),
-                            Collectors.maxBy(Comparator.comparing(KafkaAcknowledgeResult::offset)),
-                            (min, max) -> Pair.of(
-                                    min.map(KafkaAcknowledgeResult::offset).orElse(null),
-                                    max.orElse(null))
-                    ));
+    private volatile KafkaOffsetWatermarkTracker watermarkTracker;
+    private final Map<KafkaPayloadFormat, ObjectReader> format2ObjectReader = new ConcurrentHashMap<>();
 
     protected BaseKafkaConsumer(String applicationName) {
         this.applicationName = applicationName;
     }
 
+    /** The name of the current application, used to recognize the retries requested by other applications */
+    protected String getApplicationName() {
+        return applicationName;
+    }
+
     record KafkaAcknowledgeResult<T> (Acknowledgment ack, Integer partition, Long offset, T result){
         public KafkaAcknowledgeResult(Message<?> message, T result) {
             this(
-                    (Acknowledgment) CommonUtilities.getHeaderValue(message, KafkaHeaders.ACKNOWLEDGMENT),
+                    getMessageAcknowledgment(message),
                     getMessagePartitionId(message),
                     getMessageOffset(message),
                     result
@@ -74,23 +75,70 @@ public abstract class BaseKafkaConsumer<T, R> {
         return (Long) CommonUtilities.getHeaderValue(message, KafkaHeaders.OFFSET);
     }
 
-    /** It will ask the superclass to handle the messages, then sequentially it will acknowledge them */
-    public final void execute(Flux<Message<String>> messagesFlux) {
-        Flux<List<R>> processUntilCommits =
-                messagesFlux
-                        .flatMapSequential(this::executeAcknowledgeAware)
+    private static String getMessageTopic(Message<?> message) {
+        return (String) CommonUtilities.getHeaderValue(message, KafkaHeaders.RECEIVED_TOPIC);
+    }
+
+    private static Acknowledgment getMessageAcknowledgment(Message<?> message) {
+        return (Acknowledgment) CommonUtilities.getHeaderValue(message, KafkaHeaders.ACKNOWLEDGMENT);
+    }
+
+    /** The context of the message under processing, holding just fixed fields in order to not retain any copy of the payload */
+    public record ProcessingContext(long startTime, Integer partition, Long offset) {
+        public ProcessingContext(Message<?> message) {
+            this(System.currentTimeMillis(), getMessagePartitionId(message), getMessageOffset(message));
+        }
+    }
+
+    /**
+     * It will ask the superclass to handle the messages, then it will acknowledge them.<br />
+     * If {@link #getProcessingLanes()} is greater than 0, messages will be processed concurrently on that number of lanes, preserving the order of the messages having the same {@link #getOrderingKey(Message)};
+     * otherwise they will be processed concurrently, thus a message under retry will not hold back the other ones, neither of its partition.<br />
+     * In both cases, only the contiguous processed offsets of each partition will be committed.<br />
+     * If {@link #getSpillJournals()} is configured, it will start to drain the messages spilled into them.
+     */
+    public final void execute(Flux<Message<byte[]>> messagesFlux) {
+        KafkaOffsetWatermarkTracker watermarkTracker = new KafkaOffsetWatermarkTracker();
+        this.watermarkTracker = watermarkTracker;
+        KafkaConsumerMetrics metrics = getConsumerMetrics();
+
+        KafkaPartitionSpillJournals spillJournals = getSpillJournals();
+        if (spillJournals != null) {
+            spillJournals.start(getFlowName(), this::processSpilled, this::notifySpillDiscarded, SPILL_DRAIN_POLL_MILLIS);
+        }
+
+        Flux<TrackedMessage> trackedMessagesFlux = messagesFlux
+                .doOnNext(message -> {
+                    if (metrics != null) {
+                        metrics.onReceived(getMessageTopic(message), getMessagePartitionId(message), getMessageOffset(message));
+                    }
+                })
+                .map(message -> new TrackedMessage(message, watermarkTracker.register(getMessageTopic(message), getMessagePartitionId(message), getMessageOffset(message), getMessageAcknowledgment(message))));
+
+        Flux<KafkaAcknowledgeResult<R>> processedFlux;
+        int lanes = getProcessingLanes();
+        if (lanes > 0) {
+            processedFlux = trackedMessagesFlux
+                    .groupBy(m -> Math.floorMod(Objects.hashCode(getOrderingKey(m.message())), lanes))
+                    .flatMap(lane -> lane.concatMap(this::executeTracked), lanes);
+        } else {
+            processedFlux = trackedMessagesFlux
+                    .flatMap(this::executeTracked);
+        }
 
+        Flux<List<R>> processUntilCommits =
+                processedFlux
                         .buffer(getCommitDelay())
                         .map(p -> {
-                                    Map<Integer, Pair<Long, KafkaAcknowledgeResult<?>>> partition2Offsets = p.stream()
-                                            .collect(kafkaAcknowledgeResultMapCollector);
+                                    Map<Integer, KafkaOffsetWatermarkTracker.Watermark> partition2Watermarks = watermarkTracker.pollWatermarks();
 
-                                    log.info("[KAFKA_COMMIT][{}] Committing {} messages: {}", getFlowName(), p.size(),
-                                            partition2Offsets.entrySet().stream()
-                                                    .map(e->"partition %d: %d - %d".formatted(e.getKey(),e.getValue().getKey(), e.getValue().getValue().offset()))
+                                    log.info("[KAFKA_COMMIT][{}] Committing {} messages: {}", getFlowName(),
+                                            partition2Watermarks.values().stream().mapToInt(KafkaOffsetWatermarkTracker.Watermark::count).sum(),
+                                            partition2Watermarks.entrySet().stream()
+                                                    .map(e->"partition %d: %d - %d".formatted(e.getKey(),e.getValue().fromOffset(), e.getValue().toOffset()))
                                                     .collect(Collectors.joining(";")));
 
-                                    partition2Offsets.forEach((partition, offsets) -> Optional.ofNullable(offsets.getValue().ack()).ifPresent(Acknowledgment::acknowledge));
+                                    partition2Watermarks.forEach((partition, watermark) -> commit(partition, watermark, metrics));
 
                                     return p.stream()
                                             .map(KafkaAcknowledgeResult::result)
@@ -102,13 +150,157 @@ public abstract class BaseKafkaConsumer<T, R> {
         subscribeAfterCommits(processUntilCommits);
     }
 
+    private static void commit(Integer partition, KafkaOffsetWatermarkTracker.Watermark watermark, KafkaConsumerMetrics metrics) {
+        long startNanos = System.nanoTime();
+        Optional.ofNullable(watermark.ack()).ifPresent(Acknowledgment::acknowledge);
+        if (metrics != null) {
+            metrics.recordStage(KafkaConsumerMetrics.Stage.COMMIT, startNanos);
+            metrics.onCommitted(watermark.topic(), partition, watermark.toOffset());
+        }
+    }
+
+    record TrackedMessage(Message<byte[]> message, KafkaOffsetWatermarkTracker.TrackedRecord trackedRecord) {}
+
+    private Mono<KafkaAcknowledgeResult<R>> executeTracked(TrackedMessage trackedMessage) {
+        AdaptiveConcurrencyLimiter limiter = getConcurrencyLimiter();
+        Mono<KafkaAcknowledgeResult<R>> execution;
+        if (trackedMessage.trackedRecord().isDiscarded()) {
+            log.debug("[{}] Discarding message of revoked partition (partition: {}, offset: {})", getFlowName(), trackedMessage.trackedRecord().getPartition(), trackedMessage.trackedRecord().getOffset());
+            execution = Mono.empty();
+        } else if (limiter != null) {
+            execution = limiter.acquire()
+                    .then(Mono.defer(() -> {
+                        long startTime = System.currentTimeMillis();
+                        return MongoRequestRateTooLargeRetryer.withRequestRateTooLargeListener(executeAcknowledgeAware(trackedMessage.message()), limiter::onThrottled)
+                                .doFinally(s -> limiter.release(System.currentTimeMillis() - startTime));
+                    }));
+        } else {
+            execution = executeAcknowledgeAware(trackedMessage.message());
+        }
+        KafkaConsumerMetrics metrics = getConsumerMetrics();
+        return execution
+                .doOnNext(r -> trackedMessage.trackedRecord().markProcessed())
+                .doFinally(s -> {
+                    if (metrics != null) {
+                        metrics.onProcessed(trackedMessage.trackedRecord().getTopic(), trackedMessage.trackedRecord().getPartition());
+                    }
+                });
+    }
+
+    /**
+     * It will wait, at most for the given timeout, the end of the processing of the records already received from the given partitions, then it will stop to track them.<br />
+     * The records of the given partitions still under processing, or received until their next {@link #onPartitionsAssigned(Collection)}, will not be committed.<br />
+     * If {@link #getSpillJournals()} is configured, the journals of the given partitions will stop to be drained, and the records not yet drained will be notified to the error topic.<br />
+     * It should be invoked by the consumer thread when the partitions are revoked, thus when it is not fetching new records.
+     * @return for each partition, the offset to commit (the offset of the last contiguous processed record plus one), if any
+     */
+    public Map<TopicPartition, Long> drainPartitions(Collection<TopicPartition> partitions, Duration timeout) {
+        KafkaOffsetWatermarkTracker tracker = this.watermarkTracker;
+        if (tracker == null || partitions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        int unprocessed = countUnprocessed(tracker, partitions);
+        while (unprocessed > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(DRAIN_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            unprocessed = countUnprocessed(tracker, partitions);
+        }
+        if (unprocessed > 0) {
+            log.warn("[{}] Timeout draining partitions {}: {} records still under processing will not be committed", getFlowName(), partitions, unprocessed);
+        }
+
+        KafkaConsumerMetrics metrics = getConsumerMetrics();
+        Map<TopicPartition, Long> out = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            KafkaOffsetWatermarkTracker.Watermark watermark = tracker.revoke(partition.partition());
+            if (watermark != null) {
+                out.put(partition, watermark.toOffset() + 1);
+            }
+            if (metrics != null) {
+                metrics.onRevoked(partition.topic(), partition.partition());
+            }
+        }
+        KafkaPartitionSpillJournals spillJournals = getSpillJournals();
+        if (spillJournals != null) {
+            spillJournals.onPartitionsRevoked(partitions);
+        }
+        log.info("[{}] Drained partitions {}, committing offsets {}", getFlowName(), partitions, out);
+        return out;
+    }
+
+    private static int countUnprocessed(KafkaOffsetWatermarkTracker tracker, Collection<TopicPartition> partitions) {
+        return partitions.stream().mapToInt(tp -> tracker.countUnprocessed(tp.partition())).sum();
+    }
+
+    /** It will start again to process the records of the given partitions, if previously drained */
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        KafkaOffsetWatermarkTracker tracker = this.watermarkTracker;
+        if (tracker != null) {
+            partitions.forEach(tp -> tracker.assign(tp.partition()));
+        }
+        KafkaPartitionSpillJournals spillJournals = getSpillJournals();
+        if (spillJournals != null) {
+            spillJournals.onPartitionsAssigned(partitions);
+        }
+    }
+
+    /** The name of the binding from which the messages are consumed, used in order to drain its partitions when revoked. If null (default), the partitions will not be drained */
+    public String getBindingName() {
+        return null;
+    }
+
+    /** The component on which to publish the metrics of the consumer. If null (default), no metric will be published */
+    protected KafkaConsumerMetrics getConsumerMetrics() {
+        return null;
+    }
+
+    /** It will record the latency of the given stage, if {@link #getConsumerMetrics()} is configured */
+    protected <X> X timeStage(KafkaConsumerMetrics.Stage stage, Supplier<X> supplier) {
+        KafkaConsumerMetrics metrics = getConsumerMetrics();
+        return metrics != null ? metrics.timeStage(stage, supplier) : supplier.get();
+    }
+
+    /** It will record the latency of the given stage, if {@link #getConsumerMetrics()} is configured */
+    protected <X> Mono<X> timeStage(KafkaConsumerMetrics.Stage stage, Mono<X> mono) {
+        KafkaConsumerMetrics metrics = getConsumerMetrics();
+        return metrics != null ? metrics.timeStage(stage, mono) : mono;
+    }
+
+    /** The limiter to use in order to adapt the number of messages concurrently processed. If null (default) the concurrency will be bounded just by the reactor buffer size */
+    protected AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return null;
+    }
+
+    /** The number of lanes on which to process concurrently the messages. If 0 (default) the messages will be processed concurrently without any ordering guarantee, committing them through the offset watermarks of each partition */
+    protected int getProcessingLanes() {
+        return 0;
+    }
+
+    /** The key used to assign a message to a lane when {@link #getProcessingLanes()} is greater than 0: messages having the same key will be processed sequentially. As default it will use the Kafka record key, or the partition if not present */
+    protected Object getOrderingKey(Message<byte[]> message) {
+        Object key = CommonUtilities.getHeaderValue(message, KafkaHeaders.RECEIVED_KEY);
+        if (key instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        } else if (key != null) {
+            return key;
+        } else {
+            return getMessagePartitionId(message);
+        }
+    }
+
     /** The {@link Duration} to wait before to commit processed messages */
     protected abstract Duration getCommitDelay();
 
     /** {@link Flux} to which subscribe in order to start its execution and eventually perform some logic on results */
     protected abstract void subscribeAfterCommits(Flux<List<R>> afterCommits2subscribe);
 
-    private Mono<KafkaAcknowledgeResult<R>> executeAcknowledgeAware(Message<String> message) {
+    private Mono<KafkaAcknowledgeResult<R>> executeAcknowledgeAware(Message<byte[]> message) {
         KafkaAcknowledgeResult<R> defaultAck = new KafkaAcknowledgeResult<>(message, null);
 
         byte[] retryingApplicationName = message.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_APPLICATION_NAME, byte[].class);
@@ -117,11 +309,10 @@ public abstract class BaseKafkaConsumer<T, R> {
             return Mono.just(defaultAck);
         }
 
-        Map<String, Object> ctx=new HashMap<>();
-        ctx.put(CONTEXT_KEY_START_TIME, System.currentTimeMillis());
-        ctx.put(CONTEXT_KEY_MSG_ID,  CommonUtilities.readMessagePayload(message));
+        ProcessingContext ctx = new ProcessingContext(message);
+        boolean[] partitionPaused = {false};
 
-        return execute(message, ctx)
+        return Mono.defer(() -> execute(message, ctx))
                 .map(r -> new KafkaAcknowledgeResult<>(message, r))
                 .defaultIfEmpty(defaultAck)
 
@@ -129,26 +320,177 @@ public abstract class BaseKafkaConsumer<T, R> {
                     if(e instanceof UncommittableError) {
                         return Mono.error(e);
                     } else {
-                        notifyError(message, e);
-                        return Mono.just(defaultAck);
+                        return notifyErrorUntilPublished(message, ctx, e, partitionPaused).map(published -> defaultAck);
                     }
                 })
-                .doOnNext(r -> doFinally(message, ctx))
 
+                .retryWhen(buildRetry(message, ctx, partitionPaused))
+                .transform(processing -> spillAware(processing, message, ctx, defaultAck))
                 .onErrorResume(e -> {
-                    log.info("Retrying after reactive pipeline error: ", e);
-                    return executeAcknowledgeAware(message);
+                    log.error("[{}] Retries exhausted on message (partition: {}, offset: {}), sending it to the error topic", getFlowName(), ctx.partition(), ctx.offset(), e);
+                    return notifyErrorUntilPublished(message, ctx, e, partitionPaused).map(published -> defaultAck);
+                })
+                .doOnNext(r -> doFinally(message, ctx))
+                .doFinally(s -> {
+                    if (partitionPaused[0]) {
+                        Optional.ofNullable(getPartitionPauser()).ifPresent(p -> p.resume(getMessageTopic(message), ctx.partition()));
+                    }
                 });
     }
 
-    /** to perform some operation at the end of business logic execution, thus before to wait for commit. As default, it will perform an INFO logging with performance time */
-    protected void doFinally(Message<String> message, Map<String, Object> ctx) {
-        Long startTime = (Long)ctx.get(CONTEXT_KEY_START_TIME);
-        String msgId = (String)ctx.get(CONTEXT_KEY_MSG_ID);
-        if(startTime != null){
-            PerformanceLogger.logTiming(getFlowName(), startTime,
-                    "(partition: %s, offset: %s) %s".formatted(getMessagePartitionId(message), getMessageOffset(message), msgId));
+    /**
+     * It will notify the error, retrying until the notification is published: the message is considered processed, thus committable, just after.<br />
+     * The retries are bounded by the max attempts of {@link #getUncommittableErrorRetryPolicy()}, pausing the partition of the message meanwhile (if <i>partitionPaused</i> is provided).
+     * When exhausted, it will complete empty: the message will not be committed, thus it will be consumed again after the next rebalance, and the failure is published through {@link KafkaConsumerMetrics#onErrorNotificationUnpublished()}
+     */
+    private Mono<Boolean> notifyErrorUntilPublished(Message<byte[]> message, ProcessingContext ctx, Throwable e, boolean[] partitionPaused) {
+        UncommittableErrorRetryPolicy retryPolicy = getUncommittableErrorRetryPolicy();
+        return Mono.defer(() -> notifyError(message, e))
+                .filter(Boolean::booleanValue)
+                .switchIfEmpty(Mono.error(() -> new UncommittableError("Cannot publish the error notification")))
+                .retryWhen(Retry.backoff(retryPolicy.maxAttempts(), retryPolicy.minBackoff())
+                        .maxBackoff(retryPolicy.maxBackoff())
+                        .jitter(retryPolicy.jitter())
+                        .doBeforeRetry(r -> {
+                            log.warn("[{}] Retrying to notify error on message (partition: {}, offset: {}): attempt {} of {}",
+                                    getFlowName(), ctx.partition(), ctx.offset(), r.totalRetries() + 1, retryPolicy.maxAttempts(), r.failure());
+                            KafkaPartitionPauser partitionPauser = getPartitionPauser();
+                            if (partitionPaused != null && !partitionPaused[0] && partitionPauser != null) {
+                                partitionPaused[0] = true;
+                                partitionPauser.pause(getMessageTopic(message), ctx.partition());
+                            }
+                        })
+                        .onRetryExhaustedThrow((spec, r) -> r.failure()))
+                .onErrorResume(notifyException -> {
+                    log.error("[{}] Cannot notify error on message (partition: {}, offset: {}): it will not be committed", getFlowName(), ctx.partition(), ctx.offset(), notifyException);
+                    Optional.ofNullable(getConsumerMetrics()).ifPresent(KafkaConsumerMetrics::onErrorNotificationUnpublished);
+                    return Mono.empty();
+                });
+    }
+
+    /** It will retry the message with an exponential backoff, pausing its partition until the end of the retries */
+    private Retry buildRetry(Message<byte[]> message, ProcessingContext ctx, boolean[] partitionPaused) {
+        UncommittableErrorRetryPolicy retryPolicy = getUncommittableErrorRetryPolicy();
+        long maxElapsedMillis = retryPolicy.maxElapsed().toMillis();
+        return Retry.backoff(retryPolicy.maxAttempts(), retryPolicy.minBackoff())
+                .maxBackoff(retryPolicy.maxBackoff())
+                .jitter(retryPolicy.jitter())
+                .filter(e -> maxElapsedMillis <= 0 || System.currentTimeMillis() - ctx.startTime() < maxElapsedMillis)
+                .doBeforeRetry(r -> {
+                    log.info("[{}] Retrying message (partition: {}, offset: {}) after reactive pipeline error: attempt {} of {}",
+                            getFlowName(), ctx.partition(), ctx.offset(), r.totalRetries() + 1, retryPolicy.maxAttempts(), r.failure());
+                    KafkaPartitionPauser partitionPauser = getPartitionPauser();
+                    if (!partitionPaused[0] && partitionPauser != null) {
+                        partitionPaused[0] = true;
+                        partitionPauser.pause(getMessageTopic(message), ctx.partition());
+                    }
+                })
+                .onRetryExhaustedThrow((spec, r) -> r.failure());
+    }
+
+    /**
+     * If {@link #getSpillJournals()} is configured, the message will be spilled into the journal of its partition when not processed within {@link #getSpillDeadline()}, thus allowing to commit it.<br />
+     * In order to preserve the order of the messages, while the journal of the partition is not empty the messages will be directly spilled into it.
+     */
+    private Mono<KafkaAcknowledgeResult<R>> spillAware(Mono<KafkaAcknowledgeResult<R>> processing, Message<byte[]> message, ProcessingContext ctx, KafkaAcknowledgeResult<R> defaultAck) {
+        KafkaPartitionSpillJournals spillJournals = getSpillJournals();
+        if (spillJournals == null) {
+            return processing;
         }
+        TopicPartition partition = new TopicPartition(getMessageTopic(message), ctx.partition());
+        return Mono.defer(() -> {
+            Mono<KafkaAcknowledgeResult<R>> spill = spill(spillJournals, partition, message, ctx).map(r -> defaultAck);
+            return spillJournals.isEmpty(partition)
+                    ? processing.timeout(getSpillDeadline(), spill)
+                    : spill;
+        });
+    }
+
+    /**
+     * It will append the message to the journal of its partition, waiting for free space if it is full.<br />
+     * If the partition has been revoked, the message will not be spilled and it will not be committed, thus the new owner will process it.
+     */
+    private Mono<KafkaPartitionSpillJournals.AppendResult> spill(KafkaPartitionSpillJournals spillJournals, TopicPartition partition, Message<byte[]> message, ProcessingContext ctx) {
+        return Mono.fromCallable(() -> spillJournals.append(partition, message))
+                .subscribeOn(Schedulers.boundedElastic())
+                .filter(result -> result != KafkaPartitionSpillJournals.AppendResult.FULL)
+                .repeatWhenEmpty(attempts -> attempts
+                        .doOnNext(attempt -> {
+                            if (attempt == 0) {
+                                log.warn("[{}] Spill journal full, waiting to spill message (partition: {}, offset: {})", getFlowName(), ctx.partition(), ctx.offset());
+                            }
+                        })
+                        .delayElements(SPILL_FULL_RETRY_DELAY))
+                .flatMap(result -> {
+                    if (result == KafkaPartitionSpillJournals.AppendResult.REVOKED) {
+                        log.info("[{}] Message (partition: {}, offset: {}) not spilled, its partition has been revoked", getFlowName(), ctx.partition(), ctx.offset());
+                        return Mono.empty();
+                    }
+                    log.info("[{}] Message (partition: {}, offset: {}) spilled into journal", getFlowName(), ctx.partition(), ctx.offset());
+                    return Mono.just(result);
+                });
+    }
+
+    /** It will process a message drained from the spill journal, retrying it until it can be committed */
+    private Mono<R> processSpilled(Message<byte[]> message) {
+        ProcessingContext ctx = new ProcessingContext(message);
+        UncommittableErrorRetryPolicy retryPolicy = getUncommittableErrorRetryPolicy();
+        return Mono.defer(() -> execute(message, ctx))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, retryPolicy.minBackoff())
+                        .maxBackoff(retryPolicy.maxBackoff())
+                        .jitter(retryPolicy.jitter())
+                        .filter(UncommittableError.class::isInstance))
+                .doOnSuccess(r -> doFinally(message, ctx))
+                .onErrorResume(e -> notifyErrorUntilPublished(message, ctx, e, null).then(Mono.empty()));
+    }
+
+    /** It will notify to the error topic a spilled message which will not be drained, since its partition has been revoked */
+    private void notifySpillDiscarded(Message<byte[]> message) {
+        ProcessingContext ctx = new ProcessingContext(message);
+        notifyErrorUntilPublished(message, ctx, new IllegalStateException("Spilled message not drained before the revocation of its partition"), null)
+                .subscribe();
+    }
+
+    /** The journals into which to spill the messages not processed within {@link #getSpillDeadline()}. If null (default), messages will never be spilled */
+    protected KafkaPartitionSpillJournals getSpillJournals() {
+        return null;
+    }
+
+    /** The time within which a message should be processed before to be spilled into {@link #getSpillJournals()} */
+    protected Duration getSpillDeadline() {
+        return Duration.ofSeconds(30);
+    }
+
+    /** The policy to use when retrying a message which cannot be committed */
+    protected UncommittableErrorRetryPolicy getUncommittableErrorRetryPolicy() {
+        return UncommittableErrorRetryPolicy.DEFAULT;
+    }
+
+    /** The component to use in order to pause the partition of a message under retry. If null (default), the partition will not be paused */
+    protected KafkaPartitionPauser getPartitionPauser() {
+        return null;
+    }
+
+    /**
+     * It will process a message outside of the consumed flow, thus without committing anything (e.g. a message replayed from the error topic).<br />
+     * Unexpected errors will be notified through {@link #notifyError(Message, Throwable)} and then propagated.
+     */
+    public Mono<R> reprocess(Message<byte[]> message) {
+        ProcessingContext ctx = new ProcessingContext(message);
+        return Mono.defer(() -> execute(message, ctx))
+                .onErrorResume(e -> notifyError(message, e)
+                        .onErrorResume(notifyException -> {
+                            log.error("[{}] Cannot notify error on reprocessed message", getFlowName(), notifyException);
+                            return Mono.empty();
+                        })
+                        .then(Mono.error(e)))
+                .doOnSuccess(r -> doFinally(message, ctx));
+    }
+
+    /** to perform some operation at the end of business logic execution, thus before to wait for commit. As default, it will perform an INFO logging with performance time */
+    protected void doFinally(Message<byte[]> message, ProcessingContext ctx) {
+        PerformanceLogger.logTiming(getFlowName(), ctx.startTime(),
+                "(partition: %s, offset: %s)".formatted(ctx.partition(), ctx.offset()));
     }
 
     /** Name used for logging purpose */
@@ -156,26 +498,55 @@ public abstract class BaseKafkaConsumer<T, R> {
         return getClass().getSimpleName();
     }
 
-    /** It will deserialize the message and then call the {@link #execute(Object, Message, Map)} method */
-    protected Mono<R> execute(Message<String> message, Map<String, Object> ctx){
-        return Mono.just(message)
-                .mapNotNull(this::deserializeMessage)
-                .flatMap(payload->execute(payload, message, ctx));
+    /**
+     * It will deserialize the message and then call the {@link #execute(Object, Message, ProcessingContext)} method, unless {@link #isToSkip(Message)}.<br />
+     * If the deserialization fails, the message is committed just after {@link #onDeserializationError(Message, Throwable)} has notified the error
+     */
+    protected Mono<R> execute(Message<byte[]> message, ProcessingContext ctx){
+        if(isToSkip(message)){
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            Throwable[] deserializationError = {null};
+            T payload = timeStage(KafkaConsumerMetrics.Stage.DESERIALIZE, () -> deserializeMessage(message, e -> deserializationError[0] = e));
+            if (payload != null) {
+                return execute(payload, message, ctx);
+            } else if (deserializationError[0] != null) {
+                return onDeserializationError(message, deserializationError[0])
+                        .filter(Boolean::booleanValue)
+                        .switchIfEmpty(Mono.error(() -> new UncommittableError("[%s] Cannot notify unexpected JSON".formatted(getFlowName()))))
+                        .then(Mono.empty());
+            } else {
+                return Mono.empty();
+            }
+        });
+    }
+
+    /** To discard a message just looking at its headers, thus before to deserialize it. As default, no message is discarded */
+    protected boolean isToSkip(Message<byte[]> message) {
+        return false;
     }
 
     /** The {@link ObjectReader} to use in order to deserialize the input message */
     protected abstract ObjectReader getObjectReader();
-    /** The action to take if the deserialization will throw an error */
-    protected abstract Consumer<Throwable> onDeserializationError(Message<String> message);
-    /** The action to take if an unexpected exception occurs */
-    protected abstract void notifyError(Message<String> message, Throwable e);
+    /** The action to take if the deserialization will throw an error, emitting true if the error has been notified: otherwise the message will be retried as an {@link UncommittableError} */
+    protected abstract Mono<Boolean> onDeserializationError(Message<byte[]> message, Throwable e);
+    /** The action to take if an unexpected exception occurs, emitting true if the error has been notified */
+    protected abstract Mono<Boolean> notifyError(Message<byte[]> message, Throwable e);
 
     /** The function invoked in order to process the current message */
-    protected abstract Mono<R> execute(T payload, Message<String> message, Map<String, Object> ctx);
+    protected abstract Mono<R> execute(T payload, Message<byte[]> message, ProcessingContext ctx);
+
+    /** It will deserialize the raw {@link Message#getPayload()} using the given {@link #getObjectReader()}, adapted to the format selected by the content type of the message (see {@link KafkaPayloadFormat}), invoking <i>onError</i> if it fails */
+    protected T deserializeMessage(Message<byte[]> message, Consumer<Throwable> onError) {
+        return CommonUtilities.deserializeMessage(message, getObjectReader(KafkaPayloadFormat.fromMessage(message)), onError);
+    }
 
-    /** It will read and deserialize {@link Message#getPayload()} using the given {@link #getObjectReader()} */
-    protected T deserializeMessage(Message<String> message) {
-        return CommonUtilities.deserializeMessage(message, getObjectReader(), onDeserializationError(message));
+    /** It will adapt {@link #getObjectReader()} to the given format, thus to read the messages having a binary content type */
+    protected ObjectReader getObjectReader(KafkaPayloadFormat format) {
+        return format == KafkaPayloadFormat.JSON
+                ? getObjectReader()
+                : format2ObjectReader.computeIfAbsent(format, f -> f.adapt(getObjectReader()));
     }
 
 }
\ No newline at end of file
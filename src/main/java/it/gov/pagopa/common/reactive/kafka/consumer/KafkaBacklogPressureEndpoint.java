@@ -0,0 +1,40 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint (<i>/actuator/backlogpressure</i>) exposing the backlog pressure of the configured Kafka consumers, to be polled by the autoscaler.<br />
+ * The returned <i>pressure</i> is the greatest one among the consumers: see {@link KafkaConsumerMetrics#getBacklogPressure()}.
+ */
+@Component
+@Endpoint(id = "backlogpressure")
+public class KafkaBacklogPressureEndpoint {
+
+    private final List<KafkaConsumerMetrics> consumerMetrics;
+
+    public record BacklogPressure(double pressure, Map<String, FlowBacklog> flows) {}
+
+    public record FlowBacklog(double pressure, long lag, long inFlight, double recordsPerSecond) {}
+
+    public KafkaBacklogPressureEndpoint(List<KafkaConsumerMetrics> consumerMetrics) {
+        this.consumerMetrics = consumerMetrics;
+    }
+
+    @ReadOperation
+    public BacklogPressure backlogPressure() {
+        Map<String, FlowBacklog> flows = new LinkedHashMap<>();
+        double pressure = 0;
+        for (KafkaConsumerMetrics metrics : consumerMetrics) {
+            FlowBacklog flowBacklog = new FlowBacklog(metrics.getBacklogPressure(), metrics.getLag(), metrics.getInFlight(), metrics.getRecordsPerSecond());
+            flows.put(metrics.getFlowName(), flowBacklog);
+            pressure = Math.max(pressure, flowBacklog.pressure());
+        }
+        return new BacklogPressure(pressure, flows);
+    }
+}
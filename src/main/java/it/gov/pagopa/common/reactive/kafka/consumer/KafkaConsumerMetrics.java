@@ -0,0 +1,225 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.common.TopicPartition;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * It will publish on Micrometer the metrics of a Kafka consumer:
+ * <ul>
+ *     <li><i>idpay.kafka.consumer.stage</i>: the latency histogram of each {@link Stage} of the processing</li>
+ *     <li><i>idpay.kafka.consumer.partition.in-flight</i>: the records of each topic partition received and still under processing</li>
+ *     <li><i>idpay.kafka.consumer.partition.lag</i>: the records of each topic partition not yet committed, thus the lag read from the broker plus the records received but not yet committed</li>
+ *     <li><i>idpay.kafka.consumer.backlog.pressure</i>: the ratio between the time required to consume the whole lag at the current throughput and the configured target drain time.
+ *     A value greater than 1 means that the consumer is not able to drain its backlog in time</li>
+ *     <li><i>idpay.kafka.consumer.error-notification.unpublished</i>: the error notifications not published after all their retries, whose records have been left not committed</li>
+ * </ul>
+ * The meters of a partition are removed when it's revoked, and registered again when its first record is received after a new assignment.
+ */
+public class KafkaConsumerMetrics {
+
+    /** The stages of the processing of a record */
+    public enum Stage { DESERIALIZE, MAP, PERSIST, COMMIT }
+
+    private static final double MIN_RECORDS_PER_SECOND = 1;
+
+    private final String flowName;
+    private final String binding;
+    private final MeterRegistry meterRegistry;
+    private final ToLongBiFunction<String, Integer> brokerLagReader;
+    private final long targetDrainSeconds;
+    private final long rateWindowMillis;
+
+    private final Map<Stage, Timer> stage2Timer = new EnumMap<>(Stage.class);
+    private final Counter processedCounter;
+    private final Counter unpublishedErrorNotificationsCounter;
+    private final Map<TopicPartition, PartitionState> partition2State = new ConcurrentHashMap<>();
+
+    private RateSample previousSample;
+    private RateSample currentSample;
+
+    private record RateSample(long time, double count) {}
+
+    private final class PartitionState {
+        private final TopicPartition topicPartition;
+        private final AtomicLong inFlight = new AtomicLong();
+        private final AtomicLong lastReceivedOffset = new AtomicLong(-1);
+        private final AtomicLong lastCommittedOffset = new AtomicLong(-1);
+        private final Gauge inFlightGauge;
+        private final Gauge lagGauge;
+
+        private PartitionState(TopicPartition topicPartition, long firstOffset) {
+            this.topicPartition = topicPartition;
+            this.lastCommittedOffset.set(firstOffset - 1);
+
+            String topicTag = String.valueOf(topicPartition.topic());
+            String partitionTag = String.valueOf(topicPartition.partition());
+            this.inFlightGauge = Gauge.builder("idpay.kafka.consumer.partition.in-flight", inFlight, AtomicLong::get)
+                    .description("The records received and still under processing")
+                    .tags("flow", flowName, "binding", binding, "topic", topicTag, "partition", partitionTag)
+                    .register(meterRegistry);
+            this.lagGauge = Gauge.builder("idpay.kafka.consumer.partition.lag", this, PartitionState::getLag)
+                    .description("The records not yet committed")
+                    .tags("flow", flowName, "binding", binding, "topic", topicTag, "partition", partitionTag)
+                    .register(meterRegistry);
+        }
+
+        private long getLag() {
+            long brokerLag = topicPartition.topic() != null ? Math.max(0, brokerLagReader.applyAsLong(topicPartition.topic(), topicPartition.partition())) : 0;
+            return brokerLag + Math.max(0, lastReceivedOffset.get() - lastCommittedOffset.get());
+        }
+    }
+
+    /**
+     * @param flowName the name of the flow, used as tag
+     * @param binding the name of the binding, used as tag
+     * @param meterRegistry the registry on which to publish the metrics
+     * @param brokerLagReader the function returning the lag of a topic partition read from the broker, negative if not available
+     * @param targetDrainTime the time within which the backlog should be consumed
+     * @param rateWindow the time window on which to measure the throughput
+     */
+    public KafkaConsumerMetrics(String flowName, String binding, MeterRegistry meterRegistry, ToLongBiFunction<String, Integer> brokerLagReader, Duration targetDrainTime, Duration rateWindow) {
+        this.flowName = flowName;
+        this.binding = binding;
+        this.meterRegistry = meterRegistry;
+        this.brokerLagReader = brokerLagReader;
+        this.targetDrainSeconds = Math.max(1, targetDrainTime.toSeconds());
+        this.rateWindowMillis = rateWindow.toMillis();
+
+        for (Stage stage : Stage.values()) {
+            stage2Timer.put(stage, Timer.builder("idpay.kafka.consumer.stage")
+                    .description("The latency of each stage of the processing of a record")
+                    .tags("flow", flowName, "binding", binding, "stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        this.processedCounter = Counter.builder("idpay.kafka.consumer.processed")
+                .description("The records processed")
+                .tags("flow", flowName, "binding", binding)
+                .register(meterRegistry);
+        this.unpublishedErrorNotificationsCounter = Counter.builder("idpay.kafka.consumer.error-notification.unpublished")
+                .description("The error notifications not published after all their retries")
+                .tags("flow", flowName, "binding", binding)
+                .register(meterRegistry);
+        Gauge.builder("idpay.kafka.consumer.backlog.pressure", this, KafkaConsumerMetrics::getBacklogPressure)
+                .description("The ratio between the estimated time to consume the lag and the target drain time")
+                .tags("flow", flowName, "binding", binding)
+                .register(meterRegistry);
+
+        this.currentSample = new RateSample(System.currentTimeMillis(), 0);
+        this.previousSample = currentSample;
+    }
+
+    public String getFlowName() {
+        return flowName;
+    }
+
+    /** To register a record received from the given topic partition */
+    public void onReceived(String topic, Integer partition, Long offset) {
+        if (partition == null || offset == null) {
+            return;
+        }
+        PartitionState state = partition2State.computeIfAbsent(new TopicPartition(topic, partition), tp -> new PartitionState(tp, offset));
+        state.inFlight.incrementAndGet();
+        state.lastReceivedOffset.accumulateAndGet(offset, Math::max);
+    }
+
+    /** To register the end of the processing of a record of the given topic partition */
+    public void onProcessed(String topic, Integer partition) {
+        processedCounter.increment();
+        PartitionState state = getState(topic, partition);
+        if (state != null) {
+            state.inFlight.updateAndGet(n -> Math.max(0, n - 1));
+        }
+    }
+
+    /** To register an error notification not published after all its retries */
+    public void onErrorNotificationUnpublished() {
+        unpublishedErrorNotificationsCounter.increment();
+    }
+
+    /** To register the commit of the given topic partition up to the given offset (included) */
+    public void onCommitted(String topic, Integer partition, Long offset) {
+        PartitionState state = getState(topic, partition);
+        if (state != null && offset != null) {
+            state.lastCommittedOffset.accumulateAndGet(offset, Math::max);
+        }
+    }
+
+    /** To register the revocation of the given topic partition: it will be no more tracked and its meters will be removed */
+    public void onRevoked(String topic, Integer partition) {
+        PartitionState state = partition != null ? partition2State.remove(new TopicPartition(topic, partition)) : null;
+        if (state != null) {
+            meterRegistry.remove(state.inFlightGauge);
+            meterRegistry.remove(state.lagGauge);
+        }
+    }
+
+    private PartitionState getState(String topic, Integer partition) {
+        return partition != null ? partition2State.get(new TopicPartition(topic, partition)) : null;
+    }
+
+    /** To record the latency of a stage started at the given time (nanoseconds) */
+    public void recordStage(Stage stage, long startNanos) {
+        stage2Timer.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** It will record the latency of the given stage, evaluated synchronously */
+    public <T> T timeStage(Stage stage, Supplier<T> supplier) {
+        long startNanos = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            recordStage(stage, startNanos);
+        }
+    }
+
+    /** It will record the latency of the given stage, from the subscription of the {@link Mono} to its termination */
+    public <T> Mono<T> timeStage(Stage stage, Mono<T> mono) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            return mono
+                    .doOnTerminate(() -> recordStage(stage, startNanos))
+                    .doOnCancel(() -> recordStage(stage, startNanos));
+        });
+    }
+
+    /** The number of records received and still under processing */
+    public long getInFlight() {
+        return partition2State.values().stream().mapToLong(s -> s.inFlight.get()).sum();
+    }
+
+    /** The number of records not yet committed, on all the assigned partitions */
+    public long getLag() {
+        return partition2State.values().stream().mapToLong(PartitionState::getLag).sum();
+    }
+
+    /** The throughput measured on the last rate window */
+    public synchronized double getRecordsPerSecond() {
+        long now = System.currentTimeMillis();
+        if (now - currentSample.time() >= rateWindowMillis) {
+            previousSample = currentSample;
+            currentSample = new RateSample(now, processedCounter.count());
+        }
+        long elapsed = now - previousSample.time();
+        return elapsed > 0 ? (processedCounter.count() - previousSample.count()) * 1000 / elapsed : 0;
+    }
+
+    /** The ratio between the estimated time to consume the lag at the current throughput and the target drain time */
+    public double getBacklogPressure() {
+        return getLag() / (Math.max(MIN_RECORDS_PER_SECOND, getRecordsPerSecond()) * targetDrainSeconds);
+    }
+}
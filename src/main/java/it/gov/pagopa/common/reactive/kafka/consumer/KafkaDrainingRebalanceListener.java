@@ -0,0 +1,68 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.binder.kafka.KafkaBindingRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * When the partitions of a binding are revoked (due to a rebalance or to the shutdown of the consumer), it will drain the {@link BaseKafkaConsumer} configured on that binding (see {@link BaseKafkaConsumer#getBindingName()}),
+ * waiting for the records under processing and then committing the final watermark of each partition before releasing it.<br />
+ * In this way, the next owner of the partitions will not reprocess the records already processed but not yet committed.
+ */
+@Component
+@Slf4j
+public class KafkaDrainingRebalanceListener implements KafkaBindingRebalanceListener {
+
+    private final Map<String, BaseKafkaConsumer<?, ?>> binding2Consumer;
+    private final Duration drainTimeout;
+
+    public KafkaDrainingRebalanceListener(
+            List<BaseKafkaConsumer<?, ?>> consumers,
+            @Value("${app.kafka.consumer.drain.timeout-millis}") long drainTimeoutMillis) {
+        this.binding2Consumer = consumers.stream()
+                .filter(c -> c.getBindingName() != null)
+                .collect(Collectors.toMap(BaseKafkaConsumer::getBindingName, Function.identity()));
+        this.drainTimeout = Duration.ofMillis(drainTimeoutMillis);
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(String bindingName, Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        BaseKafkaConsumer<?, ?> kafkaConsumer = binding2Consumer.get(bindingName);
+        if (kafkaConsumer == null || partitions.isEmpty()) {
+            return;
+        }
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        kafkaConsumer.drainPartitions(partitions, drainTimeout)
+                .forEach((partition, offset) -> offsets.put(partition, new OffsetAndMetadata(offset)));
+
+        if (!offsets.isEmpty()) {
+            try {
+                consumer.commitSync(offsets);
+            } catch (KafkaException e) {
+                log.error("[KAFKA_DRAIN][{}] Cannot commit drained offsets {}", bindingName, offsets, e);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(String bindingName, Consumer<?, ?> consumer, Collection<TopicPartition> partitions, boolean initial) {
+        BaseKafkaConsumer<?, ?> kafkaConsumer = binding2Consumer.get(bindingName);
+        if (kafkaConsumer != null) {
+            kafkaConsumer.onPartitionsAssigned(partitions);
+        }
+    }
+}
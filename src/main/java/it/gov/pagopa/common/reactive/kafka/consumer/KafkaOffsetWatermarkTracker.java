@@ -0,0 +1,184 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * It will track, for each partition, the records received in order to commit just the contiguous prefix of processed records (the watermark).
+ * In this way, an offset will never be committed while a previous record of the same partition is still under processing.<br />
+ * When a partition is revoked (see {@link #revoke(Integer)}), its records will be discarded until it will be assigned again (see {@link #assign(Integer)}).<br />
+ * The records having an offset not greater than the last one accepted for their partition are discarded too: when a partition is assigned again to the same consumer,
+ * its records fetched before the revocation and still buffered will be processed, while the copies fetched again from the committed offset will be discarded.<br />
+ * Anyway, the records accepted but not committed before the revocation will be fetched again from the committed offset: after the reassignment, each offset between the last committed and the last accepted one
+ * will be accepted once more, thus its redelivery will not be discarded.
+ */
+public class KafkaOffsetWatermarkTracker {
+
+    private final Map<Integer, Deque<TrackedRecord>> partition2Records = new ConcurrentHashMap<>();
+    private final Set<Integer> revokedPartitions = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, PartitionOffsets> partition2Offsets = new ConcurrentHashMap<>();
+
+    /** A record under processing */
+    public static final class TrackedRecord {
+        private final String topic;
+        private final Integer partition;
+        private final Long offset;
+        private final Acknowledgment ack;
+        private final boolean discarded;
+        private volatile boolean processed;
+
+        private TrackedRecord(String topic, Integer partition, Long offset, Acknowledgment ack, boolean discarded) {
+            this.topic = topic;
+            this.partition = partition;
+            this.offset = offset;
+            this.ack = ack;
+            this.discarded = discarded;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public Integer getPartition() {
+            return partition;
+        }
+
+        public Long getOffset() {
+            return offset;
+        }
+
+        /** True if the record has been received after the revocation of its partition, thus it should not be processed */
+        public boolean isDiscarded() {
+            return discarded;
+        }
+
+        /** To mark the record as processed, thus eligible to be committed */
+        public void markProcessed() {
+            this.processed = true;
+        }
+    }
+
+    /** The offsets of a partition: the last committed, the last accepted and, after a reassignment, the last redelivered until the last accepted before the revocation */
+    private static final class PartitionOffsets {
+        private long committed;
+        private long accepted;
+        private long redelivered;
+        private long redeliverUntil;
+
+        private PartitionOffsets(long committed) {
+            this.committed = committed;
+            this.accepted = committed;
+            this.redelivered = committed;
+            this.redeliverUntil = committed;
+        }
+    }
+
+    /** The committable watermark of a partition: the topic, the first and last offset committed together with the acknowledgment of the last one */
+    public record Watermark(String topic, Long fromOffset, Long toOffset, int count, Acknowledgment ack) {}
+
+    /** It will register a record, it should be invoked in the same order the records are received */
+    public TrackedRecord register(String topic, Integer partition, Long offset, Acknowledgment ack) {
+        Integer partitionKey = partition != null ? partition : -1;
+        if (revokedPartitions.contains(partitionKey) || isAlreadyAccepted(partitionKey, offset)) {
+            return new TrackedRecord(topic, partition, offset, ack, true);
+        }
+        TrackedRecord trackedRecord = new TrackedRecord(topic, partition, offset, ack, false);
+        Deque<TrackedRecord> records = partition2Records.computeIfAbsent(partitionKey, p -> new ArrayDeque<>());
+        synchronized (records) {
+            records.addLast(trackedRecord);
+        }
+        return trackedRecord;
+    }
+
+    private boolean isAlreadyAccepted(Integer partitionKey, Long offset) {
+        if (offset == null) {
+            return false;
+        }
+        // the first record received is fetched from the committed offset
+        PartitionOffsets offsets = partition2Offsets.computeIfAbsent(partitionKey, p -> new PartitionOffsets(offset - 1));
+        synchronized (offsets) {
+            if (offset > offsets.redelivered && offset <= offsets.redeliverUntil) {
+                offsets.redelivered = offset;
+                return false;
+            }
+            if (offset <= offsets.accepted) {
+                return true;
+            }
+            offsets.accepted = offset;
+            return false;
+        }
+    }
+
+    /** The number of records of the given partition still under processing */
+    public int countUnprocessed(Integer partition) {
+        Deque<TrackedRecord> records = partition2Records.get(partition);
+        if (records == null) {
+            return 0;
+        }
+        synchronized (records) {
+            return (int) records.stream().filter(r -> !r.processed).count();
+        }
+    }
+
+    /** It will stop to track the given partition, returning its last committable watermark, if any. The records of the partition received until its next {@link #assign(Integer)} will be discarded */
+    public Watermark revoke(Integer partition) {
+        revokedPartitions.add(partition);
+        Deque<TrackedRecord> records = partition2Records.remove(partition);
+        return records != null ? pollWatermark(partition, records) : null;
+    }
+
+    /** It will start again to track the given partition, if previously revoked. The records accepted but not committed before the revocation will be accepted again once */
+    public void assign(Integer partition) {
+        PartitionOffsets offsets = partition2Offsets.get(partition);
+        if (offsets != null) {
+            synchronized (offsets) {
+                offsets.redelivered = offsets.committed;
+                offsets.redeliverUntil = offsets.accepted;
+            }
+        }
+        revokedPartitions.remove(partition);
+    }
+
+    /** It will remove and return, for each partition, the contiguous processed records starting from the oldest one still tracked */
+    public Map<Integer, Watermark> pollWatermarks() {
+        Map<Integer, Watermark> out = new HashMap<>();
+        partition2Records.forEach((partition, records) -> {
+            Watermark watermark = pollWatermark(partition, records);
+            if (watermark != null) {
+                out.put(partition, watermark);
+            }
+        });
+        return out;
+    }
+
+    private Watermark pollWatermark(Integer partition, Deque<TrackedRecord> records) {
+        TrackedRecord first = null;
+        TrackedRecord last = null;
+        int count = 0;
+        synchronized (records) {
+            while (!records.isEmpty() && records.peekFirst().processed) {
+                last = records.pollFirst();
+                if (first == null) {
+                    first = last;
+                }
+                count++;
+            }
+        }
+        if (last == null) {
+            return null;
+        }
+        PartitionOffsets offsets = partition2Offsets.get(partition);
+        if (offsets != null && last.offset != null) {
+            synchronized (offsets) {
+                offsets.committed = Math.max(offsets.committed, last.offset);
+            }
+        }
+        return new Watermark(last.topic, first.offset, last.offset, count, last.ack);
+    }
+}
@@ -0,0 +1,87 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.cloud.stream.config.ListenerContainerCustomizer;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * It will keep track of the listener containers built by the Kafka binder in order to pause and resume single partitions.<br />
+ * Pauses are counted: a partition paused n times will be resumed after n resume requests.<br />
+ * The tracked containers are used also to read the lag of each partition, see {@link #getRecordsLag(String, Integer)}.
+ */
+@Component
+@Slf4j
+public class KafkaPartitionPauser implements ListenerContainerCustomizer<AbstractMessageListenerContainer<?, ?>> {
+
+    private static final String RECORDS_LAG_METRIC = "records-lag";
+
+    private final Map<String, AbstractMessageListenerContainer<?, ?>> topic2Container = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Integer> pausedPartitions = new ConcurrentHashMap<>();
+
+    @Override
+    public void configure(AbstractMessageListenerContainer<?, ?> container, String destinationName, String group) {
+        for (String topic : destinationName.split(",")) {
+            topic2Container.put(topic.trim(), container);
+        }
+    }
+
+    /** It will pause the consumption of the given partition */
+    public void pause(String topic, Integer partition) {
+        AbstractMessageListenerContainer<?, ?> container = topic != null ? topic2Container.get(topic) : null;
+        if (container == null || partition == null) {
+            return;
+        }
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        if (pausedPartitions.merge(topicPartition, 1, Integer::sum) == 1) {
+            log.info("[KAFKA_PARTITION_PAUSE] Pausing partition {}", topicPartition);
+            container.pausePartition(topicPartition);
+        }
+    }
+
+    /** It will resume the consumption of the given partition, if there aren't other pending pauses */
+    public void resume(String topic, Integer partition) {
+        AbstractMessageListenerContainer<?, ?> container = topic != null ? topic2Container.get(topic) : null;
+        if (container == null || partition == null) {
+            return;
+        }
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        boolean[] lastPause = {false};
+        pausedPartitions.computeIfPresent(topicPartition, (tp, count) -> {
+            lastPause[0] = count == 1;
+            return count > 1 ? count - 1 : null;
+        });
+        if (lastPause[0]) {
+            log.info("[KAFKA_PARTITION_PAUSE] Resuming partition {}", topicPartition);
+            container.resumePartition(topicPartition);
+        }
+    }
+
+    /** The lag of the given partition as measured by the consumer client (<i>records-lag</i> metric), or -1 if not available */
+    public long getRecordsLag(String topic, Integer partition) {
+        AbstractMessageListenerContainer<?, ?> container = topic != null ? topic2Container.get(topic) : null;
+        if (container == null || partition == null) {
+            return -1;
+        }
+        String partitionTag = String.valueOf(partition);
+        for (Map<MetricName, ? extends Metric> clientMetrics : container.metrics().values()) {
+            for (Map.Entry<MetricName, ? extends Metric> metric : clientMetrics.entrySet()) {
+                MetricName name = metric.getKey();
+                if (RECORDS_LAG_METRIC.equals(name.name())
+                        && topic.equals(name.tags().get("topic"))
+                        && partitionTag.equals(name.tags().get("partition"))
+                        && metric.getValue().metricValue() instanceof Double lag
+                        && !lag.isNaN()) {
+                    return lag.longValue();
+                }
+            }
+        }
+        return -1;
+    }
+}
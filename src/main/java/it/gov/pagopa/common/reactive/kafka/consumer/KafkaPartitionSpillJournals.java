@@ -0,0 +1,183 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Mono;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The {@link KafkaSpillJournal}s of a consumer, one for each partition owned by it, stored inside the same directory.<br />
+ * Each journal is drained by its own thread, thus a record under retry will hold back just the other records spilled from its partition.<br />
+ * A journal lives as long as its partition is owned: when the partition is revoked, its drainer is stopped and the records not yet drained are handed to the configured handler
+ * (e.g. in order to publish them on the error topic), since the new owner will start after their offsets, already committed.
+ * For the same reason, the journals left by a previous process (e.g. after a crash) are handed to the handler on {@link #start(String, Function, Consumer, long)}.
+ */
+@Slf4j
+public class KafkaPartitionSpillJournals implements Closeable {
+
+    private static final String JOURNAL_EXTENSION = ".journal";
+
+    /** The outcome of {@link #append(TopicPartition, Message)} */
+    public enum AppendResult {
+        APPENDED,
+        /** The journal of the partition has no space */
+        FULL,
+        /** The partition is not owned anymore, thus its records cannot be spilled */
+        REVOKED
+    }
+
+    private final Path directory;
+    private final int maxSizeBytesPerPartition;
+    private final Duration drainerStopTimeout;
+
+    private final Map<TopicPartition, KafkaSpillJournal> partition2Journal = new ConcurrentHashMap<>();
+    private final Set<TopicPartition> revokedPartitions = ConcurrentHashMap.newKeySet();
+
+    private String name;
+    private Function<Message<byte[]>, Mono<?>> processor;
+    private Consumer<Message<byte[]>> onDiscarded;
+    private long pollMillis;
+
+    /**
+     * @param directory the existing directory where to store the journals
+     * @param maxSizeBytesPerPartition the maximum size of the journal of each partition
+     * @param drainerStopTimeout the time to wait, when revoking a partition, for the end of the processing of the record drained from its journal
+     */
+    public KafkaPartitionSpillJournals(Path directory, int maxSizeBytesPerPartition, Duration drainerStopTimeout) {
+        if (!Files.isDirectory(directory) || !Files.isWritable(directory)) {
+            throw new IllegalStateException("The spill journals directory %s does not exist or it is not writable".formatted(directory));
+        }
+        this.directory = directory;
+        this.maxSizeBytesPerPartition = maxSizeBytesPerPartition;
+        this.drainerStopTimeout = drainerStopTimeout;
+    }
+
+    /**
+     * It will configure how to drain the journals, then it will hand to the given handler the records of the journals left by a previous process, deleting them.<br />
+     * The journals still locked by another process sharing the same directory are left untouched.
+     */
+    public synchronized void start(String name, Function<Message<byte[]>, Mono<?>> processor, Consumer<Message<byte[]>> onDiscarded, long pollMillis) {
+        if (this.processor != null) {
+            return;
+        }
+        this.name = name;
+        this.processor = processor;
+        this.onDiscarded = onDiscarded;
+        this.pollMillis = pollMillis;
+
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(directory, "*" + JOURNAL_EXTENSION)) {
+            for (Path path : journals) {
+                recover(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the spill journals directory " + directory, e);
+        }
+    }
+
+    private void recover(Path path) {
+        KafkaSpillJournal journal;
+        try {
+            journal = new KafkaSpillJournal(path, maxSizeBytesPerPartition);
+        } catch (IllegalStateException e) {
+            log.info("[KAFKA_SPILL_JOURNAL] Journal {} in use by another process, skipping its recovery", path);
+            return;
+        }
+        int discarded = journal.discardAndClose(drainerStopTimeout, onDiscarded);
+        delete(path);
+        log.warn("[KAFKA_SPILL_JOURNAL] Recovered journal {} left by a previous process: {} records discarded", path, discarded);
+    }
+
+    /** It will append the message to the journal of the given partition, opening it and starting its drainer if not already open */
+    public AppendResult append(TopicPartition partition, Message<byte[]> message) {
+        // the check of the revoked partitions is performed atomically with respect to the removal performed by onPartitionsRevoked
+        KafkaSpillJournal journal = partition2Journal.compute(partition, (p, current) -> {
+            if (current != null) {
+                return current;
+            }
+            return revokedPartitions.contains(p) ? null : open(p);
+        });
+        if (journal == null) {
+            return AppendResult.REVOKED;
+        } else if (journal.append(message)) {
+            return AppendResult.APPENDED;
+        } else {
+            return journal.isClosed() ? AppendResult.REVOKED : AppendResult.FULL;
+        }
+    }
+
+    private KafkaSpillJournal open(TopicPartition partition) {
+        KafkaSpillJournal journal = new KafkaSpillJournal(buildPath(partition), maxSizeBytesPerPartition);
+        synchronized (this) {
+            if (processor != null) {
+                journal.startDrainer("%s-%s".formatted(name, partition), processor, pollMillis);
+            }
+        }
+        return journal;
+    }
+
+    /** It will return true if the journal of the given partition has no record to drain */
+    public boolean isEmpty(TopicPartition partition) {
+        KafkaSpillJournal journal = partition2Journal.get(partition);
+        return journal == null || journal.isEmpty();
+    }
+
+    /** The bytes occupied by the records of all the journals not yet drained */
+    public long getSize() {
+        return partition2Journal.values().stream().mapToLong(KafkaSpillJournal::getSize).sum();
+    }
+
+    /**
+     * It will stop to drain the journals of the given partitions, handing their remaining records to the configured handler and deleting them.<br />
+     * Until the next {@link #onPartitionsAssigned(Collection)}, the records of these partitions will not be spilled.
+     */
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        revokedPartitions.addAll(partitions);
+        for (TopicPartition partition : partitions) {
+            KafkaSpillJournal journal = partition2Journal.remove(partition);
+            if (journal != null) {
+                int discarded = journal.discardAndClose(drainerStopTimeout, onDiscarded);
+                delete(buildPath(partition));
+                if (discarded > 0) {
+                    log.warn("[KAFKA_SPILL_JOURNAL] Partition {} revoked: {} records not yet drained have been discarded from its journal", partition, discarded);
+                }
+            }
+        }
+    }
+
+    /** It will allow again to spill the records of the given partitions */
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        revokedPartitions.removeAll(partitions);
+    }
+
+    @Override
+    public void close() {
+        partition2Journal.values().forEach(KafkaSpillJournal::close);
+        partition2Journal.clear();
+    }
+
+    private Path buildPath(TopicPartition partition) {
+        return directory.resolve(partition.topic() + "-" + partition.partition() + JOURNAL_EXTENSION);
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.error("[KAFKA_SPILL_JOURNAL] Cannot delete journal {}", path, e);
+        }
+    }
+}
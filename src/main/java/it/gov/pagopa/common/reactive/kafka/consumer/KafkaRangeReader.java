@@ -0,0 +1,157 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * It will read a bounded range of a topic through a dedicated consumer, without joining any consumer group and without committing any offset.<br />
+ * For each partition the range:
+ * <ul>
+ *     <li>starts from the given offset, or from the first offset having a timestamp greater or equal than the given one, otherwise from the beginning</li>
+ *     <li>ends (exclusive) to the given offset, or to the first offset having a timestamp greater or equal than the given one, otherwise to the end offset read when the range is subscribed</li>
+ * </ul>
+ * The records are emitted as {@link Message} having the same headers set by the binder (topic, partition, offset and key), while the record headers are decoded as UTF-8 strings.
+ */
+@Slf4j
+public class KafkaRangeReader {
+
+    private final Supplier<Consumer<byte[], byte[]>> consumerFactory;
+    private final Duration pollTimeout;
+
+    /** The range to read: if both offsets and timestamp are configured for the same bound, offsets will win */
+    public record Range(String topic, Map<Integer, Long> fromOffsets, Map<Integer, Long> toOffsets, Long fromTimestamp, Long toTimestamp) {}
+
+    public KafkaRangeReader(Supplier<Consumer<byte[], byte[]>> consumerFactory, Duration pollTimeout) {
+        this.consumerFactory = consumerFactory;
+        this.pollTimeout = pollTimeout;
+    }
+
+    /** It will read the configured range, polling the records on demand */
+    public Flux<Message<byte[]>> read(Range range) {
+        return Flux.using(
+                        consumerFactory::get,
+                        consumer -> {
+                            Map<TopicPartition, Long> endOffsets = seekRange(consumer, range);
+                            return Flux.<List<Message<byte[]>>>generate(sink -> {
+                                if (endOffsets.isEmpty()) {
+                                    sink.complete();
+                                } else {
+                                    sink.next(poll(consumer, endOffsets));
+                                }
+                            });
+                        },
+                        Consumer::close)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapIterable(Function.identity());
+    }
+
+    private Map<TopicPartition, Long> seekRange(Consumer<byte[], byte[]> consumer, Range range) {
+        List<TopicPartition> partitions = consumer.partitionsFor(range.topic()).stream()
+                .map(p -> new TopicPartition(p.topic(), p.partition()))
+                .toList();
+
+        Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(partitions);
+        Map<TopicPartition, Long> latestOffsets = consumer.endOffsets(partitions);
+        Map<TopicPartition, Long> fromTimestampOffsets = offsetsForTimes(consumer, partitions, range.fromTimestamp());
+        Map<TopicPartition, Long> toTimestampOffsets = offsetsForTimes(consumer, partitions, range.toTimestamp());
+
+        Map<TopicPartition, Long> startOffsets = new HashMap<>();
+        Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        for (TopicPartition tp : partitions) {
+            long latest = latestOffsets.get(tp);
+            long start = resolveBound(range.fromOffsets(), fromTimestampOffsets, tp, beginningOffsets.get(tp), latest);
+            long end = Math.min(latest, resolveBound(range.toOffsets(), toTimestampOffsets, tp, latest, latest));
+            if (start < end) {
+                startOffsets.put(tp, start);
+                endOffsets.put(tp, end);
+            }
+        }
+
+        log.info("[KAFKA_RANGE_READER] Reading topic {} from offsets {} to offsets {}", range.topic(), startOffsets, endOffsets);
+
+        consumer.assign(startOffsets.keySet());
+        startOffsets.forEach(consumer::seek);
+        return endOffsets;
+    }
+
+    private static long resolveBound(Map<Integer, Long> partition2Offset, Map<TopicPartition, Long> timestampOffsets, TopicPartition tp, long defaultOffset, long latestOffset) {
+        if (partition2Offset != null && !partition2Offset.isEmpty()) {
+            return partition2Offset.getOrDefault(tp.partition(), defaultOffset);
+        } else if (timestampOffsets != null) {
+            return timestampOffsets.getOrDefault(tp, latestOffset);
+        } else {
+            return defaultOffset;
+        }
+    }
+
+    private static Map<TopicPartition, Long> offsetsForTimes(Consumer<byte[], byte[]> consumer, List<TopicPartition> partitions, Long timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        Map<TopicPartition, Long> out = new HashMap<>();
+        consumer.offsetsForTimes(partitions.stream().collect(Collectors.toMap(Function.identity(), tp -> timestamp)))
+                .forEach((tp, offsetAndTimestamp) -> {
+                    if (offsetAndTimestamp != null) {
+                        out.put(tp, offsetAndTimestamp.offset());
+                    }
+                });
+        return out;
+    }
+
+    private List<Message<byte[]>> poll(Consumer<byte[], byte[]> consumer, Map<TopicPartition, Long> endOffsets) {
+        ConsumerRecords<byte[], byte[]> records = consumer.poll(pollTimeout);
+        List<Message<byte[]>> out = new ArrayList<>(records.count());
+        for (ConsumerRecord<byte[], byte[]> consumerRecord : records) {
+            Long end = endOffsets.get(new TopicPartition(consumerRecord.topic(), consumerRecord.partition()));
+            if (end != null && consumerRecord.offset() < end && consumerRecord.value() != null) {
+                out.add(toMessage(consumerRecord));
+            }
+        }
+
+        List<TopicPartition> completed = endOffsets.entrySet().stream()
+                .filter(e -> consumer.position(e.getKey()) >= e.getValue())
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!completed.isEmpty()) {
+            consumer.pause(completed);
+            completed.forEach(endOffsets::remove);
+            log.info("[KAFKA_RANGE_READER] Completed the reading of partitions {}", completed);
+        }
+        return out;
+    }
+
+    private static Message<byte[]> toMessage(ConsumerRecord<byte[], byte[]> consumerRecord) {
+        MessageBuilder<byte[]> builder = MessageBuilder.withPayload(consumerRecord.value());
+        for (Header header : consumerRecord.headers()) {
+            if (header.value() != null) {
+                builder.setHeader(header.key(), new String(header.value(), StandardCharsets.UTF_8));
+            }
+        }
+        return builder
+                .setHeader(KafkaHeaders.RECEIVED_TOPIC, consumerRecord.topic())
+                .setHeader(KafkaHeaders.RECEIVED_PARTITION, consumerRecord.partition())
+                .setHeader(KafkaHeaders.OFFSET, consumerRecord.offset())
+                .setHeader(KafkaHeaders.RECEIVED_TIMESTAMP, consumerRecord.timestamp())
+                .setHeader(KafkaHeaders.RECEIVED_KEY, consumerRecord.key())
+                .build();
+    }
+}
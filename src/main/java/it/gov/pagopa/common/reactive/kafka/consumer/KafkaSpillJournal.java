@@ -0,0 +1,372 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An append-only journal, memory-mapped on a local file of fixed size, where to spill the records which cannot be processed in time.<br />
+ * The records are stored together with their headers having a simple type (String, byte[], Integer or Long) and they are read back in the same order, surviving a process restart.<br />
+ * The first bytes of the file store the read and write positions; each record is stored as its length followed by its headers and its payload.
+ * When the journal is full, {@link #append(Message)} will return false: the space occupied by the records already read is reclaimed compacting the journal.<br />
+ * The file is locked while the journal is open, thus it cannot be opened by another process sharing the same volume.
+ */
+@Slf4j
+public class KafkaSpillJournal implements Closeable {
+
+    private static final int POSITIONS_SIZE = 2 * Long.BYTES;
+    private static final int READ_POSITION_INDEX = 0;
+    private static final int WRITE_POSITION_INDEX = Long.BYTES;
+
+    private static final byte TYPE_STRING = 'S';
+    private static final byte TYPE_BYTES = 'B';
+    private static final byte TYPE_INTEGER = 'I';
+    private static final byte TYPE_LONG = 'L';
+
+    private static final Duration DRAINER_STOP_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private int readPosition;
+    private int writePosition;
+
+    private Thread drainerThread;
+    private volatile boolean running = true;
+    private boolean closed;
+
+    /**
+     * @param path the file on which to store the journal, created together with its directories if not exists
+     * @param maxSizeBytes the size of the file, thus the maximum size of the journal
+     */
+    public KafkaSpillJournal(Path path, int maxSizeBytes) {
+        this.path = path;
+        this.capacity = maxSizeBytes;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.lock = tryLock(channel, path);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, maxSizeBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the spill journal " + path, e);
+        }
+
+        this.readPosition = (int) buffer.getLong(READ_POSITION_INDEX);
+        this.writePosition = (int) buffer.getLong(WRITE_POSITION_INDEX);
+        if (writePosition < POSITIONS_SIZE || writePosition > capacity || readPosition < POSITIONS_SIZE || readPosition > writePosition) {
+            readPosition = POSITIONS_SIZE;
+            writePosition = POSITIONS_SIZE;
+            storePositions();
+        }
+        log.info("[KAFKA_SPILL_JOURNAL] Opened journal {}: {} bytes to drain", path, writePosition - readPosition);
+    }
+
+    private static FileLock tryLock(FileChannel channel, Path path) throws IOException {
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            channel.close();
+            throw new IllegalStateException("The spill journal %s is already in use".formatted(path));
+        }
+        return fileLock;
+    }
+
+    /** It will append the given message to the journal, flushing it on disk. It will return false if there is no space or if the journal has been closed */
+    public synchronized boolean append(Message<byte[]> message) {
+        if (closed) {
+            return false;
+        }
+        byte[] entry = serialize(message);
+        int entrySize = Integer.BYTES + entry.length;
+        if (writePosition + entrySize > capacity) {
+            compact();
+            if (writePosition + entrySize > capacity) {
+                return false;
+            }
+        }
+
+        buffer.putInt(writePosition, entry.length);
+        buffer.put(writePosition + Integer.BYTES, entry);
+        buffer.force(writePosition, entrySize);
+        writePosition += entrySize;
+        storePositions();
+        return true;
+    }
+
+    /** It will return the oldest message not yet removed, or null if the journal is empty */
+    public synchronized Message<byte[]> peek() {
+        if (isEmpty()) {
+            return null;
+        }
+        int length = buffer.getInt(readPosition);
+        return deserialize(buffer.slice(readPosition + Integer.BYTES, length));
+    }
+
+    /** It will remove the oldest message */
+    public synchronized void remove() {
+        if (isEmpty()) {
+            return;
+        }
+        readPosition += Integer.BYTES + buffer.getInt(readPosition);
+        if (readPosition == writePosition) {
+            readPosition = POSITIONS_SIZE;
+            writePosition = POSITIONS_SIZE;
+        }
+        storePositions();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public synchronized boolean isEmpty() {
+        return readPosition == writePosition;
+    }
+
+    /** The bytes occupied by the messages not yet removed */
+    public synchronized int getSize() {
+        return writePosition - readPosition;
+    }
+
+    /**
+     * It will start a background thread which will process, in order, the messages of the journal, removing them once processed.<br />
+     * The processor should handle its own errors: a processing ended with an error will be logged and then the message will be removed anyway.
+     * A processing interrupted by {@link #stopDrainer(Duration)} will leave the message into the journal.
+     */
+    public synchronized void startDrainer(String name, Function<Message<byte[]>, Mono<?>> processor, long pollMillis) {
+        if (drainerThread != null || closed) {
+            return;
+        }
+        drainerThread = Thread.ofVirtual()
+                .name("spill-drainer-" + name)
+                .start(() -> drainLoop(processor, pollMillis));
+    }
+
+    private void drainLoop(Function<Message<byte[]>, Mono<?>> processor, long pollMillis) {
+        while (running) {
+            Message<byte[]> message = peek();
+            if (message == null) {
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                processor.apply(message).block();
+            } catch (Exception e) {
+                if (!running || Thread.currentThread().isInterrupted()) {
+                    log.info("[KAFKA_SPILL_JOURNAL] Drain of journal {} interrupted, leaving the message under processing into it", path);
+                    return;
+                }
+                log.error("[KAFKA_SPILL_JOURNAL] Something gone wrong while draining message from journal {}", path, e);
+            }
+            remove();
+        }
+    }
+
+    /**
+     * It will stop the drainer, waiting at most the given timeout for the end of the processing of the current message before to interrupt it.<br />
+     * Once returned, no message will be processed anymore.
+     */
+    public void stopDrainer(Duration timeout) {
+        running = false;
+        Thread thread;
+        synchronized (this) {
+            thread = drainerThread;
+        }
+        if (thread == null) {
+            return;
+        }
+        try {
+            if (!thread.join(timeout)) {
+                log.warn("[KAFKA_SPILL_JOURNAL] Drain of journal {} not completed within {}, interrupting it", path, timeout);
+                thread.interrupt();
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * It will stop the drainer and close the journal, handing to the given consumer, in order, the messages not yet drained and removing them.<br />
+     * Once returned, the journal will not accept any other message.
+     * @return the number of messages discarded
+     */
+    public int discardAndClose(Duration drainerStopTimeout, Consumer<Message<byte[]>> onDiscarded) {
+        stopDrainer(drainerStopTimeout);
+        synchronized (this) {
+            if (closed) {
+                return 0;
+            }
+            int discarded = 0;
+            for (Message<byte[]> message = peek(); message != null; message = peek()) {
+                onDiscarded.accept(message);
+                remove();
+                discarded++;
+            }
+            closeChannel();
+            return discarded;
+        }
+    }
+
+    @Override
+    public void close() {
+        stopDrainer(DRAINER_STOP_TIMEOUT);
+        synchronized (this) {
+            if (!closed) {
+                closeChannel();
+            }
+        }
+    }
+
+    private void closeChannel() {
+        closed = true;
+        buffer.force();
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            log.error("[KAFKA_SPILL_JOURNAL] Cannot close journal {}", path, e);
+        }
+    }
+
+    /** It will move the messages not yet removed to the beginning of the journal */
+    private void compact() {
+        if (readPosition == POSITIONS_SIZE) {
+            return;
+        }
+        int size = writePosition - readPosition;
+        buffer.put(POSITIONS_SIZE, buffer, readPosition, size);
+        buffer.force(POSITIONS_SIZE, size);
+        readPosition = POSITIONS_SIZE;
+        writePosition = POSITIONS_SIZE + size;
+        storePositions();
+    }
+
+    private void storePositions() {
+        buffer.putLong(READ_POSITION_INDEX, readPosition);
+        buffer.putLong(WRITE_POSITION_INDEX, writePosition);
+        buffer.force(0, POSITIONS_SIZE);
+    }
+
+    private static byte[] serialize(Message<byte[]> message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.getPayload().length + 256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            List<Map.Entry<String, Object>> headers = message.getHeaders().entrySet().stream()
+                    .filter(KafkaSpillJournal::isSerializable)
+                    .toList();
+            out.writeInt(headers.size());
+            for (Map.Entry<String, Object> header : headers) {
+                byte[] keyBytes = header.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(keyBytes.length);
+                out.write(keyBytes);
+                writeHeaderValue(out, header.getValue());
+            }
+            out.writeInt(message.getPayload().length);
+            out.write(message.getPayload());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static boolean isSerializable(Map.Entry<String, Object> header) {
+        Object value = header.getValue();
+        return !MessageHeaders.ID.equals(header.getKey()) && !MessageHeaders.TIMESTAMP.equals(header.getKey())
+                && (value instanceof String || value instanceof byte[] || value instanceof Integer || value instanceof Long);
+    }
+
+    private static void writeHeaderValue(DataOutputStream out, Object value) throws IOException {
+        switch (value) {
+            case String s -> {
+                byte[] stringBytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeByte(TYPE_STRING);
+                out.writeInt(stringBytes.length);
+                out.write(stringBytes);
+            }
+            case byte[] b -> {
+                out.writeByte(TYPE_BYTES);
+                out.writeInt(b.length);
+                out.write(b);
+            }
+            case Integer i -> {
+                out.writeByte(TYPE_INTEGER);
+                out.writeInt(i);
+            }
+            case Long l -> {
+                out.writeByte(TYPE_LONG);
+                out.writeLong(l);
+            }
+            default -> throw new IllegalArgumentException("Unsupported header type " + value.getClass());
+        }
+    }
+
+    private static Message<byte[]> deserialize(ByteBuffer entry) {
+        int headersCount = entry.getInt();
+        Map<String, Object> headers = new HashMap<>(headersCount);
+        for (int i = 0; i < headersCount; i++) {
+            byte[] keyBytes = new byte[entry.getShort() & 0xFFFF];
+            entry.get(keyBytes);
+            headers.put(new String(keyBytes, StandardCharsets.UTF_8), readHeaderValue(entry));
+        }
+        byte[] payload = new byte[entry.getInt()];
+        entry.get(payload);
+        return MessageBuilder.withPayload(payload).copyHeaders(headers).build();
+    }
+
+    private static Object readHeaderValue(ByteBuffer entry) {
+        byte type = entry.get();
+        return switch (type) {
+            case TYPE_STRING -> {
+                byte[] stringBytes = new byte[entry.getInt()];
+                entry.get(stringBytes);
+                yield new String(stringBytes, StandardCharsets.UTF_8);
+            }
+            case TYPE_BYTES -> {
+                byte[] b = new byte[entry.getInt()];
+                entry.get(b);
+                yield b;
+            }
+            case TYPE_INTEGER -> entry.getInt();
+            case TYPE_LONG -> entry.getLong();
+            default -> throw new IllegalStateException("Unexpected header type " + type);
+        };
+    }
+}
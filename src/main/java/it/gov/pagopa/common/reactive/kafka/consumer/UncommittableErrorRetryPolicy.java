@@ -0,0 +1,15 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import java.time.Duration;
+
+/**
+ * The policy used by {@link BaseKafkaConsumer} to retry a message whose processing failed with an error which doesn't allow to commit it.
+ * @param maxAttempts the maximum number of retries
+ * @param minBackoff the delay before the first retry, doubled at each attempt
+ * @param maxBackoff the upper bound of the delay between two attempts
+ * @param jitter the jitter factor (between 0 and 1) applied to each delay
+ * @param maxElapsed the maximum time spent retrying, after which no more attempts are performed; if zero, it's not bounded
+ */
+public record UncommittableErrorRetryPolicy(long maxAttempts, Duration minBackoff, Duration maxBackoff, double jitter, Duration maxElapsed) {
+    public static final UncommittableErrorRetryPolicy DEFAULT = new UncommittableErrorRetryPolicy(10, Duration.ofMillis(200), Duration.ofSeconds(30), 0.5, Duration.ofMinutes(5));
+}
@@ -0,0 +1,171 @@
+package it.gov.pagopa.common.reactive.kafka.producer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.cloud.stream.binder.kafka.common.BinderHeaderMapper;
+import org.springframework.kafka.support.KafkaHeaderMapper;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * It will publish messages on a topic through a dedicated producer, grouping them in batches closed when reaching a size or a linger time.<br />
+ * Each batch is handed to the producer on a dedicated thread, which preserves the order of the records and never blocks the callers; at most <i>maxInFlightBatches</i> batches wait for the broker acknowledgement,
+ * after that no more messages are requested from the source.<br />
+ * The single messages published through {@link #send(Message)} are queued and batched together: when more than <i>maxPending</i> messages are waiting, the send fails immediately.<br />
+ * The producer is created at the first publication. The headers of the messages are mapped as the binder does, through its {@link BinderHeaderMapper}:
+ * in this way the binder consumers will read them with their original types. The {@link KafkaHeaders#KEY} header is used as record key.
+ */
+@Slf4j
+public class KafkaBatchPublisher implements Closeable {
+
+    private final Supplier<Producer<String, byte[]>> producerFactory;
+    private final String topic;
+    private final int batchSize;
+    private final Duration linger;
+    private final int maxInFlightBatches;
+    private final Scheduler sendScheduler;
+    private final KafkaHeaderMapper headerMapper = new BinderHeaderMapper();
+
+    private final Sinks.Many<PendingSend> pendingSends;
+    private final Disposable pendingSendsSubscription;
+
+    private volatile Producer<String, byte[]> producer;
+
+    /** The outcome of the publication of a source: when not sent, the exception will describe the cause */
+    public record SendResult<T>(T source, RecordMetadata metadata, Exception exception) {
+        public boolean isSent() {
+            return exception == null;
+        }
+    }
+
+    private record PendingSend(Message<byte[]> message, Sinks.One<SendResult<PendingSend>> result) {}
+
+    public KafkaBatchPublisher(Supplier<Producer<String, byte[]>> producerFactory, String topic, int batchSize, Duration linger, int maxInFlightBatches, int maxPending) {
+        this.producerFactory = producerFactory;
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.linger = linger;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.sendScheduler = Schedulers.newSingle("kafka-publisher-" + topic);
+
+        this.pendingSends = Sinks.many().unicast().onBackpressureBuffer(Queues.<PendingSend>get(maxPending).get());
+        this.pendingSendsSubscription = publish(pendingSends.asFlux(), PendingSend::message)
+                .subscribe(r -> r.source().result().tryEmitValue(r));
+    }
+
+    /** It will publish the given sources, emitting the outcome of each of them in the same order */
+    public <T> Flux<SendResult<T>> publish(Flux<T> sources, Function<T, Message<byte[]>> encoder) {
+        return sources
+                .bufferTimeout(batchSize, linger, true)
+                .flatMapSequential(batch -> sendBatch(batch, encoder), maxInFlightBatches)
+                .flatMapIterable(Function.identity());
+    }
+
+    /** It will publish the given message together with the other pending ones, completing when acknowledged by the broker */
+    public Mono<RecordMetadata> send(Message<byte[]> message) {
+        return Mono.defer(() -> {
+                    PendingSend pending = new PendingSend(message, Sinks.one());
+                    Sinks.EmitResult emitResult;
+                    do {
+                        emitResult = pendingSends.tryEmitNext(pending);
+                    } while (emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+
+                    if (emitResult.isFailure()) {
+                        return Mono.error(new IllegalStateException("Cannot enqueue message on topic %s: %s".formatted(topic, emitResult)));
+                    }
+                    return pending.result().asMono();
+                })
+                .flatMap(r -> r.isSent() ? Mono.just(r.metadata()) : Mono.error(r.exception()));
+    }
+
+    /**
+     * When the producer cannot accept a record within its <i>max.block.ms</i> (e.g. because the broker is unreachable),
+     * the remaining records of the batch will fail with the same error without waiting for each of them
+     */
+    private <T> Mono<List<SendResult<T>>> sendBatch(List<T> batch, Function<T, Message<byte[]>> encoder) {
+        return Mono.fromCallable(() -> {
+                    List<CompletableFuture<SendResult<T>>> futures = new ArrayList<>(batch.size());
+                    Exception producerError = null;
+                    for (T source : batch) {
+                        CompletableFuture<SendResult<T>> result = producerError == null
+                                ? sendRecord(source, encoder)
+                                : CompletableFuture.completedFuture(new SendResult<>(source, null, producerError));
+                        futures.add(result);
+
+                        SendResult<T> immediateResult = result.getNow(null);
+                        if (immediateResult != null && immediateResult.exception() instanceof TimeoutException) {
+                            producerError = immediateResult.exception();
+                        }
+                    }
+                    return futures;
+                })
+                .subscribeOn(sendScheduler)
+                .flatMap(futures -> Mono.fromFuture(CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)))
+                        .then(Mono.fromSupplier(() -> futures.stream().map(CompletableFuture::join).toList())));
+    }
+
+    private <T> CompletableFuture<SendResult<T>> sendRecord(T source, Function<T, Message<byte[]>> encoder) {
+        CompletableFuture<SendResult<T>> result = new CompletableFuture<>();
+        try {
+            getProducer().send(toRecord(encoder.apply(source)),
+                    (metadata, exception) -> result.complete(new SendResult<>(source, metadata, exception)));
+        } catch (Exception e) {
+            log.error("[KAFKA_BATCH_PUBLISHER] Cannot send record on topic {}", topic, e);
+            result.complete(new SendResult<>(source, null, e));
+        }
+        return result;
+    }
+
+    private ProducerRecord<String, byte[]> toRecord(Message<byte[]> message) {
+        RecordHeaders headers = new RecordHeaders();
+        headerMapper.fromHeaders(message.getHeaders(), headers);
+        Object key = message.getHeaders().get(KafkaHeaders.KEY);
+        return new ProducerRecord<>(topic, null, key != null ? key.toString() : null, message.getPayload(), headers);
+    }
+
+    private Producer<String, byte[]> getProducer() {
+        Producer<String, byte[]> current = producer;
+        if (current == null) {
+            synchronized (this) {
+                if (producer == null) {
+                    producer = producerFactory.get();
+                }
+                current = producer;
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public void close() {
+        pendingSendsSubscription.dispose();
+        sendScheduler.dispose();
+        Producer<String, byte[]> current;
+        synchronized (this) {
+            current = producer;
+            producer = null;
+        }
+        if (current != null) {
+            current.close(Duration.ofSeconds(10));
+        }
+    }
+}
@@ -5,11 +5,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 import reactor.util.retry.Retry;
 import reactor.util.retry.Retry.RetrySignal;
 import reactor.util.retry.RetrySpec;
 
 import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -21,20 +24,31 @@ public class MongoRequestRateTooLargeRetryer {
 
     private static final Pattern RETRY_AFTER_MS_PATTERN = Pattern.compile("RetryAfterMs=(\\d+)");
 
+    /** The key of the Reactor context entry holding the {@link Consumer} to notify each time a RequestRateTooLarge error occurs */
+    public static final String REQUEST_RATE_TOO_LARGE_LISTENER_CONTEXT_KEY = "MONGO_REQUEST_RATE_TOO_LARGE_LISTENER";
+
+    /** To be notified each time a RequestRateTooLarge error occurs inside the given publisher, receiving the RetryAfterMs suggested by the server, if any */
+    public static <T> Mono<T> withRequestRateTooLargeListener(Mono<T> publisher, Consumer<Long> listener) {
+        return publisher.contextWrite(ctx -> ctx.put(REQUEST_RATE_TOO_LARGE_LISTENER_CONTEXT_KEY, listener));
+    }
+
     public static <T> Mono<T> withRetry(String flowName, Mono<T> publisher, long maxRetry, long maxMillisElapsed){
-        return publisher.retryWhen( buildRetry(flowName, maxRetry, maxMillisElapsed, System.currentTimeMillis()));
+        return Mono.deferContextual(ctx -> publisher.retryWhen( buildRetry(flowName, maxRetry, maxMillisElapsed, System.currentTimeMillis(), ctx)));
     }
 
     public static <T> Flux<T> withRetry(String flowName, Flux<T> publisher, long maxRetry, long maxMillisElapsed){
-        return publisher.retryWhen( buildRetry(flowName, maxRetry, maxMillisElapsed, System.currentTimeMillis()));
+        return Flux.deferContextual(ctx -> publisher.retryWhen( buildRetry(flowName, maxRetry, maxMillisElapsed, System.currentTimeMillis(), ctx)));
     }
 
-    private static Retry buildRetry(String flowName, long maxRetry, long maxMillisElapsed, long startTime) {
+    @SuppressWarnings("unchecked")
+    private static Retry buildRetry(String flowName, long maxRetry, long maxMillisElapsed, long startTime, ContextView ctx) {
+        Optional<Consumer<Long>> requestRateTooLargeListener = ctx.getOrEmpty(REQUEST_RATE_TOO_LARGE_LISTENER_CONTEXT_KEY);
         Long[] retryAfterMs = {null};
         return buildBaseRetry(maxRetry)
                 .filter(MongoRequestRateTooLargeRetryer::isRequestRateTooLargeException)
                 .doBeforeRetryAsync(e -> {
                     retryAfterMs[0] = getRetryAfterMs(e.failure());
+                    requestRateTooLargeListener.ifPresent(l -> l.accept(retryAfterMs[0]));
                     long millisElapsed = System.currentTimeMillis() - startTime;
                     final long counter = e.totalRetries() + 1;
 
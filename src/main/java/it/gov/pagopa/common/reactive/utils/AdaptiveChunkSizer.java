@@ -0,0 +1,91 @@
+package it.gov.pagopa.common.reactive.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * It will adapt the size of the chunks of a bulk operation, and the pause between two consecutive chunks, to the observed database pressure:
+ * <ul>
+ *     <li>each chunk completed within the target latency will raise the size of a quarter, pausing the base time before the next one</li>
+ *     <li>each chunk slower than the target latency will multiply the size by the configured backoff ratio, extending the pause of the exceeding latency</li>
+ *     <li>each throttling signal (see {@link #onThrottled(Long)}) will multiply the size by the configured backoff ratio, pausing at least the time suggested by the server</li>
+ * </ul>
+ * The size is decreased at most once for each chunk, in order to not collapse it due to a burst of signals caused by the same overload.
+ */
+@Slf4j
+public class AdaptiveChunkSizer {
+
+    private static final int GROWTH_DIVISOR = 4;
+
+    private final String flowName;
+    private final int minSize;
+    private final int maxSize;
+    private final double backoffRatio;
+    private final long targetLatencyMillis;
+    private final long basePauseMillis;
+    private final long throttledPauseMillis;
+
+    private int size;
+    private boolean decreasedInCurrentChunk;
+    private long throttledPause;
+
+    /**
+     * @param flowName name used for logging purpose
+     * @param initialSize the size to start with
+     * @param minSize the lower bound of the size
+     * @param maxSize the upper bound of the size
+     * @param backoffRatio the ratio (between 0 and 1) by which multiply the size when decreasing it
+     * @param targetLatencyMillis the latency over which a chunk is considered as an overload signal
+     * @param basePauseMillis the pause between two chunks completed within the target latency
+     * @param throttledPauseMillis the pause after a throttling signal not suggesting a retry time
+     */
+    public AdaptiveChunkSizer(String flowName, int initialSize, int minSize, int maxSize, double backoffRatio, long targetLatencyMillis, long basePauseMillis, long throttledPauseMillis) {
+        if (minSize < 1 || maxSize < minSize || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid AdaptiveChunkSizer configuration: minSize %d, maxSize %d, backoffRatio %s".formatted(minSize, maxSize, backoffRatio));
+        }
+        this.flowName = flowName;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.backoffRatio = backoffRatio;
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.basePauseMillis = basePauseMillis;
+        this.throttledPauseMillis = throttledPauseMillis;
+        this.size = Math.clamp(initialSize, minSize, maxSize);
+    }
+
+    /** The size of the next chunk */
+    public synchronized int getChunkSize() {
+        return size;
+    }
+
+    /** It will update the size based on the latency of the completed chunk, returning the milliseconds to wait before the next one */
+    public synchronized long onChunkCompleted(long latencyMillis) {
+        long pause = basePauseMillis;
+        if (targetLatencyMillis > 0 && latencyMillis > targetLatencyMillis) {
+            decrease("latency %d ms".formatted(latencyMillis));
+            pause += latencyMillis - targetLatencyMillis;
+        } else if (throttledPause == 0) {
+            size = Math.min(maxSize, size + Math.max(1, size / GROWTH_DIVISOR));
+        }
+        pause = Math.max(pause, throttledPause);
+
+        decreasedInCurrentChunk = false;
+        throttledPause = 0;
+        return pause;
+    }
+
+    /** To signal a throttling error, it will decrease the size returning the milliseconds to wait before retrying */
+    public synchronized long onThrottled(Long retryAfterMs) {
+        decrease("throttled, RetryAfterMs %s".formatted(retryAfterMs));
+        throttledPause = Math.max(throttledPause, retryAfterMs != null ? retryAfterMs : throttledPauseMillis);
+        return throttledPause;
+    }
+
+    private void decrease(String reason) {
+        if (!decreasedInCurrentChunk) {
+            decreasedInCurrentChunk = true;
+            int oldSize = size;
+            size = Math.max(minSize, (int) (size * backoffRatio));
+            log.info("[ADAPTIVE_CHUNK_SIZE][{}] Decreasing chunk size from {} to {} due to {}", flowName, oldSize, size, reason);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package it.gov.pagopa.common.reactive.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * It will limit the number of concurrent executions through an AIMD (additive increase, multiplicative decrease) algorithm:
+ * <ul>
+ *     <li>each execution completed within the configured latency threshold will raise the limit of 1/limit, thus of 1 each limit executions</li>
+ *     <li>each execution slower than the latency threshold, or each throttling signal (see {@link #onThrottled(Long)}), will multiply the limit by the configured backoff ratio</li>
+ * </ul>
+ * Consecutive decreases are applied at most once for each cooldown period, in order to not collapse the limit due to a burst of signals caused by the same overload.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final String flowName;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdMillis;
+    private final long decreaseCooldownMillis;
+
+    private final Deque<MonoSink<Void>> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseTime;
+
+    /**
+     * @param flowName name used for logging purpose
+     * @param initialLimit the limit to start with
+     * @param minLimit the lower bound of the limit
+     * @param maxLimit the upper bound of the limit
+     * @param backoffRatio the ratio (between 0 and 1) by which multiply the limit when decreasing it
+     * @param latencyThresholdMillis the latency over which an execution is considered as an overload signal
+     * @param decreaseCooldownMillis the minimum time between two consecutive decreases
+     */
+    public AdaptiveConcurrencyLimiter(String flowName, int initialLimit, int minLimit, int maxLimit, double backoffRatio, long latencyThresholdMillis, long decreaseCooldownMillis) {
+        if (minLimit < 1 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid AdaptiveConcurrencyLimiter configuration: minLimit %d, maxLimit %d, backoffRatio %s".formatted(minLimit, maxLimit, backoffRatio));
+        }
+        this.flowName = flowName;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdMillis = latencyThresholdMillis;
+        this.decreaseCooldownMillis = decreaseCooldownMillis;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+    /** It will complete when a permit is available: the caller must invoke {@link #release(long)} at the end of its execution */
+    public Mono<Void> acquire() {
+        return Mono.create(sink -> {
+            boolean granted;
+            synchronized (this) {
+                granted = inFlight < getLimit();
+                if (granted) {
+                    inFlight++;
+                } else {
+                    waiting.addLast(sink);
+                }
+            }
+            if (granted) {
+                sink.success();
+            } else {
+                sink.onCancel(() -> {
+                    synchronized (this) {
+                        waiting.remove(sink);
+                    }
+                });
+            }
+        });
+    }
+
+    /** It will release a permit, updating the limit based on the latency of the execution */
+    public void release(long latencyMillis) {
+        List<MonoSink<Void>> toGrant;
+        synchronized (this) {
+            inFlight--;
+            if (latencyThresholdMillis > 0 && latencyMillis > latencyThresholdMillis) {
+                decrease("latency %d ms".formatted(latencyMillis));
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            toGrant = pollGrantable();
+        }
+        toGrant.forEach(MonoSink::success);
+    }
+
+    /** To signal a throttling error, it will decrease the limit */
+    public void onThrottled(Long retryAfterMs) {
+        synchronized (this) {
+            decrease("throttled, RetryAfterMs %s".formatted(retryAfterMs));
+        }
+    }
+
+    private void decrease(String reason) {
+        long now = System.currentTimeMillis();
+        if (now - lastDecreaseTime >= decreaseCooldownMillis) {
+            lastDecreaseTime = now;
+            double oldLimit = limit;
+            limit = Math.max(minLimit, limit * backoffRatio);
+            log.info("[ADAPTIVE_CONCURRENCY][{}] Decreasing limit from {} to {} due to {}", flowName, (int) oldLimit, (int) limit, reason);
+        }
+    }
+
+    private List<MonoSink<Void>> pollGrantable() {
+        List<MonoSink<Void>> out = new ArrayList<>();
+        while (!waiting.isEmpty() && inFlight < getLimit()) {
+            inFlight++;
+            out.add(waiting.pollFirst());
+        }
+        return out;
+    }
+
+    /** The current limit */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /** The current number of executions holding a permit */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,85 @@
+package it.gov.pagopa.common.reactive.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * It will collect the submitted elements into micro-batches bounded by size and time, invoking the configured flush function once for each batch.
+ * Each {@link #submit(Object)} call will complete only when the batch containing its element has been flushed:
+ * <ul>
+ *     <li>successfully, if the flush function didn't report an error for its index</li>
+ *     <li>with the error reported for its index, or with the error of the whole flush</li>
+ * </ul>
+ * Batches are flushed sequentially, thus the order of submission is preserved.
+ * @param <T> The type of the element to collect
+ */
+@Slf4j
+public class ReactiveMicroBatcher<T> {
+
+    private final String flowName;
+    private final Function<List<T>, Mono<Map<Integer, Throwable>>> flushFunction;
+
+    private final Sinks.Many<PendingElement<T>> sink = Sinks.many().unicast().onBackpressureBuffer();
+
+    record PendingElement<T>(T element, MonoSink<T> callback) {}
+
+    /**
+     * @param flowName name used for logging purpose
+     * @param maxSize the maximum number of elements to flush together
+     * @param maxWait the maximum time to wait before to flush a not completed batch
+     * @param flushFunction the function to invoke in order to flush a batch; it should return the errors occurred on single elements, indexed by their position inside the batch
+     */
+    public ReactiveMicroBatcher(String flowName, int maxSize, Duration maxWait, Function<List<T>, Mono<Map<Integer, Throwable>>> flushFunction) {
+        this.flowName = flowName;
+        this.flushFunction = flushFunction;
+
+        sink.asFlux()
+                .bufferTimeout(maxSize, maxWait)
+                .concatMap(this::flush)
+                .subscribe();
+    }
+
+    /** It will enqueue the element, returning a {@link Mono} completed when the element has been flushed */
+    public Mono<T> submit(T element) {
+        return Mono.create(callback ->
+                sink.emitNext(new PendingElement<>(element, callback), Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1))));
+    }
+
+    private Mono<Void> flush(List<PendingElement<T>> batch) {
+        long startTime = System.currentTimeMillis();
+        List<T> elements = batch.stream().map(PendingElement::element).toList();
+
+        return Mono.defer(() -> flushFunction.apply(elements))
+                .defaultIfEmpty(Map.of())
+                .doOnNext(errors -> {
+                    PerformanceLogger.logTiming(flowName, startTime, "flushed %d elements with %d errors".formatted(batch.size(), errors.size()));
+                    for (int i = 0; i < batch.size(); i++) {
+                        PendingElement<T> pending = batch.get(i);
+                        Throwable error = errors.get(i);
+                        if (error == null) {
+                            pending.callback().success(pending.element());
+                        } else {
+                            pending.callback().error(error);
+                        }
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.error("[{}] Something gone wrong while flushing {} elements", flowName, batch.size(), e);
+                    batch.forEach(pending -> pending.callback().error(e));
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /** It will stop to collect elements, flushing the pending ones */
+    public void dispose() {
+        sink.tryEmitComplete();
+    }
+}
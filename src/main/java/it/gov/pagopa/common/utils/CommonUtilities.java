@@ -1,21 +1,24 @@
 package it.gov.pagopa.common.utils;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectReader;
 import org.springframework.messaging.Message;
 
+import java.io.IOException;
 import java.util.function.Consumer;
 
 
 public final class CommonUtilities {
     private CommonUtilities(){}
 
-    /** It will try to deserialize a message, eventually notifying the error  */
+    /** It will try to deserialize a message, eventually notifying the error. A byte[] payload is parsed as is, without building an intermediate String  */
     public static <T> T deserializeMessage(Message<?> message, ObjectReader objectReader, Consumer<Throwable> onError) {
         try {
-            String payload = readMessagePayload(message);
-            return objectReader.readValue(payload);
-        } catch (JsonProcessingException e) {
+            if(message.getPayload() instanceof byte[] bytes){
+                return objectReader.readValue(bytes);
+            } else {
+                return objectReader.readValue(message.getPayload().toString());
+            }
+        } catch (IOException e) {
             onError.accept(e);
             return null;
         }
@@ -0,0 +1,37 @@
+package it.gov.pagopa.idpay.transactions.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.gov.pagopa.common.reactive.utils.AdaptiveConcurrencyLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class KafkaConsumerConcurrencyConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.transactions.consumer.adaptive-concurrency.enabled", havingValue = "true")
+    public AdaptiveConcurrencyLimiter transactionConsumerConcurrencyLimiter(
+            @Value("${app.transactions.consumer.adaptive-concurrency.initial-limit}") int initialLimit,
+            @Value("${app.transactions.consumer.adaptive-concurrency.min-limit}") int minLimit,
+            @Value("${app.transactions.consumer.adaptive-concurrency.max-limit}") int maxLimit,
+            @Value("${app.transactions.consumer.adaptive-concurrency.backoff-ratio}") double backoffRatio,
+            @Value("${app.transactions.consumer.adaptive-concurrency.latency-threshold-millis}") long latencyThresholdMillis,
+            @Value("${app.transactions.consumer.adaptive-concurrency.decrease-cooldown-millis}") long decreaseCooldownMillis,
+            MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("TRANSACTION", initialLimit, minLimit, maxLimit, backoffRatio, latencyThresholdMillis, decreaseCooldownMillis);
+
+        Gauge.builder("idpay.kafka.consumer.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("The current limit of records concurrently processed by the consumer")
+                .tag("flow", "TRANSACTION")
+                .register(meterRegistry);
+        Gauge.builder("idpay.kafka.consumer.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("The number of records currently processed by the consumer")
+                .tag("flow", "TRANSACTION")
+                .register(meterRegistry);
+
+        return limiter;
+    }
+}
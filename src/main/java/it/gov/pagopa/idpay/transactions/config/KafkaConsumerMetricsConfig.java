@@ -0,0 +1,24 @@
+package it.gov.pagopa.idpay.transactions.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaConsumerMetrics;
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaPartitionPauser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class KafkaConsumerMetricsConfig {
+
+    @Bean
+    public KafkaConsumerMetrics transactionConsumerMetrics(
+            @Value("${app.kafka.consumer.metrics.target-drain-seconds}") long targetDrainSeconds,
+            @Value("${app.kafka.consumer.metrics.rate-window-seconds}") long rateWindowSeconds,
+            KafkaPartitionPauser partitionPauser,
+            MeterRegistry meterRegistry) {
+        return new KafkaConsumerMetrics("TRANSACTION", "rewardTrxConsumer-in-0", meterRegistry, partitionPauser::getRecordsLag,
+                Duration.ofSeconds(targetDrainSeconds), Duration.ofSeconds(rateWindowSeconds));
+    }
+}
@@ -0,0 +1,22 @@
+package it.gov.pagopa.idpay.transactions.config;
+
+import it.gov.pagopa.common.reactive.kafka.consumer.UncommittableErrorRetryPolicy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class KafkaConsumerRetryConfig {
+
+    @Bean
+    public UncommittableErrorRetryPolicy uncommittableErrorRetryPolicy(
+            @Value("${app.kafka.consumer.retry.max-attempts}") long maxAttempts,
+            @Value("${app.kafka.consumer.retry.min-backoff-millis}") long minBackoffMillis,
+            @Value("${app.kafka.consumer.retry.max-backoff-millis}") long maxBackoffMillis,
+            @Value("${app.kafka.consumer.retry.jitter}") double jitter,
+            @Value("${app.kafka.consumer.retry.max-elapsed-millis}") long maxElapsedMillis) {
+        return new UncommittableErrorRetryPolicy(maxAttempts, Duration.ofMillis(minBackoffMillis), Duration.ofMillis(maxBackoffMillis), jitter, Duration.ofMillis(maxElapsedMillis));
+    }
+}
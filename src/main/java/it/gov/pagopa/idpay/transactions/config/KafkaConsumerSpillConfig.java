@@ -0,0 +1,48 @@
+package it.gov.pagopa.idpay.transactions.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaPartitionSpillJournals;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class KafkaConsumerSpillConfig {
+
+    /**
+     * The spilled records are already committed, thus the journals should survive the restart of the pod: the directory should be the mount of a persistent volume,
+     * otherwise the application will refuse to start
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.transactions.consumer.spill.enabled", havingValue = "true")
+    public KafkaPartitionSpillJournals transactionConsumerSpillJournals(
+            @Value("${app.transactions.consumer.spill.dir}") String dir,
+            @Value("${app.transactions.consumer.spill.max-size-bytes}") int maxSizeBytes,
+            @Value("${app.transactions.consumer.spill.drain-stop-timeout-millis}") long drainStopTimeoutMillis,
+            MeterRegistry meterRegistry) {
+        if (!StringUtils.hasText(dir)) {
+            throw new IllegalStateException("Cannot enable the spill of the transaction consumer without configuring app.transactions.consumer.spill.dir on a persistent volume");
+        }
+        Path directory = Path.of(dir).toAbsolutePath().normalize();
+        Path tmpDirectory = Path.of(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize();
+        if (directory.startsWith(tmpDirectory)) {
+            throw new IllegalStateException("Cannot enable the spill of the transaction consumer on the temporary directory %s: configure a persistent volume".formatted(directory));
+        }
+
+        KafkaPartitionSpillJournals journals = new KafkaPartitionSpillJournals(directory, maxSizeBytes, Duration.ofMillis(drainStopTimeoutMillis));
+
+        Gauge.builder("idpay.kafka.consumer.spill.size", journals, KafkaPartitionSpillJournals::getSize)
+                .description("The bytes of the records spilled to the local journals and not yet drained")
+                .tag("flow", "TRANSACTION")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        return journals;
+    }
+}
@@ -0,0 +1,51 @@
+package it.gov.pagopa.idpay.transactions.config;
+
+import it.gov.pagopa.common.reactive.kafka.producer.KafkaBatchPublisher;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.config.SaslConfigs;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class KafkaPublisherConfig {
+
+    /** The publisher of the transaction outcomes: it will use its own producer, created at the first publication */
+    @Bean(destroyMethod = "close")
+    public KafkaBatchPublisher transactionOutcomePublisher(
+            @Value("${app.transactions.outcome.publisher.topic}") String topic,
+            @Value("${app.transactions.outcome.publisher.brokers}") String brokers,
+            @Value("${app.transactions.outcome.publisher.security-protocol}") String securityProtocol,
+            @Value("${app.transactions.outcome.publisher.sasl-mechanism}") String saslMechanism,
+            @Value("${app.transactions.outcome.publisher.sasl-jaas-config}") String saslJaasConfig,
+            @Value("${app.transactions.outcome.publisher.linger-ms}") int lingerMs,
+            @Value("${app.transactions.outcome.publisher.batch-size-bytes}") int batchSizeBytes,
+            @Value("${app.transactions.outcome.publisher.batch-records}") int batchRecords,
+            @Value("${app.transactions.outcome.publisher.batch-wait-millis}") long batchWaitMillis,
+            @Value("${app.transactions.outcome.publisher.max-in-flight-batches}") int maxInFlightBatches,
+            @Value("${app.transactions.outcome.publisher.max-pending}") int maxPending) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, brokers);
+        props.put(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, securityProtocol);
+        props.put(SaslConfigs.SASL_MECHANISM, saslMechanism);
+        if (StringUtils.isNotBlank(saslJaasConfig)) {
+            props.put(SaslConfigs.SASL_JAAS_CONFIG, saslJaasConfig);
+        }
+        props.put(ProducerConfig.CLIENT_ID_CONFIG, "transactionOutcomePublisher");
+        props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSizeBytes);
+
+        return new KafkaBatchPublisher(
+                () -> new KafkaProducer<>(props, new StringSerializer(), new ByteArraySerializer()),
+                topic, batchRecords, Duration.ofMillis(batchWaitMillis), maxInFlightBatches, maxPending);
+    }
+}
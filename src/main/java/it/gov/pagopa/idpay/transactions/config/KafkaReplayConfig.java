@@ -0,0 +1,61 @@
+package it.gov.pagopa.idpay.transactions.config;
+
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaRangeReader;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.config.SaslConfigs;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class KafkaReplayConfig {
+
+    /** The reader used to replay the transaction topic: each replay will open its own consumer, outside of any consumer group */
+    @Bean
+    public KafkaRangeReader transactionReplayRangeReader(
+            @Value("${app.transactions.replay.brokers}") String brokers,
+            @Value("${app.transactions.replay.security-protocol}") String securityProtocol,
+            @Value("${app.transactions.replay.sasl-mechanism}") String saslMechanism,
+            @Value("${app.transactions.replay.sasl-jaas-config}") String saslJaasConfig,
+            @Value("${app.transactions.replay.max-poll-records}") int maxPollRecords,
+            @Value("${app.transactions.replay.poll-timeout-millis}") long pollTimeoutMillis) {
+        return buildRangeReader("transactionReplay", brokers, securityProtocol, saslMechanism, saslJaasConfig, maxPollRecords, pollTimeoutMillis);
+    }
+
+    /** The reader used to replay the error topic: each replay will open its own consumer, outside of any consumer group */
+    @Bean
+    public KafkaRangeReader errorReplayRangeReader(
+            @Value("${app.kafka.error-replay.brokers}") String brokers,
+            @Value("${app.kafka.error-replay.security-protocol}") String securityProtocol,
+            @Value("${app.kafka.error-replay.sasl-mechanism}") String saslMechanism,
+            @Value("${app.kafka.error-replay.sasl-jaas-config}") String saslJaasConfig,
+            @Value("${app.kafka.error-replay.max-poll-records}") int maxPollRecords,
+            @Value("${app.kafka.error-replay.poll-timeout-millis}") long pollTimeoutMillis) {
+        return buildRangeReader("errorReplay", brokers, securityProtocol, saslMechanism, saslJaasConfig, maxPollRecords, pollTimeoutMillis);
+    }
+
+    private static KafkaRangeReader buildRangeReader(String clientId, String brokers, String securityProtocol, String saslMechanism, String saslJaasConfig, int maxPollRecords, long pollTimeoutMillis) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, brokers);
+        props.put(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, securityProtocol);
+        props.put(SaslConfigs.SASL_MECHANISM, saslMechanism);
+        if (StringUtils.isNotBlank(saslJaasConfig)) {
+            props.put(SaslConfigs.SASL_JAAS_CONFIG, saslJaasConfig);
+        }
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+
+        return new KafkaRangeReader(
+                () -> new KafkaConsumer<>(props, new ByteArrayDeserializer(), new ByteArrayDeserializer()),
+                Duration.ofMillis(pollTimeoutMillis));
+    }
+}
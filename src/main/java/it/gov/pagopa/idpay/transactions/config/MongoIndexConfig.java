@@ -0,0 +1,83 @@
+package it.gov.pagopa.idpay.transactions.config;
+
+import it.gov.pagopa.idpay.transactions.model.CommandJob;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterMarker;
+import it.gov.pagopa.idpay.transactions.model.TransactionOutbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * It will ensure, once the application is ready and without delaying it, the indexes required by the queries of the collections owned by this service.<br />
+ * The creation of an index already existing with the same definition has no effect.
+ */
+@Configuration
+@Slf4j
+public class MongoIndexConfig {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final Duration outboxDeliveredRetention;
+    private final Duration counterMarkersRetention;
+
+    public MongoIndexConfig(ReactiveMongoTemplate mongoTemplate,
+                            @Value("${app.transactions.outbox.delivered-retention-days}") long outboxDeliveredRetentionDays,
+                            @Value("${app.reward-batch.counter-markers-retention-days}") long counterMarkersRetentionDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.outboxDeliveredRetention = Duration.ofDays(outboxDeliveredRetentionDays);
+        this.counterMarkersRetention = Duration.ofDays(counterMarkersRetentionDays);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensureIndexes().subscribe();
+    }
+
+    Mono<Void> ensureIndexes() {
+        return Flux.concat(
+                        ensureIndex(TransactionOutbox.class, new Index()
+                                .on(TransactionOutbox.Fields.status, Sort.Direction.ASC)
+                                .on(TransactionOutbox.Fields.availableDate, Sort.Direction.ASC)
+                                .on(TransactionOutbox.Fields.creationDate, Sort.Direction.ASC)
+                                .on(TransactionOutbox.Fields.claimId, Sort.Direction.ASC)
+                                .named("status_availableDate_creationDate_claimId")),
+                        ensureIndex(TransactionOutbox.class, new Index()
+                                .on(TransactionOutbox.Fields.claimId, Sort.Direction.ASC)
+                                .on(TransactionOutbox.Fields.creationDate, Sort.Direction.ASC)
+                                .partial(PartialIndexFilter.of(Criteria.where(TransactionOutbox.Fields.claimId).exists(true)))
+                                .named("claimId_creationDate")),
+                        ensureIndex(TransactionOutbox.class, new Index()
+                                .on(TransactionOutbox.Fields.deliveryDate, Sort.Direction.ASC)
+                                .expire(outboxDeliveredRetention)
+                                .named("deliveryDate_ttl")),
+                        ensureIndex(CommandJob.class, new Index()
+                                .on(CommandJob.Fields.status, Sort.Direction.ASC)
+                                .on(CommandJob.Fields.creationDate, Sort.Direction.ASC)
+                                .on(CommandJob.Fields.availableDate, Sort.Direction.ASC)
+                                .named("status_creationDate_availableDate")),
+                        ensureIndex(RewardBatchCounterMarker.class, new Index()
+                                .on(RewardBatchCounterMarker.Fields.creationDate, Sort.Direction.ASC)
+                                .expire(counterMarkersRetention)
+                                .named("creationDate_ttl")))
+                .then();
+    }
+
+    private Mono<String> ensureIndex(Class<?> entityClass, Index index) {
+        return mongoTemplate.indexOps(entityClass).ensureIndex(index)
+                .doOnNext(name -> log.info("[MONGO_INDEX] Ensured index {} on {}", name, mongoTemplate.getCollectionName(entityClass)))
+                .onErrorResume(e -> {
+                    log.error("[MONGO_INDEX] Cannot ensure index {} on {}", index.getIndexKeys(), mongoTemplate.getCollectionName(entityClass), e);
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,10 @@
+package it.gov.pagopa.idpay.transactions.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/** Each scheduled job is enabled through the condition on its own bean */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
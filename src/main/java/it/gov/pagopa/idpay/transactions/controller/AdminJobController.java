@@ -0,0 +1,25 @@
+package it.gov.pagopa.idpay.transactions.controller;
+
+import it.gov.pagopa.idpay.transactions.dto.AdminJobDTO;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Component that exposes APIs to monitor and cancel the administrative jobs
+ * */
+@RequestMapping("/idpay/transactions/jobs")
+public interface AdminJobController {
+
+    /** It will return the jobs of the given type, or all the jobs if not provided, the most recent first */
+    @GetMapping
+    Flux<AdminJobDTO> getJobs(@RequestParam(value = "type", required = false) AdminJobType type);
+
+    @GetMapping("/{jobId}")
+    Mono<AdminJobDTO> getJob(@PathVariable("jobId") String jobId);
+
+    /** It will request the cancellation of a running job */
+    @PostMapping("/{jobId}/cancel")
+    Mono<AdminJobDTO> cancelJob(@PathVariable("jobId") String jobId);
+}
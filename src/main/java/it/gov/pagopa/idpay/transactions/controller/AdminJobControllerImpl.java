@@ -0,0 +1,39 @@
+package it.gov.pagopa.idpay.transactions.controller;
+
+import it.gov.pagopa.idpay.transactions.dto.AdminJobDTO;
+import it.gov.pagopa.idpay.transactions.dto.mapper.AdminJobMapper;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.service.AdminJobService;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+public class AdminJobControllerImpl implements AdminJobController {
+
+    private final AdminJobService adminJobService;
+    private final AdminJobMapper adminJobMapper;
+
+    public AdminJobControllerImpl(AdminJobService adminJobService, AdminJobMapper adminJobMapper) {
+        this.adminJobService = adminJobService;
+        this.adminJobMapper = adminJobMapper;
+    }
+
+    @Override
+    public Flux<AdminJobDTO> getJobs(AdminJobType type) {
+        return adminJobService.getJobs(type)
+                .map(adminJobMapper::toDTO);
+    }
+
+    @Override
+    public Mono<AdminJobDTO> getJob(String jobId) {
+        return adminJobService.getJob(jobId)
+                .map(adminJobMapper::toDTO);
+    }
+
+    @Override
+    public Mono<AdminJobDTO> cancelJob(String jobId) {
+        return adminJobService.cancel(jobId)
+                .map(adminJobMapper::toDTO);
+    }
+}
@@ -1,5 +1,7 @@
 package it.gov.pagopa.idpay.transactions.controller;
 
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayRequest;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayRequest;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
@@ -7,6 +9,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 
@@ -39,13 +42,22 @@ public interface TransactionsController {
             @PathVariable(value = "userId") String userId
     );
 
+    /** It will start the assignment of the INVOICED transactions without a reward batch, returning the job id */
     @PostMapping("/cleanup")
-    ResponseEntity<String> cleanupInvoicedTransactions(
+    Mono<ResponseEntity<String>> cleanupInvoicedTransactions(
         @RequestParam(defaultValue = "200") Integer chunkSize,
         @RequestParam(defaultValue = "1") Integer repetitionsNumber,
         @RequestParam(defaultValue = "false") boolean processAll,
         @RequestParam(required = false) String trxId
     );
 
+    /** It will start the rebuild of the transactions collection from the given range of the transaction topic, returning the job id */
+    @PostMapping("/replay")
+    Mono<ResponseEntity<String>> replayTransactions(@RequestBody TransactionReplayRequest request);
+
+    /** It will start the replay of the records of the error topic notified by the given consumer binding, returning the job id */
+    @PostMapping("/errors/replay")
+    Mono<ResponseEntity<String>> replayErrors(@RequestBody ErrorReplayRequest request);
+
 
 }
@@ -1,10 +1,15 @@
 package it.gov.pagopa.idpay.transactions.controller;
 
 import it.gov.pagopa.common.web.exception.ClientExceptionWithBody;
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayRequest;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayRequest;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.service.AdminJobService;
+import it.gov.pagopa.idpay.transactions.service.ErrorReplayService;
 import it.gov.pagopa.idpay.transactions.service.RewardTransactionService;
+import it.gov.pagopa.idpay.transactions.service.TransactionReplayService;
 import it.gov.pagopa.idpay.transactions.utils.ExceptionConstants;
-import java.util.UUID;
 
 import it.gov.pagopa.idpay.transactions.utils.Utilities;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +19,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 
@@ -21,9 +27,15 @@ import java.time.LocalDateTime;
 @Slf4j
 public class TransactionsControllerImpl implements TransactionsController{
     private final RewardTransactionService rewardTransactionService;
+    private final TransactionReplayService transactionReplayService;
+    private final ErrorReplayService errorReplayService;
+    private final AdminJobService adminJobService;
 
-    public TransactionsControllerImpl(RewardTransactionService rewardTransactionService) {
+    public TransactionsControllerImpl(RewardTransactionService rewardTransactionService, TransactionReplayService transactionReplayService, ErrorReplayService errorReplayService, AdminJobService adminJobService) {
         this.rewardTransactionService = rewardTransactionService;
+        this.transactionReplayService = transactionReplayService;
+        this.errorReplayService = errorReplayService;
+        this.adminJobService = adminJobService;
     }
 
     @Override
@@ -46,17 +58,26 @@ public class TransactionsControllerImpl implements TransactionsController{
     }
 
     @Override
-    public ResponseEntity<String> cleanupInvoicedTransactions(Integer chunkSize, Integer repetitionsNumber, boolean processAll, String trxId) {
+    public Mono<ResponseEntity<String>> cleanupInvoicedTransactions(Integer chunkSize, Integer repetitionsNumber, boolean processAll, String trxId) {
         log.info("[BATCH_ASSIGNMENT] Start processing INVOICED transactions without batch");
-        String  jobId  = UUID.randomUUID().toString();
-        rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize,  repetitionsNumber, processAll,  trxId)
-            .doOnSubscribe(sub  -> log.info("[BATCH_ASSIGNMENT]  Job  {}  started", jobId))
-            .doOnError(err  ->  log.error("[BATCH_ASSIGNMENT] Job  {}  failed:  {}", jobId,  err.getMessage()))
-            .doOnSuccess(v  -> log.info("[BATCH_ASSIGNMENT]  Job  {}  completed", jobId))
-            .subscribe();
-        return  ResponseEntity.accepted().body(jobId);
+        String parameters = "chunkSize=%d, repetitionsNumber=%d, processAll=%s, trxId=%s".formatted(chunkSize, repetitionsNumber, processAll, trxId);
+        return adminJobService.start(AdminJobType.BATCH_ASSIGNMENT, parameters, progress ->
+                        rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize, repetitionsNumber, processAll, trxId, progress::add))
+                .map(job -> ResponseEntity.accepted().body(job.getId()));
     }
 
+    @Override
+    public Mono<ResponseEntity<String>> replayTransactions(TransactionReplayRequest request) {
+        return adminJobService.start(AdminJobType.TRANSACTION_REPLAY, request.toString(), progress ->
+                        transactionReplayService.replay(request, progress::add))
+                .map(job -> ResponseEntity.accepted().body(job.getId()));
+    }
 
-
+    @Override
+    public Mono<ResponseEntity<String>> replayErrors(ErrorReplayRequest request) {
+        errorReplayService.checkReplayable(request.getBinding());
+        return adminJobService.start(AdminJobType.ERROR_REPLAY, request.toString(), progress ->
+                        errorReplayService.replay(request, progress::add))
+                .map(job -> ResponseEntity.accepted().body(job.getId()));
+    }
 }
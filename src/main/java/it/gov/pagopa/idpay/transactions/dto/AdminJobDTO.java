@@ -0,0 +1,30 @@
+package it.gov.pagopa.idpay.transactions.dto;
+
+import it.gov.pagopa.idpay.transactions.enums.AdminJobStatus;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AdminJobDTO {
+    private String id;
+    private AdminJobType type;
+    private String parameters;
+    private AdminJobStatus status;
+    private boolean cancelRequested;
+    private long processed;
+    private long elapsedMillis;
+    private long processedPerSecond;
+    private Object result;
+    private String errorMessage;
+    private LocalDateTime startDate;
+    private LocalDateTime updateDate;
+    private LocalDateTime endDate;
+}
@@ -0,0 +1,22 @@
+package it.gov.pagopa.idpay.transactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheWarmUpReportDTO {
+    /** The point of sales loaded into the cache */
+    private long pointOfSales;
+    /** The current month reward batches loaded into the cache */
+    private long rewardBatches;
+    /** The entries which could not be loaded */
+    private long failed;
+    /** False if the warm-up has been interrupted by its deadline */
+    private boolean completed;
+    private long elapsedMillis;
+}
@@ -0,0 +1,19 @@
+package it.gov.pagopa.idpay.transactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ErrorReplayReportDTO {
+    private long read;
+    private long skipped;
+    private long duplicated;
+    private long replayed;
+    private long failed;
+    private long elapsedMillis;
+}
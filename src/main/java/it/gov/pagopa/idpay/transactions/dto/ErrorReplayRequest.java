@@ -0,0 +1,23 @@
+package it.gov.pagopa.idpay.transactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+/** The error records to replay: the ones notified by the given consumer binding inside the given time window. Rate and concurrency, if not configured, will use the default ones */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ErrorReplayRequest {
+
+    private String binding;
+    private OffsetDateTime fromTimestamp;
+    private OffsetDateTime toTimestamp;
+    private Integer recordsPerSecond;
+    private Integer concurrency;
+
+}
@@ -0,0 +1,17 @@
+package it.gov.pagopa.idpay.transactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+
+@FieldNameConstants
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MerchantPointOfSaleDTO {
+    private String merchantId;
+    private String pointOfSaleId;
+}
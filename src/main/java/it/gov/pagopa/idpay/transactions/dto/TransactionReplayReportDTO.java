@@ -0,0 +1,20 @@
+package it.gov.pagopa.idpay.transactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TransactionReplayReportDTO {
+    private long read;
+    private long skipped;
+    private long stored;
+    private long errors;
+    private long recomputedRewardBatches;
+    private long elapsedMillis;
+    private long recordsPerSecond;
+}
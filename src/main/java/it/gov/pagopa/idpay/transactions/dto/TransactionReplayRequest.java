@@ -0,0 +1,23 @@
+package it.gov.pagopa.idpay.transactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+
+/** The range of the transaction topic to replay: offsets (by partition) win over timestamps, if both are configured */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TransactionReplayRequest {
+
+    private Map<Integer, Long> fromOffsets;
+    private Map<Integer, Long> toOffsets;
+    private OffsetDateTime fromTimestamp;
+    private OffsetDateTime toTimestamp;
+
+}
@@ -117,4 +117,15 @@ public class BatchCountersDTO {
     this.trxRejected = this.trxRejected - 1L;
     return this;
   }
+
+  public BatchCountersDTO add(BatchCountersDTO other) {
+    this.initialAmountCents = this.initialAmountCents + other.initialAmountCents;
+    this.numberOfTransactions = this.numberOfTransactions + other.numberOfTransactions;
+    this.approvedAmountCents = this.approvedAmountCents + other.approvedAmountCents;
+    this.suspendedAmountCents = this.suspendedAmountCents + other.suspendedAmountCents;
+    this.trxElaborated = this.trxElaborated + other.trxElaborated;
+    this.trxSuspended = this.trxSuspended + other.trxSuspended;
+    this.trxRejected = this.trxRejected + other.trxRejected;
+    return this;
+  }
 }
@@ -0,0 +1,18 @@
+package it.gov.pagopa.idpay.transactions.dto.batch;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+
+@FieldNameConstants
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RewardBatchTransactionTotalsDTO {
+    private String rewardBatchId;
+    private Long numberOfTransactions;
+    private Long initialAmountCents;
+}
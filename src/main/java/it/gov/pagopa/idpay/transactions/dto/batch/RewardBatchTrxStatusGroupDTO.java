@@ -0,0 +1,28 @@
+package it.gov.pagopa.idpay.transactions.dto.batch;
+
+import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+
+import java.util.List;
+
+/** The transactions of a reward batch sharing the same {@link RewardBatchTrxStatus}, together with the values needed to update the batch counters when changing their status */
+@FieldNameConstants
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RewardBatchTrxStatusGroupDTO {
+    private RewardBatchTrxStatus rewardBatchTrxStatus;
+    private List<String> trxIds;
+    private long count;
+    /** The sum of the accrued rewards of the initiative, the transactions without it are not counted */
+    private long accruedRewardCents;
+    /** The number of transactions elaborated the last time in a month preceding the batch one */
+    private long elaboratedInPreviousMonths;
+    /** The transactions counted by {@link #elaboratedInPreviousMonths} */
+    private List<String> elaboratedInPreviousMonthsTrxIds;
+}
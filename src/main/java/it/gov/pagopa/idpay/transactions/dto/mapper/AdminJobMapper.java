@@ -0,0 +1,36 @@
+package it.gov.pagopa.idpay.transactions.dto.mapper;
+
+import it.gov.pagopa.idpay.transactions.dto.AdminJobDTO;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@Component
+public class AdminJobMapper {
+
+    /** The elapsed time of a running job is computed until its last progress update */
+    public AdminJobDTO toDTO(AdminJob job) {
+        LocalDateTime lastUpdate = job.getEndDate() != null ? job.getEndDate() : job.getUpdateDate();
+        long elapsedMillis = job.getStartDate() != null && lastUpdate != null
+                ? Duration.between(job.getStartDate(), lastUpdate).toMillis()
+                : 0L;
+
+        return AdminJobDTO.builder()
+                .id(job.getId())
+                .type(job.getType())
+                .parameters(job.getParameters())
+                .status(job.getStatus())
+                .cancelRequested(job.isCancelRequested())
+                .processed(job.getProcessed())
+                .elapsedMillis(elapsedMillis)
+                .processedPerSecond(elapsedMillis > 0 ? job.getProcessed() * 1000 / elapsedMillis : 0L)
+                .result(job.getResult())
+                .errorMessage(job.getErrorMessage())
+                .startDate(job.getStartDate())
+                .updateDate(job.getUpdateDate())
+                .endDate(job.getEndDate())
+                .build();
+    }
+}
@@ -0,0 +1,8 @@
+package it.gov.pagopa.idpay.transactions.enums;
+
+public enum AdminJobStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+}
@@ -0,0 +1,8 @@
+package it.gov.pagopa.idpay.transactions.enums;
+
+/** The administrative operations tracked through the job registry: at most one job of each type can run at the same time */
+public enum AdminJobType {
+    BATCH_ASSIGNMENT,
+    TRANSACTION_REPLAY,
+    ERROR_REPLAY
+}
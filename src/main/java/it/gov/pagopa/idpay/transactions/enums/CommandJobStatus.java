@@ -0,0 +1,8 @@
+package it.gov.pagopa.idpay.transactions.enums;
+
+public enum CommandJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
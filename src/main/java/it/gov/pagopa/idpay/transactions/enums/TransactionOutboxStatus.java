@@ -0,0 +1,8 @@
+package it.gov.pagopa.idpay.transactions.enums;
+
+public enum TransactionOutboxStatus {
+    PENDING,
+    DELIVERED,
+    /** The change of the transaction has not been applied, thus the notification will not be published */
+    DISCARDED
+}
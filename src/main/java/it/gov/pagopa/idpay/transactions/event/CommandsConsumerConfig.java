@@ -12,7 +12,7 @@ import java.util.function.Consumer;
 public class CommandsConsumerConfig {
 
     @Bean
-    public Consumer<Flux<Message<String>>> consumerCommands(CommandsMediatorService commandsMediatorService){
+    public Consumer<Flux<Message<byte[]>>> consumerCommands(CommandsMediatorService commandsMediatorService){
         return commandsMediatorService::execute;
     }
 }
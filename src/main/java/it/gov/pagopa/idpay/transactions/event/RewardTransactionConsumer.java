@@ -14,7 +14,7 @@ import java.util.function.Consumer;
 public class RewardTransactionConsumer {
 
     @Bean
-    public Consumer<Flux<Message<String>>> rewardTrxConsumer(PersistenceTransactionMediator persistenceTransactionMediator) {
+    public Consumer<Flux<Message<byte[]>>> rewardTrxConsumer(PersistenceTransactionMediator persistenceTransactionMediator) {
 
         return persistenceTransactionMediator::execute;
 
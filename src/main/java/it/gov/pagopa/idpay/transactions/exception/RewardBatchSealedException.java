@@ -0,0 +1,9 @@
+package it.gov.pagopa.idpay.transactions.exception;
+
+/** Thrown when incrementing the counters of a reward batch which is leaving the CREATED status, thus no longer accepting transactions */
+public class RewardBatchSealedException extends RuntimeException{
+
+    public RewardBatchSealedException(String rewardBatchId) {
+        super("Reward batch %s has been sealed and no longer accepts transactions".formatted(rewardBatchId));
+    }
+}
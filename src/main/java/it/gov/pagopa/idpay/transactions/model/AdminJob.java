@@ -0,0 +1,39 @@
+package it.gov.pagopa.idpay.transactions.model;
+
+import it.gov.pagopa.idpay.transactions.enums.AdminJobStatus;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.time.LocalDateTime;
+
+/** The execution of an administrative bulk operation: its progress is periodically stored by the instance running it */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldNameConstants
+@EqualsAndHashCode(of = {"id"}, callSuper = false)
+@Document(collection = "admin_jobs")
+public class AdminJob {
+
+    @MongoId(FieldType.STRING)
+    private String id;
+    private AdminJobType type;
+    private String parameters;
+    private AdminJobStatus status;
+    private boolean cancelRequested;
+    private long processed;
+    private Object result;
+    private String errorMessage;
+    private LocalDateTime startDate;
+    private LocalDateTime updateDate;
+    private LocalDateTime endDate;
+}
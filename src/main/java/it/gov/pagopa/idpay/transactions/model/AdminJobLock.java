@@ -0,0 +1,31 @@
+package it.gov.pagopa.idpay.transactions.model;
+
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.time.LocalDateTime;
+
+/**
+ * The lock of an {@link AdminJobType}, having it as id: it's held by the running job of that type, if any.<br />
+ * A lock whose heartbeat is too old is considered abandoned by a terminated instance and it can be taken over.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldNameConstants
+@Document(collection = "admin_job_locks")
+public class AdminJobLock {
+
+    @MongoId(FieldType.STRING)
+    private String id;
+    private String jobId;
+    private LocalDateTime heartbeatDate;
+}
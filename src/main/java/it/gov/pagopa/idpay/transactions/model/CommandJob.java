@@ -0,0 +1,50 @@
+package it.gov.pagopa.idpay.transactions.model;
+
+import it.gov.pagopa.idpay.transactions.enums.CommandJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.time.LocalDateTime;
+
+/**
+ * A command received through the commands topic and executed in background by the command job worker.<br />
+ * Its id is derived from the operation and the entity it targets, thus the same command is stored once while not ended.
+ * A job can be claimed when its <i>availableDate</i> is passed: a RUNNING job postpones it at each checkpoint, thus a job left by a terminated worker will be claimed again and resumed from its last checkpoint.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldNameConstants
+@EqualsAndHashCode(of = {"id"}, callSuper = false)
+@Document(collection = "command_jobs")
+public class CommandJob {
+
+    @MongoId(FieldType.STRING)
+    private String id;
+    private String operationType;
+    private String entityId;
+    private LocalDateTime operationTime;
+    private CommandJobStatus status;
+    private String step;
+    private String checkpoint;
+    private long processed;
+    private int attempts;
+    private String lastError;
+    private String claimId;
+    private LocalDateTime availableDate;
+    private LocalDateTime creationDate;
+    private LocalDateTime updateDate;
+    private LocalDateTime endDate;
+
+    public static String buildId(String operationType, String entityId) {
+        return "%s_%s".formatted(operationType, entityId);
+    }
+}
@@ -8,6 +8,7 @@ import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
 import java.time.LocalDate;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -70,5 +71,8 @@ public class RewardBatch {
     private LocalDateTime deliveryDateRequest;
     private DeliveryOutcomeDTO deliveryOutcome;
 
+    /** The ids of the {@link RewardBatchCounterStripe}s already added to the counters, in order to not add them twice if their compaction is retried */
+    private List<String> foldedStripeIds;
+
 
 }
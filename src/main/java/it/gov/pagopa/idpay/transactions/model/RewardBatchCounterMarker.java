@@ -0,0 +1,34 @@
+package it.gov.pagopa.idpay.transactions.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.time.LocalDateTime;
+
+/**
+ * It records that a transaction has been counted by the stripes of a {@link RewardBatch}, thus its increment will not be applied again.<br />
+ * The marker is removed once its retention expires, when a redelivery of the transaction is no longer expected.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldNameConstants
+@Document(collection = "rewards_batch_counter_markers")
+public class RewardBatchCounterMarker {
+
+    @MongoId(FieldType.STRING)
+    private String id;
+    private String rewardBatchId;
+    private LocalDateTime creationDate;
+
+    public static String buildId(String rewardBatchId, String trxId) {
+        return "%s_%s".formatted(rewardBatchId, trxId);
+    }
+}
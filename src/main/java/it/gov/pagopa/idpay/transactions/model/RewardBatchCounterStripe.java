@@ -0,0 +1,47 @@
+package it.gov.pagopa.idpay.transactions.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.time.LocalDateTime;
+
+/**
+ * A slice of the counters of a {@link RewardBatch}: the increments of the same batch are spread across its stripes in order to avoid the contention on a single document.<br />
+ * The counters fields have the same name of the {@link RewardBatch} ones; the actual totals of a batch are its counters plus the sum of its stripes.<br />
+ * The transactions counted by the stripes are recorded through a {@link RewardBatchCounterMarker}, thus the increment of an already counted transaction is not applied again.<br />
+ * The stripes are sealed when the batch leaves the CREATED status: a sealed stripe no longer accepts increments.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldNameConstants
+@EqualsAndHashCode(of = {"id"}, callSuper = false)
+@Document(collection = "rewards_batch_counter_stripes")
+public class RewardBatchCounterStripe {
+
+    @MongoId(FieldType.STRING)
+    private String id;
+    private String rewardBatchId;
+    private int stripe;
+    private long initialAmountCents;
+    private long numberOfTransactions;
+    private long suspendedAmountCents;
+    private long numberOfTransactionsSuspended;
+    private long approvedAmountCents;
+    private long numberOfTransactionsElaborated;
+    private long numberOfTransactionsRejected;
+    private boolean sealed;
+    private LocalDateTime updateDate;
+
+    public static String buildId(String rewardBatchId, int stripe) {
+        return "%s_%d".formatted(rewardBatchId, stripe);
+    }
+}
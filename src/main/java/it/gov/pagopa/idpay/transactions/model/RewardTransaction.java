@@ -86,6 +86,11 @@ public class RewardTransaction {
     private Long voucherAmountCents;
 
     private String rewardBatchLastMonthElaborated;
+    //id of the last bulk change of the reward batch status, used to find the transactions actually changed by it
+    private String rewardBatchStatusUpdateId;
 
     private ChecksError checksError;
+
+    //fingerprint of the content received from the transaction topic, used to skip the redeliveries
+    private String contentFingerprint;
 }
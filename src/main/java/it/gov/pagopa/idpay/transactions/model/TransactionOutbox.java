@@ -0,0 +1,49 @@
+package it.gov.pagopa.idpay.transactions.model;
+
+import it.gov.pagopa.idpay.transactions.enums.TransactionOutboxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.time.LocalDateTime;
+
+/**
+ * A transaction notification stored before applying the change of the transaction and then published by the outbox relay.<br />
+ * Its id is derived from the transaction and its notified status, thus the same notification is stored once; its payload is the JSON of the notified transaction.
+ * A PENDING entry can be claimed by a relay when its <i>availableDate</i> is passed: the claim postpones it, thus an entry left by a terminated relay will be claimed again.<br />
+ * The relay will publish it just when the transaction has reached its <i>trxStatus</i>: if the change has not been applied in time, the entry is DISCARDED.
+ * The DELIVERED entries are removed by the TTL index on their <i>deliveryDate</i>.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldNameConstants
+@EqualsAndHashCode(of = {"id"}, callSuper = false)
+@Document(collection = "transactions_outbox")
+public class TransactionOutbox {
+
+    @MongoId(FieldType.STRING)
+    private String id;
+    private String trxId;
+    private String trxStatus;
+    private String messageKey;
+    private String payload;
+    private TransactionOutboxStatus status;
+    private int attempts;
+    private String lastError;
+    private String claimId;
+    private LocalDateTime availableDate;
+    private LocalDateTime creationDate;
+    private LocalDateTime deliveryDate;
+
+    public static String buildId(String trxId, String trxStatus) {
+        return "%s_%s".formatted(trxId, trxStatus);
+    }
+}
@@ -1,11 +1,19 @@
 package it.gov.pagopa.idpay.transactions.notifier;
 
+import it.gov.pagopa.common.reactive.kafka.producer.KafkaBatchPublisher;
 import it.gov.pagopa.idpay.transactions.dto.RewardTransactionKafkaDTO;
 import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface TransactionNotifierService {
 
   boolean notify(RewardTransactionKafkaDTO trx, String key);
   Message<RewardTransactionKafkaDTO> buildMessage(RewardTransactionKafkaDTO trx, String key);
 
+  /** It will publish the outcome batched together with the other pending ones, completing when acknowledged by the broker */
+  Mono<Void> publish(RewardTransactionKafkaDTO trx, String key);
+  /** It will publish the given outcomes in batches, emitting the send result of each of them in the same order */
+  Flux<KafkaBatchPublisher.SendResult<Message<RewardTransactionKafkaDTO>>> publishAll(Flux<Message<RewardTransactionKafkaDTO>> messages);
+
 }
@@ -1,5 +1,10 @@
 package it.gov.pagopa.idpay.transactions.notifier;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import it.gov.pagopa.common.kafka.utils.KafkaPayloadFormat;
+import it.gov.pagopa.common.reactive.kafka.producer.KafkaBatchPublisher;
 import it.gov.pagopa.idpay.transactions.dto.RewardTransactionKafkaDTO;
 import it.gov.pagopa.idpay.transactions.enums.SyncTrxStatus;
 import java.util.function.Supplier;
@@ -9,9 +14,11 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Service
 public class TransactionNotifierServiceImpl implements TransactionNotifierService {
@@ -21,10 +28,19 @@ public class TransactionNotifierServiceImpl implements TransactionNotifierServic
   private static final String OPERATION_TYPE_REFUNDED = "REFUNDED";
 
   private final StreamBridge streamBridge;
+  private final KafkaBatchPublisher transactionOutcomePublisher;
+  private final KafkaPayloadFormat payloadFormat;
+  private final ObjectWriter payloadWriter;
 
-  public TransactionNotifierServiceImpl(StreamBridge streamBridge,@Value("${spring.cloud.stream.bindings.transactionOutcome-out-0.binder}") String binder ) {
+  public TransactionNotifierServiceImpl(StreamBridge streamBridge,@Value("${spring.cloud.stream.bindings.transactionOutcome-out-0.binder}") String binder,
+                                        @Value("${app.transactions.outcome.payload-format}") KafkaPayloadFormat payloadFormat,
+                                        ObjectMapper objectMapper,
+                                        KafkaBatchPublisher transactionOutcomePublisher) {
     this.streamBridge = streamBridge;
+    this.transactionOutcomePublisher = transactionOutcomePublisher;
     this.binder=binder;
+    this.payloadFormat = payloadFormat;
+    this.payloadWriter = payloadFormat.adapt(objectMapper).writerFor(RewardTransactionKafkaDTO.class);
   }
 
   @Configuration
@@ -37,7 +53,7 @@ public class TransactionNotifierServiceImpl implements TransactionNotifierServic
 
   @Override
   public boolean notify(RewardTransactionKafkaDTO trx, String key) {
-    return streamBridge.send("transactionOutcome-out-0", binder, buildMessage(trx, key));
+    return streamBridge.send("transactionOutcome-out-0", binder, encode(buildMessage(trx, key)));
   }
 
   @Override
@@ -49,4 +65,36 @@ public class TransactionNotifierServiceImpl implements TransactionNotifierServic
     }
     return builder.build();
   }
-}
\ No newline at end of file
+
+  @Override
+  public Mono<Void> publish(RewardTransactionKafkaDTO trx, String key) {
+    return Mono.fromCallable(() -> serialize(buildMessage(trx, key)))
+        .flatMap(transactionOutcomePublisher::send)
+        .then();
+  }
+
+  @Override
+  public Flux<KafkaBatchPublisher.SendResult<Message<RewardTransactionKafkaDTO>>> publishAll(Flux<Message<RewardTransactionKafkaDTO>> messages) {
+    return transactionOutcomePublisher.publish(messages, this::serialize);
+  }
+
+  /** When configured a binary format, it will serialize the payload, declaring its content type; otherwise the message is left to the JSON converter of the binding */
+  private Message<?> encode(Message<RewardTransactionKafkaDTO> message) {
+    if (payloadFormat == KafkaPayloadFormat.JSON) {
+      return message;
+    }
+    return serialize(message);
+  }
+
+  /** It will serialize the payload using the configured format, declaring its content type */
+  private Message<byte[]> serialize(Message<RewardTransactionKafkaDTO> message) {
+    try {
+      return MessageBuilder.withPayload(payloadWriter.writeValueAsBytes(message.getPayload()))
+          .copyHeaders(message.getHeaders())
+          .setHeader(MessageHeaders.CONTENT_TYPE, payloadFormat.getContentType())
+          .build();
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Cannot serialize transaction %s as %s".formatted(message.getPayload().getId(), payloadFormat), e);
+    }
+  }
+}
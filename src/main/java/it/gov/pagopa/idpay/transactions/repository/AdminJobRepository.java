@@ -0,0 +1,11 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+public interface AdminJobRepository extends ReactiveMongoRepository<AdminJob, String>, AdminJobSpecificRepository {
+    Flux<AdminJob> findAllByOrderByStartDateDesc();
+    Flux<AdminJob> findByTypeOrderByStartDateDesc(AdminJobType type);
+}
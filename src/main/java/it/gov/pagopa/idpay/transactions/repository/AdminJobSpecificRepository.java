@@ -0,0 +1,30 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.idpay.transactions.enums.AdminJobStatus;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
+import it.gov.pagopa.idpay.transactions.model.AdminJobLock;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+public interface AdminJobSpecificRepository {
+
+    /**
+     * It will acquire the lock of the given job type if it's free or if its heartbeat is older than <i>staleBefore</i>
+     * @return Mono containing the lock as it was before the acquisition, empty if it didn't exist. It will error with a {@link org.springframework.dao.DuplicateKeyException} if the lock is held by another job
+     */
+    Mono<AdminJobLock> acquireLock(AdminJobType type, String jobId, LocalDateTime staleBefore);
+
+    /** It will release the lock of the given job type, if still held by the given job */
+    Mono<Void> releaseLock(AdminJobType type, String jobId);
+
+    /** It will store the progress of a running job and refresh the heartbeat of its lock, returning the updated job; empty if the job is no more running */
+    Mono<AdminJob> updateProgress(AdminJob job, long processed);
+
+    /** It will mark the given job as ended with the given status, if still running; its processed counter is left unchanged if <i>processed</i> is null */
+    Mono<AdminJob> complete(String jobId, AdminJobStatus status, Long processed, Object result, String errorMessage);
+
+    /** It will request the cancellation of the given job, if still running, returning the updated job */
+    Mono<AdminJob> requestCancellation(String jobId);
+}
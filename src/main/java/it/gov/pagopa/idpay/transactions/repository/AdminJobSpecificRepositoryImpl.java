@@ -0,0 +1,97 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.idpay.transactions.enums.AdminJobStatus;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
+import it.gov.pagopa.idpay.transactions.model.AdminJobLock;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+public class AdminJobSpecificRepositoryImpl implements AdminJobSpecificRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public AdminJobSpecificRepositoryImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<AdminJobLock> acquireLock(AdminJobType type, String jobId, LocalDateTime staleBefore) {
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where(AdminJobLock.Fields.id).is(type.name())
+                        .orOperator(
+                                Criteria.where(AdminJobLock.Fields.jobId).isNull(),
+                                Criteria.where(AdminJobLock.Fields.heartbeatDate).lt(staleBefore))),
+                new Update()
+                        .set(AdminJobLock.Fields.jobId, jobId)
+                        .set(AdminJobLock.Fields.heartbeatDate, LocalDateTime.now()),
+                FindAndModifyOptions.options().upsert(true).returnNew(false),
+                AdminJobLock.class);
+    }
+
+    @Override
+    public Mono<Void> releaseLock(AdminJobType type, String jobId) {
+        return mongoTemplate.updateFirst(
+                        Query.query(Criteria.where(AdminJobLock.Fields.id).is(type.name())
+                                .and(AdminJobLock.Fields.jobId).is(jobId)),
+                        new Update().unset(AdminJobLock.Fields.jobId),
+                        AdminJobLock.class)
+                .then();
+    }
+
+    @Override
+    public Mono<AdminJob> updateProgress(AdminJob job, long processed) {
+        LocalDateTime now = LocalDateTime.now();
+        return mongoTemplate.updateFirst(
+                        Query.query(Criteria.where(AdminJobLock.Fields.id).is(job.getType().name())
+                                .and(AdminJobLock.Fields.jobId).is(job.getId())),
+                        new Update().set(AdminJobLock.Fields.heartbeatDate, now),
+                        AdminJobLock.class)
+                .then(mongoTemplate.findAndModify(
+                        Query.query(Criteria.where(AdminJob.Fields.id).is(job.getId())
+                                .and(AdminJob.Fields.status).is(AdminJobStatus.RUNNING)),
+                        new Update()
+                                .set(AdminJob.Fields.processed, processed)
+                                .set(AdminJob.Fields.updateDate, now),
+                        FindAndModifyOptions.options().returnNew(true),
+                        AdminJob.class));
+    }
+
+    @Override
+    public Mono<AdminJob> complete(String jobId, AdminJobStatus status, Long processed, Object result, String errorMessage) {
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update();
+        if (processed != null) {
+            update.set(AdminJob.Fields.processed, processed);
+        }
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where(AdminJob.Fields.id).is(jobId)
+                        .and(AdminJob.Fields.status).is(AdminJobStatus.RUNNING)),
+                update
+                        .set(AdminJob.Fields.status, status)
+                        .set(AdminJob.Fields.result, result)
+                        .set(AdminJob.Fields.errorMessage, errorMessage)
+                        .set(AdminJob.Fields.updateDate, now)
+                        .set(AdminJob.Fields.endDate, now),
+                FindAndModifyOptions.options().returnNew(true),
+                AdminJob.class);
+    }
+
+    @Override
+    public Mono<AdminJob> requestCancellation(String jobId) {
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where(AdminJob.Fields.id).is(jobId)
+                        .and(AdminJob.Fields.status).is(AdminJobStatus.RUNNING)),
+                new Update()
+                        .set(AdminJob.Fields.cancelRequested, true)
+                        .set(AdminJob.Fields.updateDate, LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                AdminJob.class);
+    }
+}
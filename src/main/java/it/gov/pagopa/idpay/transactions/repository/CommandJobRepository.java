@@ -0,0 +1,7 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.idpay.transactions.model.CommandJob;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface CommandJobRepository extends ReactiveMongoRepository<CommandJob, String>, CommandJobSpecificRepository {
+}
@@ -0,0 +1,27 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.idpay.transactions.model.CommandJob;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+public interface CommandJobSpecificRepository {
+
+    /**
+     * It will store the given PENDING job; if a job with the same id already exists, it will be restarted from the beginning just if it's ended and its operation is older than the given one
+     * @return Mono containing true if the job has been stored, false if it was a duplicate
+     */
+    Mono<Boolean> enqueue(CommandJob job);
+
+    /** It will claim the oldest job PENDING or left RUNNING whose <i>availableDate</i> is passed, marking it as RUNNING until <i>claimedUntil</i>; empty if none */
+    Mono<CommandJob> claimNext(String claimId, LocalDateTime claimedUntil);
+
+    /** It will store the checkpoint of the job, extending its claim until <i>claimedUntil</i>; empty if the claim is no more held */
+    Mono<CommandJob> checkpoint(String jobId, String claimId, String step, String checkpoint, long processed, LocalDateTime claimedUntil);
+
+    /** It will mark the job as COMPLETED, if its claim is still held */
+    Mono<CommandJob> complete(String jobId, String claimId);
+
+    /** It will mark the job as failed, making it available again at <i>retryDate</i> or marking it as FAILED if <i>retryDate</i> is null, if its claim is still held */
+    Mono<CommandJob> fail(String jobId, String claimId, String error, LocalDateTime retryDate);
+}
@@ -0,0 +1,122 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.idpay.transactions.enums.CommandJobStatus;
+import it.gov.pagopa.idpay.transactions.model.CommandJob;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+public class CommandJobSpecificRepositoryImpl implements CommandJobSpecificRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public CommandJobSpecificRepositoryImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<Boolean> enqueue(CommandJob job) {
+        return mongoTemplate.insert(job)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> mongoTemplate.updateFirst(
+                                Query.query(Criteria.where(CommandJob.Fields.id).is(job.getId())
+                                        .and(CommandJob.Fields.status).in(CommandJobStatus.COMPLETED, CommandJobStatus.FAILED)
+                                        .orOperator(
+                                                Criteria.where(CommandJob.Fields.operationTime).isNull(),
+                                                Criteria.where(CommandJob.Fields.operationTime).lt(job.getOperationTime()))),
+                                new Update()
+                                        .set(CommandJob.Fields.operationTime, job.getOperationTime())
+                                        .set(CommandJob.Fields.status, CommandJobStatus.PENDING)
+                                        .set(CommandJob.Fields.processed, 0L)
+                                        .set(CommandJob.Fields.attempts, 0)
+                                        .set(CommandJob.Fields.availableDate, job.getAvailableDate())
+                                        .set(CommandJob.Fields.updateDate, LocalDateTime.now())
+                                        .unset(CommandJob.Fields.step)
+                                        .unset(CommandJob.Fields.checkpoint)
+                                        .unset(CommandJob.Fields.lastError)
+                                        .unset(CommandJob.Fields.claimId)
+                                        .unset(CommandJob.Fields.endDate),
+                                CommandJob.class)
+                        .map(r -> r.getModifiedCount() > 0));
+    }
+
+    @Override
+    public Mono<CommandJob> claimNext(String claimId, LocalDateTime claimedUntil) {
+        LocalDateTime now = LocalDateTime.now();
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where(CommandJob.Fields.status).in(CommandJobStatus.PENDING, CommandJobStatus.RUNNING)
+                                .and(CommandJob.Fields.availableDate).lte(now))
+                        .with(Sort.by(CommandJob.Fields.creationDate)),
+                new Update()
+                        .set(CommandJob.Fields.status, CommandJobStatus.RUNNING)
+                        .set(CommandJob.Fields.claimId, claimId)
+                        .set(CommandJob.Fields.availableDate, claimedUntil)
+                        .set(CommandJob.Fields.updateDate, now),
+                FindAndModifyOptions.options().returnNew(true),
+                CommandJob.class);
+    }
+
+    @Override
+    public Mono<CommandJob> checkpoint(String jobId, String claimId, String step, String checkpoint, long processed, LocalDateTime claimedUntil) {
+        return mongoTemplate.findAndModify(
+                buildClaimedQuery(jobId, claimId),
+                new Update()
+                        .set(CommandJob.Fields.step, step)
+                        .set(CommandJob.Fields.checkpoint, checkpoint)
+                        .set(CommandJob.Fields.processed, processed)
+                        .set(CommandJob.Fields.availableDate, claimedUntil)
+                        .set(CommandJob.Fields.updateDate, LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                CommandJob.class);
+    }
+
+    @Override
+    public Mono<CommandJob> complete(String jobId, String claimId) {
+        LocalDateTime now = LocalDateTime.now();
+        return mongoTemplate.findAndModify(
+                buildClaimedQuery(jobId, claimId),
+                new Update()
+                        .set(CommandJob.Fields.status, CommandJobStatus.COMPLETED)
+                        .set(CommandJob.Fields.updateDate, now)
+                        .set(CommandJob.Fields.endDate, now)
+                        .unset(CommandJob.Fields.claimId)
+                        .unset(CommandJob.Fields.lastError),
+                FindAndModifyOptions.options().returnNew(true),
+                CommandJob.class);
+    }
+
+    @Override
+    public Mono<CommandJob> fail(String jobId, String claimId, String error, LocalDateTime retryDate) {
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+                .set(CommandJob.Fields.lastError, error)
+                .set(CommandJob.Fields.updateDate, now)
+                .inc(CommandJob.Fields.attempts, 1)
+                .unset(CommandJob.Fields.claimId);
+        if (retryDate != null) {
+            update.set(CommandJob.Fields.status, CommandJobStatus.PENDING)
+                    .set(CommandJob.Fields.availableDate, retryDate);
+        } else {
+            update.set(CommandJob.Fields.status, CommandJobStatus.FAILED)
+                    .set(CommandJob.Fields.endDate, now);
+        }
+        return mongoTemplate.findAndModify(
+                buildClaimedQuery(jobId, claimId),
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                CommandJob.class);
+    }
+
+    private static Query buildClaimedQuery(String jobId, String claimId) {
+        return Query.query(Criteria.where(CommandJob.Fields.id).is(jobId)
+                .and(CommandJob.Fields.claimId).is(claimId)
+                .and(CommandJob.Fields.status).is(CommandJobStatus.RUNNING));
+    }
+}
@@ -9,4 +9,9 @@ import reactor.core.publisher.Mono;
 public interface ReportSpecificRepository {
     Flux<Report> findReportsCombined(String merchantId, String organizationRole, String initiativeId, ReportType reportType, Pageable pageable);
     Mono<Long> countReportsCombined(String merchantId, String organizationRole, String initiativeId, ReportType reportType);
+
+    /** It will return the id closing the next chunk of the reports of the initiative, in order of id: empty if fewer than chunkSize reports follow afterId */
+    Mono<String> findInitiativeChunkUpperBound(String initiativeId, String afterId, int chunkSize);
+    /** It will delete the reports of the initiative having id greater than afterId and not greater than upToId, returning their number: a null bound means unbounded */
+    Mono<Long> deleteByInitiativeIdInRange(String initiativeId, String afterId, String upToId);
 }
@@ -1,5 +1,6 @@
 package it.gov.pagopa.idpay.transactions.repository;
 
+import com.mongodb.client.result.DeleteResult;
 import it.gov.pagopa.idpay.transactions.enums.ReportType;
 import it.gov.pagopa.idpay.transactions.model.Report;
 import lombok.extern.slf4j.Slf4j;
@@ -77,4 +78,21 @@ public class ReportSpecificRepositoryImpl implements ReportSpecificRepository {
         return new Criteria().andOperator(subCriteria.toArray(new Criteria[0]));
     }
 
+    @Override
+    public Mono<String> findInitiativeChunkUpperBound(String initiativeId, String afterId, int chunkSize) {
+        Query query = Query.query(RewardTransactionSpecificRepositoryImpl.buildIdRangeCriteria(
+                Criteria.where(Report.Fields.initiativeId).is(initiativeId), afterId, null));
+        return RewardTransactionSpecificRepositoryImpl.findChunkUpperBound(mongoTemplate, query, chunkSize, Report.class)
+                .map(Report::getId);
+    }
+
+    @Override
+    public Mono<Long> deleteByInitiativeIdInRange(String initiativeId, String afterId, String upToId) {
+        return mongoTemplate.remove(
+                        Query.query(RewardTransactionSpecificRepositoryImpl.buildIdRangeCriteria(
+                                Criteria.where(Report.Fields.initiativeId).is(initiativeId), afterId, upToId)),
+                        Report.class)
+                .map(DeleteResult::getDeletedCount);
+    }
+
 }
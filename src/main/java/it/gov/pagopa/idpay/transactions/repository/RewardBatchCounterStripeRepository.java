@@ -0,0 +1,13 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterStripe;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface RewardBatchCounterStripeRepository extends ReactiveMongoRepository<RewardBatchCounterStripe, String>,
+    RewardBatchCounterStripeSpecificRepository {
+
+  Mono<Long> deleteByRewardBatchIdIn(Collection<String> rewardBatchIds);
+}
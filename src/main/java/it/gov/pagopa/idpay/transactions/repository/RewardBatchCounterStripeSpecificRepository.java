@@ -0,0 +1,26 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterStripe;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface RewardBatchCounterStripeSpecificRepository {
+  /**
+   * It will increment the counters of the stripe recording the given transactions as counted on the batch, creating the stripe if not exists.
+   * @return false if any of the transactions has been already counted on the batch, or if the stripe is sealed: in this case no update is performed
+   */
+  Mono<Boolean> incrementStripe(String rewardBatchId, int stripe, Collection<String> trxIds, BatchCountersDTO batchCountersDTO);
+  /** It will return the stripes of the given batches */
+  Flux<RewardBatchCounterStripe> findCountersByRewardBatchIds(Collection<String> rewardBatchIds);
+  /** It will seal all the stripes of the batch, creating the missing ones: after this, no increment will be applied on them */
+  Mono<Void> sealStripes(String rewardBatchId, int stripes);
+  /** It will return true if the stripes of the batch have been sealed */
+  Mono<Boolean> isSealed(String rewardBatchId);
+  /** It will atomically reset the counters of the stripe, returning its last counters */
+  Mono<RewardBatchCounterStripe> drainStripe(String stripeId);
+  /** It will delete the stripes of the given batches, returning the number of deleted ones */
+  Mono<Long> deleteByRewardBatchIds(Collection<String> rewardBatchIds);
+}
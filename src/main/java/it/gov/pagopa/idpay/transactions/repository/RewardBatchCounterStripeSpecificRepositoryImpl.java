@@ -0,0 +1,165 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.result.DeleteResult;
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterMarker;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterStripe;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.util.MongoDbErrorCodes;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class RewardBatchCounterStripeSpecificRepositoryImpl implements RewardBatchCounterStripeSpecificRepository {
+
+  private static final List<String> COUNTERS_FIELDS = List.of(
+      RewardBatchCounterStripe.Fields.initialAmountCents,
+      RewardBatchCounterStripe.Fields.numberOfTransactions,
+      RewardBatchCounterStripe.Fields.suspendedAmountCents,
+      RewardBatchCounterStripe.Fields.numberOfTransactionsSuspended,
+      RewardBatchCounterStripe.Fields.approvedAmountCents,
+      RewardBatchCounterStripe.Fields.numberOfTransactionsElaborated,
+      RewardBatchCounterStripe.Fields.numberOfTransactionsRejected);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  public RewardBatchCounterStripeSpecificRepositoryImpl(ReactiveMongoTemplate mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  /**
+   * The transactions are first recorded through their {@link RewardBatchCounterMarker}: if any of them was already recorded, or if the stripe is sealed,
+   * the markers just inserted are removed and no increment is performed. They are removed also when the increment fails, thus its retry will apply it.<br />
+   * If the stripe is created concurrently, the upsert fails with a duplicate key error: thus the update is performed again on the existing stripe
+   */
+  @Override
+  public Mono<Boolean> incrementStripe(String rewardBatchId, int stripe, Collection<String> trxIds, BatchCountersDTO batchCountersDTO) {
+    List<String> markerIds = trxIds.stream()
+        .map(trxId -> RewardBatchCounterMarker.buildId(rewardBatchId, trxId))
+        .toList();
+
+    return insertMarkers(rewardBatchId, markerIds)
+        .flatMap(inserted -> {
+          if (inserted.size() < markerIds.size()) {
+            return removeMarkers(inserted).thenReturn(false);
+          }
+          return applyIncrement(rewardBatchId, stripe, batchCountersDTO)
+              .onErrorResume(e -> removeMarkers(inserted).then(Mono.error(e)))
+              .flatMap(applied -> Boolean.TRUE.equals(applied)
+                  ? Mono.just(true)
+                  : removeMarkers(inserted).thenReturn(false));
+        });
+  }
+
+  /** It will return the ids of the inserted markers: the ones already existing are skipped */
+  private Mono<List<String>> insertMarkers(String rewardBatchId, List<String> markerIds) {
+    LocalDateTime now = LocalDateTime.now();
+    ReactiveBulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RewardBatchCounterMarker.class);
+    bulkOps.insert(markerIds.stream()
+        .map(markerId -> RewardBatchCounterMarker.builder()
+            .id(markerId)
+            .rewardBatchId(rewardBatchId)
+            .creationDate(now)
+            .build())
+        .toList());
+
+    return RewardTransactionSpecificRepositoryImpl.executeBulk(bulkOps)
+        .thenReturn(markerIds)
+        .onErrorResume(BulkOperationException.class, e -> {
+          Set<Integer> failedIndexes = e.getErrors().stream().map(BulkWriteError::getIndex).collect(Collectors.toSet());
+          List<String> inserted = IntStream.range(0, markerIds.size())
+              .filter(i -> !failedIndexes.contains(i))
+              .mapToObj(markerIds::get)
+              .toList();
+          if (e.getErrors().stream().allMatch(err -> MongoDbErrorCodes.isDuplicateKeyCode(err.getCode()))) {
+            return Mono.just(inserted);
+          }
+          return removeMarkers(inserted).then(Mono.error(e));
+        });
+  }
+
+  private Mono<Void> removeMarkers(List<String> markerIds) {
+    if (markerIds.isEmpty()) {
+      return Mono.empty();
+    }
+    return mongoTemplate.remove(Query.query(Criteria.where("_id").in(markerIds)), RewardBatchCounterMarker.class)
+        .then();
+  }
+
+  private Mono<Boolean> applyIncrement(String rewardBatchId, int stripe, BatchCountersDTO batchCountersDTO) {
+    Query query = Query.query(Criteria.where("_id").is(RewardBatchCounterStripe.buildId(rewardBatchId, stripe))
+        .and(RewardBatchCounterStripe.Fields.sealed).ne(true));
+    Update update = RewardBatchSpecificRepositoryImpl.buildTotalsIncrement(batchCountersDTO)
+        .setOnInsert(RewardBatchCounterStripe.Fields.rewardBatchId, rewardBatchId)
+        .setOnInsert(RewardBatchCounterStripe.Fields.stripe, stripe)
+        .currentDate(RewardBatchCounterStripe.Fields.updateDate);
+
+    return mongoTemplate.upsert(query, update, RewardBatchCounterStripe.class)
+        .onErrorResume(DuplicateKeyException.class, e -> mongoTemplate.updateFirst(query, update, RewardBatchCounterStripe.class))
+        .map(result -> result.getMatchedCount() > 0 || result.getUpsertedId() != null);
+  }
+
+  @Override
+  public Flux<RewardBatchCounterStripe> findCountersByRewardBatchIds(Collection<String> rewardBatchIds) {
+    return mongoTemplate.find(
+        Query.query(Criteria.where(RewardBatchCounterStripe.Fields.rewardBatchId).in(rewardBatchIds)),
+        RewardBatchCounterStripe.class);
+  }
+
+  @Override
+  public Mono<Void> sealStripes(String rewardBatchId, int stripes) {
+    ReactiveBulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RewardBatchCounterStripe.class);
+    IntStream.range(0, stripes).forEach(stripe -> bulkOps.upsert(
+        Query.query(Criteria.where("_id").is(RewardBatchCounterStripe.buildId(rewardBatchId, stripe))),
+        new Update()
+            .set(RewardBatchCounterStripe.Fields.sealed, true)
+            .setOnInsert(RewardBatchCounterStripe.Fields.rewardBatchId, rewardBatchId)
+            .setOnInsert(RewardBatchCounterStripe.Fields.stripe, stripe)
+            .currentDate(RewardBatchCounterStripe.Fields.updateDate)));
+    return bulkOps.execute().then();
+  }
+
+  @Override
+  public Mono<Boolean> isSealed(String rewardBatchId) {
+    return mongoTemplate.exists(
+        Query.query(Criteria.where(RewardBatchCounterStripe.Fields.rewardBatchId).is(rewardBatchId)
+            .and(RewardBatchCounterStripe.Fields.sealed).is(true)),
+        RewardBatchCounterStripe.class);
+  }
+
+  /** The stripe document is kept, in order to preserve its seal */
+  @Override
+  public Mono<RewardBatchCounterStripe> drainStripe(String stripeId) {
+    Update update = new Update()
+        .currentDate(RewardBatchCounterStripe.Fields.updateDate);
+    COUNTERS_FIELDS.forEach(field -> update.set(field, 0L));
+    return mongoTemplate.findAndModify(
+        Query.query(Criteria.where("_id").is(stripeId)),
+        update,
+        FindAndModifyOptions.options().returnNew(false),
+        RewardBatchCounterStripe.class);
+  }
+
+  @Override
+  public Mono<Long> deleteByRewardBatchIds(Collection<String> rewardBatchIds) {
+    return mongoTemplate.remove(
+            Query.query(Criteria.where(RewardBatchCounterStripe.Fields.rewardBatchId).in(rewardBatchIds)),
+            RewardBatchCounterStripe.class)
+        .map(DeleteResult::getDeletedCount);
+  }
+}
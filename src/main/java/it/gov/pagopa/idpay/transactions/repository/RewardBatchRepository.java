@@ -7,6 +7,8 @@ import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 public interface RewardBatchRepository extends ReactiveMongoRepository<RewardBatch, String>,
     RewardBatchSpecificRepository {
 
@@ -20,4 +22,8 @@ public interface RewardBatchRepository extends ReactiveMongoRepository<RewardBat
   Flux<RewardBatch> findByMerchantIdAndPosType(String merchantId, PosType posType);
 
   Mono<RewardBatch> findByMerchantIdAndId(String merchantId, String rewardBatchId);
+
+  Flux<RewardBatch> findByMonth(String month);
+
+  Flux<RewardBatch> findByMonthAndStatusAndMerchantIdIn(String month, RewardBatchStatus status, Collection<String> merchantIds);
 }
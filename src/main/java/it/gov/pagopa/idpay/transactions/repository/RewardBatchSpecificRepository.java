@@ -1,5 +1,6 @@
 package it.gov.pagopa.idpay.transactions.repository;
 
+import com.mongodb.bulk.BulkWriteResult;
 import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
 import it.gov.pagopa.idpay.transactions.enums.PosType;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
@@ -8,11 +9,21 @@ import org.springframework.data.domain.Pageable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+
 
 public interface RewardBatchSpecificRepository {
   Flux<RewardBatch> findRewardBatchesCombined(String merchantId, String status, String assigneeLevel, String month, boolean isOperator, Pageable pageable);
   Mono<Long> getCountCombined(String merchantId, String status, String assigneeLevel, String month, boolean isOperator);
   Mono<RewardBatch> updateTotals(String rewardBatchId, BatchCountersDTO batchCountersDTO);
+  /**
+   * It will add the counters of the given stripe to the batch, recording it as folded.
+   * @return empty if the stripe has been already folded into the batch: in this case no update is performed
+   */
+  Mono<RewardBatch> foldStripe(String rewardBatchId, String stripeId, BatchCountersDTO batchCountersDTO);
+  /** It will overwrite the transaction totals, forgetting the stripes folded until now */
+  Mono<RewardBatch> setTransactionTotals(String rewardBatchId, long numberOfTransactions, long initialAmountCents);
   Mono<RewardBatch> findRewardBatchById(String rewardBatchId);
   Mono<RewardBatch> findRewardBatchByFilter(String rewardBatchId, String merchantId, PosType posType, String month);
   Flux<RewardBatch> findRewardBatchByStatus(RewardBatchStatus rewardBatchStatus);
@@ -20,4 +31,8 @@ public interface RewardBatchSpecificRepository {
 
   Mono<RewardBatch> updateStatusAndApprovedAmountCents(String rewardBatchId, RewardBatchStatus rewardBatchStatus, Long approvedAmountCents);
   Flux<RewardBatch> findPreviousEmptyBatches();
+  /** It will insert the batches not already existing for the same merchantId, posType and month, leaving untouched the existing ones */
+  Mono<BulkWriteResult> bulkInsertIfMissing(List<RewardBatch> batches);
+  /** It will delete the given batches, returning the number of deleted ones */
+  Mono<Long> deleteByIds(Collection<String> rewardBatchIds);
 }
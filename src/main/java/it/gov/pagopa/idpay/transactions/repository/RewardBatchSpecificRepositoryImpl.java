@@ -1,15 +1,21 @@
 package it.gov.pagopa.idpay.transactions.repository;
 
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.DeleteResult;
 import com.nimbusds.oauth2.sdk.util.StringUtils;
 import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
 import it.gov.pagopa.idpay.transactions.enums.PosType;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchAssignee;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
 import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -35,6 +41,8 @@ public class RewardBatchSpecificRepositoryImpl implements RewardBatchSpecificRep
   public static final String NUMBER_OF_TRANSACTIONS_SUSPENDED = "numberOfTransactionsSuspended";
   public static final String NUMBER_OF_TRANSACTIONS_ELABORATED = "numberOfTransactionsElaborated";
 
+  private static final Set<String> UPSERT_KEY_FIELDS = Set.of(RewardBatch.Fields.merchantId, RewardBatch.Fields.posType, RewardBatch.Fields.month);
+
   
   @Override
   public Flux<RewardBatch> findRewardBatchesCombined(String merchantId, String status, String assigneeLevel, String month, boolean isOperator, Pageable pageable) {
@@ -140,6 +148,30 @@ public class RewardBatchSpecificRepositoryImpl implements RewardBatchSpecificRep
   @Override
   public Mono<RewardBatch> updateTotals(String rewardBatchId, BatchCountersDTO acc) {
 
+    Update update = buildTotalsIncrement(acc);
+    update.currentDate(RewardBatch.Fields.updateDate);
+
+    Query query = Query.query(Criteria.where("_id").is(rewardBatchId));
+
+    return mongoTemplate.findAndModify(
+        query, update, FindAndModifyOptions.options().returnNew(true), RewardBatch.class);
+  }
+
+  @Override
+  public Mono<RewardBatch> foldStripe(String rewardBatchId, String stripeId, BatchCountersDTO acc) {
+    Update update = buildTotalsIncrement(acc)
+        .addToSet(RewardBatch.Fields.foldedStripeIds, stripeId)
+        .currentDate(RewardBatch.Fields.updateDate);
+
+    Query query = Query.query(Criteria.where("_id").is(rewardBatchId)
+        .and(RewardBatch.Fields.foldedStripeIds).ne(stripeId));
+
+    return mongoTemplate.findAndModify(
+        query, update, FindAndModifyOptions.options().returnNew(true), RewardBatch.class);
+  }
+
+  /** It will build the increment of the counters, reusable on the documents having the same counters fields of {@link RewardBatch} */
+  static Update buildTotalsIncrement(BatchCountersDTO acc) {
     Update update = new Update();
     if (acc.getTrxElaborated() != 0) {
       update.inc(RewardBatch.Fields.numberOfTransactionsElaborated, acc.getTrxElaborated());
@@ -162,13 +194,19 @@ public class RewardBatchSpecificRepositoryImpl implements RewardBatchSpecificRep
     if (acc.getNumberOfTransactions() != 0) {
         update.inc(RewardBatch.Fields.numberOfTransactions, acc.getNumberOfTransactions());
     }
+    return update;
+  }
 
-    update.currentDate(RewardBatch.Fields.updateDate);
-
-    Query query = Query.query(Criteria.where("_id").is(rewardBatchId));
+  @Override
+  public Mono<RewardBatch> setTransactionTotals(String rewardBatchId, long numberOfTransactions, long initialAmountCents) {
+    Update update = new Update()
+        .set(RewardBatch.Fields.numberOfTransactions, numberOfTransactions)
+        .set(RewardBatch.Fields.initialAmountCents, initialAmountCents)
+        .unset(RewardBatch.Fields.foldedStripeIds)
+        .currentDate(RewardBatch.Fields.updateDate);
 
     return mongoTemplate.findAndModify(
-        query, update, FindAndModifyOptions.options().returnNew(true), RewardBatch.class);
+        Query.query(Criteria.where("_id").is(rewardBatchId)), update, FindAndModifyOptions.options().returnNew(true), RewardBatch.class);
   }
 
   private Pageable getPageableRewardBatch(Pageable pageable) {
@@ -250,6 +288,39 @@ public class RewardBatchSpecificRepositoryImpl implements RewardBatchSpecificRep
 
 
 
+  @Override
+  public Mono<BulkWriteResult> bulkInsertIfMissing(List<RewardBatch> batches) {
+    if (batches.isEmpty()) {
+      return Mono.empty();
+    }
+
+    ReactiveBulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RewardBatch.class);
+    batches.forEach(batch -> bulkOps.upsert(
+        Query.query(Criteria.where(RewardBatch.Fields.merchantId).is(batch.getMerchantId())
+            .and(RewardBatch.Fields.posType).is(batch.getPosType())
+            .and(RewardBatch.Fields.month).is(batch.getMonth())),
+        buildInsertOnly(batch)));
+
+    return bulkOps.execute();
+  }
+
+  /** It will set all the fields of the batch just when inserting it; the id will be generated if missing */
+  private Update buildInsertOnly(RewardBatch batch) {
+    Document document = new Document();
+    mongoTemplate.getConverter().write(batch, document);
+    if (batch.getId() == null) {
+      document.put("_id", new ObjectId().toHexString());
+    }
+
+    Update update = new Update();
+    document.forEach((field, value) -> {
+      if (!UPSERT_KEY_FIELDS.contains(field)) {
+        update.setOnInsert(field, value);
+      }
+    });
+    return update;
+  }
+
     private static Criteria getCriteriaFindRewardBatchById(String rewardBatchId) {
     return Criteria.where("_id").is(rewardBatchId.trim());
   }
@@ -283,4 +354,12 @@ private static Criteria getCriteriaFindRewardBatchByStatus(RewardBatchStatus rew
             .and(RewardBatch.Fields.month).lt(month);
   }
 
+  @Override
+  public Mono<Long> deleteByIds(Collection<String> rewardBatchIds) {
+    return mongoTemplate.remove(
+            Query.query(Criteria.where("_id").in(rewardBatchIds)),
+            RewardBatch.class)
+        .map(DeleteResult::getDeletedCount);
+  }
+
 }
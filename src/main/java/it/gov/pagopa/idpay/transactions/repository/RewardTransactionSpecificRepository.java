@@ -1,6 +1,10 @@
 package it.gov.pagopa.idpay.transactions.repository;
 
+import com.mongodb.bulk.BulkWriteResult;
 import it.gov.pagopa.idpay.transactions.dto.FranchisePointOfSaleDTO;
+import it.gov.pagopa.idpay.transactions.dto.MerchantPointOfSaleDTO;
+import it.gov.pagopa.idpay.transactions.dto.batch.RewardBatchTransactionTotalsDTO;
+import it.gov.pagopa.idpay.transactions.dto.batch.RewardBatchTrxStatusGroupDTO;
 import it.gov.pagopa.idpay.transactions.dto.ReasonDTO;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
 import it.gov.pagopa.idpay.transactions.dto.TrxFiltersDTO;
@@ -11,6 +15,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface RewardTransactionSpecificRepository {
@@ -40,6 +45,30 @@ public interface RewardTransactionSpecificRepository {
 
     Mono<RewardTransaction> updateStatusAndReturnOld(String batchId, String trxId, RewardBatchTrxStatus status, ReasonDTO reasons, String batchMonth, ChecksError checksError);
 
+    /**
+     * Groups by their current {@link RewardBatchTrxStatus} the provided transactions assigned to the reward batch
+     * @param batchId the reward batch of the transactions
+     * @param trxIds the transactions to group, the ones not found or without status are ignored
+     * @param initiativeId the initiative whose accrued rewards are summed
+     * @param batchMonth the month of the batch, against which the last elaborated month of the transactions is compared
+     * @return Flux containing a group for each status having at least one transaction
+     */
+    Flux<RewardBatchTrxStatusGroupDTO> aggregateByRewardBatchTrxStatus(String batchId, Collection<String> trxIds, String initiativeId, String batchMonth);
+
+    /**
+     * Updates with a single operation the status of the provided transactions assigned to the reward batch, as {@link #updateStatusAndReturnOld(String, String, RewardBatchTrxStatus, ReasonDTO, String, ChecksError)} does for a single one.<br />
+     * Just the transactions still in the provided current status are updated, storing on them the provided statusUpdateId
+     * @return Mono containing the number of matched transactions
+     */
+    Mono<Long> updateStatusByIds(String batchId, Collection<String> trxIds, RewardBatchTrxStatus currentStatus, RewardBatchTrxStatus newStatus, ReasonDTO reasons, String batchMonth, ChecksError checksError, String statusUpdateId);
+
+    /**
+     * Aggregates, among the provided transactions assigned to the reward batch, the ones updated by the {@link #updateStatusByIds(String, Collection, RewardBatchTrxStatus, RewardBatchTrxStatus, ReasonDTO, String, ChecksError, String)}
+     * having the provided statusUpdateId
+     * @return Mono containing their ids, count and sum of the accrued rewards of the initiative, empty if none of them has been updated
+     */
+    Mono<RewardBatchTrxStatusGroupDTO> aggregateByStatusUpdateId(String batchId, Collection<String> trxIds, String statusUpdateId, String initiativeId);
+
     Flux<RewardTransaction> findInvoicedTransactionsWithoutBatch(int pageSize);
 
     Mono<RewardTransaction> findInvoicedTrxByIdWithoutBatch(String trxId);
@@ -49,4 +78,93 @@ public interface RewardTransactionSpecificRepository {
   
     Mono<RewardTransaction> findTransactionInBatch(String merchantId, String rewardBatchId, String transactionId);
 
+    /**
+     * Upserts the provided transactions through a single unordered bulk write, replacing them by id
+     * @param transactions the transactions to store
+     * @return Mono containing the bulk result; if some documents fail, it will error with a {@link org.springframework.data.mongodb.BulkOperationException} reporting the failed indexes
+     */
+    Mono<BulkWriteResult> bulkUpsert(List<RewardTransaction> transactions);
+
+    /**
+     * Assigns the provided transactions to the reward batch set on them through a single unordered bulk write, storing the batch assignment fields and the point of sale ones.<br />
+     * Just the transactions still without a batch are updated
+     * @param transactions the transactions to assign
+     * @return Mono containing the bulk result, whose modified count is the number of transactions actually assigned; empty if no transactions are provided.
+     * If some documents fail, it will error with a {@link org.springframework.data.mongodb.BulkOperationException} reporting the failed indexes
+     */
+    Mono<BulkWriteResult> bulkAssignToBatch(List<RewardTransaction> transactions);
+
+    /**
+     * Retrieves, among the given transactions, the ones assigned to the reward batch with the given inclusion date, thus the ones written by the same {@link #bulkAssignToBatch(List)}
+     * @return Flux containing the ids of the matching transactions
+     */
+    Flux<String> findIdsAssignedToBatch(String rewardBatchId, Collection<String> trxIds, LocalDateTime rewardBatchInclusionDate);
+
+    /**
+     * Retrieves just the content fingerprint stored on the provided transactions
+     * @param trxIds the ids of the transactions
+     * @return Flux containing the stored transactions, having valued just their id and content fingerprint
+     */
+    Flux<RewardTransaction> findContentFingerprints(Collection<String> trxIds);
+
+    /**
+     * Retrieves just the status of the provided transactions
+     * @param trxIds the ids of the transactions
+     * @return Flux containing the stored transactions, having valued just their id and status
+     */
+    Flux<RewardTransaction> findStatusesByIds(Collection<String> trxIds);
+
+    /**
+     * Retrieves, for the provided transactions already stored, just their reward batch assignment fields and the point of sale ones
+     * @param trxIds the ids of the transactions
+     * @return Flux containing the stored transactions, having valued just the retrieved fields
+     */
+    Flux<RewardTransaction> findBatchDataByIds(Collection<String> trxIds);
+
+    /**
+     * Computes, for each of the provided reward batches, the number of transactions assigned to it and the sum of their accrued rewards
+     * @param rewardBatchIds the reward batches to compute
+     * @return Flux containing the totals of each batch having at least one transaction
+     */
+    Flux<RewardBatchTransactionTotalsDTO> aggregateTransactionTotalsByRewardBatch(Collection<String> rewardBatchIds);
+
+    /**
+     * It will return the distinct point of sales having at least one transaction charged since the given date
+     * @param since the minimum charge date
+     * @param limit the maximum number of point of sales to return
+     * @return Flux containing the merchant and the id of each active point of sale
+     */
+    Flux<MerchantPointOfSaleDTO> findActiveMerchantPointOfSales(LocalDateTime since, int limit);
+
+    /**
+     * It will return the id closing the next chunk of the transactions of the initiative, in order of id
+     * @param initiativeId the initiative of the transactions
+     * @param afterId the id closing the previous chunk, null to start from the first transaction
+     * @param chunkSize the number of transactions of the chunk
+     * @return Mono containing the id of the chunkSize-th transaction following afterId, empty if fewer transactions remain
+     */
+    Mono<String> findInitiativeChunkUpperBound(String initiativeId, String afterId, int chunkSize);
+
+    /**
+     * It will delete the transactions of the initiative having id greater than afterId and not greater than upToId
+     * @param afterId the lower bound (excluded) of the range, null if unbounded
+     * @param upToId the upper bound (included) of the range, null if unbounded
+     * @return Mono containing the number of deleted transactions
+     */
+    Mono<Long> deleteByInitiativeIdInRange(String initiativeId, String afterId, String upToId);
+
+    /**
+     * It will remove the initiative, its rewards and rejection reasons from the transactions having id greater than afterId and not greater than upToId
+     * @param afterId the lower bound (excluded) of the range, null if unbounded
+     * @param upToId the upper bound (included) of the range, null if unbounded
+     * @return Mono containing the number of updated transactions
+     */
+    Mono<Long> removeInitiativeInRange(String initiativeId, String afterId, String upToId);
+
+    /** It will return the distinct reward batches to which the transactions of the initiative are assigned */
+    Flux<String> findDistinctRewardBatchIdsByInitiative(String initiativeId);
+
+    /** It will return, among the given reward batches, the ones to which are assigned also transactions not belonging to the initiative */
+    Flux<String> findRewardBatchIdsSharedOutsideInitiative(Collection<String> rewardBatchIds, String initiativeId);
+
 }
@@ -3,10 +3,16 @@ package it.gov.pagopa.idpay.transactions.repository;
 import static it.gov.pagopa.idpay.transactions.utils.AggregationConstants.FIELD_PRODUCT_NAME;
 import static it.gov.pagopa.idpay.transactions.utils.AggregationConstants.FIELD_STATUS;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import it.gov.pagopa.idpay.transactions.dto.FranchisePointOfSaleDTO;
+import it.gov.pagopa.idpay.transactions.dto.MerchantPointOfSaleDTO;
 import it.gov.pagopa.idpay.transactions.dto.ReasonDTO;
 import it.gov.pagopa.idpay.transactions.dto.TrxFiltersDTO;
+import it.gov.pagopa.idpay.transactions.dto.batch.RewardBatchTransactionTotalsDTO;
+import it.gov.pagopa.idpay.transactions.dto.batch.RewardBatchTrxStatusGroupDTO;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
 import it.gov.pagopa.idpay.transactions.enums.SyncTrxStatus;
 import it.gov.pagopa.idpay.transactions.model.ChecksError;
@@ -16,10 +22,15 @@ import it.gov.pagopa.idpay.transactions.service.RewardBatchServiceImpl;
 import it.gov.pagopa.idpay.transactions.utils.AggregationConstants;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -29,6 +40,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
@@ -423,27 +435,7 @@ public class RewardTransactionSpecificRepositoryImpl implements RewardTransactio
 
                               RewardBatchTrxStatus currentStatus = current.getRewardBatchTrxStatus();
 
-                              Update update = new Update()
-                                      .set(Fields.rewardBatchTrxStatus, newStatus)
-                                      .set(Fields.rewardBatchLastMonthElaborated, batchMonth);
-
-                              if (checksError != null) {
-                                update.set(RewardTransaction.Fields.checksError, checksError);
-                              } else {
-                                update.unset(RewardTransaction.Fields.checksError);
-                              }
-
-
-                              if (reasons == null) {
-                                update.unset(RewardTransaction.Fields.rewardBatchRejectionReason);
-                              } else {
-                                if (currentStatus != null && currentStatus.equals(newStatus)) {
-                                  update.push(RewardTransaction.Fields.rewardBatchRejectionReason).value(reasons);
-                                } else {
-                                  update.set(RewardTransaction.Fields.rewardBatchRejectionReason, List.of(reasons));
-                                }
-                              }
-
+                              Update update = buildStatusUpdate(currentStatus, newStatus, reasons, batchMonth, checksError);
 
                               Criteria cond = Criteria.where(Fields.id).is(trxId)
                                       .and(Fields.rewardBatchId).is(batchId)
@@ -461,6 +453,90 @@ public class RewardTransactionSpecificRepositoryImpl implements RewardTransactio
             );
   }
 
+  @Override
+  public Flux<RewardBatchTrxStatusGroupDTO> aggregateByRewardBatchTrxStatus(String batchId, Collection<String> trxIds, String initiativeId, String batchMonth) {
+    AggregationExpression elaboratedInPreviousMonths = BooleanOperators.And.and(
+        // strings are greater than null and missing values
+        ComparisonOperators.Gt.valueOf(Fields.rewardBatchLastMonthElaborated).greaterThanValue(""),
+        ComparisonOperators.Lt.valueOf(Fields.rewardBatchLastMonthElaborated).lessThanValue(batchMonth));
+    Aggregation agg = Aggregation.newAggregation(
+        Aggregation.match(Criteria.where(Fields.id).in(trxIds)
+            .and(Fields.rewardBatchId).is(batchId)
+            .and(Fields.rewardBatchTrxStatus).ne(null)),
+        Aggregation.group(Fields.rewardBatchTrxStatus)
+            .push(Fields.id).as(RewardBatchTrxStatusGroupDTO.Fields.trxIds)
+            .count().as(RewardBatchTrxStatusGroupDTO.Fields.count)
+            .sum("%s.%s.accruedRewardCents".formatted(Fields.rewards, initiativeId)).as(RewardBatchTrxStatusGroupDTO.Fields.accruedRewardCents)
+            .sum(ConditionalOperators.when(elaboratedInPreviousMonths)
+                .then(1)
+                .otherwise(0)).as(RewardBatchTrxStatusGroupDTO.Fields.elaboratedInPreviousMonths)
+            // $$REMOVE skips the transactions not elaborated in previous months
+            .push((AggregationExpression) context -> new Document("$cond", List.of(elaboratedInPreviousMonths.toDocument(context), "$_id", "$$REMOVE")))
+                .as(RewardBatchTrxStatusGroupDTO.Fields.elaboratedInPreviousMonthsTrxIds),
+        Aggregation.project(RewardBatchTrxStatusGroupDTO.Fields.trxIds, RewardBatchTrxStatusGroupDTO.Fields.count,
+                RewardBatchTrxStatusGroupDTO.Fields.accruedRewardCents, RewardBatchTrxStatusGroupDTO.Fields.elaboratedInPreviousMonths,
+                RewardBatchTrxStatusGroupDTO.Fields.elaboratedInPreviousMonthsTrxIds)
+            .and(RewardBatchTrxStatusGroupDTO.Fields.rewardBatchTrxStatus).previousOperation()
+    );
+
+    return mongoTemplate.aggregate(agg, RewardTransaction.class, RewardBatchTrxStatusGroupDTO.class);
+  }
+
+  @Override
+  public Mono<RewardBatchTrxStatusGroupDTO> aggregateByStatusUpdateId(String batchId, Collection<String> trxIds, String statusUpdateId, String initiativeId) {
+    Aggregation agg = Aggregation.newAggregation(
+        Aggregation.match(Criteria.where(Fields.id).in(trxIds)
+            .and(Fields.rewardBatchId).is(batchId)
+            .and(Fields.rewardBatchStatusUpdateId).is(statusUpdateId)),
+        Aggregation.group()
+            .push(Fields.id).as(RewardBatchTrxStatusGroupDTO.Fields.trxIds)
+            .count().as(RewardBatchTrxStatusGroupDTO.Fields.count)
+            .sum("%s.%s.accruedRewardCents".formatted(Fields.rewards, initiativeId)).as(RewardBatchTrxStatusGroupDTO.Fields.accruedRewardCents),
+        Aggregation.project(RewardBatchTrxStatusGroupDTO.Fields.trxIds, RewardBatchTrxStatusGroupDTO.Fields.count,
+                RewardBatchTrxStatusGroupDTO.Fields.accruedRewardCents)
+            .andExclude("_id")
+    );
+
+    return mongoTemplate.aggregate(agg, RewardTransaction.class, RewardBatchTrxStatusGroupDTO.class)
+        .next();
+  }
+
+  @Override
+  public Mono<Long> updateStatusByIds(String batchId, Collection<String> trxIds, RewardBatchTrxStatus currentStatus, RewardBatchTrxStatus newStatus,
+                                      ReasonDTO reasons, String batchMonth, ChecksError checksError, String statusUpdateId) {
+    return mongoTemplate.updateMulti(
+            Query.query(Criteria.where(Fields.id).in(trxIds)
+                .and(Fields.rewardBatchId).is(batchId)
+                .and(Fields.rewardBatchTrxStatus).is(currentStatus)),
+            buildStatusUpdate(currentStatus, newStatus, reasons, batchMonth, checksError)
+                .set(Fields.rewardBatchStatusUpdateId, statusUpdateId),
+            RewardTransaction.class)
+        .map(UpdateResult::getMatchedCount);
+  }
+
+  private static Update buildStatusUpdate(RewardBatchTrxStatus currentStatus, RewardBatchTrxStatus newStatus, ReasonDTO reasons, String batchMonth, ChecksError checksError) {
+    Update update = new Update()
+            .set(Fields.rewardBatchTrxStatus, newStatus)
+            .set(Fields.rewardBatchLastMonthElaborated, batchMonth);
+
+    if (checksError != null) {
+      update.set(RewardTransaction.Fields.checksError, checksError);
+    } else {
+      update.unset(RewardTransaction.Fields.checksError);
+    }
+
+    if (reasons == null) {
+      update.unset(RewardTransaction.Fields.rewardBatchRejectionReason);
+    } else {
+      if (currentStatus != null && currentStatus.equals(newStatus)) {
+        update.push(RewardTransaction.Fields.rewardBatchRejectionReason).value(reasons);
+      } else {
+        update.set(RewardTransaction.Fields.rewardBatchRejectionReason, List.of(reasons));
+      }
+    }
+    return update;
+  }
+
   @Override
   public Flux<RewardTransaction> findInvoicedTransactionsWithoutBatch(int pageSize) {
     Pageable pageable = PageRequest.of(0, pageSize);
@@ -524,4 +600,204 @@ public class RewardTransactionSpecificRepositoryImpl implements RewardTransactio
 
       return mongoTemplate.findOne(Query.query(criteria), RewardTransaction.class);
     }
+
+  @Override
+  public Mono<BulkWriteResult> bulkUpsert(List<RewardTransaction> transactions) {
+    if (transactions.isEmpty()) {
+      return Mono.empty();
+    }
+
+    ReactiveBulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RewardTransaction.class);
+    transactions.forEach(trx -> bulkOps.replaceOne(
+        Query.query(Criteria.where(Fields.id).is(trx.getId())),
+        trx,
+        FindAndReplaceOptions.options().upsert()));
+
+    return executeBulk(bulkOps);
+  }
+
+  /**
+   * The reactive template translates the failure of a bulk write as any other error, thus losing the operations which failed:
+   * it is reported again as a {@link BulkOperationException}, exposing the errors of the single operations and the result of the others
+   */
+  static Mono<BulkWriteResult> executeBulk(ReactiveBulkOperations bulkOps) {
+    return bulkOps.execute()
+        .onErrorMap(e -> !(e instanceof BulkOperationException) && e.getCause() instanceof MongoBulkWriteException,
+            e -> new BulkOperationException(e.getMessage(), (MongoBulkWriteException) e.getCause()));
+  }
+
+  @Override
+  public Mono<BulkWriteResult> bulkAssignToBatch(List<RewardTransaction> transactions) {
+    if (transactions.isEmpty()) {
+      return Mono.empty();
+    }
+
+    ReactiveBulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RewardTransaction.class);
+    transactions.forEach(trx -> bulkOps.updateOne(
+        Query.query(Criteria.where(Fields.id).is(trx.getId()).and(Fields.rewardBatchId).isNull()),
+        new Update()
+            .set(Fields.invoiceUploadDate, trx.getInvoiceUploadDate())
+            .set(Fields.franchiseName, trx.getFranchiseName())
+            .set(Fields.pointOfSaleType, trx.getPointOfSaleType())
+            .set(Fields.businessName, trx.getBusinessName())
+            .set(Fields.rewardBatchId, trx.getRewardBatchId())
+            .set(Fields.rewardBatchTrxStatus, trx.getRewardBatchTrxStatus())
+            .set(Fields.rewardBatchInclusionDate, trx.getRewardBatchInclusionDate())
+            .set(Fields.rewardBatchRejectionReason, trx.getRewardBatchRejectionReason())
+            .set(Fields.samplingKey, trx.getSamplingKey())
+            .set(Fields.updateDate, trx.getUpdateDate())));
+
+    return executeBulk(bulkOps);
+  }
+
+  @Override
+  public Flux<String> findIdsAssignedToBatch(String rewardBatchId, Collection<String> trxIds, LocalDateTime rewardBatchInclusionDate) {
+    Query query = Query.query(Criteria.where(Fields.id).in(trxIds)
+        .and(Fields.rewardBatchId).is(rewardBatchId)
+        .and(Fields.rewardBatchInclusionDate).is(rewardBatchInclusionDate));
+    query.fields().include(Fields.id);
+
+    return mongoTemplate.find(query, RewardTransaction.class)
+        .map(RewardTransaction::getId);
+  }
+
+  @Override
+  public Flux<RewardTransaction> findContentFingerprints(Collection<String> trxIds) {
+    Query query = Query.query(Criteria.where(Fields.id).in(trxIds));
+    query.fields().include(Fields.id, Fields.contentFingerprint);
+
+    return mongoTemplate.find(query, RewardTransaction.class);
+  }
+
+  @Override
+  public Flux<RewardTransaction> findStatusesByIds(Collection<String> trxIds) {
+    Query query = Query.query(Criteria.where(Fields.id).in(trxIds));
+    query.fields().include(Fields.id, Fields.status);
+
+    return mongoTemplate.find(query, RewardTransaction.class);
+  }
+
+  @Override
+  public Flux<RewardTransaction> findBatchDataByIds(Collection<String> trxIds) {
+    Query query = Query.query(Criteria.where(Fields.id).in(trxIds));
+    query.fields().include(
+        Fields.rewardBatchId,
+        Fields.rewardBatchTrxStatus,
+        Fields.rewardBatchRejectionReason,
+        Fields.rewardBatchInclusionDate,
+        Fields.rewardBatchLastMonthElaborated,
+        Fields.franchiseName,
+        Fields.pointOfSaleType,
+        Fields.businessName,
+        Fields.invoiceUploadDate,
+        Fields.samplingKey);
+
+    return mongoTemplate.find(query, RewardTransaction.class);
+  }
+
+  @Override
+  public Flux<RewardBatchTransactionTotalsDTO> aggregateTransactionTotalsByRewardBatch(Collection<String> rewardBatchIds) {
+    Aggregation agg = Aggregation.newAggregation(
+        Aggregation.match(Criteria.where(Fields.rewardBatchId).in(rewardBatchIds)),
+        // as when counted at ingestion, just the reward of the first initiative of each transaction is summed
+        Aggregation.project(Fields.rewardBatchId)
+            .and(ctx -> new Document("$arrayElemAt", List.of(
+                new Document("$filter", new Document("input", new Document("$objectToArray", "$" + Fields.rewards))
+                    .append("as", "reward")
+                    .append("cond", new Document("$eq", List.of("$$reward.k", new Document("$arrayElemAt", List.of("$" + Fields.initiatives, 0)))))),
+                0))).as("firstReward"),
+        Aggregation.group(Fields.rewardBatchId)
+            .count().as(RewardBatchTransactionTotalsDTO.Fields.numberOfTransactions)
+            .sum("firstReward.v.accruedRewardCents").as(RewardBatchTransactionTotalsDTO.Fields.initialAmountCents),
+        Aggregation.project(RewardBatchTransactionTotalsDTO.Fields.numberOfTransactions, RewardBatchTransactionTotalsDTO.Fields.initialAmountCents)
+            .and(RewardBatchTransactionTotalsDTO.Fields.rewardBatchId).previousOperation()
+    );
+
+    return mongoTemplate.aggregate(agg, RewardTransaction.class, RewardBatchTransactionTotalsDTO.class);
+  }
+
+  @Override
+  public Flux<MerchantPointOfSaleDTO> findActiveMerchantPointOfSales(LocalDateTime since, int limit) {
+    Aggregation agg = Aggregation.newAggregation(
+        Aggregation.match(Criteria.where(Fields.trxChargeDate).gte(since)
+            .and(Fields.merchantId).ne(null)
+            .and(Fields.pointOfSaleId).ne(null)),
+        Aggregation.group(Fields.merchantId, Fields.pointOfSaleId),
+        Aggregation.limit(limit),
+        Aggregation.project()
+            .and("_id." + Fields.merchantId).as(MerchantPointOfSaleDTO.Fields.merchantId)
+            .and("_id." + Fields.pointOfSaleId).as(MerchantPointOfSaleDTO.Fields.pointOfSaleId)
+    );
+
+    return mongoTemplate.aggregate(agg, RewardTransaction.class, MerchantPointOfSaleDTO.class);
+  }
+
+  @Override
+  public Mono<String> findInitiativeChunkUpperBound(String initiativeId, String afterId, int chunkSize) {
+    Query query = Query.query(buildIdRangeCriteria(getCriteria(initiativeId), afterId, null));
+    return findChunkUpperBound(mongoTemplate, query, chunkSize, RewardTransaction.class)
+        .map(RewardTransaction::getId);
+  }
+
+  @Override
+  public Mono<Long> deleteByInitiativeIdInRange(String initiativeId, String afterId, String upToId) {
+    return mongoTemplate.remove(
+            Query.query(buildIdRangeCriteria(getCriteria(initiativeId), afterId, upToId)),
+            RewardTransaction.class)
+        .map(DeleteResult::getDeletedCount);
+  }
+
+  @Override
+  public Mono<Long> removeInitiativeInRange(String initiativeId, String afterId, String upToId) {
+    return mongoTemplate.updateMulti(
+            Query.query(buildIdRangeCriteria(getCriteria(initiativeId), afterId, upToId)),
+            new Update()
+                .pull(RewardTransaction.Fields.initiatives, initiativeId)
+                .unset("%s.%s".formatted(RewardTransaction.Fields.rewards, initiativeId))
+                .unset("%s.%s".formatted(RewardTransaction.Fields.initiativeRejectionReasons,
+                    initiativeId)),
+            RewardTransaction.class)
+        .map(UpdateResult::getModifiedCount);
+  }
+
+  @Override
+  public Flux<String> findDistinctRewardBatchIdsByInitiative(String initiativeId) {
+    return mongoTemplate.findDistinct(
+        Query.query(getCriteria(initiativeId).and(Fields.rewardBatchId).ne(null)),
+        Fields.rewardBatchId,
+        RewardTransaction.class,
+        String.class);
+  }
+
+  @Override
+  public Flux<String> findRewardBatchIdsSharedOutsideInitiative(Collection<String> rewardBatchIds, String initiativeId) {
+    return mongoTemplate.findDistinct(
+        Query.query(Criteria.where(Fields.rewardBatchId).in(rewardBatchIds).and(Fields.initiatives).ne(initiativeId)),
+        Fields.rewardBatchId,
+        RewardTransaction.class,
+        String.class);
+  }
+
+  /** It will restrict the criteria to the ids greater than afterId and not greater than upToId, when provided */
+  static Criteria buildIdRangeCriteria(Criteria criteria, String afterId, String upToId) {
+    if (afterId != null || upToId != null) {
+      Criteria idCriteria = criteria.and("_id");
+      if (afterId != null) {
+        idCriteria.gt(afterId);
+      }
+      if (upToId != null) {
+        idCriteria.lte(upToId);
+      }
+    }
+    return criteria;
+  }
+
+  /** It will return, reading just its id, the chunkSize-th document matching the query in order of id */
+  static <T> Mono<T> findChunkUpperBound(ReactiveMongoTemplate mongoTemplate, Query query, int chunkSize, Class<T> entityClass) {
+    query.with(Sort.by(Sort.Direction.ASC, "_id"))
+        .skip(chunkSize - 1L)
+        .limit(1)
+        .fields().include("_id");
+    return mongoTemplate.find(query, entityClass).next();
   }
+}
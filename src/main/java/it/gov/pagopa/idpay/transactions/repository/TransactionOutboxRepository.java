@@ -0,0 +1,7 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.idpay.transactions.model.TransactionOutbox;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface TransactionOutboxRepository extends ReactiveMongoRepository<TransactionOutbox, String>, TransactionOutboxSpecificRepository {
+}
@@ -0,0 +1,23 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.idpay.transactions.model.TransactionOutbox;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TransactionOutboxSpecificRepository {
+
+    /** It will claim at most <i>limit</i> available PENDING entries, making them unavailable until <i>claimedUntil</i>, and it will return them in creation order */
+    Flux<TransactionOutbox> claimPending(String claimId, int limit, LocalDateTime claimedUntil);
+
+    /** It will mark the given entries as DELIVERED, returning the number of updated entries */
+    Mono<Long> markDelivered(List<String> ids);
+
+    /** It will release the claim of an entry whose delivery failed, making it available again at <i>retryDate</i> */
+    Mono<Void> markFailed(String id, String error, LocalDateTime retryDate);
+
+    /** It will mark as DISCARDED a claimed entry that must not be published, storing the reason */
+    Mono<Void> markDiscarded(String id, String reason);
+}
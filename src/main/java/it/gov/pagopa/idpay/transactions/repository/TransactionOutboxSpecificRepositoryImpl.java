@@ -0,0 +1,95 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import com.mongodb.client.result.UpdateResult;
+import it.gov.pagopa.idpay.transactions.enums.TransactionOutboxStatus;
+import it.gov.pagopa.idpay.transactions.model.TransactionOutbox;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class TransactionOutboxSpecificRepositoryImpl implements TransactionOutboxSpecificRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public TransactionOutboxSpecificRepositoryImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Flux<TransactionOutbox> claimPending(String claimId, int limit, LocalDateTime claimedUntil) {
+        LocalDateTime now = LocalDateTime.now();
+        Query availableQuery = Query.query(Criteria.where(TransactionOutbox.Fields.status).is(TransactionOutboxStatus.PENDING)
+                .and(TransactionOutbox.Fields.availableDate).lte(now))
+                .with(Sort.by(TransactionOutbox.Fields.availableDate))
+                .limit(limit);
+        availableQuery.fields().include(TransactionOutbox.Fields.id);
+
+        return mongoTemplate.find(availableQuery, TransactionOutbox.class)
+                .map(TransactionOutbox::getId)
+                .collectList()
+                .filter(ids -> !ids.isEmpty())
+                .flatMap(ids -> mongoTemplate.updateMulti(
+                        Query.query(Criteria.where(TransactionOutbox.Fields.id).in(ids)
+                                .and(TransactionOutbox.Fields.status).is(TransactionOutboxStatus.PENDING)
+                                .and(TransactionOutbox.Fields.availableDate).lte(now)),
+                        new Update()
+                                .set(TransactionOutbox.Fields.claimId, claimId)
+                                .set(TransactionOutbox.Fields.availableDate, claimedUntil),
+                        TransactionOutbox.class))
+                .flatMapMany(r -> mongoTemplate.find(
+                        Query.query(Criteria.where(TransactionOutbox.Fields.claimId).is(claimId))
+                                .with(Sort.by(TransactionOutbox.Fields.creationDate)),
+                        TransactionOutbox.class));
+    }
+
+    @Override
+    public Mono<Long> markDelivered(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return mongoTemplate.updateMulti(
+                        Query.query(Criteria.where(TransactionOutbox.Fields.id).in(ids)),
+                        new Update()
+                                .set(TransactionOutbox.Fields.status, TransactionOutboxStatus.DELIVERED)
+                                .set(TransactionOutbox.Fields.deliveryDate, LocalDateTime.now())
+                                .inc(TransactionOutbox.Fields.attempts, 1)
+                                .unset(TransactionOutbox.Fields.claimId)
+                                .unset(TransactionOutbox.Fields.lastError),
+                        TransactionOutbox.class)
+                .map(UpdateResult::getModifiedCount);
+    }
+
+    @Override
+    public Mono<Void> markFailed(String id, String error, LocalDateTime retryDate) {
+        return mongoTemplate.updateFirst(
+                        Query.query(Criteria.where(TransactionOutbox.Fields.id).is(id)
+                                .and(TransactionOutbox.Fields.status).is(TransactionOutboxStatus.PENDING)),
+                        new Update()
+                                .set(TransactionOutbox.Fields.lastError, error)
+                                .set(TransactionOutbox.Fields.availableDate, retryDate)
+                                .inc(TransactionOutbox.Fields.attempts, 1)
+                                .unset(TransactionOutbox.Fields.claimId),
+                        TransactionOutbox.class)
+                .then();
+    }
+
+    @Override
+    public Mono<Void> markDiscarded(String id, String reason) {
+        return mongoTemplate.updateFirst(
+                        Query.query(Criteria.where(TransactionOutbox.Fields.id).is(id)
+                                .and(TransactionOutbox.Fields.status).is(TransactionOutboxStatus.PENDING)),
+                        new Update()
+                                .set(TransactionOutbox.Fields.status, TransactionOutboxStatus.DISCARDED)
+                                .set(TransactionOutbox.Fields.lastError, reason)
+                                .unset(TransactionOutbox.Fields.claimId),
+                        TransactionOutbox.class)
+                .then();
+    }
+}
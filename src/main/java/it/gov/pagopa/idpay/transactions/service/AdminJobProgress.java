@@ -0,0 +1,17 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** The handle through which a job started by {@link AdminJobService} reports the number of items processed so far */
+public class AdminJobProgress {
+
+    private final AtomicLong processed = new AtomicLong();
+
+    public void add(long n) {
+        processed.addAndGet(n);
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+}
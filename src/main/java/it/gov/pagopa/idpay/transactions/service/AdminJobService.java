@@ -0,0 +1,29 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/** A registry of the administrative bulk operations, tracking them on Mongo in order to report their progress and to allow their cancellation */
+public interface AdminJobService {
+
+    /**
+     * It will register a new job of the given type and then it will run it in background.<br />
+     * It will error with a CONFLICT if another job of the same type is already running.
+     * @param job the operation to run, reporting its progress on the provided handle; the value it emits will be stored as the job result
+     * @return Mono containing the registered job
+     */
+    Mono<AdminJob> start(AdminJobType type, String parameters, Function<AdminJobProgress, Mono<?>> job);
+
+    /** It will return the given job, erroring with a NOT_FOUND if it doesn't exist */
+    Mono<AdminJob> getJob(String jobId);
+
+    /** It will return the jobs of the given type (all the jobs if null), the most recent first */
+    Flux<AdminJob> getJobs(AdminJobType type);
+
+    /** It will request the cancellation of the given job, returning it; a job already ended is returned unchanged */
+    Mono<AdminJob> cancel(String jobId);
+}
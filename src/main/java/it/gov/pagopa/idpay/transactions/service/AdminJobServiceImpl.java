@@ -0,0 +1,137 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.web.exception.ClientExceptionWithBody;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobStatus;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
+import it.gov.pagopa.idpay.transactions.repository.AdminJobRepository;
+import it.gov.pagopa.idpay.transactions.utils.ExceptionConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * It will track the jobs on Mongo: at most one job for each type can run, guarded by a lock document whose heartbeat is refreshed together with the job progress.<br />
+ * The cancellation of a job is stored on it and it is applied by the instance running it at its next progress update (immediately if running on the same instance).
+ */
+@Service
+@Slf4j
+public class AdminJobServiceImpl implements AdminJobService {
+
+    private final AdminJobRepository adminJobRepository;
+    private final Duration heartbeatInterval;
+    private final Duration staleAfter;
+
+    private final Map<String, Disposable> runningJobs = new ConcurrentHashMap<>();
+
+    public AdminJobServiceImpl(AdminJobRepository adminJobRepository,
+                               @Value("${app.admin-jobs.heartbeat-seconds}") long heartbeatSeconds,
+                               @Value("${app.admin-jobs.stale-after-seconds}") long staleAfterSeconds) {
+        this.adminJobRepository = adminJobRepository;
+        this.heartbeatInterval = Duration.ofSeconds(heartbeatSeconds);
+        this.staleAfter = Duration.ofSeconds(staleAfterSeconds);
+    }
+
+    @Override
+    public Mono<AdminJob> start(AdminJobType type, String parameters, Function<AdminJobProgress, Mono<?>> job) {
+        String jobId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+
+        return adminJobRepository.acquireLock(type, jobId, now.minus(staleAfter))
+                .flatMap(previousLock -> Mono.justOrEmpty(previousLock.getJobId())
+                        .doOnNext(staleJobId -> log.warn("[ADMIN_JOB] Taking over the lock of type {} held by the stale job {}", type, staleJobId))
+                        .flatMap(staleJobId -> adminJobRepository.complete(staleJobId, AdminJobStatus.FAILED, null, null, "Stale job: no progress received since %s".formatted(previousLock.getHeartbeatDate()))))
+                .onErrorMap(DuplicateKeyException.class, e -> new ClientExceptionWithBody(HttpStatus.CONFLICT,
+                        ExceptionConstants.ExceptionCode.ADMIN_JOB_ALREADY_RUNNING,
+                        ExceptionConstants.ExceptionMessage.ERROR_MESSAGE_ADMIN_JOB_ALREADY_RUNNING.formatted(type)))
+                .then(Mono.defer(() -> adminJobRepository.save(AdminJob.builder()
+                        .id(jobId)
+                        .type(type)
+                        .parameters(parameters)
+                        .status(AdminJobStatus.RUNNING)
+                        .startDate(now)
+                        .updateDate(now)
+                        .build())))
+                .doOnNext(adminJob -> run(adminJob, job));
+    }
+
+    private void run(AdminJob adminJob, Function<AdminJobProgress, Mono<?>> job) {
+        AdminJobProgress progress = new AdminJobProgress();
+        Disposable.Swap execution = Disposables.swap();
+        runningJobs.put(adminJob.getId(), execution);
+
+        Disposable heartbeat = Flux.interval(heartbeatInterval)
+                .concatMap(i -> adminJobRepository.updateProgress(adminJob, progress.getProcessed())
+                        .onErrorResume(e -> {
+                            log.error("[ADMIN_JOB] Cannot store the progress of job {}", adminJob.getId(), e);
+                            return Mono.empty();
+                        }))
+                .filter(AdminJob::isCancelRequested)
+                .subscribe(j -> execution.dispose());
+
+        log.info("[ADMIN_JOB] Job {} of type {} started: {}", adminJob.getId(), adminJob.getType(), adminJob.getParameters());
+        execution.update(Mono.defer(() -> job.apply(progress))
+                .map(Optional::<Object>of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(result -> end(adminJob, AdminJobStatus.COMPLETED, progress, result.orElse(null), null))
+                .onErrorResume(e -> {
+                    log.error("[ADMIN_JOB] Job {} of type {} failed", adminJob.getId(), adminJob.getType(), e);
+                    return end(adminJob, AdminJobStatus.FAILED, progress, null, e.getMessage());
+                })
+                .doOnCancel(() -> end(adminJob, AdminJobStatus.CANCELLED, progress, null, null).subscribe())
+                .doFinally(s -> {
+                    heartbeat.dispose();
+                    runningJobs.remove(adminJob.getId());
+                })
+                .subscribe());
+    }
+
+    private Mono<AdminJob> end(AdminJob adminJob, AdminJobStatus status, AdminJobProgress progress, Object result, String errorMessage) {
+        return adminJobRepository.complete(adminJob.getId(), status, progress.getProcessed(), result, errorMessage)
+                .doOnNext(j -> log.info("[ADMIN_JOB] Job {} of type {} ended with status {} after having processed {} items", j.getId(), j.getType(), status, j.getProcessed()))
+                .flatMap(j -> adminJobRepository.releaseLock(adminJob.getType(), adminJob.getId()).thenReturn(j))
+                .onErrorResume(e -> {
+                    log.error("[ADMIN_JOB] Cannot store the end of job {}", adminJob.getId(), e);
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public Mono<AdminJob> getJob(String jobId) {
+        return adminJobRepository.findById(jobId)
+                .switchIfEmpty(Mono.error(() -> new ClientExceptionWithBody(HttpStatus.NOT_FOUND,
+                        ExceptionConstants.ExceptionCode.ADMIN_JOB_NOT_FOUND,
+                        ExceptionConstants.ExceptionMessage.ERROR_MESSAGE_ADMIN_JOB_NOT_FOUND.formatted(jobId))));
+    }
+
+    @Override
+    public Flux<AdminJob> getJobs(AdminJobType type) {
+        return type != null
+                ? adminJobRepository.findByTypeOrderByStartDateDesc(type)
+                : adminJobRepository.findAllByOrderByStartDateDesc();
+    }
+
+    @Override
+    public Mono<AdminJob> cancel(String jobId) {
+        return adminJobRepository.requestCancellation(jobId)
+                .doOnNext(j -> {
+                    log.info("[ADMIN_JOB] Requested the cancellation of job {} of type {}", jobId, j.getType());
+                    Optional.ofNullable(runningJobs.get(jobId)).ifPresent(Disposable::dispose);
+                })
+                .switchIfEmpty(Mono.defer(() -> getJob(jobId)));
+    }
+}
@@ -0,0 +1,10 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.dto.CacheWarmUpReportDTO;
+import reactor.core.publisher.Mono;
+
+public interface CacheWarmUpService {
+
+    /** It will preload the point of sales and the current month reward batches of the merchants recently active */
+    Mono<CacheWarmUpReportDTO> warmUp();
+}
@@ -0,0 +1,192 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.connector.rest.MerchantRestClient;
+import it.gov.pagopa.idpay.transactions.dto.CacheWarmUpReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.MerchantPointOfSaleDTO;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * It will warm up the caches used while ingesting transactions: the point of sales read from the merchant service and the current month reward batches.<br />
+ * When enabled, the warm-up is started in background at startup, thus without delaying the startup of the other components:
+ * the readiness is anyway held in {@link ReadinessState#REFUSING_TRAFFIC} until the warm-up completes, or until its deadline passes.
+ */
+@Service
+@Slf4j
+public class CacheWarmUpServiceImpl implements CacheWarmUpService, SmartLifecycle {
+
+    private static final int BATCH_PRELOAD_CHUNK_SIZE = 500;
+
+    private final RewardTransactionRepository rewardTransactionRepository;
+    private final MerchantRestClient merchantRestClient;
+    private final RewardBatchService rewardBatchService;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    private final boolean enabled;
+    private final int activeDays;
+    private final int maxPointOfSales;
+    private final int concurrency;
+    private final Duration deadline;
+
+    private final Object readinessLock = new Object();
+    private boolean warmingUp;
+    private boolean readinessHeld;
+
+    private volatile Disposable warmUpSubscription;
+    private volatile boolean running;
+
+    public CacheWarmUpServiceImpl(RewardTransactionRepository rewardTransactionRepository,
+                                  MerchantRestClient merchantRestClient,
+                                  RewardBatchService rewardBatchService,
+                                  ApplicationEventPublisher applicationEventPublisher,
+                                  @Value("${app.cache-warm-up.enabled}") boolean enabled,
+                                  @Value("${app.cache-warm-up.active-days}") int activeDays,
+                                  @Value("${app.cache-warm-up.max-point-of-sales}") int maxPointOfSales,
+                                  @Value("${app.cache-warm-up.concurrency}") int concurrency,
+                                  @Value("${app.cache-warm-up.deadline-seconds}") long deadlineSeconds) {
+        this.rewardTransactionRepository = rewardTransactionRepository;
+        this.merchantRestClient = merchantRestClient;
+        this.rewardBatchService = rewardBatchService;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.enabled = enabled;
+        this.activeDays = activeDays;
+        this.maxPointOfSales = maxPointOfSales;
+        this.concurrency = concurrency;
+        this.deadline = Duration.ofSeconds(deadlineSeconds);
+    }
+
+    @Override
+    public Mono<CacheWarmUpReportDTO> warmUp() {
+        long startTime = System.currentTimeMillis();
+        AtomicLong pointOfSales = new AtomicLong();
+        AtomicLong rewardBatches = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        log.info("[CACHE_WARM_UP] Starting warm-up of the merchants active in the last {} days", activeDays);
+        return rewardTransactionRepository.findActiveMerchantPointOfSales(LocalDateTime.now().minusDays(activeDays), maxPointOfSales)
+                .collectList()
+                .flatMap(activePointOfSales -> Mono.when(
+                        loadPointOfSales(activePointOfSales, pointOfSales, failed),
+                        loadRewardBatches(activePointOfSales, rewardBatches, failed)))
+                .thenReturn(true)
+                .timeout(deadline, Mono.fromSupplier(() -> {
+                    log.warn("[CACHE_WARM_UP] Deadline of {} reached, stopping warm-up", deadline);
+                    return false;
+                }))
+                .onErrorResume(e -> {
+                    log.error("[CACHE_WARM_UP] Something gone wrong while warming up caches", e);
+                    return Mono.just(false);
+                })
+                .map(completed -> CacheWarmUpReportDTO.builder()
+                        .pointOfSales(pointOfSales.get())
+                        .rewardBatches(rewardBatches.get())
+                        .failed(failed.get())
+                        .completed(completed)
+                        .elapsedMillis(System.currentTimeMillis() - startTime)
+                        .build())
+                .doOnNext(report -> log.info("[CACHE_WARM_UP] Warm-up ended: {}", report));
+    }
+
+    /** It will invoke the cached {@link MerchantRestClient#getPointOfSale(String, String)} for each point of sale */
+    private Mono<Void> loadPointOfSales(List<MerchantPointOfSaleDTO> activePointOfSales, AtomicLong pointOfSales, AtomicLong failed) {
+        return Flux.fromIterable(activePointOfSales)
+                .flatMap(pos -> merchantRestClient.getPointOfSale(pos.getMerchantId(), pos.getPointOfSaleId())
+                                .doOnNext(x -> pointOfSales.incrementAndGet())
+                                .onErrorResume(e -> {
+                                    failed.incrementAndGet();
+                                    log.warn("[CACHE_WARM_UP] Cannot load point of sale {} of merchant {}: {}", pos.getPointOfSaleId(), pos.getMerchantId(), e.getMessage());
+                                    return Mono.empty();
+                                }),
+                        concurrency)
+                .then();
+    }
+
+    private Mono<Void> loadRewardBatches(List<MerchantPointOfSaleDTO> activePointOfSales, AtomicLong rewardBatches, AtomicLong failed) {
+        Set<String> merchantIds = activePointOfSales.stream().map(MerchantPointOfSaleDTO::getMerchantId).collect(Collectors.toSet());
+        String month = YearMonth.now().toString();
+        return Flux.fromIterable(merchantIds)
+                .buffer(BATCH_PRELOAD_CHUNK_SIZE)
+                .concatMap(chunk -> rewardBatchService.preloadBatchResolutions(chunk, month)
+                        .onErrorResume(e -> {
+                            failed.addAndGet(chunk.size());
+                            log.warn("[CACHE_WARM_UP] Cannot load the reward batches of month {} of {} merchants: {}", month, chunk.size(), e.getMessage());
+                            return Mono.empty();
+                        }))
+                .doOnNext(rewardBatches::addAndGet)
+                .then();
+    }
+
+    /** While the warm-up is in progress, it will turn back to {@link ReadinessState#REFUSING_TRAFFIC} the readiness published when the application is ready */
+    @EventListener
+    public void onReadinessChanged(AvailabilityChangeEvent<ReadinessState> event) {
+        if (ReadinessState.ACCEPTING_TRAFFIC.equals(event.getState())) {
+            synchronized (readinessLock) {
+                if (warmingUp) {
+                    log.info("[CACHE_WARM_UP] Refusing traffic until the end of the warm-up");
+                    readinessHeld = true;
+                    AvailabilityChangeEvent.publish(applicationEventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+                }
+            }
+        }
+    }
+
+    private void releaseReadiness() {
+        synchronized (readinessLock) {
+            warmingUp = false;
+            if (readinessHeld) {
+                readinessHeld = false;
+                AvailabilityChangeEvent.publish(applicationEventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (enabled) {
+            synchronized (readinessLock) {
+                warmingUp = true;
+            }
+            warmUpSubscription = warmUp()
+                    .doFinally(s -> releaseReadiness())
+                    .subscribe();
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        // the readiness is not restored while shutting down
+        synchronized (readinessLock) {
+            warmingUp = false;
+            readinessHeld = false;
+        }
+        Disposable subscription = warmUpSubscription;
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
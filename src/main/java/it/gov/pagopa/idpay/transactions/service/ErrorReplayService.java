@@ -0,0 +1,20 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayRequest;
+import reactor.core.publisher.Mono;
+
+import java.util.function.LongConsumer;
+
+public interface ErrorReplayService {
+    /** It will re-inject the records of the error topic notified by the requested binding into its consumer. It will throw a bad request error if the binding is not replayable */
+    default Mono<ErrorReplayReportDTO> replay(ErrorReplayRequest request) {
+        return replay(request, read -> {});
+    }
+
+    /** As {@link #replay(ErrorReplayRequest)}, notifying to <i>readListener</i> each record read */
+    Mono<ErrorReplayReportDTO> replay(ErrorReplayRequest request, LongConsumer readListener);
+
+    /** It will throw a bad request error if the given binding is not replayable */
+    void checkReplayable(String binding);
+}
@@ -0,0 +1,163 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.kafka.utils.KafkaConstants;
+import it.gov.pagopa.common.reactive.kafka.consumer.BaseKafkaConsumer;
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaRangeReader;
+import it.gov.pagopa.common.web.exception.ClientExceptionWithBody;
+import it.gov.pagopa.idpay.transactions.config.KafkaConfiguration;
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayRequest;
+import it.gov.pagopa.idpay.transactions.utils.ExceptionConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * It will read the error topic inside the requested time window, re-injecting into the consumer of the requested binding the records notified by it.<br />
+ * Records are replayed at the configured rate and with bounded concurrency; records having the same payload are replayed just once.
+ */
+@Service
+@Slf4j
+public class ErrorReplayServiceImpl implements ErrorReplayService {
+
+    private static final List<String> ERROR_HEADERS = List.of(
+            KafkaConstants.ERROR_MSG_HEADER_APPLICATION_NAME,
+            KafkaConstants.ERROR_MSG_HEADER_GROUP,
+            KafkaConstants.ERROR_MSG_HEADER_SRC_TYPE,
+            KafkaConstants.ERROR_MSG_HEADER_SRC_SERVER,
+            KafkaConstants.ERROR_MSG_HEADER_SRC_TOPIC,
+            KafkaConstants.ERROR_MSG_HEADER_DESCRIPTION,
+            KafkaConstants.ERROR_MSG_HEADER_RETRY,
+            KafkaConstants.ERROR_MSG_HEADER_RETRYABLE,
+            KafkaConstants.ERROR_MSG_HEADER_STACKTRACE,
+            KafkaConstants.ERROR_MSG_HEADER_STACKTRACE_FINGERPRINT,
+            KafkaConstants.ERROR_MSG_HEADER_STACKTRACE_OCCURRENCES);
+
+    private final KafkaRangeReader errorReplayRangeReader;
+    private final KafkaConfiguration kafkaConfiguration;
+    private final Map<String, BaseKafkaConsumer<?, ?>> binding2Consumer;
+    private final String applicationName;
+    private final String topic;
+    private final int defaultRecordsPerSecond;
+    private final int defaultConcurrency;
+
+    public ErrorReplayServiceImpl(KafkaRangeReader errorReplayRangeReader,
+                                  KafkaConfiguration kafkaConfiguration,
+                                  List<BaseKafkaConsumer<?, ?>> consumers,
+                                  @Value("${spring.application.name}") String applicationName,
+                                  @Value("${app.kafka.error-replay.topic}") String topic,
+                                  @Value("${app.kafka.error-replay.records-per-second}") int defaultRecordsPerSecond,
+                                  @Value("${app.kafka.error-replay.concurrency}") int defaultConcurrency) {
+        this.errorReplayRangeReader = errorReplayRangeReader;
+        this.kafkaConfiguration = kafkaConfiguration;
+        this.binding2Consumer = consumers.stream()
+                .filter(c -> c.getBindingName() != null)
+                .collect(Collectors.toMap(BaseKafkaConsumer::getBindingName, Function.identity()));
+        this.applicationName = applicationName;
+        this.topic = topic;
+        this.defaultRecordsPerSecond = defaultRecordsPerSecond;
+        this.defaultConcurrency = defaultConcurrency;
+    }
+
+    @Override
+    public void checkReplayable(String binding) {
+        if (!binding2Consumer.containsKey(binding) || !kafkaConfiguration.getStream().getBindings().containsKey(binding)) {
+            throw new ClientExceptionWithBody(HttpStatus.BAD_REQUEST,
+                    ExceptionConstants.ExceptionCode.ERROR_REPLAY_INVALID_BINDING,
+                    ExceptionConstants.ExceptionMessage.ERROR_MESSAGE_ERROR_REPLAY_INVALID_BINDING.formatted(binding));
+        }
+    }
+
+    @Override
+    public Mono<ErrorReplayReportDTO> replay(ErrorReplayRequest request, LongConsumer readListener) {
+        checkReplayable(request.getBinding());
+        BaseKafkaConsumer<?, ?> consumer = binding2Consumer.get(request.getBinding());
+        KafkaConfiguration.KafkaInfoDTO bindingInfo = kafkaConfiguration.getStream().getBindings().get(request.getBinding());
+
+        int recordsPerSecond = request.getRecordsPerSecond() != null ? request.getRecordsPerSecond() : defaultRecordsPerSecond;
+        int concurrency = request.getConcurrency() != null ? request.getConcurrency() : defaultConcurrency;
+        KafkaRangeReader.Range range = new KafkaRangeReader.Range(topic, null, null,
+                toEpochMillis(request.getFromTimestamp()), toEpochMillis(request.getToTimestamp()));
+
+        long startTime = System.currentTimeMillis();
+        AtomicLong read = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong duplicated = new AtomicLong();
+        AtomicLong replayed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        Set<UUID> replayedPayloads = ConcurrentHashMap.newKeySet();
+
+        log.info("[ERROR_REPLAY] Starting replay of binding {} from topic {} ({} records/s, concurrency {}): {}", request.getBinding(), topic, recordsPerSecond, concurrency, request);
+        return errorReplayRangeReader.read(range)
+                .doOnNext(m -> {
+                    read.incrementAndGet();
+                    readListener.accept(1L);
+                })
+                .filter(m -> {
+                    boolean toReplay = isNotifiedBy(m, bindingInfo);
+                    if (!toReplay) {
+                        skipped.incrementAndGet();
+                    }
+                    return toReplay;
+                })
+                .filter(m -> {
+                    boolean firstOccurrence = replayedPayloads.add(UUID.nameUUIDFromBytes(m.getPayload()));
+                    if (!firstOccurrence) {
+                        duplicated.incrementAndGet();
+                    }
+                    return firstOccurrence;
+                })
+                .delayElements(Duration.ofNanos(1_000_000_000L / Math.max(1, recordsPerSecond)))
+                .flatMap(m -> consumer.reprocess(stripErrorHeaders(m))
+                                .then(Mono.fromRunnable(replayed::incrementAndGet))
+                                .onErrorResume(e -> {
+                                    failed.incrementAndGet();
+                                    return Mono.empty();
+                                }),
+                        Math.max(1, concurrency))
+                .then(Mono.fromSupplier(() -> ErrorReplayReportDTO.builder()
+                        .read(read.get())
+                        .skipped(skipped.get())
+                        .duplicated(duplicated.get())
+                        .replayed(replayed.get())
+                        .failed(failed.get())
+                        .elapsedMillis(System.currentTimeMillis() - startTime)
+                        .build()))
+                .doOnNext(report -> log.info("[ERROR_REPLAY] Replay of binding {} completed: {}", request.getBinding(), report));
+    }
+
+    private boolean isNotifiedBy(Message<byte[]> message, KafkaConfiguration.KafkaInfoDTO bindingInfo) {
+        Object srcTopic = message.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_SRC_TOPIC);
+        Object group = message.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_GROUP);
+        Object notifyingApplication = message.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_APPLICATION_NAME);
+        return bindingInfo.getDestination().equals(srcTopic)
+                && (group == null || group.equals(bindingInfo.getGroup()))
+                && (notifyingApplication == null || notifyingApplication.equals(applicationName));
+    }
+
+    private static Message<byte[]> stripErrorHeaders(Message<byte[]> message) {
+        MessageBuilder<byte[]> builder = MessageBuilder.fromMessage(message);
+        ERROR_HEADERS.forEach(builder::removeHeader);
+        return builder.build();
+    }
+
+    private static Long toEpochMillis(OffsetDateTime timestamp) {
+        return timestamp != null ? timestamp.toInstant().toEpochMilli() : null;
+    }
+}
@@ -1,8 +1,20 @@
 package it.gov.pagopa.idpay.transactions.service;
 
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayReportDTO;
 import org.springframework.messaging.Message;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.LongConsumer;
 
 public interface PersistenceTransactionMediator {
-    void execute(Flux<Message<String>> rewardTransactionDTOFlux);
+    void execute(Flux<Message<byte[]>> rewardTransactionDTOFlux);
+
+    /**
+     * It will rebuild the transactions collection from the given messages: transactions are stored through bulk writes of the given size,
+     * while the counters of the involved reward batches are recomputed just once at the end
+     * @param readListener notified of each message read
+     */
+    Mono<TransactionReplayReportDTO> replay(Flux<Message<byte[]>> rewardTransactionDTOFlux, int bulkSize, Duration progressInterval, LongConsumer readListener);
 }
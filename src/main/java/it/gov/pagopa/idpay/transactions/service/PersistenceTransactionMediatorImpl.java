@@ -2,27 +2,49 @@ package it.gov.pagopa.idpay.transactions.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
+import it.gov.pagopa.common.kafka.utils.KafkaConstants;
 import it.gov.pagopa.common.reactive.kafka.consumer.BaseKafkaConsumer;
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaConsumerMetrics;
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaPartitionPauser;
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaPartitionSpillJournals;
+import it.gov.pagopa.common.reactive.kafka.consumer.UncommittableErrorRetryPolicy;
+import it.gov.pagopa.common.reactive.utils.AdaptiveConcurrencyLimiter;
 import it.gov.pagopa.idpay.transactions.dto.RewardTransactionDTO;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayReportDTO;
 import it.gov.pagopa.idpay.transactions.dto.mapper.RewardTransactionMapper;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Consumer;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class PersistenceTransactionMediatorImpl extends BaseKafkaConsumer<RewardTransactionDTO, RewardTransaction> implements PersistenceTransactionMediator {
 
     private final RewardTransactionService rewardTransactionService;
+    private final RewardTransactionBulkSaveService rewardTransactionBulkSaveService;
+    private final RewardTransactionFingerprintService rewardTransactionFingerprintService;
+    private final RewardBatchService rewardBatchService;
     private final TransactionErrorNotifierService transactionErrorNotifierService;
     private final RewardTransactionMapper rewardTransactionMapper;
     private static final String OPERATION_TYPE_HEADER = "operationType";
@@ -30,22 +52,49 @@ public class PersistenceTransactionMediatorImpl extends BaseKafkaConsumer<Reward
 
 
   private final Duration commitDelay;
+  private final int processingLanes;
+  private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+  private final UncommittableErrorRetryPolicy uncommittableErrorRetryPolicy;
+  private final KafkaPartitionPauser partitionPauser;
+  private final KafkaConsumerMetrics consumerMetrics;
+  private final KafkaPartitionSpillJournals spillJournals;
+  private final Duration spillDeadline;
 
     private final ObjectReader objectReader;
 
     public PersistenceTransactionMediatorImpl(
             @Value("${spring.application.name}") String applicationName,
             RewardTransactionService rewardTransactionService,
+            RewardTransactionBulkSaveService rewardTransactionBulkSaveService,
+            RewardTransactionFingerprintService rewardTransactionFingerprintService,
+            RewardBatchService rewardBatchService,
             TransactionErrorNotifierService transactionErrorNotifierService,
 
             RewardTransactionMapper rewardTransactionMapper, @Value("${spring.cloud.stream.kafka.bindings.rewardTrxConsumer-in-0.consumer.ackTime}") long commitMillis,
+            @Value("${app.transactions.consumer.processing-lanes}") int processingLanes,
+            Optional<AdaptiveConcurrencyLimiter> transactionConsumerConcurrencyLimiter,
+            UncommittableErrorRetryPolicy uncommittableErrorRetryPolicy,
+            KafkaPartitionPauser partitionPauser,
+            KafkaConsumerMetrics transactionConsumerMetrics,
+            Optional<KafkaPartitionSpillJournals> transactionConsumerSpillJournals,
+            @Value("${app.transactions.consumer.spill.deadline-millis}") long spillDeadlineMillis,
 
             ObjectMapper objectMapper) {
         super(applicationName);
         this.rewardTransactionService = rewardTransactionService;
+        this.rewardTransactionBulkSaveService = rewardTransactionBulkSaveService;
+        this.rewardTransactionFingerprintService = rewardTransactionFingerprintService;
+        this.rewardBatchService = rewardBatchService;
         this.transactionErrorNotifierService = transactionErrorNotifierService;
         this.rewardTransactionMapper = rewardTransactionMapper;
         this.commitDelay = Duration.ofMillis(commitMillis);
+        this.processingLanes = processingLanes;
+        this.concurrencyLimiter = transactionConsumerConcurrencyLimiter.orElse(null);
+        this.uncommittableErrorRetryPolicy = uncommittableErrorRetryPolicy;
+        this.partitionPauser = partitionPauser;
+        this.consumerMetrics = transactionConsumerMetrics;
+        this.spillJournals = transactionConsumerSpillJournals.orElse(null);
+        this.spillDeadline = Duration.ofMillis(spillDeadlineMillis);
 
         this.objectReader = objectMapper.readerFor(RewardTransactionDTO.class);
     }
@@ -55,6 +104,46 @@ public class PersistenceTransactionMediatorImpl extends BaseKafkaConsumer<Reward
         return commitDelay;
     }
 
+    @Override
+    protected int getProcessingLanes() {
+        return processingLanes;
+    }
+
+    @Override
+    protected AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    @Override
+    protected UncommittableErrorRetryPolicy getUncommittableErrorRetryPolicy() {
+        return uncommittableErrorRetryPolicy;
+    }
+
+    @Override
+    protected KafkaPartitionPauser getPartitionPauser() {
+        return partitionPauser;
+    }
+
+    @Override
+    public String getBindingName() {
+        return "rewardTrxConsumer-in-0";
+    }
+
+    @Override
+    protected KafkaConsumerMetrics getConsumerMetrics() {
+        return consumerMetrics;
+    }
+
+    @Override
+    protected KafkaPartitionSpillJournals getSpillJournals() {
+        return spillJournals;
+    }
+
+    @Override
+    protected Duration getSpillDeadline() {
+        return spillDeadline;
+    }
+
     @Override
     protected void subscribeAfterCommits(Flux<List<RewardTransaction>> afterCommits2subscribe) {
         afterCommits2subscribe.subscribe(p -> log.info("[TRANSACTION] Processed offsets committed successfully"));
@@ -66,31 +155,169 @@ public class PersistenceTransactionMediatorImpl extends BaseKafkaConsumer<Reward
     }
 
     @Override
-    protected Consumer<Throwable> onDeserializationError(Message<String> message) {
-        return e -> transactionErrorNotifierService.notifyTransaction(message, "[TRANSACTION] Unexpected JSON", true, e);
+    protected Mono<Boolean> onDeserializationError(Message<byte[]> message, Throwable e) {
+        return transactionErrorNotifierService.notifyTransaction(message, "[TRANSACTION] Unexpected JSON", true, e);
     }
 
     @Override
-    protected void notifyError(Message<String> message, Throwable e) {
-        transactionErrorNotifierService.notifyTransaction(message, "[TRANSACTION] An error occurred evaluating transaction", true, e);
+    protected Mono<Boolean> notifyError(Message<byte[]> message, Throwable e) {
+        return transactionErrorNotifierService.notifyTransaction(message, "[TRANSACTION] An error occurred evaluating transaction", true, e);
+    }
+
+  @Override
+  protected boolean isToSkip(Message<byte[]> message) {
+    if (isRefunded(message)) {
+      log.info("[REWARD-TRANSACTION-CONSUMER] Skipping REFUNDED transaction (partition: {}, offset: {})",
+              message.getHeaders().get(KafkaHeaders.RECEIVED_PARTITION), message.getHeaders().get(KafkaHeaders.OFFSET));
+      return true;
     }
+    return false;
+  }
+
+  private static boolean isRefunded(Message<byte[]> message) {
+    Object operationType = message.getHeaders().get(OPERATION_TYPE_HEADER);
+    if (operationType instanceof byte[] bytes) {
+      operationType = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return OPERATION_TYPE_REFUNDED.equals(operationType);
+  }
 
   @Override
   protected Mono<RewardTransaction> execute(RewardTransactionDTO payload,
-      Message<String> message,
-      Map<String, Object> ctx) {
+      Message<byte[]> message,
+      ProcessingContext ctx) {
 
-    Object opTypeHeader = message.getHeaders().get(OPERATION_TYPE_HEADER);
+    return Mono.just(payload)
+        .map(p -> timeStage(KafkaConsumerMetrics.Stage.MAP, () -> this.rewardTransactionMapper.mapFromDTO(p)))
+        .flatMap(trx -> timeStage(KafkaConsumerMetrics.Stage.PERSIST, this.rewardTransactionFingerprintService.filterChanged(trx)
+            .flatMap(this.rewardTransactionService::prepareForSave)
+            .flatMap(this.rewardTransactionBulkSaveService::save)));
+  }
 
-    if (OPERATION_TYPE_REFUNDED.equals(opTypeHeader)) {
-      log.info("[REWARD-TRANSACTION-CONSUMER] Skipping REFUNDED transaction with id {}", payload.getId());
-      return Mono.empty();
+  @Override
+  public Mono<TransactionReplayReportDTO> replay(Flux<Message<byte[]>> rewardTransactionDTOFlux, int bulkSize, Duration progressInterval, LongConsumer readListener) {
+    ReplayProgress progress = new ReplayProgress(System.currentTimeMillis(), progressInterval.toMillis());
+    Set<String> rewardBatchIds = ConcurrentHashMap.newKeySet();
+
+    return rewardTransactionDTOFlux
+        .doOnNext(m -> {
+          progress.read.incrementAndGet();
+          readListener.accept(1L);
+        })
+        .filter(m -> {
+          boolean toSkip = isRefunded(m) || isRetryOfOtherApplication(m);
+          if (toSkip) {
+            progress.skipped.incrementAndGet();
+          }
+          return !toSkip;
+        })
+        .flatMapSequential(m -> deserializeForReplay(m, progress))
+        .buffer(bulkSize)
+        .concatMap(replayed -> prepareReplayedBulk(replayed, progress))
+        .concatMap(trxs -> saveReplayedBulk(trxs, progress))
+        .doOnNext(rewardBatchIds::addAll)
+        .then(Mono.defer(() -> {
+          log.info("[TRANSACTION_REPLAY] Messages consumed, recomputing the totals of {} reward batches", rewardBatchIds.size());
+          return rewardBatchService.recomputeTransactionTotals(rewardBatchIds);
+        }))
+        .map(progress::toReport)
+        .doOnNext(report -> log.info("[TRANSACTION_REPLAY] Completed: {}", report));
+  }
 
+  private boolean isRetryOfOtherApplication(Message<byte[]> message) {
+    Object retryingApplicationName = message.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_APPLICATION_NAME);
+    if (retryingApplicationName instanceof byte[] bytes) {
+      retryingApplicationName = new String(bytes, StandardCharsets.UTF_8);
     }
+    return retryingApplicationName != null && !retryingApplicationName.equals(getApplicationName());
+  }
 
-    return Mono.just(payload)
-        .map(this.rewardTransactionMapper::mapFromDTO)
-        .flatMap(this.rewardTransactionService::save);
+  private Mono<Tuple2<Message<byte[]>, RewardTransaction>> deserializeForReplay(Message<byte[]> message, ReplayProgress progress) {
+    return Mono.defer(() -> {
+      Throwable[] deserializationError = {null};
+      RewardTransactionDTO payload = deserializeMessage(message, e -> deserializationError[0] = e);
+      if (deserializationError[0] != null) {
+        progress.errors.incrementAndGet();
+        return onDeserializationError(message, deserializationError[0]).then(Mono.empty());
+      }
+      return Mono.justOrEmpty(payload)
+          .map(rewardTransactionMapper::mapFromDTO)
+          .doOnNext(trx -> trx.setContentFingerprint(rewardTransactionFingerprintService.computeFingerprint(trx)))
+          .map(trx -> Tuples.of(message, trx));
+    });
+  }
+
+  /** The transactions already assigned to a batch keep their assignment, thus their batch is not resolved again (it could be already sent) */
+  private Mono<List<RewardTransaction>> prepareReplayedBulk(List<Tuple2<Message<byte[]>, RewardTransaction>> replayed, ReplayProgress progress) {
+    return rewardTransactionService.findStoredBatchData(replayed.stream().map(r -> r.getT2().getId()).collect(Collectors.toSet()))
+        .flatMapMany(id2Stored -> Flux.fromIterable(replayed)
+            .flatMapSequential(r -> rewardTransactionService.prepareForReplay(r.getT2(), id2Stored.get(r.getT2().getId()))
+                .onErrorResume(e -> {
+                  progress.errors.incrementAndGet();
+                  return notifyError(r.getT1(), e).then(Mono.empty());
+                })))
+        .collectList();
+  }
+
+  private Mono<Set<String>> saveReplayedBulk(List<RewardTransaction> trxs, ReplayProgress progress) {
+    // the bulk write is unordered, thus just the last version of each transaction is kept
+    Map<String, RewardTransaction> id2Trx = new LinkedHashMap<>();
+    trxs.forEach(trx -> id2Trx.put(trx.getId(), trx));
+    List<RewardTransaction> toSave = new ArrayList<>(id2Trx.values());
+
+    return rewardTransactionBulkSaveService.saveAll(toSave)
+        .defaultIfEmpty(Map.of())
+        .map(errors -> {
+          errors.forEach((index, e) -> log.error("[TRANSACTION_REPLAY] Cannot store transaction {}", toSave.get(index).getId(), e));
+          progress.errors.addAndGet(errors.size());
+          progress.stored.addAndGet((long) toSave.size() - errors.size());
+          progress.logIfElapsed();
+
+          Set<String> rewardBatchIds = new HashSet<>();
+          for (int i = 0; i < toSave.size(); i++) {
+            if (!errors.containsKey(i) && toSave.get(i).getRewardBatchId() != null) {
+              rewardBatchIds.add(toSave.get(i).getRewardBatchId());
+            }
+          }
+          return rewardBatchIds;
+        });
+  }
+
+  private static final class ReplayProgress {
+    private final long startTime;
+    private final long logIntervalMillis;
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private long lastLogTime;
+
+    private ReplayProgress(long startTime, long logIntervalMillis) {
+      this.startTime = startTime;
+      this.logIntervalMillis = logIntervalMillis;
+      this.lastLogTime = startTime;
+    }
+
+    private void logIfElapsed() {
+      long now = System.currentTimeMillis();
+      if (now - lastLogTime >= logIntervalMillis) {
+        lastLogTime = now;
+        log.info("[TRANSACTION_REPLAY] Progress: {}", toReport(0L));
+      }
+    }
+
+    private TransactionReplayReportDTO toReport(long recomputedRewardBatches) {
+      long elapsedMillis = Math.max(1L, System.currentTimeMillis() - startTime);
+      return TransactionReplayReportDTO.builder()
+          .read(read.get())
+          .skipped(skipped.get())
+          .stored(stored.get())
+          .errors(errors.get())
+          .recomputedRewardBatches(recomputedRewardBatches)
+          .elapsedMillis(elapsedMillis)
+          .recordsPerSecond(read.get() * 1000 / elapsedMillis)
+          .build();
+    }
   }
 
   @Override
@@ -11,7 +11,6 @@ import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
 import it.gov.pagopa.idpay.transactions.enums.SyncTrxStatus;
 import it.gov.pagopa.idpay.transactions.model.RewardBatch;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
-import it.gov.pagopa.idpay.transactions.notifier.TransactionNotifierService;
 import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
 import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
 import it.gov.pagopa.idpay.transactions.service.invoice_lifecycle.InvoiceLifecyclePolicy;
@@ -54,21 +53,18 @@ public class PointOfSaleTransactionServiceImpl implements PointOfSaleTransaction
   private final InvoiceStorageClient invoiceStorageClient;
   private final RewardBatchService rewardBatchService;
   private final RewardBatchRepository rewardBatchRepository;
-  private final TransactionErrorNotifierService transactionErrorNotifierService;
-  private final TransactionNotifierService transactionNotifierService;
+  private final TransactionOutboxService transactionOutboxService;
 
   protected PointOfSaleTransactionServiceImpl(
           UserRestClient userRestClient, RewardTransactionRepository rewardTransactionRepository, InvoiceStorageClient invoiceStorageClient, RewardBatchService rewardBatchService,
       RewardBatchRepository rewardBatchRepository,
-      TransactionErrorNotifierService transactionErrorNotifierService,
-      TransactionNotifierService transactionNotifierService) {
+      TransactionOutboxService transactionOutboxService) {
     this.userRestClient = userRestClient;
     this.rewardTransactionRepository = rewardTransactionRepository;
     this.invoiceStorageClient = invoiceStorageClient;
     this.rewardBatchService = rewardBatchService;
     this.rewardBatchRepository = rewardBatchRepository;
-    this.transactionErrorNotifierService = transactionErrorNotifierService;
-    this.transactionNotifierService = transactionNotifierService;
+    this.transactionOutboxService = transactionOutboxService;
   }
 
     @Override
@@ -377,19 +373,20 @@ public class PointOfSaleTransactionServiceImpl implements PointOfSaleTransaction
 
 
 
-                                            Mono<Void> saveTransactionMono = rewardTransactionRepository.save(rt).then();
+                                            Mono<Void> saveTransactionMono = Mono.defer(() -> rewardTransactionRepository.save(rt)).then();
 
                                             Mono<Void> updateBatchTotalsMono =
                                                     oldRewardBatchId != null
-                                                            ? rewardBatchRepository.updateTotals(oldRewardBatchId, counters).then()
+                                                            ? Mono.defer(() -> rewardBatchRepository.updateTotals(oldRewardBatchId, counters)).then()
                                                             : Mono.empty();
 
 
-                                            Mono<Void> sendToQueueMono = sendReversedInvoicedTransactionNotification(RewardTransactionKafkaMapper.toDto(rt));
+                                            Mono<Void> enqueueNotificationMono = enqueueReversedInvoicedTransactionNotification(RewardTransactionKafkaMapper.toDto(rt));
 
-                                            return saveTransactionMono
-                                                    .then(updateBatchTotalsMono)
-                                                    .then(sendToQueueMono);
+                                            // the notification is stored first: the outbox relay will publish it once the transaction is REFUNDED
+                                            return enqueueNotificationMono
+                                                    .then(saveTransactionMono)
+                                                    .then(updateBatchTotalsMono);
                                         }));
                             });
                 })
@@ -451,32 +448,17 @@ public class PointOfSaleTransactionServiceImpl implements PointOfSaleTransaction
                 });
     }
 
-    private Mono<Void> sendReversedInvoicedTransactionNotification(RewardTransactionKafkaDTO trx) {
-    return Mono.fromRunnable(() -> {
+    private Mono<Void> enqueueReversedInvoicedTransactionNotification(RewardTransactionKafkaDTO trx) {
+    return Mono.defer(() -> {
           log.info(
-              "[REVERSAL_INVOICED_TRANSACTION][SEND_NOTIFICATION] Sending Reverse Invoiced Transaction event to Notification: trxId {} - merchantId {}",
+              "[REVERSAL_INVOICED_TRANSACTION][SEND_NOTIFICATION] Storing Reverse Invoiced Transaction event in the outbox: trxId {} - merchantId {}",
               trx.getId(), trx.getMerchantId());
 
-          if (!transactionNotifierService.notify(trx, trx.getUserId())) {
-            throw new IllegalStateException(
-                "[TRANSACTION_REVERSAL_INVOICED_REQUEST] Something gone wrong while reversing Invoiced Transaction notify");
-          }
+          return transactionOutboxService.enqueue(trx, trx.getUserId());
         })
-        .onErrorResume(e -> {
-          log.error(
-              "[UNEXPECTED_REVERSAL_INVOICED_ERROR][SEND_NOTIFICATION] An error has occurred and was not possible to notify it: trxId {} - merchantId {}",
-              trx.getId(), trx.getUserId(), e);
-
-          transactionErrorNotifierService.notifyTransactionOutcome(
-              transactionNotifierService.buildMessage(trx, trx.getUserId()),
-              "[REVERSAL_INVOICED_TRANSACTION_REQUEST] An error occurred while publishing the reversal invoiced result: trxId %s - merchantId %s".formatted(
-                  trx.getId(), trx.getMerchantId()),
-              true,
-              e
-          );
-
-          return Mono.error(e);
-        }).then();
+        .doOnError(e -> log.error(
+              "[UNEXPECTED_REVERSAL_INVOICED_ERROR][SEND_NOTIFICATION] Cannot store the notification, the reversal will not be applied: trxId {} - merchantId {}",
+              trx.getId(), trx.getMerchantId(), e));
   }
 
     private Mono<Void> replaceInvoiceFile(FilePart file,
@@ -0,0 +1,28 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/** It will spread the counters increments of the same reward batch across stripe documents, folding them back into the batch when it changes state */
+public interface RewardBatchCounterStripeService {
+    /**
+     * It will increment the stripe chosen through the transaction id, completing with the reward batch id. The increment of an already counted transaction is ignored.<br />
+     * If the batch has been sealed, a {@link it.gov.pagopa.idpay.transactions.exception.RewardBatchSealedException} is raised
+     */
+    Mono<String> increment(String rewardBatchId, String trxId, BatchCountersDTO counters);
+    /** It will apply the increments of the given transactions, indexed by their id, completing with the reward batch id. The increments of the already counted transactions are ignored */
+    Mono<String> increment(String rewardBatchId, Map<String, BatchCountersDTO> trxId2Counters);
+    /** It will add to the batch counters the values still stored in its stripes */
+    Mono<RewardBatch> sumStripes(RewardBatch rewardBatch);
+    /** It will add to the counters of each batch the values still stored in its stripes */
+    Mono<List<RewardBatch>> sumStripes(List<RewardBatch> rewardBatches);
+    /** It will seal the stripes of the batch, thus rejecting any further increment, and fold them into the batch, returning the updated batch */
+    Mono<RewardBatch> compact(RewardBatch rewardBatch);
+    /** It will discard the stripes of the given batches, to use when their totals are recomputed from scratch */
+    Mono<Long> discard(Collection<String> rewardBatchIds);
+}
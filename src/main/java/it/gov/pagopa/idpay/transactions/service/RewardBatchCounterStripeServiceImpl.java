@@ -0,0 +1,183 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.exception.RewardBatchSealedException;
+import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterStripe;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * The stripe of an increment is chosen hashing the transaction id, thus concurrent increments of the same batch will hit different documents,
+ * while each counted transaction is recorded through a marker, thus its increment is not applied again.<br />
+ * The increments of the transactions falling into the same stripe are applied through a single update: if any of them has been already counted,
+ * they are applied one by one in order to skip just the already counted ones.<br />
+ * The stripes are sealed when compacted, thus an increment of a batch which is leaving the CREATED status (e.g. resolved through a stale cache) is rejected.
+ */
+@Service
+@Slf4j
+public class RewardBatchCounterStripeServiceImpl implements RewardBatchCounterStripeService {
+
+    private final RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository;
+    private final RewardBatchRepository rewardBatchRepository;
+    private final int stripes;
+
+    public RewardBatchCounterStripeServiceImpl(RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository,
+                                               RewardBatchRepository rewardBatchRepository,
+                                               @Value("${app.reward-batch.counter-stripes}") int stripes) {
+        this.rewardBatchCounterStripeRepository = rewardBatchCounterStripeRepository;
+        this.rewardBatchRepository = rewardBatchRepository;
+        this.stripes = Math.max(1, stripes);
+    }
+
+    @Override
+    public Mono<String> increment(String rewardBatchId, String trxId, BatchCountersDTO counters) {
+        return increment(rewardBatchId, Map.of(trxId, counters));
+    }
+
+    @Override
+    public Mono<String> increment(String rewardBatchId, Map<String, BatchCountersDTO> trxId2Counters) {
+        Map<Integer, Map<String, BatchCountersDTO>> stripe2Increments = trxId2Counters.entrySet().stream()
+                .collect(Collectors.groupingBy(e -> selectStripe(e.getKey()),
+                        Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+
+        return Flux.fromIterable(stripe2Increments.entrySet())
+                .flatMap(e -> incrementStripe(rewardBatchId, e.getKey(), e.getValue()))
+                .then(Mono.just(rewardBatchId));
+    }
+
+    private Mono<Void> incrementStripe(String rewardBatchId, int stripe, Map<String, BatchCountersDTO> trxId2Counters) {
+        BatchCountersDTO counters = trxId2Counters.values().stream()
+                .reduce(BatchCountersDTO.newBatch(), BatchCountersDTO::add);
+        return rewardBatchCounterStripeRepository.incrementStripe(rewardBatchId, stripe, trxId2Counters.keySet(), counters)
+                .flatMap(applied -> Boolean.TRUE.equals(applied)
+                        ? Mono.empty()
+                        : rewardBatchCounterStripeRepository.isSealed(rewardBatchId))
+                .flatMap(sealed -> {
+                    if (Boolean.TRUE.equals(sealed)) {
+                        return Mono.error(new RewardBatchSealedException(rewardBatchId));
+                    }
+                    if (trxId2Counters.size() == 1) {
+                        log.info("[REWARD_BATCH_COUNTER_STRIPES] Transaction {} already counted on reward batch {}", trxId2Counters.keySet().iterator().next(), rewardBatchId);
+                        return Mono.empty();
+                    }
+                    return Flux.fromIterable(trxId2Counters.entrySet())
+                            .concatMap(e -> incrementStripe(rewardBatchId, stripe, Map.of(e.getKey(), e.getValue())))
+                            .then();
+                });
+    }
+
+    private int selectStripe(String trxId) {
+        return Math.floorMod(trxId.hashCode(), stripes);
+    }
+
+    @Override
+    public Mono<RewardBatch> sumStripes(RewardBatch rewardBatch) {
+        return rewardBatchCounterStripeRepository.findCountersByRewardBatchIds(List.of(rewardBatch.getId()))
+                .filter(stripe -> !isFolded(rewardBatch, stripe))
+                .reduce(rewardBatch, RewardBatchCounterStripeServiceImpl::addStripe);
+    }
+
+    @Override
+    public Mono<List<RewardBatch>> sumStripes(List<RewardBatch> rewardBatches) {
+        if (rewardBatches.isEmpty()) {
+            return Mono.just(rewardBatches);
+        }
+        return rewardBatchCounterStripeRepository.findCountersByRewardBatchIds(rewardBatches.stream().map(RewardBatch::getId).toList())
+                .collect(Collectors.groupingBy(RewardBatchCounterStripe::getRewardBatchId))
+                .map(rewardBatchId2Stripes -> {
+                    rewardBatches.forEach(batch -> sumStripes(batch, rewardBatchId2Stripes));
+                    return rewardBatches;
+                });
+    }
+
+    private static void sumStripes(RewardBatch batch, Map<String, List<RewardBatchCounterStripe>> rewardBatchId2Stripes) {
+        Optional.ofNullable(rewardBatchId2Stripes.get(batch.getId()))
+                .ifPresent(stripes -> stripes.stream()
+                        .filter(s -> !isFolded(batch, s))
+                        .forEach(s -> addStripe(batch, s)));
+    }
+
+    /** A stripe already folded into the batch is still counted by it until drained, thus it should not be added again */
+    private static boolean isFolded(RewardBatch batch, RewardBatchCounterStripe stripe) {
+        return batch.getFoldedStripeIds() != null && batch.getFoldedStripeIds().contains(stripe.getId());
+    }
+
+    /**
+     * The stripes are sealed before being folded, thus the increments performed meanwhile are either folded or rejected.<br />
+     * Each stripe is added to the batch recording its id, and only then it is drained: if the compaction is interrupted, its retry will just drain the stripes already folded
+     */
+    @Override
+    public Mono<RewardBatch> compact(RewardBatch rewardBatch) {
+        return rewardBatchCounterStripeRepository.sealStripes(rewardBatch.getId(), stripes)
+                .thenMany(rewardBatchCounterStripeRepository.findCountersByRewardBatchIds(List.of(rewardBatch.getId())))
+                .filter(stripe -> !isEmpty(toCounters(stripe)))
+                .concatMap(stripe -> foldStripe(rewardBatch.getId(), stripe)
+                        .flatMap(folded -> rewardBatchCounterStripeRepository.drainStripe(stripe.getId())
+                                .then(Mono.justOrEmpty(folded))))
+                .last(rewardBatch);
+    }
+
+    private Mono<Optional<RewardBatch>> foldStripe(String rewardBatchId, RewardBatchCounterStripe stripe) {
+        BatchCountersDTO counters = toCounters(stripe);
+        return rewardBatchRepository.foldStripe(rewardBatchId, stripe.getId(), counters)
+                .doOnNext(b -> log.info("[REWARD_BATCH_COUNTER_STRIPES] Folded stripe {} into reward batch {}: {}", stripe.getId(), b.getId(), counters))
+                .map(Optional::of)
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.info("[REWARD_BATCH_COUNTER_STRIPES] Stripe {} already folded into reward batch {}", stripe.getId(), rewardBatchId);
+                    return Optional.empty();
+                }));
+    }
+
+    @Override
+    public Mono<Long> discard(Collection<String> rewardBatchIds) {
+        if (rewardBatchIds.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return rewardBatchCounterStripeRepository.deleteByRewardBatchIdIn(rewardBatchIds);
+    }
+
+    private static RewardBatch addStripe(RewardBatch batch, RewardBatchCounterStripe stripe) {
+        batch.setInitialAmountCents(sum(batch.getInitialAmountCents(), stripe.getInitialAmountCents()));
+        batch.setNumberOfTransactions(sum(batch.getNumberOfTransactions(), stripe.getNumberOfTransactions()));
+        batch.setSuspendedAmountCents(sum(batch.getSuspendedAmountCents(), stripe.getSuspendedAmountCents()));
+        batch.setNumberOfTransactionsSuspended(sum(batch.getNumberOfTransactionsSuspended(), stripe.getNumberOfTransactionsSuspended()));
+        batch.setApprovedAmountCents(sum(batch.getApprovedAmountCents(), stripe.getApprovedAmountCents()));
+        batch.setNumberOfTransactionsElaborated(sum(batch.getNumberOfTransactionsElaborated(), stripe.getNumberOfTransactionsElaborated()));
+        batch.setNumberOfTransactionsRejected(sum(batch.getNumberOfTransactionsRejected(), stripe.getNumberOfTransactionsRejected()));
+        return batch;
+    }
+
+    private static Long sum(Long batchValue, long stripeValue) {
+        return batchValue != null ? batchValue + stripeValue : stripeValue;
+    }
+
+    private static BatchCountersDTO toCounters(RewardBatchCounterStripe stripe) {
+        return BatchCountersDTO.newBatch()
+                .incrementInitialAmountCents(stripe.getInitialAmountCents())
+                .incrementNumberOfTransactions(stripe.getNumberOfTransactions())
+                .incrementSuspendedAmountCents(stripe.getSuspendedAmountCents())
+                .incrementTrxSuspended(stripe.getNumberOfTransactionsSuspended())
+                .incrementApprovedAmountCents(stripe.getApprovedAmountCents())
+                .incrementTrxElaborated(stripe.getNumberOfTransactionsElaborated())
+                .incrementTrxRejected(stripe.getNumberOfTransactionsRejected());
+    }
+
+    private static boolean isEmpty(BatchCountersDTO counters) {
+        return counters.getInitialAmountCents() == 0 && counters.getNumberOfTransactions() == 0
+                && counters.getSuspendedAmountCents() == 0 && counters.getTrxSuspended() == 0
+                && counters.getApprovedAmountCents() == 0 && counters.getTrxElaborated() == 0
+                && counters.getTrxRejected() == 0;
+    }
+}
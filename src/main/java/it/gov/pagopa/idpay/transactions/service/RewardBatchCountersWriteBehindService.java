@@ -0,0 +1,10 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import reactor.core.publisher.Mono;
+
+/** It will coalesce the counters increments of the same reward batch, applying them through a single update for each flush window */
+public interface RewardBatchCountersWriteBehindService {
+    /** It will enqueue the increment of the transaction, completing with the reward batch id when the update covering it has been performed. A transaction already counted on the batch is not counted again */
+    Mono<String> increment(String rewardBatchId, String trxId, BatchCountersDTO counters);
+}
@@ -0,0 +1,67 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.reactive.utils.ReactiveMicroBatcher;
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+
+@Service
+@Slf4j
+public class RewardBatchCountersWriteBehindServiceImpl implements RewardBatchCountersWriteBehindService {
+
+    private final RewardBatchCounterStripeService rewardBatchCounterStripeService;
+    private final ReactiveMicroBatcher<CountersIncrement> microBatcher;
+
+    record CountersIncrement(String rewardBatchId, String trxId, BatchCountersDTO counters) {}
+
+    public RewardBatchCountersWriteBehindServiceImpl(RewardBatchCounterStripeService rewardBatchCounterStripeService,
+                                                     @Value("${app.transactions.batch-counters.max-size}") int maxSize,
+                                                     @Value("${app.transactions.batch-counters.max-wait-millis}") long maxWaitMillis) {
+        this.rewardBatchCounterStripeService = rewardBatchCounterStripeService;
+        this.microBatcher = new ReactiveMicroBatcher<>("REWARD_BATCH_COUNTERS_FLUSH", maxSize, Duration.ofMillis(maxWaitMillis), this::flush);
+    }
+
+    @Override
+    public Mono<String> increment(String rewardBatchId, String trxId, BatchCountersDTO counters) {
+        return microBatcher.submit(new CountersIncrement(rewardBatchId, trxId, counters))
+                .map(CountersIncrement::rewardBatchId);
+    }
+
+    /** The increments are grouped by batch, keeping just one increment for each transaction: the already counted transactions are then skipped by the stripes */
+    private Mono<Map<Integer, Throwable>> flush(List<CountersIncrement> increments) {
+        Map<String, List<Integer>> rewardBatchId2Indexes = new LinkedHashMap<>();
+        Map<String, Map<String, BatchCountersDTO>> rewardBatchId2Increments = new HashMap<>();
+        for (int i = 0; i < increments.size(); i++) {
+            CountersIncrement increment = increments.get(i);
+            rewardBatchId2Indexes.computeIfAbsent(increment.rewardBatchId(), id -> new ArrayList<>()).add(i);
+            rewardBatchId2Increments.computeIfAbsent(increment.rewardBatchId(), id -> new HashMap<>()).put(increment.trxId(), increment.counters());
+        }
+
+        return Flux.fromIterable(rewardBatchId2Indexes.entrySet())
+                .flatMap(e -> rewardBatchCounterStripeService.increment(e.getKey(), rewardBatchId2Increments.get(e.getKey()))
+                        .map(b -> Map.<Integer, Throwable>of())
+                        .onErrorResume(ex -> {
+                            log.error("[REWARD_BATCH_COUNTERS_FLUSH] Cannot update counters of reward batch {}", e.getKey(), ex);
+                            return Mono.just(buildErrors(e.getValue(), ex));
+                        }))
+                .collect(HashMap::new, Map::putAll);
+    }
+
+    private static Map<Integer, Throwable> buildErrors(List<Integer> indexes, Throwable error) {
+        Map<Integer, Throwable> out = new HashMap<>();
+        indexes.forEach(i -> out.put(i, error));
+        return out;
+    }
+
+    @PreDestroy
+    void dispose() {
+        microBatcher.dispose();
+    }
+}
@@ -0,0 +1,33 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+
+/**
+ * It will create, ahead of the month rollover, the reward batches of the next month, thus the first transactions of the month will just find them.<br />
+ * Each instance will run it: the creation is idempotent
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.reward-batch.pre-creation.enabled", havingValue = "true")
+public class RewardBatchPreCreationScheduler {
+
+    private final RewardBatchService rewardBatchService;
+
+    public RewardBatchPreCreationScheduler(RewardBatchService rewardBatchService) {
+        this.rewardBatchService = rewardBatchService;
+    }
+
+    @Scheduled(cron = "${app.reward-batch.pre-creation.cron}")
+    public void preCreateNextMonthBatches() {
+        try {
+            rewardBatchService.preCreateNextMonthBatches(YearMonth.now()).block();
+        } catch (Exception e) {
+            log.error("[REWARD_BATCH_PRE_CREATION] Something gone wrong while creating the batches of the next month", e);
+        }
+    }
+}
@@ -10,11 +10,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import reactor.core.publisher.Mono;
 
+import java.time.YearMonth;
+import java.util.Collection;
 import java.util.List;
 
 public interface RewardBatchService {
 
   Mono<RewardBatch> findOrCreateBatch(String merchantId, PosType posType, String month, String businessName);
+  /** It will remove from the resolution cache of {@link #findOrCreateBatch(String, PosType, String, String)} the batch of the given key, to use when it has been found changed */
+  void evictBatchResolution(String merchantId, PosType posType, String month);
   Mono<Page<RewardBatch>> getRewardBatches(String merchantId, String organizationRole, String status, String assigneeLevel, String month, Pageable pageable);
   Mono<RewardBatch> rewardBatchConfirmation(String initiativeId, String rewardBatchId);
 
@@ -39,4 +43,13 @@ public interface RewardBatchService {
   Mono<Void> postponeTransaction(String merchantId, String initiativeId, String rewardBatchId, String transactionId, LocalDate initiativeEndDate);
 
   Mono<Void> deleteEmptyRewardBatches();
+
+  /** It will overwrite the number of transactions and the initial amount of the given batches with the values computed on the transactions currently assigned to them */
+  Mono<Long> recomputeTransactionTotals(Collection<String> rewardBatchIds);
+
+  /** It will load into the resolution cache of {@link #findOrCreateBatch(String, PosType, String, String)} the batches of the given month and merchants still in CREATED status, returning how many have been loaded */
+  Mono<Long> preloadBatchResolutions(Collection<String> merchantIds, String month);
+
+  /** It will create, for each merchant and posType having transactions in its batch of the given month, the batch of the following month if not already existing, returning how many have been created */
+  Mono<Long> preCreateNextMonthBatches(YearMonth month);
 }
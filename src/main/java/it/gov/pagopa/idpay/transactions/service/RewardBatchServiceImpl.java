@@ -3,8 +3,10 @@ package it.gov.pagopa.idpay.transactions.service;
 import com.azure.core.http.rest.Response;
 import com.azure.storage.blob.models.BlobStorageException;
 import com.azure.storage.blob.models.BlockBlobItem;
-import com.mongodb.client.result.DeleteResult;
-import com.nimbusds.jose.util.Pair;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
 import it.gov.pagopa.common.web.exception.*;
 import it.gov.pagopa.idpay.transactions.connector.rest.MerchantRestClient;
 import it.gov.pagopa.idpay.transactions.connector.rest.UserRestClient;
@@ -18,6 +20,7 @@ import it.gov.pagopa.common.web.exception.ClientExceptionWithBody;
 import it.gov.pagopa.common.web.exception.RewardBatchException;
 import it.gov.pagopa.common.web.exception.RewardBatchNotFound;
 import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.dto.batch.RewardBatchTrxStatusGroupDTO;
 import it.gov.pagopa.idpay.transactions.dto.batch.TrxSuspendedBatchInfo;
 import it.gov.pagopa.idpay.transactions.dto.mapper.ChecksErrorMapper;
 import it.gov.pagopa.idpay.transactions.enums.*;
@@ -34,6 +37,7 @@ import it.gov.pagopa.idpay.transactions.utils.ExceptionConstants.ExceptionMessag
 import it.gov.pagopa.idpay.transactions.utils.Utilities;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -51,15 +55,21 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.LongFunction;
@@ -84,7 +94,12 @@ public class RewardBatchServiceImpl implements RewardBatchService {
     private final MerchantRestClient merchantRestClient;
     private final SelfcareInstitutionsRestClient selfcareInstitutionsRestClient;
     private final ErogazioniRestClient erogazioniRestClient;
+    private final RewardBatchCounterStripeService rewardBatchCounterStripeService;
 
+    private final Duration batchResolutionCacheTtl;
+    private final Duration batchResolutionCachePreloadTtl;
+    private final int batchPreCreationChunkSize;
+    private final AsyncCache<String, RewardBatch> batchResolutionCache;
 
     private static final String OPERATOR_1 = "operator1";
     private static final String OPERATOR_2 = "operator2";
@@ -109,9 +124,13 @@ public class RewardBatchServiceImpl implements RewardBatchService {
 
     private static final String REWARD_BATCHES_PATH_STORAGE_FORMAT = "initiative/%s/merchant/%s/batch/%s/";
     private static final String REWARD_BATCHES_REPORT_NAME_FORMAT = "%s_%s_%s.csv";
-    private static final DateTimeFormatter BATCH_MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM", Locale.ITALIAN);
 
-    public RewardBatchServiceImpl(RewardBatchRepository rewardBatchRepository, RewardTransactionRepository rewardTransactionRepository, UserRestClient userRestClient, ApprovedRewardBatchBlobService approvedRewardBatchBlobService, ReactiveMongoTemplate reactiveMongoTemplate, ChecksErrorMapper checksErrorMapper, AuditUtilities auditUtilities, MerchantRestClient merchantRestClient, SelfcareInstitutionsRestClient selfcareInstitutionsRestClient, ErogazioniRestClient erogazioniRestClient) {
+    public RewardBatchServiceImpl(RewardBatchRepository rewardBatchRepository, RewardTransactionRepository rewardTransactionRepository, UserRestClient userRestClient, ApprovedRewardBatchBlobService approvedRewardBatchBlobService, ReactiveMongoTemplate reactiveMongoTemplate, ChecksErrorMapper checksErrorMapper, AuditUtilities auditUtilities, MerchantRestClient merchantRestClient, SelfcareInstitutionsRestClient selfcareInstitutionsRestClient, ErogazioniRestClient erogazioniRestClient,
+                                  RewardBatchCounterStripeService rewardBatchCounterStripeService,
+                                  @Value("${app.reward-batch.resolution-cache.ttl-seconds}") long batchResolutionCacheTtlSeconds,
+                                  @Value("${app.reward-batch.resolution-cache.preload-ttl-seconds}") long batchResolutionCachePreloadTtlSeconds,
+                                  @Value("${app.reward-batch.resolution-cache.max-size}") int batchResolutionCacheMaxSize,
+                                  @Value("${app.reward-batch.pre-creation.chunk-size}") int batchPreCreationChunkSize) {
         this.rewardBatchRepository = rewardBatchRepository;
         this.rewardTransactionRepository = rewardTransactionRepository;
         this.userRestClient = userRestClient;
@@ -122,10 +141,73 @@ public class RewardBatchServiceImpl implements RewardBatchService {
         this.merchantRestClient = merchantRestClient;
         this.selfcareInstitutionsRestClient = selfcareInstitutionsRestClient;
         this.erogazioniRestClient = erogazioniRestClient;
+        this.rewardBatchCounterStripeService = rewardBatchCounterStripeService;
+        this.batchResolutionCacheTtl = Duration.ofSeconds(batchResolutionCacheTtlSeconds);
+        this.batchResolutionCachePreloadTtl = Duration.ofSeconds(Math.max(batchResolutionCacheTtlSeconds, batchResolutionCachePreloadTtlSeconds));
+        Duration resolutionTtl = batchResolutionCacheTtl.isNegative() ? Duration.ZERO : batchResolutionCacheTtl;
+        this.batchResolutionCache = Caffeine.newBuilder()
+                .maximumSize(batchResolutionCacheMaxSize)
+                .expireAfter(Expiry.<String, RewardBatch>writing((key, batch) -> resolutionTtl))
+                .buildAsync();
+        this.batchPreCreationChunkSize = batchPreCreationChunkSize;
     }
 
+    /**
+     * It will resolve the batch through a local cache, if enabled: concurrent requests of the same key will share the same resolution.<br />
+     * Just batches in {@link RewardBatchStatus#CREATED} status are cached, and they are evicted when leaving it through this instance.<br />
+     * A batch sent through another instance is still returned until its expiration: its counters stripes are sealed before sending it, thus the increments are rejected and the caller will evict it through {@link #evictBatchResolution(String, PosType, String)}<br />
+     * When the max size is reached, the entries to evict are chosen by the cache policy, keeping the others
+     */
     @Override
     public Mono<RewardBatch> findOrCreateBatch(String merchantId, PosType posType, String month, String businessName) {
+        if (batchResolutionCacheTtl.isZero() || batchResolutionCacheTtl.isNegative()) {
+            return resolveBatch(merchantId, posType, month, businessName);
+        }
+
+        String key = buildBatchResolutionCacheKey(merchantId, posType, month);
+        return Mono.defer(() -> {
+            CompletableFuture<RewardBatch> resolution = batchResolutionCache.get(key, (k, executor) ->
+                    resolveBatch(merchantId, posType, month, businessName).toFuture());
+            // failed or empty resolutions are discarded by the cache itself
+            return Mono.fromFuture(resolution, true)
+                    .doOnNext(batch -> {
+                        if (!RewardBatchStatus.CREATED.equals(batch.getStatus())) {
+                            batchResolutionCache.asMap().remove(key, resolution);
+                        }
+                    });
+        });
+    }
+
+    /** The preloaded entries expire after their own ttl, never shorter than the one of the resolved entries, in order to be still cached when the merchants' transactions will be ingested */
+    @Override
+    public Mono<Long> preloadBatchResolutions(Collection<String> merchantIds, String month) {
+        if (batchResolutionCacheTtl.isZero() || batchResolutionCacheTtl.isNegative() || merchantIds.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        Policy.VarExpiration<String, RewardBatch> expiration = batchResolutionCache.synchronous().policy().expireVariably().orElseThrow();
+        return rewardBatchRepository.findByMonthAndStatusAndMerchantIdIn(month, RewardBatchStatus.CREATED, merchantIds)
+                .filter(batch -> expiration.putIfAbsent(
+                        buildBatchResolutionCacheKey(batch.getMerchantId(), batch.getPosType(), batch.getMonth()),
+                        batch,
+                        batchResolutionCachePreloadTtl) == null)
+                .count();
+    }
+
+    private void evictBatchResolution(RewardBatch batch) {
+        evictBatchResolution(batch.getMerchantId(), batch.getPosType(), batch.getMonth());
+    }
+
+    @Override
+    public void evictBatchResolution(String merchantId, PosType posType, String month) {
+        batchResolutionCache.synchronous().invalidate(buildBatchResolutionCacheKey(merchantId, posType, month));
+    }
+
+    private static String buildBatchResolutionCacheKey(String merchantId, PosType posType, String month) {
+        return "%s_%s_%s".formatted(merchantId, posType, month);
+    }
+
+    private Mono<RewardBatch> resolveBatch(String merchantId, PosType posType, String month, String businessName) {
         return rewardBatchRepository.findByMerchantIdAndPosTypeAndMonth(merchantId, posType,
                         month)
                 .switchIfEmpty(Mono.defer(() ->
@@ -137,12 +219,35 @@ public class RewardBatchServiceImpl implements RewardBatchService {
                                                 posType, month))));
     }
 
+    /**
+     * The batches are inserted in bulk, skipping the ones already existing: thus concurrent executions of this job, or batches created meanwhile by the ingestion, are not an issue.
+     * The created batches will then be found by {@link #findOrCreateBatch(String, PosType, String, String)}, avoiding the creation races at the beginning of the month
+     */
+    @Override
+    public Mono<Long> preCreateNextMonthBatches(YearMonth month) {
+        String nextMonth = month.plusMonths(1).toString();
+        log.info("[REWARD_BATCH_PRE_CREATION] Creating batches of month {} for the merchants having transactions in month {}", nextMonth, month);
+        return rewardBatchRepository.findByMonth(month.toString())
+                .buffer(batchPreCreationChunkSize)
+                .concatMap(rewardBatchCounterStripeService::sumStripes)
+                .map(batches -> batches.stream()
+                        .filter(batch -> batch.getNumberOfTransactions() != null && batch.getNumberOfTransactions() > 0)
+                        .map(batch -> buildNewBatch(batch.getMerchantId(), batch.getPosType(), nextMonth, batch.getBusinessName()))
+                        .toList())
+                .filter(batches -> !batches.isEmpty())
+                .concatMap(batches -> rewardBatchRepository.bulkInsertIfMissing(batches)
+                        .map(result -> (long) result.getUpserts().size()))
+                .reduce(0L, Long::sum)
+                .doOnNext(count -> log.info("[REWARD_BATCH_PRE_CREATION] Created {} batches of month {}", count, nextMonth));
+    }
+
     @Override
     public Mono<Page<RewardBatch>> getRewardBatches(String merchantId, String organizationRole, String status, String assigneeLevel, String month, Pageable pageable) {
         boolean callerIsOperator = isOperator(organizationRole);
 
         return rewardBatchRepository.findRewardBatchesCombined(merchantId, status, assigneeLevel, month, callerIsOperator, pageable)
                 .collectList()
+                .flatMap(rewardBatchCounterStripeService::sumStripes)
                 .zipWith(rewardBatchRepository.getCountCombined(merchantId, status, assigneeLevel, month, callerIsOperator))
                 .map(tuple -> new PageImpl<>(tuple.getT1(), pageable, tuple.getT2()));
     }
@@ -152,12 +257,16 @@ public class RewardBatchServiceImpl implements RewardBatchService {
     }
 
     private Mono<RewardBatch> createBatch(String merchantId, PosType posType, String month, String businessName) {
+        return rewardBatchRepository.save(buildNewBatch(merchantId, posType, month, businessName));
+    }
+
+    private RewardBatch buildNewBatch(String merchantId, PosType posType, String month, String businessName) {
 
         YearMonth batchYearMonth = YearMonth.parse(month);
         LocalDateTime startDate = batchYearMonth.atDay(1).atTime(0,0,0);
         LocalDateTime endDate = batchYearMonth.atEndOfMonth().atTime(23,59,59);
 
-        RewardBatch batch = RewardBatch.builder()
+        return RewardBatch.builder()
                 .merchantId(merchantId)
                 .businessName(businessName)
                 .month(month)
@@ -179,8 +288,6 @@ public class RewardBatchServiceImpl implements RewardBatchService {
                 .creationDate(LocalDateTime.now())
                 .updateDate(LocalDateTime.now())
                 .build();
-
-        return rewardBatchRepository.save(batch);
     }
 
     @Override
@@ -214,11 +321,15 @@ public class RewardBatchServiceImpl implements RewardBatchService {
                                             ExceptionConstants.ExceptionCode.REWARD_BATCH_PREVIOUS_NOT_SENT));
                                 }
 
-                                LocalDateTime dateTimeNow = LocalDateTime.now();
-                                batch.setStatus(RewardBatchStatus.SENT);
-                                batch.setMerchantSendDate(dateTimeNow);
-                                batch.setUpdateDate(dateTimeNow);
-                                return rewardBatchRepository.save(batch);
+                                return rewardBatchCounterStripeService.compact(batch)
+                                        .flatMap(compactedBatch -> {
+                                            LocalDateTime dateTimeNow = LocalDateTime.now();
+                                            compactedBatch.setStatus(RewardBatchStatus.SENT);
+                                            compactedBatch.setMerchantSendDate(dateTimeNow);
+                                            compactedBatch.setUpdateDate(dateTimeNow);
+                                            return rewardBatchRepository.save(compactedBatch);
+                                        })
+                                        .doOnSuccess(b -> evictBatchResolution(batch));
                             })
                             .then();
                 });
@@ -243,63 +354,33 @@ public class RewardBatchServiceImpl implements RewardBatchService {
         ChecksError checksErrorModel = checksErrorMapper.toModel(request.getChecksError());
         ReasonDTO reason = generateReasonDto(request);
 
-        return rewardBatchRepository.findByIdAndStatus(rewardBatchId, RewardBatchStatus.EVALUATING)
-                .switchIfEmpty(Mono.error(new ClientExceptionWithBody(NOT_FOUND,
-                        ExceptionConstants.ExceptionCode.REWARD_BATCH_NOT_FOUND_OR_INVALID_STATE,
-                        ExceptionConstants.ExceptionMessage.ERROR_MESSAGE_NOT_FOUND_OR_INVALID_STATE_BATCH.formatted(rewardBatchId))))
-                .flatMapMany(batch -> Flux.fromIterable(request.getTransactionIds()).map(trxId -> Pair.of(trxId, batch.getMonth())))
-                .flatMap(trxId2ActualBatchMonth -> rewardTransactionRepository
-                        .updateStatusAndReturnOld(rewardBatchId, trxId2ActualBatchMonth.getLeft(), RewardBatchTrxStatus.SUSPENDED, reason, trxId2ActualBatchMonth.getRight(), checksErrorModel)
-                        .map(trxOld -> Pair.of(trxOld, trxId2ActualBatchMonth.getRight()))
-                )
-                .reduce(BatchCountersDTO.newBatch(), (acc, trxOld2ActualRewardBatch) -> {
-
-                    RewardTransaction trxOld = trxOld2ActualRewardBatch.getLeft();
-
-                    if (trxOld == null) {
-                        return acc;
-                    }
-
-                    Long accrued = trxOld.getRewards().get(initiativeId) != null
-                            ? trxOld.getRewards().get(initiativeId).getAccruedRewardCents()
-                            : null;
-
-                    switch (trxOld.getRewardBatchTrxStatus()) {
+        return updateTransactionsStatus(rewardBatchId, initiativeId, request.getTransactionIds(), RewardBatchTrxStatus.SUSPENDED, reason, checksErrorModel,
+                (acc, group) -> {
+                    switch (group.getRewardBatchTrxStatus()) {
 
                         case RewardBatchTrxStatus.SUSPENDED ->
-                                suspendedTransactionAlreadySuspended(acc, trxOld2ActualRewardBatch, trxOld);
-
+                                suspendedTransactionsAlreadySuspended(acc, group);
 
                         case RewardBatchTrxStatus.APPROVED -> {
-                            acc.incrementTrxSuspended();
-
-                            if (accrued != null) {
-                                acc.decrementApprovedAmountCents(accrued);
-                                acc.incrementSuspendedAmountCents(accrued);
-                            }
+                            acc.incrementTrxSuspended(group.getCount());
+                            acc.decrementApprovedAmountCents(group.getAccruedRewardCents());
+                            acc.incrementSuspendedAmountCents(group.getAccruedRewardCents());
                         }
 
                         case RewardBatchTrxStatus.TO_CHECK,
                              RewardBatchTrxStatus.CONSULTABLE -> {
-                            acc.incrementTrxElaborated();
-                            acc.incrementTrxSuspended();
-
-                            if (accrued != null) {
-                                acc.decrementApprovedAmountCents(accrued);
-                                acc.incrementSuspendedAmountCents(accrued);
-                            }
+                            acc.incrementTrxElaborated(group.getCount());
+                            acc.incrementTrxSuspended(group.getCount());
+                            acc.decrementApprovedAmountCents(group.getAccruedRewardCents());
+                            acc.incrementSuspendedAmountCents(group.getAccruedRewardCents());
                         }
 
                         case RewardBatchTrxStatus.REJECTED -> {
-                            acc.decrementTrxRejected();
-                            acc.incrementTrxSuspended();
-                            if (accrued != null) {
-                                acc.incrementSuspendedAmountCents(accrued);
-                            }
+                            acc.incrementTrxRejected(-group.getCount());
+                            acc.incrementTrxSuspended(group.getCount());
+                            acc.incrementSuspendedAmountCents(group.getAccruedRewardCents());
                         }
                     }
-
-                    return acc;
                 })
                 .flatMap(acc -> {
 
@@ -313,7 +394,7 @@ public class RewardBatchServiceImpl implements RewardBatchService {
                     return rewardBatchRepository.updateTotals(
                             rewardBatchId,
                             acc
-                    );
+                    ).flatMap(rewardBatchCounterStripeService::sumStripes);
                 });
     }
 
@@ -341,13 +422,13 @@ public class RewardBatchServiceImpl implements RewardBatchService {
     }
 
 
-    private void suspendedTransactionAlreadySuspended(BatchCountersDTO acc, Pair<RewardTransaction, String> trxOld2ActualRewardBatch, RewardTransaction trxOld) {
-        if(trxOld.getRewardBatchLastMonthElaborated() !=  null &&
-                (getYearMonth(trxOld.getRewardBatchLastMonthElaborated()).isBefore(getYearMonth(trxOld2ActualRewardBatch.getRight())))) {
-            log.info("Handler counters for transaction {} with status SUSPENDED", trxOld.getId());
-            acc.incrementTrxElaborated();
-        } else {
-            log.info("Skipping  handler  for transaction  {}:  status  is already  SUSPENDED", trxOld.getId());
+    private void suspendedTransactionsAlreadySuspended(BatchCountersDTO acc, RewardBatchTrxStatusGroupDTO group) {
+        if (group.getElaboratedInPreviousMonths() > 0) {
+            log.info("Handler counters for {} transactions with status SUSPENDED elaborated in previous months", group.getElaboratedInPreviousMonths());
+            acc.incrementTrxElaborated(group.getElaboratedInPreviousMonths());
+        }
+        if (group.getCount() > group.getElaboratedInPreviousMonths()) {
+            log.info("Skipping  handler  for {} transactions:  status  is already  SUSPENDED", group.getCount() - group.getElaboratedInPreviousMonths());
         }
     }
 
@@ -358,76 +439,41 @@ public class RewardBatchServiceImpl implements RewardBatchService {
         ChecksError checksErrorModel = checksErrorMapper.toModel(request.getChecksError());
         ReasonDTO reason = generateReasonDto(request);
 
+        return updateTransactionsStatus(rewardBatchId, initiativeId, request.getTransactionIds(), RewardBatchTrxStatus.REJECTED, reason, checksErrorModel,
+                (acc, group) -> {
+                    if (group.getRewardBatchTrxStatus() != RewardBatchTrxStatus.REJECTED) {
+                        log.info(
+                                "[REJECT_TRANSACTION] Transactions {} rejected. batchId: {}, initiativeId: {}",
+                                group.getTrxIds(),
+                                Utilities.sanitizeString(rewardBatchId),
+                                Utilities.sanitizeString(initiativeId)
+                        );
+                    }
 
-        return rewardBatchRepository.findByIdAndStatus(rewardBatchId, RewardBatchStatus.EVALUATING)
-                .switchIfEmpty(Mono.error(new ClientExceptionWithBody(NOT_FOUND,
-                        ExceptionConstants.ExceptionCode.REWARD_BATCH_NOT_FOUND_OR_INVALID_STATE,
-                        ExceptionConstants.ExceptionMessage.ERROR_MESSAGE_NOT_FOUND_OR_INVALID_STATE_BATCH.formatted(rewardBatchId))))
-                .flatMapMany(batch -> Flux.fromIterable(request.getTransactionIds())
-                        .map(trxId -> Pair.of(trxId, batch.getMonth())))
-                .flatMap(trxId2ActualBatchMont -> rewardTransactionRepository
-                        .updateStatusAndReturnOld(rewardBatchId, trxId2ActualBatchMont.getLeft(), RewardBatchTrxStatus.REJECTED, reason, trxId2ActualBatchMont.getRight(), checksErrorModel)
-                        .map(trxOld -> {
-                            if (trxOld != null) {
-                                log.info(
-                                        "[REJECT_TRANSACTION] Transaction {} rejected. batchId: {}, initiativeId: {}",
-                                        trxOld.getId(),
-                                        Utilities.sanitizeString(rewardBatchId),
-                                        Utilities.sanitizeString(initiativeId)
-                                );
-                            }
-                            return Pair.of(trxOld, trxId2ActualBatchMont.getRight());
-                        })
-                )
-                .reduce(BatchCountersDTO.newBatch(),
-                        (acc, trxOld2ActualRewardBatchMonth) -> {
-
-                            RewardTransaction trxOld = trxOld2ActualRewardBatchMonth.getLeft();
-
-                            if (trxOld == null) {
-                                return acc;
-                            }
-
-                            Long accrued = trxOld.getRewards().get(initiativeId) != null
-                                    ? trxOld.getRewards().get(initiativeId).getAccruedRewardCents()
-                                    : null;
-
-                            switch (trxOld.getRewardBatchTrxStatus()) {
-
-                                case RewardBatchTrxStatus.REJECTED ->
-                                        log.info("Skipping  handler  for transaction  {}:  status  is already  REJECTED",  trxOld.getId());
-
-                                case RewardBatchTrxStatus.APPROVED -> {
-                                    acc.incrementTrxRejected();
-
-                                    if (accrued != null) {
-                                        acc.decrementApprovedAmountCents(accrued);
-                                    }
-                                }
-
-                                case RewardBatchTrxStatus.TO_CHECK,
-                                     RewardBatchTrxStatus.CONSULTABLE -> {
-                                    acc.incrementTrxElaborated();
-                                    acc.incrementTrxRejected();
-
-                                    if (accrued != null) {
-                                        acc.decrementApprovedAmountCents(accrued);
-                                    }
-                                }
+                    switch (group.getRewardBatchTrxStatus()) {
 
-                                case RewardBatchTrxStatus.SUSPENDED -> {
-                                    acc.decrementTrxSuspended();
-                                    acc.incrementTrxRejected();
-                                    if (accrued != null) {
-                                        acc.decrementSuspendedAmountCents(accrued);
-                                    }
+                        case RewardBatchTrxStatus.REJECTED ->
+                                log.info("Skipping  handler  for transactions  {}:  status  is already  REJECTED", group.getTrxIds());
 
-                                }
+                        case RewardBatchTrxStatus.APPROVED -> {
+                            acc.incrementTrxRejected(group.getCount());
+                            acc.decrementApprovedAmountCents(group.getAccruedRewardCents());
+                        }
 
-                            }
+                        case RewardBatchTrxStatus.TO_CHECK,
+                             RewardBatchTrxStatus.CONSULTABLE -> {
+                            acc.incrementTrxElaborated(group.getCount());
+                            acc.incrementTrxRejected(group.getCount());
+                            acc.decrementApprovedAmountCents(group.getAccruedRewardCents());
+                        }
 
-                            return acc;
-                        })
+                        case RewardBatchTrxStatus.SUSPENDED -> {
+                            acc.incrementTrxSuspended(-group.getCount());
+                            acc.incrementTrxRejected(group.getCount());
+                            acc.decrementSuspendedAmountCents(group.getAccruedRewardCents());
+                        }
+                    }
+                })
                 .flatMap(acc -> {
 
                     auditUtilities.logTransactionsStatusChanged(
@@ -440,56 +486,89 @@ public class RewardBatchServiceImpl implements RewardBatchService {
                     return rewardBatchRepository.updateTotals(
                             rewardBatchId,
                             acc
-                    );
+                    ).flatMap(rewardBatchCounterStripeService::sumStripes);
                 });
     }
 
-
-
-
     @Override
     public Mono<RewardBatch> approvedTransactions(String rewardBatchId, TransactionsRequest request, String initiativeId) {
-        return rewardBatchRepository.findByIdAndStatus(rewardBatchId, RewardBatchStatus.EVALUATING)
-                .switchIfEmpty(Mono.error(new ClientExceptionWithBody(NOT_FOUND,
-                        ExceptionConstants.ExceptionCode.REWARD_BATCH_NOT_FOUND_OR_INVALID_STATE,
-                        ExceptionConstants.ExceptionMessage.ERROR_MESSAGE_NOT_FOUND_OR_INVALID_STATE_BATCH.formatted(rewardBatchId))))
-                .flatMapMany(batch -> Flux.fromIterable(request.getTransactionIds())
-                        .map(trxId -> Pair.of(trxId, batch.getMonth())))
-                .flatMap(trxIdAndMonthElaborated -> rewardTransactionRepository.updateStatusAndReturnOld(rewardBatchId, trxIdAndMonthElaborated.getLeft(), RewardBatchTrxStatus.APPROVED, null, trxIdAndMonthElaborated.getRight(), null)
-                        .map(trxOld -> Pair.of(trxOld, trxIdAndMonthElaborated.getRight())))
-                .reduce(BatchCountersDTO.newBatch(), (acc, trxOld2ActualBatchMonth) -> {
-                    RewardTransaction trxOld = trxOld2ActualBatchMonth.getLeft();
-                    switch (trxOld.getRewardBatchTrxStatus()){
+        return updateTransactionsStatus(rewardBatchId, initiativeId, request.getTransactionIds(), RewardBatchTrxStatus.APPROVED, null, null,
+                (acc, group) -> {
+                    switch (group.getRewardBatchTrxStatus()) {
 
                         case RewardBatchTrxStatus.APPROVED ->
-                                log.info("Skipping  handler  for transaction  {}:  status  is already  APPROVED",  trxOld.getId());
+                                log.info("Skipping  handler  for transactions  {}:  status  is already  APPROVED", group.getTrxIds());
 
                         case RewardBatchTrxStatus.TO_CHECK, RewardBatchTrxStatus.CONSULTABLE ->
-                                acc.incrementTrxElaborated();
+                                acc.incrementTrxElaborated(group.getCount());
 
                         case RewardBatchTrxStatus.SUSPENDED -> {
-                            acc.decrementTrxSuspended();
-                            if(trxOld.getRewards().get(initiativeId) != null && trxOld.getRewards().get(initiativeId).getAccruedRewardCents() != null) {
-                                acc.incrementApprovedAmountCents(trxOld.getRewards().get(initiativeId).getAccruedRewardCents());
-                                acc.decrementSuspendedAmountCents(trxOld.getRewards().get(initiativeId).getAccruedRewardCents());
-                            }
+                            acc.incrementTrxSuspended(-group.getCount());
+                            acc.incrementApprovedAmountCents(group.getAccruedRewardCents());
+                            acc.decrementSuspendedAmountCents(group.getAccruedRewardCents());
                         }
 
                         case RewardBatchTrxStatus.REJECTED -> {
-                            acc.decrementTrxRejected();
-                            if(trxOld.getRewards().get(initiativeId) != null && trxOld.getRewards().get(initiativeId).getAccruedRewardCents() != null) {
-                                acc.incrementApprovedAmountCents(trxOld.getRewards().get(initiativeId).getAccruedRewardCents());
-                            }
+                            acc.incrementTrxRejected(-group.getCount());
+                            acc.incrementApprovedAmountCents(group.getAccruedRewardCents());
                         }
                     }
-                    return acc;
                 })
-
                 .flatMap(acc ->
                         rewardBatchRepository.updateTotals(
                                 rewardBatchId,
                                 acc)
-                );
+                )
+                .flatMap(rewardBatchCounterStripeService::sumStripes);
+    }
+
+    /**
+     * It will move to the new status the transactions of the batch, through an update for each of their current status, accumulating the counters delta of each group of transactions.<br />
+     * The groups are read before updating them: a transaction whose status changed in the meanwhile is not updated and it's logged as a warning.
+     * When just some transactions of a group have been updated, the group is aggregated again on the ones marked by its update, in order to count just them.
+     */
+    private Mono<BatchCountersDTO> updateTransactionsStatus(String rewardBatchId, String initiativeId, List<String> trxIds, RewardBatchTrxStatus newStatus,
+                                                           ReasonDTO reason, ChecksError checksError, BiConsumer<BatchCountersDTO, RewardBatchTrxStatusGroupDTO> countersUpdater) {
+        return rewardBatchRepository.findByIdAndStatus(rewardBatchId, RewardBatchStatus.EVALUATING)
+                .switchIfEmpty(Mono.error(new ClientExceptionWithBody(NOT_FOUND,
+                        ExceptionConstants.ExceptionCode.REWARD_BATCH_NOT_FOUND_OR_INVALID_STATE,
+                        ExceptionConstants.ExceptionMessage.ERROR_MESSAGE_NOT_FOUND_OR_INVALID_STATE_BATCH.formatted(rewardBatchId))))
+                .flatMapMany(batch -> rewardTransactionRepository.aggregateByRewardBatchTrxStatus(rewardBatchId, trxIds, initiativeId, batch.getMonth())
+                        .concatMap(group -> {
+                            String statusUpdateId = UUID.randomUUID().toString();
+                            return rewardTransactionRepository.updateStatusByIds(rewardBatchId, group.getTrxIds(), group.getRewardBatchTrxStatus(), newStatus, reason, batch.getMonth(), checksError, statusUpdateId)
+                                    .flatMap(matched -> {
+                                        if (matched == group.getCount()) {
+                                            return Mono.just(group);
+                                        }
+                                        log.warn("[UPDATE_TRANSACTIONS_STATUS] Updated {} of the {} transactions of batch {} in status {}: some of them changed status concurrently",
+                                                matched, group.getCount(), Utilities.sanitizeString(rewardBatchId), group.getRewardBatchTrxStatus());
+                                        return matched > 0
+                                                ? rewardTransactionRepository.aggregateByStatusUpdateId(rewardBatchId, group.getTrxIds(), statusUpdateId, initiativeId)
+                                                        .map(updated -> restrictGroup(group, updated))
+                                                : Mono.empty();
+                                    });
+                        }))
+                .reduce(BatchCountersDTO.newBatch(), (acc, group) -> {
+                    countersUpdater.accept(acc, group);
+                    return acc;
+                });
+    }
+
+    /** It will return the group read before the update restricted to the transactions actually updated */
+    private static RewardBatchTrxStatusGroupDTO restrictGroup(RewardBatchTrxStatusGroupDTO group, RewardBatchTrxStatusGroupDTO updated) {
+        Set<String> updatedTrxIds = new HashSet<>(updated.getTrxIds());
+        List<String> elaboratedInPreviousMonthsTrxIds = group.getElaboratedInPreviousMonthsTrxIds() == null
+                ? List.of()
+                : group.getElaboratedInPreviousMonthsTrxIds().stream().filter(updatedTrxIds::contains).toList();
+        return RewardBatchTrxStatusGroupDTO.builder()
+                .rewardBatchTrxStatus(group.getRewardBatchTrxStatus())
+                .trxIds(updated.getTrxIds())
+                .count(updated.getCount())
+                .accruedRewardCents(updated.getAccruedRewardCents())
+                .elaboratedInPreviousMonths(elaboratedInPreviousMonthsTrxIds.size())
+                .elaboratedInPreviousMonthsTrxIds(elaboratedInPreviousMonthsTrxIds)
+                .build();
     }
 
     @Override
@@ -504,6 +583,7 @@ public class RewardBatchServiceImpl implements RewardBatchService {
         }
 
         return rewardBatchToElaborate
+                .flatMap(rewardBatchCounterStripeService::compact)
                 .flatMap(rewardBatch -> {
                     log.info("[EVALUATING_REWARD_BATCH] Evaluating reward batch {}", Utilities.sanitizeString(rewardBatch.getId()));
                     return rewardTransactionRepository.rewardTransactionsByBatchId(rewardBatch.getId())
@@ -1208,10 +1288,6 @@ public class RewardBatchServiceImpl implements RewardBatchService {
     }
 
 
-    private YearMonth getYearMonth (String yearMonthString){
-        return YearMonth.parse(yearMonthString.toLowerCase(), BATCH_MONTH_FORMAT);
-    }
-
     @Override
     public Mono<Void> postponeTransaction(String merchantId, String initiativeId, String rewardBatchId, String transactionId, LocalDate initiativeEndDate) {
 
@@ -1338,16 +1414,33 @@ public class RewardBatchServiceImpl implements RewardBatchService {
                         .doOnNext(b -> log.info("[CANCEL_EMPTY_BATCHES] WILL DELETE id={} month={} nTrx={}",
                                 b.getId(), b.getMonth(), b.getNumberOfTransactions()))
                 )
+                .concatMap(rewardBatchCounterStripeService::sumStripes)
+                .filter(b -> Long.valueOf(0L).equals(b.getNumberOfTransactions()))
                 .concatMap(b ->
                         reactiveMongoTemplate.remove(
                                         Query.query(Criteria.where("_id").is(b.getId())),
                                         RewardBatch.class
                                 )
-                                .map(DeleteResult::getDeletedCount)
+                                .doOnSuccess(r -> evictBatchResolution(b))
+                                .flatMap(r -> rewardBatchCounterStripeService.discard(List.of(b.getId()))
+                                        .thenReturn(r.getDeletedCount()))
                 )
                 .reduce(0L, Long::sum)
                 .doOnNext(count -> log.info("[CANCEL_EMPTY_BATCHES] Deleted {} empty batches", count))
                 .then();
     }
 
+    @Override
+    public Mono<Long> recomputeTransactionTotals(Collection<String> rewardBatchIds) {
+        if (rewardBatchIds.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return rewardBatchCounterStripeService.discard(rewardBatchIds)
+                .thenMany(rewardTransactionRepository.aggregateTransactionTotalsByRewardBatch(rewardBatchIds))
+                .concatMap(totals -> rewardBatchRepository.setTransactionTotals(totals.getRewardBatchId(), totals.getNumberOfTransactions(), totals.getInitialAmountCents())
+                        .doOnNext(b -> log.info("[RECOMPUTE_BATCH_TOTALS] Batch {} updated: numberOfTransactions={}, initialAmountCents={}",
+                                b.getId(), b.getNumberOfTransactions(), b.getInitialAmountCents())))
+                .count();
+    }
+
 }
@@ -0,0 +1,16 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/** It will store transactions collecting them into micro-batches persisted through a single bulk write */
+public interface RewardTransactionBulkSaveService {
+    /** It will enqueue the transaction, completing when the bulk write covering it has been performed */
+    Mono<RewardTransaction> save(RewardTransaction rewardTransaction);
+
+    /** It will store the provided transactions through a single bulk write, returning the errors occurred on single transactions indexed by their position */
+    Mono<Map<Integer, Throwable>> saveAll(List<RewardTransaction> rewardTransactions);
+}
@@ -0,0 +1,76 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.reactive.utils.ReactiveMicroBatcher;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@Service
+@Slf4j
+public class RewardTransactionBulkSaveServiceImpl implements RewardTransactionBulkSaveService {
+
+    private final RewardTransactionRepository rewardTransactionRepository;
+    private final ReactiveMicroBatcher<RewardTransaction> microBatcher;
+
+    public RewardTransactionBulkSaveServiceImpl(RewardTransactionRepository rewardTransactionRepository,
+                                                @Value("${app.transactions.bulk-save.max-size}") int maxSize,
+                                                @Value("${app.transactions.bulk-save.max-wait-millis}") long maxWaitMillis) {
+        this.rewardTransactionRepository = rewardTransactionRepository;
+        this.microBatcher = new ReactiveMicroBatcher<>("TRANSACTION_BULK_SAVE", maxSize, Duration.ofMillis(maxWaitMillis), this::saveAll);
+    }
+
+    @Override
+    public Mono<RewardTransaction> save(RewardTransaction rewardTransaction) {
+        return microBatcher.submit(rewardTransaction);
+    }
+
+    /**
+     * An UNORDERED bulk write can apply its operations in any order, thus when the same transaction is submitted more than once inside a micro-batch only its latest version is written:
+     * the outcome of that write is returned for all its versions
+     */
+    @Override
+    public Mono<Map<Integer, Throwable>> saveAll(List<RewardTransaction> transactions) {
+        Map<String, Integer> latestIndexById = new LinkedHashMap<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            latestIndexById.put(transactions.get(i).getId(), i);
+        }
+        List<RewardTransaction> latestVersions = latestIndexById.values().stream()
+                .map(transactions::get)
+                .toList();
+
+        return rewardTransactionRepository.bulkUpsert(latestVersions)
+                .map(r -> Map.<Integer, Throwable>of())
+                .onErrorResume(BulkOperationException.class, e -> {
+                    log.warn("[TRANSACTION_BULK_SAVE] {} of {} transactions not stored", e.getErrors().size(), latestVersions.size());
+                    Map<String, Throwable> errorsById = e.getErrors().stream()
+                            .collect(Collectors.toMap(
+                                    err -> latestVersions.get(err.getIndex()).getId(),
+                                    err -> new IllegalStateException("Cannot store transaction %s: %s".formatted(latestVersions.get(err.getIndex()).getId(), err.getMessage())),
+                                    (e1, e2) -> e1));
+                    return Mono.just(IntStream.range(0, transactions.size())
+                            .filter(i -> errorsById.containsKey(transactions.get(i).getId()))
+                            .boxed()
+                            .collect(Collectors.toMap(
+                                    Function.identity(),
+                                    i -> errorsById.get(transactions.get(i).getId()))));
+                });
+    }
+
+    @PreDestroy
+    void dispose() {
+        microBatcher.dispose();
+    }
+}
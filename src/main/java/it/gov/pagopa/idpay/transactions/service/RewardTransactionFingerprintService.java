@@ -0,0 +1,12 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import reactor.core.publisher.Mono;
+
+public interface RewardTransactionFingerprintService {
+    /** It will compute a stable fingerprint of the mapped transaction, independent of the order of its map entries */
+    String computeFingerprint(RewardTransaction rewardTransaction);
+
+    /** It will set the fingerprint on the transaction, returning it only if it differs from the stored one, otherwise empty */
+    Mono<RewardTransaction> filterChanged(RewardTransaction rewardTransaction);
+}
@@ -0,0 +1,97 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.hash.Hashing;
+import it.gov.pagopa.common.reactive.utils.ReactiveMicroBatcher;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The stored fingerprints are retrieved through micro-batches bounded as the ones of {@link RewardTransactionBulkSaveService}, thus through a single query for each of them
+ */
+@Service
+@Slf4j
+public class RewardTransactionFingerprintServiceImpl implements RewardTransactionFingerprintService {
+
+    private final RewardTransactionRepository rewardTransactionRepository;
+    private final ObjectWriter canonicalWriter;
+    private final ReactiveMicroBatcher<FingerprintLookup> microBatcher;
+
+    public RewardTransactionFingerprintServiceImpl(RewardTransactionRepository rewardTransactionRepository,
+                                                   ObjectMapper objectMapper,
+                                                   @Value("${app.transactions.bulk-save.max-size}") int maxSize,
+                                                   @Value("${app.transactions.bulk-save.max-wait-millis}") long maxWaitMillis) {
+        this.rewardTransactionRepository = rewardTransactionRepository;
+        this.canonicalWriter = objectMapper.writer()
+                .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.microBatcher = new ReactiveMicroBatcher<>("TRANSACTION_FINGERPRINT_LOOKUP", maxSize, Duration.ofMillis(maxWaitMillis), this::lookupAll);
+    }
+
+    @Override
+    public String computeFingerprint(RewardTransaction rewardTransaction) {
+        String storedFingerprint = rewardTransaction.getContentFingerprint();
+        rewardTransaction.setContentFingerprint(null);
+        try {
+            return Hashing.sha256()
+                    .hashBytes(canonicalWriter.writeValueAsBytes(rewardTransaction))
+                    .toString();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot compute fingerprint of transaction %s".formatted(rewardTransaction.getId()), e);
+        } finally {
+            rewardTransaction.setContentFingerprint(storedFingerprint);
+        }
+    }
+
+    @Override
+    public Mono<RewardTransaction> filterChanged(RewardTransaction rewardTransaction) {
+        rewardTransaction.setContentFingerprint(computeFingerprint(rewardTransaction));
+
+        return microBatcher.submit(new FingerprintLookup(rewardTransaction, new AtomicBoolean()))
+                .flatMap(lookup -> {
+                    if (lookup.unchanged().get()) {
+                        log.debug("[TRANSACTION] Skipping unchanged transaction {}", rewardTransaction.getId());
+                        return Mono.empty();
+                    }
+                    return Mono.just(rewardTransaction);
+                });
+    }
+
+    /** It will mark as unchanged the transactions whose fingerprint is equal to the stored one, retrieving all of them through a single query */
+    private Mono<Map<Integer, Throwable>> lookupAll(List<FingerprintLookup> lookups) {
+        List<String> trxIds = lookups.stream()
+                .map(lookup -> lookup.rewardTransaction().getId())
+                .distinct()
+                .toList();
+
+        return rewardTransactionRepository.findContentFingerprints(trxIds)
+                .collectMap(RewardTransaction::getId, RewardTransaction::getContentFingerprint, HashMap::new)
+                .map(storedFingerprints -> {
+                    lookups.forEach(lookup -> lookup.unchanged().set(Objects.equals(
+                            storedFingerprints.get(lookup.rewardTransaction().getId()),
+                            lookup.rewardTransaction().getContentFingerprint())));
+                    return Map.<Integer, Throwable>of();
+                });
+    }
+
+    @PreDestroy
+    void dispose() {
+        microBatcher.dispose();
+    }
+
+    private record FingerprintLookup(RewardTransaction rewardTransaction, AtomicBoolean unchanged) {}
+}
@@ -6,15 +6,35 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.LongConsumer;
 
 public interface RewardTransactionService {
     Mono<RewardTransaction> save(RewardTransaction rewardTransaction);
 
+    /** It will enrich the transaction with the data required before to store it (e.g. the reward batch of INVOICED transactions), without storing it */
+    Mono<RewardTransaction> prepareForSave(RewardTransaction rewardTransaction);
+
+    /** It will retrieve, for each of the provided transactions already stored, its reward batch assignment, to be kept when it's replayed */
+    Mono<Map<String, RewardTransaction>> findStoredBatchData(Collection<String> trxIds);
+
+    /**
+     * As {@link #prepareForSave(RewardTransaction)}, but without updating the counters of the reward batch, which should be recomputed later.<br />
+     * If the transaction was already assigned to a batch (<i>stored</i>, as returned by {@link #findStoredBatchData(Collection)}), that assignment is kept, whatever the status of the batch
+     */
+    Mono<RewardTransaction> prepareForReplay(RewardTransaction rewardTransaction, RewardTransaction stored);
+
     Flux<RewardTransaction> findByIdTrxIssuer(String idTrxIssuer, String userId, LocalDateTime trxDateStart, LocalDateTime trxDateEnd, Long amountCents, Pageable pageable);
 
     Flux<RewardTransaction> findByRange(String userId, LocalDateTime trxDateStart, LocalDateTime trxDateEnd, Long amountCents, Pageable pageable);
 
-    Mono<Void> assignInvoicedTransactionsToBatches(Integer chunkSize, Integer repetitionsNumber, boolean processAll, String trxId);
+    default Mono<Void> assignInvoicedTransactionsToBatches(Integer chunkSize, Integer repetitionsNumber, boolean processAll, String trxId) {
+        return assignInvoicedTransactionsToBatches(chunkSize, repetitionsNumber, processAll, trxId, assigned -> {});
+    }
+
+    /** As {@link #assignInvoicedTransactionsToBatches(Integer, Integer, boolean, String)}, notifying to <i>assignedListener</i> the number of transactions assigned by each page */
+    Mono<Void> assignInvoicedTransactionsToBatches(Integer chunkSize, Integer repetitionsNumber, boolean processAll, String trxId, LongConsumer assignedListener);
 
     Flux<RewardTransaction> findByInitiativeIdAndUserId(String initiativeId, String userId);
 }
\ No newline at end of file
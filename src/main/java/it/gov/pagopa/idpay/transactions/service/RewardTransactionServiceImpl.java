@@ -1,6 +1,7 @@
 package it.gov.pagopa.idpay.transactions.service;
 
 import com.google.common.hash.Hashing;
+import com.mongodb.bulk.BulkWriteError;
 import static it.gov.pagopa.idpay.transactions.utils.ExceptionConstants.ExceptionMessage.REWARD_BATCH_STATUS_MISMATCH;
 import static it.gov.pagopa.idpay.transactions.utils.ExceptionConstants.ExceptionMessage.TRANSACTION_NOT_FOUND;
 
@@ -11,9 +12,9 @@ import it.gov.pagopa.idpay.transactions.enums.PosType;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
 import it.gov.pagopa.idpay.transactions.enums.SyncTrxStatus;
+import it.gov.pagopa.idpay.transactions.exception.RewardBatchSealedException;
 import it.gov.pagopa.idpay.transactions.model.Reward;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
-import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
 import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
 import it.gov.pagopa.idpay.transactions.utils.Utilities;
 
@@ -21,14 +22,28 @@ import java.time.LocalDate;
 import java.time.YearMonth;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 @Slf4j
@@ -38,29 +53,70 @@ public class RewardTransactionServiceImpl implements RewardTransactionService {
     private final RewardBatchService rewardBatchService;
     private final MerchantRestClient merchantRestClient;
     private final int seed;
-    private final RewardBatchRepository rewardBatchRepository;
+    private final RewardBatchCountersWriteBehindService rewardBatchCountersWriteBehindService;
+    private final RewardBatchCounterStripeService rewardBatchCounterStripeService;
 
 
     public RewardTransactionServiceImpl(RewardTransactionRepository rewardTrxRepository,
                                         RewardBatchService rewardBatchService,
                                         MerchantRestClient merchantRestClient,
                                         @Value(value="${app.sampling}") int seed,
-                                        RewardBatchRepository rewardBatchRepository) {
+                                        RewardBatchCountersWriteBehindService rewardBatchCountersWriteBehindService,
+                                        RewardBatchCounterStripeService rewardBatchCounterStripeService) {
         this.rewardTrxRepository = rewardTrxRepository;
         this.rewardBatchService = rewardBatchService;
         this.merchantRestClient = merchantRestClient;
         this.seed = seed;
-        this.rewardBatchRepository = rewardBatchRepository;
+        this.rewardBatchCountersWriteBehindService = rewardBatchCountersWriteBehindService;
+        this.rewardBatchCounterStripeService = rewardBatchCounterStripeService;
     }
 
     @Override
     public Mono<RewardTransaction> save(RewardTransaction rewardTransaction) {
+        return enrichIfInvoiced(rewardTransaction, batchTotalsUpdater(rewardTransaction))
+                .flatMap(rewardTrxRepository::save);
+    }
+
+    @Override
+    public Mono<RewardTransaction> prepareForSave(RewardTransaction rewardTransaction) {
+        return enrichIfInvoiced(rewardTransaction, (rewardBatchId, counters) ->
+                rewardBatchCountersWriteBehindService.increment(rewardBatchId, rewardTransaction.getId(), counters));
+    }
+
+    @Override
+    public Mono<Map<String, RewardTransaction>> findStoredBatchData(Collection<String> trxIds) {
+        return rewardTrxRepository.findBatchDataByIds(trxIds)
+                .filter(stored -> stored.getRewardBatchId() != null)
+                .collectMap(RewardTransaction::getId);
+    }
 
+    @Override
+    public Mono<RewardTransaction> prepareForReplay(RewardTransaction rewardTransaction, RewardTransaction stored) {
+        if (stored != null && stored.getRewardBatchId() != null) {
+            rewardTransaction.setRewardBatchId(stored.getRewardBatchId());
+            rewardTransaction.setRewardBatchTrxStatus(stored.getRewardBatchTrxStatus());
+            rewardTransaction.setRewardBatchRejectionReason(stored.getRewardBatchRejectionReason());
+            rewardTransaction.setRewardBatchInclusionDate(stored.getRewardBatchInclusionDate());
+            rewardTransaction.setRewardBatchLastMonthElaborated(stored.getRewardBatchLastMonthElaborated());
+            rewardTransaction.setFranchiseName(stored.getFranchiseName());
+            rewardTransaction.setPointOfSaleType(stored.getPointOfSaleType());
+            rewardTransaction.setBusinessName(stored.getBusinessName());
+            rewardTransaction.setInvoiceUploadDate(stored.getInvoiceUploadDate());
+            rewardTransaction.setSamplingKey(stored.getSamplingKey());
+            return Mono.just(rewardTransaction);
+        }
+        return enrichIfInvoiced(rewardTransaction, (rewardBatchId, counters) -> Mono.just(rewardBatchId));
+    }
+
+    private Mono<RewardTransaction> enrichIfInvoiced(RewardTransaction rewardTransaction, BiFunction<String, BatchCountersDTO, Mono<String>> batchCountersUpdater) {
         if (SyncTrxStatus.INVOICED.name().equalsIgnoreCase(rewardTransaction.getStatus())) {
-            return enrichBatchData(rewardTransaction)
-                .flatMap(rewardTrxRepository::save);
+            return enrichBatchData(rewardTransaction, batchCountersUpdater);
         }
-        return rewardTrxRepository.save(rewardTransaction);
+        return Mono.just(rewardTransaction);
+    }
+
+    private BiFunction<String, BatchCountersDTO, Mono<String>> batchTotalsUpdater(RewardTransaction rewardTransaction) {
+        return (rewardBatchId, counters) -> rewardBatchCounterStripeService.increment(rewardBatchId, rewardTransaction.getId(), counters);
     }
 
     @Override
@@ -79,23 +135,24 @@ public class RewardTransactionServiceImpl implements RewardTransactionService {
     }
 
     @Override
-    public Mono<Void> assignInvoicedTransactionsToBatches(Integer chunkSize, Integer repetitionsNumber, boolean processAll, String trxId) {
+    public Mono<Void> assignInvoicedTransactionsToBatches(Integer chunkSize, Integer repetitionsNumber, boolean processAll, String trxId, LongConsumer assignedListener) {
 
       if (trxId != null && !trxId.isEmpty()) {
         log.info("[BATCH_ASSIGNMENT] Processing transaction with ID={}", Utilities.sanitizeString(trxId));
         return rewardTrxRepository.findInvoicedTrxByIdWithoutBatch(trxId)
             .switchIfEmpty(Mono.error(new ClientExceptionNoBody(HttpStatus.NOT_FOUND, String.format(TRANSACTION_NOT_FOUND, trxId))))
-            .flatMap(this::processTransaction)
+            .flatMap(trx -> assignPage(List.of(trx), false))
+            .doOnNext(assignedListener::accept)
             .then();
       }
       if (processAll) {
-        return processAllOperation(chunkSize);
+        return processAllOperation(chunkSize, assignedListener);
       } else {
-        return processSingleOperation(chunkSize, repetitionsNumber);
+        return processSingleOperation(chunkSize, repetitionsNumber, assignedListener);
       }
     }
 
-    private Mono<Void> processAllOperation(int chunkSize) {
+    private Mono<Void> processAllOperation(int chunkSize, LongConsumer assignedListener) {
       return rewardTrxRepository.findInvoicedTransactionsWithoutBatch(chunkSize)
           .collectList()
           .flatMap(list -> {
@@ -104,21 +161,19 @@ public class RewardTransactionServiceImpl implements RewardTransactionService {
               return Mono.empty();
             }
 
-            log.info("[BATCH_ASSIGNMENT] Processing {} transactions...", list.size());
-
-            return Flux.fromIterable(list)
-                .concatMap(trx ->
-                    processTransaction(trx)
-                        .onErrorResume(e ->{
-                          log.error("[BATCH_ERROR_TRANSACTION[{}] Error while processing transaction: {}",
-                              trx.getId(), e.getMessage(), e);
-                          return Mono.empty();
-                        }))
-                .then(Mono.defer(() -> processAllOperation(chunkSize)));
+            return assignPage(list, true)
+                .doOnNext(assignedListener::accept)
+                .flatMap(assigned -> {
+                  if (assigned == 0L) {
+                    log.error("[BATCH_ASSIGNMENT] Stopped: none of the {} transactions read has been assigned", list.size());
+                    return Mono.empty();
+                  }
+                  return processAllOperation(chunkSize, assignedListener);
+                });
           });
     }
 
-  private Mono<Void> processSingleOperation(int chunkSize, int repetitionsNumber) {
+  private Mono<Void> processSingleOperation(int chunkSize, int repetitionsNumber, LongConsumer assignedListener) {
 
     return Flux.range(1, repetitionsNumber)
         .concatMap(i ->
@@ -131,92 +186,181 @@ public class RewardTransactionServiceImpl implements RewardTransactionService {
                   }
                   log.info("[BATCH_ASSIGNMENT] Iteration {}: Processing {} transactions.",
                       i, list.size());
-                  return Flux.fromIterable(list)
-                      .concatMap(trx ->
-                          processTransaction(trx)
-                              .onErrorResume(e-> {
-                                log.error("[BATCH_ERROR_TRANSACTION[{}] Error while processing transaction: {}", trx.getId(), e.getMessage(), e);
-                                return Mono.empty();
-                              }))
-                      .then();
+                  return assignPage(list, true)
+                      .doOnNext(assignedListener::accept);
                 })
         )
         .then();
   }
 
-  private Mono<RewardTransaction> processTransaction(RewardTransaction trx) {
-      log.info("[BATCH_ASSIGNMENT][{}] Start processing transaction with status='{}', rewardBatchId='{}'",
-          trx.getId(), trx.getStatus(), trx.getRewardBatchId());
-
-      return setTrxMissingFields(trx)
-          .flatMap(this::enrichBatchData)
-          .flatMap(rewardTrxRepository::save)
-          .doOnSuccess(savedTrx -> {
-            log.info("[BATCH_ASSIGNMENT][{}] Transaction processed successfully.", savedTrx.getId());
-
-            log.info("[BATCH_ASSIGNMENT][{}] Enriched fields: "
-                    + "franchiseName='{}', pointOfSaleType='{}', businessName='{}', rewardBatchId='{}'",
-                savedTrx.getId(),
-                savedTrx.getFranchiseName(),
-                savedTrx.getPointOfSaleType(),
-                savedTrx.getBusinessName(),
-                savedTrx.getRewardBatchId()
-            );
-          });
-    }
-
-    private Mono<RewardTransaction> setTrxMissingFields(RewardTransaction trx) {
+  /**
+   * It will assign a page of transactions to their batches: the point of sale of each distinct (merchantId, pointOfSaleId) is retrieved once,
+   * then the transactions are grouped by (merchantId, posType, month) and each group is resolved into its batch once, assigned through a single bulk write and counted with a single increment.
+   * @param skipErrors if true, the transactions of a group ended with an error are logged and left without batch, otherwise the error is propagated
+   * @return Mono containing the number of transactions assigned
+   */
+  private Mono<Long> assignPage(List<RewardTransaction> page, boolean skipErrors) {
+    long startTime = System.currentTimeMillis();
+    Map<PointOfSaleKey, List<RewardTransaction>> pointOfSaleGroups = page.stream()
+        .collect(Collectors.groupingBy(trx -> new PointOfSaleKey(trx.getMerchantId(), trx.getPointOfSaleId()), LinkedHashMap::new, Collectors.toList()));
+
+    return Flux.fromIterable(pointOfSaleGroups.entrySet())
+        .concatMap(posGroup -> setTrxMissingFields(posGroup.getKey(), posGroup.getValue())
+            .onErrorResume(e -> {
+              if (!skipErrors) {
+                return Mono.error(e);
+              }
+              log.error("[BATCH_ERROR_TRANSACTION] Error while retrieving point of sale {} of merchant {}, skipping its {} transactions: {}",
+                  posGroup.getKey().pointOfSaleId(), posGroup.getKey().merchantId(), posGroup.getValue().size(), e.getMessage(), e);
+              return Mono.empty();
+            }))
+        .flatMapIterable(Function.identity())
+        .collect(Collectors.groupingBy(BatchKey::of, LinkedHashMap::new, Collectors.toList()))
+        .flatMapMany(batchGroups -> Flux.fromIterable(batchGroups.entrySet()))
+        .concatMap(batchGroup -> assignGroup(batchGroup.getKey(), batchGroup.getValue())
+            .onErrorResume(e -> {
+              if (!skipErrors) {
+                return Mono.error(e);
+              }
+              log.error("[BATCH_ERROR_TRANSACTION] Error while assigning the {} transactions of {}: {}",
+                  batchGroup.getValue().size(), batchGroup.getKey(), e.getMessage(), e);
+              return Mono.just(0L);
+            }))
+        .reduce(0L, Long::sum)
+        .doOnNext(assigned -> log.info("[BATCH_ASSIGNMENT] Assigned {} of {} transactions read, spread on {} points of sale, in {} ms",
+            assigned, page.size(), pointOfSaleGroups.size(), System.currentTimeMillis() - startTime));
+  }
 
-      if (trx.getInvoiceUploadDate() == null) {
-        trx.setInvoiceUploadDate(trx.getTrxChargeDate());
-        log.info("[BATCH_ASSIGNMENT][{}] invoiceUploadDate was null, set to trxChargeDate={}",
-            trx.getId(), trx.getTrxChargeDate());
-      }
+  private Mono<List<RewardTransaction>> setTrxMissingFields(PointOfSaleKey pointOfSaleKey, List<RewardTransaction> trxs) {
+      trxs.stream()
+          .filter(trx -> trx.getInvoiceUploadDate() == null)
+          .forEach(trx -> trx.setInvoiceUploadDate(trx.getTrxChargeDate()));
 
-      return merchantRestClient.getPointOfSale(trx.getMerchantId(), trx.getPointOfSaleId())
+      return merchantRestClient.getPointOfSale(pointOfSaleKey.merchantId(), pointOfSaleKey.pointOfSaleId())
           .map(pos -> {
-
-            boolean enriched = false;
-
-            if (trx.getFranchiseName() == null) {
-              trx.setFranchiseName(pos.getFranchiseName());
-              log.info("[BATCH_ASSIGNMENT][{}] franchiseName set to '{}'", trx.getId(), pos.getFranchiseName());
-              enriched = true;
-            }
-
-            if (trx.getPointOfSaleType() == null) {
-              trx.setPointOfSaleType(PosType.valueOf(pos.getType().name()));
-              log.info("[BATCH_ASSIGNMENT][{}] pointOfSaleType set to '{}'", trx.getId(), pos.getType());
-              enriched = true;
+            for (RewardTransaction trx : trxs) {
+              if (trx.getFranchiseName() == null) {
+                trx.setFranchiseName(pos.getFranchiseName());
+              }
+              if (trx.getPointOfSaleType() == null) {
+                trx.setPointOfSaleType(PosType.valueOf(pos.getType().name()));
+              }
+              if (trx.getBusinessName() == null) {
+                trx.setBusinessName(pos.getBusinessName());
+              }
             }
+            return trxs;
+          });
+  }
 
-            if (trx.getBusinessName() == null) {
-              trx.setBusinessName(pos.getBusinessName());
-              log.info("[BATCH_ASSIGNMENT][{}] businessName set to '{}'", trx.getId(), pos.getBusinessName());
-              enriched = true;
+  /**
+   * The batch counters are incremented just by the transactions actually written: if the bulk write has not modified all of them
+   * (e.g. some have been assigned meanwhile, or some writes have failed), the written ones are retrieved through their inclusion date
+   */
+  private Mono<Long> assignGroup(BatchKey batchKey, List<RewardTransaction> trxs) {
+      return rewardBatchService.findOrCreateBatch(
+                  batchKey.merchantId(),
+                  batchKey.posType(),
+                  batchKey.month(),
+                  trxs.getFirst().getBusinessName()
+          )
+          .flatMap(rewardBatch -> {
+            if (rewardBatch.getStatus() != RewardBatchStatus.CREATED) {
+              return Mono.error(new ClientExceptionNoBody(HttpStatus.BAD_REQUEST, REWARD_BATCH_STATUS_MISMATCH));
             }
 
-            if (!enriched) {
-              log.info("[BATCH_ASSIGNMENT][{}] No enrichment needed, all fields already present", trx.getId());
+            // the precision of the dates stored on Mongo, in order to match the written transactions
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+            Map<String, BatchCountersDTO> trxId2Counters = new LinkedHashMap<>();
+            for (RewardTransaction trx : trxs) {
+              trxId2Counters.put(trx.getId(), BatchCountersDTO.newBatch()
+                  .incrementInitialAmountCents(getAccruedRewardCents(trx))
+                  .incrementNumberOfTransactions(1L));
+              trx.setRewardBatchId(rewardBatch.getId());
+              trx.setRewardBatchTrxStatus(RewardBatchTrxStatus.CONSULTABLE);
+              trx.setRewardBatchInclusionDate(now);
+              trx.setRewardBatchRejectionReason(null);
+              trx.setSamplingKey(computeSamplingKey(trx.getId()));
+              trx.setUpdateDate(now);
             }
 
-            return trx;
+            return rewardTrxRepository.bulkAssignToBatch(trxs)
+                .map(result -> Tuples.of(result.getModifiedCount(), trxs))
+                .onErrorResume(BulkOperationException.class, e -> {
+                  Set<Integer> failedIndexes = e.getErrors().stream().map(BulkWriteError::getIndex).collect(Collectors.toSet());
+                  log.error("[BATCH_ERROR_TRANSACTION] {} of {} transactions not assigned to batch {}: {}",
+                      failedIndexes.size(), trxs.size(), rewardBatch.getId(), e.getMessage());
+                  List<RewardTransaction> written = IntStream.range(0, trxs.size())
+                      .filter(i -> !failedIndexes.contains(i))
+                      .mapToObj(trxs::get)
+                      .toList();
+                  return Mono.just(Tuples.of(e.getResult().getModifiedCount(), written));
+                })
+                .flatMap(t -> findAssigned(rewardBatch.getId(), t.getT2(), t.getT1(), now))
+                .flatMap(assignedIds -> {
+                  if (assignedIds.size() < trxs.size()) {
+                    log.warn("[BATCH_ASSIGNMENT] Just {} of {} transactions have been assigned to batch {}",
+                        assignedIds.size(), trxs.size(), rewardBatch.getId());
+                  }
+                  if (assignedIds.isEmpty()) {
+                    return Mono.just(0L);
+                  }
+                  Map<String, BatchCountersDTO> assignedCounters = new LinkedHashMap<>(trxId2Counters);
+                  assignedCounters.keySet().retainAll(assignedIds);
+                  return rewardBatchCounterStripeService.increment(rewardBatch.getId(), assignedCounters)
+                      .thenReturn((long) assignedCounters.size());
+                });
           });
-    }
+  }
+
+  private Mono<Collection<String>> findAssigned(String rewardBatchId, List<RewardTransaction> candidates, long modifiedCount, LocalDateTime inclusionDate) {
+      if (modifiedCount == 0) {
+        return Mono.just(List.of());
+      }
+      List<String> candidateIds = candidates.stream().map(RewardTransaction::getId).toList();
+      if (modifiedCount == candidateIds.size()) {
+        return Mono.just(candidateIds);
+      }
+      return rewardTrxRepository.findIdsAssignedToBatch(rewardBatchId, candidateIds, inclusionDate)
+          .collect(Collectors.toCollection(HashSet::new));
+  }
+
+  private record PointOfSaleKey(String merchantId, String pointOfSaleId) {}
+
+  private record BatchKey(String merchantId, PosType posType, String month) {
+      static BatchKey of(RewardTransaction trx) {
+        return new BatchKey(trx.getMerchantId(), trx.getPointOfSaleType(), getBatchMonth(trx));
+      }
+  }
 
-    private Mono<RewardTransaction> enrichBatchData(RewardTransaction trx) {
+  private static String getBatchMonth(RewardTransaction trx) {
+      LocalDate trxDate = trx.getInvoiceUploadDate() != null ?
+              trx.getInvoiceUploadDate().toLocalDate() :  trx.getTrxChargeDate().toLocalDate();
+      return YearMonth.from(trxDate).toString();
+  }
 
-        LocalDate trxDate = trx.getInvoiceUploadDate() != null ?
-                trx.getInvoiceUploadDate().toLocalDate() :  trx.getTrxChargeDate().toLocalDate();
-        YearMonth trxMonth = YearMonth.from(trxDate);
-        String batchMonth = trxMonth.toString();
+  private static long getAccruedRewardCents(RewardTransaction trx) {
+      String initiativeId = trx.getInitiatives().getFirst();
+      return Optional.ofNullable(trx.getRewards())
+              .map(r -> r.get(initiativeId))
+              .map(Reward::getAccruedRewardCents)
+              .orElse(0L);
+  }
+
+    /** If the batch has been sealed meanwhile (e.g. sent through another instance while cached), its resolution is evicted and performed again */
+    private Mono<RewardTransaction> enrichBatchData(RewardTransaction trx, BiFunction<String, BatchCountersDTO, Mono<String>> batchCountersUpdater) {
+        return enrichBatchDataOnCreatedBatch(trx, batchCountersUpdater)
+            .onErrorResume(RewardBatchSealedException.class, e -> {
+              log.info("[BATCH_ASSIGNMENT][{}] {}: resolving the batch again", trx.getId(), e.getMessage());
+              rewardBatchService.evictBatchResolution(trx.getMerchantId(), trx.getPointOfSaleType(), getBatchMonth(trx));
+              return enrichBatchDataOnCreatedBatch(trx, batchCountersUpdater);
+            });
+    }
 
-        String initiativeId = trx.getInitiatives().getFirst();
+    private Mono<RewardTransaction> enrichBatchDataOnCreatedBatch(RewardTransaction trx, BiFunction<String, BatchCountersDTO, Mono<String>> batchCountersUpdater) {
 
-        long accruedRewardCents = Optional.ofNullable(trx.getRewards())
-                .map(r -> r.get(initiativeId))
-                .map(Reward::getAccruedRewardCents)
-                .orElse(0L);
+        String batchMonth = getBatchMonth(trx);
+        long accruedRewardCents = getAccruedRewardCents(trx);
 
         return rewardBatchService.findOrCreateBatch(
                     trx.getMerchantId(),
@@ -234,9 +378,9 @@ public class RewardTransactionServiceImpl implements RewardTransactionService {
                         .incrementInitialAmountCents(accruedRewardCents)
                         .incrementNumberOfTransactions(1L);
 
-              return rewardBatchRepository.updateTotals(rewardBatch.getId(), counters)
-                  .map(batch -> {
-                    trx.setRewardBatchId(batch.getId());
+              return batchCountersUpdater.apply(rewardBatch.getId(), counters)
+                  .map(rewardBatchId -> {
+                    trx.setRewardBatchId(rewardBatchId);
                     trx.setRewardBatchTrxStatus(RewardBatchTrxStatus.CONSULTABLE);
                     trx.setRewardBatchInclusionDate(LocalDateTime.now());
                     trx.setRewardBatchRejectionReason(null);
@@ -2,10 +2,11 @@ package it.gov.pagopa.idpay.transactions.service;
 
 import it.gov.pagopa.idpay.transactions.config.KafkaConfiguration;
 import org.springframework.messaging.Message;
+import reactor.core.publisher.Mono;
 
 public interface TransactionErrorNotifierService {
-    void notifyTransaction(Message<?> message, String description, boolean retryable, Throwable exception);
-    void notifyTransactionCommands(Message<String> message, String description, boolean retryable, Throwable exception);
-    void notifyTransactionOutcome(Message<?> message, String description, boolean retryable, Throwable exception);
-    void notify(KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO ,Message<?> message, String description, boolean retryable, boolean resendApplication, Throwable exception);
+    Mono<Boolean> notifyTransaction(Message<?> message, String description, boolean retryable, Throwable exception);
+    Mono<Boolean> notifyTransactionCommands(Message<?> message, String description, boolean retryable, Throwable exception);
+    Mono<Boolean> notifyTransactionOutcome(Message<?> message, String description, boolean retryable, Throwable exception);
+    Mono<Boolean> notify(KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO ,Message<?> message, String description, boolean retryable, boolean resendApplication, Throwable exception);
 }
@@ -5,6 +5,7 @@ import it.gov.pagopa.idpay.transactions.config.KafkaConfiguration;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.Message;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 @Service
 @Slf4j
@@ -22,22 +23,22 @@ public class TransactionErrorNotifierServiceImpl implements TransactionErrorNoti
     }
 
     @Override
-    public void notifyTransaction(Message<?> message, String description, boolean retryable, Throwable exception) {
-        notify(kafkaConfiguration.getStream().getBindings().get(KAFKA_BINDINGS_TRANSACTIONS), message, description, retryable, true, exception);
+    public Mono<Boolean> notifyTransaction(Message<?> message, String description, boolean retryable, Throwable exception) {
+        return notify(kafkaConfiguration.getStream().getBindings().get(KAFKA_BINDINGS_TRANSACTIONS), message, description, retryable, true, exception);
     }
 
     @Override
-    public void notifyTransactionCommands(Message<String> message, String description, boolean retryable, Throwable exception) {
-        notify(kafkaConfiguration.getStream().getBindings().get(KAFKA_BINDINGS_TRANSACTIONS_COMMANDS), message, description, retryable, true, exception);
+    public Mono<Boolean> notifyTransactionCommands(Message<?> message, String description, boolean retryable, Throwable exception) {
+        return notify(kafkaConfiguration.getStream().getBindings().get(KAFKA_BINDINGS_TRANSACTIONS_COMMANDS), message, description, retryable, true, exception);
     }
 
     @Override
-    public void notifyTransactionOutcome(Message<?> message, String description, boolean retryable, Throwable exception) {
-        notify(kafkaConfiguration.getStream().getBindings().get(BINDING_NAME_TRANSACTION_OUTCOME), message, description, retryable, false, exception);
+    public Mono<Boolean> notifyTransactionOutcome(Message<?> message, String description, boolean retryable, Throwable exception) {
+        return notify(kafkaConfiguration.getStream().getBindings().get(BINDING_NAME_TRANSACTION_OUTCOME), message, description, retryable, false, exception);
     }
 
     @Override
-    public void notify(KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO, Message<?> message, String description, boolean retryable, boolean resendApplication, Throwable exception) {
-        errorNotifierService.notify(baseKafkaInfoDTO, message, description, retryable,resendApplication, exception);
+    public Mono<Boolean> notify(KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO, Message<?> message, String description, boolean retryable, boolean resendApplication, Throwable exception) {
+        return errorNotifierService.notify(baseKafkaInfoDTO, message, description, retryable,resendApplication, exception);
     }
 }
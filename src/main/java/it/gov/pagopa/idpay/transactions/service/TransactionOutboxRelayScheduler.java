@@ -0,0 +1,31 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * It will periodically relay the notifications stored in the outbox to Kafka.<br />
+ * Each instance will run it: the entries are claimed before being published, thus they are not published concurrently by more instances
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.transactions.outbox.relay.enabled", havingValue = "true")
+public class TransactionOutboxRelayScheduler {
+
+    private final TransactionOutboxService transactionOutboxService;
+
+    public TransactionOutboxRelayScheduler(TransactionOutboxService transactionOutboxService) {
+        this.transactionOutboxService = transactionOutboxService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.transactions.outbox.relay.poll-millis}")
+    public void relayPending() {
+        try {
+            transactionOutboxService.relayPending().block();
+        } catch (Exception e) {
+            log.error("[TRANSACTION_OUTBOX] Something gone wrong while relaying the pending notifications", e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.dto.RewardTransactionKafkaDTO;
+import reactor.core.publisher.Mono;
+
+public interface TransactionOutboxService {
+
+    /** It will store the notification of the given transaction, to be published by the relay; a notification already stored for the same transaction status is left unchanged */
+    Mono<Void> enqueue(RewardTransactionKafkaDTO trx, String key);
+
+    /** It will publish the available PENDING notifications, in batches, until exhausted, returning the number of delivered ones */
+    Mono<Long> relayPending();
+}
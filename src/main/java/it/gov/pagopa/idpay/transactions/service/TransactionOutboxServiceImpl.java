@@ -0,0 +1,179 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import it.gov.pagopa.common.reactive.kafka.producer.KafkaBatchPublisher;
+import it.gov.pagopa.idpay.transactions.dto.RewardTransactionKafkaDTO;
+import it.gov.pagopa.idpay.transactions.enums.TransactionOutboxStatus;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.model.TransactionOutbox;
+import it.gov.pagopa.idpay.transactions.notifier.TransactionNotifierService;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.repository.TransactionOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * The notifications are stored before applying the change of the transaction, thus the relay will publish an entry just when the transaction has reached the notified status.<br />
+ * An entry whose transaction has not reached its status is retried until the configured grace period since its creation, then it is discarded,
+ * since the change has failed after storing it.
+ */
+@Service
+@Slf4j
+public class TransactionOutboxServiceImpl implements TransactionOutboxService {
+
+    private final TransactionOutboxRepository transactionOutboxRepository;
+    private final RewardTransactionRepository rewardTransactionRepository;
+    private final TransactionNotifierService transactionNotifierService;
+    private final ObjectWriter payloadWriter;
+    private final ObjectReader payloadReader;
+    private final int batchSize;
+    private final Duration claimDuration;
+    private final Duration retryDelay;
+    private final Duration stateGracePeriod;
+
+    record RelayOutcome(int claimed, long delivered) {}
+
+    public TransactionOutboxServiceImpl(TransactionOutboxRepository transactionOutboxRepository,
+                                        RewardTransactionRepository rewardTransactionRepository,
+                                        TransactionNotifierService transactionNotifierService,
+                                        ObjectMapper objectMapper,
+                                        @Value("${app.transactions.outbox.relay.batch-size}") int batchSize,
+                                        @Value("${app.transactions.outbox.relay.claim-seconds}") long claimSeconds,
+                                        @Value("${app.transactions.outbox.relay.retry-delay-seconds}") long retryDelaySeconds,
+                                        @Value("${app.transactions.outbox.relay.state-grace-seconds}") long stateGraceSeconds) {
+        this.transactionOutboxRepository = transactionOutboxRepository;
+        this.rewardTransactionRepository = rewardTransactionRepository;
+        this.transactionNotifierService = transactionNotifierService;
+        this.payloadWriter = objectMapper.writerFor(RewardTransactionKafkaDTO.class);
+        this.payloadReader = objectMapper.readerFor(RewardTransactionKafkaDTO.class);
+        this.batchSize = batchSize;
+        this.claimDuration = Duration.ofSeconds(claimSeconds);
+        this.retryDelay = Duration.ofSeconds(retryDelaySeconds);
+        this.stateGracePeriod = Duration.ofSeconds(stateGraceSeconds);
+    }
+
+    @Override
+    public Mono<Void> enqueue(RewardTransactionKafkaDTO trx, String key) {
+        return Mono.fromCallable(() -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    return TransactionOutbox.builder()
+                            .id(TransactionOutbox.buildId(trx.getId(), trx.getStatus()))
+                            .trxId(trx.getId())
+                            .trxStatus(trx.getStatus())
+                            .messageKey(key)
+                            .payload(payloadWriter.writeValueAsString(trx))
+                            .status(TransactionOutboxStatus.PENDING)
+                            .availableDate(now)
+                            .creationDate(now)
+                            .build();
+                })
+                .flatMap(transactionOutboxRepository::insert)
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    log.info("[TRANSACTION_OUTBOX] Notification of transaction {} with status {} already stored", trx.getId(), trx.getStatus());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    @Override
+    public Mono<Long> relayPending() {
+        return relayBatch()
+                .expand(outcome -> outcome.claimed() == batchSize ? relayBatch() : Mono.empty())
+                .map(RelayOutcome::delivered)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<RelayOutcome> relayBatch() {
+        return transactionOutboxRepository.claimPending(UUID.randomUUID().toString(), batchSize, LocalDateTime.now().plus(claimDuration))
+                .collectList()
+                .flatMap(entries -> entries.isEmpty()
+                        ? Mono.just(new RelayOutcome(0, 0L))
+                        : filterStateApplied(entries)
+                                .flatMap(this::publish)
+                                .map(delivered -> new RelayOutcome(entries.size(), delivered)));
+    }
+
+    /** It will return the entries whose transaction has reached the notified status, postponing or discarding the others */
+    private Mono<List<TransactionOutbox>> filterStateApplied(List<TransactionOutbox> entries) {
+        return rewardTransactionRepository.findStatusesByIds(entries.stream().map(TransactionOutbox::getTrxId).collect(Collectors.toSet()))
+                .collectMap(RewardTransaction::getId, RewardTransaction::getStatus)
+                .flatMap(trxId2Status -> {
+                    List<TransactionOutbox> applied = new ArrayList<>(entries.size());
+                    List<Mono<Void>> notApplied = new ArrayList<>();
+                    LocalDateTime discardBefore = LocalDateTime.now().minus(stateGracePeriod);
+                    for (TransactionOutbox entry : entries) {
+                        if (isStateApplied(entry, trxId2Status)) {
+                            applied.add(entry);
+                        } else if (entry.getCreationDate().isBefore(discardBefore)) {
+                            log.warn("[TRANSACTION_OUTBOX] The transaction {} did not reach the status {} within {}: discarding its notification {}",
+                                    entry.getTrxId(), entry.getTrxStatus(), stateGracePeriod, entry.getId());
+                            notApplied.add(transactionOutboxRepository.markDiscarded(entry.getId(), "Transaction status not applied"));
+                        } else {
+                            notApplied.add(transactionOutboxRepository.markFailed(entry.getId(),
+                                    "Transaction not yet in status " + entry.getTrxStatus(), LocalDateTime.now().plus(retryDelay)));
+                        }
+                    }
+                    return Flux.concat(notApplied).then(Mono.just(applied));
+                });
+    }
+
+    private static boolean isStateApplied(TransactionOutbox entry, Map<String, String> trxId2Status) {
+        return entry.getTrxStatus() == null || entry.getTrxStatus().equals(trxId2Status.get(entry.getTrxId()));
+    }
+
+    private Mono<Long> publish(List<TransactionOutbox> entries) {
+        if (entries.isEmpty()) {
+            return Mono.just(0L);
+        }
+        List<TransactionOutbox> readableEntries = new ArrayList<>(entries.size());
+        List<Message<RewardTransactionKafkaDTO>> messages = new ArrayList<>(entries.size());
+        List<Mono<Void>> failures = new ArrayList<>();
+        for (TransactionOutbox entry : entries) {
+            try {
+                messages.add(transactionNotifierService.buildMessage(payloadReader.readValue(entry.getPayload()), entry.getMessageKey()));
+                readableEntries.add(entry);
+            } catch (JsonProcessingException e) {
+                log.error("[TRANSACTION_OUTBOX] Cannot read the stored notification {}", entry.getId(), e);
+                failures.add(markFailed(entry, e));
+            }
+        }
+
+        return Flux.zip(Flux.fromIterable(readableEntries), transactionNotifierService.publishAll(Flux.fromIterable(messages)))
+                .collectList()
+                .flatMap(results -> {
+                    List<String> deliveredIds = new ArrayList<>(results.size());
+                    results.forEach(r -> {
+                        KafkaBatchPublisher.SendResult<Message<RewardTransactionKafkaDTO>> sendResult = r.getT2();
+                        if (sendResult.isSent()) {
+                            deliveredIds.add(r.getT1().getId());
+                        } else {
+                            log.error("[TRANSACTION_OUTBOX] Cannot publish the notification {}: it will be retried", r.getT1().getId(), sendResult.exception());
+                            failures.add(markFailed(r.getT1(), sendResult.exception()));
+                        }
+                    });
+                    return Flux.concat(failures)
+                            .then(transactionOutboxRepository.markDelivered(deliveredIds));
+                })
+                .doOnNext(delivered -> log.info("[TRANSACTION_OUTBOX] Delivered {} notifications out of {} claimed", delivered, entries.size()));
+    }
+
+    private Mono<Void> markFailed(TransactionOutbox entry, Exception error) {
+        return transactionOutboxRepository.markFailed(entry.getId(), error.getMessage(), LocalDateTime.now().plus(retryDelay));
+    }
+}
@@ -0,0 +1,17 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayRequest;
+import reactor.core.publisher.Mono;
+
+import java.util.function.LongConsumer;
+
+/** It will rebuild the transactions collection replaying a range of the transaction topic */
+public interface TransactionReplayService {
+    default Mono<TransactionReplayReportDTO> replay(TransactionReplayRequest request) {
+        return replay(request, read -> {});
+    }
+
+    /** As {@link #replay(TransactionReplayRequest)}, notifying to <i>readListener</i> each record read */
+    Mono<TransactionReplayReportDTO> replay(TransactionReplayRequest request, LongConsumer readListener);
+}
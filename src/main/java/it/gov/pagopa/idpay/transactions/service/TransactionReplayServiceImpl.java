@@ -0,0 +1,53 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaRangeReader;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.function.LongConsumer;
+
+@Service
+@Slf4j
+public class TransactionReplayServiceImpl implements TransactionReplayService {
+
+    private final KafkaRangeReader transactionReplayRangeReader;
+    private final PersistenceTransactionMediator persistenceTransactionMediator;
+    private final String topic;
+    private final int bulkSize;
+    private final Duration progressInterval;
+
+    public TransactionReplayServiceImpl(KafkaRangeReader transactionReplayRangeReader,
+                                        PersistenceTransactionMediator persistenceTransactionMediator,
+                                        @Value("${app.transactions.replay.topic}") String topic,
+                                        @Value("${app.transactions.replay.bulk-size}") int bulkSize,
+                                        @Value("${app.transactions.replay.progress-interval-seconds}") long progressIntervalSeconds) {
+        this.transactionReplayRangeReader = transactionReplayRangeReader;
+        this.persistenceTransactionMediator = persistenceTransactionMediator;
+        this.topic = topic;
+        this.bulkSize = bulkSize;
+        this.progressInterval = Duration.ofSeconds(progressIntervalSeconds);
+    }
+
+    @Override
+    public Mono<TransactionReplayReportDTO> replay(TransactionReplayRequest request, LongConsumer readListener) {
+        KafkaRangeReader.Range range = new KafkaRangeReader.Range(
+                topic,
+                request.getFromOffsets(),
+                request.getToOffsets(),
+                toEpochMillis(request.getFromTimestamp()),
+                toEpochMillis(request.getToTimestamp()));
+
+        log.info("[TRANSACTION_REPLAY] Starting replay of topic {}: {}", topic, request);
+        return persistenceTransactionMediator.replay(transactionReplayRangeReader.read(range), bulkSize, progressInterval, readListener);
+    }
+
+    private static Long toEpochMillis(OffsetDateTime timestamp) {
+        return timestamp != null ? timestamp.toInstant().toEpochMilli() : null;
+    }
+}
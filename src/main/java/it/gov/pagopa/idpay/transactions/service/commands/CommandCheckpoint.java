@@ -0,0 +1,7 @@
+package it.gov.pagopa.idpay.transactions.service.commands;
+
+/**
+ * The point reached by a command: the step in progress, the id of the last document processed in it (null if none) and the number of documents processed in it so far
+ */
+public record CommandCheckpoint(String step, String lastProcessedId, long processed) {
+}
@@ -0,0 +1,14 @@
+package it.gov.pagopa.idpay.transactions.service.commands;
+
+import it.gov.pagopa.idpay.transactions.dto.QueueCommandOperationDTO;
+import reactor.core.publisher.Mono;
+
+/** It will execute the commands in background, storing them as jobs resumable from their last checkpoint */
+public interface CommandJobService {
+
+    /** It will store the command as a job to be executed, returning false if the same command is already stored and not ended */
+    Mono<Boolean> enqueue(QueueCommandOperationDTO command);
+
+    /** It will execute, one after the other, the jobs available to be claimed, returning their number */
+    Mono<Long> processPending();
+}
@@ -0,0 +1,131 @@
+package it.gov.pagopa.idpay.transactions.service.commands;
+
+import it.gov.pagopa.idpay.transactions.dto.QueueCommandOperationDTO;
+import it.gov.pagopa.idpay.transactions.enums.CommandJobStatus;
+import it.gov.pagopa.idpay.transactions.model.CommandJob;
+import it.gov.pagopa.idpay.transactions.repository.CommandJobRepository;
+import it.gov.pagopa.idpay.transactions.service.TransactionErrorNotifierService;
+import it.gov.pagopa.idpay.transactions.service.commands.ops.DeleteInitiativeService;
+import it.gov.pagopa.idpay.transactions.utils.CommandsConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Each job is claimed by a single worker until its claim expires: the claim is extended at each checkpoint, thus a job whose worker terminated is claimed again after the claim duration and resumed from its last checkpoint.<br />
+ * A failed job is retried after a delay, up to the configured attempts: then its command is published on the error topic.
+ */
+@Service
+@Slf4j
+public class CommandJobServiceImpl implements CommandJobService {
+
+    private final CommandJobRepository commandJobRepository;
+    private final DeleteInitiativeService deleteInitiativeService;
+    private final TransactionErrorNotifierService transactionErrorNotifierService;
+    private final Duration claimDuration;
+    private final Duration retryDelay;
+    private final int maxAttempts;
+
+    public CommandJobServiceImpl(CommandJobRepository commandJobRepository,
+                                 DeleteInitiativeService deleteInitiativeService,
+                                 TransactionErrorNotifierService transactionErrorNotifierService,
+                                 @Value("${app.commands.jobs.claim-seconds}") long claimSeconds,
+                                 @Value("${app.commands.jobs.retry-delay-seconds}") long retryDelaySeconds,
+                                 @Value("${app.commands.jobs.max-attempts}") int maxAttempts) {
+        this.commandJobRepository = commandJobRepository;
+        this.deleteInitiativeService = deleteInitiativeService;
+        this.transactionErrorNotifierService = transactionErrorNotifierService;
+        this.claimDuration = Duration.ofSeconds(claimSeconds);
+        this.retryDelay = Duration.ofSeconds(retryDelaySeconds);
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public Mono<Boolean> enqueue(QueueCommandOperationDTO command) {
+        return Mono.defer(() -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    return commandJobRepository.enqueue(CommandJob.builder()
+                            .id(CommandJob.buildId(command.getOperationType(), command.getEntityId()))
+                            .operationType(command.getOperationType())
+                            .entityId(command.getEntityId())
+                            .operationTime(command.getOperationTime())
+                            .status(CommandJobStatus.PENDING)
+                            .availableDate(now)
+                            .creationDate(now)
+                            .updateDate(now)
+                            .build());
+                })
+                .doOnNext(stored -> {
+                    if (Boolean.TRUE.equals(stored)) {
+                        log.info("[COMMAND_JOB] Stored command {} on entity {}", command.getOperationType(), command.getEntityId());
+                    } else {
+                        log.info("[COMMAND_JOB] Command {} on entity {} already stored", command.getOperationType(), command.getEntityId());
+                    }
+                });
+    }
+
+    @Override
+    public Mono<Long> processPending() {
+        return claimNext()
+                .expand(job -> execute(job).then(claimNext()))
+                .count();
+    }
+
+    private Mono<CommandJob> claimNext() {
+        return Mono.defer(() -> commandJobRepository.claimNext(UUID.randomUUID().toString(), LocalDateTime.now().plus(claimDuration)));
+    }
+
+    private Mono<Void> execute(CommandJob job) {
+        CommandCheckpoint checkpoint = job.getStep() != null
+                ? new CommandCheckpoint(job.getStep(), job.getCheckpoint(), job.getProcessed())
+                : null;
+        Function<CommandCheckpoint, Mono<Void>> onCheckpoint = c -> commandJobRepository.checkpoint(job.getId(), job.getClaimId(), c.step(), c.lastProcessedId(), c.processed(), LocalDateTime.now().plus(claimDuration))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("The claim of command job %s is no more held".formatted(job.getId()))))
+                .then();
+
+        log.info("[COMMAND_JOB] Executing command {} on entity {} (attempt {}) from checkpoint {}", job.getOperationType(), job.getEntityId(), job.getAttempts() + 1, checkpoint);
+        return executeCommand(job, checkpoint, onCheckpoint)
+                .then(Mono.defer(() -> commandJobRepository.complete(job.getId(), job.getClaimId())))
+                .doOnNext(j -> log.info("[COMMAND_JOB] Command {} on entity {} completed", j.getOperationType(), j.getEntityId()))
+                .onErrorResume(e -> {
+                    boolean retry = job.getAttempts() + 1 < maxAttempts;
+                    log.error("[COMMAND_JOB] Command {} on entity {} failed at attempt {}: {}", job.getOperationType(), job.getEntityId(), job.getAttempts() + 1,
+                            retry ? "it will be retried" : "no more attempts", e);
+                    return commandJobRepository.fail(job.getId(), job.getClaimId(), e.getMessage(), retry ? LocalDateTime.now().plus(retryDelay) : null)
+                            .flatMap(failed -> retry ? Mono.just(failed) : notifyFailed(job, e).thenReturn(failed));
+                })
+                .then();
+    }
+
+    private Mono<Boolean> notifyFailed(CommandJob job, Throwable e) {
+        QueueCommandOperationDTO command = QueueCommandOperationDTO.builder()
+                .operationType(job.getOperationType())
+                .entityId(job.getEntityId())
+                .operationTime(job.getOperationTime())
+                .build();
+        return transactionErrorNotifierService.notifyTransactionCommands(
+                        MessageBuilder.withPayload(command).setHeader(KafkaHeaders.KEY, job.getEntityId()).build(),
+                        "[COMMAND_JOB] The command %s on entity %s failed after %d attempts".formatted(job.getOperationType(), job.getEntityId(), job.getAttempts() + 1),
+                        false, e)
+                .doOnNext(published -> {
+                    if (!published) {
+                        log.error("[COMMAND_JOB] Cannot notify the failure of command {} on entity {}", job.getOperationType(), job.getEntityId());
+                    }
+                });
+    }
+
+    private Mono<?> executeCommand(CommandJob job, CommandCheckpoint checkpoint, Function<CommandCheckpoint, Mono<Void>> onCheckpoint) {
+        if (CommandsConstants.COMMANDS_OPERATION_TYPE_DELETE_INITIATIVE.equals(job.getOperationType())) {
+            return deleteInitiativeService.execute(job.getEntityId(), checkpoint, onCheckpoint);
+        }
+        return Mono.error(new IllegalStateException("Not handled operation type %s".formatted(job.getOperationType())));
+    }
+}
@@ -0,0 +1,45 @@
+package it.gov.pagopa.idpay.transactions.service.commands;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+/**
+ * It will periodically execute the stored command jobs.<br />
+ * The jobs can last long, thus they are not awaited on the scheduling thread: a new execution is started just when the previous one ended.
+ * Each instance will run it: the jobs are claimed before being executed, thus they are not executed concurrently by more instances
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.commands.jobs.worker.enabled", havingValue = "true")
+public class CommandJobWorkerScheduler {
+
+    private final CommandJobService commandJobService;
+
+    private volatile Disposable execution;
+
+    public CommandJobWorkerScheduler(CommandJobService commandJobService) {
+        this.commandJobService = commandJobService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.commands.jobs.worker.poll-millis}")
+    public void processPending() {
+        if (execution != null && !execution.isDisposed()) {
+            return;
+        }
+        execution = commandJobService.processPending()
+                .subscribe(
+                        executed -> log.debug("[COMMAND_JOB] Executed {} command jobs", executed),
+                        e -> log.error("[COMMAND_JOB] Something gone wrong while executing the command jobs", e));
+    }
+
+    @PreDestroy
+    void stop() {
+        if (execution != null) {
+            execution.dispose();
+        }
+    }
+}
@@ -4,5 +4,5 @@ import org.springframework.messaging.Message;
 import reactor.core.publisher.Flux;
 
 public interface CommandsMediatorService {
-    void execute(Flux<Message<String>> initiativeDTOFlux);
+    void execute(Flux<Message<byte[]>> initiativeDTOFlux);
 }
@@ -3,9 +3,10 @@ package it.gov.pagopa.idpay.transactions.service.commands;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import it.gov.pagopa.common.reactive.kafka.consumer.BaseKafkaConsumer;
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaPartitionPauser;
+import it.gov.pagopa.common.reactive.kafka.consumer.UncommittableErrorRetryPolicy;
 import it.gov.pagopa.idpay.transactions.dto.QueueCommandOperationDTO;
 import it.gov.pagopa.idpay.transactions.service.TransactionErrorNotifierService;
-import it.gov.pagopa.idpay.transactions.service.commands.ops.DeleteInitiativeService;
 import it.gov.pagopa.idpay.transactions.utils.CommandsConstants;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,26 +17,30 @@ import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Consumer;
 @Service
 @Slf4j
 public class CommandsMediatorServiceImpl extends BaseKafkaConsumer<QueueCommandOperationDTO, String> implements CommandsMediatorService {
     private final Duration commitDelay;
-    private final DeleteInitiativeService deleteInitiativeService;
+    private final CommandJobService commandJobService;
     private final TransactionErrorNotifierService transactionErrorNotifierService;
+    private final UncommittableErrorRetryPolicy uncommittableErrorRetryPolicy;
+    private final KafkaPartitionPauser partitionPauser;
     private final ObjectReader objectReader;
 
     public CommandsMediatorServiceImpl(
             @Value("${spring.application.name}") String applicationName,
             @Value("${spring.cloud.stream.kafka.bindings.consumerCommands-in-0.consumer.ackTime}") long commitMillis,
-            DeleteInitiativeService deleteInitiativeService,
+            CommandJobService commandJobService,
             TransactionErrorNotifierService transactionErrorNotifierService,
+            UncommittableErrorRetryPolicy uncommittableErrorRetryPolicy,
+            KafkaPartitionPauser partitionPauser,
             ObjectMapper objectMapper) {
         super(applicationName);
         this.commitDelay = Duration.ofMillis(commitMillis);
-        this.deleteInitiativeService = deleteInitiativeService;
+        this.commandJobService = commandJobService;
         this.transactionErrorNotifierService = transactionErrorNotifierService;
+        this.uncommittableErrorRetryPolicy = uncommittableErrorRetryPolicy;
+        this.partitionPauser = partitionPauser;
         this.objectReader = objectMapper.readerFor(QueueCommandOperationDTO.class);
     }
 
@@ -44,6 +49,16 @@ public class CommandsMediatorServiceImpl extends BaseKafkaConsumer<QueueCommandO
         return commitDelay;
     }
 
+    @Override
+    protected UncommittableErrorRetryPolicy getUncommittableErrorRetryPolicy() {
+        return uncommittableErrorRetryPolicy;
+    }
+
+    @Override
+    protected KafkaPartitionPauser getPartitionPauser() {
+        return partitionPauser;
+    }
+
     @Override
     protected void subscribeAfterCommits(Flux<List<String>> afterCommits2subscribe) {
         afterCommits2subscribe
@@ -56,19 +71,20 @@ public class CommandsMediatorServiceImpl extends BaseKafkaConsumer<QueueCommandO
     }
 
     @Override
-    protected Consumer<Throwable> onDeserializationError(Message<String> message) {
-        return e -> transactionErrorNotifierService.notifyTransactionCommands(message, "[TRANSACTIONS_COMMANDS] Unexpected JSON", false, e);
+    protected Mono<Boolean> onDeserializationError(Message<byte[]> message, Throwable e) {
+        return transactionErrorNotifierService.notifyTransactionCommands(message, "[TRANSACTIONS_COMMANDS] Unexpected JSON", false, e);
     }
 
     @Override
-    protected void notifyError(Message<String> message, Throwable e) {
-        transactionErrorNotifierService.notifyTransactionCommands(message, "[TRANSACTIONS_COMMANDS] An error occurred evaluating commands", true, e);
+    protected Mono<Boolean> notifyError(Message<byte[]> message, Throwable e) {
+        return transactionErrorNotifierService.notifyTransactionCommands(message, "[TRANSACTIONS_COMMANDS] An error occurred evaluating commands", true, e);
     }
 
     @Override
-    protected Mono<String> execute(QueueCommandOperationDTO payload, Message<String> message, Map<String, Object> ctx) {
+    protected Mono<String> execute(QueueCommandOperationDTO payload, Message<byte[]> message, ProcessingContext ctx) {
         if(CommandsConstants.COMMANDS_OPERATION_TYPE_DELETE_INITIATIVE.equals(payload.getOperationType())){
-            return deleteInitiativeService.execute(payload.getEntityId());
+            return commandJobService.enqueue(payload)
+                    .thenReturn(payload.getEntityId());
         }
         log.debug("[TRANSACTIONS_COMMANDS] Not handled operation type {}", payload.getOperationType());
         return Mono.empty();
@@ -1,7 +1,17 @@
 package it.gov.pagopa.idpay.transactions.service.commands.ops;
 
+import it.gov.pagopa.idpay.transactions.service.commands.CommandCheckpoint;
 import reactor.core.publisher.Mono;
 
+import java.util.function.Function;
+
 public interface DeleteInitiativeService {
     Mono<String> execute(String initiativeId);
+
+    /**
+     * It will delete the initiative starting from the given checkpoint, storing through <i>onCheckpoint</i> the point reached after each chunk of documents
+     * @param checkpoint the point to resume from, null to start from the beginning
+     * @param onCheckpoint invoked after each chunk, the execution will wait for it and it will stop if it errors
+     */
+    Mono<String> execute(String initiativeId, CommandCheckpoint checkpoint, Function<CommandCheckpoint, Mono<Void>> onCheckpoint);
 }
@@ -1,63 +1,245 @@
 package it.gov.pagopa.idpay.transactions.service.commands.ops;
 
+import it.gov.pagopa.common.reactive.mongo.retry.MongoRequestRateTooLargeRetryer;
+import it.gov.pagopa.common.reactive.mongo.retry.exception.MongoRequestRateTooLargeRetryExpiredException;
+import it.gov.pagopa.common.reactive.utils.AdaptiveChunkSizer;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.ReportRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
 import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.service.commands.CommandCheckpoint;
 import it.gov.pagopa.idpay.transactions.utils.AuditUtilities;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * It will remove the initiative from the transactions, deleting them when QRCODE, together with its reward batches and reports.<br />
+ * The reward batches are the ones to which the transactions of the initiative are assigned: they are deleted before the transactions in order to be still found if the command is executed again.
+ * A reward batch is deleted just when the transactions of the initiative are deleted too (QRCODE) and no other transaction is assigned to it.<br />
+ * The point reached after each chunk is published as a {@link CommandCheckpoint}, from which an interrupted execution can be resumed.<br />
+ * The documents are processed in chunks of contiguous ids through a single deleteMany/updateMany each: the size of the chunks and the pause between them
+ * are adapted through an {@link AdaptiveChunkSizer} to the observed latency and to the RequestRateTooLarge errors, both the ones returned to this flow and the ones signaled by the others.
+ */
 @Service
 @Slf4j
 public class DeleteInitiativeServiceImpl implements DeleteInitiativeService{
     private final RewardTransactionRepository rewardTransactionRepository;
+    private final RewardBatchRepository rewardBatchRepository;
+    private final RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository;
+    private final ReportRepository reportRepository;
     private final AuditUtilities auditUtilities;
     private final int pageSize;
-    private final Mono<Long> monoDelay;
+    private final long delay;
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final long targetLatencyMillis;
+    private final double backoffRatio;
+    private final long throttledPauseMillis;
+    private final int maxThrottledRetries;
+
+    /** The operation to apply to the chunks of a collection */
+    private interface ChunkOperation {
+        /** The id closing the chunk of the given size following afterId, empty if fewer documents remain */
+        Mono<String> findUpperBound(String afterId, int chunkSize);
+        /** It will process the documents having id greater than afterId and not greater than upToId (unbounded when null), returning their number */
+        Mono<Long> process(String afterId, String upToId);
+    }
+
+    private record ChunkState(String afterId, long processed, boolean completed, int throttledRetries) {}
+
+    public static final String STEP_REWARD_BATCHES = "REWARD_BATCHES";
+    public static final String STEP_TRANSACTIONS = "TRANSACTIONS";
+    public static final String STEP_REPORTS = "REPORTS";
+    private static final List<String> STEPS = List.of(STEP_REWARD_BATCHES, STEP_TRANSACTIONS, STEP_REPORTS);
 
     public DeleteInitiativeServiceImpl(RewardTransactionRepository rewardTransactionRepository,
+                                       RewardBatchRepository rewardBatchRepository,
+                                       RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository,
+                                       ReportRepository reportRepository,
                                        AuditUtilities auditUtilities,
                                        @Value("${app.delete.paginationSize}")int pageSize,
-                                       @Value("${app.delete.delayTime}")long delay) {
+                                       @Value("${app.delete.delayTime}")long delay,
+                                       @Value("${app.delete.chunk.min-size}") int minChunkSize,
+                                       @Value("${app.delete.chunk.max-size}") int maxChunkSize,
+                                       @Value("${app.delete.chunk.target-latency-millis}") long targetLatencyMillis,
+                                       @Value("${app.delete.chunk.backoff-ratio}") double backoffRatio,
+                                       @Value("${app.delete.chunk.throttled-pause-millis}") long throttledPauseMillis,
+                                       @Value("${app.delete.chunk.max-throttled-retries}") int maxThrottledRetries) {
         this.rewardTransactionRepository = rewardTransactionRepository;
+        this.rewardBatchRepository = rewardBatchRepository;
+        this.rewardBatchCounterStripeRepository = rewardBatchCounterStripeRepository;
+        this.reportRepository = reportRepository;
         this.auditUtilities = auditUtilities;
         this.pageSize = pageSize;
-        this.monoDelay = Mono.delay(Duration.ofMillis(delay));
+        this.delay = delay;
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.backoffRatio = backoffRatio;
+        this.throttledPauseMillis = throttledPauseMillis;
+        this.maxThrottledRetries = maxThrottledRetries;
     }
 
     @Override
     public Mono<String> execute(String initiativeId) {
-        log.info("[DELETE_INITIATIVE] Starting handle delete initiative {}", initiativeId);
-        return deleteTransactions(initiativeId)
+        return execute(initiativeId, null, checkpoint -> Mono.empty());
+    }
+
+    @Override
+    public Mono<String> execute(String initiativeId, CommandCheckpoint checkpoint, Function<CommandCheckpoint, Mono<Void>> onCheckpoint) {
+        log.info("[DELETE_INITIATIVE] Starting handle delete initiative {} from checkpoint {}", initiativeId, checkpoint);
+        AdaptiveChunkSizer chunkSizer = new AdaptiveChunkSizer("DELETE_INITIATIVE", pageSize, minChunkSize, maxChunkSize, backoffRatio, targetLatencyMillis, delay, throttledPauseMillis);
+
+        return MongoRequestRateTooLargeRetryer.withRequestRateTooLargeListener(
+                        executeStep(STEP_REWARD_BATCHES, checkpoint, from -> deleteRewardBatches(initiativeId, from, chunkSizer, onCheckpoint))
+                                .then(executeStep(STEP_TRANSACTIONS, checkpoint, from -> deleteTransactions(initiativeId, from, chunkSizer, onCheckpoint)))
+                                .then(executeStep(STEP_REPORTS, checkpoint, from -> deleteReports(initiativeId, from, chunkSizer, onCheckpoint))),
+                        chunkSizer::onThrottled)
                 .then(Mono.just(initiativeId));
     }
 
-    private Mono<Void> deleteTransactions(String initiativeId){
+    /** It will skip the steps preceding the checkpoint one, resuming the latter from the checkpoint */
+    private Mono<Void> executeStep(String step, CommandCheckpoint checkpoint, Function<CommandCheckpoint, Mono<Void>> stepExecution) {
+        return Mono.defer(() -> {
+            if (checkpoint == null || STEPS.indexOf(step) > STEPS.indexOf(checkpoint.step())) {
+                return stepExecution.apply(new CommandCheckpoint(step, null, 0L));
+            } else if (step.equals(checkpoint.step())) {
+                return stepExecution.apply(checkpoint);
+            } else {
+                return Mono.empty();
+            }
+        });
+    }
+
+    private Mono<Void> deleteTransactions(String initiativeId, CommandCheckpoint from, AdaptiveChunkSizer chunkSizer, Function<CommandCheckpoint, Mono<Void>> onCheckpoint){
         return rewardTransactionRepository.findOneByInitiativeId(initiativeId)
                 .flatMap(trx -> {
-                    if ("QRCODE".equals(trx.getChannel())){
-                        return rewardTransactionRepository.findByInitiativesWithBatch(initiativeId, pageSize)
-                                .flatMap(trxToDelete -> rewardTransactionRepository.deleteById(trxToDelete.getId())
-                                        .then(monoDelay), pageSize)
-                                .count()
-                                .doOnNext(totalDeletedTrx -> {
-                                    log.info("[DELETE_INITIATIVE] Deleted initiative {} from collection: transaction", initiativeId);
-                                    auditUtilities.logTransactionsDeleted((totalDeletedTrx), initiativeId);
-                                })
-                                .then();
-                    } else {
-                        return rewardTransactionRepository.findByInitiativesWithBatch(initiativeId, pageSize)
-                                .flatMap(trxToUpdate -> rewardTransactionRepository.removeInitiativeOnTransaction(trxToUpdate.getId(), initiativeId)
-                                        .then(monoDelay), pageSize)
-                                .count()
-                                .doOnNext(totalUpdatedTrx -> {
-                                    log.info("[DELETE_INITIATIVE] Deleted initiative {} from collection: transaction", initiativeId);
-                                    auditUtilities.logTransactionsDeleted((totalUpdatedTrx), initiativeId);
-                                })
-                                .then();
+                    boolean toDelete = isToDelete(trx);
+                    ChunkOperation operation = new ChunkOperation() {
+                        @Override
+                        public Mono<String> findUpperBound(String afterId, int chunkSize) {
+                            return rewardTransactionRepository.findInitiativeChunkUpperBound(initiativeId, afterId, chunkSize);
+                        }
+
+                        @Override
+                        public Mono<Long> process(String afterId, String upToId) {
+                            return toDelete
+                                    ? rewardTransactionRepository.deleteByInitiativeIdInRange(initiativeId, afterId, upToId)
+                                    : rewardTransactionRepository.removeInitiativeInRange(initiativeId, afterId, upToId);
+                        }
+                    };
+
+                    return processInChunks(initiativeId, from, "transaction", operation, chunkSizer, onCheckpoint)
+                            .doOnNext(totalDeletedTrx -> {
+                                log.info("[DELETE_INITIATIVE] Deleted initiative {} from collection: transaction", initiativeId);
+                                auditUtilities.logTransactionsDeleted(totalDeletedTrx, initiativeId);
+                            })
+                            .then();
+                });
+    }
+
+    /** The transactions of the initiative are deleted when QRCODE, otherwise the initiative is just removed from them */
+    private static boolean isToDelete(RewardTransaction trx) {
+        return "QRCODE".equals(trx.getChannel());
+    }
+
+    private Mono<Void> deleteRewardBatches(String initiativeId, CommandCheckpoint from, AdaptiveChunkSizer chunkSizer, Function<CommandCheckpoint, Mono<Void>> onCheckpoint) {
+        AtomicLong totalDeletedBatches = new AtomicLong(from.processed());
+        return rewardTransactionRepository.findOneByInitiativeId(initiativeId)
+                .filter(DeleteInitiativeServiceImpl::isToDelete)
+                .flatMapMany(trx -> rewardTransactionRepository.findDistinctRewardBatchIdsByInitiative(initiativeId))
+                .filter(rewardBatchId -> from.lastProcessedId() == null || rewardBatchId.compareTo(from.lastProcessedId()) > 0)
+                .sort()
+                .buffer(chunkSizer.getChunkSize())
+                .concatMap(chunk -> rewardTransactionRepository.findRewardBatchIdsSharedOutsideInitiative(chunk, initiativeId)
+                        .collect(Collectors.toSet())
+                        .flatMap(sharedBatchIds -> {
+                            List<String> ownedBatchIds = chunk.stream().filter(id -> !sharedBatchIds.contains(id)).toList();
+                            if (!sharedBatchIds.isEmpty()) {
+                                log.info("[DELETE_INITIATIVE] Keeping the reward batches {} of initiative {}: they contain transactions of other initiatives", sharedBatchIds, initiativeId);
+                            }
+                            return ownedBatchIds.isEmpty()
+                                    ? Mono.just(0L)
+                                    : rewardBatchCounterStripeRepository.deleteByRewardBatchIds(ownedBatchIds)
+                                            .then(rewardBatchRepository.deleteByIds(ownedBatchIds));
+                        })
+                        .flatMap(deleted -> onCheckpoint.apply(new CommandCheckpoint(from.step(), chunk.getLast(), totalDeletedBatches.addAndGet(deleted)))))
+                .then(Mono.fromRunnable(() -> log.info("[DELETE_INITIATIVE] Deleted initiative {} from collection: rewards_batch ({} documents)", initiativeId, totalDeletedBatches.get())));
+    }
+
+    private Mono<Void> deleteReports(String initiativeId, CommandCheckpoint from, AdaptiveChunkSizer chunkSizer, Function<CommandCheckpoint, Mono<Void>> onCheckpoint) {
+        ChunkOperation operation = new ChunkOperation() {
+            @Override
+            public Mono<String> findUpperBound(String afterId, int chunkSize) {
+                return reportRepository.findInitiativeChunkUpperBound(initiativeId, afterId, chunkSize);
+            }
+
+            @Override
+            public Mono<Long> process(String afterId, String upToId) {
+                return reportRepository.deleteByInitiativeIdInRange(initiativeId, afterId, upToId);
+            }
+        };
+
+        return processInChunks(initiativeId, from, "reports", operation, chunkSizer, onCheckpoint)
+                .doOnNext(totalDeletedReports -> log.info("[DELETE_INITIATIVE] Deleted initiative {} from collection: reports ({} documents)", initiativeId, totalDeletedReports))
+                .then();
+    }
+
+    private Mono<Long> processInChunks(String initiativeId, CommandCheckpoint from, String collectionName, ChunkOperation operation, AdaptiveChunkSizer chunkSizer, Function<CommandCheckpoint, Mono<Void>> onCheckpoint) {
+        return Mono.just(new ChunkState(from.lastProcessedId(), from.processed(), false, 0))
+                .expand(state -> state.completed()
+                        ? Mono.empty()
+                        : processChunk(initiativeId, from.step(), collectionName, operation, chunkSizer, onCheckpoint, state))
+                .last()
+                .map(ChunkState::processed);
+    }
+
+    private Mono<ChunkState> processChunk(String initiativeId, String step, String collectionName, ChunkOperation operation, AdaptiveChunkSizer chunkSizer, Function<CommandCheckpoint, Mono<Void>> onCheckpoint, ChunkState state) {
+        int chunkSize = chunkSizer.getChunkSize();
+        long startTime = System.currentTimeMillis();
+        return operation.findUpperBound(state.afterId(), chunkSize)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(upToId -> operation.process(state.afterId(), upToId.orElse(null))
+                        .map(processed -> new ChunkState(upToId.orElse(state.afterId()), state.processed() + processed, upToId.isEmpty(), 0)))
+                .flatMap(next -> {
+                    long latency = System.currentTimeMillis() - startTime;
+                    long pause = chunkSizer.onChunkCompleted(latency);
+                    log.debug("[DELETE_INITIATIVE] Processed chunk of {} documents from collection {} of initiative {} in {} ms: pausing {} ms", chunkSize, collectionName, initiativeId, latency, pause);
+                    Mono<Void> checkpoint = onCheckpoint.apply(new CommandCheckpoint(step, next.afterId(), next.processed()));
+                    return next.completed()
+                            ? checkpoint.thenReturn(next)
+                            : checkpoint.then(Mono.delay(Duration.ofMillis(pause))).thenReturn(next);
+                })
+                .onErrorResume(this::isRequestRateTooLarge, e -> {
+                    if (state.throttledRetries() >= maxThrottledRetries) {
+                        return Mono.error(e);
                     }
+                    long pause = chunkSizer.onThrottled(getRetryAfterMs(e));
+                    log.info("[DELETE_INITIATIVE] RequestRateTooLarge processing collection {} of initiative {}: retrying after {} ms with chunk size {}", collectionName, initiativeId, pause, chunkSizer.getChunkSize());
+                    return Mono.delay(Duration.ofMillis(pause))
+                            .thenReturn(new ChunkState(state.afterId(), state.processed(), false, state.throttledRetries() + 1));
                 });
     }
+
+    private boolean isRequestRateTooLarge(Throwable e) {
+        return e instanceof MongoRequestRateTooLargeRetryExpiredException || MongoRequestRateTooLargeRetryer.isRequestRateTooLargeException(e);
+    }
+
+    private Long getRetryAfterMs(Throwable e) {
+        return e instanceof MongoRequestRateTooLargeRetryExpiredException expiredException
+                ? expiredException.getRetryAfterMs()
+                : MongoRequestRateTooLargeRetryer.getRetryAfterMs(e);
+    }
 }
@@ -51,6 +51,9 @@ public final class ExceptionConstants {
         public static final String MERCHANT_NOT_FOUND = "MERCHANT_NOT_FOUND";
         public static final String MERCHANT_NOT_FOUND_IN_SELFCARE = "MERCHANT_NOT_FOUND_IN_SELFCARE";
         public static final String AMBIGUOUS_MERCHANT_DATA_IN_SELFCARE = "AMBIGUOUS_MERCHANT_DATA_IN_SELFCARE";
+        public static final String ERROR_REPLAY_INVALID_BINDING = "ERROR_REPLAY_INVALID_BINDING";
+        public static final String ADMIN_JOB_ALREADY_RUNNING = "ADMIN_JOB_ALREADY_RUNNING";
+        public static final String ADMIN_JOB_NOT_FOUND = "ADMIN_JOB_NOT_FOUND";
     }
 
     public static final class ExceptionMessage {
@@ -102,5 +105,8 @@ public final class ExceptionConstants {
         public static final String ERROR_MESSAGE_REPORT_NOT_GENERATED = "The report %s is not generated yet and cannot be downloaded";
         public static final String ERROR_MESSAGE_INVALID_REPORT_TYPE = "Unsupported ReportType";
         public static final String ERROR_MESSAGE_REPORT_TYPE_REQUIRED = "ReportType is mandatory when merchantId is not provided";
+        public static final String ERROR_MESSAGE_ERROR_REPLAY_INVALID_BINDING = "The binding %s is not a replayable consumer binding";
+        public static final String ERROR_MESSAGE_ADMIN_JOB_ALREADY_RUNNING = "Another job of type %s is already running";
+        public static final String ERROR_MESSAGE_ADMIN_JOB_NOT_FOUND = "Job %s not found";
     }
 }
@@ -5,6 +5,7 @@ import ch.qos.logback.classic.Logger;
 import it.gov.pagopa.common.kafka.utils.KafkaConstants;
 import it.gov.pagopa.idpay.transactions.config.KafkaConfiguration;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,13 +18,20 @@ import org.slf4j.LoggerFactory;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @ExtendWith(MockitoExtension.class)
 class ErrorNotifierServiceTest {
 
     private static final String APPLICATION_NAME = "APPNAME";
+    private static final long PUBLISH_TIMEOUT_MILLIS = 500;
 
     public static final String SRC_TYPE = "SRCTYPE";
     public static final String SRC_SERVER = "SRCSERVER";
@@ -42,7 +50,7 @@ class ErrorNotifierServiceTest {
     @Mock
     private ErrorPublisher errorPublisherMock;
 
-    private ErrorNotifierService service;
+    private ErrorNotifierServiceImpl service;
 
     @BeforeAll
     static void setLogLevel(){
@@ -51,7 +59,12 @@ class ErrorNotifierServiceTest {
 
     @BeforeEach
     void init() {
-        service = new ErrorNotifierServiceImpl(APPLICATION_NAME, errorPublisherMock);
+        service = new ErrorNotifierServiceImpl(APPLICATION_NAME, 10, 100, 50, PUBLISH_TIMEOUT_MILLIS, errorPublisherMock);
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        service.shutdown();
     }
 
     @Test
@@ -67,7 +80,7 @@ class ErrorNotifierServiceTest {
     }
 
     @Test
-    void test_NOretryable_NOresendApplication_exceptionNOroot_key_returnFalse() {
+    void test_NOretryable_NOresendApplication_exceptionNOroot_key_publishFailed() {
         String keyValue = "KEYVALUE";
 
         test(
@@ -80,22 +93,104 @@ class ErrorNotifierServiceTest {
         );
     }
 
+    @Test
+    void testSameStackTraceSentOnce() {
+        List<Message<?>> sent = new CopyOnWriteArrayList<>();
+        Mockito.when(errorPublisherMock.send(Mockito.any())).thenAnswer(i -> sent.add(i.getArgument(0)));
+        RuntimeException otherException = new IllegalStateException("OTHER");
+
+        // concurrent notifications, published inside the same batch
+        List<Boolean> results = Flux.merge(Stream.of(EXCEPTION, EXCEPTION, EXCEPTION, otherException)
+                        .map(e -> service.notify(buildBaseKafkaInfoDTO(), MESSAGE, DESCRIPTION, true, true, e))
+                        .toList())
+                .collectList()
+                .block();
+
+        Assertions.assertEquals(List.of(true, true, true, true), results);
+        Mockito.verify(errorPublisherMock, Mockito.times(4)).send(Mockito.any());
+
+        List<Message<?>> withStackTrace = sent.stream().filter(m -> m.getHeaders().containsKey(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE)).toList();
+        Assertions.assertEquals(2, withStackTrace.size());
+        Message<?> exceptionMessage = withStackTrace.stream().filter(m -> ExceptionUtils.getStackTrace(EXCEPTION).equals(m.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE))).findFirst().orElseThrow();
+        Message<?> otherExceptionMessage = withStackTrace.stream().filter(m -> ExceptionUtils.getStackTrace(otherException).equals(m.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE))).findFirst().orElseThrow();
+        Assertions.assertEquals(3, exceptionMessage.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE_OCCURRENCES));
+        Assertions.assertEquals(1, otherExceptionMessage.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE_OCCURRENCES));
+
+        Object fingerprint = exceptionMessage.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE_FINGERPRINT);
+        Assertions.assertEquals(3, sent.stream().filter(m -> fingerprint.equals(m.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE_FINGERPRINT))).count());
+        Assertions.assertEquals(4, sent.stream().filter(m -> PAYLOAD.equals(m.getPayload())).count());
+    }
+
+    @Test
+    void testNotifyEmitsWhenPublished() {
+        CountDownLatch stalled = new CountDownLatch(1);
+        Mockito.when(errorPublisherMock.send(Mockito.any())).thenAnswer(i -> {
+            stalled.await();
+            return true;
+        });
+
+        long startTime = System.currentTimeMillis();
+        Boolean result = service.notify(buildBaseKafkaInfoDTO(), MESSAGE, DESCRIPTION, true, true, EXCEPTION).block();
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        // not published within the timeout: the caller will not commit the source record
+        Assertions.assertEquals(Boolean.FALSE, result);
+        Assertions.assertTrue(elapsed >= PUBLISH_TIMEOUT_MILLIS, "notify returned after %d ms".formatted(elapsed));
+        Assertions.assertEquals(1, service.getUnpublishedNotifications());
+
+        stalled.countDown();
+        Assertions.assertEquals(Boolean.TRUE, service.notify(buildBaseKafkaInfoDTO(), MESSAGE, DESCRIPTION, true, true, EXCEPTION).block());
+        Assertions.assertEquals(1, service.getUnpublishedNotifications());
+    }
+
+    @Test
+    void testNotifyNotBlockedWhenQueueFull() throws InterruptedException {
+        service.shutdown();
+        service = new ErrorNotifierServiceImpl(APPLICATION_NAME, 10, 1, 50, PUBLISH_TIMEOUT_MILLIS, errorPublisherMock);
+        CountDownLatch stalled = new CountDownLatch(1);
+        Mockito.when(errorPublisherMock.send(Mockito.any())).thenAnswer(i -> {
+            stalled.await();
+            return true;
+        });
+
+        List<Boolean> results = new CopyOnWriteArrayList<>();
+        service.notify(buildBaseKafkaInfoDTO(), MESSAGE, DESCRIPTION, true, true, EXCEPTION).subscribe(results::add);
+        Mockito.verify(errorPublisherMock, Mockito.timeout(1000)).send(Mockito.any());
+
+        // the publisher is stalled on the first notification: the queue is filled, and the exceeding notifications are not published without waiting for free space
+        long startTime = System.currentTimeMillis();
+        IntStream.range(0, 20).forEach(i -> service.notify(buildBaseKafkaInfoDTO(), MESSAGE, DESCRIPTION, true, true, EXCEPTION).subscribe(results::add));
+        Assertions.assertTrue(System.currentTimeMillis() - startTime < PUBLISH_TIMEOUT_MILLIS);
+        Assertions.assertEquals(10, results.size());
+        Assertions.assertFalse(results.contains(true));
+        Assertions.assertEquals(10, service.getUnpublishedNotifications());
+        Assertions.assertEquals(10, service.getQueueSize());
+
+        stalled.countDown();
+
+        Mockito.verify(errorPublisherMock, Mockito.timeout(1000).times(11)).send(Mockito.any());
+    }
+
     private void test(Message<?> message, boolean expectedResult, boolean expectedRetryable, boolean expectedResend, String expectedKeyValue, Throwable expectedException) {
         // Given
         Mockito.when(errorPublisherMock.send(Mockito.argThat(m -> assertErrorMessage(m, expectedRetryable, expectedResend, expectedKeyValue, expectedException)
         ))).thenReturn(expectedResult);
 
         // When
-        KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO = KafkaConfiguration.BaseKafkaInfoDTO.builder()
+        Boolean result = service.notify(buildBaseKafkaInfoDTO(), message, DESCRIPTION, expectedRetryable, expectedResend, expectedException).block();
+
+        // Then
+        Assertions.assertEquals(expectedResult, result);
+        Mockito.verify(errorPublisherMock, Mockito.timeout(1000)).send(Mockito.any());
+    }
+
+    private static KafkaConfiguration.BaseKafkaInfoDTO buildBaseKafkaInfoDTO() {
+        return KafkaConfiguration.BaseKafkaInfoDTO.builder()
                 .type(SRC_TYPE)
                 .brokers(SRC_SERVER)
                 .destination(SRC_TOPIC)
                 .group(GROUP)
                 .build();
-        boolean result = service.notify(baseKafkaInfoDTO, message, DESCRIPTION, expectedRetryable, expectedResend, expectedException);
-
-        // Then
-        Assertions.assertEquals(expectedResult, result);
     }
 
     private static boolean assertErrorMessage(Message<?> m, boolean expectedRetryable, boolean expectedResend, String expectedKeyValue, Throwable expectedException) {
@@ -111,6 +206,7 @@ class ErrorNotifierServiceTest {
         Assertions.assertEquals(expectedRetryable, m.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_RETRYABLE));
 
         Assertions.assertEquals(ExceptionUtils.getStackTrace(expectedException), m.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE));
+        Assertions.assertEquals(1, m.getHeaders().get(KafkaConstants.ERROR_MSG_HEADER_STACKTRACE_OCCURRENCES));
         Assertions.assertEquals((expectedException == EXCEPTION ? ExceptionUtils.getRootCause(EXCEPTION) : EXCEPTIONNOTROOT).getClass().getName(), m.getHeaders().get("rootCauseClass"));
         Assertions.assertEquals((expectedException == EXCEPTION ? ExceptionUtils.getRootCause(EXCEPTION) : EXCEPTIONNOTROOT).getMessage(), m.getHeaders().get("rootCauseMessage"));
         Assertions.assertEquals(expectedException == EXCEPTION ? EXCEPTION.getCause().getClass().getName() : null, m.getHeaders().get("causeClass"));
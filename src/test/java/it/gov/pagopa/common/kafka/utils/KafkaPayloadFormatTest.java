@@ -0,0 +1,52 @@
+package it.gov.pagopa.common.kafka.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.gov.pagopa.common.utils.TestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+
+class KafkaPayloadFormatTest {
+
+    record Dummy(String field, LocalDate date) {}
+
+    @Test
+    void testFromContentType() {
+        Assertions.assertEquals(KafkaPayloadFormat.JSON, KafkaPayloadFormat.fromContentType(null));
+        Assertions.assertEquals(KafkaPayloadFormat.JSON, KafkaPayloadFormat.fromContentType("application/json"));
+        Assertions.assertEquals(KafkaPayloadFormat.JSON, KafkaPayloadFormat.fromContentType("text/plain"));
+        Assertions.assertEquals(KafkaPayloadFormat.JSON, KafkaPayloadFormat.fromContentType("NOT A MIME TYPE"));
+        Assertions.assertEquals(KafkaPayloadFormat.CBOR, KafkaPayloadFormat.fromContentType("application/cbor"));
+        Assertions.assertEquals(KafkaPayloadFormat.CBOR, KafkaPayloadFormat.fromContentType("application/cbor;charset=UTF-8".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(KafkaPayloadFormat.SMILE, KafkaPayloadFormat.fromContentType(MimeType.valueOf("application/x-jackson-smile")));
+
+        Assertions.assertEquals(KafkaPayloadFormat.SMILE, KafkaPayloadFormat.fromMessage(MessageBuilder.withPayload(new byte[0])
+                .setHeader(MessageHeaders.CONTENT_TYPE, "application/x-jackson-smile")
+                .build()));
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        Dummy expected = new Dummy("VALUE", LocalDate.of(2025, 1, 31));
+        byte[] json = TestUtils.objectMapper.writeValueAsBytes(expected);
+
+        for (KafkaPayloadFormat format : KafkaPayloadFormat.values()) {
+            ObjectMapper mapper = format.adapt(TestUtils.objectMapper);
+            byte[] serialized = mapper.writeValueAsBytes(expected);
+
+            Assertions.assertEquals(expected, format.adapt(TestUtils.objectMapper.readerFor(Dummy.class)).readValue(serialized), format.name());
+            Assertions.assertEquals(Map.of("field", "VALUE", "date", "2025-01-31"), mapper.readValue(serialized, Map.class), format.name());
+            if (format != KafkaPayloadFormat.JSON) {
+                Assertions.assertFalse(Arrays.equals(json, serialized), format.name());
+            }
+        }
+    }
+}
@@ -0,0 +1,582 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import it.gov.pagopa.common.kafka.utils.KafkaPayloadFormat;
+import it.gov.pagopa.common.reactive.kafka.exception.UncommittableError;
+import it.gov.pagopa.common.reactive.mongo.retry.MongoRequestRateTooLargeRetryer;
+import it.gov.pagopa.common.reactive.mongo.retry.exception.MongoRequestRateTooLargeRetryExpiredException;
+import it.gov.pagopa.common.reactive.utils.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gov.pagopa.common.utils.TestUtils;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+class BaseKafkaConsumerTest {
+
+    private static final Duration COMMIT_DELAY = Duration.ofMillis(50);
+    private static final String TOPIC = "TOPIC";
+    private static final TopicPartition TOPIC_PARTITION_0 = new TopicPartition(TOPIC, 0);
+
+    static class DummyConsumer extends BaseKafkaConsumer<Integer, Integer> {
+        private final int lanes;
+        private AdaptiveConcurrencyLimiter concurrencyLimiter;
+        private KafkaPartitionPauser partitionPauser;
+        private KafkaConsumerMetrics consumerMetrics;
+        private KafkaPartitionSpillJournals spillJournals;
+        private Duration spillDeadline;
+        private UncommittableErrorRetryPolicy retryPolicy = UncommittableErrorRetryPolicy.DEFAULT;
+        private final List<Throwable> notifiedErrors = new CopyOnWriteArrayList<>();
+        private IntPredicate errorPublished = attempt -> true;
+        private final Map<Integer, Mono<Integer>> payload2Behaviour = new HashMap<>();
+        private final List<Integer> startedPayloads = new CopyOnWriteArrayList<>();
+
+        DummyConsumer(int lanes) {
+            super("APPNAME");
+            this.lanes = lanes;
+        }
+
+        @Override
+        protected Duration getCommitDelay() {
+            return COMMIT_DELAY;
+        }
+
+        @Override
+        protected int getProcessingLanes() {
+            return lanes;
+        }
+
+        @Override
+        protected AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+            return concurrencyLimiter;
+        }
+
+        @Override
+        protected KafkaPartitionPauser getPartitionPauser() {
+            return partitionPauser;
+        }
+
+        @Override
+        protected KafkaConsumerMetrics getConsumerMetrics() {
+            return consumerMetrics;
+        }
+
+        @Override
+        protected KafkaPartitionSpillJournals getSpillJournals() {
+            return spillJournals;
+        }
+
+        @Override
+        protected Duration getSpillDeadline() {
+            return spillDeadline;
+        }
+
+        @Override
+        protected UncommittableErrorRetryPolicy getUncommittableErrorRetryPolicy() {
+            return retryPolicy;
+        }
+
+        @Override
+        protected void subscribeAfterCommits(Flux<List<Integer>> afterCommits2subscribe) {
+            afterCommits2subscribe.subscribe();
+        }
+
+        @Override
+        protected ObjectReader getObjectReader() {
+            return TestUtils.objectMapper.readerFor(Integer.class);
+        }
+
+        @Override
+        protected Mono<Boolean> onDeserializationError(Message<byte[]> message, Throwable e) {
+            return Mono.just(true);
+        }
+
+        @Override
+        protected Mono<Boolean> notifyError(Message<byte[]> message, Throwable e) {
+            notifiedErrors.add(e);
+            return Mono.just(errorPublished.test(notifiedErrors.size()));
+        }
+
+        @Override
+        protected Mono<Integer> execute(Integer payload, Message<byte[]> message, ProcessingContext ctx) {
+            startedPayloads.add(payload);
+            return payload2Behaviour.getOrDefault(payload, Mono.just(payload));
+        }
+    }
+
+    private static Message<byte[]> buildMessage(int offset, String key, Acknowledgment ack) {
+        return buildMessage(0, offset, offset, key, ack);
+    }
+
+    private static Message<byte[]> buildMessage(int partition, int offset, int payload, String key, Acknowledgment ack) {
+        return MessageBuilder.withPayload(Integer.toString(payload).getBytes(StandardCharsets.UTF_8))
+                .setHeader(KafkaHeaders.RECEIVED_TOPIC, TOPIC)
+                .setHeader(KafkaHeaders.RECEIVED_PARTITION, partition)
+                .setHeader(KafkaHeaders.OFFSET, (long) offset)
+                .setHeader(KafkaHeaders.RECEIVED_KEY, key.getBytes(StandardCharsets.UTF_8))
+                .setHeader(KafkaHeaders.ACKNOWLEDGMENT, ack)
+                .build();
+    }
+
+    private static List<Acknowledgment> buildAcks(int n) {
+        List<Acknowledgment> acks = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            acks.add(Mockito.mock(Acknowledgment.class));
+        }
+        return acks;
+    }
+
+    @Test
+    void testSequentialProcessingCommitsLastOffset() {
+        DummyConsumer consumer = new DummyConsumer(0);
+        List<Acknowledgment> acks = buildAcks(3);
+
+        consumer.execute(Flux.range(0, 3)
+                .map(i -> buildMessage(i, "KEY", acks.get(i)))
+                .concatWith(Flux.never()));
+
+        Mockito.verify(acks.get(2), Mockito.timeout(1000)).acknowledge();
+        Mockito.verifyNoInteractions(acks.get(0), acks.get(1));
+    }
+
+    @Test
+    void testLanesDoNotCommitAheadOfUnfinishedWork() {
+        DummyConsumer consumer = new DummyConsumer(2);
+        Sinks.One<Integer> stuckRecord = Sinks.one();
+        consumer.payload2Behaviour.put(0, stuckRecord.asMono());
+        List<Acknowledgment> acks = buildAcks(4);
+
+        // "A" and "B" are hashed on different lanes
+        List<String> keys = List.of("A", "B", "A", "B");
+        consumer.execute(Flux.range(0, 4)
+                .map(i -> buildMessage(i, keys.get(i), acks.get(i)))
+                .concatWith(Flux.never()));
+
+        // key B records are processed while the first key A record is stuck
+        TestUtils.wait(COMMIT_DELAY.multipliedBy(4).toMillis(), TimeUnit.MILLISECONDS);
+        Assertions.assertEquals(Set.of(0, 1, 3), new HashSet<>(consumer.startedPayloads));
+        acks.forEach(Mockito::verifyNoInteractions);
+
+        stuckRecord.tryEmitValue(0);
+
+        Mockito.verify(acks.get(3), Mockito.timeout(1000)).acknowledge();
+        // offset 1 could be committed alone if offset 2 was still under processing, while offsets 0 and 2 are always followed by an already processed offset
+        Mockito.verifyNoInteractions(acks.get(0), acks.get(2));
+        Assertions.assertEquals(List.of(0, 2), consumer.startedPayloads.stream().filter(p -> p % 2 == 0).toList());
+    }
+
+    @Test
+    void testConcurrencyLimiterBoundsInFlightRecords() {
+        DummyConsumer consumer = new DummyConsumer(0);
+        consumer.concurrencyLimiter = new AdaptiveConcurrencyLimiter("TEST", 2, 2, 2, 0.5, 1000, 0);
+        Sinks.One<Integer> stuckRecord = Sinks.one();
+        consumer.payload2Behaviour.put(0, stuckRecord.asMono());
+        consumer.payload2Behaviour.put(1, stuckRecord.asMono());
+        List<Acknowledgment> acks = buildAcks(4);
+
+        consumer.execute(Flux.range(0, 4)
+                .map(i -> buildMessage(i, "KEY", acks.get(i)))
+                .concatWith(Flux.never()));
+
+        TestUtils.wait(COMMIT_DELAY.multipliedBy(4).toMillis(), TimeUnit.MILLISECONDS);
+        Assertions.assertEquals(List.of(0, 1), consumer.startedPayloads);
+
+        stuckRecord.tryEmitValue(0);
+
+        Mockito.verify(acks.get(3), Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(List.of(0, 1, 2, 3), consumer.startedPayloads);
+        Assertions.assertEquals(0, consumer.concurrencyLimiter.getInFlight());
+    }
+
+    @Test
+    void testConcurrencyLimiterThrottledByOwnExecutions() {
+        DummyConsumer consumer = new DummyConsumer(0);
+        consumer.concurrencyLimiter = new AdaptiveConcurrencyLimiter("TEST", 16, 2, 16, 0.5, 60_000, 0);
+        AtomicInteger attempts = new AtomicInteger();
+        consumer.payload2Behaviour.put(0, MongoRequestRateTooLargeRetryer.withRetry("TEST", Mono.defer(() -> attempts.getAndIncrement() == 0
+                ? Mono.error(new DataAccessResourceFailureException("Command failed with error 16500: 'Error=16500, RetryAfterMs=1, Details='"))
+                : Mono.just(0)), 1, 0));
+        List<Acknowledgment> acks = buildAcks(1);
+
+        // e.g. an API request throttled on the same database
+        Mono<Integer> unrelatedExecution = MongoRequestRateTooLargeRetryer.withRetry("TEST",
+                Mono.error(new DataAccessResourceFailureException("Command failed with error 16500: 'Error=16500, RetryAfterMs=1, Details='")), 1, 0);
+        Assertions.assertThrows(MongoRequestRateTooLargeRetryExpiredException.class, unrelatedExecution::block);
+        Assertions.assertEquals(16, consumer.concurrencyLimiter.getLimit());
+
+        consumer.execute(Flux.just(buildMessage(0, "KEY", acks.getFirst())).concatWith(Flux.never()));
+
+        Mockito.verify(acks.getFirst(), Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(8, consumer.concurrencyLimiter.getLimit());
+    }
+
+    @Test
+    void testConsumerMetricsPublished() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DummyConsumer consumer = new DummyConsumer(0);
+        consumer.consumerMetrics = new KafkaConsumerMetrics("TEST", "BINDING", meterRegistry, (topic, partition) -> 10L, Duration.ofSeconds(60), Duration.ofSeconds(30));
+        Sinks.One<Integer> stuckRecord = Sinks.one();
+        consumer.payload2Behaviour.put(2, stuckRecord.asMono());
+        List<Acknowledgment> acks = buildAcks(3);
+
+        consumer.execute(Flux.range(0, 3)
+                .map(i -> buildMessage(i, "KEY", acks.get(i)))
+                .concatWith(Flux.never()));
+
+        Mockito.verify(acks.get(1), Mockito.timeout(1000)).acknowledge();
+        TestUtils.wait(COMMIT_DELAY.multipliedBy(4).toMillis(), TimeUnit.MILLISECONDS);
+
+        Assertions.assertEquals(1, meterRegistry.get("idpay.kafka.consumer.partition.in-flight").tag("partition", "0").gauge().value());
+        // broker lag plus the received and not committed offset 2
+        Assertions.assertEquals(11, meterRegistry.get("idpay.kafka.consumer.partition.lag").tag("partition", "0").gauge().value());
+        Assertions.assertEquals(3, meterRegistry.get("idpay.kafka.consumer.stage").tag("stage", "deserialize").timer().count());
+        Assertions.assertTrue(meterRegistry.get("idpay.kafka.consumer.stage").tag("stage", "commit").timer().count() >= 1);
+
+        stuckRecord.tryEmitValue(2);
+
+        Mockito.verify(acks.get(2), Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(0, meterRegistry.get("idpay.kafka.consumer.partition.in-flight").tag("partition", "0").gauge().value());
+        Assertions.assertEquals(10, meterRegistry.get("idpay.kafka.consumer.partition.lag").tag("partition", "0").gauge().value());
+        Assertions.assertEquals(3, meterRegistry.get("idpay.kafka.consumer.processed").counter().count());
+    }
+
+    @Test
+    void testUncommittableErrorRetriedPausingJustItsPartition() {
+        DummyConsumer consumer = new DummyConsumer(2);
+        consumer.partitionPauser = Mockito.mock(KafkaPartitionPauser.class);
+        consumer.retryPolicy = new UncommittableErrorRetryPolicy(5, Duration.ofMillis(300), Duration.ofSeconds(1), 0.1, Duration.ZERO);
+        AtomicInteger attempts = new AtomicInteger();
+        consumer.payload2Behaviour.put(0, Mono.defer(() -> attempts.incrementAndGet() < 3
+                ? Mono.error(new UncommittableError("DUMMY"))
+                : Mono.just(0)));
+        List<Acknowledgment> acks = buildAcks(2);
+
+        consumer.execute(Flux.just(
+                        buildMessage(0, 0, 0, "A", acks.get(0)),
+                        buildMessage(1, 0, 1, "B", acks.get(1)))
+                .concatWith(Flux.never()));
+
+        // the other partition is committed while the first one is still under retry
+        Mockito.verify(acks.get(1), Mockito.timeout(250)).acknowledge();
+        Mockito.verify(consumer.partitionPauser).pause(TOPIC, 0);
+        Mockito.verifyNoInteractions(acks.get(0));
+
+        Mockito.verify(acks.get(0), Mockito.timeout(3000)).acknowledge();
+        Mockito.verify(consumer.partitionPauser).resume(TOPIC, 0);
+        Mockito.verify(consumer.partitionPauser, Mockito.never()).pause(TOPIC, 1);
+        Assertions.assertEquals(3, attempts.get());
+        Assertions.assertEquals(List.of(), consumer.notifiedErrors);
+    }
+
+    @Test
+    void testRetryingRecordDoesNotHoldBackOtherPartitionsWithoutLanes() {
+        int recordsPerPartition = 300;
+        DummyConsumer consumer = new DummyConsumer(0);
+        consumer.retryPolicy = new UncommittableErrorRetryPolicy(1000, Duration.ofMillis(10), Duration.ofMillis(20), 0.1, Duration.ZERO);
+        AtomicBoolean recovered = new AtomicBoolean();
+        consumer.payload2Behaviour.put(0, Mono.defer(() -> recovered.get()
+                ? Mono.just(0)
+                : Mono.error(new UncommittableError("DUMMY"))));
+        List<Acknowledgment> partition0Acks = buildAcks(recordsPerPartition);
+        List<Acknowledgment> partition1Acks = buildAcks(recordsPerPartition);
+
+        // the records of the other partition are received after more than the reactor buffer size of records
+        consumer.execute(Flux.concat(
+                        Flux.range(0, recordsPerPartition).map(i -> buildMessage(0, i, i, "KEY", partition0Acks.get(i))),
+                        Flux.range(0, recordsPerPartition).map(i -> buildMessage(1, i, recordsPerPartition + i, "KEY", partition1Acks.get(i))))
+                .concatWith(Flux.never()));
+
+        Mockito.verify(partition1Acks.getLast(), Mockito.timeout(1000)).acknowledge();
+        partition0Acks.forEach(Mockito::verifyNoInteractions);
+
+        recovered.set(true);
+
+        Mockito.verify(partition0Acks.getLast(), Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(List.of(), consumer.notifiedErrors);
+    }
+
+    @Test
+    void testNotCommittedUntilErrorPublished() {
+        DummyConsumer consumer = new DummyConsumer(0);
+        consumer.retryPolicy = new UncommittableErrorRetryPolicy(2, Duration.ofMillis(10), Duration.ofMillis(50), 0.5, Duration.ZERO);
+        // the first two notifications are not published (e.g. error topic not available)
+        consumer.errorPublished = attempt -> attempt > 2;
+        consumer.payload2Behaviour.put(0, Mono.error(new IllegalStateException("DUMMY")));
+        List<Acknowledgment> acks = buildAcks(1);
+        AtomicInteger notifiedBeforeCommit = new AtomicInteger();
+        Mockito.doAnswer(i -> {
+            notifiedBeforeCommit.set(consumer.notifiedErrors.size());
+            return null;
+        }).when(acks.getFirst()).acknowledge();
+
+        consumer.execute(Flux.just(buildMessage(0, "KEY", acks.getFirst()))
+                .concatWith(Flux.never()));
+
+        Mockito.verify(acks.getFirst(), Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(3, notifiedBeforeCommit.get());
+        Assertions.assertEquals(List.of(0), consumer.startedPayloads);
+    }
+
+    @Test
+    void testErrorNotificationRetriesExhausted() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DummyConsumer consumer = new DummyConsumer(0);
+        consumer.consumerMetrics = new KafkaConsumerMetrics("TEST", "BINDING", meterRegistry, (topic, partition) -> 0L, Duration.ofSeconds(60), Duration.ofSeconds(30));
+        consumer.partitionPauser = Mockito.mock(KafkaPartitionPauser.class);
+        consumer.retryPolicy = new UncommittableErrorRetryPolicy(2, Duration.ofMillis(10), Duration.ofMillis(50), 0.5, Duration.ZERO);
+        // the error topic is not available
+        consumer.errorPublished = attempt -> false;
+        consumer.payload2Behaviour.put(0, Mono.error(new IllegalStateException("DUMMY")));
+        List<Acknowledgment> acks = buildAcks(2);
+
+        consumer.execute(Flux.just(
+                        buildMessage(0, "KEY", acks.get(0)),
+                        buildMessage(1, "KEY", acks.get(1)))
+                .concatWith(Flux.never()));
+
+        // the retries are bounded, pausing the partition meanwhile
+        Mockito.verify(consumer.partitionPauser, Mockito.timeout(1000)).resume(TOPIC, 0);
+        Mockito.verify(consumer.partitionPauser).pause(TOPIC, 0);
+        Assertions.assertEquals(3, consumer.notifiedErrors.size());
+        Assertions.assertEquals(1, meterRegistry.get("idpay.kafka.consumer.error-notification.unpublished").counter().count());
+
+        // the record whose error has not been published is not committed, neither the following ones
+        TestUtils.wait(COMMIT_DELAY.multipliedBy(4).toMillis(), TimeUnit.MILLISECONDS);
+        acks.forEach(Mockito::verifyNoInteractions);
+    }
+
+    @Test
+    void testUncommittableErrorRetriesExhausted() {
+        DummyConsumer consumer = new DummyConsumer(0);
+        consumer.partitionPauser = Mockito.mock(KafkaPartitionPauser.class);
+        consumer.retryPolicy = new UncommittableErrorRetryPolicy(2, Duration.ofMillis(10), Duration.ofMillis(50), 0.5, Duration.ZERO);
+        AtomicInteger attempts = new AtomicInteger();
+        consumer.payload2Behaviour.put(0, Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new UncommittableError("DUMMY"));
+        }));
+        List<Acknowledgment> acks = buildAcks(1);
+
+        consumer.execute(Flux.just(buildMessage(0, "KEY", acks.get(0)))
+                .concatWith(Flux.never()));
+
+        Mockito.verify(acks.get(0), Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(3, attempts.get());
+        Assertions.assertEquals(1, consumer.notifiedErrors.size());
+        Assertions.assertInstanceOf(UncommittableError.class, consumer.notifiedErrors.getFirst());
+        Mockito.verify(consumer.partitionPauser).pause(TOPIC, 0);
+        Mockito.verify(consumer.partitionPauser).resume(TOPIC, 0);
+    }
+
+    @Test
+    void testDrainPartitionsWaitsInFlightRecords() {
+        DummyConsumer consumer = new DummyConsumer(0);
+        consumer.payload2Behaviour.put(1, Mono.just(1).delayElement(Duration.ofMillis(200)));
+        List<Acknowledgment> acks = buildAcks(4);
+        Sinks.Many<Message<byte[]>> messages = Sinks.many().unicast().onBackpressureBuffer();
+
+        consumer.execute(messages.asFlux());
+        messages.tryEmitNext(buildMessage(0, 0, 0, "KEY", acks.get(0)));
+        messages.tryEmitNext(buildMessage(0, 1, 1, "KEY", acks.get(1)));
+
+        Assertions.assertEquals(Map.of(TOPIC_PARTITION_0, 2L), consumer.drainPartitions(List.of(TOPIC_PARTITION_0), Duration.ofSeconds(1)));
+
+        // records received after the revocation are discarded until the partition is assigned again
+        messages.tryEmitNext(buildMessage(0, 2, 2, "KEY", acks.get(2)));
+        TestUtils.wait(COMMIT_DELAY.multipliedBy(4).toMillis(), TimeUnit.MILLISECONDS);
+        Assertions.assertEquals(List.of(0, 1), consumer.startedPayloads);
+
+        consumer.onPartitionsAssigned(List.of(TOPIC_PARTITION_0));
+        messages.tryEmitNext(buildMessage(0, 3, 3, "KEY", acks.get(3)));
+
+        Mockito.verify(acks.get(3), Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(List.of(0, 1, 3), consumer.startedPayloads);
+        Mockito.verifyNoInteractions(acks.get(1), acks.get(2));
+    }
+
+    @Test
+    void testRecordsFetchedAgainAfterReassignmentDiscarded() {
+        DummyConsumer consumer = new DummyConsumer(0);
+        List<Acknowledgment> acks = buildAcks(5);
+        Sinks.Many<Message<byte[]>> messages = Sinks.many().unicast().onBackpressureBuffer();
+
+        consumer.execute(messages.asFlux());
+        messages.tryEmitNext(buildMessage(0, 0, 0, "KEY", acks.get(0)));
+        messages.tryEmitNext(buildMessage(0, 1, 1, "KEY", acks.get(1)));
+        TestUtils.waitFor(() -> consumer.startedPayloads.size() == 2, () -> "Records not processed", 100, 10);
+        Assertions.assertEquals(Map.of(TOPIC_PARTITION_0, 2L), consumer.drainPartitions(List.of(TOPIC_PARTITION_0), Duration.ofSeconds(1)));
+        consumer.onPartitionsAssigned(List.of(TOPIC_PARTITION_0));
+
+        // the record buffered before the revocation and its copy fetched again from the committed offset
+        messages.tryEmitNext(buildMessage(0, 2, 2, "KEY", acks.get(2)));
+        messages.tryEmitNext(buildMessage(0, 2, 2, "KEY", acks.get(3)));
+        messages.tryEmitNext(buildMessage(0, 3, 3, "KEY", acks.get(4)));
+
+        Mockito.verify(acks.get(4), Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(List.of(0, 1, 2, 3), consumer.startedPayloads);
+        Mockito.verifyNoInteractions(acks.get(3));
+    }
+
+    @Test
+    void testRecordsNotCommittedRedeliveredAfterReassignment() {
+        DummyConsumer consumer = new DummyConsumer(0);
+        AtomicBoolean reassigned = new AtomicBoolean();
+        // the record stuck until the revocation, thus neither it nor the following one will be committed
+        consumer.payload2Behaviour.put(1, Mono.defer(() -> reassigned.get() ? Mono.just(1) : Mono.never()));
+        List<Acknowledgment> acks = buildAcks(5);
+        Sinks.Many<Message<byte[]>> messages = Sinks.many().unicast().onBackpressureBuffer();
+
+        consumer.execute(messages.asFlux());
+        messages.tryEmitNext(buildMessage(0, 0, 0, "KEY", acks.get(0)));
+        messages.tryEmitNext(buildMessage(0, 1, 1, "KEY", acks.get(1)));
+        messages.tryEmitNext(buildMessage(0, 2, 2, "KEY", acks.get(2)));
+        Mockito.verify(acks.get(0), Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(Map.of(), consumer.drainPartitions(List.of(TOPIC_PARTITION_0), Duration.ofMillis(100)));
+        reassigned.set(true);
+        consumer.onPartitionsAssigned(List.of(TOPIC_PARTITION_0));
+
+        // the records fetched again from the committed offset are processed, just once
+        messages.tryEmitNext(buildMessage(0, 1, 1, "KEY", acks.get(3)));
+        messages.tryEmitNext(buildMessage(0, 2, 2, "KEY", acks.get(4)));
+        messages.tryEmitNext(buildMessage(0, 2, 2, "KEY", Mockito.mock(Acknowledgment.class)));
+
+        Mockito.verify(acks.get(4), Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(List.of(0, 1, 2, 1, 2), consumer.startedPayloads);
+        Mockito.verifyNoInteractions(acks.get(1), acks.get(2));
+    }
+
+    @Test
+    void testDrainPartitionsTimeout() {
+        DummyConsumer consumer = new DummyConsumer(2);
+        consumer.payload2Behaviour.put(1, Mono.never());
+        List<Acknowledgment> acks = buildAcks(3);
+
+        consumer.execute(Flux.just(
+                        buildMessage(0, 0, 0, "A", acks.get(0)),
+                        buildMessage(0, 1, 1, "B", acks.get(1)),
+                        buildMessage(0, 2, 2, "A", acks.get(2)))
+                .concatWith(Flux.never()));
+        TestUtils.wait(COMMIT_DELAY.multipliedBy(4).toMillis(), TimeUnit.MILLISECONDS);
+
+        // offset 0 could be already committed, anyway just the offsets before the stuck one are returned
+        Map<TopicPartition, Long> drained = consumer.drainPartitions(List.of(TOPIC_PARTITION_0), Duration.ofMillis(100));
+        Assertions.assertTrue(drained.isEmpty() || drained.equals(Map.of(TOPIC_PARTITION_0, 1L)), "Unexpected drained offsets: " + drained);
+
+        TestUtils.wait(COMMIT_DELAY.multipliedBy(4).toMillis(), TimeUnit.MILLISECONDS);
+        Mockito.verifyNoInteractions(acks.get(1), acks.get(2));
+    }
+
+    @Test
+    void testReprocess() {
+        DummyConsumer consumer = new DummyConsumer(0);
+        consumer.payload2Behaviour.put(1, Mono.error(new IllegalStateException("DUMMY")));
+
+        Assertions.assertEquals(0, consumer.reprocess(buildMessage(0, "KEY", null)).block());
+        Assertions.assertThrows(IllegalStateException.class, () -> consumer.reprocess(buildMessage(1, "KEY", null)).block());
+
+        Assertions.assertEquals(List.of(0, 1), consumer.startedPayloads);
+        Assertions.assertEquals(1, consumer.notifiedErrors.size());
+    }
+
+    @Test
+    void testStalledRecordSpilledAndDrained(@TempDir Path dir) {
+        DummyConsumer consumer = new DummyConsumer(0);
+        AtomicInteger attempts = new AtomicInteger();
+        consumer.payload2Behaviour.put(1, Mono.defer(() -> attempts.getAndIncrement() == 0 ? Mono.never() : Mono.just(1)));
+        consumer.spillJournals = new KafkaPartitionSpillJournals(dir, 4096, Duration.ofSeconds(1));
+        consumer.spillDeadline = Duration.ofMillis(100);
+        List<Acknowledgment> acks = buildAcks(3);
+
+        try {
+            consumer.execute(Flux.just(
+                            buildMessage(0, "KEY", acks.get(0)),
+                            buildMessage(1, "KEY", acks.get(1)),
+                            buildMessage(2, "KEY", acks.get(2)))
+                    .concatWith(Flux.never()));
+
+            // the stalled record is spilled, thus the offsets can advance
+            Mockito.verify(acks.get(2), Mockito.timeout(1000)).acknowledge();
+
+            // the spilled record is then drained from the journal
+            TestUtils.waitFor(() -> consumer.spillJournals.isEmpty(TOPIC_PARTITION_0) && consumer.startedPayloads.stream().filter(p -> p == 1).count() == 2,
+                    () -> "Spilled record not drained: " + consumer.startedPayloads, 10, 500);
+            Assertions.assertEquals(1, consumer.startedPayloads.stream().filter(p -> p == 2).count());
+            Assertions.assertTrue(consumer.notifiedErrors.isEmpty());
+        } finally {
+            consumer.spillJournals.close();
+        }
+    }
+
+    @Test
+    void testSpilledRecordsOfRevokedPartitionNotifiedAndNotDrained(@TempDir Path dir) {
+        DummyConsumer consumer = new DummyConsumer(0);
+        AtomicBoolean revoked = new AtomicBoolean();
+        // the spilled record will be processed again just after the revoke of its partition
+        consumer.payload2Behaviour.put(1, Mono.defer(() -> revoked.get() ? Mono.just(1) : Mono.never()));
+        consumer.spillJournals = new KafkaPartitionSpillJournals(dir, 4096, Duration.ofMillis(200));
+        consumer.spillDeadline = Duration.ofMillis(100);
+        List<Acknowledgment> acks = buildAcks(3);
+        Sinks.Many<Message<byte[]>> messages = Sinks.many().unicast().onBackpressureBuffer();
+
+        try {
+            consumer.execute(messages.asFlux());
+            messages.tryEmitNext(buildMessage(0, "KEY", acks.get(0)));
+            messages.tryEmitNext(buildMessage(1, "KEY", acks.get(1)));
+
+            // the stalled record is spilled, thus committed, and the journal is draining it
+            Mockito.verify(acks.get(1), Mockito.timeout(1000)).acknowledge();
+            TestUtils.waitFor(() -> consumer.startedPayloads.stream().filter(p -> p == 1).count() == 2,
+                    () -> "Spilled record not drained: " + consumer.startedPayloads, 10, 500);
+
+            consumer.drainPartitions(List.of(TOPIC_PARTITION_0), Duration.ofSeconds(1));
+            revoked.set(true);
+
+            // the record not yet drained is notified to the error topic, and the journal is removed
+            Assertions.assertEquals(1, consumer.notifiedErrors.size());
+            Assertions.assertTrue(consumer.spillJournals.isEmpty(TOPIC_PARTITION_0));
+            Assertions.assertEquals(KafkaPartitionSpillJournals.AppendResult.REVOKED, consumer.spillJournals.append(TOPIC_PARTITION_0, buildMessage(2, "KEY", acks.get(2))));
+            Assertions.assertFalse(Files.exists(dir.resolve(TOPIC + "-0.journal")));
+
+            TestUtils.wait(500, TimeUnit.MILLISECONDS);
+            Assertions.assertEquals(2, consumer.startedPayloads.stream().filter(p -> p == 1).count());
+        } finally {
+            consumer.spillJournals.close();
+        }
+    }
+
+    @Test
+    void testBinaryPayload() throws Exception {
+        DummyConsumer consumer = new DummyConsumer(0);
+        Acknowledgment ack = Mockito.mock(Acknowledgment.class);
+
+        consumer.execute(Flux.just(MessageBuilder.withPayload(KafkaPayloadFormat.CBOR.adapt(TestUtils.objectMapper).writeValueAsBytes(7))
+                .copyHeaders(buildMessage(0, "KEY", ack).getHeaders())
+                .setHeader(MessageHeaders.CONTENT_TYPE, KafkaPayloadFormat.CBOR.getContentType())
+                .build()));
+
+        Mockito.verify(ack, Mockito.timeout(1000)).acknowledge();
+        Assertions.assertEquals(List.of(7), consumer.startedPayloads);
+    }
+}
@@ -0,0 +1,198 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import it.gov.pagopa.common.utils.TestUtils;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.cloud.stream.binder.kafka.common.BinderHeaderMapper;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaderMapper;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * It will feed a {@link BaseKafkaConsumer} with the records of a topic of an embedded broker, as the binder does:
+ * through a listener container joining the given group, acknowledging manually, mapping the record headers through the {@link BinderHeaderMapper} and draining the revoked partitions through {@link KafkaDrainingRebalanceListener}.<br />
+ * The consumer should declare its {@link BaseKafkaConsumer#getBindingName()}.<br />
+ * The records not yet requested by the consumer are buffered up to {@link #BUFFER_SIZE}, after which the container thread will wait, thus stopping to fetch
+ */
+public class EmbeddedKafkaConsumerHarness implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 256;
+    private static final KafkaHeaderMapper HEADER_MAPPER = new BinderHeaderMapper();
+
+    private final KafkaMessageListenerContainer<byte[], byte[]> container;
+
+    /** A consumer of integer payloads, counting how many times each payload has been processed */
+    public static class CountingConsumer extends BaseKafkaConsumer<Integer, Integer> {
+        private final String bindingName;
+        private final Duration commitDelay;
+        private final int lanes;
+        private final KafkaConsumerMetrics consumerMetrics;
+        private final Mono<?> processingGate;
+        private final Duration processingTime;
+        private final Map<Integer, AtomicInteger> payload2Processed = new ConcurrentHashMap<>();
+
+        /**
+         * @param lanes the processing lanes, see {@link BaseKafkaConsumer#getProcessingLanes()}
+         * @param processingGate the processing of each record will wait its completion
+         * @param processingTime the time spent processing each record
+         */
+        public CountingConsumer(String bindingName, Duration commitDelay, int lanes, KafkaConsumerMetrics consumerMetrics, Mono<?> processingGate, Duration processingTime) {
+            super("APPNAME");
+            this.bindingName = bindingName;
+            this.commitDelay = commitDelay;
+            this.lanes = lanes;
+            this.consumerMetrics = consumerMetrics;
+            this.processingGate = processingGate;
+            this.processingTime = processingTime;
+        }
+
+        /** The number of times each payload has been processed */
+        public Map<Integer, AtomicInteger> getPayload2Processed() {
+            return payload2Processed;
+        }
+
+        /** The number of records processed, duplicates included */
+        public int getProcessed() {
+            return payload2Processed.values().stream().mapToInt(AtomicInteger::get).sum();
+        }
+
+        @Override
+        public String getBindingName() {
+            return bindingName;
+        }
+
+        @Override
+        protected KafkaConsumerMetrics getConsumerMetrics() {
+            return consumerMetrics;
+        }
+
+        @Override
+        protected Duration getCommitDelay() {
+            return commitDelay;
+        }
+
+        @Override
+        protected int getProcessingLanes() {
+            return lanes;
+        }
+
+        @Override
+        protected void subscribeAfterCommits(Flux<List<Integer>> afterCommits2subscribe) {
+            afterCommits2subscribe.subscribe();
+        }
+
+        @Override
+        protected ObjectReader getObjectReader() {
+            return TestUtils.objectMapper.readerFor(Integer.class);
+        }
+
+        @Override
+        protected Mono<Boolean> onDeserializationError(Message<byte[]> message, Throwable e) {
+            return Mono.just(true);
+        }
+
+        @Override
+        protected Mono<Boolean> notifyError(Message<byte[]> message, Throwable e) {
+            return Mono.just(true);
+        }
+
+        @Override
+        protected Mono<Integer> execute(Integer payload, Message<byte[]> message, ProcessingContext ctx) {
+            return processingGate
+                    .then(Mono.delay(processingTime))
+                    .then(Mono.fromSupplier(() -> {
+                        payload2Processed.computeIfAbsent(payload, p -> new AtomicInteger()).incrementAndGet();
+                        return payload;
+                    }));
+        }
+    }
+
+    public EmbeddedKafkaConsumerHarness(EmbeddedKafkaBroker kafkaBroker, String topic, String groupId, BaseKafkaConsumer<?, ?> kafkaConsumer, Duration drainTimeout) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps(groupId, "false", kafkaBroker);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 50);
+
+        String bindingName = Objects.requireNonNull(kafkaConsumer.getBindingName());
+        KafkaDrainingRebalanceListener drainingListener = new KafkaDrainingRebalanceListener(List.of(kafkaConsumer), drainTimeout.toMillis());
+        Sinks.Many<Message<byte[]>> messages = Sinks.many().unicast().onBackpressureBuffer(Queues.<Message<byte[]>>get(BUFFER_SIZE).get());
+
+        ContainerProperties containerProperties = new ContainerProperties(topic);
+        containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        containerProperties.setConsumerRebalanceListener(new ConsumerAwareRebalanceListener() {
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                drainingListener.onPartitionsRevokedBeforeCommit(bindingName, consumer, partitions);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                drainingListener.onPartitionsAssigned(bindingName, consumer, partitions, false);
+            }
+        });
+        containerProperties.setMessageListener((AcknowledgingMessageListener<byte[], byte[]>) (consumerRecord, ack) ->
+                messages.emitNext(toMessage(consumerRecord, ack), (signalType, emitResult) -> {
+                    LockSupport.parkNanos(Duration.ofMillis(1).toNanos());
+                    return emitResult == Sinks.EmitResult.FAIL_OVERFLOW || emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED;
+                }));
+
+        this.container = new KafkaMessageListenerContainer<>(new DefaultKafkaConsumerFactory<>(props, new ByteArrayDeserializer(), new ByteArrayDeserializer()), containerProperties);
+        kafkaConsumer.execute(messages.asFlux());
+    }
+
+    public EmbeddedKafkaConsumerHarness start() {
+        container.start();
+        return this;
+    }
+
+    /** The partitions currently assigned to the container */
+    public Collection<TopicPartition> getAssignedPartitions() {
+        Collection<TopicPartition> assigned = container.getAssignedPartitions();
+        return assigned != null ? assigned : List.of();
+    }
+
+    @Override
+    public void close() {
+        container.stop();
+    }
+
+    private static Message<byte[]> toMessage(ConsumerRecord<byte[], byte[]> consumerRecord, Acknowledgment ack) {
+        MessageBuilder<byte[]> builder = MessageBuilder.withPayload(consumerRecord.value())
+                .setHeader(KafkaHeaders.RECEIVED_TOPIC, consumerRecord.topic())
+                .setHeader(KafkaHeaders.RECEIVED_PARTITION, consumerRecord.partition())
+                .setHeader(KafkaHeaders.OFFSET, consumerRecord.offset())
+                .setHeader(KafkaHeaders.ACKNOWLEDGMENT, ack);
+        if (consumerRecord.key() != null) {
+            builder.setHeader(KafkaHeaders.RECEIVED_KEY, consumerRecord.key());
+        }
+        Map<String, Object> headers = new HashMap<>();
+        HEADER_MAPPER.toHeaders(consumerRecord.headers(), headers);
+        return builder.copyHeaders(headers).build();
+    }
+}
@@ -0,0 +1,89 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gov.pagopa.common.utils.TestUtils;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * It will consume the records of an embedded broker, checking the values published on the meter registry while the records are under processing, once committed and after the revocation of the partitions
+ */
+class KafkaConsumerMetricsEmbeddedKafkaTest {
+
+    private static final String TOPIC = "idpay-metrics";
+    private static final int RECORDS = 100;
+
+    private static EmbeddedKafkaBroker kafkaBroker;
+
+    @BeforeAll
+    static void startBroker() {
+        kafkaBroker = new EmbeddedKafkaKraftBroker(1, 2, TOPIC);
+        kafkaBroker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        kafkaBroker.destroy();
+    }
+
+    @Test
+    void testMeterRegistryValues() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // the lag read from the binder is not available outside it: the lag is just the records received and not yet committed
+        KafkaConsumerMetrics metrics = new KafkaConsumerMetrics("FLOW", "BINDING", meterRegistry, (topic, partition) -> -1L, Duration.ofSeconds(10), Duration.ofSeconds(1));
+        Sinks.Empty<Void> processingGate = Sinks.empty();
+        EmbeddedKafkaConsumerHarness.CountingConsumer consumer = new EmbeddedKafkaConsumerHarness.CountingConsumer("BINDING", Duration.ofMillis(100), 0, metrics, processingGate.asMono(), Duration.ZERO);
+
+        publishRecords();
+        try (EmbeddedKafkaConsumerHarness harness = new EmbeddedKafkaConsumerHarness(kafkaBroker, TOPIC, "metrics-group", consumer, Duration.ofSeconds(5)).start()) {
+            // all the records are received and held under processing
+            TestUtils.waitFor(() -> sumPartitionGauges(meterRegistry, "idpay.kafka.consumer.partition.in-flight") == RECORDS,
+                    () -> "Records not received", 600, 50);
+            Assertions.assertEquals(RECORDS, sumPartitionGauges(meterRegistry, "idpay.kafka.consumer.partition.lag"));
+            Assertions.assertEquals(2, meterRegistry.find("idpay.kafka.consumer.partition.lag").tags("flow", "FLOW", "binding", "BINDING", "topic", TOPIC).gauges().size());
+            Assertions.assertEquals(RECORDS / 10.0, meterRegistry.get("idpay.kafka.consumer.backlog.pressure").gauge().value());
+
+            processingGate.tryEmitEmpty();
+
+            TestUtils.waitFor(() -> sumPartitionGauges(meterRegistry, "idpay.kafka.consumer.partition.lag") == 0,
+                    () -> "Records not committed", 600, 50);
+            Assertions.assertEquals(0, sumPartitionGauges(meterRegistry, "idpay.kafka.consumer.partition.in-flight"));
+            Assertions.assertEquals(RECORDS, meterRegistry.get("idpay.kafka.consumer.processed").counter().count());
+            Assertions.assertEquals(RECORDS, meterRegistry.get("idpay.kafka.consumer.stage").tag("stage", "deserialize").timer().count());
+            Assertions.assertTrue(meterRegistry.get("idpay.kafka.consumer.stage").tag("stage", "commit").timer().count() > 0);
+            Assertions.assertEquals(RECORDS, consumer.getProcessed());
+            Assertions.assertEquals(0, metrics.getBacklogPressure());
+        }
+
+        // the partitions have been revoked when the container stopped
+        Assertions.assertTrue(meterRegistry.find("idpay.kafka.consumer.partition.lag").gauges().isEmpty());
+        Assertions.assertTrue(meterRegistry.find("idpay.kafka.consumer.partition.in-flight").gauges().isEmpty());
+    }
+
+    private static double sumPartitionGauges(SimpleMeterRegistry meterRegistry, String name) {
+        return meterRegistry.find(name).tag("topic", TOPIC).gauges().stream().mapToDouble(Gauge::value).sum();
+    }
+
+    private static void publishRecords() {
+        try (KafkaProducer<String, byte[]> producer = new KafkaProducer<>(KafkaTestUtils.producerProps(kafkaBroker), new StringSerializer(), new ByteArraySerializer())) {
+            for (int i = 0; i < RECORDS; i++) {
+                producer.send(new ProducerRecord<>(TOPIC, i % 2, "KEY%d".formatted(i), Integer.toString(i).getBytes(StandardCharsets.UTF_8)));
+            }
+            producer.flush();
+        }
+    }
+}
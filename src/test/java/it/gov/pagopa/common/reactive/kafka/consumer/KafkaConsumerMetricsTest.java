@@ -0,0 +1,108 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class KafkaConsumerMetricsTest {
+
+    @Test
+    void testLagAndInFlight() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        KafkaConsumerMetrics metrics = new KafkaConsumerMetrics("TEST", "BINDING", meterRegistry, (topic, partition) -> partition == 0 ? 100L : -1L, Duration.ofSeconds(10), Duration.ofSeconds(30));
+
+        metrics.onReceived("TOPIC", 0, 5L);
+        metrics.onReceived("TOPIC", 0, 6L);
+        metrics.onReceived("TOPIC", 1, 0L);
+        Assertions.assertEquals(3, metrics.getInFlight());
+        // partition 0: 100 records on broker plus 2 received, partition 1: just 1 received
+        Assertions.assertEquals(103, metrics.getLag());
+        // no record processed: the lag is drained at least 1 record/s
+        Assertions.assertEquals(103.0 / 10, metrics.getBacklogPressure());
+        Assertions.assertEquals(103.0 / 10, meterRegistry.get("idpay.kafka.consumer.backlog.pressure").gauge().value());
+
+        metrics.onProcessed("TOPIC", 0);
+        metrics.onProcessed("TOPIC", 0);
+        metrics.onCommitted("TOPIC", 0, 6L);
+        Assertions.assertEquals(1, metrics.getInFlight());
+        Assertions.assertEquals(101, metrics.getLag());
+        Assertions.assertEquals(100, meterRegistry.get("idpay.kafka.consumer.partition.lag").tags("flow", "TEST", "binding", "BINDING", "topic", "TOPIC", "partition", "0").gauge().value());
+        Assertions.assertEquals(1, meterRegistry.get("idpay.kafka.consumer.partition.in-flight").tags("partition", "1").gauge().value());
+    }
+
+    @Test
+    void testPartitionsOfDifferentTopics() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        KafkaConsumerMetrics metrics = new KafkaConsumerMetrics("TEST", "BINDING", meterRegistry, (topic, partition) -> "TOPIC1".equals(topic) ? 10L : 20L, Duration.ofSeconds(10), Duration.ofSeconds(30));
+
+        metrics.onReceived("TOPIC1", 0, 5L);
+        metrics.onReceived("TOPIC2", 0, 7L);
+        metrics.onReceived("TOPIC2", 0, 8L);
+        metrics.onProcessed("TOPIC2", 0);
+        metrics.onCommitted("TOPIC2", 0, 7L);
+
+        Assertions.assertEquals(2, metrics.getInFlight());
+        Assertions.assertEquals(11, meterRegistry.get("idpay.kafka.consumer.partition.lag").tags("topic", "TOPIC1", "partition", "0").gauge().value());
+        Assertions.assertEquals(21, meterRegistry.get("idpay.kafka.consumer.partition.lag").tags("topic", "TOPIC2", "partition", "0").gauge().value());
+        Assertions.assertEquals(1, meterRegistry.get("idpay.kafka.consumer.partition.in-flight").tags("topic", "TOPIC1", "partition", "0").gauge().value());
+        Assertions.assertEquals(1, meterRegistry.get("idpay.kafka.consumer.partition.in-flight").tags("topic", "TOPIC2", "partition", "0").gauge().value());
+    }
+
+    @Test
+    void testRevokedPartitionMetersRemoved() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        KafkaConsumerMetrics metrics = new KafkaConsumerMetrics("TEST", "BINDING", meterRegistry, (topic, partition) -> 10L, Duration.ofSeconds(10), Duration.ofSeconds(30));
+
+        metrics.onReceived("TOPIC", 0, 5L);
+        metrics.onReceived("TOPIC", 1, 5L);
+        metrics.onRevoked("TOPIC", 0);
+
+        Assertions.assertEquals(11, metrics.getLag());
+        Assertions.assertNull(meterRegistry.find("idpay.kafka.consumer.partition.lag").tags("partition", "0").gauge());
+        Assertions.assertNull(meterRegistry.find("idpay.kafka.consumer.partition.in-flight").tags("partition", "0").gauge());
+        Assertions.assertNotNull(meterRegistry.find("idpay.kafka.consumer.partition.lag").tags("partition", "1").gauge());
+
+        // assigned again, its meters are registered from its first record
+        metrics.onReceived("TOPIC", 0, 9L);
+        Assertions.assertEquals(11, meterRegistry.get("idpay.kafka.consumer.partition.lag").tags("partition", "0").gauge().value());
+    }
+
+    @Test
+    void testTimeStage() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        KafkaConsumerMetrics metrics = new KafkaConsumerMetrics("TEST", "BINDING", meterRegistry, (topic, partition) -> -1L, Duration.ofSeconds(10), Duration.ofSeconds(30));
+
+        Assertions.assertEquals(1, metrics.timeStage(KafkaConsumerMetrics.Stage.MAP, () -> 1));
+        Mono<Integer> persist = metrics.timeStage(KafkaConsumerMetrics.Stage.PERSIST, Mono.just(2).delayElement(Duration.ofMillis(50)));
+        Assertions.assertEquals(0, meterRegistry.get("idpay.kafka.consumer.stage").tag("stage", "persist").timer().count());
+        StepVerifier.create(persist)
+                .expectNext(2)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, meterRegistry.get("idpay.kafka.consumer.stage").tag("stage", "map").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("idpay.kafka.consumer.stage").tag("stage", "persist").timer().count());
+        Assertions.assertTrue(meterRegistry.get("idpay.kafka.consumer.stage").tag("stage", "persist").timer().totalTime(TimeUnit.MILLISECONDS) >= 50);
+        Assertions.assertEquals(0, meterRegistry.get("idpay.kafka.consumer.stage").tag("stage", "deserialize").timer().count());
+    }
+
+    @Test
+    void testBacklogPressureEndpoint() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        KafkaConsumerMetrics metrics1 = new KafkaConsumerMetrics("FLOW1", "BINDING1", meterRegistry, (topic, partition) -> 20L, Duration.ofSeconds(10), Duration.ofSeconds(30));
+        KafkaConsumerMetrics metrics2 = new KafkaConsumerMetrics("FLOW2", "BINDING2", meterRegistry, (topic, partition) -> 50L, Duration.ofSeconds(10), Duration.ofSeconds(30));
+        metrics1.onReceived("TOPIC1", 0, 0L);
+        metrics2.onReceived("TOPIC2", 0, 0L);
+
+        KafkaBacklogPressureEndpoint.BacklogPressure result = new KafkaBacklogPressureEndpoint(List.of(metrics1, metrics2)).backlogPressure();
+
+        Assertions.assertEquals(5.1, result.pressure());
+        Assertions.assertEquals(new KafkaBacklogPressureEndpoint.FlowBacklog(2.1, 21, 1, 0), result.flows().get("FLOW1"));
+        Assertions.assertEquals(51, result.flows().get("FLOW2").lag());
+    }
+}
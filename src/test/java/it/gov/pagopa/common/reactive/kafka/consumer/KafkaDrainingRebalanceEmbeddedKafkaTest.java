@@ -0,0 +1,100 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import it.gov.pagopa.common.utils.TestUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * It will force a rebalance on an embedded broker while the records are under processing, checking that, thanks to the drain of the revoked partitions,
+ * the records already processed by the previous owner are not processed again by the new one
+ */
+@Slf4j
+class KafkaDrainingRebalanceEmbeddedKafkaTest {
+
+    private static final String TOPIC = "idpay-rebalance";
+    private static final String GROUP_ID = "rebalance-group";
+    private static final int PARTITIONS = 4;
+    private static final int RECORDS = 2_000;
+    /** Greater than the time required by the test, thus no record is committed by the periodic acknowledgment */
+    private static final Duration COMMIT_DELAY = Duration.ofMinutes(5);
+
+    private static EmbeddedKafkaBroker kafkaBroker;
+
+    @BeforeAll
+    static void startBroker() {
+        kafkaBroker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, TOPIC);
+        kafkaBroker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        kafkaBroker.destroy();
+    }
+
+    @Test
+    void testNoDuplicatesAcrossRebalance() {
+        publishRecords();
+
+        EmbeddedKafkaConsumerHarness.CountingConsumer firstOwner = new EmbeddedKafkaConsumerHarness.CountingConsumer("BINDING", COMMIT_DELAY, 2, null, Mono.empty(), Duration.ofMillis(5));
+        EmbeddedKafkaConsumerHarness.CountingConsumer secondOwner = new EmbeddedKafkaConsumerHarness.CountingConsumer("BINDING", COMMIT_DELAY, 2, null, Mono.empty(), Duration.ofMillis(5));
+
+        try (EmbeddedKafkaConsumerHarness firstHarness = new EmbeddedKafkaConsumerHarness(kafkaBroker, TOPIC, GROUP_ID, firstOwner, Duration.ofSeconds(10)).start()) {
+            TestUtils.waitFor(() -> firstOwner.getProcessed() >= RECORDS / 4, () -> "Records not processed by the first owner", 600, 50);
+
+            // the second consumer joining the group forces a rebalance while the first one is processing
+            try (EmbeddedKafkaConsumerHarness secondHarness = new EmbeddedKafkaConsumerHarness(kafkaBroker, TOPIC, GROUP_ID, secondOwner, Duration.ofSeconds(10)).start()) {
+                TestUtils.waitFor(() -> !secondHarness.getAssignedPartitions().isEmpty(), () -> "No partition assigned to the second owner", 600, 50);
+
+                TestUtils.waitFor(() -> processedPayloads(firstOwner, secondOwner).size() == RECORDS,
+                        () -> "Records not processed: " + processedPayloads(firstOwner, secondOwner).size(), 1200, 50);
+            }
+        }
+
+        int duplicates = firstOwner.getProcessed() + secondOwner.getProcessed() - RECORDS;
+        log.info("[REBALANCE_TEST] Records processed by the first owner: {}, by the second owner: {}, duplicates: {}",
+                firstOwner.getProcessed(), secondOwner.getProcessed(), duplicates);
+        Assertions.assertTrue(secondOwner.getProcessed() > 0, "The second owner processed no records");
+        Assertions.assertEquals(0, duplicates);
+        Assertions.assertTrue(IntStream.range(0, RECORDS).allMatch(i -> countProcessed(firstOwner, i) + countProcessed(secondOwner, i) == 1));
+    }
+
+    private static Set<Integer> processedPayloads(EmbeddedKafkaConsumerHarness.CountingConsumer... consumers) {
+        Set<Integer> out = new HashSet<>();
+        for (EmbeddedKafkaConsumerHarness.CountingConsumer consumer : consumers) {
+            out.addAll(consumer.getPayload2Processed().keySet());
+        }
+        return out;
+    }
+
+    private static int countProcessed(EmbeddedKafkaConsumerHarness.CountingConsumer consumer, int payload) {
+        AtomicInteger count = consumer.getPayload2Processed().get(payload);
+        return count != null ? count.get() : 0;
+    }
+
+    private static void publishRecords() {
+        try (KafkaProducer<String, byte[]> producer = new KafkaProducer<>(KafkaTestUtils.producerProps(kafkaBroker), new StringSerializer(), new ByteArraySerializer())) {
+            for (int i = 0; i < RECORDS; i++) {
+                producer.send(new ProducerRecord<>(TOPIC, i % PARTITIONS, "KEY%d".formatted(i), Integer.toString(i).getBytes(StandardCharsets.UTF_8)));
+            }
+            producer.flush();
+        }
+    }
+}
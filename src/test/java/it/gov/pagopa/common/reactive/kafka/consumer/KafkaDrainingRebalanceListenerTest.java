@@ -0,0 +1,56 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class KafkaDrainingRebalanceListenerTest {
+
+    private static final String BINDING = "BINDING";
+
+    @Test
+    void testRevokedPartitionsDrainedAndCommitted() {
+        BaseKafkaConsumer<?, ?> kafkaConsumer = Mockito.mock(BaseKafkaConsumer.class);
+        Mockito.when(kafkaConsumer.getBindingName()).thenReturn(BINDING);
+        TopicPartition tp0 = new TopicPartition("TOPIC", 0);
+        TopicPartition tp1 = new TopicPartition("TOPIC", 1);
+        Mockito.when(kafkaConsumer.drainPartitions(List.of(tp0, tp1), Duration.ofMillis(1000))).thenReturn(Map.of(tp0, 10L));
+        MockConsumer<byte[], byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(List.of(tp0, tp1));
+
+        KafkaDrainingRebalanceListener listener = new KafkaDrainingRebalanceListener(List.of(kafkaConsumer), 1000);
+        listener.onPartitionsRevokedBeforeCommit(BINDING, consumer, List.of(tp0, tp1));
+
+        Assertions.assertEquals(Map.of(tp0, new OffsetAndMetadata(10L)), consumer.committed(Set.of(tp0, tp1)).entrySet().stream()
+                .filter(e -> e.getValue() != null)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+
+        listener.onPartitionsAssigned(BINDING, consumer, List.of(tp1), false);
+        Mockito.verify(kafkaConsumer).onPartitionsAssigned(List.of(tp1));
+    }
+
+    @Test
+    void testOtherBindingsIgnored() {
+        BaseKafkaConsumer<?, ?> kafkaConsumer = Mockito.mock(BaseKafkaConsumer.class);
+        Mockito.when(kafkaConsumer.getBindingName()).thenReturn(BINDING);
+        MockConsumer<byte[], byte[]> consumer = Mockito.spy(new MockConsumer<>(OffsetResetStrategy.EARLIEST));
+
+        KafkaDrainingRebalanceListener listener = new KafkaDrainingRebalanceListener(List.of(kafkaConsumer), 1000);
+        listener.onPartitionsRevokedBeforeCommit("OTHER", consumer, List.of(new TopicPartition("TOPIC", 0)));
+        listener.onPartitionsAssigned("OTHER", consumer, List.of(new TopicPartition("TOPIC", 0)), true);
+
+        Mockito.verify(kafkaConsumer, Mockito.never()).drainPartitions(Mockito.any(), Mockito.any());
+        Mockito.verify(kafkaConsumer, Mockito.never()).onPartitionsAssigned(Mockito.any());
+        Mockito.verifyNoInteractions(consumer);
+    }
+}
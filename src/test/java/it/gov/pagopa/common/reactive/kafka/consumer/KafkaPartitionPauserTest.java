@@ -0,0 +1,69 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+
+import java.util.Map;
+
+class KafkaPartitionPauserTest {
+
+    @Test
+    void testPausesAreCounted() {
+        AbstractMessageListenerContainer<?, ?> container = Mockito.mock(AbstractMessageListenerContainer.class);
+        KafkaPartitionPauser pauser = new KafkaPartitionPauser();
+        pauser.configure(container, "TOPIC", "GROUP");
+        TopicPartition topicPartition = new TopicPartition("TOPIC", 0);
+
+        pauser.pause("TOPIC", 0);
+        pauser.pause("TOPIC", 0);
+        Mockito.verify(container).pausePartition(topicPartition);
+
+        pauser.resume("TOPIC", 0);
+        Mockito.verify(container, Mockito.never()).resumePartition(topicPartition);
+
+        pauser.resume("TOPIC", 0);
+        Mockito.verify(container).resumePartition(topicPartition);
+
+        pauser.resume("TOPIC", 0);
+        Mockito.verify(container).resumePartition(topicPartition);
+    }
+
+    @Test
+    void testUnknownTopic() {
+        AbstractMessageListenerContainer<?, ?> container = Mockito.mock(AbstractMessageListenerContainer.class);
+        KafkaPartitionPauser pauser = new KafkaPartitionPauser();
+        pauser.configure(container, "TOPIC", "GROUP");
+
+        pauser.pause("OTHER", 0);
+        pauser.resume("OTHER", 0);
+        pauser.pause(null, 0);
+
+        Mockito.verifyNoInteractions(container);
+    }
+
+    @Test
+    void testGetRecordsLag() {
+        AbstractMessageListenerContainer<?, ?> container = Mockito.mock(AbstractMessageListenerContainer.class);
+        KafkaPartitionPauser pauser = new KafkaPartitionPauser();
+        pauser.configure(container, "TOPIC", "GROUP");
+
+        Metric lagMetric = Mockito.mock(Metric.class);
+        Mockito.when(lagMetric.metricValue()).thenReturn(5.0);
+        Metric unknownLagMetric = Mockito.mock(Metric.class);
+        Mockito.when(unknownLagMetric.metricValue()).thenReturn(Double.NaN);
+        Mockito.doReturn(Map.of("CLIENT_ID", Map.of(
+                        new MetricName("records-lag", "consumer-fetch-manager-metrics", "", Map.of("topic", "TOPIC", "partition", "0")), lagMetric,
+                        new MetricName("records-lag", "consumer-fetch-manager-metrics", "", Map.of("topic", "TOPIC", "partition", "1")), unknownLagMetric)))
+                .when(container).metrics();
+
+        Assertions.assertEquals(5L, pauser.getRecordsLag("TOPIC", 0));
+        Assertions.assertEquals(-1L, pauser.getRecordsLag("TOPIC", 1));
+        Assertions.assertEquals(-1L, pauser.getRecordsLag("TOPIC", 2));
+        Assertions.assertEquals(-1L, pauser.getRecordsLag("OTHER", 0));
+    }
+}
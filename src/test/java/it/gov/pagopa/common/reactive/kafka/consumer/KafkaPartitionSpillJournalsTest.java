@@ -0,0 +1,134 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import it.gov.pagopa.common.utils.TestUtils;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class KafkaPartitionSpillJournalsTest {
+
+    private static final TopicPartition PARTITION_0 = new TopicPartition("TOPIC", 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition("TOPIC", 1);
+
+    @TempDir
+    private Path dir;
+
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+    private final List<String> discarded = new CopyOnWriteArrayList<>();
+
+    private static Message<byte[]> buildMessage(String payload, TopicPartition partition) {
+        return MessageBuilder.withPayload(payload.getBytes(StandardCharsets.UTF_8))
+                .setHeader(KafkaHeaders.RECEIVED_TOPIC, partition.topic())
+                .setHeader(KafkaHeaders.RECEIVED_PARTITION, partition.partition())
+                .build();
+    }
+
+    private static String readPayload(Message<byte[]> message) {
+        return new String(message.getPayload(), StandardCharsets.UTF_8);
+    }
+
+    /** The processing of the payloads starting with STUCK never ends */
+    private void start(KafkaPartitionSpillJournals journals) {
+        journals.start("TEST", m -> {
+            String payload = readPayload(m);
+            processed.add(payload);
+            return payload.startsWith("STUCK") ? Mono.never() : Mono.empty();
+        }, m -> discarded.add(readPayload(m)), 10);
+    }
+
+    @Test
+    void testPartitionsDrainedIndependently() {
+        try (KafkaPartitionSpillJournals journals = new KafkaPartitionSpillJournals(dir, 4096, Duration.ofMillis(100))) {
+            start(journals);
+
+            Assertions.assertEquals(KafkaPartitionSpillJournals.AppendResult.APPENDED, journals.append(PARTITION_0, buildMessage("STUCK_0", PARTITION_0)));
+            Assertions.assertEquals(KafkaPartitionSpillJournals.AppendResult.APPENDED, journals.append(PARTITION_0, buildMessage("A_0", PARTITION_0)));
+            Assertions.assertEquals(KafkaPartitionSpillJournals.AppendResult.APPENDED, journals.append(PARTITION_1, buildMessage("A_1", PARTITION_1)));
+            Assertions.assertEquals(KafkaPartitionSpillJournals.AppendResult.APPENDED, journals.append(PARTITION_1, buildMessage("B_1", PARTITION_1)));
+
+            // the stuck record holds back just its partition
+            TestUtils.waitFor(() -> journals.isEmpty(PARTITION_1), () -> "Partition 1 not drained: " + processed, 100, 50);
+            Assertions.assertTrue(processed.containsAll(List.of("STUCK_0", "A_1", "B_1")));
+            Assertions.assertFalse(processed.contains("A_0"));
+            Assertions.assertFalse(journals.isEmpty(PARTITION_0));
+            Assertions.assertTrue(Files.exists(dir.resolve("TOPIC-0.journal")));
+            Assertions.assertTrue(Files.exists(dir.resolve("TOPIC-1.journal")));
+        }
+    }
+
+    @Test
+    void testRevokedPartitionDiscarded() {
+        try (KafkaPartitionSpillJournals journals = new KafkaPartitionSpillJournals(dir, 4096, Duration.ofMillis(100))) {
+            start(journals);
+            journals.append(PARTITION_0, buildMessage("STUCK_0", PARTITION_0));
+            journals.append(PARTITION_0, buildMessage("A_0", PARTITION_0));
+            journals.append(PARTITION_1, buildMessage("A_1", PARTITION_1));
+            TestUtils.waitFor(() -> processed.contains("STUCK_0") && journals.isEmpty(PARTITION_1), () -> "Journals not drained: " + processed, 100, 50);
+
+            journals.onPartitionsRevoked(List.of(PARTITION_0));
+
+            // the records not yet drained are discarded, and the partition cannot spill until it is assigned again
+            Assertions.assertEquals(List.of("STUCK_0", "A_0"), discarded);
+            Assertions.assertFalse(Files.exists(dir.resolve("TOPIC-0.journal")));
+            Assertions.assertTrue(journals.isEmpty(PARTITION_0));
+            Assertions.assertEquals(KafkaPartitionSpillJournals.AppendResult.REVOKED, journals.append(PARTITION_0, buildMessage("B_0", PARTITION_0)));
+            Assertions.assertEquals(KafkaPartitionSpillJournals.AppendResult.APPENDED, journals.append(PARTITION_1, buildMessage("B_1", PARTITION_1)));
+
+            journals.onPartitionsAssigned(List.of(PARTITION_0));
+            Assertions.assertEquals(KafkaPartitionSpillJournals.AppendResult.APPENDED, journals.append(PARTITION_0, buildMessage("C_0", PARTITION_0)));
+            TestUtils.waitFor(() -> journals.isEmpty(PARTITION_0) && journals.isEmpty(PARTITION_1), () -> "Journals not drained: " + processed, 100, 50);
+            Assertions.assertFalse(processed.contains("A_0"));
+            Assertions.assertFalse(processed.contains("B_0"));
+        }
+    }
+
+    @Test
+    void testFullJournal() {
+        try (KafkaPartitionSpillJournals journals = new KafkaPartitionSpillJournals(dir, 256, Duration.ofMillis(100))) {
+            start(journals);
+            Assertions.assertEquals(KafkaPartitionSpillJournals.AppendResult.APPENDED, journals.append(PARTITION_0, buildMessage("STUCK_0", PARTITION_0)));
+
+            KafkaPartitionSpillJournals.AppendResult result;
+            do {
+                result = journals.append(PARTITION_0, buildMessage("PAYLOAD", PARTITION_0));
+            } while (result == KafkaPartitionSpillJournals.AppendResult.APPENDED);
+            Assertions.assertEquals(KafkaPartitionSpillJournals.AppendResult.FULL, result);
+            Assertions.assertTrue(journals.getSize() > 0);
+        }
+    }
+
+    @Test
+    void testJournalsOfPreviousProcessRecovered() {
+        try (KafkaSpillJournal leftJournal = new KafkaSpillJournal(dir.resolve("TOPIC-0.journal"), 4096)) {
+            leftJournal.append(buildMessage("A_0", PARTITION_0));
+            leftJournal.append(buildMessage("B_0", PARTITION_0));
+        }
+
+        try (KafkaPartitionSpillJournals journals = new KafkaPartitionSpillJournals(dir, 4096, Duration.ofMillis(100))) {
+            start(journals);
+
+            Assertions.assertEquals(List.of("A_0", "B_0"), discarded);
+            Assertions.assertTrue(processed.isEmpty());
+            Assertions.assertFalse(Files.exists(dir.resolve("TOPIC-0.journal")));
+        }
+    }
+
+    @Test
+    void testNotExistentDirectory() {
+        Path notExistent = dir.resolve("NOT_MOUNTED");
+        Duration timeout = Duration.ofMillis(100);
+        Assertions.assertThrows(IllegalStateException.class, () -> new KafkaPartitionSpillJournals(notExistent, 4096, timeout));
+    }
+}
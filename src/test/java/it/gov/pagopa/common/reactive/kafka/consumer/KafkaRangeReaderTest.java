@@ -0,0 +1,118 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+class KafkaRangeReaderTest {
+
+    private static final String TOPIC = "TOPIC";
+    private static final TopicPartition P0 = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition P1 = new TopicPartition(TOPIC, 1);
+
+    /** Records have timestamp equal to 1000 * offset */
+    private static MockConsumer<byte[], byte[]> buildConsumer(int p0Records, int p1Records) {
+        MockConsumer<byte[], byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(Map<TopicPartition, Long> timestampsToSearch) {
+                Map<TopicPartition, Long> endOffsets = endOffsets(timestampsToSearch.keySet());
+                Map<TopicPartition, OffsetAndTimestamp> out = new HashMap<>();
+                timestampsToSearch.forEach((tp, timestamp) -> {
+                    long offset = (timestamp + 999) / 1000;
+                    out.put(tp, offset < endOffsets.get(tp) ? new OffsetAndTimestamp(offset, offset * 1000) : null);
+                });
+                return out;
+            }
+        };
+        consumer.updatePartitions(TOPIC, List.of(
+                new PartitionInfo(TOPIC, 0, null, null, null),
+                new PartitionInfo(TOPIC, 1, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(P0, 0L, P1, 0L));
+        consumer.updateEndOffsets(Map.of(P0, (long) p0Records, P1, (long) p1Records));
+        consumer.schedulePollTask(() -> {
+            addRecords(consumer, P0, p0Records);
+            addRecords(consumer, P1, p1Records);
+        });
+        return consumer;
+    }
+
+    private static void addRecords(MockConsumer<byte[], byte[]> consumer, TopicPartition tp, int n) {
+        if (!consumer.assignment().contains(tp)) {
+            return;
+        }
+        for (long offset = 0; offset < n; offset++) {
+            RecordHeaders headers = new RecordHeaders(List.of(new RecordHeader("HEADER", "VALUE".getBytes(StandardCharsets.UTF_8))));
+            consumer.addRecord(new ConsumerRecord<>(TOPIC, tp.partition(), offset, offset * 1000, TimestampType.CREATE_TIME, 0, 0,
+                    "KEY".getBytes(StandardCharsets.UTF_8), "%d_%d".formatted(tp.partition(), offset).getBytes(StandardCharsets.UTF_8), headers, Optional.empty()));
+        }
+    }
+
+    private static List<String> read(MockConsumer<byte[], byte[]> consumer, KafkaRangeReader.Range range) {
+        List<Message<byte[]>> messages = new KafkaRangeReader(() -> consumer, Duration.ofMillis(10))
+                .read(range)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        Assertions.assertNotNull(messages);
+        Assertions.assertTrue(consumer.closed());
+        return messages.stream()
+                .map(m -> new String(m.getPayload(), StandardCharsets.UTF_8))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testReadWholeTopic() {
+        MockConsumer<byte[], byte[]> consumer = buildConsumer(3, 2);
+
+        List<Message<byte[]>> messages = new KafkaRangeReader(() -> consumer, Duration.ofMillis(10))
+                .read(new KafkaRangeReader.Range(TOPIC, null, null, null, null))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        Assertions.assertNotNull(messages);
+        Assertions.assertEquals(List.of("0_0", "0_1", "0_2", "1_0", "1_1"),
+                messages.stream().map(m -> new String(m.getPayload(), StandardCharsets.UTF_8)).sorted().toList());
+
+        Message<byte[]> message = messages.getFirst();
+        Assertions.assertEquals(TOPIC, message.getHeaders().get(KafkaHeaders.RECEIVED_TOPIC));
+        Assertions.assertNotNull(message.getHeaders().get(KafkaHeaders.RECEIVED_PARTITION));
+        Assertions.assertNotNull(message.getHeaders().get(KafkaHeaders.OFFSET));
+        Assertions.assertEquals("VALUE", message.getHeaders().get("HEADER"));
+    }
+
+    @Test
+    void testReadOffsetsRange() {
+        Assertions.assertEquals(List.of("0_1", "0_2", "0_3", "1_0", "1_1", "1_2"),
+                read(buildConsumer(5, 3), new KafkaRangeReader.Range(TOPIC, Map.of(0, 1L), Map.of(0, 4L), null, null)));
+    }
+
+    @Test
+    void testReadTimestampRange() {
+        Assertions.assertEquals(List.of("0_2", "0_3", "1_2"),
+                read(buildConsumer(5, 3), new KafkaRangeReader.Range(TOPIC, null, null, 1500L, 4000L)));
+    }
+
+    @Test
+    void testReadEmptyRange() {
+        Assertions.assertEquals(List.of(),
+                read(buildConsumer(5, 3), new KafkaRangeReader.Range(TOPIC, null, null, 10_000L, null)));
+    }
+}
@@ -0,0 +1,159 @@
+package it.gov.pagopa.common.reactive.kafka.consumer;
+
+import it.gov.pagopa.common.utils.TestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class KafkaSpillJournalTest {
+
+    @TempDir
+    private Path dir;
+
+    private static Message<byte[]> buildMessage(String payload, long offset) {
+        return MessageBuilder.withPayload(payload.getBytes(StandardCharsets.UTF_8))
+                .setHeader(KafkaHeaders.RECEIVED_TOPIC, "TOPIC")
+                .setHeader(KafkaHeaders.RECEIVED_PARTITION, 1)
+                .setHeader(KafkaHeaders.OFFSET, offset)
+                .setHeader(KafkaHeaders.RECEIVED_KEY, "KEY".getBytes(StandardCharsets.UTF_8))
+                .setHeader("NOT_SERIALIZABLE", new Object())
+                .build();
+    }
+
+    private static String readPayload(Message<byte[]> message) {
+        return new String(message.getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testAppendPeekRemove() {
+        try (KafkaSpillJournal journal = new KafkaSpillJournal(dir.resolve("journal"), 4096)) {
+            Assertions.assertTrue(journal.isEmpty());
+            Assertions.assertNull(journal.peek());
+
+            Assertions.assertTrue(journal.append(buildMessage("A", 10)));
+            Assertions.assertTrue(journal.append(buildMessage("B", 11)));
+
+            Message<byte[]> first = journal.peek();
+            Assertions.assertEquals("A", readPayload(first));
+            Assertions.assertEquals("TOPIC", first.getHeaders().get(KafkaHeaders.RECEIVED_TOPIC));
+            Assertions.assertEquals(1, first.getHeaders().get(KafkaHeaders.RECEIVED_PARTITION));
+            Assertions.assertEquals(10L, first.getHeaders().get(KafkaHeaders.OFFSET));
+            Assertions.assertArrayEquals("KEY".getBytes(StandardCharsets.UTF_8), (byte[]) first.getHeaders().get(KafkaHeaders.RECEIVED_KEY));
+            Assertions.assertFalse(first.getHeaders().containsKey("NOT_SERIALIZABLE"));
+
+            journal.remove();
+            Assertions.assertEquals("B", readPayload(journal.peek()));
+            journal.remove();
+            Assertions.assertTrue(journal.isEmpty());
+            Assertions.assertEquals(0, journal.getSize());
+        }
+    }
+
+    @Test
+    void testSurvivesRestart() {
+        Path path = dir.resolve("journal");
+        try (KafkaSpillJournal journal = new KafkaSpillJournal(path, 4096)) {
+            journal.append(buildMessage("A", 0));
+            journal.append(buildMessage("B", 1));
+            journal.append(buildMessage("C", 2));
+            journal.remove();
+        }
+
+        try (KafkaSpillJournal journal = new KafkaSpillJournal(path, 4096)) {
+            Assertions.assertEquals("B", readPayload(journal.peek()));
+            journal.remove();
+            Assertions.assertEquals("C", readPayload(journal.peek()));
+            Assertions.assertEquals(2L, journal.peek().getHeaders().get(KafkaHeaders.OFFSET));
+        }
+    }
+
+    @Test
+    void testFullJournalRejectsUntilSpaceIsReclaimed() {
+        try (KafkaSpillJournal journal = new KafkaSpillJournal(dir.resolve("journal"), 512)) {
+            int appended = 0;
+            while (journal.append(buildMessage("PAYLOAD_" + appended, appended))) {
+                appended++;
+            }
+            Assertions.assertTrue(appended > 1);
+            Assertions.assertFalse(journal.append(buildMessage("REJECTED", -1)));
+
+            // removing the oldest record, the journal is compacted in order to accept a new one
+            journal.remove();
+            Assertions.assertTrue(journal.append(buildMessage("PAYLOAD_" + appended, appended)));
+
+            for (int i = 1; i <= appended; i++) {
+                Assertions.assertEquals("PAYLOAD_" + i, readPayload(journal.peek()));
+                journal.remove();
+            }
+            Assertions.assertTrue(journal.isEmpty());
+        }
+    }
+
+    @Test
+    void testDrainer() {
+        List<String> drained = new CopyOnWriteArrayList<>();
+        try (KafkaSpillJournal journal = new KafkaSpillJournal(dir.resolve("journal"), 4096)) {
+            journal.append(buildMessage("A", 0));
+            journal.append(buildMessage("B", 1));
+            journal.append(buildMessage("C", 2));
+
+            journal.startDrainer("TEST", m -> {
+                String payload = readPayload(m);
+                drained.add(payload);
+                return "B".equals(payload) ? Mono.error(new IllegalStateException("DUMMY")) : Mono.empty();
+            }, 10);
+
+            TestUtils.waitFor(journal::isEmpty, () -> "Journal not drained: " + drained, 100, 50);
+            Assertions.assertEquals(List.of("A", "B", "C"), drained);
+
+            journal.append(buildMessage("D", 3));
+            TestUtils.waitFor(journal::isEmpty, () -> "Journal not drained: " + drained, 100, 50);
+            Assertions.assertEquals(List.of("A", "B", "C", "D"), drained);
+        }
+    }
+
+    @Test
+    void testDiscardAndClose() {
+        List<String> processed = new CopyOnWriteArrayList<>();
+        List<String> discarded = new CopyOnWriteArrayList<>();
+        KafkaSpillJournal journal = new KafkaSpillJournal(dir.resolve("journal"), 4096);
+        journal.append(buildMessage("A", 0));
+        journal.append(buildMessage("B", 1));
+        journal.append(buildMessage("C", 2));
+
+        // the processing of B never ends
+        journal.startDrainer("TEST", m -> {
+            String payload = readPayload(m);
+            processed.add(payload);
+            return "B".equals(payload) ? Mono.never() : Mono.empty();
+        }, 10);
+        TestUtils.waitFor(() -> processed.size() == 2, () -> "Journal not drained: " + processed, 100, 50);
+
+        Assertions.assertEquals(2, journal.discardAndClose(Duration.ofMillis(100), m -> discarded.add(readPayload(m))));
+        Assertions.assertEquals(List.of("A", "B"), processed);
+        Assertions.assertEquals(List.of("B", "C"), discarded);
+        Assertions.assertTrue(journal.isClosed());
+        Assertions.assertFalse(journal.append(buildMessage("D", 3)));
+    }
+
+    @Test
+    void testLockedJournalCannotBeOpenedTwice() {
+        Path path = dir.resolve("journal");
+        try (KafkaSpillJournal ignored = new KafkaSpillJournal(path, 4096)) {
+            Assertions.assertThrows(IllegalStateException.class, () -> new KafkaSpillJournal(path, 4096));
+        }
+        try (KafkaSpillJournal journal = new KafkaSpillJournal(path, 4096)) {
+            Assertions.assertTrue(journal.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package it.gov.pagopa.common.reactive.kafka.producer;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.stream.binder.kafka.common.BinderHeaderMapper;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.StreamSupport;
+
+/**
+ * It will publish a message on an embedded broker, checking that its headers are written as the binder producers write them,
+ * and that the binder consumers read them with their original types
+ */
+class KafkaBatchPublisherEmbeddedKafkaTest {
+
+    private static final String TOPIC = "idpay-publisher-headers";
+
+    private static EmbeddedKafkaBroker kafkaBroker;
+
+    @BeforeAll
+    static void startBroker() {
+        kafkaBroker = new EmbeddedKafkaKraftBroker(1, 1, TOPIC);
+        kafkaBroker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        kafkaBroker.destroy();
+    }
+
+    @Test
+    void testHeadersRoundTrip() {
+        Message<byte[]> message = MessageBuilder.withPayload("PAYLOAD".getBytes(StandardCharsets.UTF_8))
+                .setHeader(KafkaHeaders.KEY, "KEY")
+                .setHeader("operationType", "REFUNDED")
+                .setHeader("attempt", 3)
+                .setHeader("binaryHeader", new byte[]{1})
+                .build();
+
+        try (KafkaBatchPublisher publisher = new KafkaBatchPublisher(
+                () -> new KafkaProducer<>(KafkaTestUtils.producerProps(kafkaBroker), new StringSerializer(), new ByteArraySerializer()),
+                TOPIC, 10, Duration.ofMillis(10), 1, 16)) {
+            publisher.send(message).block(Duration.ofSeconds(30));
+        }
+
+        ConsumerRecord<String, byte[]> consumerRecord = readRecord();
+        Assertions.assertEquals("KEY", consumerRecord.key());
+
+        // the same headers written by the binder producers
+        RecordHeaders binderHeaders = new RecordHeaders();
+        new BinderHeaderMapper().fromHeaders(message.getHeaders(), binderHeaders);
+        Assertions.assertEquals(toMap(binderHeaders), toMap(consumerRecord.headers()));
+
+        // read by the binder consumers with their original types
+        Map<String, Object> consumedHeaders = new HashMap<>();
+        new BinderHeaderMapper().toHeaders(consumerRecord.headers(), consumedHeaders);
+        Assertions.assertEquals("REFUNDED", consumedHeaders.get("operationType"));
+        Assertions.assertEquals(3, consumedHeaders.get("attempt"));
+        Assertions.assertArrayEquals(new byte[]{1}, (byte[]) consumedHeaders.get("binaryHeader"));
+        Assertions.assertFalse(consumedHeaders.containsKey(KafkaHeaders.KEY));
+    }
+
+    private static ConsumerRecord<String, byte[]> readRecord() {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("publisher-headers-group", "false", kafkaBroker);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        try (Consumer<String, byte[]> consumer = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer()).createConsumer()) {
+            consumer.subscribe(List.of(TOPIC));
+            return KafkaTestUtils.getSingleRecord(consumer, TOPIC, Duration.ofSeconds(30));
+        }
+    }
+
+    private static Map<String, String> toMap(Iterable<Header> headers) {
+        Map<String, String> out = new HashMap<>();
+        StreamSupport.stream(headers.spliterator(), false)
+                .forEach(h -> out.put(h.key(), new String(h.value(), StandardCharsets.UTF_8)));
+        return out;
+    }
+}
@@ -0,0 +1,196 @@
+package it.gov.pagopa.common.reactive.kafka.producer;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.stream.binder.kafka.common.BinderHeaderMapper;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class KafkaBatchPublisherTest {
+
+    private static final String TOPIC = "TOPIC";
+
+    private MockProducer<String, byte[]> producer;
+    private KafkaBatchPublisher publisher;
+
+    private KafkaBatchPublisher buildPublisher(boolean autoComplete, int batchSize, int maxInFlightBatches, int maxPending) {
+        producer = new MockProducer<>(autoComplete, null, new StringSerializer(), new ByteArraySerializer());
+        publisher = new KafkaBatchPublisher(() -> producer, TOPIC, batchSize, Duration.ofMillis(10), maxInFlightBatches, maxPending);
+        return publisher;
+    }
+
+    @AfterEach
+    void close() {
+        if (publisher != null) {
+            publisher.close();
+        }
+    }
+
+    @Test
+    void testPublish() {
+        buildPublisher(true, 2, 2, 16);
+
+        List<KafkaBatchPublisher.SendResult<Integer>> results = publisher.publish(Flux.range(0, 5), KafkaBatchPublisherTest::buildMessage)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        Assertions.assertNotNull(results);
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4), results.stream().map(KafkaBatchPublisher.SendResult::source).toList());
+        Assertions.assertTrue(results.stream().allMatch(KafkaBatchPublisher.SendResult::isSent));
+
+        List<ProducerRecord<String, byte[]>> history = producer.history();
+        Assertions.assertEquals(5, history.size());
+        ProducerRecord<String, byte[]> first = history.getFirst();
+        Assertions.assertEquals(TOPIC, first.topic());
+        Assertions.assertEquals("KEY_0", first.key());
+        Assertions.assertEquals("PAYLOAD_0", new String(first.value(), StandardCharsets.UTF_8));
+        Assertions.assertEquals("REFUNDED", new String(first.headers().lastHeader("operationType").value(), StandardCharsets.UTF_8));
+        Assertions.assertArrayEquals(new byte[]{1}, first.headers().lastHeader("binaryHeader").value());
+        Assertions.assertNotNull(first.headers().lastHeader(BinderHeaderMapper.JSON_TYPES));
+        Assertions.assertNull(first.headers().lastHeader(KafkaHeaders.KEY));
+        Assertions.assertNull(first.headers().lastHeader("id"));
+    }
+
+    @Test
+    void testPublishSendError() {
+        buildPublisher(false, 3, 1, 16);
+
+        List<KafkaBatchPublisher.SendResult<Integer>> results = new CopyOnWriteArrayList<>();
+        publisher.publish(Flux.range(0, 3), KafkaBatchPublisherTest::buildMessage)
+                .subscribe(results::add);
+
+        Awaitility.await().atMost(Duration.ofSeconds(10)).until(() -> producer.history().size() == 3);
+        Assertions.assertTrue(results.isEmpty());
+
+        producer.completeNext();
+        producer.errorNext(new IllegalStateException("DUMMY_SEND_ERROR"));
+        producer.completeNext();
+
+        Awaitility.await().atMost(Duration.ofSeconds(10)).until(() -> results.size() == 3);
+        Assertions.assertTrue(results.get(0).isSent());
+        Assertions.assertFalse(results.get(1).isSent());
+        Assertions.assertEquals("DUMMY_SEND_ERROR", results.get(1).exception().getMessage());
+        Assertions.assertTrue(results.get(2).isSent());
+    }
+
+    @Test
+    void testPublishEncodingError() {
+        buildPublisher(true, 2, 1, 16);
+
+        List<KafkaBatchPublisher.SendResult<Integer>> results = publisher.publish(Flux.range(0, 2), i -> {
+                    if (i == 0) {
+                        throw new IllegalArgumentException("DUMMY_ENCODING_ERROR");
+                    }
+                    return buildMessage(i);
+                })
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        Assertions.assertNotNull(results);
+        Assertions.assertFalse(results.get(0).isSent());
+        Assertions.assertTrue(results.get(1).isSent());
+        Assertions.assertEquals(1, producer.history().size());
+    }
+
+    @Test
+    void testPublishWhenProducerBlocked() {
+        AtomicInteger sendAttempts = new AtomicInteger();
+        producer = new MockProducer<>(true, null, new StringSerializer(), new ByteArraySerializer()) {
+            @Override
+            public synchronized Future<RecordMetadata> send(ProducerRecord<String, byte[]> producerRecord, Callback callback) {
+                sendAttempts.incrementAndGet();
+                return super.send(producerRecord, callback);
+            }
+        };
+        producer.sendException = new TimeoutException("DUMMY_METADATA_TIMEOUT");
+        publisher = new KafkaBatchPublisher(() -> producer, TOPIC, 3, Duration.ofMillis(10), 1, 16);
+
+        List<KafkaBatchPublisher.SendResult<Integer>> results = publisher.publish(Flux.range(0, 3), KafkaBatchPublisherTest::buildMessage)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        Assertions.assertNotNull(results);
+        Assertions.assertEquals(3, results.size());
+        Assertions.assertTrue(results.stream().allMatch(r -> r.exception() instanceof TimeoutException));
+        Assertions.assertEquals(1, sendAttempts.get());
+    }
+
+    @Test
+    void testSend() {
+        buildPublisher(true, 10, 2, 128);
+
+        Long sent = Flux.range(0, 100)
+                .flatMap(i -> publisher.send(buildMessage(i)))
+                .count()
+                .block(Duration.ofSeconds(10));
+
+        Assertions.assertEquals(100L, sent);
+        Assertions.assertEquals(100, producer.history().size());
+    }
+
+    @Test
+    void testSendError() {
+        buildPublisher(false, 1, 1, 16);
+
+        AtomicInteger errors = new AtomicInteger();
+        publisher.send(buildMessage(0)).subscribe(m -> {}, e -> errors.incrementAndGet());
+
+        Awaitility.await().atMost(Duration.ofSeconds(10)).until(() -> producer.history().size() == 1);
+        producer.errorNext(new IllegalStateException("DUMMY_SEND_ERROR"));
+
+        Awaitility.await().atMost(Duration.ofSeconds(10)).until(() -> errors.get() == 1);
+    }
+
+    @Test
+    void testSendWhenTooManyPending() {
+        buildPublisher(false, 1, 1, 8);
+
+        AtomicInteger rejected = new AtomicInteger();
+        for (int i = 0; i < 1_000; i++) {
+            publisher.send(buildMessage(i)).subscribe(m -> {}, e -> {
+                if (e instanceof IllegalStateException) {
+                    rejected.incrementAndGet();
+                }
+            });
+        }
+
+        Assertions.assertTrue(rejected.get() > 0);
+        Assertions.assertTrue(producer.history().size() < 1_000);
+    }
+
+    @Test
+    void testClose() {
+        buildPublisher(true, 1, 1, 8);
+        publisher.send(buildMessage(0)).block(Duration.ofSeconds(10));
+
+        publisher.close();
+
+        Assertions.assertTrue(producer.closed());
+    }
+
+    private static Message<byte[]> buildMessage(int i) {
+        return MessageBuilder.withPayload("PAYLOAD_%d".formatted(i).getBytes(StandardCharsets.UTF_8))
+                .setHeader(KafkaHeaders.KEY, "KEY_%d".formatted(i))
+                .setHeader("operationType", "REFUNDED")
+                .setHeader("binaryHeader", new byte[]{1})
+                .build();
+    }
+}
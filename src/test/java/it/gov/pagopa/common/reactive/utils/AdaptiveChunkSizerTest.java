@@ -0,0 +1,70 @@
+package it.gov.pagopa.common.reactive.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveChunkSizerTest {
+
+    @Test
+    void testIncrease() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer("TEST", 10, 1, 20, 0.5, 100, 5, 1000);
+
+        Assertions.assertEquals(5, sizer.onChunkCompleted(10));
+        Assertions.assertEquals(12, sizer.getChunkSize());
+
+        for (int i = 0; i < 10; i++) {
+            sizer.onChunkCompleted(10);
+        }
+        Assertions.assertEquals(20, sizer.getChunkSize());
+    }
+
+    @Test
+    void testIncreaseFromMinSize() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer("TEST", 1, 1, 20, 0.5, 100, 0, 1000);
+
+        sizer.onChunkCompleted(10);
+
+        Assertions.assertEquals(2, sizer.getChunkSize());
+    }
+
+    @Test
+    void testDecreaseOnLatency() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer("TEST", 16, 3, 16, 0.5, 100, 5, 1000);
+
+        Assertions.assertEquals(155, sizer.onChunkCompleted(250));
+        Assertions.assertEquals(8, sizer.getChunkSize());
+
+        sizer.onChunkCompleted(250);
+        sizer.onChunkCompleted(250);
+        Assertions.assertEquals(3, sizer.getChunkSize());
+    }
+
+    @Test
+    void testDecreaseOnThrottling() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer("TEST", 16, 1, 16, 0.5, 100, 5, 1000);
+
+        Assertions.assertEquals(200, sizer.onThrottled(200L));
+        Assertions.assertEquals(8, sizer.getChunkSize());
+
+        // decreased once for each chunk, waiting the longest suggested time
+        Assertions.assertEquals(1000, sizer.onThrottled(null));
+        Assertions.assertEquals(8, sizer.getChunkSize());
+
+        // a throttled chunk will not increase the size
+        Assertions.assertEquals(1000, sizer.onChunkCompleted(10));
+        Assertions.assertEquals(8, sizer.getChunkSize());
+
+        Assertions.assertEquals(5, sizer.onChunkCompleted(10));
+        Assertions.assertEquals(10, sizer.getChunkSize());
+
+        sizer.onThrottled(50L);
+        Assertions.assertEquals(5, sizer.getChunkSize());
+    }
+
+    @Test
+    void testInvalidConfiguration() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveChunkSizer("TEST", 1, 0, 1, 0.5, 100, 0, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveChunkSizer("TEST", 1, 2, 1, 0.5, 100, 0, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AdaptiveChunkSizer("TEST", 1, 1, 2, 1, 100, 0, 0));
+    }
+}
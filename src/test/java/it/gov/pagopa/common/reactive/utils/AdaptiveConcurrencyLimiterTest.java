@@ -0,0 +1,153 @@
+package it.gov.pagopa.common.reactive.utils;
+
+import it.gov.pagopa.common.reactive.mongo.retry.MongoRequestRateTooLargeRetryer;
+import it.gov.pagopa.common.reactive.mongo.retry.exception.MongoRequestRateTooLargeRetryExpiredException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void testAdditiveIncrease() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("TEST", 2, 1, 4, 0.5, 1000, 0);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire().block();
+            limiter.release(1);
+        }
+
+        Assertions.assertEquals(4, limiter.getLimit());
+        Assertions.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testMultiplicativeDecrease() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("TEST", 16, 3, 16, 0.5, 100, 0);
+
+        limiter.onThrottled(10L);
+        Assertions.assertEquals(8, limiter.getLimit());
+
+        limiter.acquire().block();
+        limiter.release(200);
+        Assertions.assertEquals(4, limiter.getLimit());
+
+        limiter.onThrottled(null);
+        Assertions.assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void testDecreaseCooldown() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("TEST", 16, 1, 16, 0.5, 100, 60_000);
+
+        limiter.onThrottled(10L);
+        limiter.onThrottled(10L);
+
+        Assertions.assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void testPermitsWaitingRelease() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("TEST", 1, 1, 1, 0.5, 1000, 0);
+        AtomicInteger granted = new AtomicInteger();
+
+        limiter.acquire().subscribe(x -> {}, e -> {}, granted::incrementAndGet);
+        limiter.acquire().subscribe(x -> {}, e -> {}, granted::incrementAndGet);
+        Assertions.assertEquals(1, granted.get());
+
+        limiter.release(1);
+        Assertions.assertEquals(2, granted.get());
+        Assertions.assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void testHealthyStandInRaisesLimit() {
+        ThrottlingMongoStandIn standIn = new ThrottlingMongoStandIn(1000, 0);
+        AdaptiveConcurrencyLimiter limiter = buildLimiter();
+
+        runThroughLimiter(limiter, standIn, 2000);
+
+        Assertions.assertEquals(0, standIn.throttled.get());
+        Assertions.assertEquals(64, limiter.getLimit());
+    }
+
+    @Test
+    void testThrottlingStandInBacksOff() {
+        ThrottlingMongoStandIn standIn = new ThrottlingMongoStandIn(8, 0.5);
+        AdaptiveConcurrencyLimiter limiter = buildLimiter();
+
+        runThroughLimiter(limiter, standIn, 2000);
+
+        Assertions.assertTrue(standIn.throttled.get() > 0);
+        Assertions.assertTrue(limiter.getLimit() < 64, "Unexpected limit " + limiter.getLimit());
+        Assertions.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testThrottlingOutsideLimitedExecutionsIgnored() {
+        ThrottlingMongoStandIn standIn = new ThrottlingMongoStandIn(0, 1);
+        AdaptiveConcurrencyLimiter limiter = buildLimiter();
+
+        // e.g. an API request throttled on the same database
+        Mono<Integer> unrelatedExecution = MongoRequestRateTooLargeRetryer.withRetry("TEST", standIn.execute(), 3, 0);
+        Assertions.assertThrows(MongoRequestRateTooLargeRetryExpiredException.class, unrelatedExecution::block);
+
+        Assertions.assertEquals(4, standIn.throttled.get());
+        Assertions.assertEquals(16, limiter.getLimit());
+    }
+
+    private AdaptiveConcurrencyLimiter buildLimiter() {
+        return new AdaptiveConcurrencyLimiter("TEST", 16, 2, 64, 0.7, 1000, 20);
+    }
+
+    private static void runThroughLimiter(AdaptiveConcurrencyLimiter limiter, ThrottlingMongoStandIn standIn, int executions) {
+        Long completed = Flux.range(0, executions)
+                .flatMap(i -> limiter.acquire()
+                        .then(Mono.defer(() -> {
+                            long startTime = System.currentTimeMillis();
+                            return MongoRequestRateTooLargeRetryer.withRequestRateTooLargeListener(
+                                            MongoRequestRateTooLargeRetryer.withRetry("TEST", standIn.execute(), 0, 0), limiter::onThrottled)
+                                    .doFinally(s -> limiter.release(System.currentTimeMillis() - startTime));
+                        })), 256)
+                .count()
+                .block(Duration.ofSeconds(30));
+
+        Assertions.assertEquals(executions, completed);
+    }
+
+    /** A stand-in of Mongo which will throw a 16500 error, at the configured rate, when invoked by more than capacity concurrent operations */
+    private static class ThrottlingMongoStandIn {
+        private final int capacity;
+        private final double throttleRate;
+        private final Random random = new Random(0);
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger throttled = new AtomicInteger();
+
+        ThrottlingMongoStandIn(int capacity, double throttleRate) {
+            this.capacity = capacity;
+            this.throttleRate = throttleRate;
+        }
+
+        Mono<Integer> execute() {
+            return Mono.defer(() -> {
+                        int current = inFlight.incrementAndGet();
+                        boolean throttle;
+                        synchronized (random) {
+                            throttle = current > capacity && random.nextDouble() < throttleRate;
+                        }
+                        if (throttle) {
+                            throttled.incrementAndGet();
+                            return Mono.<Integer>error(new DataAccessResourceFailureException("Command failed with error 16500: 'Error=16500, RetryAfterMs=2, Details='"));
+                        }
+                        return Mono.delay(Duration.ofMillis(1)).thenReturn(current);
+                    })
+                    .doFinally(s -> inFlight.decrementAndGet());
+        }
+    }
+}
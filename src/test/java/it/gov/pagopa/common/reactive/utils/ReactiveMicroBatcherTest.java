@@ -0,0 +1,85 @@
+package it.gov.pagopa.common.reactive.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class ReactiveMicroBatcherTest {
+
+    @Test
+    void testBatchesBoundedBySize() {
+        List<List<Integer>> flushed = new CopyOnWriteArrayList<>();
+        ReactiveMicroBatcher<Integer> batcher = new ReactiveMicroBatcher<>("TEST", 10, Duration.ofSeconds(10), batch -> {
+            flushed.add(batch);
+            return Mono.just(Map.of());
+        });
+
+        List<Integer> result = Flux.range(0, 100)
+                .flatMapSequential(batcher::submit, 100)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        Assertions.assertEquals(Flux.range(0, 100).collectList().block(), result);
+        Assertions.assertEquals(10, flushed.size());
+        flushed.forEach(b -> Assertions.assertEquals(10, b.size()));
+    }
+
+    @Test
+    void testBatchesBoundedByTime() {
+        List<List<Integer>> flushed = new CopyOnWriteArrayList<>();
+        ReactiveMicroBatcher<Integer> batcher = new ReactiveMicroBatcher<>("TEST", 100, Duration.ofMillis(50), batch -> {
+            flushed.add(batch);
+            return Mono.just(Map.of());
+        });
+
+        StepVerifier.create(batcher.submit(1))
+                .expectNext(1)
+                .verifyComplete();
+
+        Assertions.assertEquals(List.of(List.of(1)), flushed);
+    }
+
+    @Test
+    void testSingleElementErrorIsolation() {
+        RuntimeException expectedError = new RuntimeException("DUMMY");
+        ReactiveMicroBatcher<Integer> batcher = new ReactiveMicroBatcher<>("TEST", 3, Duration.ofSeconds(10), batch ->
+                Mono.just(Map.of(1, expectedError)));
+
+        List<Object> result = Flux.range(0, 3)
+                .flatMapSequential(i -> batcher.submit(i)
+                        .map(Object.class::cast)
+                        .onErrorResume(e -> Mono.just(e)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        Assertions.assertEquals(List.of(0, expectedError, 2), result);
+    }
+
+    @Test
+    void testWholeFlushError() {
+        RuntimeException expectedError = new RuntimeException("DUMMY");
+        int[] invocations = {0};
+        ReactiveMicroBatcher<Integer> batcher = new ReactiveMicroBatcher<>("TEST", 1, Duration.ofSeconds(10), batch -> {
+            if (invocations[0]++ == 0) {
+                return Mono.error(expectedError);
+            }
+            return Mono.empty();
+        });
+
+        StepVerifier.create(batcher.submit(1))
+                .expectErrorMatches(expectedError::equals)
+                .verify();
+
+        // the batcher is still working after a failed flush
+        StepVerifier.create(batcher.submit(2))
+                .expectNext(2)
+                .verifyComplete();
+    }
+}
@@ -59,7 +59,7 @@ public class BaseWireMockTest {
     public static final String TRUSTSTORE_PATH = "src/test/resources/wiremockKeyStore.p12";
     private static final String TRUSTSTORE_KO_PATH = "src/test/resources/wiremockTrustStoreKO.p12";
     @RegisterExtension
-    static com.github.tomakehurst.wiremock.junit5.WireMockExtension serverWireMockExtension = initServerWiremock();
+    protected static com.github.tomakehurst.wiremock.junit5.WireMockExtension serverWireMockExtension = initServerWiremock();
 
     public static void configureServerWiremockBeforeAll(boolean needClientAuth, boolean useTrustoreOk) {
         WIREMOCK_REQUEST_CLIENT_AUTH = needClientAuth;
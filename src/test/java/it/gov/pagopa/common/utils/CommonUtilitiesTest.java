@@ -10,8 +10,13 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 @Slf4j
 class CommonUtilitiesTest {
@@ -67,4 +72,37 @@ class CommonUtilitiesTest {
         Mockito.verifyNoInteractions(onErrorMock);
     }
 
+    @Test
+    void testDeserializeBytesMessageAllocatesLessThanStringDecoding() throws IOException {
+        Map<String, String> payload = new LinkedHashMap<>();
+        IntStream.range(0, 50).forEach(i -> payload.put("field%d".formatted(i), "value%d".formatted(i)));
+        Message<byte[]> bytesMsg = MessageBuilder.withPayload(TestUtils.jsonSerializer(payload).getBytes(StandardCharsets.UTF_8)).build();
+        ObjectReader mapObjectReader = TestUtils.objectMapper.readerFor(Map.class);
+        @SuppressWarnings("unchecked") Consumer<Throwable> onErrorMock = Mockito.mock(Consumer.class);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int iterations = 2000;
+
+        // warm up
+        for (int i = 0; i < iterations; i++) {
+            mapObjectReader.readValue(CommonUtilities.readMessagePayload(bytesMsg));
+            CommonUtilities.deserializeMessage(bytesMsg, mapObjectReader, onErrorMock);
+        }
+
+        long start = threadMXBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            mapObjectReader.readValue(CommonUtilities.readMessagePayload(bytesMsg));
+        }
+        long stringDecodingAllocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes() - start;
+
+        start = threadMXBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            CommonUtilities.deserializeMessage(bytesMsg, mapObjectReader, onErrorMock);
+        }
+        long bytesDecodingAllocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes() - start;
+
+        log.info("Allocated bytes deserializing {} messages of {} bytes: String decoding {}, byte[] decoding {}",
+                iterations, bytesMsg.getPayload().length, stringDecodingAllocatedBytes, bytesDecodingAllocatedBytes);
+        Assertions.assertTrue(bytesDecodingAllocatedBytes < stringDecodingAllocatedBytes);
+        Mockito.verifyNoInteractions(onErrorMock);
+    }
 }
@@ -0,0 +1,108 @@
+package it.gov.pagopa.idpay.transactions.controller;
+
+import it.gov.pagopa.common.web.dto.ErrorDTO;
+import it.gov.pagopa.common.web.exception.ClientExceptionWithBody;
+import it.gov.pagopa.idpay.transactions.dto.AdminJobDTO;
+import it.gov.pagopa.idpay.transactions.dto.mapper.AdminJobMapper;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobStatus;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
+import it.gov.pagopa.idpay.transactions.service.AdminJobService;
+import it.gov.pagopa.idpay.transactions.utils.ExceptionConstants;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@WebFluxTest(controllers = AdminJobControllerImpl.class)
+@Import(AdminJobMapper.class)
+class AdminJobControllerImplTest {
+
+    private static final LocalDateTime START_DATE = LocalDateTime.of(2025, 11, 1, 10, 0);
+
+    @MockitoBean
+    private AdminJobService adminJobService;
+
+    @Autowired
+    protected WebTestClient webClient;
+
+    @Test
+    void getJob() {
+        Mockito.when(adminJobService.getJob("JOBID")).thenReturn(Mono.just(buildJob(AdminJobStatus.RUNNING, false)));
+
+        AdminJobDTO result = webClient.get()
+                .uri("/idpay/transactions/jobs/JOBID")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AdminJobDTO.class)
+                .returnResult().getResponseBody();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals("JOBID", result.getId());
+        Assertions.assertEquals(AdminJobStatus.RUNNING, result.getStatus());
+        Assertions.assertEquals(200L, result.getProcessed());
+        Assertions.assertEquals(20L, result.getProcessedPerSecond());
+    }
+
+    @Test
+    void getJob_notFound() {
+        Mockito.when(adminJobService.getJob("JOBID"))
+                .thenReturn(Mono.error(new ClientExceptionWithBody(HttpStatus.NOT_FOUND, ExceptionConstants.ExceptionCode.ADMIN_JOB_NOT_FOUND, "NOT FOUND")));
+
+        webClient.get()
+                .uri("/idpay/transactions/jobs/JOBID")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(ErrorDTO.class).isEqualTo(new ErrorDTO(ExceptionConstants.ExceptionCode.ADMIN_JOB_NOT_FOUND, "NOT FOUND"));
+    }
+
+    @Test
+    void getJobs() {
+        Mockito.when(adminJobService.getJobs(AdminJobType.BATCH_ASSIGNMENT))
+                .thenReturn(Flux.just(buildJob(AdminJobStatus.COMPLETED, false)));
+
+        webClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/idpay/transactions/jobs")
+                        .queryParam("type", AdminJobType.BATCH_ASSIGNMENT)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(AdminJobDTO.class).hasSize(1);
+    }
+
+    @Test
+    void cancelJob() {
+        Mockito.when(adminJobService.cancel("JOBID")).thenReturn(Mono.just(buildJob(AdminJobStatus.RUNNING, true)));
+
+        AdminJobDTO result = webClient.post()
+                .uri("/idpay/transactions/jobs/JOBID/cancel")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AdminJobDTO.class)
+                .returnResult().getResponseBody();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertTrue(result.isCancelRequested());
+    }
+
+    private static AdminJob buildJob(AdminJobStatus status, boolean cancelRequested) {
+        return AdminJob.builder()
+                .id("JOBID")
+                .type(AdminJobType.BATCH_ASSIGNMENT)
+                .status(status)
+                .cancelRequested(cancelRequested)
+                .processed(200L)
+                .startDate(START_DATE)
+                .updateDate(START_DATE.plusSeconds(10))
+                .build();
+    }
+}
@@ -1,9 +1,21 @@
 package it.gov.pagopa.idpay.transactions.controller;
 
 import it.gov.pagopa.common.web.dto.ErrorDTO;
+import it.gov.pagopa.common.web.exception.ClientExceptionWithBody;
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayRequest;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayRequest;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.service.AdminJobProgress;
+import it.gov.pagopa.idpay.transactions.service.AdminJobService;
 import it.gov.pagopa.idpay.transactions.service.RewardTransactionService;
+import it.gov.pagopa.idpay.transactions.service.ErrorReplayService;
+import it.gov.pagopa.idpay.transactions.service.TransactionReplayService;
 import it.gov.pagopa.idpay.transactions.utils.ExceptionConstants;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +23,7 @@ import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
@@ -18,15 +31,34 @@ import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @WebFluxTest(controllers = {TransactionsController.class})
 class TransactionsControllerImplTest {
     @MockitoBean
     RewardTransactionService rewardTransactionService;
 
+    @MockitoBean
+    TransactionReplayService transactionReplayService;
+    @MockitoBean
+    ErrorReplayService errorReplayService;
+    @MockitoBean
+    AdminJobService adminJobService;
+
     @Autowired
     protected WebTestClient webClient;
 
+    @BeforeEach
+    void mockAdminJobService() {
+        Mockito.lenient().when(adminJobService.start(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenAnswer(i -> {
+                    Function<AdminJobProgress, Mono<?>> job = i.getArgument(2);
+                    return job.apply(new AdminJobProgress())
+                            .then(Mono.just(AdminJob.builder().id("JOBID").type(i.getArgument(0)).build()));
+                });
+    }
+
     @Test
     void findAllOk() {
         LocalDateTime now = LocalDateTime.of(2022, 9, 20, 13, 15,45);
@@ -230,27 +262,28 @@ class TransactionsControllerImplTest {
     @Test
     void cleanupInvoicedTransactions_defaultChunkSize() {
         Mockito.when(rewardTransactionService.assignInvoicedTransactionsToBatches(Mockito.anyInt(),
-            Mockito.anyInt(), Mockito.anyBoolean(), Mockito.isNull()))
+            Mockito.anyInt(), Mockito.anyBoolean(), Mockito.isNull(), Mockito.any()))
             .thenReturn(Mono.empty());
 
         webClient.post()
             .uri("/idpay/transactions/cleanup")
             .exchange()
             .expectStatus().isAccepted()
-            .expectBody(String.class);
+            .expectBody(String.class).isEqualTo("JOBID");
 
         Mockito.verify(rewardTransactionService, Mockito.times(1))
             .assignInvoicedTransactionsToBatches(
                 Mockito.eq(200),
                 Mockito.eq(1),
                 Mockito.eq(false),
-                Mockito.isNull());
+                Mockito.isNull(),
+                Mockito.any());
     }
 
     @Test
     void cleanupInvoicedTransactions_customChunkSize() {
         Mockito.when(rewardTransactionService.assignInvoicedTransactionsToBatches(Mockito.anyInt(),
-                Mockito.anyInt(), Mockito.anyBoolean(), Mockito.isNull()))
+                Mockito.anyInt(), Mockito.anyBoolean(), Mockito.isNull(), Mockito.any()))
             .thenReturn(Mono.empty());
 
         int customChunkSize = 500;
@@ -263,13 +296,85 @@ class TransactionsControllerImplTest {
                 .build())
             .exchange()
             .expectStatus().isAccepted()
-            .expectBody(String.class);
+            .expectBody(String.class).isEqualTo("JOBID");
 
         Mockito.verify(rewardTransactionService, Mockito.times(1))
             .assignInvoicedTransactionsToBatches(
                 Mockito.eq(customChunkSize),
                 Mockito.eq(customIteration), Mockito.eq(false),
-                Mockito.isNull()
+                Mockito.isNull(),
+                Mockito.any()
             );
     }
-}
\ No newline at end of file
+
+    @Test
+    void replayTransactions() {
+        TransactionReplayRequest request = TransactionReplayRequest.builder()
+            .fromOffsets(Map.of(0, 10L))
+            .toOffsets(Map.of(0, 20L))
+            .build();
+        Mockito.when(transactionReplayService.replay(Mockito.eq(request), Mockito.any()))
+            .thenReturn(Mono.just(TransactionReplayReportDTO.builder().read(10L).stored(10L).build()));
+
+        webClient.post()
+            .uri("/idpay/transactions/replay")
+            .bodyValue(request)
+            .exchange()
+            .expectStatus().isAccepted()
+            .expectBody(String.class).isEqualTo("JOBID");
+
+        Mockito.verify(transactionReplayService).replay(Mockito.eq(request), Mockito.any());
+    }
+
+    @Test
+    void replayErrors() {
+        ErrorReplayRequest request = ErrorReplayRequest.builder()
+            .binding("rewardTrxConsumer-in-0")
+            .recordsPerSecond(10)
+            .build();
+        Mockito.when(errorReplayService.replay(Mockito.eq(request), Mockito.any()))
+            .thenReturn(Mono.just(ErrorReplayReportDTO.builder().read(10L).replayed(10L).build()));
+
+        webClient.post()
+            .uri("/idpay/transactions/errors/replay")
+            .bodyValue(request)
+            .exchange()
+            .expectStatus().isAccepted()
+            .expectBody(String.class).isEqualTo("JOBID");
+
+        Mockito.verify(errorReplayService).checkReplayable("rewardTrxConsumer-in-0");
+        Mockito.verify(errorReplayService).replay(Mockito.eq(request), Mockito.any());
+    }
+
+    @Test
+    void replayErrorsInvalidBinding() {
+        ErrorReplayRequest request = ErrorReplayRequest.builder()
+            .binding("UNKNOWN")
+            .build();
+        Mockito.doThrow(new ClientExceptionWithBody(HttpStatus.BAD_REQUEST, ExceptionConstants.ExceptionCode.ERROR_REPLAY_INVALID_BINDING, "INVALID"))
+            .when(errorReplayService).checkReplayable("UNKNOWN");
+
+        webClient.post()
+            .uri("/idpay/transactions/errors/replay")
+            .bodyValue(request)
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody(ErrorDTO.class).isEqualTo(new ErrorDTO(ExceptionConstants.ExceptionCode.ERROR_REPLAY_INVALID_BINDING, "INVALID"));
+
+        Mockito.verify(adminJobService, Mockito.never()).start(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void cleanupInvoicedTransactions_alreadyRunning() {
+        Mockito.doReturn(Mono.error(new ClientExceptionWithBody(HttpStatus.CONFLICT, ExceptionConstants.ExceptionCode.ADMIN_JOB_ALREADY_RUNNING, "RUNNING")))
+            .when(adminJobService).start(Mockito.eq(AdminJobType.BATCH_ASSIGNMENT), Mockito.any(), Mockito.any());
+
+        webClient.post()
+            .uri("/idpay/transactions/cleanup")
+            .exchange()
+            .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+            .expectBody(ErrorDTO.class).isEqualTo(new ErrorDTO(ExceptionConstants.ExceptionCode.ADMIN_JOB_ALREADY_RUNNING, "RUNNING"));
+
+        Mockito.verifyNoInteractions(rewardTransactionService);
+    }
+}
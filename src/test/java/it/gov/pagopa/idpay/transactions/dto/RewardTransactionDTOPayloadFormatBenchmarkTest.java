@@ -0,0 +1,87 @@
+package it.gov.pagopa.idpay.transactions.dto;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import it.gov.pagopa.common.kafka.utils.KafkaPayloadFormat;
+import it.gov.pagopa.common.utils.TestUtils;
+import it.gov.pagopa.idpay.transactions.test.fakers.RewardTransactionDTOFaker;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * It will compare, on faked {@link RewardTransactionDTO}, the payload size and the serialize/parse cost of each {@link KafkaPayloadFormat}.<br />
+ * The number of measured iterations can be raised through the <i>benchmark.iterations</i> system property in order to obtain stable timings.
+ */
+@Slf4j
+class RewardTransactionDTOPayloadFormatBenchmarkTest {
+
+    private static final int TRANSACTIONS = 200;
+    private static final int WARMUP_ITERATIONS = 20;
+
+    private record BenchmarkResult(double avgBytes, double serializeNanos, double parseNanos) {}
+
+    @Test
+    void benchmark() throws IOException {
+        int iterations = Integer.getInteger("benchmark.iterations", 20);
+        List<RewardTransactionDTO> trxs = IntStream.range(0, TRANSACTIONS).mapToObj(RewardTransactionDTOFaker::mockInstance).toList();
+
+        Map<KafkaPayloadFormat, BenchmarkResult> results = new EnumMap<>(KafkaPayloadFormat.class);
+        for (KafkaPayloadFormat format : KafkaPayloadFormat.values()) {
+            ObjectWriter writer = format.adapt(TestUtils.objectMapper).writerFor(RewardTransactionDTO.class);
+            ObjectReader reader = format.adapt(TestUtils.objectMapper.readerFor(RewardTransactionDTO.class));
+
+            List<byte[]> payloads = new ArrayList<>(TRANSACTIONS);
+            for (RewardTransactionDTO trx : trxs) {
+                byte[] payload = writer.writeValueAsBytes(trx);
+                Assertions.assertEquals(TestUtils.objectMapper.valueToTree(trx), TestUtils.objectMapper.valueToTree(reader.readValue(payload)), format.name());
+                payloads.add(payload);
+            }
+
+            measure(writer, reader, trxs, payloads, WARMUP_ITERATIONS);
+            long[] nanos = measure(writer, reader, trxs, payloads, iterations);
+
+            long operations = (long) iterations * TRANSACTIONS;
+            results.put(format, new BenchmarkResult(
+                    payloads.stream().mapToInt(p -> p.length).average().orElse(0),
+                    (double) nanos[0] / operations,
+                    (double) nanos[1] / operations));
+        }
+
+        results.forEach((format, r) -> log.info("[PAYLOAD_FORMAT_BENCHMARK] {}: avg size {} bytes; serialize {} ns/op; parse {} ns/op",
+                format, Math.round(r.avgBytes()), Math.round(r.serializeNanos()), Math.round(r.parseNanos())));
+
+        double jsonBytes = results.get(KafkaPayloadFormat.JSON).avgBytes();
+        Assertions.assertTrue(results.get(KafkaPayloadFormat.CBOR).avgBytes() < jsonBytes);
+        Assertions.assertTrue(results.get(KafkaPayloadFormat.SMILE).avgBytes() < jsonBytes);
+    }
+
+    /** It will return the nanoseconds spent serializing and parsing the whole set of transactions the given number of times */
+    private static long[] measure(ObjectWriter writer, ObjectReader reader, List<RewardTransactionDTO> trxs, List<byte[]> payloads, int iterations) throws IOException {
+        long serializeNanos = 0;
+        long parseNanos = 0;
+        long blackhole = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            for (RewardTransactionDTO trx : trxs) {
+                blackhole += writer.writeValueAsBytes(trx).length;
+            }
+            serializeNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (byte[] payload : payloads) {
+                blackhole += reader.<RewardTransactionDTO>readValue(payload).hashCode();
+            }
+            parseNanos += System.nanoTime() - start;
+        }
+        Assertions.assertNotEquals(Long.MIN_VALUE, blackhole);
+        return new long[]{serializeNanos, parseNanos};
+    }
+}
@@ -0,0 +1,80 @@
+package it.gov.pagopa.idpay.transactions.dto.mapper;
+
+import it.gov.pagopa.idpay.transactions.dto.AdminJobDTO;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobStatus;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdminJobMapperTest {
+
+    private final AdminJobMapper mapper = new AdminJobMapper();
+
+    @Test
+    void toDTO_endedJob() {
+        LocalDateTime startDate = LocalDateTime.of(2025, 11, 1, 10, 0);
+        AdminJob job = AdminJob.builder()
+                .id("JOBID")
+                .type(AdminJobType.BATCH_ASSIGNMENT)
+                .parameters("PARAMETERS")
+                .status(AdminJobStatus.COMPLETED)
+                .processed(1_000L)
+                .result(1_000L)
+                .startDate(startDate)
+                .updateDate(startDate.plusSeconds(1))
+                .endDate(startDate.plusSeconds(10))
+                .build();
+
+        AdminJobDTO result = mapper.toDTO(job);
+
+        assertEquals("JOBID", result.getId());
+        assertEquals(AdminJobType.BATCH_ASSIGNMENT, result.getType());
+        assertEquals("PARAMETERS", result.getParameters());
+        assertEquals(AdminJobStatus.COMPLETED, result.getStatus());
+        assertEquals(1_000L, result.getProcessed());
+        assertEquals(10_000L, result.getElapsedMillis());
+        assertEquals(100L, result.getProcessedPerSecond());
+        assertEquals(1_000L, result.getResult());
+        assertEquals(startDate.plusSeconds(10), result.getEndDate());
+    }
+
+    @Test
+    void toDTO_runningJob() {
+        LocalDateTime startDate = LocalDateTime.of(2025, 11, 1, 10, 0);
+        AdminJob job = AdminJob.builder()
+                .id("JOBID")
+                .status(AdminJobStatus.RUNNING)
+                .cancelRequested(true)
+                .processed(50L)
+                .startDate(startDate)
+                .updateDate(startDate.plusSeconds(5))
+                .build();
+
+        AdminJobDTO result = mapper.toDTO(job);
+
+        assertTrue(result.isCancelRequested());
+        assertEquals(5_000L, result.getElapsedMillis());
+        assertEquals(10L, result.getProcessedPerSecond());
+        assertNull(result.getEndDate());
+    }
+
+    @Test
+    void toDTO_justStartedJob() {
+        LocalDateTime startDate = LocalDateTime.of(2025, 11, 1, 10, 0);
+        AdminJob job = AdminJob.builder()
+                .id("JOBID")
+                .status(AdminJobStatus.RUNNING)
+                .startDate(startDate)
+                .updateDate(startDate)
+                .build();
+
+        AdminJobDTO result = mapper.toDTO(job);
+
+        assertEquals(0L, result.getElapsedMillis());
+        assertEquals(0L, result.getProcessedPerSecond());
+    }
+}
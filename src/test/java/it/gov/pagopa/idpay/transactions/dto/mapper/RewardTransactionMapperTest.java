@@ -51,7 +51,7 @@ class RewardTransactionMapperTest {
                 "additionalProperties", "invoiceData", "creditNoteData", "trxCode", "rewardBatchId",
                 "rewardBatchTrxStatus", "rewardBatchRejectionReason", "rewardBatchInclusionDate",
                 "franchiseName", "pointOfSaleType", "businessName", "invoiceUploadDate", "updateDate",
-                "extendedAuthorization", "voucherAmountCents","initiativeId", "rewardBatchLastMonthElaborated");
+                "extendedAuthorization", "voucherAmountCents","initiativeId", "rewardBatchLastMonthElaborated", "contentFingerprint", "rewardBatchStatusUpdateId");
 
         assertNotNull(resultRejected);
         assertCommonFields(resultRejected, rejectedTrx);
@@ -61,7 +61,7 @@ class RewardTransactionMapperTest {
                 "invoiceData", "creditNoteData", "trxCode", "rewardBatchId", "rewardBatchTrxStatus",
                 "rewardBatchRejectionReason", "rewardBatchInclusionDate", "franchiseName", "pointOfSaleType",
                 "businessName", "invoiceUploadDate", "updateDate", "extendedAuthorization",
-                "voucherAmountCents","initiativeId", "rewardBatchLastMonthElaborated");
+                "voucherAmountCents","initiativeId", "rewardBatchLastMonthElaborated", "contentFingerprint", "rewardBatchStatusUpdateId");
     }
 
     @Test
@@ -79,7 +79,7 @@ class RewardTransactionMapperTest {
                 "additionalProperties", "invoiceData", "creditNoteData", "trxCode", "rewardBatchId",
                 "rewardBatchTrxStatus", "rewardBatchRejectionReason", "rewardBatchInclusionDate",
                 "franchiseName", "pointOfSaleType", "businessName", "invoiceUploadDate", "updateDate",
-                "extendedAuthorization", "voucherAmountCents","initiativeId", "rewardBatchLastMonthElaborated");
+                "extendedAuthorization", "voucherAmountCents","initiativeId", "rewardBatchLastMonthElaborated", "contentFingerprint", "rewardBatchStatusUpdateId");
 
         String expectedId = rewardTrx.getIdTrxAcquirer()
                 .concat(rewardTrx.getAcquirerCode())
@@ -105,7 +105,7 @@ class RewardTransactionMapperTest {
                 "additionalProperties", "invoiceData", "creditNoteData", "trxCode", "rewardBatchId",
                 "rewardBatchTrxStatus", "rewardBatchRejectionReason", "rewardBatchInclusionDate",
                 "franchiseName", "pointOfSaleType", "businessName", "invoiceUploadDate", "updateDate",
-                "extendedAuthorization", "voucherAmountCents","initiativeId", "rewardBatchLastMonthElaborated");
+                "extendedAuthorization", "voucherAmountCents","initiativeId", "rewardBatchLastMonthElaborated", "contentFingerprint", "rewardBatchStatusUpdateId");
         TestUtils.checkNotNullFields(result.getRefundInfo());
     }
 
@@ -15,7 +15,7 @@ class CommandsConsumerConfigTest {
         CommandsConsumerConfig commandsConsumer = new CommandsConsumerConfig();
         CommandsMediatorService commandsMediatorServiceMock = Mockito.mock(CommandsMediatorService.class);
 
-        Consumer<Flux<Message<String>>> result = commandsConsumer.consumerCommands(commandsMediatorServiceMock);
+        Consumer<Flux<Message<byte[]>>> result = commandsConsumer.consumerCommands(commandsMediatorServiceMock);
 
         Assertions.assertNotNull(result);
     }
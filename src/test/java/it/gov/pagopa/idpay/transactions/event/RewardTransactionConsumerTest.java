@@ -15,7 +15,7 @@ class RewardTransactionConsumerTest {
         RewardTransactionConsumer rewardTransactionConsumer = new RewardTransactionConsumer();
         PersistenceTransactionMediator persistenceTransactionMediatorMock = Mockito.mock(PersistenceTransactionMediator.class);
 
-        Consumer<Flux<Message<String>>> result = rewardTransactionConsumer.rewardTrxConsumer(persistenceTransactionMediatorMock);
+        Consumer<Flux<Message<byte[]>>> result = rewardTransactionConsumer.rewardTrxConsumer(persistenceTransactionMediatorMock);
 
         Assertions.assertNotNull(result);
     }
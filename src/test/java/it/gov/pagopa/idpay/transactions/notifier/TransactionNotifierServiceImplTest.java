@@ -1,14 +1,23 @@
 package it.gov.pagopa.idpay.transactions.notifier;
 
+import it.gov.pagopa.common.kafka.utils.KafkaPayloadFormat;
+import it.gov.pagopa.common.reactive.kafka.producer.KafkaBatchPublisher;
+import it.gov.pagopa.common.utils.TestUtils;
 import it.gov.pagopa.idpay.transactions.dto.RewardTransactionKafkaDTO;
 import it.gov.pagopa.idpay.transactions.enums.SyncTrxStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.cloud.stream.function.StreamBridge;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.util.List;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -18,6 +27,7 @@ import static org.mockito.Mockito.*;
 class TransactionNotifierServiceImplTest {
 
     private StreamBridge streamBridge;
+    private KafkaBatchPublisher transactionOutcomePublisher;
     private TransactionNotifierServiceImpl service;
 
     private static final String BINDER = "kafka";
@@ -26,7 +36,8 @@ class TransactionNotifierServiceImplTest {
     @BeforeEach
     void setUp() {
         streamBridge = mock(StreamBridge.class);
-        service = new TransactionNotifierServiceImpl(streamBridge, BINDER);
+        transactionOutcomePublisher = mock(KafkaBatchPublisher.class);
+        service = new TransactionNotifierServiceImpl(streamBridge, BINDER, KafkaPayloadFormat.JSON, TestUtils.objectMapper, transactionOutcomePublisher);
     }
 
     @Test
@@ -45,6 +56,91 @@ class TransactionNotifierServiceImplTest {
                 .send(eq("transactionOutcome-out-0"), eq(BINDER), any(Message.class));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    void notify_shouldSendBinaryPayloadWhenConfigured() throws Exception {
+        service = new TransactionNotifierServiceImpl(streamBridge, BINDER, KafkaPayloadFormat.CBOR, TestUtils.objectMapper, transactionOutcomePublisher);
+        RewardTransactionKafkaDTO trx = new RewardTransactionKafkaDTO();
+        trx.setId("TRXID");
+        trx.setStatus(SyncTrxStatus.REFUNDED.name());
+
+        when(streamBridge.send(eq("transactionOutcome-out-0"), eq(BINDER), any(Message.class)))
+                .thenReturn(true);
+
+        assertThat(service.notify(trx, KEY)).isTrue();
+
+        ArgumentCaptor<Message<byte[]>> messageCaptor = ArgumentCaptor.forClass(Message.class);
+        verify(streamBridge).send(eq("transactionOutcome-out-0"), eq(BINDER), messageCaptor.capture());
+        Message<byte[]> message = messageCaptor.getValue();
+        assertThat(message.getHeaders())
+                .containsEntry(MessageHeaders.CONTENT_TYPE, "application/cbor")
+                .containsEntry(KafkaHeaders.KEY, KEY)
+                .containsEntry("operationType", "REFUNDED");
+        RewardTransactionKafkaDTO sent = KafkaPayloadFormat.CBOR.adapt(TestUtils.objectMapper.readerFor(RewardTransactionKafkaDTO.class)).readValue(message.getPayload());
+        assertThat(sent.getId()).isEqualTo("TRXID");
+        assertThat(sent.getStatus()).isEqualTo(SyncTrxStatus.REFUNDED.name());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void publish_shouldSendSerializedMessage() throws Exception {
+        RewardTransactionKafkaDTO trx = new RewardTransactionKafkaDTO();
+        trx.setId("TRXID");
+        trx.setStatus(SyncTrxStatus.REFUNDED.name());
+
+        when(transactionOutcomePublisher.send(any(Message.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.publish(trx, KEY)).verifyComplete();
+
+        ArgumentCaptor<Message<byte[]>> messageCaptor = ArgumentCaptor.forClass(Message.class);
+        verify(transactionOutcomePublisher).send(messageCaptor.capture());
+        Message<byte[]> message = messageCaptor.getValue();
+        assertThat(message.getHeaders())
+                .containsEntry(MessageHeaders.CONTENT_TYPE, "application/json")
+                .containsEntry(KafkaHeaders.KEY, KEY)
+                .containsEntry("operationType", "REFUNDED");
+        RewardTransactionKafkaDTO sent = TestUtils.objectMapper.readValue(message.getPayload(), RewardTransactionKafkaDTO.class);
+        assertThat(sent.getId()).isEqualTo("TRXID");
+        verifyNoInteractions(streamBridge);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void publish_shouldPropagateSendError() {
+        RewardTransactionKafkaDTO trx = new RewardTransactionKafkaDTO();
+        trx.setStatus("AUTHORIZED");
+
+        when(transactionOutcomePublisher.send(any(Message.class))).thenReturn(Mono.error(new IllegalStateException("DUMMY_SEND_ERROR")));
+
+        StepVerifier.create(service.publish(trx, KEY))
+                .expectErrorMessage("DUMMY_SEND_ERROR")
+                .verify();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void publishAll_shouldSerializeEachMessage() throws Exception {
+        service = new TransactionNotifierServiceImpl(streamBridge, BINDER, KafkaPayloadFormat.CBOR, TestUtils.objectMapper, transactionOutcomePublisher);
+        RewardTransactionKafkaDTO trx = new RewardTransactionKafkaDTO();
+        trx.setId("TRXID");
+        trx.setStatus("AUTHORIZED");
+        Message<RewardTransactionKafkaDTO> source = service.buildMessage(trx, KEY);
+
+        when(transactionOutcomePublisher.publish(any(Flux.class), any(Function.class)))
+                .thenAnswer(i -> {
+                    Function<Message<RewardTransactionKafkaDTO>, Message<byte[]>> encoder = i.getArgument(1);
+                    return ((Flux<Message<RewardTransactionKafkaDTO>>) i.getArgument(0))
+                            .map(m -> new KafkaBatchPublisher.SendResult<>(m, null, encoder.apply(m).getPayload().length > 0 ? null : new IllegalStateException()));
+                });
+
+        List<KafkaBatchPublisher.SendResult<Message<RewardTransactionKafkaDTO>>> results = service.publishAll(Flux.just(source)).collectList().block();
+
+        assertThat(results).hasSize(1);
+        assertThat(results.getFirst().source()).isSameAs(source);
+        assertThat(results.getFirst().isSent()).isTrue();
+        verifyNoInteractions(streamBridge);
+    }
+
     @Test
     void buildMessage_shouldAddRefundedHeaderWhenStatusIsRefunded() {
         RewardTransactionKafkaDTO trx = new RewardTransactionKafkaDTO();
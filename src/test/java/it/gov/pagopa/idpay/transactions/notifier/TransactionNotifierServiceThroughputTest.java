@@ -0,0 +1,139 @@
+package it.gov.pagopa.idpay.transactions.notifier;
+
+import it.gov.pagopa.common.kafka.utils.KafkaPayloadFormat;
+import it.gov.pagopa.common.reactive.kafka.producer.KafkaBatchPublisher;
+import it.gov.pagopa.common.utils.TestUtils;
+import it.gov.pagopa.idpay.transactions.dto.RewardTransactionKafkaDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * It will compare, on an embedded broker, the publication of the same transaction outcomes through {@link TransactionNotifierService#notify(RewardTransactionKafkaDTO, String)},
+ * waiting for each send as the binding does when its outcome is required, against the batched publication of {@link TransactionNotifierService#publishAll(Flux)}.<br />
+ * The number of notifications is configurable through the system property <i>benchmark.outcome-publisher.notifications</i>
+ */
+@Slf4j
+class TransactionNotifierServiceThroughputTest {
+
+    private static final int NOTIFICATIONS = Integer.getInteger("benchmark.outcome-publisher.notifications", 10_000);
+    private static final String STREAM_BRIDGE_TOPIC = "idpay-transaction-stream-bridge";
+    private static final String PUBLISHER_TOPIC = "idpay-transaction-publisher";
+
+    private static EmbeddedKafkaBroker kafkaBroker;
+
+    @BeforeAll
+    static void startBroker() {
+        kafkaBroker = new EmbeddedKafkaKraftBroker(1, 2, STREAM_BRIDGE_TOPIC, PUBLISHER_TOPIC);
+        kafkaBroker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        kafkaBroker.destroy();
+    }
+
+    @Test
+    void testOutcomeThroughput() throws Exception {
+        long streamBridgeMillis;
+        try (KafkaProducer<String, byte[]> producer = buildProducer()) {
+            StreamBridge streamBridge = Mockito.mock(StreamBridge.class);
+            Mockito.when(streamBridge.send(Mockito.anyString(), Mockito.anyString(), Mockito.any(Object.class)))
+                    .thenAnswer(i -> sendSync(producer, i.getArgument(2)));
+            TransactionNotifierService streamBridgeNotifier = buildNotifier(streamBridge, null);
+
+            long startTime = System.currentTimeMillis();
+            for (int i = 0; i < NOTIFICATIONS; i++) {
+                Assertions.assertTrue(streamBridgeNotifier.notify(buildTrx(i), "USERID_%d".formatted(i)));
+            }
+            streamBridgeMillis = System.currentTimeMillis() - startTime;
+        }
+
+        long publisherMillis;
+        try (KafkaBatchPublisher publisher = new KafkaBatchPublisher(TransactionNotifierServiceThroughputTest::buildProducer, PUBLISHER_TOPIC, 500, Duration.ofMillis(10), 4, 10_000)) {
+            TransactionNotifierService publisherNotifier = buildNotifier(Mockito.mock(StreamBridge.class), publisher);
+
+            long startTime = System.currentTimeMillis();
+            Long sent = publisherNotifier.publishAll(Flux.range(0, NOTIFICATIONS)
+                            .map(i -> publisherNotifier.buildMessage(buildTrx(i), "USERID_%d".formatted(i))))
+                    .filter(KafkaBatchPublisher.SendResult::isSent)
+                    .count()
+                    .block(Duration.ofMinutes(5));
+            publisherMillis = System.currentTimeMillis() - startTime;
+            Assertions.assertEquals(NOTIFICATIONS, sent);
+        }
+
+        log.info("[OUTCOME_PUBLISHER_BENCHMARK] Publication of {} transaction outcomes: one send at a time {} msg/s ({} ms), batched publisher {} msg/s ({} ms)",
+                NOTIFICATIONS,
+                NOTIFICATIONS * 1000L / Math.max(1, streamBridgeMillis), streamBridgeMillis,
+                NOTIFICATIONS * 1000L / Math.max(1, publisherMillis), publisherMillis);
+
+        Assertions.assertEquals(NOTIFICATIONS, countRecords(STREAM_BRIDGE_TOPIC));
+        Assertions.assertEquals(NOTIFICATIONS, countRecords(PUBLISHER_TOPIC));
+    }
+
+    private static TransactionNotifierService buildNotifier(StreamBridge streamBridge, KafkaBatchPublisher publisher) {
+        return new TransactionNotifierServiceImpl(streamBridge, "transaction-outcome", KafkaPayloadFormat.JSON, TestUtils.objectMapper, publisher);
+    }
+
+    /** As the binding would do when configured to send synchronously: the JSON conversion of the payload followed by a send waiting for its acknowledgement */
+    private static boolean sendSync(KafkaProducer<String, byte[]> producer, Message<RewardTransactionKafkaDTO> message) throws Exception {
+        byte[] payload = TestUtils.objectMapper.writeValueAsBytes(message.getPayload());
+        producer.send(new ProducerRecord<>(STREAM_BRIDGE_TOPIC, (String) message.getHeaders().get(KafkaHeaders.KEY), payload)).get();
+        return true;
+    }
+
+    private static KafkaProducer<String, byte[]> buildProducer() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaBroker.getBrokersAsString());
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 2);
+        return new KafkaProducer<>(props, new StringSerializer(), new ByteArraySerializer());
+    }
+
+    private static RewardTransactionKafkaDTO buildTrx(int i) {
+        RewardTransactionKafkaDTO trx = new RewardTransactionKafkaDTO();
+        trx.setId("TRXID_%d".formatted(i));
+        trx.setUserId("USERID_%d".formatted(i));
+        trx.setMerchantId("MERCHANTID");
+        trx.setStatus("REFUNDED");
+        return trx;
+    }
+
+    private static long countRecords(String topic) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("outcome-benchmark-" + topic, "false", kafkaBroker);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        try (Consumer<String, byte[]> consumer = new KafkaConsumer<>(props, new StringDeserializer(), new ByteArrayDeserializer())) {
+            kafkaBroker.consumeFromAnEmbeddedTopic(consumer, topic);
+            long count = 0;
+            long deadline = System.currentTimeMillis() + 60_000;
+            while (count < NOTIFICATIONS && System.currentTimeMillis() < deadline) {
+                count += KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(5)).count();
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobStatus;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
+import it.gov.pagopa.idpay.transactions.model.AdminJobLock;
+import it.gov.pagopa.idpay.transactions.service.AdminJobService;
+import it.gov.pagopa.idpay.transactions.service.AdminJobServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@DirtiesContext
+@MongoTest
+class AdminJobSpecificRepositoryImplTest {
+
+    @Autowired
+    private AdminJobRepository adminJobRepository;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @BeforeEach
+    @AfterEach
+    void clearData() {
+        adminJobRepository.deleteAll().block();
+        mongoTemplate.dropCollection(AdminJobLock.class).block();
+    }
+
+    @Test
+    void testLock() {
+        LocalDateTime staleBefore = LocalDateTime.now().minusMinutes(1);
+
+        StepVerifier.create(adminJobRepository.acquireLock(AdminJobType.BATCH_ASSIGNMENT, "JOB1", staleBefore))
+                .verifyComplete();
+        StepVerifier.create(adminJobRepository.acquireLock(AdminJobType.BATCH_ASSIGNMENT, "JOB2", staleBefore))
+                .expectError(DuplicateKeyException.class)
+                .verify();
+        StepVerifier.create(adminJobRepository.acquireLock(AdminJobType.ERROR_REPLAY, "JOB3", staleBefore))
+                .verifyComplete();
+
+        adminJobRepository.releaseLock(AdminJobType.BATCH_ASSIGNMENT, "JOB2").block();
+        StepVerifier.create(adminJobRepository.acquireLock(AdminJobType.BATCH_ASSIGNMENT, "JOB2", staleBefore))
+                .expectError(DuplicateKeyException.class)
+                .verify();
+
+        adminJobRepository.releaseLock(AdminJobType.BATCH_ASSIGNMENT, "JOB1").block();
+        StepVerifier.create(adminJobRepository.acquireLock(AdminJobType.BATCH_ASSIGNMENT, "JOB2", staleBefore))
+                .assertNext(previous -> Assertions.assertNull(previous.getJobId()))
+                .verifyComplete();
+
+        StepVerifier.create(adminJobRepository.acquireLock(AdminJobType.BATCH_ASSIGNMENT, "JOB4", LocalDateTime.now().plusMinutes(1)))
+                .assertNext(previous -> Assertions.assertEquals("JOB2", previous.getJobId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void testProgressAndCompletion() {
+        AdminJob job = adminJobRepository.save(AdminJob.builder()
+                .id("JOBID")
+                .type(AdminJobType.BATCH_ASSIGNMENT)
+                .status(AdminJobStatus.RUNNING)
+                .startDate(LocalDateTime.now())
+                .build()).block();
+        Assertions.assertNotNull(job);
+
+        StepVerifier.create(adminJobRepository.updateProgress(job, 10L))
+                .assertNext(j -> {
+                    Assertions.assertEquals(10L, j.getProcessed());
+                    Assertions.assertFalse(j.isCancelRequested());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(adminJobRepository.requestCancellation("JOBID"))
+                .assertNext(j -> Assertions.assertTrue(j.isCancelRequested()))
+                .verifyComplete();
+
+        StepVerifier.create(adminJobRepository.complete("JOBID", AdminJobStatus.CANCELLED, 20L, null, null))
+                .assertNext(j -> {
+                    Assertions.assertEquals(AdminJobStatus.CANCELLED, j.getStatus());
+                    Assertions.assertEquals(20L, j.getProcessed());
+                    Assertions.assertNotNull(j.getEndDate());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(adminJobRepository.updateProgress(job, 30L)).verifyComplete();
+        StepVerifier.create(adminJobRepository.requestCancellation("JOBID")).verifyComplete();
+        StepVerifier.create(adminJobRepository.complete("JOBID", AdminJobStatus.COMPLETED, 30L, null, null)).verifyComplete();
+    }
+
+    @Test
+    void testConcurrentStartsAndCancellation() {
+        AdminJobService adminJobService = new AdminJobServiceImpl(adminJobRepository, 1, 60);
+
+        AdminJob running = adminJobService.start(AdminJobType.BATCH_ASSIGNMENT, null, progress -> Mono.never()).block();
+        Assertions.assertNotNull(running);
+
+        StepVerifier.create(adminJobService.start(AdminJobType.BATCH_ASSIGNMENT, null, progress -> Mono.empty()))
+                .expectErrorMatches(e -> e.getMessage().contains("already running"))
+                .verify();
+
+        AdminJob cancelled = adminJobService.cancel(running.getId()).block();
+        Assertions.assertNotNull(cancelled);
+        Assertions.assertTrue(cancelled.isCancelRequested());
+
+        AdminJob ended = Mono.defer(() -> adminJobService.getJob(running.getId()))
+                .filter(j -> j.getStatus() != AdminJobStatus.RUNNING)
+                .repeatWhenEmpty(r -> r.delayElements(Duration.ofMillis(100)).take(50))
+                .block();
+        Assertions.assertNotNull(ended);
+        Assertions.assertEquals(AdminJobStatus.CANCELLED, ended.getStatus());
+
+        AdminJob next = adminJobService.start(AdminJobType.BATCH_ASSIGNMENT, null, progress -> Mono.empty()).block();
+        Assertions.assertNotNull(next);
+    }
+}
@@ -0,0 +1,142 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.idpay.transactions.enums.CommandJobStatus;
+import it.gov.pagopa.idpay.transactions.model.CommandJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+
+@DirtiesContext
+@MongoTest
+class CommandJobSpecificRepositoryImplTest {
+
+    private static final String JOB_ID = "DELETE_INITIATIVE_INITIATIVEID";
+
+    @Autowired
+    private CommandJobRepository commandJobRepository;
+
+    @BeforeEach
+    @AfterEach
+    void clearData() {
+        commandJobRepository.deleteAll().block();
+    }
+
+    @Test
+    void testEnqueue() {
+        LocalDateTime operationTime = LocalDateTime.now().minusMinutes(1);
+
+        Assertions.assertEquals(true, commandJobRepository.enqueue(buildJob(operationTime)).block());
+        // the same command while not ended
+        Assertions.assertEquals(false, commandJobRepository.enqueue(buildJob(operationTime.plusSeconds(1))).block());
+
+        CommandJob claimed = commandJobRepository.claimNext("CLAIMID", LocalDateTime.now().plusMinutes(1)).block();
+        Assertions.assertNotNull(claimed);
+        commandJobRepository.checkpoint(JOB_ID, "CLAIMID", "STEP", "ID_10", 10L, LocalDateTime.now().plusMinutes(1)).block();
+        commandJobRepository.complete(JOB_ID, "CLAIMID").block();
+
+        // a redelivery of an already executed command
+        Assertions.assertEquals(false, commandJobRepository.enqueue(buildJob(operationTime)).block());
+        Assertions.assertEquals(CommandJobStatus.COMPLETED, commandJobRepository.findById(JOB_ID).map(CommandJob::getStatus).block());
+
+        // a new command on the same entity
+        Assertions.assertEquals(true, commandJobRepository.enqueue(buildJob(operationTime.plusMinutes(1))).block());
+        CommandJob requeued = commandJobRepository.findById(JOB_ID).block();
+        Assertions.assertNotNull(requeued);
+        Assertions.assertEquals(CommandJobStatus.PENDING, requeued.getStatus());
+        Assertions.assertNull(requeued.getStep());
+        Assertions.assertNull(requeued.getCheckpoint());
+        Assertions.assertEquals(0L, requeued.getProcessed());
+        Assertions.assertNull(requeued.getEndDate());
+    }
+
+    @Test
+    void testClaimAndCheckpoint() {
+        commandJobRepository.enqueue(buildJob(LocalDateTime.now())).block();
+
+        CommandJob claimed = commandJobRepository.claimNext("CLAIMID", LocalDateTime.now().plusMinutes(1)).block();
+        Assertions.assertNotNull(claimed);
+        Assertions.assertEquals(CommandJobStatus.RUNNING, claimed.getStatus());
+        Assertions.assertEquals("CLAIMID", claimed.getClaimId());
+
+        // still claimed
+        StepVerifier.create(commandJobRepository.claimNext("CLAIMID2", LocalDateTime.now().plusMinutes(1)))
+                .verifyComplete();
+
+        StepVerifier.create(commandJobRepository.checkpoint(JOB_ID, "CLAIMID", "STEP", "ID_10", 10L, LocalDateTime.now().minusSeconds(1)))
+                .assertNext(j -> {
+                    Assertions.assertEquals("STEP", j.getStep());
+                    Assertions.assertEquals("ID_10", j.getCheckpoint());
+                    Assertions.assertEquals(10L, j.getProcessed());
+                })
+                .verifyComplete();
+
+        // claim expired: taken by another worker, resuming from the checkpoint
+        StepVerifier.create(commandJobRepository.claimNext("CLAIMID2", LocalDateTime.now().plusMinutes(1)))
+                .assertNext(j -> {
+                    Assertions.assertEquals("CLAIMID2", j.getClaimId());
+                    Assertions.assertEquals("ID_10", j.getCheckpoint());
+                })
+                .verifyComplete();
+
+        // the previous worker lost its claim
+        StepVerifier.create(commandJobRepository.checkpoint(JOB_ID, "CLAIMID", "STEP", "ID_20", 20L, LocalDateTime.now().plusMinutes(1)))
+                .verifyComplete();
+        StepVerifier.create(commandJobRepository.complete(JOB_ID, "CLAIMID"))
+                .verifyComplete();
+
+        StepVerifier.create(commandJobRepository.complete(JOB_ID, "CLAIMID2"))
+                .assertNext(j -> {
+                    Assertions.assertEquals(CommandJobStatus.COMPLETED, j.getStatus());
+                    Assertions.assertNull(j.getClaimId());
+                    Assertions.assertNotNull(j.getEndDate());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testFail() {
+        commandJobRepository.enqueue(buildJob(LocalDateTime.now())).block();
+        commandJobRepository.claimNext("CLAIMID", LocalDateTime.now().plusMinutes(1)).block();
+
+        StepVerifier.create(commandJobRepository.fail(JOB_ID, "CLAIMID", "ERROR", LocalDateTime.now().minusSeconds(1)))
+                .assertNext(j -> {
+                    Assertions.assertEquals(CommandJobStatus.PENDING, j.getStatus());
+                    Assertions.assertEquals(1, j.getAttempts());
+                    Assertions.assertEquals("ERROR", j.getLastError());
+                })
+                .verifyComplete();
+
+        commandJobRepository.claimNext("CLAIMID2", LocalDateTime.now().plusMinutes(1)).block();
+        StepVerifier.create(commandJobRepository.fail(JOB_ID, "CLAIMID2", "ERROR2", null))
+                .assertNext(j -> {
+                    Assertions.assertEquals(CommandJobStatus.FAILED, j.getStatus());
+                    Assertions.assertEquals(2, j.getAttempts());
+                    Assertions.assertNotNull(j.getEndDate());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(commandJobRepository.claimNext("CLAIMID3", LocalDateTime.now().plusMinutes(1)))
+                .verifyComplete();
+    }
+
+    private static CommandJob buildJob(LocalDateTime operationTime) {
+        LocalDateTime now = LocalDateTime.now();
+        return CommandJob.builder()
+                .id(JOB_ID)
+                .operationType("DELETE_INITIATIVE")
+                .entityId("INITIATIVEID")
+                .operationTime(operationTime)
+                .status(CommandJobStatus.PENDING)
+                .availableDate(now)
+                .creationDate(now)
+                .updateDate(now)
+                .build();
+    }
+}
@@ -273,4 +273,25 @@ class ReportSpecificRepositoryImplTest {
                 .verifyComplete();
     }
 
+    @Test
+    void deleteByInitiativeIdInRange_shouldDeleteInChunks() {
+        reportRepository.saveAll(List.of(
+                Report.builder().initiativeId(INITIATIVE_ID).merchantId(MERCHANT_ID).build(),
+                Report.builder().initiativeId(INITIATIVE_ID).merchantId(MERCHANT_ID).build(),
+                Report.builder().initiativeId(INITIATIVE_ID).merchantId(MERCHANT_ID).build(),
+                Report.builder().initiativeId("OTHER_INITIATIVE").merchantId(MERCHANT_ID).build()
+        )).blockLast();
+
+        String upToId = reportSpecificRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, null, 2).block();
+        assertNotNull(upToId);
+        assertEquals(2L, reportSpecificRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, null, upToId).block());
+
+        assertNull(reportSpecificRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, upToId, 2).block());
+        assertEquals(1L, reportSpecificRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, upToId, null).block());
+
+        StepVerifier.create(reportRepository.findAll())
+                .assertNext(r -> assertEquals("OTHER_INITIATIVE", r.getInitiativeId()))
+                .verifyComplete();
+    }
+
 }
@@ -0,0 +1,217 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.enums.PosType;
+import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
+import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterMarker;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterStripe;
+import it.gov.pagopa.idpay.transactions.service.RewardBatchCounterStripeService;
+import it.gov.pagopa.idpay.transactions.service.RewardBatchCounterStripeServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BiFunction;
+
+@Slf4j
+@DirtiesContext
+@MongoTest
+class RewardBatchCounterStripeSpecificRepositoryImplTest {
+
+    private static final String BATCH_ID = "HOT_BATCH";
+    private static final int INCREMENTS = 2_000;
+    private static final int CONCURRENCY = 32;
+    private static final int STRIPES = 8;
+
+    @Autowired
+    private RewardBatchRepository rewardBatchRepository;
+    @Autowired
+    private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private RewardBatchCounterStripeService rewardBatchCounterStripeService;
+
+    @BeforeEach
+    void setUp() {
+        rewardBatchCounterStripeService = new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepository, rewardBatchRepository, STRIPES);
+        clearData();
+    }
+
+    @AfterEach
+    void clearData() {
+        rewardBatchRepository.deleteAll().block();
+        rewardBatchCounterStripeRepository.deleteAll().block();
+        mongoTemplate.remove(new Query(), RewardBatchCounterMarker.class).block();
+    }
+
+    @Test
+    void testIncrementStripe() {
+        BatchCountersDTO counters = BatchCountersDTO.newBatch()
+                .incrementNumberOfTransactions(1L)
+                .incrementInitialAmountCents(100L);
+
+        Assertions.assertEquals(Boolean.TRUE, rewardBatchCounterStripeRepository.incrementStripe(BATCH_ID, 3, List.of("TRXID1"), counters).block());
+        Assertions.assertEquals(Boolean.TRUE, rewardBatchCounterStripeRepository.incrementStripe(BATCH_ID, 3, List.of("TRXID2"), counters).block());
+        // redelivered transaction
+        Assertions.assertEquals(Boolean.FALSE, rewardBatchCounterStripeRepository.incrementStripe(BATCH_ID, 3, List.of("TRXID1"), counters).block());
+        Assertions.assertEquals(Boolean.FALSE, rewardBatchCounterStripeRepository.incrementStripe(BATCH_ID, 3, List.of("TRXID3", "TRXID2"), counters).block());
+
+        RewardBatchCounterStripe stripe = rewardBatchCounterStripeRepository.findById(RewardBatchCounterStripe.buildId(BATCH_ID, 3)).block();
+        Assertions.assertNotNull(stripe);
+        Assertions.assertEquals(BATCH_ID, stripe.getRewardBatchId());
+        Assertions.assertEquals(3, stripe.getStripe());
+        Assertions.assertEquals(2L, stripe.getNumberOfTransactions());
+        Assertions.assertEquals(200L, stripe.getInitialAmountCents());
+        Assertions.assertEquals(0L, stripe.getNumberOfTransactionsRejected());
+        Assertions.assertNotNull(stripe.getUpdateDate());
+        // the marker of the transaction not counted together with an already counted one is removed
+        Assertions.assertEquals(List.of(RewardBatchCounterMarker.buildId(BATCH_ID, "TRXID1"), RewardBatchCounterMarker.buildId(BATCH_ID, "TRXID2")), findMarkerIds());
+
+        RewardBatchCounterStripe counted = rewardBatchCounterStripeRepository.findCountersByRewardBatchIds(List.of(BATCH_ID)).single().block();
+        Assertions.assertNotNull(counted);
+        Assertions.assertEquals(2L, counted.getNumberOfTransactions());
+
+        Assertions.assertEquals(Boolean.FALSE, rewardBatchCounterStripeRepository.isSealed(BATCH_ID).block());
+        rewardBatchCounterStripeRepository.sealStripes(BATCH_ID, 4).block();
+        Assertions.assertEquals(Boolean.TRUE, rewardBatchCounterStripeRepository.isSealed(BATCH_ID).block());
+        Assertions.assertEquals(4, rewardBatchCounterStripeRepository.findCountersByRewardBatchIds(List.of(BATCH_ID)).count().block());
+        // increments of a sealed batch are rejected
+        Assertions.assertEquals(Boolean.FALSE, rewardBatchCounterStripeRepository.incrementStripe(BATCH_ID, 3, List.of("TRXID3"), counters).block());
+        Assertions.assertEquals(Boolean.FALSE, rewardBatchCounterStripeRepository.incrementStripe(BATCH_ID, 0, List.of("TRXID4"), counters).block());
+        Assertions.assertEquals(2, findMarkerIds().size());
+
+        RewardBatchCounterStripe drained = rewardBatchCounterStripeRepository.drainStripe(stripe.getId()).block();
+        Assertions.assertNotNull(drained);
+        Assertions.assertEquals(2L, drained.getNumberOfTransactions());
+        Assertions.assertEquals(200L, drained.getInitialAmountCents());
+        RewardBatchCounterStripe drainedAgain = rewardBatchCounterStripeRepository.drainStripe(stripe.getId()).block();
+        Assertions.assertNotNull(drainedAgain);
+        Assertions.assertEquals(0L, drainedAgain.getNumberOfTransactions());
+        Assertions.assertEquals(0L, drainedAgain.getInitialAmountCents());
+        Assertions.assertTrue(drainedAgain.isSealed());
+    }
+
+    private List<String> findMarkerIds() {
+        return mongoTemplate.findAll(RewardBatchCounterMarker.class)
+                .map(RewardBatchCounterMarker::getId)
+                .sort()
+                .collectList()
+                .block();
+    }
+
+    /**
+     * It will compare the throughput of concurrent increments on the same batch applied directly on it (a single document $inc) against the ones spread across stripes,
+     * checking that all of them are counted
+     */
+    @Test
+    void testConcurrentIncrementsOnHotBatch() {
+        rewardBatchRepository.save(buildBatch()).block();
+        long singleDocumentMillis = runIncrements((i, counters) -> rewardBatchRepository.updateTotals(BATCH_ID, counters).map(RewardBatch::getId));
+        RewardBatch singleDocumentBatch = rewardBatchRepository.findById(BATCH_ID).block();
+        checkTotals(singleDocumentBatch);
+
+        clearData();
+        rewardBatchRepository.save(buildBatch()).block();
+        long stripedMillis = runIncrements((i, counters) -> rewardBatchCounterStripeService.increment(BATCH_ID, "TRXID%d".formatted(i), counters));
+
+        log.info("[REWARD_BATCH_COUNTER_STRIPES] {} concurrent increments ({} in flight) on the same batch: single document {} ops/s ({} ms), {} stripes {} ops/s ({} ms)",
+                INCREMENTS, CONCURRENCY,
+                INCREMENTS * 1000L / Math.max(1, singleDocumentMillis), singleDocumentMillis,
+                STRIPES, INCREMENTS * 1000L / Math.max(1, stripedMillis), stripedMillis);
+
+        RewardBatch storedBatch = rewardBatchRepository.findById(BATCH_ID).block();
+        Assertions.assertNotNull(storedBatch);
+        Assertions.assertEquals(0L, storedBatch.getNumberOfTransactions());
+        Assertions.assertEquals(STRIPES, rewardBatchCounterStripeRepository.findCountersByRewardBatchIds(List.of(BATCH_ID)).count().block());
+        checkTotals(rewardBatchCounterStripeService.sumStripes(storedBatch).block());
+
+        RewardBatch compactedBatch = rewardBatchCounterStripeService.compact(rewardBatchRepository.findById(BATCH_ID).block()).block();
+        checkTotals(compactedBatch);
+        checkTotals(rewardBatchRepository.findById(BATCH_ID).block());
+        Assertions.assertEquals(STRIPES, compactedBatch.getFoldedStripeIds().size());
+        Assertions.assertEquals(Boolean.TRUE, rewardBatchCounterStripeRepository.findCountersByRewardBatchIds(List.of(BATCH_ID))
+                .all(s -> s.isSealed() && s.getNumberOfTransactions() == 0L).block());
+        checkTotals(rewardBatchCounterStripeService.sumStripes(rewardBatchRepository.findById(BATCH_ID).block()).block());
+
+        // compacting again does not count the stripes twice
+        checkTotals(rewardBatchCounterStripeService.compact(rewardBatchRepository.findById(BATCH_ID).block()).block());
+        checkTotals(rewardBatchRepository.findById(BATCH_ID).block());
+    }
+
+    @Test
+    void testFoldStripe() {
+        rewardBatchRepository.save(buildBatch()).block();
+        BatchCountersDTO counters = BatchCountersDTO.newBatch().incrementNumberOfTransactions(2L).incrementInitialAmountCents(200L);
+        String stripeId = RewardBatchCounterStripe.buildId(BATCH_ID, 0);
+
+        RewardBatch folded = rewardBatchRepository.foldStripe(BATCH_ID, stripeId, counters).block();
+        Assertions.assertNotNull(folded);
+        Assertions.assertEquals(2L, folded.getNumberOfTransactions());
+        Assertions.assertEquals(List.of(stripeId), folded.getFoldedStripeIds());
+        // a stripe already folded is not added again
+        Assertions.assertNull(rewardBatchRepository.foldStripe(BATCH_ID, stripeId, counters).block());
+        Assertions.assertEquals(2L, rewardBatchRepository.findById(BATCH_ID).block().getNumberOfTransactions());
+
+        // the recomputation of the totals forgets the folded stripes
+        RewardBatch recomputed = rewardBatchRepository.setTransactionTotals(BATCH_ID, 5L, 500L).block();
+        Assertions.assertNotNull(recomputed);
+        Assertions.assertNull(recomputed.getFoldedStripeIds());
+        Assertions.assertNotNull(rewardBatchRepository.foldStripe(BATCH_ID, stripeId, counters).block());
+    }
+
+    /** It will apply the increments concurrently, returning the elapsed millis */
+    private long runIncrements(BiFunction<Integer, BatchCountersDTO, Mono<String>> incrementer) {
+        long startTime = System.currentTimeMillis();
+        Long completed = Flux.range(0, INCREMENTS)
+                .flatMap(i -> incrementer.apply(i, BatchCountersDTO.newBatch()
+                                .incrementNumberOfTransactions(1L)
+                                .incrementInitialAmountCents((long) i)),
+                        CONCURRENCY)
+                .count()
+                .block(Duration.ofMinutes(2));
+        Assertions.assertEquals(INCREMENTS, completed);
+        return System.currentTimeMillis() - startTime;
+    }
+
+    private static void checkTotals(RewardBatch batch) {
+        Assertions.assertNotNull(batch);
+        Assertions.assertEquals(INCREMENTS, batch.getNumberOfTransactions());
+        Assertions.assertEquals((long) INCREMENTS * (INCREMENTS - 1) / 2, batch.getInitialAmountCents());
+    }
+
+    private static RewardBatch buildBatch() {
+        return RewardBatch.builder()
+                .id(BATCH_ID)
+                .merchantId("MERCHANT")
+                .month("2025-11")
+                .posType(PosType.PHYSICAL)
+                .status(RewardBatchStatus.CREATED)
+                .initialAmountCents(0L)
+                .numberOfTransactions(0L)
+                .build();
+    }
+
+    @Test
+    void testDeleteByRewardBatchIds() {
+        BatchCountersDTO counters = BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L);
+        rewardBatchCounterStripeRepository.incrementStripe(BATCH_ID, 0, List.of("TRXID0"), counters).block();
+        rewardBatchCounterStripeRepository.incrementStripe(BATCH_ID, 1, List.of("TRXID1"), counters).block();
+        rewardBatchCounterStripeRepository.incrementStripe("OTHER_BATCH", 0, List.of("TRXID2"), counters).block();
+
+        Assertions.assertEquals(2L, rewardBatchCounterStripeRepository.deleteByRewardBatchIds(List.of(BATCH_ID)).block());
+        Assertions.assertEquals(1L, rewardBatchCounterStripeRepository.count().block());
+    }
+}
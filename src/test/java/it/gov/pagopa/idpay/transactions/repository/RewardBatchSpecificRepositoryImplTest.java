@@ -820,5 +820,57 @@ class RewardBatchSpecificRepositoryImplTest {
         assertEquals("old-empty-1", result.get(0).getId());
         assertEquals("old-empty-2", result.get(1).getId());
     }
-}
 
+  @Test
+  void setTransactionTotals_ShouldOverrideTotals() {
+    batch1.setNumberOfTransactions(10L);
+    batch1.setInitialAmountCents(10000L);
+    rewardBatchRepository.save(batch1).block();
+
+    StepVerifier.create(rewardBatchSpecificRepository.setTransactionTotals(batch1.getId(), 2L, 1500L))
+            .assertNext(result -> {
+              assertEquals(2L, result.getNumberOfTransactions());
+              assertEquals(1500L, result.getInitialAmountCents());
+              assertNotNull(result.getUpdateDate());
+            })
+            .verifyComplete();
+  }
+
+  @Test
+  void bulkInsertIfMissing_shouldInsertJustMissingBatches() {
+    RewardBatch existing = RewardBatch.builder()
+        .merchantId(MERCHANT)
+        .posType(PosType.PHYSICAL)
+        .month("2025-11")
+        .name("OVERWRITTEN")
+        .status(RewardBatchStatus.CREATED)
+        .build();
+    RewardBatch missing = RewardBatch.builder()
+        .merchantId(MERCHANT)
+        .posType(PosType.PHYSICAL)
+        .month("2025-12")
+        .name("dicembre 2025")
+        .status(RewardBatchStatus.CREATED)
+        .numberOfTransactions(ZERO_LONG)
+        .build();
+
+    assertEquals(1, rewardBatchSpecificRepository.bulkInsertIfMissing(List.of(existing, missing)).block().getUpserts().size());
+    assertEquals(0, rewardBatchSpecificRepository.bulkInsertIfMissing(List.of(existing, missing)).block().getUpserts().size());
+
+    assertEquals("novembre 2025", rewardBatchRepository.findById("batch1").block().getName());
+    RewardBatch inserted = rewardBatchRepository.findByMerchantIdAndPosTypeAndMonth(MERCHANT, PosType.PHYSICAL, "2025-12").block();
+    assertNotNull(inserted);
+    assertNotNull(inserted.getId());
+    assertEquals("dicembre 2025", inserted.getName());
+    assertEquals(RewardBatchStatus.CREATED, inserted.getStatus());
+    assertEquals(ZERO_LONG, inserted.getNumberOfTransactions());
+  }
+
+  @Test
+  void deleteByIds_shouldDeleteJustTheGivenBatches() {
+    assertEquals(1L, rewardBatchSpecificRepository.deleteByIds(List.of("batch1", "NOT_EXISTENT")).block());
+
+    assertNull(rewardBatchRepository.findById("batch1").block());
+    assertNotNull(rewardBatchRepository.findById("batch2").block());
+  }
+}
@@ -0,0 +1,205 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.idpay.transactions.connector.rest.MerchantRestClient;
+import it.gov.pagopa.idpay.transactions.connector.rest.dto.PointOfSaleDTO;
+import it.gov.pagopa.idpay.transactions.connector.rest.dto.PointOfSaleTypeEnum;
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.enums.PosType;
+import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
+import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
+import it.gov.pagopa.idpay.transactions.enums.SyncTrxStatus;
+import it.gov.pagopa.idpay.transactions.model.Reward;
+import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterMarker;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.service.RewardBatchCounterStripeService;
+import it.gov.pagopa.idpay.transactions.service.RewardBatchCounterStripeServiceImpl;
+import it.gov.pagopa.idpay.transactions.service.RewardBatchCountersWriteBehindService;
+import it.gov.pagopa.idpay.transactions.service.RewardBatchService;
+import it.gov.pagopa.idpay.transactions.service.RewardTransactionService;
+import it.gov.pagopa.idpay.transactions.service.RewardTransactionServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * It will compare, on the same orphan INVOICED transactions, the legacy per-transaction assignment (batch increment and full save of each transaction)
+ * against the grouped bulk assignment of {@link RewardTransactionService#assignInvoicedTransactionsToBatches(Integer, Integer, boolean, String)}.<br />
+ * The number of orphans is configurable through the system property <i>benchmark.batch-assignment.transactions</i> (e.g. 100000)
+ */
+@Slf4j
+@DirtiesContext
+@MongoTest
+class RewardTransactionBatchAssignmentTest {
+
+    private static final int TRANSACTIONS = Integer.getInteger("benchmark.batch-assignment.transactions", 10_000);
+    private static final int LEGACY_SAMPLE = Math.min(TRANSACTIONS, 1_000);
+    private static final int CHUNK_SIZE = 1_000;
+    private static final int MERCHANTS = 50;
+    private static final long ACCRUED_REWARD_CENTS = 100L;
+
+    @Autowired
+    private RewardTransactionRepository rewardTransactionRepository;
+    @Autowired
+    private RewardBatchRepository rewardBatchRepository;
+    @Autowired
+    private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private final Map<String, RewardBatch> key2Batch = new ConcurrentHashMap<>();
+
+    private RewardTransactionService rewardTransactionService;
+    private RewardBatchCounterStripeService rewardBatchCounterStripeService;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+
+        RewardBatchService rewardBatchServiceMock = Mockito.mock(RewardBatchService.class);
+        Mockito.when(rewardBatchServiceMock.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
+                .thenAnswer(i -> findOrCreateBatch(i.getArgument(0), i.getArgument(1), i.getArgument(2)));
+
+        MerchantRestClient merchantRestClientMock = Mockito.mock(MerchantRestClient.class);
+        Mockito.when(merchantRestClientMock.getPointOfSale(Mockito.any(), Mockito.any()))
+                .thenReturn(Mono.just(PointOfSaleDTO.builder()
+                        .type(PointOfSaleTypeEnum.PHYSICAL)
+                        .franchiseName("FRANCHISE")
+                        .businessName("BUSINESS")
+                        .build()));
+
+        rewardBatchCounterStripeService = new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepository, rewardBatchRepository, 1);
+        rewardTransactionService = new RewardTransactionServiceImpl(
+                rewardTransactionRepository,
+                rewardBatchServiceMock,
+                merchantRestClientMock,
+                0x5a17beef,
+                Mockito.mock(RewardBatchCountersWriteBehindService.class),
+                rewardBatchCounterStripeService);
+    }
+
+    @AfterEach
+    void clearData() {
+        rewardTransactionRepository.deleteAll().block();
+        rewardBatchRepository.deleteAll().block();
+        rewardBatchCounterStripeRepository.deleteAll().block();
+        mongoTemplate.remove(new Query(), RewardBatchCounterMarker.class).block();
+        key2Batch.clear();
+    }
+
+    @Test
+    void testAssignOrphanTransactions() {
+        storeOrphans(LEGACY_SAMPLE);
+        long legacyMillis = measure(() -> rewardTransactionRepository.findAll()
+                .flatMap(this::legacyAssign, 1)
+                .then());
+        Assertions.assertEquals(LEGACY_SAMPLE, countAssigned());
+
+        clearData();
+        storeOrphans(TRANSACTIONS);
+        long groupedMillis = measure(() -> rewardTransactionService.assignInvoicedTransactionsToBatches(CHUNK_SIZE, 1, true, null));
+
+        log.info("[BATCH_ASSIGNMENT_BENCHMARK] Assignment of {} orphan transactions: per transaction {} trx/s (estimated {} s), grouped {} trx/s ({} s)",
+                TRANSACTIONS,
+                LEGACY_SAMPLE * 1000L / Math.max(1, legacyMillis), legacyMillis * TRANSACTIONS / LEGACY_SAMPLE / 1000,
+                TRANSACTIONS * 1000L / Math.max(1, groupedMillis), groupedMillis / 1000);
+
+        Assertions.assertEquals(TRANSACTIONS, countAssigned());
+        Assertions.assertEquals(0L, rewardTransactionRepository.findInvoicedTransactionsWithoutBatch(1).count().block());
+
+        List<RewardBatch> batches = rewardBatchRepository.findAll().collectList()
+                .flatMap(rewardBatchCounterStripeService::sumStripes)
+                .block();
+        Assertions.assertNotNull(batches);
+        Assertions.assertEquals(TRANSACTIONS, batches.stream().mapToLong(RewardBatch::getNumberOfTransactions).sum());
+        Assertions.assertEquals(TRANSACTIONS * ACCRUED_REWARD_CENTS, batches.stream().mapToLong(RewardBatch::getInitialAmountCents).sum());
+        Assertions.assertTrue(rewardTransactionRepository.findAll()
+                .all(trx -> trx.getRewardBatchTrxStatus() == RewardBatchTrxStatus.CONSULTABLE && "BUSINESS".equals(trx.getBusinessName()))
+                .block());
+    }
+
+    /** The assignment of a single transaction as performed before the grouping: a batch increment followed by the save of the whole transaction */
+    private Mono<RewardTransaction> legacyAssign(RewardTransaction trx) {
+        return findOrCreateBatch(trx.getMerchantId(), PosType.PHYSICAL, "2025-11")
+                .flatMap(batch -> rewardBatchRepository.updateTotals(batch.getId(), BatchCountersDTO.newBatch()
+                        .incrementInitialAmountCents(ACCRUED_REWARD_CENTS)
+                        .incrementNumberOfTransactions(1L)))
+                .flatMap(batch -> {
+                    trx.setPointOfSaleType(PosType.PHYSICAL);
+                    trx.setBusinessName("BUSINESS");
+                    trx.setRewardBatchId(batch.getId());
+                    trx.setRewardBatchTrxStatus(RewardBatchTrxStatus.CONSULTABLE);
+                    trx.setRewardBatchInclusionDate(LocalDateTime.now());
+                    trx.setUpdateDate(LocalDateTime.now());
+                    return rewardTransactionRepository.save(trx);
+                });
+    }
+
+    private Mono<RewardBatch> findOrCreateBatch(String merchantId, PosType posType, String month) {
+        return Mono.justOrEmpty(key2Batch.get(buildBatchKey(merchantId, posType, month)));
+    }
+
+    private static String buildBatchKey(String merchantId, PosType posType, String month) {
+        return "%s_%s_%s".formatted(merchantId, posType, month);
+    }
+
+    private void storeOrphans(int n) {
+        Flux.range(0, MERCHANTS)
+                .map(i -> RewardBatch.builder()
+                        .id(buildBatchKey("MERCHANT_%d".formatted(i), PosType.PHYSICAL, "2025-11"))
+                        .merchantId("MERCHANT_%d".formatted(i))
+                        .posType(PosType.PHYSICAL)
+                        .month("2025-11")
+                        .status(RewardBatchStatus.CREATED)
+                        .initialAmountCents(0L)
+                        .numberOfTransactions(0L)
+                        .build())
+                .flatMap(rewardBatchRepository::save)
+                .doOnNext(batch -> key2Batch.put(batch.getId(), batch))
+                .blockLast();
+
+        Flux.fromStream(IntStream.range(0, n).mapToObj(i -> RewardTransaction.builder()
+                        .id("ORPHAN_TRX_%d".formatted(i))
+                        .status(SyncTrxStatus.INVOICED.name())
+                        .merchantId("MERCHANT_%d".formatted(i % MERCHANTS))
+                        .pointOfSaleId("POS_%d".formatted(i % MERCHANTS))
+                        .trxChargeDate(LocalDateTime.of(2025, 11, 1 + i % 28, 10, 0))
+                        .initiatives(List.of("INITIATIVE"))
+                        .rewards(Map.of("INITIATIVE", Reward.builder().accruedRewardCents(ACCRUED_REWARD_CENTS).build()))
+                        .build()))
+                .buffer(CHUNK_SIZE)
+                .concatMap(rewardTransactionRepository::saveAll)
+                .blockLast(Duration.ofMinutes(5));
+    }
+
+    private long countAssigned() {
+        return rewardTransactionRepository.findAll()
+                .filter(trx -> trx.getRewardBatchId() != null)
+                .count()
+                .block();
+    }
+
+    private static long measure(Supplier<Mono<Void>> operation) {
+        long startTime = System.currentTimeMillis();
+        operation.get().block(Duration.ofMinutes(30));
+        return System.currentTimeMillis() - startTime;
+    }
+}
@@ -1,6 +1,7 @@
 package it.gov.pagopa.idpay.transactions.repository;
 
 import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.idpay.transactions.dto.MerchantPointOfSaleDTO;
 import it.gov.pagopa.idpay.transactions.dto.ReasonDTO;
 import it.gov.pagopa.idpay.transactions.dto.TrxFiltersDTO;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
@@ -9,6 +10,8 @@ import it.gov.pagopa.idpay.transactions.model.ChecksError;
 import it.gov.pagopa.idpay.transactions.model.Reward;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
 import it.gov.pagopa.idpay.transactions.test.fakers.RewardTransactionFaker;
+import it.gov.pagopa.idpay.transactions.dto.batch.RewardBatchTransactionTotalsDTO;
+import it.gov.pagopa.idpay.transactions.dto.batch.RewardBatchTrxStatusGroupDTO;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,12 +19,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.test.annotation.DirtiesContext;
 import reactor.test.StepVerifier;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,6 +43,8 @@ class RewardTransactionSpecificRepositoryTest {
 
     @Autowired
     private RewardTransactionSpecificRepositoryImpl rewardTransactionSpecificRepository;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
 
     private static final String INITIATIVE_ID = "INITIATIVEID1";
     private static final String MERCHANT_ID = "MERCHANTID1";
@@ -788,6 +799,96 @@ class RewardTransactionSpecificRepositoryTest {
         assertTrue(ids.contains("b2"));
     }
 
+    @Test
+    void findInitiativeChunkUpperBound_shouldReturnTheLastIdOfTheChunk() {
+        saveInitiativeTransactions("c", 5);
+
+        assertEquals("c2", rewardTransactionSpecificRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, null, 2).block());
+        assertEquals("c4", rewardTransactionSpecificRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, "c2", 2).block());
+        assertNull(rewardTransactionSpecificRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, "c4", 2).block());
+    }
+
+    @Test
+    void deleteByInitiativeIdInRange_shouldDeleteJustTheRange() {
+        saveInitiativeTransactions("d", 5);
+        RewardTransaction otherInitiative = RewardTransactionFaker.mockInstanceBuilder(9)
+                .id("d3_other")
+                .initiatives(List.of("OTHER_INITIATIVE"))
+                .build();
+        rewardTransactionRepository.save(otherInitiative).block();
+
+        assertEquals(2L, rewardTransactionSpecificRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, "d1", "d3").block());
+        assertEquals(List.of("d1", "d3_other", "d4", "d5"), findAllIds());
+
+        assertEquals(2L, rewardTransactionSpecificRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, "d3", null).block());
+        assertEquals(1L, rewardTransactionSpecificRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, null, null).block());
+        assertEquals(List.of("d3_other"), findAllIds());
+    }
+
+    @Test
+    void removeInitiativeInRange_shouldUpdateJustTheRange() {
+        saveInitiativeTransactions("r", 3);
+
+        assertEquals(2L, rewardTransactionSpecificRepository.removeInitiativeInRange(INITIATIVE_ID, null, "r2").block());
+
+        RewardTransaction updated = rewardTransactionRepository.findById("r2").block();
+        assertNotNull(updated);
+        assertTrue(updated.getInitiatives().isEmpty());
+        assertFalse(updated.getRewards().containsKey(INITIATIVE_ID));
+        RewardTransaction untouched = rewardTransactionRepository.findById("r3").block();
+        assertNotNull(untouched);
+        assertEquals(List.of(INITIATIVE_ID), untouched.getInitiatives());
+    }
+
+    @Test
+    void findDistinctRewardBatchIdsByInitiative_shouldReturnEachBatchOnce() {
+        saveInitiativeTransactions("b", 3);
+        rewardTransactionRepository.findAll()
+                .map(trx -> {
+                    trx.setRewardBatchId("b3".equals(trx.getId()) ? null : BATCH_ID);
+                    return trx;
+                })
+                .flatMap(rewardTransactionRepository::save)
+                .blockLast();
+
+        assertEquals(List.of(BATCH_ID), rewardTransactionSpecificRepository.findDistinctRewardBatchIdsByInitiative(INITIATIVE_ID).collectList().block());
+    }
+
+    @Test
+    void findRewardBatchIdsSharedOutsideInitiative_shouldReturnJustTheSharedBatches() {
+        saveInitiativeTransactions("s", 3);
+        rewardTransactionRepository.findAll()
+                .map(trx -> {
+                    trx.setRewardBatchId("s1".equals(trx.getId()) ? "BATCH_OWNED" : "BATCH_SHARED");
+                    if ("s3".equals(trx.getId())) {
+                        trx.setInitiatives(List.of("OTHER_INITIATIVE"));
+                    }
+                    return trx;
+                })
+                .flatMap(rewardTransactionRepository::save)
+                .blockLast();
+
+        assertEquals(List.of("BATCH_SHARED"), rewardTransactionSpecificRepository.findRewardBatchIdsSharedOutsideInitiative(List.of("BATCH_OWNED", "BATCH_SHARED"), INITIATIVE_ID).collectList().block());
+    }
+
+    private void saveInitiativeTransactions(String idPrefix, int n) {
+        rewardTransactionRepository.saveAll(IntStream.rangeClosed(1, n)
+                        .mapToObj(i -> RewardTransactionFaker.mockInstanceBuilder(i)
+                                .id(idPrefix + i)
+                                .initiatives(List.of(INITIATIVE_ID))
+                                .rewards(Map.of(INITIATIVE_ID, Reward.builder().initiativeId(INITIATIVE_ID).accruedRewardCents(100L).build()))
+                                .build())
+                        .toList())
+                .blockLast();
+    }
+
+    private List<String> findAllIds() {
+        return rewardTransactionRepository.findAll(Sort.by("id"))
+                .map(RewardTransaction::getId)
+                .collectList()
+                .block();
+    }
+
     @Test
     void findByInitiativeIdAndUserId_shouldFilterBothFields() {
         RewardTransaction match = RewardTransactionFaker.mockInstanceBuilder(1)
@@ -906,6 +1007,103 @@ class RewardTransactionSpecificRepositoryTest {
         assertEquals(2, updated.getRewardBatchRejectionReason().size());
     }
 
+    @Test
+    void aggregateByRewardBatchTrxStatus() {
+        rewardTransactionRepository.saveAll(List.of(
+                buildBatchTrx("agg1", BATCH_ID, RewardBatchTrxStatus.SUSPENDED, "2023-12", 100L),
+                buildBatchTrx("agg2", BATCH_ID, RewardBatchTrxStatus.SUSPENDED, "2024-01", 200L),
+                buildBatchTrx("agg3", BATCH_ID, RewardBatchTrxStatus.SUSPENDED, null, null),
+                buildBatchTrx("agg4", BATCH_ID, RewardBatchTrxStatus.APPROVED, "2023-11", 400L),
+                buildBatchTrx("agg5", BATCH_ID, RewardBatchTrxStatus.APPROVED, null, 500L),
+                buildBatchTrx("agg6", "OTHER_BATCH", RewardBatchTrxStatus.APPROVED, null, 600L))).blockLast();
+
+        Map<RewardBatchTrxStatus, RewardBatchTrxStatusGroupDTO> result = rewardTransactionSpecificRepository
+                .aggregateByRewardBatchTrxStatus(BATCH_ID, List.of("agg1", "agg2", "agg3", "agg4", "agg6", "NOT_EXISTENT"), INITIATIVE_ID, "2024-01")
+                .collectMap(RewardBatchTrxStatusGroupDTO::getRewardBatchTrxStatus)
+                .block();
+
+        assertNotNull(result);
+        assertEquals(2, result.size());
+
+        RewardBatchTrxStatusGroupDTO suspended = result.get(RewardBatchTrxStatus.SUSPENDED);
+        assertEquals(Set.of("agg1", "agg2", "agg3"), Set.copyOf(suspended.getTrxIds()));
+        assertEquals(3L, suspended.getCount());
+        assertEquals(300L, suspended.getAccruedRewardCents());
+        assertEquals(1L, suspended.getElaboratedInPreviousMonths());
+        assertEquals(List.of("agg1"), suspended.getElaboratedInPreviousMonthsTrxIds());
+
+        RewardBatchTrxStatusGroupDTO approved = result.get(RewardBatchTrxStatus.APPROVED);
+        assertEquals(List.of("agg4"), approved.getTrxIds());
+        assertEquals(1L, approved.getCount());
+        assertEquals(400L, approved.getAccruedRewardCents());
+        assertEquals(1L, approved.getElaboratedInPreviousMonths());
+        assertEquals(List.of("agg4"), approved.getElaboratedInPreviousMonthsTrxIds());
+    }
+
+    @Test
+    void updateStatusByIds() {
+        RewardTransaction rejected = buildBatchTrx("bulk1", BATCH_ID, RewardBatchTrxStatus.REJECTED, null, 100L);
+        rejected.setRewardBatchRejectionReason(List.of(new ReasonDTO(LocalDateTime.now(), "OLD")));
+        rewardTransactionRepository.saveAll(List.of(
+                rejected,
+                buildBatchTrx("bulk2", BATCH_ID, RewardBatchTrxStatus.APPROVED, null, 200L),
+                buildBatchTrx("bulk3", "OTHER_BATCH", RewardBatchTrxStatus.REJECTED, null, 300L))).blockLast();
+
+        ChecksError checksError = new ChecksError(true, false, false, false, false, false, false, false);
+        ReasonDTO newReason = new ReasonDTO(LocalDateTime.now(), "NEW");
+
+        StepVerifier.create(rewardTransactionSpecificRepository.updateStatusByIds(
+                        BATCH_ID, List.of("bulk1", "bulk2", "bulk3"), RewardBatchTrxStatus.REJECTED, RewardBatchTrxStatus.REJECTED, newReason, "2024-01", checksError, "UPDATE_1"))
+                .expectNext(1L)
+                .verifyComplete();
+
+        RewardTransaction updated = rewardTransactionRepository.findById("bulk1").block();
+        assertNotNull(updated);
+        assertEquals(RewardBatchTrxStatus.REJECTED, updated.getRewardBatchTrxStatus());
+        assertEquals("2024-01", updated.getRewardBatchLastMonthElaborated());
+        assertEquals(checksError, updated.getChecksError());
+        assertEquals(List.of("OLD", "NEW"), updated.getRewardBatchRejectionReason().stream().map(ReasonDTO::getReason).toList());
+
+        StepVerifier.create(rewardTransactionSpecificRepository.updateStatusByIds(
+                        BATCH_ID, List.of("bulk1", "bulk2"), RewardBatchTrxStatus.APPROVED, RewardBatchTrxStatus.SUSPENDED, newReason, "2024-01", null, "UPDATE_2"))
+                .expectNext(1L)
+                .verifyComplete();
+
+        RewardTransaction suspended = rewardTransactionRepository.findById("bulk2").block();
+        assertNotNull(suspended);
+        assertEquals(RewardBatchTrxStatus.SUSPENDED, suspended.getRewardBatchTrxStatus());
+        assertNull(suspended.getChecksError());
+        assertEquals(List.of("NEW"), suspended.getRewardBatchRejectionReason().stream().map(ReasonDTO::getReason).toList());
+
+        RewardTransaction otherBatch = rewardTransactionRepository.findById("bulk3").block();
+        assertNotNull(otherBatch);
+        assertNull(otherBatch.getRewardBatchLastMonthElaborated());
+
+        // each update marks just the transactions changed by it
+        RewardBatchTrxStatusGroupDTO firstUpdate = rewardTransactionSpecificRepository.aggregateByStatusUpdateId(BATCH_ID, List.of("bulk1", "bulk2", "bulk3"), "UPDATE_1", INITIATIVE_ID).block();
+        assertNotNull(firstUpdate);
+        assertEquals(List.of("bulk1"), firstUpdate.getTrxIds());
+        assertEquals(1L, firstUpdate.getCount());
+        assertEquals(100L, firstUpdate.getAccruedRewardCents());
+        RewardBatchTrxStatusGroupDTO secondUpdate = rewardTransactionSpecificRepository.aggregateByStatusUpdateId(BATCH_ID, List.of("bulk1", "bulk2", "bulk3"), "UPDATE_2", INITIATIVE_ID).block();
+        assertNotNull(secondUpdate);
+        assertEquals(List.of("bulk2"), secondUpdate.getTrxIds());
+        assertEquals(200L, secondUpdate.getAccruedRewardCents());
+        assertNull(rewardTransactionSpecificRepository.aggregateByStatusUpdateId(BATCH_ID, List.of("bulk1", "bulk2", "bulk3"), "UPDATE_3", INITIATIVE_ID).block());
+    }
+
+    private static RewardTransaction buildBatchTrx(String trxId, String rewardBatchId, RewardBatchTrxStatus status, String lastMonthElaborated, Long accruedRewardCents) {
+        RewardTransaction trx = RewardTransactionFaker.mockInstance(1);
+        trx.setId(trxId);
+        trx.setRewardBatchId(rewardBatchId);
+        trx.setRewardBatchTrxStatus(status);
+        trx.setRewardBatchLastMonthElaborated(lastMonthElaborated);
+        trx.setRewards(accruedRewardCents != null
+                ? Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(accruedRewardCents).build())
+                : Map.of());
+        return trx;
+    }
+
     @Test
     void findInvoicedTrxByIdWithoutBatch_shouldReturnOnlyMatching() {
         RewardTransaction ok = RewardTransactionFaker.mockInstanceBuilder(1)
@@ -1089,4 +1287,210 @@ class RewardTransactionSpecificRepositoryTest {
 
         assertEquals(List.of("rf", "c"), ids);
     }
+
+    @Test
+    void bulkUpsert_shouldInsertAndReplaceDocuments() {
+        RewardTransaction existing = RewardTransactionFaker.mockInstanceBuilder(1).id("TRX_BULK_1").build();
+        rewardTransactionRepository.save(existing).block();
+
+        RewardTransaction updated = RewardTransactionFaker.mockInstanceBuilder(1).id("TRX_BULK_1").status(SyncTrxStatus.INVOICED.name()).build();
+        RewardTransaction inserted = RewardTransactionFaker.mockInstanceBuilder(2).id("TRX_BULK_2").build();
+
+        StepVerifier.create(rewardTransactionSpecificRepository.bulkUpsert(List.of(updated, inserted)))
+                .assertNext(result -> {
+                    assertEquals(1, result.getMatchedCount());
+                    assertEquals(1, result.getUpserts().size());
+                })
+                .verifyComplete();
+
+        assertEquals(2L, rewardTransactionRepository.count().block());
+        assertEquals(SyncTrxStatus.INVOICED.name(), rewardTransactionRepository.findById("TRX_BULK_1").block().getStatus());
+    }
+
+    @Test
+    void bulkUpsert_shouldReportTheFailedDocuments() {
+        String indexName = mongoTemplate.indexOps(RewardTransaction.class)
+                .ensureIndex(new Index().on(RewardTransaction.Fields.idTrxIssuer, Sort.Direction.ASC).unique())
+                .block();
+        try {
+            RewardTransaction stored = RewardTransactionFaker.mockInstanceBuilder(1).id("TRX_BULK_1").idTrxIssuer("ID_TRX_ISSUER").build();
+            RewardTransaction duplicated = RewardTransactionFaker.mockInstanceBuilder(2).id("TRX_BULK_2").idTrxIssuer("ID_TRX_ISSUER").build();
+            RewardTransaction other = RewardTransactionFaker.mockInstanceBuilder(3).id("TRX_BULK_3").idTrxIssuer("OTHER_ID_TRX_ISSUER").build();
+            rewardTransactionRepository.save(stored).block();
+
+            StepVerifier.create(rewardTransactionSpecificRepository.bulkUpsert(List.of(duplicated, other)))
+                    .expectErrorSatisfies(e -> {
+                        BulkOperationException bulkException = assertInstanceOf(BulkOperationException.class, e);
+                        assertEquals(1, bulkException.getErrors().size());
+                        assertEquals(0, bulkException.getErrors().get(0).getIndex());
+                        assertEquals(1, bulkException.getResult().getUpserts().size());
+                    })
+                    .verify();
+
+            assertNull(rewardTransactionRepository.findById("TRX_BULK_2").block());
+            assertNotNull(rewardTransactionRepository.findById("TRX_BULK_3").block());
+        } finally {
+            mongoTemplate.indexOps(RewardTransaction.class).dropIndex(indexName).block();
+        }
+    }
+
+    @Test
+    void bulkUpsert_emptyList() {
+        StepVerifier.create(rewardTransactionSpecificRepository.bulkUpsert(List.of()))
+                .verifyComplete();
+    }
+
+    @Test
+    void bulkAssignToBatch_shouldAssignJustTransactionsWithoutBatch() {
+        RewardTransaction orphan = RewardTransactionFaker.mockInstanceBuilder(1).id("TRX_ORPHAN").status(SyncTrxStatus.INVOICED.name()).rewardBatchId(null).build();
+        RewardTransaction alreadyAssigned = RewardTransactionFaker.mockInstanceBuilder(2).id("TRX_ASSIGNED").status(SyncTrxStatus.INVOICED.name()).rewardBatchId("OTHER_BATCH").build();
+        rewardTransactionRepository.saveAll(List.of(orphan, alreadyAssigned)).blockLast();
+
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<RewardTransaction> toAssign = List.of(orphan, alreadyAssigned);
+        toAssign.forEach(trx -> {
+            trx.setRewardBatchId(BATCH_ID);
+            trx.setRewardBatchTrxStatus(RewardBatchTrxStatus.CONSULTABLE);
+            trx.setRewardBatchInclusionDate(now);
+            trx.setBusinessName("BUSINESS_NAME");
+            trx.setSamplingKey(7);
+            trx.setUpdateDate(now);
+        });
+
+        StepVerifier.create(rewardTransactionSpecificRepository.bulkAssignToBatch(toAssign))
+                .assertNext(result -> assertEquals(1, result.getModifiedCount()))
+                .verifyComplete();
+
+        RewardTransaction assigned = rewardTransactionRepository.findById("TRX_ORPHAN").block();
+        assertNotNull(assigned);
+        assertEquals(BATCH_ID, assigned.getRewardBatchId());
+        assertEquals(RewardBatchTrxStatus.CONSULTABLE, assigned.getRewardBatchTrxStatus());
+        assertEquals(now, assigned.getRewardBatchInclusionDate());
+        assertEquals("BUSINESS_NAME", assigned.getBusinessName());
+        assertEquals(7, assigned.getSamplingKey());
+        assertEquals("OTHER_BATCH", rewardTransactionRepository.findById("TRX_ASSIGNED").block().getRewardBatchId());
+
+        StepVerifier.create(rewardTransactionSpecificRepository.findIdsAssignedToBatch(BATCH_ID, List.of("TRX_ORPHAN", "TRX_ASSIGNED"), now))
+                .expectNext("TRX_ORPHAN")
+                .verifyComplete();
+        StepVerifier.create(rewardTransactionSpecificRepository.findIdsAssignedToBatch(BATCH_ID, List.of("TRX_ORPHAN"), now.minusSeconds(1)))
+                .verifyComplete();
+    }
+
+    @Test
+    void bulkAssignToBatch_shouldReportTheFailedDocuments() {
+        String indexName = mongoTemplate.indexOps(RewardTransaction.class)
+                .ensureIndex(new Index().on(RewardTransaction.Fields.rewardBatchInclusionDate, Sort.Direction.ASC).unique().sparse())
+                .block();
+        try {
+            RewardTransaction orphan1 = RewardTransactionFaker.mockInstanceBuilder(1).id("TRX_ORPHAN_1").status(SyncTrxStatus.INVOICED.name()).rewardBatchId(null).build();
+            RewardTransaction orphan2 = RewardTransactionFaker.mockInstanceBuilder(2).id("TRX_ORPHAN_2").status(SyncTrxStatus.INVOICED.name()).rewardBatchId(null).build();
+            rewardTransactionRepository.saveAll(List.of(orphan1, orphan2)).blockLast();
+
+            LocalDateTime now = LocalDateTime.now().withNano(0);
+            List<RewardTransaction> toAssign = List.of(orphan1, orphan2);
+            toAssign.forEach(trx -> {
+                trx.setRewardBatchId(BATCH_ID);
+                // the same inclusion date violates the unique index on the second update
+                trx.setRewardBatchInclusionDate(now);
+            });
+
+            StepVerifier.create(rewardTransactionSpecificRepository.bulkAssignToBatch(toAssign))
+                    .expectErrorSatisfies(e -> {
+                        BulkOperationException bulkException = assertInstanceOf(BulkOperationException.class, e);
+                        assertEquals(1, bulkException.getErrors().size());
+                        assertEquals(1, bulkException.getResult().getModifiedCount());
+                    })
+                    .verify();
+
+            StepVerifier.create(rewardTransactionSpecificRepository.findIdsAssignedToBatch(BATCH_ID, List.of("TRX_ORPHAN_1", "TRX_ORPHAN_2"), now).count())
+                    .expectNext(1L)
+                    .verifyComplete();
+        } finally {
+            mongoTemplate.indexOps(RewardTransaction.class).dropIndex(indexName).block();
+        }
+    }
+
+    @Test
+    void bulkAssignToBatch_emptyList() {
+        StepVerifier.create(rewardTransactionSpecificRepository.bulkAssignToBatch(List.of()))
+                .verifyComplete();
+    }
+
+    @Test
+    void findContentFingerprints() {
+        rewardTransactionRepository.saveAll(List.of(
+                RewardTransactionFaker.mockInstanceBuilder(1).id("TRX_FINGERPRINT_1").contentFingerprint("FINGERPRINT").build(),
+                RewardTransactionFaker.mockInstanceBuilder(2).id("TRX_FINGERPRINT_2").build()
+        )).blockLast();
+
+        Map<String, RewardTransaction> result = rewardTransactionSpecificRepository.findContentFingerprints(List.of("TRX_FINGERPRINT_1", "TRX_FINGERPRINT_2", "TRX_NOT_EXISTS"))
+                .collectMap(RewardTransaction::getId)
+                .block();
+
+        assertNotNull(result);
+        assertEquals(Set.of("TRX_FINGERPRINT_1", "TRX_FINGERPRINT_2"), result.keySet());
+        assertEquals("FINGERPRINT", result.get("TRX_FINGERPRINT_1").getContentFingerprint());
+        assertNull(result.get("TRX_FINGERPRINT_2").getContentFingerprint());
+        assertNull(result.get("TRX_FINGERPRINT_1").getStatus());
+    }
+
+    @Test
+    void aggregateTransactionTotalsByRewardBatch() {
+        rewardTransactionRepository.saveAll(List.of(
+                RewardTransactionFaker.mockInstanceBuilder(1).id("TRX_TOTALS_1").rewardBatchId("BATCH_TOTALS")
+                        .initiatives(List.of("INITIATIVE"))
+                        .rewards(Map.of("INITIATIVE", Reward.builder().accruedRewardCents(1000L).build())).build(),
+                // just the reward of the first initiative is counted, as at ingestion
+                RewardTransactionFaker.mockInstanceBuilder(2).id("TRX_TOTALS_2").rewardBatchId("BATCH_TOTALS")
+                        .initiatives(List.of("INITIATIVE", "INITIATIVE2"))
+                        .rewards(Map.of("INITIATIVE", Reward.builder().accruedRewardCents(500L).build(),
+                                "INITIATIVE2", Reward.builder().accruedRewardCents(300L).build())).build(),
+                RewardTransactionFaker.mockInstanceBuilder(3).id("TRX_TOTALS_3").rewardBatchId("BATCH_OTHER")
+                        .initiatives(List.of("INITIATIVE"))
+                        .rewards(Map.of("INITIATIVE", Reward.builder().accruedRewardCents(700L).build())).build()
+        )).blockLast();
+
+        StepVerifier.create(rewardTransactionSpecificRepository.aggregateTransactionTotalsByRewardBatch(List.of("BATCH_TOTALS")))
+                .expectNext(new RewardBatchTransactionTotalsDTO("BATCH_TOTALS", 2L, 1500L))
+                .verifyComplete();
+    }
+
+    @Test
+    void findBatchDataByIds() {
+        rewardTransactionRepository.saveAll(List.of(
+                RewardTransactionFaker.mockInstanceBuilder(1).id("TRX_BATCH_DATA_1").rewardBatchId("BATCH_DATA")
+                        .rewardBatchTrxStatus(RewardBatchTrxStatus.APPROVED).samplingKey(7).build(),
+                RewardTransactionFaker.mockInstanceBuilder(2).id("TRX_BATCH_DATA_2").build()
+        )).blockLast();
+
+        List<RewardTransaction> result = rewardTransactionSpecificRepository.findBatchDataByIds(List.of("TRX_BATCH_DATA_1", "TRX_BATCH_DATA_2", "TRX_NOT_EXISTS"))
+                .collectSortedList(Comparator.comparing(RewardTransaction::getId))
+                .block();
+
+        assertNotNull(result);
+        assertEquals(2, result.size());
+        assertEquals("BATCH_DATA", result.getFirst().getRewardBatchId());
+        assertEquals(RewardBatchTrxStatus.APPROVED, result.getFirst().getRewardBatchTrxStatus());
+        assertEquals(7, result.getFirst().getSamplingKey());
+        assertNull(result.getFirst().getUserId());
+        assertNull(result.get(1).getRewardBatchId());
+    }
+
+    @Test
+    void findActiveMerchantPointOfSales() {
+        LocalDateTime now = LocalDateTime.now();
+        rewardTransactionRepository.saveAll(List.of(
+                RewardTransactionFaker.mockInstanceBuilder(1).id("TRX_ACTIVE_1").merchantId("MERCHANT_ACTIVE").pointOfSaleId("POS_ACTIVE").trxChargeDate(now.minusDays(1)).build(),
+                RewardTransactionFaker.mockInstanceBuilder(2).id("TRX_ACTIVE_2").merchantId("MERCHANT_ACTIVE").pointOfSaleId("POS_ACTIVE").trxChargeDate(now.minusDays(2)).build(),
+                RewardTransactionFaker.mockInstanceBuilder(3).id("TRX_INACTIVE").merchantId("MERCHANT_INACTIVE").pointOfSaleId("POS_INACTIVE").trxChargeDate(now.minusDays(30)).build()
+        )).blockLast();
+
+        List<MerchantPointOfSaleDTO> result = rewardTransactionSpecificRepository.findActiveMerchantPointOfSales(now.minusDays(7), 100).collectList().block();
+
+        assertNotNull(result);
+        assertTrue(result.contains(new MerchantPointOfSaleDTO("MERCHANT_ACTIVE", "POS_ACTIVE")));
+        assertFalse(result.contains(new MerchantPointOfSaleDTO("MERCHANT_INACTIVE", "POS_INACTIVE")));
+        assertEquals(result.size(), Set.copyOf(result).size());
+    }
 }
@@ -0,0 +1,194 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import it.gov.pagopa.common.kafka.utils.KafkaPayloadFormat;
+import it.gov.pagopa.common.reactive.kafka.producer.KafkaBatchPublisher;
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.common.utils.TestUtils;
+import it.gov.pagopa.idpay.transactions.dto.RewardTransactionKafkaDTO;
+import it.gov.pagopa.idpay.transactions.enums.TransactionOutboxStatus;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.notifier.TransactionNotifierServiceImpl;
+import it.gov.pagopa.idpay.transactions.service.TransactionOutboxService;
+import it.gov.pagopa.idpay.transactions.service.TransactionOutboxServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaZKBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * It will check that the notifications stored in the outbox are published exactly once, even when the broker is stopped and then started again while they are relayed
+ */
+@Slf4j
+@DirtiesContext
+@MongoTest
+class TransactionOutboxRelayTest {
+
+    private static final String TOPIC = "idpay-transaction";
+    private static final int NOTIFICATIONS_PER_PHASE = 200;
+
+    @Autowired
+    private TransactionOutboxRepository transactionOutboxRepository;
+    @Autowired
+    private RewardTransactionRepository rewardTransactionRepository;
+
+    private int kafkaPort;
+    private EmbeddedKafkaBroker kafkaBroker;
+    private KafkaBatchPublisher publisher;
+    private TransactionOutboxService transactionOutboxService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        transactionOutboxRepository.deleteAll().block();
+        rewardTransactionRepository.deleteAll().block();
+        try (ServerSocket socket = new ServerSocket(0)) {
+            kafkaPort = socket.getLocalPort();
+        }
+        startBroker();
+
+        publisher = new KafkaBatchPublisher(this::buildProducer, TOPIC, 50, Duration.ofMillis(10), 2, 1_000);
+        transactionOutboxService = new TransactionOutboxServiceImpl(
+                transactionOutboxRepository,
+                rewardTransactionRepository,
+                new TransactionNotifierServiceImpl(Mockito.mock(StreamBridge.class), "transaction-outcome", KafkaPayloadFormat.JSON, TestUtils.objectMapper, publisher),
+                TestUtils.objectMapper,
+                100, 300, 0, 300);
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.close();
+        if (kafkaBroker != null) {
+            kafkaBroker.destroy();
+        }
+        transactionOutboxRepository.deleteAll().block();
+        rewardTransactionRepository.deleteAll().block();
+    }
+
+    @Test
+    void testRelayAcrossBrokerRestart() throws JsonProcessingException {
+        enqueue(0, NOTIFICATIONS_PER_PHASE);
+        relayUntilDelivered();
+        Assertions.assertEquals(idsInRange(0, NOTIFICATIONS_PER_PHASE), readPublishedIds());
+
+        kafkaBroker.destroy();
+        kafkaBroker = null;
+
+        long startTime = System.currentTimeMillis();
+        enqueue(NOTIFICATIONS_PER_PHASE, 2 * NOTIFICATIONS_PER_PHASE);
+        long enqueueMillis = System.currentTimeMillis() - startTime;
+        log.info("[TRANSACTION_OUTBOX_TEST] Stored {} notifications in {} ms while the broker was stopped", NOTIFICATIONS_PER_PHASE, enqueueMillis);
+
+        Assertions.assertEquals(0L, transactionOutboxService.relayPending().block(Duration.ofMinutes(1)));
+        Assertions.assertEquals(NOTIFICATIONS_PER_PHASE, countPending());
+
+        startBroker();
+        relayUntilDelivered();
+
+        Assertions.assertEquals(idsInRange(NOTIFICATIONS_PER_PHASE, 2 * NOTIFICATIONS_PER_PHASE), readPublishedIds());
+        Assertions.assertEquals(2L * NOTIFICATIONS_PER_PHASE, transactionOutboxRepository.findAll()
+                .filter(e -> e.getStatus() == TransactionOutboxStatus.DELIVERED)
+                .count()
+                .block());
+    }
+
+    private void enqueue(int from, int to) {
+        Flux.range(from, to - from)
+                .concatMap(i -> {
+                    RewardTransactionKafkaDTO trx = new RewardTransactionKafkaDTO();
+                    trx.setId("TRXID_%d".formatted(i));
+                    trx.setUserId("USERID_%d".formatted(i));
+                    trx.setStatus("REFUNDED");
+                    return transactionOutboxService.enqueue(trx, trx.getUserId())
+                            .then(rewardTransactionRepository.save(RewardTransaction.builder().id(trx.getId()).status(trx.getStatus()).build()));
+                })
+                .blockLast(Duration.ofMinutes(1));
+    }
+
+    private void relayUntilDelivered() {
+        long deadline = System.currentTimeMillis() + 120_000;
+        while (countPending() > 0 && System.currentTimeMillis() < deadline) {
+            transactionOutboxService.relayPending().block(Duration.ofMinutes(1));
+        }
+        Assertions.assertEquals(0L, countPending());
+    }
+
+    private long countPending() {
+        Long pending = transactionOutboxRepository.findAll()
+                .filter(e -> e.getStatus() == TransactionOutboxStatus.PENDING)
+                .count()
+                .block();
+        return pending != null ? pending : 0L;
+    }
+
+    /** It will read all the records published on the current broker, returning how many times each transaction has been published */
+    private Map<String, Long> readPublishedIds() throws JsonProcessingException {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("outbox-test-" + System.nanoTime(), "false", kafkaBroker);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        try (Consumer<String, String> consumer = new KafkaConsumer<>(props, new StringDeserializer(), new StringDeserializer())) {
+            kafkaBroker.consumeFromAnEmbeddedTopic(consumer, TOPIC);
+            Map<String, Long> out = new HashMap<>();
+            int emptyPolls = 0;
+            while (emptyPolls < 3) {
+                ConsumerRecords<String, String> records = KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(2));
+                if (records.isEmpty()) {
+                    emptyPolls++;
+                }
+                for (ConsumerRecord<String, String> r : records) {
+                    out.merge(TestUtils.objectMapper.readValue(r.value(), RewardTransactionKafkaDTO.class).getId(), 1L, Long::sum);
+                }
+            }
+            return out;
+        }
+    }
+
+    private static Map<String, Long> idsInRange(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj("TRXID_%d"::formatted)
+                .collect(Collectors.toMap(Function.identity(), id -> 1L));
+    }
+
+    /** The broker is restarted on the same port, thus a ZooKeeper one is used: the KRaft one doesn't support fixed ports */
+    private void startBroker() {
+        kafkaBroker = new EmbeddedKafkaZKBroker(1, true, 1, TOPIC).kafkaPorts(kafkaPort);
+        kafkaBroker.afterPropertiesSet();
+    }
+
+    private KafkaProducer<String, byte[]> buildProducer() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:" + kafkaPort);
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 2_000);
+        props.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 2_000);
+        props.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, 5_000);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 2);
+        return new KafkaProducer<>(props, new StringSerializer(), new ByteArraySerializer());
+    }
+}
@@ -0,0 +1,110 @@
+package it.gov.pagopa.idpay.transactions.repository;
+
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.idpay.transactions.enums.TransactionOutboxStatus;
+import it.gov.pagopa.idpay.transactions.model.TransactionOutbox;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@DirtiesContext
+@MongoTest
+class TransactionOutboxSpecificRepositoryImplTest {
+
+    @Autowired
+    private TransactionOutboxRepository transactionOutboxRepository;
+
+    @BeforeEach
+    @AfterEach
+    void clearData() {
+        transactionOutboxRepository.deleteAll().block();
+    }
+
+    @Test
+    void testClaimPending() {
+        LocalDateTime now = LocalDateTime.now();
+        storeEntries(now.minusMinutes(1), "TRX0", "TRX1", "TRX2");
+        storeEntries(now.plusMinutes(10), "TRX_NOT_AVAILABLE");
+
+        List<TransactionOutbox> claimed = transactionOutboxRepository.claimPending("CLAIM1", 2, now.plusMinutes(5)).collectList().block();
+        Assertions.assertNotNull(claimed);
+        Assertions.assertEquals(List.of("TRX0_REFUNDED", "TRX1_REFUNDED"), claimed.stream().map(TransactionOutbox::getId).toList());
+        Assertions.assertTrue(claimed.stream().allMatch(e -> "CLAIM1".equals(e.getClaimId()) && e.getAvailableDate().isAfter(now)));
+
+        List<TransactionOutbox> claimedNext = transactionOutboxRepository.claimPending("CLAIM2", 2, now.plusMinutes(5)).collectList().block();
+        Assertions.assertNotNull(claimedNext);
+        Assertions.assertEquals(List.of("TRX2_REFUNDED"), claimedNext.stream().map(TransactionOutbox::getId).toList());
+
+        Assertions.assertEquals(0L, transactionOutboxRepository.claimPending("CLAIM3", 2, now.plusMinutes(5)).count().block());
+    }
+
+    @Test
+    void testMarkDeliveredAndFailed() {
+        LocalDateTime now = LocalDateTime.now();
+        storeEntries(now.minusMinutes(1), "TRX0", "TRX1");
+        transactionOutboxRepository.claimPending("CLAIM1", 2, now.plusMinutes(5)).blockLast();
+
+        Assertions.assertEquals(1L, transactionOutboxRepository.markDelivered(List.of("TRX0_REFUNDED")).block());
+        Assertions.assertEquals(0L, transactionOutboxRepository.markDelivered(List.of()).block());
+        transactionOutboxRepository.markFailed("TRX1_REFUNDED", "DUMMY_SEND_ERROR", now.minusSeconds(1)).block();
+
+        TransactionOutbox delivered = transactionOutboxRepository.findById("TRX0_REFUNDED").block();
+        Assertions.assertNotNull(delivered);
+        Assertions.assertEquals(TransactionOutboxStatus.DELIVERED, delivered.getStatus());
+        Assertions.assertEquals(1, delivered.getAttempts());
+        Assertions.assertNotNull(delivered.getDeliveryDate());
+        Assertions.assertNull(delivered.getClaimId());
+
+        TransactionOutbox failed = transactionOutboxRepository.findById("TRX1_REFUNDED").block();
+        Assertions.assertNotNull(failed);
+        Assertions.assertEquals(TransactionOutboxStatus.PENDING, failed.getStatus());
+        Assertions.assertEquals(1, failed.getAttempts());
+        Assertions.assertEquals("DUMMY_SEND_ERROR", failed.getLastError());
+        Assertions.assertNull(failed.getClaimId());
+
+        transactionOutboxRepository.markFailed("TRX0_REFUNDED", "DUMMY_SEND_ERROR", now).block();
+        Assertions.assertEquals(TransactionOutboxStatus.DELIVERED, transactionOutboxRepository.findById("TRX0_REFUNDED").map(TransactionOutbox::getStatus).block());
+
+        List<TransactionOutbox> claimedAgain = transactionOutboxRepository.claimPending("CLAIM2", 2, now.plusMinutes(5)).collectList().block();
+        Assertions.assertNotNull(claimedAgain);
+        Assertions.assertEquals(List.of("TRX1_REFUNDED"), claimedAgain.stream().map(TransactionOutbox::getId).toList());
+    }
+
+    @Test
+    void testMarkDiscarded() {
+        LocalDateTime now = LocalDateTime.now();
+        storeEntries(now.minusMinutes(1), "TRX0");
+        transactionOutboxRepository.claimPending("CLAIM1", 1, now.plusMinutes(5)).blockLast();
+
+        transactionOutboxRepository.markDiscarded("TRX0_REFUNDED", "DUMMY_REASON").block();
+
+        TransactionOutbox discarded = transactionOutboxRepository.findById("TRX0_REFUNDED").block();
+        Assertions.assertNotNull(discarded);
+        Assertions.assertEquals(TransactionOutboxStatus.DISCARDED, discarded.getStatus());
+        Assertions.assertEquals("DUMMY_REASON", discarded.getLastError());
+        Assertions.assertNull(discarded.getClaimId());
+        Assertions.assertEquals(0L, transactionOutboxRepository.claimPending("CLAIM2", 1, now.plusMinutes(5)).count().block());
+    }
+
+    private void storeEntries(LocalDateTime availableDate, String... trxIds) {
+        Flux.fromArray(trxIds)
+                .map(trxId -> TransactionOutbox.builder()
+                        .id(TransactionOutbox.buildId(trxId, "REFUNDED"))
+                        .trxId(trxId)
+                        .messageKey("USERID")
+                        .payload("{}")
+                        .status(TransactionOutboxStatus.PENDING)
+                        .availableDate(availableDate)
+                        .creationDate(LocalDateTime.now())
+                        .build())
+                .concatMap(transactionOutboxRepository::save)
+                .blockLast();
+    }
+}
@@ -0,0 +1,170 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.web.exception.ClientExceptionWithBody;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobStatus;
+import it.gov.pagopa.idpay.transactions.enums.AdminJobType;
+import it.gov.pagopa.idpay.transactions.model.AdminJob;
+import it.gov.pagopa.idpay.transactions.model.AdminJobLock;
+import it.gov.pagopa.idpay.transactions.repository.AdminJobRepository;
+import it.gov.pagopa.idpay.transactions.utils.ExceptionConstants;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+
+@ExtendWith(MockitoExtension.class)
+class AdminJobServiceImplTest {
+
+    @Mock
+    private AdminJobRepository adminJobRepositoryMock;
+
+    private AdminJobService adminJobService;
+
+    @BeforeEach
+    void setUp() {
+        adminJobService = new AdminJobServiceImpl(adminJobRepositoryMock, 1, 60);
+
+        Mockito.lenient().when(adminJobRepositoryMock.save(Mockito.any())).thenAnswer(i -> Mono.just(i.getArgument(0)));
+        Mockito.lenient().when(adminJobRepositoryMock.complete(Mockito.anyString(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenAnswer(i -> Mono.just(AdminJob.builder().id(i.getArgument(0)).type(AdminJobType.BATCH_ASSIGNMENT).status(i.getArgument(1)).build()));
+        Mockito.lenient().when(adminJobRepositoryMock.releaseLock(Mockito.any(), Mockito.anyString())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void start_runsJobAndStoresItsResult() {
+        Mockito.when(adminJobRepositoryMock.acquireLock(Mockito.eq(AdminJobType.BATCH_ASSIGNMENT), Mockito.anyString(), Mockito.any()))
+                .thenReturn(Mono.empty());
+
+        AdminJob job = adminJobService.start(AdminJobType.BATCH_ASSIGNMENT, "PARAMETERS", progress -> {
+            progress.add(5);
+            return Mono.just("RESULT");
+        }).block();
+
+        Assertions.assertNotNull(job);
+        Assertions.assertEquals(AdminJobType.BATCH_ASSIGNMENT, job.getType());
+        Assertions.assertEquals(AdminJobStatus.RUNNING, job.getStatus());
+        Assertions.assertEquals("PARAMETERS", job.getParameters());
+        Assertions.assertNotNull(job.getStartDate());
+
+        Mockito.verify(adminJobRepositoryMock, Mockito.timeout(1_000)).complete(job.getId(), AdminJobStatus.COMPLETED, 5L, "RESULT", null);
+        Mockito.verify(adminJobRepositoryMock, Mockito.timeout(1_000)).releaseLock(AdminJobType.BATCH_ASSIGNMENT, job.getId());
+    }
+
+    @Test
+    void start_jobFailed() {
+        Mockito.when(adminJobRepositoryMock.acquireLock(Mockito.eq(AdminJobType.BATCH_ASSIGNMENT), Mockito.anyString(), Mockito.any()))
+                .thenReturn(Mono.empty());
+
+        AdminJob job = adminJobService.start(AdminJobType.BATCH_ASSIGNMENT, null, progress -> Mono.error(new IllegalStateException("DUMMY"))).block();
+
+        Assertions.assertNotNull(job);
+        Mockito.verify(adminJobRepositoryMock, Mockito.timeout(1_000)).complete(job.getId(), AdminJobStatus.FAILED, 0L, null, "DUMMY");
+        Mockito.verify(adminJobRepositoryMock, Mockito.timeout(1_000)).releaseLock(AdminJobType.BATCH_ASSIGNMENT, job.getId());
+    }
+
+    @Test
+    void start_alreadyRunning() {
+        Mockito.when(adminJobRepositoryMock.acquireLock(Mockito.eq(AdminJobType.ERROR_REPLAY), Mockito.anyString(), Mockito.any()))
+                .thenReturn(Mono.error(new DuplicateKeyException("DUPLICATE")));
+
+        StepVerifier.create(adminJobService.start(AdminJobType.ERROR_REPLAY, null, progress -> Mono.empty()))
+                .expectErrorSatisfies(e -> {
+                    Assertions.assertInstanceOf(ClientExceptionWithBody.class, e);
+                    Assertions.assertEquals(HttpStatus.CONFLICT, ((ClientExceptionWithBody) e).getHttpStatus());
+                    Assertions.assertEquals(ExceptionConstants.ExceptionCode.ADMIN_JOB_ALREADY_RUNNING, ((ClientExceptionWithBody) e).getCode());
+                })
+                .verify();
+
+        Mockito.verify(adminJobRepositoryMock, Mockito.never()).save(Mockito.any());
+    }
+
+    @Test
+    void start_takesOverStaleLock() {
+        Mockito.when(adminJobRepositoryMock.acquireLock(Mockito.eq(AdminJobType.BATCH_ASSIGNMENT), Mockito.anyString(), Mockito.any()))
+                .thenReturn(Mono.just(AdminJobLock.builder().id(AdminJobType.BATCH_ASSIGNMENT.name()).jobId("STALE_JOB").heartbeatDate(LocalDateTime.now().minusHours(1)).build()));
+
+        AdminJob job = adminJobService.start(AdminJobType.BATCH_ASSIGNMENT, null, progress -> Mono.empty()).block();
+
+        Assertions.assertNotNull(job);
+        Mockito.verify(adminJobRepositoryMock).complete(Mockito.eq("STALE_JOB"), Mockito.eq(AdminJobStatus.FAILED), Mockito.isNull(), Mockito.isNull(), Mockito.startsWith("Stale job"));
+        Mockito.verify(adminJobRepositoryMock, Mockito.timeout(1_000)).complete(job.getId(), AdminJobStatus.COMPLETED, 0L, null, null);
+    }
+
+    @Test
+    void cancel_runningJob() {
+        Mockito.when(adminJobRepositoryMock.acquireLock(Mockito.eq(AdminJobType.BATCH_ASSIGNMENT), Mockito.anyString(), Mockito.any()))
+                .thenReturn(Mono.empty());
+        AdminJob job = adminJobService.start(AdminJobType.BATCH_ASSIGNMENT, null, progress -> Mono.never()).block();
+        Assertions.assertNotNull(job);
+
+        Mockito.when(adminJobRepositoryMock.requestCancellation(job.getId()))
+                .thenReturn(Mono.just(AdminJob.builder().id(job.getId()).status(AdminJobStatus.RUNNING).cancelRequested(true).build()));
+
+        StepVerifier.create(adminJobService.cancel(job.getId()))
+                .assertNext(j -> Assertions.assertTrue(j.isCancelRequested()))
+                .verifyComplete();
+
+        Mockito.verify(adminJobRepositoryMock, Mockito.timeout(1_000)).complete(job.getId(), AdminJobStatus.CANCELLED, 0L, null, null);
+        Mockito.verify(adminJobRepositoryMock, Mockito.timeout(1_000)).releaseLock(AdminJobType.BATCH_ASSIGNMENT, job.getId());
+    }
+
+    @Test
+    void start_cancellationRequestedByAnotherInstance() {
+        Mockito.when(adminJobRepositoryMock.acquireLock(Mockito.eq(AdminJobType.BATCH_ASSIGNMENT), Mockito.anyString(), Mockito.any()))
+                .thenReturn(Mono.empty());
+        Mockito.when(adminJobRepositoryMock.updateProgress(Mockito.any(), Mockito.anyLong()))
+                .thenAnswer(i -> Mono.just(AdminJob.builder().id(((AdminJob) i.getArgument(0)).getId()).processed(i.getArgument(1)).cancelRequested(true).build()));
+
+        AdminJob job = adminJobService.start(AdminJobType.BATCH_ASSIGNMENT, null, progress -> {
+            progress.add(3);
+            return Mono.never();
+        }).block();
+        Assertions.assertNotNull(job);
+
+        Mockito.verify(adminJobRepositoryMock, Mockito.timeout(3_000)).updateProgress(job, 3L);
+        Mockito.verify(adminJobRepositoryMock, Mockito.timeout(3_000)).complete(job.getId(), AdminJobStatus.CANCELLED, 3L, null, null);
+    }
+
+    @Test
+    void cancel_endedJob() {
+        AdminJob job = AdminJob.builder().id("JOBID").status(AdminJobStatus.COMPLETED).build();
+        Mockito.when(adminJobRepositoryMock.requestCancellation("JOBID")).thenReturn(Mono.empty());
+        Mockito.when(adminJobRepositoryMock.findById("JOBID")).thenReturn(Mono.just(job));
+
+        StepVerifier.create(adminJobService.cancel("JOBID"))
+                .expectNext(job)
+                .verifyComplete();
+    }
+
+    @Test
+    void getJob_notFound() {
+        Mockito.when(adminJobRepositoryMock.findById("JOBID")).thenReturn(Mono.empty());
+
+        StepVerifier.create(adminJobService.getJob("JOBID"))
+                .expectErrorSatisfies(e -> {
+                    Assertions.assertInstanceOf(ClientExceptionWithBody.class, e);
+                    Assertions.assertEquals(HttpStatus.NOT_FOUND, ((ClientExceptionWithBody) e).getHttpStatus());
+                })
+                .verify();
+    }
+
+    @Test
+    void getJobs() {
+        AdminJob job = AdminJob.builder().id("JOBID").build();
+        Mockito.when(adminJobRepositoryMock.findByTypeOrderByStartDateDesc(AdminJobType.ERROR_REPLAY)).thenReturn(Flux.just(job));
+        Mockito.when(adminJobRepositoryMock.findAllByOrderByStartDateDesc()).thenReturn(Flux.just(job, job));
+
+        Assertions.assertEquals(1, adminJobService.getJobs(AdminJobType.ERROR_REPLAY).count().block());
+        Assertions.assertEquals(2, adminJobService.getJobs(null).count().block());
+    }
+}
@@ -0,0 +1,202 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static it.gov.pagopa.common.reactive.wireMock.BaseWireMockTest.WIREMOCK_TEST_PROP2BASEPATH_MAP_PREFIX;
+
+import it.gov.pagopa.common.reactive.rest.config.WebClientConfig;
+import it.gov.pagopa.common.reactive.wireMock.BaseWireMockTest;
+import it.gov.pagopa.common.utils.TestUtils;
+import it.gov.pagopa.idpay.transactions.connector.rest.MerchantRestClient;
+import it.gov.pagopa.idpay.transactions.connector.rest.MerchantRestClientImpl;
+import it.gov.pagopa.idpay.transactions.connector.rest.dto.PointOfSaleDTO;
+import it.gov.pagopa.idpay.transactions.dto.CacheWarmUpReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.MerchantPointOfSaleDTO;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import java.time.YearMonth;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ApplicationAvailabilityBean;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+@ContextConfiguration(
+    classes = {
+        CacheWarmUpServiceImpl.class,
+        MerchantRestClientImpl.class,
+        WebClientConfig.class,
+        CacheWarmUpServiceImplTest.CacheTestConfig.class
+    })
+@TestPropertySource(
+    properties = {
+        WIREMOCK_TEST_PROP2BASEPATH_MAP_PREFIX + "app.merchant.base-url"
+    }
+)
+class CacheWarmUpServiceImplTest extends BaseWireMockTest {
+
+  @Configuration
+  @EnableCaching
+  static class CacheTestConfig {
+    @Bean
+    public CacheManager cacheManager() {
+      return new ConcurrentMapCacheManager();
+    }
+  }
+
+  @MockitoBean
+  private RewardTransactionRepository rewardTransactionRepository;
+  @MockitoBean
+  private RewardBatchService rewardBatchService;
+
+  @Autowired
+  private CacheWarmUpService cacheWarmUpService;
+  @Autowired
+  private MerchantRestClient merchantRestClient;
+
+  @Test
+  void testWarmUp() {
+    Mockito.when(rewardTransactionRepository.findActiveMerchantPointOfSales(ArgumentMatchers.any(), ArgumentMatchers.eq(10000)))
+        .thenReturn(Flux.just(
+            new MerchantPointOfSaleDTO("MERCHANT_OK_71", "POS_OK_71"),
+            new MerchantPointOfSaleDTO("MERCHANT_OK_71", "POS_OK_72"),
+            new MerchantPointOfSaleDTO("MERCHANT_OK_73", "POS_NOTFOUND_73"),
+            new MerchantPointOfSaleDTO("MERCHANT_INTERNALSERVERERROR_1", "POS_INTERNALSERVERERROR_1")));
+    Mockito.when(rewardBatchService.preloadBatchResolutions(ArgumentMatchers.anyCollection(), ArgumentMatchers.eq(YearMonth.now().toString())))
+        .thenReturn(Mono.just(2L));
+
+    CacheWarmUpReportDTO report = cacheWarmUpService.warmUp().block();
+
+    Assertions.assertNotNull(report);
+    Assertions.assertTrue(report.isCompleted());
+    Assertions.assertEquals(2, report.getPointOfSales());
+    Assertions.assertEquals(2, report.getRewardBatches());
+    Assertions.assertEquals(1, report.getFailed());
+    Mockito.verify(rewardBatchService).preloadBatchResolutions(
+        ArgumentMatchers.argThat(merchantIds -> merchantIds.size() == 3),
+        ArgumentMatchers.eq(YearMonth.now().toString()));
+
+    // the first ingested records will hit the warm cache, without invoking the merchant service
+    serverWireMockExtension.resetRequests();
+    PointOfSaleDTO pos = merchantRestClient.getPointOfSale("MERCHANT_OK_71", "POS_OK_71").block();
+
+    Assertions.assertNotNull(pos);
+    Assertions.assertEquals("Franchise name", pos.getFranchiseName());
+    serverWireMockExtension.verify(0, getRequestedFor(urlPathEqualTo("/idpay/merchant/portal/MERCHANT_OK_71/point-of-sales/POS_OK_71")));
+  }
+
+  @Test
+  void testWarmUpBoundedByDeadline() {
+    RewardTransactionRepository repositoryMock = Mockito.mock(RewardTransactionRepository.class);
+    Mockito.when(repositoryMock.findActiveMerchantPointOfSales(ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+        .thenReturn(Flux.never());
+    RewardBatchService rewardBatchServiceMock = Mockito.mock(RewardBatchService.class);
+
+    CacheWarmUpReportDTO report = buildService(repositoryMock, rewardBatchServiceMock, null, true, 1).warmUp().block();
+
+    Assertions.assertNotNull(report);
+    Assertions.assertFalse(report.isCompleted());
+    Mockito.verifyNoInteractions(rewardBatchServiceMock);
+  }
+
+  @Test
+  void testReadinessHeldUntilWarmUpCompleted() {
+    Sinks.Many<MerchantPointOfSaleDTO> activePointOfSales = Sinks.many().unicast().onBackpressureBuffer();
+    RewardTransactionRepository repositoryMock = Mockito.mock(RewardTransactionRepository.class);
+    Mockito.when(repositoryMock.findActiveMerchantPointOfSales(ArgumentMatchers.any(), ArgumentMatchers.eq(100)))
+        .thenReturn(activePointOfSales.asFlux());
+
+    try (AnnotationConfigApplicationContext context = buildContext(repositoryMock, 60)) {
+      ApplicationAvailability availability = context.getBean(ApplicationAvailability.class);
+
+      long startTime = System.currentTimeMillis();
+      AvailabilityChangeEvent.publish(context, ReadinessState.ACCEPTING_TRAFFIC);
+
+      Assertions.assertTrue(System.currentTimeMillis() - startTime < 1000);
+      Assertions.assertEquals(ReadinessState.REFUSING_TRAFFIC, availability.getReadinessState());
+
+      activePointOfSales.tryEmitComplete();
+      TestUtils.waitFor(() -> ReadinessState.ACCEPTING_TRAFFIC.equals(availability.getReadinessState()), () -> "Readiness not restored", 10, 100);
+    }
+  }
+
+  @Test
+  void testReadinessRestoredAtDeadline() {
+    RewardTransactionRepository repositoryMock = Mockito.mock(RewardTransactionRepository.class);
+    Mockito.when(repositoryMock.findActiveMerchantPointOfSales(ArgumentMatchers.any(), ArgumentMatchers.eq(100)))
+        .thenReturn(Flux.never());
+
+    try (AnnotationConfigApplicationContext context = buildContext(repositoryMock, 1)) {
+      ApplicationAvailability availability = context.getBean(ApplicationAvailability.class);
+
+      AvailabilityChangeEvent.publish(context, ReadinessState.ACCEPTING_TRAFFIC);
+      Assertions.assertEquals(ReadinessState.REFUSING_TRAFFIC, availability.getReadinessState());
+
+      TestUtils.waitFor(() -> ReadinessState.ACCEPTING_TRAFFIC.equals(availability.getReadinessState()), () -> "Readiness not restored", 30, 100);
+    }
+  }
+
+  @Test
+  void testStopCancelsWarmUp() {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    RewardTransactionRepository repositoryMock = Mockito.mock(RewardTransactionRepository.class);
+    Mockito.when(repositoryMock.findActiveMerchantPointOfSales(ArgumentMatchers.any(), ArgumentMatchers.eq(100)))
+        .thenReturn(Flux.<MerchantPointOfSaleDTO>never().doOnCancel(() -> cancelled.set(true)));
+
+    try (AnnotationConfigApplicationContext context = buildContext(repositoryMock, 60)) {
+      ApplicationAvailability availability = context.getBean(ApplicationAvailability.class);
+      CacheWarmUpServiceImpl service = context.getBean(CacheWarmUpServiceImpl.class);
+      AvailabilityChangeEvent.publish(context, ReadinessState.ACCEPTING_TRAFFIC);
+      Assertions.assertTrue(service.isRunning());
+
+      // stopping the application, the warm-up still in progress is cancelled without restoring the readiness
+      service.stop();
+      Assertions.assertFalse(service.isRunning());
+      TestUtils.waitFor(cancelled::get, () -> "Warm-up not cancelled", 10, 100);
+      Assertions.assertEquals(ReadinessState.REFUSING_TRAFFIC, availability.getReadinessState());
+    }
+  }
+
+  @Test
+  void testStartDisabled() {
+    RewardTransactionRepository repositoryMock = Mockito.mock(RewardTransactionRepository.class);
+    CacheWarmUpServiceImpl service = buildService(repositoryMock, Mockito.mock(RewardBatchService.class), null, false, 1);
+
+    service.start();
+
+    Assertions.assertTrue(service.isRunning());
+    Mockito.verifyNoInteractions(repositoryMock);
+  }
+
+  private static CacheWarmUpServiceImpl buildService(RewardTransactionRepository repository, RewardBatchService rewardBatchService,
+                                                     ApplicationEventPublisher publisher, boolean enabled, long deadlineSeconds) {
+    return new CacheWarmUpServiceImpl(repository, Mockito.mock(MerchantRestClient.class), rewardBatchService, publisher,
+        enabled, 7, 100, 4, deadlineSeconds);
+  }
+
+  /** A context publishing the availability changes as the application does, having started the warm-up */
+  private static AnnotationConfigApplicationContext buildContext(RewardTransactionRepository repository, long deadlineSeconds) {
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    context.registerBean(ApplicationAvailabilityBean.class);
+    context.registerBean(CacheWarmUpServiceImpl.class, () -> buildService(repository, Mockito.mock(RewardBatchService.class), context, true, deadlineSeconds));
+    context.refresh();
+    return context;
+  }
+}
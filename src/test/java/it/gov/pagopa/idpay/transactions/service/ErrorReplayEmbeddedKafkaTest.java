@@ -0,0 +1,165 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.kafka.utils.KafkaConstants;
+import it.gov.pagopa.common.reactive.kafka.consumer.EmbeddedKafkaConsumerHarness;
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaRangeReader;
+import it.gov.pagopa.idpay.transactions.config.KafkaConfiguration;
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayRequest;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * It will publish on an embedded broker the errors notified by several consumers, some of them more than once, checking that the replay of two subsequent time windows
+ * reprocesses exactly once each record notified by the requested binding, and never the records notified by the others
+ */
+class ErrorReplayEmbeddedKafkaTest {
+
+    private static final String ERRORS_TOPIC = "idpay-errors-replay";
+    private static final String APPLICATION_NAME = "idpay-transactions";
+    private static final String BINDING = "trxProcessor-in-0";
+    private static final String SRC_TOPIC = "idpay-transaction";
+    private static final String GROUP = "idpay-transactions-group";
+
+    /** The records notified inside the first window are [0, RECORDS_PER_WINDOW), the ones of the second window are [RECORDS_PER_WINDOW, 2 * RECORDS_PER_WINDOW) */
+    private static final int RECORDS_PER_WINDOW = 150;
+    /** Each record having a payload multiple of it is notified twice */
+    private static final int DUPLICATED_EVERY = 5;
+    /** The payloads notified by other consumers start from it */
+    private static final int OTHER_CONSUMERS_PAYLOAD_OFFSET = 10_000;
+
+    private static final OffsetDateTime FIRST_WINDOW_START = OffsetDateTime.of(2025, 11, 3, 10, 0, 0, 0, ZoneOffset.UTC);
+    private static final OffsetDateTime SECOND_WINDOW_START = FIRST_WINDOW_START.plusHours(1);
+    private static final OffsetDateTime SECOND_WINDOW_END = SECOND_WINDOW_START.plusHours(1);
+
+    private static EmbeddedKafkaBroker kafkaBroker;
+
+    @BeforeAll
+    static void startBroker() {
+        kafkaBroker = new EmbeddedKafkaKraftBroker(1, 3, ERRORS_TOPIC);
+        kafkaBroker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        kafkaBroker.destroy();
+    }
+
+    @Test
+    void testErrorsReprocessedExactlyOnce() {
+        publishErrors(0, FIRST_WINDOW_START);
+        publishErrors(RECORDS_PER_WINDOW, SECOND_WINDOW_START);
+
+        EmbeddedKafkaConsumerHarness.CountingConsumer consumer = new EmbeddedKafkaConsumerHarness.CountingConsumer(BINDING, Duration.ofSeconds(1), 0, null, Mono.empty(), Duration.ZERO);
+        ErrorReplayService service = new ErrorReplayServiceImpl(buildRangeReader(), buildKafkaConfiguration(), List.of(consumer), APPLICATION_NAME, ERRORS_TOPIC, 2_000, 4);
+
+        ErrorReplayReportDTO firstReport = service.replay(ErrorReplayRequest.builder()
+                        .binding(BINDING)
+                        .fromTimestamp(FIRST_WINDOW_START)
+                        .toTimestamp(SECOND_WINDOW_START)
+                        .build())
+                .block(Duration.ofMinutes(1));
+        checkReport(firstReport);
+        checkProcessed(consumer, RECORDS_PER_WINDOW);
+
+        ErrorReplayReportDTO secondReport = service.replay(ErrorReplayRequest.builder()
+                        .binding(BINDING)
+                        .fromTimestamp(SECOND_WINDOW_START)
+                        .toTimestamp(SECOND_WINDOW_END)
+                        .build())
+                .block(Duration.ofMinutes(1));
+        checkReport(secondReport);
+        checkProcessed(consumer, 2 * RECORDS_PER_WINDOW);
+    }
+
+    private static void checkReport(ErrorReplayReportDTO report) {
+        int duplicated = RECORDS_PER_WINDOW / DUPLICATED_EVERY;
+        Assertions.assertNotNull(report);
+        Assertions.assertEquals(RECORDS_PER_WINDOW + duplicated + 3L * RECORDS_PER_WINDOW, report.getRead());
+        Assertions.assertEquals(3L * RECORDS_PER_WINDOW, report.getSkipped());
+        Assertions.assertEquals(duplicated, report.getDuplicated());
+        Assertions.assertEquals(RECORDS_PER_WINDOW, report.getReplayed());
+        Assertions.assertEquals(0, report.getFailed());
+    }
+
+    private static void checkProcessed(EmbeddedKafkaConsumerHarness.CountingConsumer consumer, int expectedRecords) {
+        Map<Integer, AtomicInteger> payload2Processed = consumer.getPayload2Processed();
+        Assertions.assertEquals(expectedRecords, payload2Processed.size());
+        Assertions.assertEquals(expectedRecords, consumer.getProcessed());
+        Assertions.assertTrue(IntStream.range(0, expectedRecords).allMatch(i -> payload2Processed.containsKey(i) && payload2Processed.get(i).get() == 1));
+    }
+
+    /** It will publish the errors notified by the replayed binding, some of them twice, and the same number of errors notified by other consumers (other group, other application, other source topic) */
+    private static void publishErrors(int fromPayload, OffsetDateTime timestamp) {
+        long epochMillis = timestamp.toInstant().toEpochMilli();
+        try (KafkaProducer<String, byte[]> producer = new KafkaProducer<>(KafkaTestUtils.producerProps(kafkaBroker), new StringSerializer(), new ByteArraySerializer())) {
+            for (int i = fromPayload; i < fromPayload + RECORDS_PER_WINDOW; i++) {
+                producer.send(buildError(i, epochMillis + i, SRC_TOPIC, GROUP, APPLICATION_NAME));
+                if (i % DUPLICATED_EVERY == 0) {
+                    producer.send(buildError(i, epochMillis + i, SRC_TOPIC, GROUP, APPLICATION_NAME));
+                }
+
+                int otherPayload = OTHER_CONSUMERS_PAYLOAD_OFFSET + i;
+                producer.send(buildError(otherPayload, epochMillis + i, SRC_TOPIC, "OTHER_GROUP", APPLICATION_NAME));
+                producer.send(buildError(otherPayload, epochMillis + i, SRC_TOPIC, GROUP, "OTHER_APPLICATION"));
+                producer.send(buildError(otherPayload, epochMillis + i, "OTHER_TOPIC", GROUP, APPLICATION_NAME));
+            }
+            producer.flush();
+        }
+    }
+
+    private static ProducerRecord<String, byte[]> buildError(int payload, long epochMillis, String srcTopic, String group, String applicationName) {
+        ProducerRecord<String, byte[]> error = new ProducerRecord<>(ERRORS_TOPIC, null, epochMillis, "KEY%d".formatted(payload), Integer.toString(payload).getBytes(StandardCharsets.UTF_8));
+        error.headers()
+                .add(KafkaConstants.ERROR_MSG_HEADER_SRC_TOPIC, srcTopic.getBytes(StandardCharsets.UTF_8))
+                .add(KafkaConstants.ERROR_MSG_HEADER_GROUP, group.getBytes(StandardCharsets.UTF_8))
+                .add(KafkaConstants.ERROR_MSG_HEADER_APPLICATION_NAME, applicationName.getBytes(StandardCharsets.UTF_8))
+                .add(KafkaConstants.ERROR_MSG_HEADER_DESCRIPTION, "DESCRIPTION".getBytes(StandardCharsets.UTF_8))
+                .add(KafkaConstants.ERROR_MSG_HEADER_RETRYABLE, "true".getBytes(StandardCharsets.UTF_8));
+        return error;
+    }
+
+    private static KafkaConfiguration buildKafkaConfiguration() {
+        KafkaConfiguration kafkaConfiguration = new KafkaConfiguration();
+        KafkaConfiguration.Stream stream = new KafkaConfiguration.Stream();
+        stream.setBindings(Map.of(BINDING, KafkaConfiguration.KafkaInfoDTO.builder()
+                .destination(SRC_TOPIC)
+                .group(GROUP)
+                .build()));
+        kafkaConfiguration.setStream(stream);
+        return kafkaConfiguration;
+    }
+
+    private static KafkaRangeReader buildRangeReader() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaBroker.getBrokersAsString());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 40);
+        return new KafkaRangeReader(
+                () -> new KafkaConsumer<>(props, new ByteArrayDeserializer(), new ByteArrayDeserializer()),
+                Duration.ofMillis(500));
+    }
+}
@@ -0,0 +1,132 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.kafka.utils.KafkaConstants;
+import it.gov.pagopa.common.reactive.kafka.consumer.BaseKafkaConsumer;
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaRangeReader;
+import it.gov.pagopa.common.web.exception.ClientExceptionWithBody;
+import it.gov.pagopa.idpay.transactions.config.KafkaConfiguration;
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.ErrorReplayRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@ExtendWith(MockitoExtension.class)
+class ErrorReplayServiceImplTest {
+
+    private static final String BINDING = "rewardTrxConsumer-in-0";
+    private static final String ERRORS_TOPIC = "idpay-errors";
+    private static final String APPLICATION_NAME = "idpay-transactions";
+
+    @Mock
+    private KafkaRangeReader rangeReaderMock;
+    @Mock
+    private BaseKafkaConsumer<?, ?> consumerMock;
+
+    private ErrorReplayService service;
+
+    @BeforeEach
+    void init() {
+        Mockito.when(consumerMock.getBindingName()).thenReturn(BINDING);
+
+        KafkaConfiguration kafkaConfiguration = new KafkaConfiguration();
+        KafkaConfiguration.Stream stream = new KafkaConfiguration.Stream();
+        stream.setBindings(Map.of(BINDING, KafkaConfiguration.KafkaInfoDTO.builder()
+                .destination("idpay-transaction")
+                .group("idpay-trx-consumer")
+                .build()));
+        kafkaConfiguration.setStream(stream);
+
+        service = new ErrorReplayServiceImpl(rangeReaderMock, kafkaConfiguration, List.of(consumerMock), APPLICATION_NAME, ERRORS_TOPIC, 1000, 2);
+    }
+
+    private static Message<byte[]> buildErrorMessage(String payload, String srcTopic, String group, String applicationName) {
+        return MessageBuilder.withPayload(payload.getBytes(StandardCharsets.UTF_8))
+                .setHeader(KafkaConstants.ERROR_MSG_HEADER_SRC_TOPIC, srcTopic)
+                .setHeader(KafkaConstants.ERROR_MSG_HEADER_GROUP, group)
+                .setHeader(KafkaConstants.ERROR_MSG_HEADER_APPLICATION_NAME, applicationName)
+                .setHeader(KafkaConstants.ERROR_MSG_HEADER_DESCRIPTION, "DESCRIPTION")
+                .setHeader("operationType", "AUTHORIZED")
+                .build();
+    }
+
+    @Test
+    void testReplay() {
+        OffsetDateTime from = OffsetDateTime.of(2025, 11, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        Mockito.when(rangeReaderMock.read(Mockito.any())).thenReturn(Flux.just(
+                buildErrorMessage("TRX1", "idpay-transaction", "idpay-trx-consumer", APPLICATION_NAME),
+                buildErrorMessage("TRX2", "idpay-transaction", "idpay-trx-consumer", APPLICATION_NAME),
+                // same payload notified twice
+                buildErrorMessage("TRX1", "idpay-transaction", "idpay-trx-consumer", APPLICATION_NAME),
+                // notified by other consumers
+                buildErrorMessage("TRX3", "idpay-transaction", "OTHER_GROUP", APPLICATION_NAME),
+                buildErrorMessage("TRX4", "idpay-transaction", "idpay-trx-consumer", "OTHER_APP"),
+                buildErrorMessage("TRX5", "OTHER_TOPIC", null, null),
+                buildErrorMessage("TRX_KO", "idpay-transaction", "idpay-trx-consumer", APPLICATION_NAME)
+        ));
+        Mockito.doAnswer(i -> {
+            Message<byte[]> message = i.getArgument(0);
+            return "TRX_KO".equals(new String(message.getPayload(), StandardCharsets.UTF_8))
+                    ? Mono.error(new IllegalStateException("DUMMY"))
+                    : Mono.empty();
+        }).when(consumerMock).reprocess(Mockito.any());
+
+        List<Long> progress = new CopyOnWriteArrayList<>();
+        ErrorReplayReportDTO report = service.replay(ErrorReplayRequest.builder()
+                .binding(BINDING)
+                .fromTimestamp(from)
+                .build(), progress::add).block();
+
+        Assertions.assertNotNull(report);
+        Assertions.assertEquals(7, report.getRead());
+        // the progress is notified for each record read
+        Assertions.assertEquals(Collections.nCopies(7, 1L), progress);
+        Assertions.assertEquals(3, report.getSkipped());
+        Assertions.assertEquals(1, report.getDuplicated());
+        Assertions.assertEquals(2, report.getReplayed());
+        Assertions.assertEquals(1, report.getFailed());
+
+        Mockito.verify(rangeReaderMock).read(new KafkaRangeReader.Range(ERRORS_TOPIC, null, null, from.toInstant().toEpochMilli(), null));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<byte[]>> messageCaptor = ArgumentCaptor.forClass(Message.class);
+        Mockito.verify(consumerMock, Mockito.times(3)).reprocess(messageCaptor.capture());
+        Assertions.assertEquals(List.of("TRX1", "TRX2", "TRX_KO"), messageCaptor.getAllValues().stream()
+                .map(m -> new String(m.getPayload(), StandardCharsets.UTF_8))
+                .sorted()
+                .toList());
+        messageCaptor.getAllValues().forEach(m -> {
+            Assertions.assertFalse(m.getHeaders().containsKey(KafkaConstants.ERROR_MSG_HEADER_SRC_TOPIC));
+            Assertions.assertFalse(m.getHeaders().containsKey(KafkaConstants.ERROR_MSG_HEADER_APPLICATION_NAME));
+            Assertions.assertFalse(m.getHeaders().containsKey(KafkaConstants.ERROR_MSG_HEADER_DESCRIPTION));
+            Assertions.assertEquals("AUTHORIZED", m.getHeaders().get("operationType"));
+        });
+    }
+
+    @Test
+    void testReplayInvalidBinding() {
+        ErrorReplayRequest request = ErrorReplayRequest.builder().binding("errors-out-0").build();
+
+        Assertions.assertThrows(ClientExceptionWithBody.class, () -> service.replay(request));
+        Assertions.assertThrows(ClientExceptionWithBody.class, () -> service.checkReplayable("errors-out-0"));
+        Assertions.assertDoesNotThrow(() -> service.checkReplayable(BINDING));
+        Mockito.verifyNoInteractions(rangeReaderMock);
+    }
+}
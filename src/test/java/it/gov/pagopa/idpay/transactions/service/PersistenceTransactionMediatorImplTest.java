@@ -2,12 +2,16 @@ package it.gov.pagopa.idpay.transactions.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import it.gov.pagopa.common.kafka.utils.KafkaConstants;
+import it.gov.pagopa.common.reactive.kafka.consumer.UncommittableErrorRetryPolicy;
 import it.gov.pagopa.common.utils.TestUtils;
 import it.gov.pagopa.idpay.transactions.dto.RewardTransactionDTO;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayReportDTO;
 import it.gov.pagopa.idpay.transactions.dto.mapper.RewardTransactionMapper;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
 import it.gov.pagopa.idpay.transactions.test.fakers.RewardTransactionDTOFaker;
 import it.gov.pagopa.idpay.transactions.test.fakers.RewardTransactionFaker;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -23,8 +27,15 @@ import reactor.core.publisher.Mono;
 
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 @ExtendWith(MockitoExtension.class)
 class PersistenceTransactionMediatorImplTest {
@@ -32,6 +43,15 @@ class PersistenceTransactionMediatorImplTest {
     @Mock
     private RewardTransactionService rewardTransactionService;
 
+    @Mock
+    private RewardTransactionBulkSaveService rewardTransactionBulkSaveService;
+
+    @Mock
+    private RewardTransactionFingerprintService rewardTransactionFingerprintService;
+
+    @Mock
+    private RewardBatchService rewardBatchService;
+
     @Mock
     private TransactionErrorNotifierService transactionErrorNotifierService;
 
@@ -42,12 +62,28 @@ class PersistenceTransactionMediatorImplTest {
 
     @BeforeEach
     void setUp() {
-        persistenceTransactionMediator = new PersistenceTransactionMediatorImpl(
+        persistenceTransactionMediator = buildMediator(rewardTransactionFingerprintService);
+        Mockito.lenient().when(transactionErrorNotifierService.notifyTransaction(Mockito.any(), Mockito.anyString(), Mockito.anyBoolean(), Mockito.any()))
+                .thenReturn(Mono.just(true));
+    }
+
+    private PersistenceTransactionMediatorImpl buildMediator(RewardTransactionFingerprintService fingerprintService) {
+        return new PersistenceTransactionMediatorImpl(
                 "appName",
                 rewardTransactionService,
+                rewardTransactionBulkSaveService,
+                fingerprintService,
+                rewardBatchService,
                 transactionErrorNotifierService,
                 rewardTransactionMapper,
                 1000,
+                0,
+                Optional.empty(),
+                UncommittableErrorRetryPolicy.DEFAULT,
+                null,
+                null,
+                Optional.empty(),
+                30000,
                 TestUtils.objectMapper
         );
     }
@@ -57,12 +93,14 @@ class PersistenceTransactionMediatorImplTest {
         RewardTransactionDTO rtDT1 = RewardTransactionDTOFaker.mockInstance(1);
         RewardTransactionDTO rtDT2 = RewardTransactionDTOFaker.mockInstance(2);
 
-        Flux<Message<String>> messageFlux = Flux.just(rtDT1, rtDT2)
+        AtomicLong offset = new AtomicLong();
+        Flux<Message<byte[]>> messageFlux = Flux.just(rtDT1, rtDT2)
                 .map(TestUtils::jsonSerializer)
+                .map(payload -> payload.getBytes(StandardCharsets.UTF_8))
                 .map(payload -> MessageBuilder
                         .withPayload(payload)
                         .setHeader(KafkaHeaders.RECEIVED_PARTITION, 0)
-                        .setHeader(KafkaHeaders.OFFSET, 0L)
+                        .setHeader(KafkaHeaders.OFFSET, offset.getAndIncrement())
                         .build()
                 );
 
@@ -71,23 +109,128 @@ class PersistenceTransactionMediatorImplTest {
         Mockito.when(rewardTransactionMapper.mapFromDTO(rtDT1)).thenReturn(rt1);
         Mockito.when(rewardTransactionMapper.mapFromDTO(rtDT2)).thenThrow(new RuntimeException("boom"));
 
-        Mockito.when(rewardTransactionService.save(rt1)).thenReturn(Mono.just(rt1));
+        Mockito.when(rewardTransactionFingerprintService.filterChanged(rt1)).thenReturn(Mono.just(rt1));
+        Mockito.when(rewardTransactionService.prepareForSave(rt1)).thenReturn(Mono.just(rt1));
+        Mockito.when(rewardTransactionBulkSaveService.save(rt1)).thenReturn(Mono.just(rt1));
 
         persistenceTransactionMediator.execute(messageFlux);
 
         Mockito.verify(rewardTransactionMapper, Mockito.timeout(1000).times(2))
                 .mapFromDTO(Mockito.any(RewardTransactionDTO.class));
-        Mockito.verify(rewardTransactionService, Mockito.timeout(1000).times(1))
+        Mockito.verify(rewardTransactionBulkSaveService, Mockito.timeout(1000).times(1))
                 .save(Mockito.any(RewardTransaction.class));
         Mockito.verify(transactionErrorNotifierService, Mockito.timeout(1000).times(1))
                 .notifyTransaction(Mockito.any(Message.class), Mockito.anyString(), Mockito.anyBoolean(), Mockito.any(RuntimeException.class));
     }
 
+    @Test
+    void executeReplayedTopicShouldNotWriteUnchangedTransactions() {
+        Map<String, String> storedFingerprints = new ConcurrentHashMap<>();
+        RewardTransactionRepository repositoryStandIn = Mockito.mock(RewardTransactionRepository.class);
+        Mockito.when(repositoryStandIn.findContentFingerprints(Mockito.anyCollection()))
+                .thenAnswer(i -> Flux.fromIterable(i.<Collection<String>>getArgument(0))
+                        .filter(storedFingerprints::containsKey)
+                        .map(trxId -> RewardTransaction.builder().id(trxId).contentFingerprint(storedFingerprints.get(trxId)).build()));
+        persistenceTransactionMediator = buildMediator(new RewardTransactionFingerprintServiceImpl(repositoryStandIn, TestUtils.objectMapper, 100, 20));
+
+        RewardTransactionMapper realMapper = new RewardTransactionMapper();
+        Mockito.when(rewardTransactionMapper.mapFromDTO(Mockito.any())).thenAnswer(i -> realMapper.mapFromDTO(i.getArgument(0)));
+        Mockito.when(rewardTransactionService.prepareForSave(Mockito.any())).thenAnswer(i -> Mono.just(i.getArgument(0)));
+        Mockito.when(rewardTransactionBulkSaveService.save(Mockito.any())).thenAnswer(i -> {
+            RewardTransaction trx = i.getArgument(0);
+            storedFingerprints.put(trx.getId(), trx.getContentFingerprint());
+            return Mono.just(trx);
+        });
+
+        List<RewardTransactionDTO> topic = IntStream.range(0, 10)
+                .mapToObj(RewardTransactionDTOFaker::mockInstance)
+                .toList();
+
+        // first pass
+        persistenceTransactionMediator.execute(buildMessages(topic));
+        Mockito.verify(rewardTransactionBulkSaveService, Mockito.timeout(1000).times(topic.size())).save(Mockito.any());
+        Assertions.assertEquals(topic.size(), storedFingerprints.size());
+
+        // replay
+        Mockito.clearInvocations(rewardTransactionService, rewardTransactionBulkSaveService);
+        persistenceTransactionMediator.execute(buildMessages(topic));
+        Mockito.verify(repositoryStandIn, Mockito.timeout(1000).atLeastOnce()).findContentFingerprints(Mockito.anyCollection());
+        Mockito.verify(rewardTransactionBulkSaveService, Mockito.after(200).never()).save(Mockito.any());
+        Mockito.verifyNoInteractions(rewardTransactionService, transactionErrorNotifierService);
+    }
+
+    private static Flux<Message<byte[]>> buildMessages(List<RewardTransactionDTO> trxs) {
+        return Flux.fromIterable(trxs)
+                .index()
+                .map(t -> MessageBuilder
+                        .withPayload(TestUtils.jsonSerializer(t.getT2()).getBytes(StandardCharsets.UTF_8))
+                        .setHeader(KafkaHeaders.RECEIVED_PARTITION, 0)
+                        .setHeader(KafkaHeaders.OFFSET, t.getT1())
+                        .build());
+    }
+
+    @Test
+    void replay() {
+        RewardTransactionMapper realMapper = new RewardTransactionMapper();
+        Mockito.when(rewardTransactionMapper.mapFromDTO(Mockito.any())).thenAnswer(i -> realMapper.mapFromDTO(i.getArgument(0)));
+        Mockito.when(rewardTransactionFingerprintService.computeFingerprint(Mockito.any())).thenReturn("FINGERPRINT");
+        // the first transaction has been already assigned to a batch, which has to be kept
+        String trx0Id = realMapper.mapFromDTO(RewardTransactionDTOFaker.mockInstance(0)).getId();
+        RewardTransaction storedTrx0 = RewardTransaction.builder().id(trx0Id).rewardBatchId("SENT_BATCH").build();
+        Mockito.when(rewardTransactionService.findStoredBatchData(Mockito.any())).thenAnswer(i ->
+                Mono.just(i.<Set<String>>getArgument(0).contains(trx0Id) ? Map.of(trx0Id, storedTrx0) : Map.of()));
+        Mockito.when(rewardTransactionService.prepareForReplay(Mockito.any(), Mockito.any())).thenAnswer(i -> {
+            RewardTransaction trx = i.getArgument(0);
+            RewardTransaction stored = i.getArgument(1);
+            trx.setRewardBatchId(stored != null ? stored.getRewardBatchId() : "BATCH_" + trx.getIdTrxIssuer());
+            return Mono.just(trx);
+        });
+        List<List<RewardTransaction>> bulks = new ArrayList<>();
+        Mockito.when(rewardTransactionBulkSaveService.saveAll(Mockito.any())).thenAnswer(i -> {
+            bulks.add(i.getArgument(0));
+            return Mono.just(Map.of());
+        });
+        Mockito.when(rewardBatchService.recomputeTransactionTotals(Mockito.any())).thenAnswer(i -> Mono.just((long) i.<Set<String>>getArgument(0).size()));
+
+        RewardTransactionDTO trx0 = RewardTransactionDTOFaker.mockInstance(0);
+        RewardTransactionDTO trx1 = RewardTransactionDTOFaker.mockInstance(1);
+        RewardTransactionDTO trx1Updated = RewardTransactionDTOFaker.mockInstance(1);
+        trx1Updated.setStatus("UPDATED");
+
+        Flux<Message<byte[]>> messages = buildMessages(List.of(trx0, trx1, trx1Updated, RewardTransactionDTOFaker.mockInstance(2)))
+                .concatWith(Flux.just(
+                        MessageBuilder.withPayload("NOT A JSON".getBytes(StandardCharsets.UTF_8)).build(),
+                        MessageBuilder.withPayload(TestUtils.jsonSerializer(RewardTransactionDTOFaker.mockInstance(3)).getBytes(StandardCharsets.UTF_8))
+                                .setHeader("operationType", "REFUNDED")
+                                .build()));
+
+        AtomicLong progress = new AtomicLong();
+        TransactionReplayReportDTO report = persistenceTransactionMediator.replay(messages, 3, Duration.ZERO, progress::addAndGet).block();
+
+        Assertions.assertNotNull(report);
+        Assertions.assertEquals(6, report.getRead());
+        Assertions.assertEquals(6, progress.get());
+        Assertions.assertEquals(1, report.getSkipped());
+        Assertions.assertEquals(1, report.getErrors());
+        Assertions.assertEquals(3, report.getStored());
+        Assertions.assertEquals(3, report.getRecomputedRewardBatches());
+
+        // the same transaction inside a bulk is stored just once, with its last version
+        Assertions.assertEquals(2, bulks.size());
+        Assertions.assertEquals(2, bulks.getFirst().size());
+        Assertions.assertEquals("UPDATED", bulks.getFirst().get(1).getStatus());
+        Assertions.assertEquals("FINGERPRINT", bulks.getFirst().getFirst().getContentFingerprint());
+
+        Mockito.verify(rewardBatchService).recomputeTransactionTotals(Set.of("SENT_BATCH", "BATCH_" + trx1.getIdTrxIssuer(), "BATCH_" + RewardTransactionDTOFaker.mockInstance(2).getIdTrxIssuer()));
+        Mockito.verify(rewardTransactionService, Mockito.never()).prepareForSave(Mockito.any());
+        Mockito.verify(transactionErrorNotifierService).notifyTransaction(Mockito.any(), Mockito.anyString(), Mockito.anyBoolean(), Mockito.any(JsonProcessingException.class));
+    }
+
     @Test
     void executeErrorDeserializer() {
-        Flux<Message<String>> messageFlux = Flux.just(
+        Flux<Message<byte[]>> messageFlux = Flux.just(
                 MessageBuilder
-                        .withPayload("Error message")
+                        .withPayload("Error message".getBytes(StandardCharsets.UTF_8))
                         .setHeader(KafkaHeaders.RECEIVED_PARTITION, 0)
                         .setHeader(KafkaHeaders.OFFSET, 0L)
                         .build()
@@ -96,7 +239,7 @@ class PersistenceTransactionMediatorImplTest {
         persistenceTransactionMediator.execute(messageFlux);
 
         Mockito.verifyNoInteractions(rewardTransactionMapper);
-        Mockito.verifyNoInteractions(rewardTransactionService);
+        Mockito.verifyNoInteractions(rewardTransactionService, rewardTransactionBulkSaveService);
 
         Mockito.verify(transactionErrorNotifierService, Mockito.timeout(1000).times(1))
                 .notifyTransaction(Mockito.any(Message.class), Mockito.anyString(), Mockito.anyBoolean(), Mockito.any(JsonProcessingException.class));
@@ -107,8 +250,9 @@ class PersistenceTransactionMediatorImplTest {
         RewardTransactionDTO rtDT1 = RewardTransactionDTOFaker.mockInstance(1);
         RewardTransactionDTO rtDT2 = RewardTransactionDTOFaker.mockInstance(2);
 
-        Flux<Message<String>> msgs = Flux.just(rtDT1, rtDT2)
+        Flux<Message<byte[]>> msgs = Flux.just(rtDT1, rtDT2)
                 .map(TestUtils::jsonSerializer)
+                .map(payload -> payload.getBytes(StandardCharsets.UTF_8))
                 .map(payload -> MessageBuilder
                         .withPayload(payload)
                         .setHeader(KafkaHeaders.RECEIVED_PARTITION, 0)
@@ -127,8 +271,9 @@ class PersistenceTransactionMediatorImplTest {
     void executeShouldSkipRefundedTransactions() {
         RewardTransactionDTO rtDT = RewardTransactionDTOFaker.mockInstance(1);
 
-        Flux<Message<String>> messageFlux = Flux.just(rtDT)
+        Flux<Message<byte[]>> messageFlux = Flux.just(rtDT)
                 .map(TestUtils::jsonSerializer)
+                .map(payload -> payload.getBytes(StandardCharsets.UTF_8))
                 .map(payload -> MessageBuilder
                         .withPayload(payload)
                         .setHeader(KafkaHeaders.RECEIVED_PARTITION, 0)
@@ -139,10 +284,47 @@ class PersistenceTransactionMediatorImplTest {
 
         persistenceTransactionMediator.execute(messageFlux);
 
-        Mockito.verifyNoInteractions(rewardTransactionMapper, rewardTransactionService);
+        Mockito.verifyNoInteractions(rewardTransactionMapper, rewardTransactionService, rewardTransactionBulkSaveService);
         Mockito.verifyNoInteractions(transactionErrorNotifierService);
     }
 
+    @Test
+    void executeShouldSkipRefundedTransactionsBeforeDeserialization() {
+        Flux<Message<byte[]>> messageFlux = Flux.just(
+                MessageBuilder
+                        .withPayload("Not a JSON".getBytes(StandardCharsets.UTF_8))
+                        .setHeader(KafkaHeaders.RECEIVED_PARTITION, 0)
+                        .setHeader(KafkaHeaders.OFFSET, 0L)
+                        .setHeader("operationType", "REFUNDED")
+                        .build()
+        );
+
+        persistenceTransactionMediator.execute(messageFlux);
+
+        Mockito.verify(transactionErrorNotifierService, Mockito.after(500).never())
+                .notifyTransaction(Mockito.any(), Mockito.anyString(), Mockito.anyBoolean(), Mockito.any());
+        Mockito.verifyNoInteractions(rewardTransactionMapper, rewardTransactionService, rewardTransactionBulkSaveService);
+    }
+
+    @Test
+    void executeShouldSkipRefundedTransactionsWithUntypedHeader() {
+        // published without declaring the header types, thus read as raw bytes
+        Flux<Message<byte[]>> messageFlux = Flux.just(
+                MessageBuilder
+                        .withPayload(TestUtils.jsonSerializer(RewardTransactionDTOFaker.mockInstance(1)).getBytes(StandardCharsets.UTF_8))
+                        .setHeader(KafkaHeaders.RECEIVED_PARTITION, 0)
+                        .setHeader(KafkaHeaders.OFFSET, 0L)
+                        .setHeader("operationType", "REFUNDED".getBytes(StandardCharsets.UTF_8))
+                        .build()
+        );
+
+        persistenceTransactionMediator.execute(messageFlux);
+
+        Mockito.verify(transactionErrorNotifierService, Mockito.after(500).never())
+                .notifyTransaction(Mockito.any(), Mockito.anyString(), Mockito.anyBoolean(), Mockito.any());
+        Mockito.verifyNoInteractions(rewardTransactionMapper, rewardTransactionService, rewardTransactionBulkSaveService);
+    }
+
     @Test
     void getFlowNameShouldReturnTRANSACTION() {
         org.junit.jupiter.api.Assertions.assertEquals("TRANSACTION", persistenceTransactionMediator.getFlowName());
@@ -165,20 +347,21 @@ class PersistenceTransactionMediatorImplTest {
 
     @Test
     void onDeserializationError_shouldNotifyTransactionErrorNotifierService() {
-        Message<String> msg = MessageBuilder.withPayload("bad-json")
+        Message<byte[]> msg = MessageBuilder.withPayload("bad-json".getBytes(StandardCharsets.UTF_8))
                 .setHeader(KafkaHeaders.RECEIVED_PARTITION, 0)
                 .setHeader(KafkaHeaders.OFFSET, 0L)
                 .build();
 
-        Consumer<Throwable> consumer = (Consumer<Throwable>) ReflectionTestUtils.invokeMethod(
+        RuntimeException ex = new RuntimeException("deserialize");
+
+        Mono<Boolean> result = ReflectionTestUtils.invokeMethod(
                 persistenceTransactionMediator,
                 "onDeserializationError",
-                msg
+                msg,
+                ex
         );
 
-        RuntimeException ex = new RuntimeException("deserialize");
-
-        consumer.accept(ex);
+        Assertions.assertEquals(Boolean.TRUE, result.block());
 
         Mockito.verify(transactionErrorNotifierService, Mockito.times(1))
                 .notifyTransaction(Mockito.eq(msg), Mockito.anyString(), Mockito.eq(true), Mockito.eq(ex));
@@ -186,7 +369,7 @@ class PersistenceTransactionMediatorImplTest {
 
     @Test
     void notifyError_shouldNotifyTransactionErrorNotifierService() {
-        Message<String> msg = MessageBuilder.withPayload("any")
+        Message<byte[]> msg = MessageBuilder.withPayload("any".getBytes(StandardCharsets.UTF_8))
                 .setHeader(KafkaHeaders.RECEIVED_PARTITION, 0)
                 .setHeader(KafkaHeaders.OFFSET, 0L)
                 .build();
@@ -0,0 +1,158 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.reactive.kafka.consumer.EmbeddedKafkaConsumerHarness;
+import it.gov.pagopa.common.reactive.kafka.consumer.UncommittableErrorRetryPolicy;
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.common.utils.TestUtils;
+import it.gov.pagopa.idpay.transactions.connector.rest.MerchantRestClient;
+import it.gov.pagopa.idpay.transactions.dto.mapper.RewardTransactionMapper;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.test.fakers.RewardTransactionDTOFaker;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * It will push the same transactions, published on an embedded broker, through the <i>rewardTrxConsumer</i> flow storing them on an embedded Mongo:
+ * first saving each record through its own write, as the flow did before the micro-batched persistence, then through the bulk upserts of {@link RewardTransactionBulkSaveService}.
+ * The records/s of both runs are logged.<br />
+ * The number of transactions is configurable through the system property <i>benchmark.transaction-ingestion.transactions</i> (e.g. 100000)
+ */
+@Slf4j
+@DirtiesContext
+@MongoTest
+class PersistenceTransactionMediatorThroughputTest {
+
+    private static final int TRANSACTIONS = Integer.getInteger("benchmark.transaction-ingestion.transactions", 2_000);
+    private static final String PER_RECORD_TOPIC = "idpay-transaction-per-record";
+    private static final String BULK_TOPIC = "idpay-transaction-bulk";
+    private static final int PARTITIONS = 4;
+
+    private static EmbeddedKafkaBroker kafkaBroker;
+
+    @Autowired
+    private RewardTransactionRepository rewardTransactionRepository;
+
+    @BeforeAll
+    static void startBroker() {
+        kafkaBroker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, PER_RECORD_TOPIC, BULK_TOPIC);
+        kafkaBroker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        kafkaBroker.destroy();
+    }
+
+    @AfterEach
+    void clearData() {
+        rewardTransactionRepository.deleteAll().block();
+    }
+
+    @Test
+    void testIngestionThroughput() {
+        publishTransactions(PER_RECORD_TOPIC, "PER_RECORD");
+        publishTransactions(BULK_TOPIC, "BULK");
+
+        RewardTransactionBulkSaveService perRecordSaveService = Mockito.mock(RewardTransactionBulkSaveService.class);
+        Mockito.when(perRecordSaveService.save(Mockito.any())).thenAnswer(i -> rewardTransactionRepository.save(i.<RewardTransaction>getArgument(0)));
+        long perRecordMillis = consume(PER_RECORD_TOPIC, perRecordSaveService, "PER_RECORD");
+
+        RewardTransactionBulkSaveServiceImpl bulkSaveService = new RewardTransactionBulkSaveServiceImpl(rewardTransactionRepository, 500, 20);
+        long bulkMillis;
+        try {
+            bulkMillis = consume(BULK_TOPIC, bulkSaveService, "BULK");
+        } finally {
+            bulkSaveService.dispose();
+        }
+
+        log.info("[TRANSACTION_INGESTION_BENCHMARK] Ingestion of {} transactions: one write per record {} records/s ({} ms), micro-batched bulk upserts {} records/s ({} ms)",
+                TRANSACTIONS,
+                TRANSACTIONS * 1000L / Math.max(1, perRecordMillis), perRecordMillis,
+                TRANSACTIONS * 1000L / Math.max(1, bulkMillis), bulkMillis);
+
+        Assertions.assertEquals(2L * TRANSACTIONS, rewardTransactionRepository.count().block());
+    }
+
+    /** It will consume the topic until all its transactions have been stored, returning the elapsed millis */
+    private long consume(String topic, RewardTransactionBulkSaveService rewardTransactionBulkSaveService, String idPrefix) {
+        PersistenceTransactionMediatorImpl mediator = buildMediator(rewardTransactionBulkSaveService);
+
+        long startTime = System.currentTimeMillis();
+        try (EmbeddedKafkaConsumerHarness ignored = new EmbeddedKafkaConsumerHarness(kafkaBroker, topic, "ingestion-" + topic, mediator, Duration.ofSeconds(10)).start()) {
+            TestUtils.waitFor(() -> countStored(idPrefix) == TRANSACTIONS,
+                    () -> "Transactions not stored: " + countStored(idPrefix), 6_000, 50);
+            return System.currentTimeMillis() - startTime;
+        }
+    }
+
+    private long countStored(String idPrefix) {
+        return rewardTransactionRepository.findAll()
+                .filter(trx -> trx.getId().startsWith(idPrefix))
+                .count()
+                .blockOptional()
+                .orElse(0L);
+    }
+
+    private PersistenceTransactionMediatorImpl buildMediator(RewardTransactionBulkSaveService rewardTransactionBulkSaveService) {
+        RewardTransactionService rewardTransactionService = new RewardTransactionServiceImpl(
+                rewardTransactionRepository,
+                Mockito.mock(RewardBatchService.class),
+                Mockito.mock(MerchantRestClient.class),
+                0,
+                Mockito.mock(RewardBatchCountersWriteBehindService.class),
+                Mockito.mock(RewardBatchCounterStripeService.class));
+
+        return new PersistenceTransactionMediatorImpl(
+                "appName",
+                rewardTransactionService,
+                rewardTransactionBulkSaveService,
+                new RewardTransactionFingerprintServiceImpl(rewardTransactionRepository, TestUtils.objectMapper, 500, 20),
+                Mockito.mock(RewardBatchService.class),
+                Mockito.mock(TransactionErrorNotifierService.class),
+                new RewardTransactionMapper(),
+                500,
+                0,
+                Optional.empty(),
+                UncommittableErrorRetryPolicy.DEFAULT,
+                null,
+                null,
+                Optional.empty(),
+                30000,
+                TestUtils.objectMapper);
+    }
+
+    private static void publishTransactions(String topic, String idPrefix) {
+        try (KafkaProducer<String, byte[]> producer = new KafkaProducer<>(KafkaTestUtils.producerProps(kafkaBroker), new StringSerializer(), new ByteArraySerializer())) {
+            for (int i = 0; i < TRANSACTIONS; i++) {
+                String trxId = "%s_TRXID_%d".formatted(idPrefix, i);
+                // not INVOICED, thus stored without resolving a reward batch
+                byte[] payload = TestUtils.jsonSerializer(RewardTransactionDTOFaker.mockInstanceBuilder(i)
+                                .id(trxId)
+                                .status("REWARDED")
+                                .build())
+                        .getBytes(StandardCharsets.UTF_8);
+                producer.send(new ProducerRecord<>(topic, trxId, payload));
+            }
+            producer.flush();
+        }
+    }
+}
@@ -18,7 +18,6 @@ import it.gov.pagopa.idpay.transactions.enums.SyncTrxStatus;
 import it.gov.pagopa.idpay.transactions.model.Reward;
 import it.gov.pagopa.idpay.transactions.model.RewardBatch;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
-import it.gov.pagopa.idpay.transactions.notifier.TransactionNotifierService;
 import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
 import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
 import it.gov.pagopa.idpay.transactions.service.invoice_lifecycle.InvoiceLifecyclePolicy;
@@ -29,6 +28,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -38,7 +38,6 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.multipart.FilePart;
-import org.springframework.messaging.Message;
 import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -65,8 +64,7 @@ class PointOfSaleTransactionServiceImplTest {
     @Mock private RewardTransactionRepository rewardTransactionRepository;
     @Mock private InvoiceStorageClient invoiceStorageClient;
     @Mock private RewardBatchRepository rewardBatchRepository;
-    @Mock private TransactionErrorNotifierService transactionErrorNotifierService;
-    @Mock private TransactionNotifierService transactionNotifierService;
+    @Mock private TransactionOutboxService transactionOutboxService;
     @Mock private RewardBatchService rewardBatchService;
     @Mock private InvoiceLifecyclePolicy invoiceLifeCyclePolicy;
 
@@ -782,7 +780,7 @@ class PointOfSaleTransactionServiceImplTest {
 
         verify(rewardBatchRepository, never()).updateTotals(anyString(), any());
         verify(rewardTransactionRepository, never()).save(any());
-        verify(transactionNotifierService, never()).notify(any(RewardTransactionKafkaDTO.class), any());
+        verify(transactionOutboxService, never()).enqueue(any(RewardTransactionKafkaDTO.class), any());
     }
 
     @Test
@@ -811,8 +809,8 @@ class PointOfSaleTransactionServiceImplTest {
                 .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
         when(rewardBatchRepository.updateTotals(eq("B1"), any(BatchCountersDTO.class)))
                 .thenReturn(Mono.just(batch));
-        when(transactionNotifierService.notify(any(), any()))
-                .thenReturn(true);
+        when(transactionOutboxService.enqueue(any(), any()))
+                .thenReturn(Mono.empty());
 
         StepVerifier.create(service.reversalTransaction(TRX_ID, MERCHANT_ID, fp, DOC_NUMBER, invoiceLifeCyclePolicy))
                 .verifyComplete();
@@ -821,6 +819,12 @@ class PointOfSaleTransactionServiceImplTest {
                 Long.valueOf(-1L).equals(c.getNumberOfTransactions()) &&
                         Long.valueOf(-123L).equals(c.getInitialAmountCents())
         ));
+
+        // the notification is stored before applying the reversal
+        InOrder inOrder = inOrder(transactionOutboxService, rewardTransactionRepository, rewardBatchRepository);
+        inOrder.verify(transactionOutboxService).enqueue(argThat(n -> SyncTrxStatus.REFUNDED.toString().equals(n.getStatus())), any());
+        inOrder.verify(rewardTransactionRepository).save(any());
+        inOrder.verify(rewardBatchRepository).updateTotals(eq("B1"), any());
     }
 
     @Test
@@ -849,8 +853,8 @@ class PointOfSaleTransactionServiceImplTest {
                 .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
         when(rewardBatchRepository.updateTotals(eq("B1"), any(BatchCountersDTO.class)))
                 .thenReturn(Mono.just(batch));
-        when(transactionNotifierService.notify(any(), any()))
-                .thenReturn(true);
+        when(transactionOutboxService.enqueue(any(), any()))
+                .thenReturn(Mono.empty());
 
         StepVerifier.create(service.reversalTransaction(TRX_ID, MERCHANT_ID, fp, DOC_NUMBER, invoiceLifeCyclePolicy))
                 .verifyComplete();
@@ -890,8 +894,8 @@ class PointOfSaleTransactionServiceImplTest {
                 .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
         when(rewardBatchRepository.updateTotals(eq("B1"), any(BatchCountersDTO.class)))
                 .thenReturn(Mono.just(batch));
-        when(transactionNotifierService.notify(any(), any()))
-                .thenReturn(true);
+        when(transactionOutboxService.enqueue(any(), any()))
+                .thenReturn(Mono.empty());
 
         StepVerifier.create(service.reversalTransaction(TRX_ID, MERCHANT_ID, fp, DOC_NUMBER, invoiceLifeCyclePolicy))
                 .verifyComplete();
@@ -933,7 +937,7 @@ class PointOfSaleTransactionServiceImplTest {
     }
 
     @Test
-    void reversalTransaction_notifyFalse_triggersErrorNotifierAndPropagates() {
+    void reversalTransaction_enqueueError_propagatesWithoutApplyingChanges() {
         FilePart fp = filePartBackedBySrc("credit-note.pdf", true);
 
         RewardTransaction trx = baseTransaction();
@@ -946,9 +950,6 @@ class PointOfSaleTransactionServiceImplTest {
         batch.setId("B1");
         batch.setStatus(RewardBatchStatus.CREATED);
 
-        @SuppressWarnings("unchecked")
-        Message<RewardTransactionKafkaDTO> message = (Message<RewardTransactionKafkaDTO>) mock(Message.class);
-
         stubUploadOk();
 
         when(rewardTransactionRepository.findTransaction(MERCHANT_ID, TRX_ID))
@@ -957,24 +958,15 @@ class PointOfSaleTransactionServiceImplTest {
                 .thenReturn(Mono.just(batch));
         when(invoiceLifeCyclePolicy.validate(trx, batch))
                 .thenReturn(Mono.just(trx));
-        when(rewardTransactionRepository.save(any()))
-                .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
-        when(rewardBatchRepository.updateTotals(eq("B1"), any(BatchCountersDTO.class)))
-                .thenReturn(Mono.just(batch));
-        when(transactionNotifierService.notify(any(), any()))
-                .thenReturn(false);
-        when(transactionNotifierService.buildMessage(any(), any()))
-                .thenReturn(message);
+        when(transactionOutboxService.enqueue(any(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("DUMMY_OUTBOX_ERROR")));
 
         StepVerifier.create(service.reversalTransaction(TRX_ID, MERCHANT_ID, fp, DOC_NUMBER, invoiceLifeCyclePolicy))
                 .expectError(IllegalStateException.class)
                 .verify();
 
-        verify(transactionErrorNotifierService).notifyTransactionOutcome(
-                eq(message),
-                contains("REVERSAL_INVOICED_TRANSACTION_REQUEST"),
-                eq(true),
-                any(Throwable.class));
+        verify(rewardTransactionRepository, never()).save(any());
+        verify(rewardBatchRepository, never()).updateTotals(any(), any());
     }
 
     @Test
@@ -0,0 +1,205 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.exception.RewardBatchSealedException;
+import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterStripe;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+@ExtendWith(MockitoExtension.class)
+class RewardBatchCounterStripeServiceImplTest {
+
+    private static final String BATCH_ID = "BATCH_ID";
+    private static final int STRIPES = 4;
+
+    @Mock
+    private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepositoryMock;
+    @Mock
+    private RewardBatchRepository rewardBatchRepositoryMock;
+
+    private RewardBatchCounterStripeService service;
+
+    @BeforeEach
+    void init() {
+        service = new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepositoryMock, rewardBatchRepositoryMock, STRIPES);
+    }
+
+    @Test
+    void testIncrementSpreadAcrossStripes() {
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.incrementStripe(Mockito.eq(BATCH_ID), Mockito.anyInt(), Mockito.any(), Mockito.any()))
+                .thenReturn(Mono.just(true));
+
+        IntStream.range(0, 100).forEach(i ->
+                Assertions.assertEquals(BATCH_ID, service.increment(BATCH_ID, "TRXID%d".formatted(i), BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L)).block()));
+        Assertions.assertEquals(BATCH_ID, service.increment(BATCH_ID, "TRXID0", BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L)).block());
+
+        ArgumentCaptor<Integer> stripeCaptor = ArgumentCaptor.forClass(Integer.class);
+        Mockito.verify(rewardBatchCounterStripeRepositoryMock, Mockito.times(101)).incrementStripe(Mockito.eq(BATCH_ID), stripeCaptor.capture(), Mockito.any(), Mockito.any());
+        List<Integer> stripes = stripeCaptor.getAllValues();
+        Assertions.assertEquals(Set.of(0, 1, 2, 3), new HashSet<>(stripes));
+        Assertions.assertEquals(stripes.getFirst(), stripes.getLast());
+        Mockito.verifyNoInteractions(rewardBatchRepositoryMock);
+    }
+
+    @Test
+    void testIncrementSingleStripe() {
+        service = new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepositoryMock, rewardBatchRepositoryMock, 1);
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.incrementStripe(Mockito.eq(BATCH_ID), Mockito.eq(0), Mockito.eq(Set.of("TRXID1", "TRXID2")),
+                        Mockito.argThat(c -> c.getNumberOfTransactions() == 2L && c.getInitialAmountCents() == 300L)))
+                .thenReturn(Mono.just(true));
+
+        Assertions.assertEquals(BATCH_ID, service.increment(BATCH_ID, Map.of(
+                "TRXID1", BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L).incrementInitialAmountCents(100L),
+                "TRXID2", BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L).incrementInitialAmountCents(200L))).block());
+
+        Mockito.verifyNoInteractions(rewardBatchRepositoryMock);
+    }
+
+    @Test
+    void testIncrementWithAlreadyCountedTransaction() {
+        service = new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepositoryMock, rewardBatchRepositoryMock, 1);
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.incrementStripe(Mockito.eq(BATCH_ID), Mockito.eq(0), Mockito.eq(Set.of("TRXID1", "TRXID2")), Mockito.any()))
+                .thenReturn(Mono.just(false));
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.incrementStripe(Mockito.eq(BATCH_ID), Mockito.eq(0), Mockito.eq(Set.of("TRXID1")), Mockito.any()))
+                .thenReturn(Mono.just(false));
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.incrementStripe(Mockito.eq(BATCH_ID), Mockito.eq(0), Mockito.eq(Set.of("TRXID2")),
+                        Mockito.argThat(c -> c.getInitialAmountCents() == 200L)))
+                .thenReturn(Mono.just(true));
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.isSealed(BATCH_ID)).thenReturn(Mono.just(false));
+
+        Assertions.assertEquals(BATCH_ID, service.increment(BATCH_ID, Map.of(
+                "TRXID1", BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L).incrementInitialAmountCents(100L),
+                "TRXID2", BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L).incrementInitialAmountCents(200L))).block());
+
+        Mockito.verify(rewardBatchCounterStripeRepositoryMock, Mockito.times(3)).incrementStripe(Mockito.any(), Mockito.anyInt(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void testIncrementOnSealedBatch() {
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.incrementStripe(Mockito.eq(BATCH_ID), Mockito.anyInt(), Mockito.eq(Set.of("TRXID1")), Mockito.any()))
+                .thenReturn(Mono.just(false));
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.isSealed(BATCH_ID)).thenReturn(Mono.just(true));
+
+        Mono<String> result = service.increment(BATCH_ID, "TRXID1", BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L));
+        Assertions.assertThrows(RewardBatchSealedException.class, result::block);
+
+        Mockito.verify(rewardBatchCounterStripeRepositoryMock).incrementStripe(Mockito.any(), Mockito.anyInt(), Mockito.any(), Mockito.any());
+        Mockito.verifyNoInteractions(rewardBatchRepositoryMock);
+    }
+
+    @Test
+    void testSumStripes() {
+        RewardBatch batch1 = RewardBatch.builder().id("BATCH1").numberOfTransactions(1L).initialAmountCents(100L).build();
+        RewardBatch batch2 = RewardBatch.builder().id("BATCH2").numberOfTransactions(5L).initialAmountCents(500L).build();
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.findCountersByRewardBatchIds(List.of("BATCH1", "BATCH2")))
+                .thenReturn(Flux.just(buildStripe("BATCH1", 0, 2, 200), buildStripe("BATCH1", 3, 3, 300)));
+
+        List<RewardBatch> result = service.sumStripes(List.of(batch1, batch2)).block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(6L, result.get(0).getNumberOfTransactions());
+        Assertions.assertEquals(600L, result.get(0).getInitialAmountCents());
+        Assertions.assertEquals(0L, result.get(0).getNumberOfTransactionsRejected());
+        Assertions.assertEquals(5L, result.get(1).getNumberOfTransactions());
+        Assertions.assertEquals(500L, result.get(1).getInitialAmountCents());
+    }
+
+    @Test
+    void testSumStripesSkippingFoldedStripes() {
+        RewardBatch batch = RewardBatch.builder().id(BATCH_ID).numberOfTransactions(3L).initialAmountCents(300L)
+                .foldedStripeIds(List.of(RewardBatchCounterStripe.buildId(BATCH_ID, 0))).build();
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.findCountersByRewardBatchIds(List.of(BATCH_ID)))
+                .thenReturn(Flux.just(buildStripe(BATCH_ID, 0, 2, 200), buildStripe(BATCH_ID, 1, 3, 300)));
+
+        RewardBatch result = service.sumStripes(batch).block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(6L, result.getNumberOfTransactions());
+        Assertions.assertEquals(600L, result.getInitialAmountCents());
+    }
+
+    @Test
+    void testCompact() {
+        RewardBatch batch = RewardBatch.builder().id(BATCH_ID).numberOfTransactions(1L).initialAmountCents(100L).build();
+        RewardBatch folded0 = RewardBatch.builder().id(BATCH_ID).numberOfTransactions(3L).initialAmountCents(300L).build();
+        RewardBatch folded1 = RewardBatch.builder().id(BATCH_ID).numberOfTransactions(6L).initialAmountCents(600L).build();
+        RewardBatchCounterStripe stripe0 = buildStripe(BATCH_ID, 0, 2, 200);
+        RewardBatchCounterStripe stripe1 = buildStripe(BATCH_ID, 1, 3, 300);
+        RewardBatchCounterStripe stripe2 = buildStripe(BATCH_ID, 2, 0, 0);
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.sealStripes(BATCH_ID, STRIPES)).thenReturn(Mono.empty());
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.findCountersByRewardBatchIds(List.of(BATCH_ID))).thenReturn(Flux.just(stripe0, stripe1, stripe2));
+        Mockito.when(rewardBatchRepositoryMock.foldStripe(Mockito.eq(BATCH_ID), Mockito.eq(stripe0.getId()), Mockito.argThat(c -> c.getNumberOfTransactions() == 2L && c.getInitialAmountCents() == 200L)))
+                .thenReturn(Mono.just(folded0));
+        Mockito.when(rewardBatchRepositoryMock.foldStripe(Mockito.eq(BATCH_ID), Mockito.eq(stripe1.getId()), Mockito.argThat(c -> c.getNumberOfTransactions() == 3L && c.getInitialAmountCents() == 300L)))
+                .thenReturn(Mono.just(folded1));
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.drainStripe(stripe0.getId())).thenReturn(Mono.just(stripe0));
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.drainStripe(stripe1.getId())).thenReturn(Mono.just(stripe1));
+
+        Assertions.assertSame(folded1, service.compact(batch).block());
+
+        // each stripe is drained only after having been folded
+        InOrder inOrder = Mockito.inOrder(rewardBatchRepositoryMock, rewardBatchCounterStripeRepositoryMock);
+        inOrder.verify(rewardBatchRepositoryMock).foldStripe(Mockito.eq(BATCH_ID), Mockito.eq(stripe0.getId()), Mockito.any());
+        inOrder.verify(rewardBatchCounterStripeRepositoryMock).drainStripe(stripe0.getId());
+        inOrder.verify(rewardBatchRepositoryMock).foldStripe(Mockito.eq(BATCH_ID), Mockito.eq(stripe1.getId()), Mockito.any());
+        inOrder.verify(rewardBatchCounterStripeRepositoryMock).drainStripe(stripe1.getId());
+        Mockito.verify(rewardBatchCounterStripeRepositoryMock, Mockito.never()).drainStripe(stripe2.getId());
+    }
+
+    @Test
+    void testCompactRetriedAfterFold() {
+        RewardBatch batch = RewardBatch.builder().id(BATCH_ID).numberOfTransactions(3L).initialAmountCents(300L)
+                .foldedStripeIds(List.of(RewardBatchCounterStripe.buildId(BATCH_ID, 0))).build();
+        RewardBatchCounterStripe stripe0 = buildStripe(BATCH_ID, 0, 2, 200);
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.sealStripes(BATCH_ID, STRIPES)).thenReturn(Mono.empty());
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.findCountersByRewardBatchIds(List.of(BATCH_ID))).thenReturn(Flux.just(stripe0));
+        // the stripe has been folded by the interrupted compaction, but not drained
+        Mockito.when(rewardBatchRepositoryMock.foldStripe(Mockito.eq(BATCH_ID), Mockito.eq(stripe0.getId()), Mockito.any())).thenReturn(Mono.empty());
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.drainStripe(stripe0.getId())).thenReturn(Mono.just(stripe0));
+
+        RewardBatch result = service.compact(batch).block();
+
+        Assertions.assertSame(batch, result);
+        Assertions.assertEquals(3L, result.getNumberOfTransactions());
+        Mockito.verify(rewardBatchCounterStripeRepositoryMock).drainStripe(stripe0.getId());
+    }
+
+    @Test
+    void testCompactWithoutStripes() {
+        RewardBatch batch = RewardBatch.builder().id(BATCH_ID).build();
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.sealStripes(BATCH_ID, STRIPES)).thenReturn(Mono.empty());
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.findCountersByRewardBatchIds(List.of(BATCH_ID))).thenReturn(Flux.empty());
+
+        Assertions.assertSame(batch, service.compact(batch).block());
+
+        Mockito.verifyNoInteractions(rewardBatchRepositoryMock);
+    }
+
+    private static RewardBatchCounterStripe buildStripe(String rewardBatchId, int stripe, long numberOfTransactions, long initialAmountCents) {
+        return RewardBatchCounterStripe.builder()
+                .id(RewardBatchCounterStripe.buildId(rewardBatchId, stripe))
+                .rewardBatchId(rewardBatchId)
+                .stripe(stripe)
+                .numberOfTransactions(numberOfTransactions)
+                .initialAmountCents(initialAmountCents)
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.enums.PosType;
+import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
+import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterMarker;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/** It will check that the counters increments of redelivered transactions are not applied twice */
+@DirtiesContext
+@MongoTest
+class RewardBatchCountersRedeliveryTest {
+
+    private static final String BATCH_ID = "REDELIVERY_BATCH";
+    private static final int TRANSACTIONS = 2_000;
+
+    @Autowired
+    private RewardBatchRepository rewardBatchRepository;
+    @Autowired
+    private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private RewardBatchCounterStripeService rewardBatchCounterStripeService;
+    private RewardBatchCountersWriteBehindServiceImpl rewardBatchCountersWriteBehindService;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        rewardBatchCounterStripeService = new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepository, rewardBatchRepository, 4);
+        rewardBatchCountersWriteBehindService = new RewardBatchCountersWriteBehindServiceImpl(rewardBatchCounterStripeService, 100, 20);
+        rewardBatchRepository.save(RewardBatch.builder()
+                .id(BATCH_ID)
+                .merchantId("MERCHANT")
+                .month("2025-11")
+                .posType(PosType.PHYSICAL)
+                .status(RewardBatchStatus.CREATED)
+                .initialAmountCents(0L)
+                .numberOfTransactions(0L)
+                .build()).block();
+    }
+
+    @AfterEach
+    void clearData() {
+        if (rewardBatchCountersWriteBehindService != null) {
+            rewardBatchCountersWriteBehindService.dispose();
+        }
+        rewardBatchRepository.deleteAll().block();
+        rewardBatchCounterStripeRepository.deleteAll().block();
+        mongoTemplate.remove(new Query(), RewardBatchCounterMarker.class).block();
+    }
+
+    @Test
+    void testRedeliveredTransactionsCountedOnce() {
+        List<Integer> firstDelivery = IntStream.range(0, TRANSACTIONS).boxed().toList();
+        // a redelivery of records already flushed, interleaved with other records and with the copies of the same window
+        List<Integer> redelivery = Stream.concat(
+                        IntStream.range(0, TRANSACTIONS / 4).boxed(),
+                        IntStream.range(0, TRANSACTIONS / 4).map(i -> TRANSACTIONS / 4 - 1 - i).boxed())
+                .toList();
+
+        ingest(firstDelivery);
+        ingest(redelivery);
+        // the increments of a flush partially failed are submitted again one by one
+        rewardBatchCounterStripeService.increment(BATCH_ID, "TRXID7", buildCounters(7)).block();
+
+        RewardBatch batch = rewardBatchCounterStripeService.sumStripes(rewardBatchRepository.findById(BATCH_ID).block()).block();
+        Assertions.assertNotNull(batch);
+        Assertions.assertEquals(TRANSACTIONS, batch.getNumberOfTransactions());
+        Assertions.assertEquals((long) TRANSACTIONS * (TRANSACTIONS - 1) / 2, batch.getInitialAmountCents());
+    }
+
+    private void ingest(List<Integer> trxIndexes) {
+        Long completed = Flux.fromIterable(trxIndexes)
+                .flatMap(i -> rewardBatchCountersWriteBehindService.increment(BATCH_ID, "TRXID%d".formatted(i), buildCounters(i)), 64)
+                .count()
+                .block(Duration.ofMinutes(1));
+        Assertions.assertEquals(trxIndexes.size(), completed);
+    }
+
+    private static BatchCountersDTO buildCounters(int i) {
+        return BatchCountersDTO.newBatch()
+                .incrementNumberOfTransactions(1L)
+                .incrementInitialAmountCents((long) i);
+    }
+}
@@ -0,0 +1,143 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
+import it.gov.pagopa.idpay.transactions.test.fakers.RewardTransactionFaker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@ExtendWith(MockitoExtension.class)
+class RewardBatchCountersWriteBehindServiceImplTest {
+
+    private static final int BATCHES = 5;
+
+    @Mock
+    private RewardBatchRepository rewardBatchRepositoryMock;
+    @Mock
+    private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepositoryMock;
+
+    private RewardBatchCountersWriteBehindServiceImpl service;
+
+    @BeforeEach
+    void init() {
+        service = buildService(1);
+    }
+
+    private RewardBatchCountersWriteBehindServiceImpl buildService(int stripes) {
+        return new RewardBatchCountersWriteBehindServiceImpl(
+                new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepositoryMock, rewardBatchRepositoryMock, stripes),
+                500, 20);
+    }
+
+    @Test
+    void testIncrementsCoalescedPerBatch() {
+        List<RewardTransaction> trxs = buildTransactions();
+
+        Map<String, BatchCountersDTO> storedCounters = mockStripesIncrement(ConcurrentHashMap.newKeySet());
+
+        incrementAndCheck(service, trxs, storedCounters);
+
+        Mockito.verify(rewardBatchCounterStripeRepositoryMock, Mockito.atMost(trxs.size() / 10)).incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any());
+        Mockito.verifyNoInteractions(rewardBatchRepositoryMock);
+    }
+
+    @Test
+    void testIncrementsCoalescedPerBatchOnStripes() {
+        List<RewardTransaction> trxs = buildTransactions();
+
+        Set<Integer> usedStripes = ConcurrentHashMap.newKeySet();
+        Map<String, BatchCountersDTO> storedCounters = mockStripesIncrement(usedStripes);
+
+        incrementAndCheck(buildService(4), trxs, storedCounters);
+
+        Assertions.assertTrue(usedStripes.size() > 1);
+        Mockito.verifyNoInteractions(rewardBatchRepositoryMock);
+    }
+
+    @Test
+    void testRedeliveredIncrementInSameFlush() {
+        Map<String, BatchCountersDTO> storedCounters = mockStripesIncrement(ConcurrentHashMap.newKeySet());
+        BatchCountersDTO counters = BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L).incrementInitialAmountCents(100L);
+
+        List<String> result = Flux.just("TRXID0", "TRXID1", "TRXID0")
+                .flatMapSequential(trxId -> service.increment("BATCH0", trxId, counters))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        Assertions.assertEquals(List.of("BATCH0", "BATCH0", "BATCH0"), result);
+        Assertions.assertEquals(2L, storedCounters.get("BATCH0").getNumberOfTransactions());
+        Assertions.assertEquals(200L, storedCounters.get("BATCH0").getInitialAmountCents());
+    }
+
+    private Map<String, BatchCountersDTO> mockStripesIncrement(Set<Integer> usedStripes) {
+        Map<String, BatchCountersDTO> storedCounters = new ConcurrentHashMap<>();
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any()))
+                .thenAnswer(i -> {
+                    usedStripes.add(i.getArgument(1));
+                    storedCounters.computeIfAbsent(i.getArgument(0), id -> BatchCountersDTO.newBatch()).add(i.getArgument(3));
+                    return Mono.just(true);
+                });
+        return storedCounters;
+    }
+
+    private static List<RewardTransaction> buildTransactions() {
+        return IntStream.range(0, 5000)
+                .mapToObj(i -> RewardTransactionFaker.mockInstanceBuilder(i)
+                        .id("TRXID%d".formatted(i))
+                        .rewardBatchId("BATCH%d".formatted(i % BATCHES))
+                        .build())
+                .toList();
+    }
+
+    private static void incrementAndCheck(RewardBatchCountersWriteBehindServiceImpl service, List<RewardTransaction> trxs, Map<String, BatchCountersDTO> storedCounters) {
+        List<String> result = Flux.fromIterable(trxs)
+                .flatMapSequential(trx -> service.increment(trx.getRewardBatchId(), trx.getId(), BatchCountersDTO.newBatch()
+                        .incrementInitialAmountCents(trx.getAmountCents())
+                        .incrementNumberOfTransactions(1L)))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        Assertions.assertEquals(trxs.stream().map(RewardTransaction::getRewardBatchId).toList(), result);
+
+        Map<String, List<RewardTransaction>> expected = trxs.stream().collect(Collectors.groupingBy(RewardTransaction::getRewardBatchId));
+        Assertions.assertEquals(expected.keySet(), storedCounters.keySet());
+        expected.forEach((rewardBatchId, batchTrxs) -> {
+            BatchCountersDTO counters = storedCounters.get(rewardBatchId);
+            Assertions.assertEquals(batchTrxs.stream().mapToLong(RewardTransaction::getAmountCents).sum(), counters.getInitialAmountCents());
+            Assertions.assertEquals(batchTrxs.size(), counters.getNumberOfTransactions());
+        });
+    }
+
+    @Test
+    void testIncrementError() {
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.incrementStripe(Mockito.eq("BATCH0"), Mockito.anyInt(), Mockito.any(), Mockito.any()))
+                .thenReturn(Mono.just(true));
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.incrementStripe(Mockito.eq("BATCH1"), Mockito.anyInt(), Mockito.any(), Mockito.any()))
+                .thenReturn(Mono.error(new IllegalStateException("DUMMY")));
+
+        Mono<String> okIncrement = service.increment("BATCH0", "TRXID0", BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L));
+        Mono<String> koIncrement = service.increment("BATCH1", "TRXID1", BatchCountersDTO.newBatch().incrementNumberOfTransactions(1L));
+
+        StepVerifier.create(Mono.zip(okIncrement, koIncrement.onErrorReturn(IllegalStateException.class, "KO")))
+                .expectNextMatches(t -> t.getT1().equals("BATCH0") && t.getT2().equals("KO"))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,42 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.YearMonth;
+
+@ExtendWith(MockitoExtension.class)
+class RewardBatchPreCreationSchedulerTest {
+
+    @Mock
+    private RewardBatchService rewardBatchServiceMock;
+
+    private RewardBatchPreCreationScheduler scheduler;
+
+    @BeforeEach
+    void init() {
+        scheduler = new RewardBatchPreCreationScheduler(rewardBatchServiceMock);
+    }
+
+    @Test
+    void testPreCreateNextMonthBatches() {
+        Mockito.when(rewardBatchServiceMock.preCreateNextMonthBatches(Mockito.any())).thenReturn(Mono.just(3L));
+
+        scheduler.preCreateNextMonthBatches();
+
+        Mockito.verify(rewardBatchServiceMock).preCreateNextMonthBatches(Mockito.any(YearMonth.class));
+    }
+
+    @Test
+    void testPreCreateNextMonthBatchesError() {
+        Mockito.when(rewardBatchServiceMock.preCreateNextMonthBatches(Mockito.any())).thenReturn(Mono.error(new IllegalStateException("DUMMY")));
+
+        Assertions.assertDoesNotThrow(() -> scheduler.preCreateNextMonthBatches());
+    }
+}
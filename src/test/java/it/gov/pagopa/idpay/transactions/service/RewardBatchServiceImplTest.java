@@ -2,7 +2,10 @@ package it.gov.pagopa.idpay.transactions.service;
 
 import com.azure.core.http.rest.Response;
 import com.azure.storage.blob.models.BlockBlobItem;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
 import com.mongodb.client.result.DeleteResult;
+import it.gov.pagopa.common.utils.TestUtils;
 import it.gov.pagopa.common.web.dto.ErrorDTO;
 import it.gov.pagopa.common.web.exception.*;
 import it.gov.pagopa.idpay.transactions.connector.rest.MerchantRestClient;
@@ -18,25 +21,32 @@ import it.gov.pagopa.idpay.transactions.dto.ChecksErrorDTO;
 import it.gov.pagopa.idpay.transactions.dto.DeliveryRequest;
 import it.gov.pagopa.idpay.transactions.dto.TransactionsRequest;
 import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.dto.batch.RewardBatchTransactionTotalsDTO;
+import it.gov.pagopa.idpay.transactions.dto.batch.RewardBatchTrxStatusGroupDTO;
 import it.gov.pagopa.idpay.transactions.dto.mapper.ChecksErrorMapper;
+import it.gov.pagopa.idpay.transactions.enums.PosType;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchAssignee;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
 import it.gov.pagopa.idpay.transactions.model.ChecksError;
 import it.gov.pagopa.idpay.transactions.model.Reward;
 import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterStripe;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
 import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
 import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
 import it.gov.pagopa.idpay.transactions.storage.ApprovedRewardBatchBlobService;
 import it.gov.pagopa.idpay.transactions.utils.AuditUtilities;
 import it.gov.pagopa.idpay.transactions.utils.ExceptionConstants;
+import org.bson.BsonString;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.NullSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -48,16 +58,20 @@ import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
 import java.lang.reflect.Method;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static it.gov.pagopa.idpay.transactions.enums.PosType.PHYSICAL;
 import static it.gov.pagopa.idpay.transactions.utils.ExceptionConstants.ExceptionMessage.ERROR_MESSAGE_INVALID_CHECKS_ERROR;
@@ -81,6 +95,8 @@ class RewardBatchServiceImplTest {
     @Mock private SelfcareInstitutionsRestClient  selfcareInstitutionsRestClient;
     @Mock private ErogazioniRestClient  erogazioniRestClient;
 
+    private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository;
+
     private RewardBatchServiceImpl service;
     private RewardBatchServiceImpl serviceSpy;
 
@@ -95,6 +111,8 @@ class RewardBatchServiceImplTest {
 
     @BeforeEach
     void setup() {
+        rewardBatchCounterStripeRepository = mock(RewardBatchCounterStripeRepository.class, i ->
+                Flux.class.equals(i.getMethod().getReturnType()) ? Flux.empty() : Mono.empty());
         service = new RewardBatchServiceImpl(
                 rewardBatchRepository,
                 rewardTransactionRepository,
@@ -105,7 +123,12 @@ class RewardBatchServiceImplTest {
                 auditUtilities,
                 merchantRestClient,
                 selfcareInstitutionsRestClient,
-                erogazioniRestClient
+                erogazioniRestClient,
+                new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepository, rewardBatchRepository, 8),
+                60,
+                3600,
+                100,
+                500
         );
         serviceSpy = spy(service);
     }
@@ -185,6 +208,151 @@ class RewardBatchServiceImplTest {
         verify(rewardBatchRepository, times(2)).findByMerchantIdAndPosTypeAndMonth("M1", PHYSICAL, "2025-11");
     }
 
+    @Test
+    void findOrCreateBatch_warmKey_servedFromCache() {
+        RewardBatch existing = RewardBatch.builder()
+                .id("EX")
+                .merchantId("M1")
+                .posType(PHYSICAL)
+                .month("2025-11")
+                .status(RewardBatchStatus.CREATED)
+                .build();
+
+        when(rewardBatchRepository.findByMerchantIdAndPosTypeAndMonth("M1", PHYSICAL, "2025-11"))
+                .thenReturn(Mono.just(existing));
+
+        List<RewardBatch> result = Flux.range(0, 1000)
+                .flatMap(i -> service.findOrCreateBatch("M1", PHYSICAL, "2025-11", BUSINESS_NAME))
+                .collectList()
+                .block();
+
+        assertNotNull(result);
+        assertEquals(1000, result.size());
+        assertTrue(result.stream().allMatch(existing::equals));
+        verify(rewardBatchRepository, times(1)).findByMerchantIdAndPosTypeAndMonth("M1", PHYSICAL, "2025-11");
+    }
+
+    @Test
+    void findOrCreateBatch_maxSizeReached_keepsOtherEntries() {
+        when(rewardBatchRepository.findByMerchantIdAndPosTypeAndMonth(any(), eq(PHYSICAL), eq("2025-11")))
+                .thenAnswer(i -> Mono.just(RewardBatch.builder()
+                        .id("BATCH_" + i.getArgument(0))
+                        .merchantId(i.getArgument(0))
+                        .posType(PHYSICAL)
+                        .month("2025-11")
+                        .status(RewardBatchStatus.CREATED)
+                        .build()));
+
+        // the configured max size is 100
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i <= 100; i++) {
+                assertEquals("BATCH_M" + i, service.findOrCreateBatch("M" + i, PHYSICAL, "2025-11", BUSINESS_NAME).block().getId());
+            }
+        }
+
+        verify(rewardBatchRepository, atMost(150)).findByMerchantIdAndPosTypeAndMonth(any(), eq(PHYSICAL), eq("2025-11"));
+    }
+
+    @Test
+    void findOrCreateBatch_concurrentMisses_singleCreation() {
+        Sinks.One<RewardBatch> saveResult = Sinks.one();
+        when(rewardBatchRepository.findByMerchantIdAndPosTypeAndMonth("M1", PHYSICAL, "2025-11"))
+                .thenReturn(Mono.empty());
+        when(rewardBatchRepository.save(any())).thenReturn(saveResult.asMono());
+
+        List<Mono<RewardBatch>> concurrentResolutions = List.of(
+                service.findOrCreateBatch("M1", PHYSICAL, "2025-11", BUSINESS_NAME),
+                service.findOrCreateBatch("M1", PHYSICAL, "2025-11", BUSINESS_NAME));
+
+        StepVerifier.create(Flux.merge(concurrentResolutions).map(RewardBatch::getId))
+                .then(() -> saveResult.tryEmitValue(RewardBatch.builder().id("NEW").status(RewardBatchStatus.CREATED).build()))
+                .expectNext("NEW", "NEW")
+                .verifyComplete();
+
+        verify(rewardBatchRepository, times(1)).save(any());
+    }
+
+    @Test
+    void findOrCreateBatch_evictedWhenSent() {
+        YearMonth batchMonth = YearMonth.now().minusMonths(1);
+        RewardBatch current = RewardBatch.builder()
+                .id(BATCH_ID)
+                .merchantId(MERCHANT_ID)
+                .status(RewardBatchStatus.CREATED)
+                .month(batchMonth.toString())
+                .posType(PHYSICAL)
+                .build();
+
+        when(rewardBatchRepository.findByMerchantIdAndPosTypeAndMonth(MERCHANT_ID, PHYSICAL, batchMonth.toString()))
+                .thenReturn(Mono.just(current));
+        when(rewardBatchRepository.findById(BATCH_ID)).thenReturn(Mono.just(current));
+        when(rewardBatchRepository.findByMerchantIdAndPosType(MERCHANT_ID, PHYSICAL)).thenReturn(Flux.empty());
+        when(rewardBatchRepository.save(any())).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        service.findOrCreateBatch(MERCHANT_ID, PHYSICAL, batchMonth.toString(), BUSINESS_NAME).block();
+        service.sendRewardBatch(MERCHANT_ID, BATCH_ID).block();
+        service.findOrCreateBatch(MERCHANT_ID, PHYSICAL, batchMonth.toString(), BUSINESS_NAME).block();
+
+        verify(rewardBatchRepository, times(2)).findByMerchantIdAndPosTypeAndMonth(MERCHANT_ID, PHYSICAL, batchMonth.toString());
+    }
+
+    @Test
+    void preloadBatchResolutions_servedFromCache() {
+        RewardBatch preloaded = RewardBatch.builder()
+                .id("PRE")
+                .merchantId("M1")
+                .posType(PHYSICAL)
+                .month("2025-11")
+                .status(RewardBatchStatus.CREATED)
+                .build();
+
+        when(rewardBatchRepository.findByMonthAndStatusAndMerchantIdIn("2025-11", RewardBatchStatus.CREATED, List.of("M1", "M2")))
+                .thenReturn(Flux.just(preloaded));
+
+        StepVerifier.create(service.preloadBatchResolutions(List.of("M1", "M2"), "2025-11"))
+                .expectNext(1L)
+                .verifyComplete();
+
+        StepVerifier.create(service.findOrCreateBatch("M1", PHYSICAL, "2025-11", BUSINESS_NAME))
+                .expectNext(preloaded)
+                .verifyComplete();
+
+        verify(rewardBatchRepository, never()).findByMerchantIdAndPosTypeAndMonth(any(), any(), any());
+    }
+
+    @Test
+    void preloadBatchResolutions_outliveResolvedEntries() {
+        RewardBatchServiceImpl shortTtlService = new RewardBatchServiceImpl(rewardBatchRepository, rewardTransactionRepository, userRestClient,
+                approvedRewardBatchBlobService, reactiveMongoTemplate, checksErrorMapper, auditUtilities, merchantRestClient,
+                selfcareInstitutionsRestClient, erogazioniRestClient,
+                new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepository, rewardBatchRepository, 8),
+                1, 60, 100, 500);
+        RewardBatch preloaded = RewardBatch.builder().id("PRE").merchantId("M1").posType(PHYSICAL).month("2025-11").status(RewardBatchStatus.CREATED).build();
+        RewardBatch resolved = RewardBatch.builder().id("RES").merchantId("M2").posType(PHYSICAL).month("2025-11").status(RewardBatchStatus.CREATED).build();
+        when(rewardBatchRepository.findByMonthAndStatusAndMerchantIdIn("2025-11", RewardBatchStatus.CREATED, List.of("M1")))
+                .thenReturn(Flux.just(preloaded));
+        when(rewardBatchRepository.findByMerchantIdAndPosTypeAndMonth("M2", PHYSICAL, "2025-11"))
+                .thenReturn(Mono.just(resolved));
+
+        assertEquals(1L, shortTtlService.preloadBatchResolutions(List.of("M1"), "2025-11").block());
+        assertEquals(resolved, shortTtlService.findOrCreateBatch("M2", PHYSICAL, "2025-11", BUSINESS_NAME).block());
+        TestUtils.wait(1200, TimeUnit.MILLISECONDS);
+
+        assertEquals(preloaded, shortTtlService.findOrCreateBatch("M1", PHYSICAL, "2025-11", BUSINESS_NAME).block());
+        assertEquals(resolved, shortTtlService.findOrCreateBatch("M2", PHYSICAL, "2025-11", BUSINESS_NAME).block());
+        verify(rewardBatchRepository, never()).findByMerchantIdAndPosTypeAndMonth(eq("M1"), any(), any());
+        verify(rewardBatchRepository, times(2)).findByMerchantIdAndPosTypeAndMonth("M2", PHYSICAL, "2025-11");
+    }
+
+    @Test
+    void preloadBatchResolutions_noMerchants() {
+        StepVerifier.create(service.preloadBatchResolutions(List.of(), "2025-11"))
+                .expectNext(0L)
+                .verifyComplete();
+
+        verifyNoInteractions(rewardBatchRepository);
+    }
+
     @Test
     void isOperator_privateRoleChecks() throws Exception {
         Method m = RewardBatchServiceImpl.class.getDeclaredMethod("isOperator", String.class);
@@ -332,6 +500,119 @@ class RewardBatchServiceImplTest {
         verify(rewardBatchRepository).save(argThat(b -> b.getStatus() == RewardBatchStatus.SENT && b.getMerchantSendDate() != null));
     }
 
+    @Test
+    void preCreateNextMonthBatches_rolloverBurstJustFinds() {
+        YearMonth month = YearMonth.of(2025, 11);
+        String nextMonth = "2025-12";
+        List<RewardBatch> currentBatches = List.of(
+                RewardBatch.builder().id("B1").merchantId("M1").posType(PHYSICAL).month(month.toString()).businessName("B_M1").numberOfTransactions(2L).build(),
+                RewardBatch.builder().id("B2").merchantId("M1").posType(PosType.ONLINE).month(month.toString()).businessName("B_M1").numberOfTransactions(0L).build(),
+                RewardBatch.builder().id("B3").merchantId("M2").posType(PHYSICAL).month(month.toString()).businessName("B_M2").numberOfTransactions(1L).build());
+        RewardBatch emptyBatch = RewardBatch.builder().id("B4").merchantId("M3").posType(PHYSICAL).month(month.toString()).businessName("B_M3").numberOfTransactions(0L).build();
+
+        Map<String, RewardBatch> storedBatches = new ConcurrentHashMap<>();
+        when(rewardBatchRepository.findByMonth(month.toString())).thenAnswer(inv -> Flux.concat(Flux.fromIterable(currentBatches), Flux.just(emptyBatch)));
+        // the transactions of B2 are still counted on its stripes
+        when(rewardBatchCounterStripeRepository.findCountersByRewardBatchIds(List.of("B1", "B2", "B3", "B4")))
+                .thenAnswer(inv -> Flux.just(RewardBatchCounterStripe.builder().id(RewardBatchCounterStripe.buildId("B2", 0)).rewardBatchId("B2").numberOfTransactions(3L).build()));
+        when(rewardBatchRepository.bulkInsertIfMissing(anyList())).thenAnswer(inv -> {
+            List<RewardBatch> batches = inv.getArgument(0);
+            List<BulkWriteUpsert> upserts = new ArrayList<>();
+            for (int i = 0; i < batches.size(); i++) {
+                RewardBatch batch = batches.get(i);
+                String id = "NEW_" + batch.getMerchantId() + "_" + batch.getPosType();
+                batch.setId(id);
+                if (storedBatches.putIfAbsent(batch.getMerchantId() + batch.getPosType() + batch.getMonth(), batch) == null) {
+                    upserts.add(new BulkWriteUpsert(i, new BsonString(id)));
+                }
+            }
+            return Mono.just(BulkWriteResult.acknowledged(0, 0, 0, 0, upserts, List.of()));
+        });
+        when(rewardBatchRepository.findByMerchantIdAndPosTypeAndMonth(anyString(), any(), eq(nextMonth)))
+                .thenAnswer(inv -> Mono.justOrEmpty(storedBatches.get("" + inv.getArgument(0) + inv.getArgument(1) + inv.getArgument(2))));
+
+        StepVerifier.create(service.preCreateNextMonthBatches(month))
+                .expectNext(3L)
+                .verifyComplete();
+        // a second execution will not create anything
+        StepVerifier.create(service.preCreateNextMonthBatches(month))
+                .expectNext(0L)
+                .verifyComplete();
+
+        RewardBatch created = storedBatches.get("M1" + PHYSICAL + nextMonth);
+        assertEquals(RewardBatchStatus.CREATED, created.getStatus());
+        assertEquals("B_M1", created.getBusinessName());
+        assertEquals(0L, created.getNumberOfTransactions());
+        assertEquals(LocalDateTime.of(2025, 12, 1, 0, 0), created.getStartDate());
+        assertNotNull(storedBatches.get("M1" + PosType.ONLINE + nextMonth));
+        // no batch for the merchant without transactions
+        assertNull(storedBatches.get("M3" + PHYSICAL + nextMonth));
+
+        RewardBatchServiceImpl notCachingService = new RewardBatchServiceImpl(rewardBatchRepository, rewardTransactionRepository, userRestClient,
+                approvedRewardBatchBlobService, reactiveMongoTemplate, checksErrorMapper, auditUtilities, merchantRestClient,
+                selfcareInstitutionsRestClient, erogazioniRestClient,
+                new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepository, rewardBatchRepository, 8),
+                0, 0, 100, 500);
+        List<RewardBatch> resolved = Flux.range(0, 600)
+                .flatMap(i -> {
+                    RewardBatch current = currentBatches.get(i % currentBatches.size());
+                    return notCachingService.findOrCreateBatch(current.getMerchantId(), current.getPosType(), nextMonth, current.getBusinessName());
+                }, 64)
+                .collectList()
+                .block();
+
+        assertNotNull(resolved);
+        assertEquals(600, resolved.size());
+        assertTrue(storedBatches.values().containsAll(resolved));
+        verify(rewardBatchRepository, never()).save(any());
+    }
+
+    @Test
+    void sendRewardBatch_foldsCounterStripes() {
+        YearMonth batchMonth = YearMonth.now().minusMonths(1);
+
+        RewardBatch current = RewardBatch.builder()
+                .id(BATCH_ID)
+                .merchantId(MERCHANT_ID)
+                .status(RewardBatchStatus.CREATED)
+                .month(batchMonth.toString())
+                .posType(PHYSICAL)
+                .numberOfTransactions(1L)
+                .initialAmountCents(100L)
+                .build();
+        RewardBatch compacted = RewardBatch.builder()
+                .id(BATCH_ID)
+                .merchantId(MERCHANT_ID)
+                .status(RewardBatchStatus.CREATED)
+                .month(batchMonth.toString())
+                .posType(PHYSICAL)
+                .numberOfTransactions(3L)
+                .initialAmountCents(400L)
+                .build();
+        RewardBatchCounterStripe stripe = RewardBatchCounterStripe.builder()
+                .id(RewardBatchCounterStripe.buildId(BATCH_ID, 3))
+                .rewardBatchId(BATCH_ID)
+                .stripe(3)
+                .numberOfTransactions(2L)
+                .initialAmountCents(300L)
+                .build();
+
+        when(rewardBatchRepository.findById(BATCH_ID)).thenReturn(Mono.just(current));
+        when(rewardBatchRepository.findByMerchantIdAndPosType(MERCHANT_ID, PHYSICAL)).thenReturn(Flux.empty());
+        when(rewardBatchCounterStripeRepository.findCountersByRewardBatchIds(List.of(BATCH_ID))).thenReturn(Flux.just(stripe));
+        when(rewardBatchCounterStripeRepository.sealStripes(BATCH_ID, 8)).thenReturn(Mono.empty());
+        when(rewardBatchCounterStripeRepository.drainStripe(stripe.getId())).thenReturn(Mono.just(stripe));
+        when(rewardBatchRepository.foldStripe(eq(BATCH_ID), eq(stripe.getId()), argThat(c -> c.getNumberOfTransactions() == 2L && c.getInitialAmountCents() == 300L)))
+                .thenReturn(Mono.just(compacted));
+        when(rewardBatchRepository.save(any())).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        StepVerifier.create(service.sendRewardBatch(MERCHANT_ID, BATCH_ID))
+                .verifyComplete();
+
+        verify(rewardBatchRepository).save(argThat(b -> b.getStatus() == RewardBatchStatus.SENT
+                && b.getNumberOfTransactions() == 3L && b.getInitialAmountCents() == 400L));
+    }
+
 
     @Test
     void validChecksError_null_ok() {
@@ -446,7 +727,8 @@ class RewardBatchServiceImplTest {
                 .expectError(ClientExceptionWithBody.class)
                 .verify();
 
-        verify(rewardTransactionRepository, never()).updateStatusAndReturnOld(any(), any(), any(), any(), any(), any());
+        verify(rewardTransactionRepository, never()).aggregateByRewardBatchTrxStatus(any(), any(), any(), any());
+        verify(rewardTransactionRepository, never()).updateStatusByIds(any(), any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -457,8 +739,9 @@ class RewardBatchServiceImplTest {
         ChecksErrorDTO checks = new ChecksErrorDTO();
         checks.setCfError(true);
 
+        List<String> trxIds = List.of("SUSP_PREV", "APP", "TO_CHECK", "CONS", "REJ", "NULL_ACC");
         TransactionsRequest req = TransactionsRequest.builder()
-                .transactionIds(List.of("SUSP_PREV", "APP", "TO_CHECK", "CONS", "REJ", "NULL_ACC"))
+                .transactionIds(trxIds)
                 .reason("REASON")
                 .checksError(checks)
                 .build();
@@ -469,55 +752,17 @@ class RewardBatchServiceImplTest {
         when(rewardBatchRepository.findByIdAndStatus(BATCH_ID, RewardBatchStatus.EVALUATING))
                 .thenReturn(Mono.just(batch));
 
-        RewardTransaction trxSuspPrev = RewardTransaction.builder()
-                .id("SUSP_PREV")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.SUSPENDED)
-                .rewardBatchLastMonthElaborated("2025-11")
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(100L).build()))
-                .build();
-
-        RewardTransaction trxApproved = RewardTransaction.builder()
-                .id("APP")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.APPROVED)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(200L).build()))
-                .build();
-
-        RewardTransaction trxToCheck = RewardTransaction.builder()
-                .id("TO_CHECK")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.TO_CHECK)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(300L).build()))
-                .build();
-
-        RewardTransaction trxConsultable = RewardTransaction.builder()
-                .id("CONS")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.CONSULTABLE)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(400L).build()))
-                .build();
-
-        RewardTransaction trxRejected = RewardTransaction.builder()
-                .id("REJ")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.REJECTED)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(500L).build()))
-                .build();
-
-        RewardTransaction trxNullAccrued = RewardTransaction.builder()
-                .id("NULL_ACC")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.APPROVED)
-                .rewards(Map.of("OTHER", Reward.builder().accruedRewardCents(999L).build()))
-                .build();
-
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("SUSP_PREV"), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), eq(model)))
-                .thenReturn(Mono.just(trxSuspPrev));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("APP"), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth),eq( model)))
-                .thenReturn(Mono.just(trxApproved));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("TO_CHECK"), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), eq(model)))
-                .thenReturn(Mono.just(trxToCheck));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("CONS"), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), eq(model)))
-                .thenReturn(Mono.just(trxConsultable));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("REJ"), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), eq(model)))
-                .thenReturn(Mono.just(trxRejected));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("NULL_ACC"),eq( RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), eq(model)))
-                .thenReturn(Mono.just(trxNullAccrued));
+        List<RewardBatchTrxStatusGroupDTO> groups = List.of(
+                buildTrxStatusGroup(RewardBatchTrxStatus.SUSPENDED, 100L, 1L, "SUSP_PREV"),
+                // NULL_ACC has no reward for the initiative
+                buildTrxStatusGroup(RewardBatchTrxStatus.APPROVED, 200L, 0L, "APP", "NULL_ACC"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.TO_CHECK, 300L, 0L, "TO_CHECK"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.CONSULTABLE, 400L, 0L, "CONS"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.REJECTED, 500L, 0L, "REJ"));
+        when(rewardTransactionRepository.aggregateByRewardBatchTrxStatus(BATCH_ID, trxIds, INITIATIVE_ID, batchMonth))
+                .thenReturn(Flux.fromIterable(groups));
+        groups.forEach(g -> when(rewardTransactionRepository.updateStatusByIds(eq(BATCH_ID), eq(g.getTrxIds()), eq(g.getRewardBatchTrxStatus()), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), eq(model), anyString()))
+                .thenReturn(Mono.just(g.getCount())));
 
         RewardBatch updated = RewardBatch.builder().id(BATCH_ID).build();
         when(rewardBatchRepository.updateTotals(eq(BATCH_ID), any(BatchCountersDTO.class)))
@@ -528,7 +773,7 @@ class RewardBatchServiceImplTest {
                 .verifyComplete();
 
         verify(auditUtilities).logTransactionsStatusChanged(eq(RewardBatchTrxStatus.SUSPENDED.name()), eq(INITIATIVE_ID), anyString(), eq(checks));
-        verify(rewardBatchRepository).updateTotals(eq(BATCH_ID), any(BatchCountersDTO.class));
+        verifyCounters(3L, 5L, -1L, -900L, 1400L);
     }
 
     @Test
@@ -550,15 +795,40 @@ class RewardBatchServiceImplTest {
         when(rewardBatchRepository.findByIdAndStatus(BATCH_ID, RewardBatchStatus.EVALUATING))
                 .thenReturn(Mono.just(batch));
 
-        RewardTransaction trxSuspSame = RewardTransaction.builder()
-                .id("SUSP_SAME")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.SUSPENDED)
-                .rewardBatchLastMonthElaborated("2025-12")
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(100L).build()))
+        RewardBatchTrxStatusGroupDTO group = buildTrxStatusGroup(RewardBatchTrxStatus.SUSPENDED, 100L, 0L, "SUSP_SAME");
+        when(rewardTransactionRepository.aggregateByRewardBatchTrxStatus(BATCH_ID, List.of("SUSP_SAME"), INITIATIVE_ID, batchMonth))
+                .thenReturn(Flux.just(group));
+        when(rewardTransactionRepository.updateStatusByIds(eq(BATCH_ID), eq(List.of("SUSP_SAME")), eq(RewardBatchTrxStatus.SUSPENDED), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), eq(model), anyString()))
+                .thenReturn(Mono.just(1L));
+
+        when(rewardBatchRepository.updateTotals(eq(BATCH_ID), any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(batch));
+
+        StepVerifier.create(service.suspendTransactions(BATCH_ID, INITIATIVE_ID, req))
+                .expectNext(batch)
+                .verifyComplete();
+
+        verifyCounters(0L, 0L, 0L, 0L, 0L);
+    }
+
+    @Test
+    void suspendTransactions_concurrentlyChanged() {
+        String batchMonth = "2025-12";
+        RewardBatch batch = RewardBatch.builder().id(BATCH_ID).status(RewardBatchStatus.EVALUATING).month(batchMonth).build();
+
+        TransactionsRequest req = TransactionsRequest.builder()
+                .transactionIds(List.of("APP1", "APP2"))
+                .reason("R")
                 .build();
 
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("SUSP_SAME"), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), eq(model)))
-                .thenReturn(Mono.just(trxSuspSame));
+        when(rewardBatchRepository.findByIdAndStatus(BATCH_ID, RewardBatchStatus.EVALUATING))
+                .thenReturn(Mono.just(batch));
+
+        RewardBatchTrxStatusGroupDTO group = buildTrxStatusGroup(RewardBatchTrxStatus.APPROVED, 100L, 0L, "APP1", "APP2");
+        when(rewardTransactionRepository.aggregateByRewardBatchTrxStatus(BATCH_ID, List.of("APP1", "APP2"), INITIATIVE_ID, batchMonth))
+                .thenReturn(Flux.just(group));
+        when(rewardTransactionRepository.updateStatusByIds(eq(BATCH_ID), eq(List.of("APP1", "APP2")), eq(RewardBatchTrxStatus.APPROVED), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), isNull(), anyString()))
+                .thenReturn(Mono.just(0L));
 
         when(rewardBatchRepository.updateTotals(eq(BATCH_ID), any(BatchCountersDTO.class)))
                 .thenReturn(Mono.just(batch));
@@ -566,62 +836,75 @@ class RewardBatchServiceImplTest {
         StepVerifier.create(service.suspendTransactions(BATCH_ID, INITIATIVE_ID, req))
                 .expectNext(batch)
                 .verifyComplete();
+
+        verifyCounters(0L, 0L, 0L, 0L, 0L);
     }
 
     @Test
-    void rejectTransactions_allBranches() {
+    void suspendTransactions_partiallyUpdated() {
         String batchMonth = "2025-12";
         RewardBatch batch = RewardBatch.builder().id(BATCH_ID).status(RewardBatchStatus.EVALUATING).month(batchMonth).build();
 
         TransactionsRequest req = TransactionsRequest.builder()
-                .transactionIds(List.of("ALREADY_REJ", "APP", "TO_CHECK", "CONS", "SUSP_PREV"))
-                .reason("WHY")
+                .transactionIds(List.of("APP1", "APP2", "SUSP1", "SUSP2", "SUSP3"))
+                .reason("R")
                 .build();
 
         when(rewardBatchRepository.findByIdAndStatus(BATCH_ID, RewardBatchStatus.EVALUATING))
                 .thenReturn(Mono.just(batch));
 
-        RewardTransaction alreadyRejected = RewardTransaction.builder()
-                .id("ALREADY_REJ")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.REJECTED)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(10L).build()))
-                .build();
+        RewardBatchTrxStatusGroupDTO approvedGroup = buildTrxStatusGroup(RewardBatchTrxStatus.APPROVED, 300L, 0L, "APP1", "APP2");
+        RewardBatchTrxStatusGroupDTO suspendedGroup = buildTrxStatusGroup(RewardBatchTrxStatus.SUSPENDED, 600L, 2L, "SUSP1", "SUSP2", "SUSP3");
+        suspendedGroup.setElaboratedInPreviousMonthsTrxIds(List.of("SUSP1", "SUSP2"));
+        when(rewardTransactionRepository.aggregateByRewardBatchTrxStatus(BATCH_ID, req.getTransactionIds(), INITIATIVE_ID, batchMonth))
+                .thenReturn(Flux.just(approvedGroup, suspendedGroup));
+        when(rewardTransactionRepository.updateStatusByIds(eq(BATCH_ID), eq(approvedGroup.getTrxIds()), eq(RewardBatchTrxStatus.APPROVED), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), isNull(), anyString()))
+                .thenReturn(Mono.just(1L));
+        when(rewardTransactionRepository.updateStatusByIds(eq(BATCH_ID), eq(suspendedGroup.getTrxIds()), eq(RewardBatchTrxStatus.SUSPENDED), eq(RewardBatchTrxStatus.SUSPENDED), any(), eq(batchMonth), isNull(), anyString()))
+                .thenReturn(Mono.just(2L));
+        when(rewardTransactionRepository.aggregateByStatusUpdateId(eq(BATCH_ID), eq(approvedGroup.getTrxIds()), anyString(), eq(INITIATIVE_ID)))
+                .thenReturn(Mono.just(buildTrxStatusGroup(null, 200L, 0L, "APP2")));
+        when(rewardTransactionRepository.aggregateByStatusUpdateId(eq(BATCH_ID), eq(suspendedGroup.getTrxIds()), anyString(), eq(INITIATIVE_ID)))
+                .thenReturn(Mono.just(buildTrxStatusGroup(null, 400L, 0L, "SUSP1", "SUSP3")));
 
-        RewardTransaction approved = RewardTransaction.builder()
-                .id("APP")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.APPROVED)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(20L).build()))
-                .build();
+        when(rewardBatchRepository.updateTotals(eq(BATCH_ID), any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(batch));
 
-        RewardTransaction toCheck = RewardTransaction.builder()
-                .id("TO_CHECK")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.TO_CHECK)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(30L).build()))
-                .build();
+        StepVerifier.create(service.suspendTransactions(BATCH_ID, INITIATIVE_ID, req))
+                .expectNext(batch)
+                .verifyComplete();
 
-        RewardTransaction consultable = RewardTransaction.builder()
-                .id("CONS")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.CONSULTABLE)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(40L).build()))
-                .build();
+        // just the updated transactions are counted: APP2, and SUSP1 as the only one elaborated in previous months
+        verifyCounters(1L, 1L, 0L, -200L, 200L);
+        ArgumentCaptor<String> statusUpdateIdCaptor = ArgumentCaptor.forClass(String.class);
+        verify(rewardTransactionRepository).updateStatusByIds(eq(BATCH_ID), eq(approvedGroup.getTrxIds()), any(), any(), any(), any(), any(), statusUpdateIdCaptor.capture());
+        verify(rewardTransactionRepository).aggregateByStatusUpdateId(BATCH_ID, approvedGroup.getTrxIds(), statusUpdateIdCaptor.getValue(), INITIATIVE_ID);
+    }
 
-        RewardTransaction suspendedPrev = RewardTransaction.builder()
-                .id("SUSP_PREV")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.SUSPENDED)
-                .rewardBatchLastMonthElaborated("2025-11")
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(50L).build()))
+    @Test
+    void rejectTransactions_allBranches() {
+        String batchMonth = "2025-12";
+        RewardBatch batch = RewardBatch.builder().id(BATCH_ID).status(RewardBatchStatus.EVALUATING).month(batchMonth).build();
+
+        List<String> trxIds = List.of("ALREADY_REJ", "APP", "TO_CHECK", "CONS", "SUSP_PREV");
+        TransactionsRequest req = TransactionsRequest.builder()
+                .transactionIds(trxIds)
+                .reason("WHY")
                 .build();
 
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("ALREADY_REJ"), eq(RewardBatchTrxStatus.REJECTED), any(),eq(batchMonth), eq(null)))
-                .thenReturn(Mono.just(alreadyRejected));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("APP"), eq(RewardBatchTrxStatus.REJECTED), any(),eq(batchMonth), eq(null)))
-                .thenReturn(Mono.just(approved));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("TO_CHECK"), eq(RewardBatchTrxStatus.REJECTED), any(), eq(batchMonth), eq(null)))
-                .thenReturn(Mono.just(toCheck));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("CONS"), eq(RewardBatchTrxStatus.REJECTED), any(), eq(batchMonth), eq(null)))
-                .thenReturn(Mono.just(consultable));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(eq(BATCH_ID), eq("SUSP_PREV"), eq(RewardBatchTrxStatus.REJECTED), any(), eq(batchMonth), eq(null)))
-                .thenReturn(Mono.just(suspendedPrev));
+        when(rewardBatchRepository.findByIdAndStatus(BATCH_ID, RewardBatchStatus.EVALUATING))
+                .thenReturn(Mono.just(batch));
+
+        List<RewardBatchTrxStatusGroupDTO> groups = List.of(
+                buildTrxStatusGroup(RewardBatchTrxStatus.REJECTED, 10L, 0L, "ALREADY_REJ"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.APPROVED, 20L, 0L, "APP"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.TO_CHECK, 30L, 0L, "TO_CHECK"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.CONSULTABLE, 40L, 0L, "CONS"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.SUSPENDED, 50L, 1L, "SUSP_PREV"));
+        when(rewardTransactionRepository.aggregateByRewardBatchTrxStatus(BATCH_ID, trxIds, INITIATIVE_ID, batchMonth))
+                .thenReturn(Flux.fromIterable(groups));
+        groups.forEach(g -> when(rewardTransactionRepository.updateStatusByIds(eq(BATCH_ID), eq(g.getTrxIds()), eq(g.getRewardBatchTrxStatus()), eq(RewardBatchTrxStatus.REJECTED), any(), eq(batchMonth), isNull(), anyString()))
+                .thenReturn(Mono.just(g.getCount())));
 
         RewardBatch updated = RewardBatch.builder().id(BATCH_ID).build();
         when(rewardBatchRepository.updateTotals(eq(BATCH_ID), any(BatchCountersDTO.class)))
@@ -630,6 +913,9 @@ class RewardBatchServiceImplTest {
         StepVerifier.create(service.rejectTransactions(BATCH_ID, INITIATIVE_ID, req))
                 .expectNext(updated)
                 .verifyComplete();
+
+        verify(auditUtilities).logTransactionsStatusChanged(eq(RewardBatchTrxStatus.REJECTED.name()), eq(INITIATIVE_ID), anyString(), isNull());
+        verifyCounters(2L, -1L, 4L, -90L, -50L);
     }
 
     @Test
@@ -637,54 +923,24 @@ class RewardBatchServiceImplTest {
         String batchMonth = "2025-12";
         RewardBatch batch = RewardBatch.builder().id(BATCH_ID).status(RewardBatchStatus.EVALUATING).month(batchMonth).build();
 
+        List<String> trxIds = List.of("ALREADY_APP", "TO_CHECK", "CONS", "SUSP_PREV", "REJ");
         TransactionsRequest req = TransactionsRequest.builder()
-                .transactionIds(List.of("ALREADY_APP", "TO_CHECK", "CONS", "SUSP_PREV", "REJ"))
+                .transactionIds(trxIds)
                 .build();
 
         when(rewardBatchRepository.findByIdAndStatus(BATCH_ID, RewardBatchStatus.EVALUATING))
                 .thenReturn(Mono.just(batch));
 
-        RewardTransaction alreadyApproved = RewardTransaction.builder()
-                .id("ALREADY_APP")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.APPROVED)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(10L).build()))
-                .build();
-
-        RewardTransaction toCheck = RewardTransaction.builder()
-                .id("TO_CHECK")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.TO_CHECK)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(20L).build()))
-                .build();
-
-        RewardTransaction consultable = RewardTransaction.builder()
-                .id("CONS")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.CONSULTABLE)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(30L).build()))
-                .build();
-
-        RewardTransaction suspendedPrev = RewardTransaction.builder()
-                .id("SUSP_PREV")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.SUSPENDED)
-                .rewardBatchLastMonthElaborated("2025-11")
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(40L).build()))
-                .build();
-
-        RewardTransaction rejected = RewardTransaction.builder()
-                .id("REJ")
-                .rewardBatchTrxStatus(RewardBatchTrxStatus.REJECTED)
-                .rewards(Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(50L).build()))
-                .build();
-
-        when(rewardTransactionRepository.updateStatusAndReturnOld(BATCH_ID, "ALREADY_APP", RewardBatchTrxStatus.APPROVED, null, batchMonth, null))
-                .thenReturn(Mono.just(alreadyApproved));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(BATCH_ID, "TO_CHECK", RewardBatchTrxStatus.APPROVED, null, batchMonth, null))
-                .thenReturn(Mono.just(toCheck));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(BATCH_ID, "CONS", RewardBatchTrxStatus.APPROVED, null, batchMonth, null))
-                .thenReturn(Mono.just(consultable));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(BATCH_ID, "SUSP_PREV", RewardBatchTrxStatus.APPROVED, null, batchMonth, null))
-                .thenReturn(Mono.just(suspendedPrev));
-        when(rewardTransactionRepository.updateStatusAndReturnOld(BATCH_ID, "REJ", RewardBatchTrxStatus.APPROVED, null, batchMonth, null))
-                .thenReturn(Mono.just(rejected));
+        List<RewardBatchTrxStatusGroupDTO> groups = List.of(
+                buildTrxStatusGroup(RewardBatchTrxStatus.APPROVED, 10L, 0L, "ALREADY_APP"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.TO_CHECK, 20L, 0L, "TO_CHECK"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.CONSULTABLE, 30L, 0L, "CONS"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.SUSPENDED, 40L, 1L, "SUSP_PREV"),
+                buildTrxStatusGroup(RewardBatchTrxStatus.REJECTED, 50L, 0L, "REJ"));
+        when(rewardTransactionRepository.aggregateByRewardBatchTrxStatus(BATCH_ID, trxIds, INITIATIVE_ID, batchMonth))
+                .thenReturn(Flux.fromIterable(groups));
+        groups.forEach(g -> when(rewardTransactionRepository.updateStatusByIds(eq(BATCH_ID), eq(g.getTrxIds()), eq(g.getRewardBatchTrxStatus()), eq(RewardBatchTrxStatus.APPROVED), isNull(), eq(batchMonth), isNull(), anyString()))
+                .thenReturn(Mono.just(g.getCount())));
 
         RewardBatch updated = RewardBatch.builder().id(BATCH_ID).build();
         when(rewardBatchRepository.updateTotals(eq(BATCH_ID), any(BatchCountersDTO.class)))
@@ -693,6 +949,31 @@ class RewardBatchServiceImplTest {
         StepVerifier.create(service.approvedTransactions(BATCH_ID, req, INITIATIVE_ID))
                 .expectNext(updated)
                 .verifyComplete();
+
+        verifyCounters(2L, -1L, -1L, 90L, -40L);
+    }
+
+    private static RewardBatchTrxStatusGroupDTO buildTrxStatusGroup(RewardBatchTrxStatus status, long accruedRewardCents, long elaboratedInPreviousMonths, String... trxIds) {
+        return RewardBatchTrxStatusGroupDTO.builder()
+                .rewardBatchTrxStatus(status)
+                .trxIds(List.of(trxIds))
+                .count(trxIds.length)
+                .accruedRewardCents(accruedRewardCents)
+                .elaboratedInPreviousMonths(elaboratedInPreviousMonths)
+                .build();
+    }
+
+    private void verifyCounters(long trxElaborated, long trxSuspended, long trxRejected, long approvedAmountCents, long suspendedAmountCents) {
+        ArgumentCaptor<BatchCountersDTO> countersCaptor = ArgumentCaptor.forClass(BatchCountersDTO.class);
+        verify(rewardBatchRepository).updateTotals(eq(BATCH_ID), countersCaptor.capture());
+        BatchCountersDTO counters = countersCaptor.getValue();
+        assertEquals(trxElaborated, counters.getTrxElaborated());
+        assertEquals(trxSuspended, counters.getTrxSuspended());
+        assertEquals(trxRejected, counters.getTrxRejected());
+        assertEquals(approvedAmountCents, counters.getApprovedAmountCents());
+        assertEquals(suspendedAmountCents, counters.getSuspendedAmountCents());
+        assertEquals(0L, counters.getInitialAmountCents());
+        assertEquals(0L, counters.getNumberOfTransactions());
     }
 
     @Test
@@ -1593,6 +1874,32 @@ class RewardBatchServiceImplTest {
         verify(reactiveMongoTemplate, never()).remove(any(Query.class), eq(RewardBatch.class));
     }
 
+    @Test
+    void recomputeTransactionTotals_setsAggregatedTotals() {
+        RewardBatchTransactionTotalsDTO totals1 = new RewardBatchTransactionTotalsDTO(BATCH_ID, 3L, 3000L);
+        RewardBatchTransactionTotalsDTO totals2 = new RewardBatchTransactionTotalsDTO(BATCH_ID_2, 1L, 500L);
+
+        when(rewardTransactionRepository.aggregateTransactionTotalsByRewardBatch(List.of(BATCH_ID, BATCH_ID_2)))
+                .thenReturn(Flux.just(totals1, totals2));
+        when(rewardBatchRepository.setTransactionTotals(BATCH_ID, 3L, 3000L))
+                .thenReturn(Mono.just(RewardBatch.builder().id(BATCH_ID).numberOfTransactions(3L).initialAmountCents(3000L).build()));
+        when(rewardBatchRepository.setTransactionTotals(BATCH_ID_2, 1L, 500L))
+                .thenReturn(Mono.just(RewardBatch.builder().id(BATCH_ID_2).numberOfTransactions(1L).initialAmountCents(500L).build()));
+
+        StepVerifier.create(service.recomputeTransactionTotals(List.of(BATCH_ID, BATCH_ID_2)))
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    @Test
+    void recomputeTransactionTotals_noBatches() {
+        StepVerifier.create(service.recomputeTransactionTotals(List.of()))
+                .expectNext(0L)
+                .verifyComplete();
+
+        verifyNoInteractions(rewardTransactionRepository, rewardBatchRepository);
+    }
+
     @Test
     void postponeTransaction_whenTransactionIsSuspended_shouldUpdateSuspendedCounters() {
 
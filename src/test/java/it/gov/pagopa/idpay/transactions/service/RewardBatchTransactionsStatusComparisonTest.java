@@ -0,0 +1,275 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.idpay.transactions.dto.ChecksErrorDTO;
+import it.gov.pagopa.idpay.transactions.dto.ReasonDTO;
+import it.gov.pagopa.idpay.transactions.dto.TransactionsRequest;
+import it.gov.pagopa.idpay.transactions.dto.batch.BatchCountersDTO;
+import it.gov.pagopa.idpay.transactions.dto.mapper.ChecksErrorMapper;
+import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
+import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
+import it.gov.pagopa.idpay.transactions.model.ChecksError;
+import it.gov.pagopa.idpay.transactions.model.Reward;
+import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import it.gov.pagopa.idpay.transactions.model.RewardBatchCounterMarker;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.utils.AuditUtilities;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * It will compare, on two reward batches having the same transactions, the set-based status transitions of {@link RewardBatchServiceImpl} against the per-transaction ones previously implemented (replicated here as reference),
+ * checking that both the transactions and the batch counters are equal after each transition
+ */
+@DirtiesContext
+@MongoTest
+class RewardBatchTransactionsStatusComparisonTest {
+
+    private static final String INITIATIVE_ID = "INITIATIVEID";
+    private static final String BATCH_MONTH = "2025-12";
+    private static final String REFERENCE_BATCH_ID = "REFERENCE_BATCH";
+    private static final String BULK_BATCH_ID = "BULK_BATCH";
+
+    @Autowired
+    private RewardBatchRepository rewardBatchRepository;
+    @Autowired
+    private RewardTransactionRepository rewardTransactionRepository;
+    @Autowired
+    private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private final ChecksErrorMapper checksErrorMapper = new ChecksErrorMapper();
+    private RewardBatchCounterStripeService rewardBatchCounterStripeService;
+    private RewardBatchService rewardBatchService;
+
+    @BeforeEach
+    void init() {
+        rewardBatchCounterStripeService = new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepository, rewardBatchRepository, 4);
+        rewardBatchService = new RewardBatchServiceImpl(rewardBatchRepository, rewardTransactionRepository, null, null, mongoTemplate, checksErrorMapper, new AuditUtilities(),
+                null, null, null, rewardBatchCounterStripeService, 0, 0, 0, 100);
+
+        for (String batchId : List.of(REFERENCE_BATCH_ID, BULK_BATCH_ID)) {
+            rewardBatchRepository.save(RewardBatch.builder()
+                            .id(batchId)
+                            .month(BATCH_MONTH)
+                            .status(RewardBatchStatus.EVALUATING)
+                            .numberOfTransactions(12L)
+                            .initialAmountCents(7_800L)
+                            .approvedAmountCents(5_000L)
+                            .suspendedAmountCents(1_000L)
+                            .numberOfTransactionsElaborated(3L)
+                            .numberOfTransactionsSuspended(3L)
+                            .numberOfTransactionsRejected(3L)
+                            .build())
+                    .block();
+            rewardTransactionRepository.saveAll(buildTransactions(batchId)).blockLast();
+        }
+    }
+
+    @AfterEach
+    void clearData() {
+        rewardTransactionRepository.deleteAll().block();
+        rewardBatchRepository.deleteAll().block();
+        rewardBatchCounterStripeRepository.deleteAll().block();
+        mongoTemplate.remove(new Query(), RewardBatchCounterMarker.class).block();
+    }
+
+    @Test
+    void testStatusTransitions() {
+        ChecksErrorDTO checksError = new ChecksErrorDTO();
+        checksError.setCfError(true);
+
+        TransactionsRequest suspendRequest = TransactionsRequest.builder()
+                .transactionIds(List.of("TO_CHECK", "CONS", "APP", "APP_NO_REWARD", "SUSP_PREV", "SUSP_SAME", "SUSP_NEVER", "REJ", "MISSING"))
+                .reason("SUSPEND")
+                .checksError(checksError)
+                .build();
+        compare(suspendRequest, RewardBatchTrxStatus.SUSPENDED,
+                batchId -> rewardBatchService.suspendTransactions(batchId, INITIATIVE_ID, prefix(suspendRequest, batchId)));
+
+        TransactionsRequest rejectRequest = TransactionsRequest.builder()
+                .transactionIds(List.of("TO_CHECK", "APP", "TO_CHECK_2", "CONS_2", "APP_2", "REJ_2"))
+                .reason("REJECT")
+                .checksError(checksError)
+                .build();
+        compare(rejectRequest, RewardBatchTrxStatus.REJECTED,
+                batchId -> rewardBatchService.rejectTransactions(batchId, INITIATIVE_ID, prefix(rejectRequest, batchId)));
+
+        TransactionsRequest approveRequest = TransactionsRequest.builder()
+                .transactionIds(List.of("TO_CHECK", "CONS", "APP_NO_REWARD", "SUSP_PREV", "REJ_2", "APP_3", "TO_CHECK_3"))
+                .build();
+        compare(approveRequest, RewardBatchTrxStatus.APPROVED,
+                batchId -> rewardBatchService.approvedTransactions(batchId, prefix(approveRequest, batchId), INITIATIVE_ID));
+    }
+
+    private void compare(TransactionsRequest request, RewardBatchTrxStatus newStatus, Function<String, Mono<RewardBatch>> bulkTransition) {
+        referenceTransition(REFERENCE_BATCH_ID, prefix(request, REFERENCE_BATCH_ID), newStatus).block();
+        bulkTransition.apply(BULK_BATCH_ID).block();
+
+        RewardBatch reference = rewardBatchRepository.findById(REFERENCE_BATCH_ID).block();
+        RewardBatch bulk = rewardBatchRepository.findById(BULK_BATCH_ID).block();
+
+        Assertions.assertNotNull(reference);
+        Assertions.assertNotNull(bulk);
+        Assertions.assertEquals(reference.getNumberOfTransactionsElaborated(), bulk.getNumberOfTransactionsElaborated());
+        Assertions.assertEquals(reference.getNumberOfTransactionsSuspended(), bulk.getNumberOfTransactionsSuspended());
+        Assertions.assertEquals(reference.getNumberOfTransactionsRejected(), bulk.getNumberOfTransactionsRejected());
+        Assertions.assertEquals(reference.getApprovedAmountCents(), bulk.getApprovedAmountCents());
+        Assertions.assertEquals(reference.getSuspendedAmountCents(), bulk.getSuspendedAmountCents());
+        Assertions.assertEquals(reference.getInitialAmountCents(), bulk.getInitialAmountCents());
+        Assertions.assertEquals(reference.getNumberOfTransactions(), bulk.getNumberOfTransactions());
+
+        Map<String, RewardTransaction> bulkTransactions = rewardTransactionRepository.findAll()
+                .filter(t -> BULK_BATCH_ID.equals(t.getRewardBatchId()))
+                .collectMap(t -> t.getId().substring(BULK_BATCH_ID.length() + 1))
+                .block();
+        List<RewardTransaction> referenceTransactions = rewardTransactionRepository.findAll()
+                .filter(t -> REFERENCE_BATCH_ID.equals(t.getRewardBatchId()))
+                .collectList()
+                .block();
+        Assertions.assertNotNull(bulkTransactions);
+        Assertions.assertNotNull(referenceTransactions);
+        Assertions.assertEquals(referenceTransactions.size(), bulkTransactions.size());
+        for (RewardTransaction expected : referenceTransactions) {
+            RewardTransaction actual = bulkTransactions.get(expected.getId().substring(REFERENCE_BATCH_ID.length() + 1));
+            Assertions.assertNotNull(actual, expected.getId());
+            Assertions.assertEquals(expected.getRewardBatchTrxStatus(), actual.getRewardBatchTrxStatus(), expected.getId());
+            Assertions.assertEquals(expected.getRewardBatchLastMonthElaborated(), actual.getRewardBatchLastMonthElaborated(), expected.getId());
+            Assertions.assertEquals(expected.getChecksError(), actual.getChecksError(), expected.getId());
+            Assertions.assertEquals(
+                    expected.getRewardBatchRejectionReason() == null ? null : expected.getRewardBatchRejectionReason().stream().map(ReasonDTO::getReason).toList(),
+                    actual.getRewardBatchRejectionReason() == null ? null : actual.getRewardBatchRejectionReason().stream().map(ReasonDTO::getReason).toList(),
+                    expected.getId());
+        }
+    }
+
+    /** The per-transaction implementation of the status transitions, as it was before the set-based one */
+    private Mono<RewardBatch> referenceTransition(String batchId, TransactionsRequest request, RewardBatchTrxStatus newStatus) {
+        ReasonDTO reason = newStatus == RewardBatchTrxStatus.APPROVED ? null : new ReasonDTO(LocalDateTime.now(), request.getReason());
+        ChecksError checksError = newStatus == RewardBatchTrxStatus.APPROVED ? null : checksErrorMapper.toModel(request.getChecksError());
+        return Flux.fromIterable(request.getTransactionIds())
+                .concatMap(trxId -> rewardTransactionRepository.updateStatusAndReturnOld(batchId, trxId, newStatus, reason, BATCH_MONTH, checksError))
+                .reduce(BatchCountersDTO.newBatch(), (acc, trxOld) -> {
+                    Long accrued = trxOld.getRewards().get(INITIATIVE_ID) != null
+                            ? trxOld.getRewards().get(INITIATIVE_ID).getAccruedRewardCents()
+                            : null;
+                    long amount = accrued != null ? accrued : 0L;
+                    RewardBatchTrxStatus oldStatus = trxOld.getRewardBatchTrxStatus();
+                    boolean elaborated = oldStatus == RewardBatchTrxStatus.TO_CHECK || oldStatus == RewardBatchTrxStatus.CONSULTABLE;
+                    switch (newStatus) {
+                        case SUSPENDED -> {
+                            if (oldStatus == RewardBatchTrxStatus.SUSPENDED) {
+                                if (trxOld.getRewardBatchLastMonthElaborated() != null && trxOld.getRewardBatchLastMonthElaborated().compareTo(BATCH_MONTH) < 0) {
+                                    acc.incrementTrxElaborated();
+                                }
+                                return acc;
+                            }
+                            if (elaborated) {
+                                acc.incrementTrxElaborated();
+                            }
+                            if (oldStatus == RewardBatchTrxStatus.REJECTED) {
+                                acc.decrementTrxRejected();
+                            } else {
+                                acc.decrementApprovedAmountCents(amount);
+                            }
+                            acc.incrementTrxSuspended();
+                            acc.incrementSuspendedAmountCents(amount);
+                        }
+                        case REJECTED -> {
+                            if (oldStatus == RewardBatchTrxStatus.REJECTED) {
+                                return acc;
+                            }
+                            if (elaborated) {
+                                acc.incrementTrxElaborated();
+                            }
+                            if (oldStatus == RewardBatchTrxStatus.SUSPENDED) {
+                                acc.decrementTrxSuspended();
+                                acc.decrementSuspendedAmountCents(amount);
+                            } else {
+                                acc.decrementApprovedAmountCents(amount);
+                            }
+                            acc.incrementTrxRejected();
+                        }
+                        default -> {
+                            if (elaborated) {
+                                acc.incrementTrxElaborated();
+                            } else if (oldStatus == RewardBatchTrxStatus.SUSPENDED) {
+                                acc.decrementTrxSuspended();
+                                acc.incrementApprovedAmountCents(amount);
+                                acc.decrementSuspendedAmountCents(amount);
+                            } else if (oldStatus == RewardBatchTrxStatus.REJECTED) {
+                                acc.decrementTrxRejected();
+                                acc.incrementApprovedAmountCents(amount);
+                            }
+                        }
+                    }
+                    return acc;
+                })
+                .flatMap(acc -> rewardBatchRepository.updateTotals(batchId, acc))
+                .flatMap(rewardBatchCounterStripeService::sumStripes);
+    }
+
+    private static TransactionsRequest prefix(TransactionsRequest request, String batchId) {
+        return TransactionsRequest.builder()
+                .transactionIds(request.getTransactionIds().stream().map(id -> buildTrxId(batchId, id)).toList())
+                .reason(request.getReason())
+                .checksError(request.getChecksError())
+                .build();
+    }
+
+    private static String buildTrxId(String batchId, String id) {
+        return "%s_%s".formatted(batchId, id);
+    }
+
+    private static List<RewardTransaction> buildTransactions(String batchId) {
+        List<RewardTransaction> transactions = new ArrayList<>();
+        transactions.add(buildTrx(batchId, "TO_CHECK", RewardBatchTrxStatus.TO_CHECK, null, 100L));
+        transactions.add(buildTrx(batchId, "TO_CHECK_2", RewardBatchTrxStatus.TO_CHECK, null, 200L));
+        transactions.add(buildTrx(batchId, "TO_CHECK_3", RewardBatchTrxStatus.TO_CHECK, null, 300L));
+        transactions.add(buildTrx(batchId, "CONS", RewardBatchTrxStatus.CONSULTABLE, null, 400L));
+        transactions.add(buildTrx(batchId, "CONS_2", RewardBatchTrxStatus.CONSULTABLE, null, 500L));
+        transactions.add(buildTrx(batchId, "APP", RewardBatchTrxStatus.APPROVED, BATCH_MONTH, 600L));
+        transactions.add(buildTrx(batchId, "APP_2", RewardBatchTrxStatus.APPROVED, BATCH_MONTH, 700L));
+        transactions.add(buildTrx(batchId, "APP_3", RewardBatchTrxStatus.APPROVED, BATCH_MONTH, 800L));
+        transactions.add(buildTrx(batchId, "APP_NO_REWARD", RewardBatchTrxStatus.APPROVED, BATCH_MONTH, null));
+        transactions.add(buildTrx(batchId, "SUSP_PREV", RewardBatchTrxStatus.SUSPENDED, "2025-11", 900L));
+        transactions.add(buildTrx(batchId, "SUSP_SAME", RewardBatchTrxStatus.SUSPENDED, BATCH_MONTH, 1_000L));
+        transactions.add(buildTrx(batchId, "SUSP_NEVER", RewardBatchTrxStatus.SUSPENDED, null, 1_100L));
+        transactions.add(buildTrx(batchId, "REJ", RewardBatchTrxStatus.REJECTED, BATCH_MONTH, 1_200L));
+        transactions.add(buildTrx(batchId, "REJ_2", RewardBatchTrxStatus.REJECTED, "2025-11", 1_300L));
+        return transactions;
+    }
+
+    private static RewardTransaction buildTrx(String batchId, String id, RewardBatchTrxStatus status, String lastMonthElaborated, Long accruedRewardCents) {
+        return RewardTransaction.builder()
+                .id(buildTrxId(batchId, id))
+                .rewardBatchId(batchId)
+                .rewardBatchTrxStatus(status)
+                .rewardBatchLastMonthElaborated(lastMonthElaborated)
+                .rewardBatchRejectionReason(status == RewardBatchTrxStatus.SUSPENDED || status == RewardBatchTrxStatus.REJECTED
+                        ? new ArrayList<>(List.of(new ReasonDTO(LocalDateTime.now(), "PREVIOUS")))
+                        : null)
+                .rewards(accruedRewardCents != null
+                        ? Map.of(INITIATIVE_ID, Reward.builder().accruedRewardCents(accruedRewardCents).build())
+                        : Map.of("OTHER_INITIATIVE", Reward.builder().accruedRewardCents(50L).build()))
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.test.fakers.RewardTransactionFaker;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.BulkOperationException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+@ExtendWith(MockitoExtension.class)
+class RewardTransactionBulkSaveServiceImplTest {
+
+    @Mock
+    private RewardTransactionRepository rewardTransactionRepositoryMock;
+
+    private RewardTransactionBulkSaveServiceImpl service;
+
+    @BeforeEach
+    void init() {
+        service = new RewardTransactionBulkSaveServiceImpl(rewardTransactionRepositoryMock, 10, 50);
+    }
+
+    @Test
+    void testSaveInBulk() {
+        List<RewardTransaction> trxs = buildTransactions(20);
+        Mockito.when(rewardTransactionRepositoryMock.bulkUpsert(Mockito.any()))
+                .thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+
+        List<RewardTransaction> result = Flux.fromIterable(trxs)
+                .flatMapSequential(service::save)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        Assertions.assertEquals(trxs, result);
+        Mockito.verify(rewardTransactionRepositoryMock, Mockito.times(2)).bulkUpsert(Mockito.argThat(l -> l.size() == 10));
+    }
+
+    @Test
+    void testSaveInBulkWithSingleDocumentError() {
+        List<RewardTransaction> trxs = buildTransactions(3);
+        BulkWriteError writeError = new BulkWriteError(121, "DUMMY", new BsonDocument(), 2);
+        Mockito.when(rewardTransactionRepositoryMock.bulkUpsert(Mockito.any()))
+                .thenReturn(Mono.error(new BulkOperationException("DUMMY",
+                        new MongoBulkWriteException(BulkWriteResult.unacknowledged(), List.of(writeError), null, new ServerAddress(), Set.of()))));
+
+        List<String> result = Flux.fromIterable(trxs)
+                .flatMapSequential(trx -> service.save(trx)
+                        .map(RewardTransaction::getId)
+                        .onErrorResume(e -> Mono.just("ERROR")))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        Assertions.assertEquals(List.of(trxs.get(0).getId(), trxs.get(1).getId(), "ERROR"), result);
+    }
+
+    @Test
+    void testSaveInBulkKeepingLatestVersion() {
+        RewardTransaction oldVersion = RewardTransactionFaker.mockInstanceBuilder(0).id("TRXID0").status("AUTHORIZED").build();
+        RewardTransaction otherTrx = RewardTransactionFaker.mockInstanceBuilder(1).id("TRXID1").build();
+        RewardTransaction newVersion = RewardTransactionFaker.mockInstanceBuilder(0).id("TRXID0").status("REWARDED").build();
+        BulkWriteError writeError = new BulkWriteError(121, "DUMMY", new BsonDocument(), 1);
+        Mockito.when(rewardTransactionRepositoryMock.bulkUpsert(List.of(newVersion, otherTrx)))
+                .thenReturn(Mono.error(new BulkOperationException("DUMMY",
+                        new MongoBulkWriteException(BulkWriteResult.unacknowledged(), List.of(writeError), null, new ServerAddress(), Set.of()))));
+
+        Map<Integer, Throwable> result = service.saveAll(List.of(oldVersion, otherTrx, newVersion)).block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(Set.of(1), result.keySet());
+        Mockito.verify(rewardTransactionRepositoryMock).bulkUpsert(List.of(newVersion, otherTrx));
+    }
+
+    private static List<RewardTransaction> buildTransactions(int n) {
+        return IntStream.range(0, n)
+                .mapToObj(i -> RewardTransactionFaker.mockInstanceBuilder(i).id("TRXID%d".formatted(i)).build())
+                .toList();
+    }
+}
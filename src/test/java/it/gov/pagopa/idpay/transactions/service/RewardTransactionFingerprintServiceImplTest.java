@@ -0,0 +1,117 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.utils.TestUtils;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.test.fakers.RewardTransactionFaker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+class RewardTransactionFingerprintServiceImplTest {
+
+    @Mock
+    private RewardTransactionRepository rewardTransactionRepositoryMock;
+
+    private RewardTransactionFingerprintService service;
+
+    @BeforeEach
+    void init() {
+        service = new RewardTransactionFingerprintServiceImpl(rewardTransactionRepositoryMock, TestUtils.objectMapper, 10, 50);
+    }
+
+    @AfterEach
+    void dispose() {
+        ((RewardTransactionFingerprintServiceImpl) service).dispose();
+    }
+
+    @Test
+    void testComputeFingerprintIsStable() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("A", "1");
+        properties.put("B", "2");
+        Map<String, String> reversedProperties = new LinkedHashMap<>();
+        reversedProperties.put("B", "2");
+        reversedProperties.put("A", "1");
+
+        RewardTransaction trx = RewardTransactionFaker.mockInstanceBuilder(1).additionalProperties(properties).build();
+        RewardTransaction sameTrx = RewardTransactionFaker.mockInstanceBuilder(1).additionalProperties(reversedProperties).contentFingerprint("OLD").build();
+        RewardTransaction otherTrx = RewardTransactionFaker.mockInstanceBuilder(1).additionalProperties(properties).status("OTHER").build();
+
+        String fingerprint = service.computeFingerprint(trx);
+
+        Assertions.assertEquals(fingerprint, service.computeFingerprint(sameTrx));
+        Assertions.assertEquals("OLD", sameTrx.getContentFingerprint());
+        Assertions.assertNotEquals(fingerprint, service.computeFingerprint(otherTrx));
+    }
+
+    @Test
+    void testFilterChangedWhenNotStored() {
+        RewardTransaction trx = mockInstance(1);
+        Mockito.when(rewardTransactionRepositoryMock.findContentFingerprints(List.of(trx.getId()))).thenReturn(Flux.empty());
+
+        StepVerifier.create(service.filterChanged(trx))
+                .expectNext(trx)
+                .verifyComplete();
+
+        Assertions.assertNotNull(trx.getContentFingerprint());
+    }
+
+    @Test
+    void testFilterChangedWhenChanged() {
+        RewardTransaction trx = mockInstance(1);
+        Mockito.when(rewardTransactionRepositoryMock.findContentFingerprints(List.of(trx.getId())))
+                .thenReturn(Flux.just(RewardTransaction.builder().id(trx.getId()).contentFingerprint("OTHER").build()));
+
+        StepVerifier.create(service.filterChanged(trx))
+                .expectNext(trx)
+                .verifyComplete();
+    }
+
+    @Test
+    void testFilterChangedWhenUnchanged() {
+        RewardTransaction trx = mockInstance(1);
+        Mockito.when(rewardTransactionRepositoryMock.findContentFingerprints(List.of(trx.getId())))
+                .thenReturn(Flux.just(RewardTransaction.builder().id(trx.getId()).contentFingerprint(service.computeFingerprint(mockInstance(1))).build()));
+
+        StepVerifier.create(service.filterChanged(trx))
+                .verifyComplete();
+    }
+
+    @Test
+    void testFilterChangedLooksUpMicroBatchOnce() {
+        List<RewardTransaction> trxs = List.of(
+                mockInstance(1),
+                mockInstance(2),
+                mockInstance(3));
+        RewardTransaction unchangedTrx = trxs.get(1);
+        Mockito.when(rewardTransactionRepositoryMock.findContentFingerprints(Mockito.anyCollection()))
+                .thenReturn(Flux.just(
+                        RewardTransaction.builder().id(trxs.get(0).getId()).contentFingerprint("OTHER").build(),
+                        RewardTransaction.builder().id(unchangedTrx.getId()).contentFingerprint(service.computeFingerprint(mockInstance(2))).build()));
+
+        StepVerifier.create(Flux.fromIterable(trxs).flatMap(service::filterChanged).collectList())
+                .assertNext(changed -> Assertions.assertEquals(List.of(trxs.get(0).getId(), trxs.get(2).getId()),
+                        changed.stream().map(RewardTransaction::getId).sorted().toList()))
+                .verifyComplete();
+
+        Mockito.verify(rewardTransactionRepositoryMock).findContentFingerprints(Mockito.anyCollection());
+    }
+
+    private static RewardTransaction mockInstance(int bias) {
+        return RewardTransactionFaker.mockInstanceBuilder(bias).id("TRXID_%d".formatted(bias)).build();
+    }
+}
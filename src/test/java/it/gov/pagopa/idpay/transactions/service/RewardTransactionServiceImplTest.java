@@ -1,5 +1,9 @@
 package it.gov.pagopa.idpay.transactions.service;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
 import it.gov.pagopa.common.web.exception.ClientExceptionNoBody;
 import it.gov.pagopa.idpay.transactions.connector.rest.MerchantRestClient;
 import it.gov.pagopa.idpay.transactions.connector.rest.dto.PointOfSaleDTO;
@@ -9,18 +13,23 @@ import it.gov.pagopa.idpay.transactions.enums.PosType;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
 import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
 import it.gov.pagopa.idpay.transactions.enums.SyncTrxStatus;
+import it.gov.pagopa.idpay.transactions.exception.RewardBatchSealedException;
 import it.gov.pagopa.idpay.transactions.model.Reward;
 import it.gov.pagopa.idpay.transactions.model.RewardBatch;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
 import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
 import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
 
 import java.time.LocalDateTime;
 import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
+import org.bson.BsonDocument;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -30,6 +39,7 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.BulkOperationException;
 import org.springframework.http.HttpStatus;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -50,6 +60,12 @@ class RewardTransactionServiceImplTest {
     @Mock
     private MerchantRestClient merchantRestClient;
 
+    @Mock
+    private RewardBatchCountersWriteBehindService rewardBatchCountersWriteBehindService;
+
+    @Mock
+    private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository;
+
     private RewardTransactionService rewardTransactionService;
 
     @BeforeEach
@@ -60,7 +76,8 @@ class RewardTransactionServiceImplTest {
                 rewardBatchService,
                 merchantRestClient,
                 seed,
-                rewardBatchRepository
+                rewardBatchCountersWriteBehindService,
+                new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepository, rewardBatchRepository, 1)
         );
     }
 
@@ -106,6 +123,162 @@ class RewardTransactionServiceImplTest {
         Assertions.assertEquals(rt, resultRT);
     }
 
+    @Test
+    void prepareForSave_notInvoiced() {
+        RewardTransaction rt = RewardTransaction.builder()
+                .userId("USERID")
+                .status(SyncTrxStatus.REWARDED.name())
+                .build();
+
+        RewardTransaction result = rewardTransactionService.prepareForSave(rt).block();
+
+        Assertions.assertSame(rt, result);
+        Mockito.verifyNoInteractions(rewardTransactionRepository, rewardBatchService, rewardBatchRepository, merchantRestClient, rewardBatchCountersWriteBehindService);
+    }
+
+    @Test
+    void prepareForSave_invoiced_coalescesBatchCounters() {
+        RewardTransaction rt = RewardTransaction.builder()
+                .id("TRX_ID")
+                .merchantId("MERCHANT1")
+                .pointOfSaleType(PosType.ONLINE)
+                .businessName("Test Business")
+                .trxChargeDate(LocalDateTime.of(2025, 11, 19, 15, 43, 39))
+                .rewards(Map.of("initiative1", Reward.builder().accruedRewardCents(1000L).build()))
+                .initiatives(List.of("initiative1"))
+                .status(SyncTrxStatus.INVOICED.name())
+                .build();
+
+        RewardBatch batch = new RewardBatch();
+        batch.setId("BATCH1");
+        batch.setStatus(RewardBatchStatus.CREATED);
+
+        Mockito.when(rewardBatchService.findOrCreateBatch("MERCHANT1", PosType.ONLINE, "2025-11", "Test Business"))
+                .thenReturn(Mono.just(batch));
+        Mockito.when(rewardBatchCountersWriteBehindService.increment(
+                        Mockito.eq("BATCH1"),
+                        Mockito.eq(rt.getId()),
+                        Mockito.argThat(acc ->
+                                acc.getInitialAmountCents().equals(1000L) &&
+                                        acc.getNumberOfTransactions().equals(1L))))
+                .thenReturn(Mono.just("BATCH1"));
+
+        RewardTransaction result = rewardTransactionService.prepareForSave(rt).block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals("BATCH1", result.getRewardBatchId());
+        Assertions.assertEquals(RewardBatchTrxStatus.CONSULTABLE, result.getRewardBatchTrxStatus());
+        Mockito.verifyNoInteractions(rewardTransactionRepository, rewardBatchRepository);
+    }
+
+    @Test
+    void prepareForSave_invoiced_sealedBatch_resolvesBatchAgain() {
+        RewardTransaction rt = RewardTransaction.builder()
+                .id("TRX_ID")
+                .merchantId("MERCHANT1")
+                .pointOfSaleType(PosType.ONLINE)
+                .businessName("Test Business")
+                .trxChargeDate(LocalDateTime.of(2025, 11, 19, 15, 43, 39))
+                .rewards(Map.of("initiative1", Reward.builder().accruedRewardCents(1000L).build()))
+                .initiatives(List.of("initiative1"))
+                .status(SyncTrxStatus.INVOICED.name())
+                .build();
+
+        // a batch sent through another instance, still cached as CREATED
+        RewardBatch staleBatch = new RewardBatch();
+        staleBatch.setId("BATCH1");
+        staleBatch.setStatus(RewardBatchStatus.CREATED);
+        RewardBatch nextBatch = new RewardBatch();
+        nextBatch.setId("BATCH2");
+        nextBatch.setStatus(RewardBatchStatus.CREATED);
+
+        Mockito.when(rewardBatchService.findOrCreateBatch("MERCHANT1", PosType.ONLINE, "2025-11", "Test Business"))
+                .thenReturn(Mono.just(staleBatch))
+                .thenReturn(Mono.just(nextBatch));
+        Mockito.when(rewardBatchCountersWriteBehindService.increment(Mockito.eq("BATCH1"), Mockito.eq(rt.getId()), Mockito.any()))
+                .thenReturn(Mono.error(new RewardBatchSealedException("BATCH1")));
+        Mockito.when(rewardBatchCountersWriteBehindService.increment(Mockito.eq("BATCH2"), Mockito.eq(rt.getId()), Mockito.any()))
+                .thenReturn(Mono.just("BATCH2"));
+
+        RewardTransaction result = rewardTransactionService.prepareForSave(rt).block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals("BATCH2", result.getRewardBatchId());
+        Mockito.verify(rewardBatchService).evictBatchResolution("MERCHANT1", PosType.ONLINE, "2025-11");
+        Mockito.verify(rewardBatchService, Mockito.times(2)).findOrCreateBatch("MERCHANT1", PosType.ONLINE, "2025-11", "Test Business");
+    }
+
+    @Test
+    void prepareForReplay_invoiced_doesNotUpdateBatchCounters() {
+        RewardTransaction rt = RewardTransaction.builder()
+                .id("TRX_ID")
+                .merchantId("MERCHANT1")
+                .pointOfSaleType(PosType.ONLINE)
+                .businessName("Test Business")
+                .trxChargeDate(LocalDateTime.of(2025, 11, 19, 15, 43, 39))
+                .rewards(Map.of("initiative1", Reward.builder().accruedRewardCents(1000L).build()))
+                .initiatives(List.of("initiative1"))
+                .status(SyncTrxStatus.INVOICED.name())
+                .build();
+
+        RewardBatch batch = new RewardBatch();
+        batch.setId("BATCH1");
+        batch.setStatus(RewardBatchStatus.CREATED);
+
+        Mockito.when(rewardBatchService.findOrCreateBatch("MERCHANT1", PosType.ONLINE, "2025-11", "Test Business"))
+                .thenReturn(Mono.just(batch));
+
+        RewardTransaction result = rewardTransactionService.prepareForReplay(rt, null).block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals("BATCH1", result.getRewardBatchId());
+        Assertions.assertEquals(RewardBatchTrxStatus.CONSULTABLE, result.getRewardBatchTrxStatus());
+        Mockito.verifyNoInteractions(rewardTransactionRepository, rewardBatchRepository, rewardBatchCountersWriteBehindService);
+    }
+
+    @Test
+    void prepareForReplay_alreadyAssigned_keepsStoredBatch() {
+        RewardTransaction rt = RewardTransaction.builder()
+                .id("TRX_ID")
+                .merchantId("MERCHANT1")
+                .trxChargeDate(LocalDateTime.of(2025, 11, 19, 15, 43, 39))
+                .rewards(Map.of("initiative1", Reward.builder().accruedRewardCents(1000L).build()))
+                .initiatives(List.of("initiative1"))
+                .status(SyncTrxStatus.INVOICED.name())
+                .build();
+        RewardTransaction stored = RewardTransaction.builder()
+                .id("TRX_ID")
+                .rewardBatchId("SENT_BATCH")
+                .rewardBatchTrxStatus(RewardBatchTrxStatus.APPROVED)
+                .rewardBatchInclusionDate(LocalDateTime.of(2025, 11, 20, 10, 0))
+                .pointOfSaleType(PosType.ONLINE)
+                .businessName("Test Business")
+                .samplingKey(7)
+                .build();
+
+        RewardTransaction result = rewardTransactionService.prepareForReplay(rt, stored).block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals("SENT_BATCH", result.getRewardBatchId());
+        Assertions.assertEquals(RewardBatchTrxStatus.APPROVED, result.getRewardBatchTrxStatus());
+        Assertions.assertEquals(stored.getRewardBatchInclusionDate(), result.getRewardBatchInclusionDate());
+        Assertions.assertEquals(PosType.ONLINE, result.getPointOfSaleType());
+        Assertions.assertEquals(7, result.getSamplingKey());
+        Mockito.verifyNoInteractions(rewardBatchService, rewardBatchCountersWriteBehindService);
+    }
+
+    @Test
+    void findStoredBatchData() {
+        RewardTransaction assigned = RewardTransaction.builder().id("TRX1").rewardBatchId("BATCH1").build();
+        RewardTransaction notAssigned = RewardTransaction.builder().id("TRX2").build();
+        Mockito.when(rewardTransactionRepository.findBatchDataByIds(Set.of("TRX1", "TRX2", "TRX3")))
+                .thenReturn(Flux.just(assigned, notAssigned));
+
+        Map<String, RewardTransaction> result = rewardTransactionService.findStoredBatchData(Set.of("TRX1", "TRX2", "TRX3")).block();
+
+        Assertions.assertEquals(Map.of("TRX1", assigned), result);
+    }
+
     @Test
     void save() {
         RewardTransaction rt = RewardTransaction.builder()
@@ -155,14 +328,13 @@ class RewardTransactionServiceImplTest {
                 rt.getBusinessName()
         )).thenReturn(Mono.just(batch));
 
-        Mockito.when(rewardBatchRepository.updateTotals(
-                        Mockito.eq(batch.getId()),
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.eq(batch.getId()), Mockito.anyInt(), Mockito.any(),
                         Mockito.argThat(acc ->
                                 acc.getInitialAmountCents().equals(1000L) &&
                                         acc.getNumberOfTransactions().equals(1L)
                         )
                 ))
-                .thenReturn(Mono.just(batch));
+                .thenReturn(Mono.just(true));
 
         Mockito.when(rewardTransactionRepository.save(Mockito.any()))
                 .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
@@ -175,8 +347,8 @@ class RewardTransactionServiceImplTest {
         Assertions.assertNotNull(result.getRewardBatchInclusionDate());
 
         Mockito.verify(rewardTransactionRepository, Mockito.times(1)).save(Mockito.any());
-        Mockito.verify(rewardBatchRepository, Mockito.times(1))
-                .updateTotals(Mockito.eq("BATCH1"), Mockito.any(BatchCountersDTO.class));
+        Mockito.verify(rewardBatchCounterStripeRepository, Mockito.times(1))
+                .incrementStripe(Mockito.eq("BATCH1"), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class));
     }
 
     @Test
@@ -224,7 +396,8 @@ class RewardTransactionServiceImplTest {
                 rewardBatchService,
                 merchantRestClient,
                 0x22222222,
-                rewardBatchRepository
+                rewardBatchCountersWriteBehindService,
+                new RewardBatchCounterStripeServiceImpl(rewardBatchCounterStripeRepository, rewardBatchRepository, 1)
         );
 
         int h1 = ((RewardTransactionServiceImpl) rewardTransactionService).computeSamplingKey(id);
@@ -284,14 +457,13 @@ class RewardTransactionServiceImplTest {
                 rt.getBusinessName()
         )).thenReturn(Mono.just(batch));
 
-        Mockito.when(rewardBatchRepository.updateTotals(
-                        Mockito.eq(batch.getId()),
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.eq(batch.getId()), Mockito.anyInt(), Mockito.any(),
                         Mockito.argThat(acc ->
                                 acc.getInitialAmountCents().equals(1000L) &&
                                         acc.getNumberOfTransactions().equals(1L)
                         )
                 ))
-                .thenReturn(Mono.just(batch));
+                .thenReturn(Mono.just(true));
 
         Mockito.when(rewardTransactionRepository.save(Mockito.any()))
                 .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
@@ -356,11 +528,10 @@ class RewardTransactionServiceImplTest {
         Mockito.when(rewardBatchService.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
                 .thenReturn(Mono.just(batch));
 
-        Mockito.when(rewardBatchRepository.updateTotals(Mockito.anyString(), Mockito.any(BatchCountersDTO.class)))
-                .thenReturn(Mono.just(batch));
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(true));
 
-        Mockito.when(rewardTransactionRepository.save(Mockito.any()))
-                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        stubBulkAssignToBatch();
 
         rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize, repetitionsNumber, true, null).block();
 
@@ -373,11 +544,11 @@ class RewardTransactionServiceImplTest {
         Mockito.verify(rewardBatchService, Mockito.times(2))
                 .findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any());
 
-        Mockito.verify(rewardBatchRepository, Mockito.times(2))
-                .updateTotals(Mockito.anyString(), Mockito.any(BatchCountersDTO.class));
+        Mockito.verify(rewardBatchCounterStripeRepository, Mockito.times(2))
+                .incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class));
 
         Mockito.verify(rewardTransactionRepository, Mockito.times(2))
-                .save(Mockito.any());
+                .bulkAssignToBatch(Mockito.any());
     }
 
     @Test
@@ -429,11 +600,10 @@ class RewardTransactionServiceImplTest {
         Mockito.when(rewardBatchService.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
                 .thenReturn(Mono.just(batch));
 
-        Mockito.when(rewardBatchRepository.updateTotals(Mockito.anyString(), Mockito.any(BatchCountersDTO.class)))
-                .thenReturn(Mono.just(batch));
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(true));
 
-        Mockito.when(rewardTransactionRepository.save(Mockito.any()))
-                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        stubBulkAssignToBatch();
 
         rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize, repetitionsNumber, processAll, null).block();
 
@@ -446,11 +616,11 @@ class RewardTransactionServiceImplTest {
         Mockito.verify(rewardBatchService, Mockito.times(2))
                 .findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any());
 
-        Mockito.verify(rewardBatchRepository, Mockito.times(2))
-                .updateTotals(Mockito.anyString(), Mockito.any(BatchCountersDTO.class));
+        Mockito.verify(rewardBatchCounterStripeRepository, Mockito.times(2))
+                .incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class));
 
         Mockito.verify(rewardTransactionRepository, Mockito.times(2))
-                .save(Mockito.any());
+                .bulkAssignToBatch(Mockito.any());
     }
 
     @Test
@@ -505,15 +675,14 @@ class RewardTransactionServiceImplTest {
         Mockito.when(rewardBatchService.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
                 .thenReturn(Mono.just(batch));
 
-        Mockito.when(rewardBatchRepository.updateTotals(Mockito.anyString(), Mockito.any(BatchCountersDTO.class)))
-                .thenReturn(Mono.just(batch));
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(true));
 
-        Mockito.when(rewardTransactionRepository.save(Mockito.any()))
-                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        stubBulkAssignToBatch();
 
         rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize, repetitionsNumber, false, null).block();
 
-        Mockito.verify(rewardTransactionRepository).save(Mockito.argThat(saved ->
+        Mockito.verify(rewardTransactionRepository).bulkAssignToBatch(Mockito.argThat(assigned -> assigned.size() == 1 && assigned.getFirst() instanceof RewardTransaction saved &&
                 saved.getInvoiceUploadDate().equals(trx.getTrxChargeDate()) &&
                         "FranchiseName".equals(saved.getFranchiseName()) &&
                         saved.getPointOfSaleType() == PosType.ONLINE &&
@@ -556,15 +725,14 @@ class RewardTransactionServiceImplTest {
         Mockito.when(rewardBatchService.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
                 .thenReturn(Mono.just(batch));
 
-        Mockito.when(rewardBatchRepository.updateTotals(Mockito.anyString(), Mockito.any(BatchCountersDTO.class)))
-                .thenReturn(Mono.just(batch));
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(true));
 
-        Mockito.when(rewardTransactionRepository.save(Mockito.any()))
-                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        stubBulkAssignToBatch();
 
         rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize, repetitionsNumber, false, null).block();
 
-        Mockito.verify(rewardTransactionRepository).save(Mockito.argThat(saved ->
+        Mockito.verify(rewardTransactionRepository).bulkAssignToBatch(Mockito.argThat(assigned -> assigned.size() == 1 && assigned.getFirst() instanceof RewardTransaction saved &&
                 saved.getInvoiceUploadDate().equals(trx.getInvoiceUploadDate()) &&
                         "FranchiseName".equals(saved.getFranchiseName()) &&
                         saved.getPointOfSaleType() == PosType.ONLINE &&
@@ -607,15 +775,14 @@ class RewardTransactionServiceImplTest {
         Mockito.when(rewardBatchService.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
                 .thenReturn(Mono.just(batch));
 
-        Mockito.when(rewardBatchRepository.updateTotals(Mockito.anyString(), Mockito.any(BatchCountersDTO.class)))
-                .thenReturn(Mono.just(batch));
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(true));
 
-        Mockito.when(rewardTransactionRepository.save(Mockito.any()))
-                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        stubBulkAssignToBatch();
 
         rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize, repetitionsNumber, false, null).block();
 
-        Mockito.verify(rewardTransactionRepository).save(Mockito.argThat(saved ->
+        Mockito.verify(rewardTransactionRepository).bulkAssignToBatch(Mockito.argThat(assigned -> assigned.size() == 1 && assigned.getFirst() instanceof RewardTransaction saved &&
                 saved.getInvoiceUploadDate().equals(trx.getInvoiceUploadDate()) &&
                         "FranchiseName".equals(saved.getFranchiseName()) &&
                         saved.getPointOfSaleType() == PosType.ONLINE &&
@@ -692,11 +859,10 @@ class RewardTransactionServiceImplTest {
         Mockito.when(rewardBatchService.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
                 .thenReturn(Mono.just(batch));
 
-        Mockito.when(rewardBatchRepository.updateTotals(Mockito.anyString(), Mockito.any(BatchCountersDTO.class)))
-                .thenReturn(Mono.just(batch));
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(true));
 
-        Mockito.when(rewardTransactionRepository.save(Mockito.any()))
-                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        stubBulkAssignToBatch();
 
         StepVerifier.create(rewardTransactionService.assignInvoicedTransactionsToBatches(200, 1, false, trxId))
                 .verifyComplete();
@@ -705,7 +871,7 @@ class RewardTransactionServiceImplTest {
                 .findInvoicedTrxByIdWithoutBatch(trxId);
 
         Mockito.verify(rewardTransactionRepository, Mockito.times(1))
-                .save(Mockito.any());
+                .bulkAssignToBatch(Mockito.any());
     }
 
     @Test
@@ -762,4 +928,174 @@ class RewardTransactionServiceImplTest {
         Mockito.verify(rewardTransactionRepository, Mockito.never())
                 .findInvoicedTrxByIdWithoutBatch(Mockito.anyString());
     }
+
+    @Test
+    void assignInvoicedTransactionsToBatches_groupsTransactionsByBatch() {
+        int chunkSize = 100;
+        LocalDateTime november = LocalDateTime.of(2025, 11, 19, 10, 0);
+        LocalDateTime december = LocalDateTime.of(2025, 12, 1, 10, 0);
+        List<RewardTransaction> trxs = List.of(
+                buildOrphanTrx("TRX1", november, 100L),
+                buildOrphanTrx("TRX2", november, 200L),
+                buildOrphanTrx("TRX3", december, 400L),
+                buildOrphanTrx("TRX4", november, 300L));
+
+        RewardBatch novemberBatch = RewardBatch.builder().id("BATCH_NOV").status(RewardBatchStatus.CREATED).build();
+        RewardBatch decemberBatch = RewardBatch.builder().id("BATCH_DEC").status(RewardBatchStatus.CREATED).build();
+
+        Mockito.when(rewardTransactionRepository.findInvoicedTransactionsWithoutBatch(chunkSize))
+                .thenReturn(Flux.fromIterable(trxs))
+                .thenReturn(Flux.empty());
+        Mockito.when(merchantRestClient.getPointOfSale("MERCHANT1", "POS1"))
+                .thenReturn(Mono.just(PointOfSaleDTO.builder()
+                        .type(PointOfSaleTypeEnum.PHYSICAL)
+                        .franchiseName("FranchiseName")
+                        .businessName("BusinessName")
+                        .build()));
+        Mockito.when(rewardBatchService.findOrCreateBatch("MERCHANT1", PosType.PHYSICAL, "2025-11", "BusinessName"))
+                .thenReturn(Mono.just(novemberBatch));
+        Mockito.when(rewardBatchService.findOrCreateBatch("MERCHANT1", PosType.PHYSICAL, "2025-12", "BusinessName"))
+                .thenReturn(Mono.just(decemberBatch));
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(true));
+        stubBulkAssignToBatch();
+
+        rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize, 1, true, null).block();
+
+        Mockito.verify(merchantRestClient, Mockito.times(1)).getPointOfSale(Mockito.any(), Mockito.any());
+        Mockito.verify(rewardBatchService, Mockito.times(2)).findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any());
+        Mockito.verify(rewardTransactionRepository).bulkAssignToBatch(Mockito.argThat(assigned ->
+                assigned.stream().map(RewardTransaction::getId).toList().equals(List.of("TRX1", "TRX2", "TRX4")) &&
+                        assigned.stream().allMatch(t -> "BATCH_NOV".equals(t.getRewardBatchId())
+                                && t.getRewardBatchTrxStatus() == RewardBatchTrxStatus.CONSULTABLE
+                                && t.getSamplingKey() == ((RewardTransactionServiceImpl) rewardTransactionService).computeSamplingKey(t.getId()))));
+        Mockito.verify(rewardTransactionRepository).bulkAssignToBatch(Mockito.argThat(assigned ->
+                assigned.size() == 1 && "BATCH_DEC".equals(assigned.getFirst().getRewardBatchId())));
+        Mockito.verify(rewardBatchCounterStripeRepository).incrementStripe(Mockito.eq("BATCH_NOV"), Mockito.anyInt(), Mockito.any(), Mockito.argThat(counters ->
+                counters.getNumberOfTransactions() == 3L && counters.getInitialAmountCents() == 600L));
+        Mockito.verify(rewardBatchCounterStripeRepository).incrementStripe(Mockito.eq("BATCH_DEC"), Mockito.anyInt(), Mockito.any(), Mockito.argThat(counters ->
+                counters.getNumberOfTransactions() == 1L && counters.getInitialAmountCents() == 400L));
+        Mockito.verify(rewardTransactionRepository, Mockito.never()).save(Mockito.any());
+    }
+
+    @Test
+    void assignInvoicedTransactionsToBatches_partiallyAssignedGroup_countsJustAssigned() {
+        int chunkSize = 100;
+        LocalDateTime november = LocalDateTime.of(2025, 11, 19, 10, 0);
+        RewardBatch batch = RewardBatch.builder().id("BATCH_NOV").status(RewardBatchStatus.CREATED).build();
+
+        Mockito.when(rewardTransactionRepository.findInvoicedTransactionsWithoutBatch(chunkSize))
+                .thenReturn(Flux.just(buildOrphanTrx("TRX1", november, 100L), buildOrphanTrx("TRX2", november, 200L)));
+        Mockito.when(merchantRestClient.getPointOfSale("MERCHANT1", "POS1"))
+                .thenReturn(Mono.just(PointOfSaleDTO.builder().type(PointOfSaleTypeEnum.PHYSICAL).build()));
+        Mockito.when(rewardBatchService.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(Mono.just(batch));
+        // TRX1 has been assigned meanwhile by the ingestion
+        Mockito.when(rewardTransactionRepository.bulkAssignToBatch(Mockito.any()))
+                .thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of())));
+        Mockito.when(rewardTransactionRepository.findIdsAssignedToBatch(Mockito.eq("BATCH_NOV"), Mockito.eq(List.of("TRX1", "TRX2")), Mockito.any()))
+                .thenReturn(Flux.just("TRX2"));
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(true));
+
+        StepVerifier.create(rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize, 1, false, null))
+                .verifyComplete();
+
+        Mockito.verify(rewardBatchCounterStripeRepository).incrementStripe(Mockito.eq("BATCH_NOV"), Mockito.anyInt(), Mockito.eq(Set.of("TRX2")), Mockito.argThat(counters ->
+                counters.getNumberOfTransactions() == 1L && counters.getInitialAmountCents() == 200L));
+        Mockito.verify(rewardBatchService, Mockito.never()).recomputeTransactionTotals(Mockito.any());
+        Mockito.verifyNoInteractions(rewardBatchRepository);
+    }
+
+    @Test
+    void assignInvoicedTransactionsToBatches_partiallyFailedGroup_countsJustWritten() {
+        int chunkSize = 100;
+        LocalDateTime november = LocalDateTime.of(2025, 11, 19, 10, 0);
+        RewardBatch batch = RewardBatch.builder().id("BATCH_NOV").status(RewardBatchStatus.CREATED).build();
+        List<Long> assigned = new ArrayList<>();
+
+        Mockito.when(rewardTransactionRepository.findInvoicedTransactionsWithoutBatch(chunkSize))
+                .thenReturn(Flux.just(buildOrphanTrx("TRX1", november, 100L), buildOrphanTrx("TRX2", november, 200L)));
+        Mockito.when(merchantRestClient.getPointOfSale("MERCHANT1", "POS1"))
+                .thenReturn(Mono.just(PointOfSaleDTO.builder().type(PointOfSaleTypeEnum.PHYSICAL).build()));
+        Mockito.when(rewardBatchService.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(Mono.just(batch));
+        BulkWriteError writeError = new BulkWriteError(121, "DUMMY", new BsonDocument(), 0);
+        Mockito.when(rewardTransactionRepository.bulkAssignToBatch(Mockito.any()))
+                .thenReturn(Mono.error(new BulkOperationException("DUMMY",
+                        new MongoBulkWriteException(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()), List.of(writeError), null, new ServerAddress(), Set.of()))));
+        Mockito.when(rewardBatchCounterStripeRepository.incrementStripe(Mockito.anyString(), Mockito.anyInt(), Mockito.any(), Mockito.any(BatchCountersDTO.class)))
+                .thenReturn(Mono.just(true));
+
+        StepVerifier.create(rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize, 1, false, null, assigned::add))
+                .verifyComplete();
+
+        Assertions.assertEquals(List.of(1L), assigned);
+        Mockito.verify(rewardBatchCounterStripeRepository).incrementStripe(Mockito.eq("BATCH_NOV"), Mockito.anyInt(), Mockito.eq(Set.of("TRX2")), Mockito.argThat(counters ->
+                counters.getNumberOfTransactions() == 1L && counters.getInitialAmountCents() == 200L));
+        Mockito.verify(rewardTransactionRepository, Mockito.never()).findIdsAssignedToBatch(Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(rewardBatchService, Mockito.never()).recomputeTransactionTotals(Mockito.any());
+    }
+
+    @Test
+    void assignInvoicedTransactionsToBatches_processAll_stopsWhenNothingIsAssigned() {
+        int chunkSize = 100;
+        RewardBatch batch = RewardBatch.builder().id("BATCH_SENT").status(RewardBatchStatus.SENT).build();
+
+        Mockito.when(rewardTransactionRepository.findInvoicedTransactionsWithoutBatch(chunkSize))
+                .thenReturn(Flux.just(buildOrphanTrx("TRX1", LocalDateTime.of(2025, 11, 19, 10, 0), 100L)));
+        Mockito.when(merchantRestClient.getPointOfSale("MERCHANT1", "POS1"))
+                .thenReturn(Mono.just(PointOfSaleDTO.builder().type(PointOfSaleTypeEnum.PHYSICAL).build()));
+        Mockito.when(rewardBatchService.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(Mono.just(batch));
+
+        StepVerifier.create(rewardTransactionService.assignInvoicedTransactionsToBatches(chunkSize, 1, true, null))
+                .verifyComplete();
+
+        Mockito.verify(rewardTransactionRepository, Mockito.times(1)).findInvoicedTransactionsWithoutBatch(chunkSize);
+        Mockito.verify(rewardTransactionRepository, Mockito.never()).bulkAssignToBatch(Mockito.any());
+        Mockito.verifyNoInteractions(rewardBatchRepository);
+    }
+
+    @Test
+    void assignInvoicedTransactionsToBatches_processSingleTransaction_batchNotCreated() {
+        RewardTransaction trx = buildOrphanTrx("TRX1", LocalDateTime.of(2025, 11, 19, 10, 0), 100L);
+        RewardBatch batch = RewardBatch.builder().id("BATCH_SENT").status(RewardBatchStatus.SENT).build();
+
+        Mockito.when(rewardTransactionRepository.findInvoicedTrxByIdWithoutBatch("TRX1"))
+                .thenReturn(Mono.just(trx));
+        Mockito.when(merchantRestClient.getPointOfSale("MERCHANT1", "POS1"))
+                .thenReturn(Mono.just(PointOfSaleDTO.builder().type(PointOfSaleTypeEnum.PHYSICAL).build()));
+        Mockito.when(rewardBatchService.findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(Mono.just(batch));
+
+        StepVerifier.create(rewardTransactionService.assignInvoicedTransactionsToBatches(200, 1, false, "TRX1"))
+                .expectErrorSatisfies(ex -> {
+                    Assertions.assertInstanceOf(ClientExceptionNoBody.class, ex);
+                    Assertions.assertEquals(HttpStatus.BAD_REQUEST, ((ClientExceptionNoBody) ex).getHttpStatus());
+                })
+                .verify();
+
+        Mockito.verify(rewardTransactionRepository, Mockito.never()).bulkAssignToBatch(Mockito.any());
+    }
+
+    private void stubBulkAssignToBatch() {
+        Mockito.when(rewardTransactionRepository.bulkAssignToBatch(Mockito.any()))
+                .thenAnswer(invocation -> {
+                    List<RewardTransaction> assigned = invocation.getArgument(0);
+                    return Mono.just(BulkWriteResult.acknowledged(0, assigned.size(), 0, assigned.size(), List.of(), List.of()));
+                });
+    }
+
+    private static RewardTransaction buildOrphanTrx(String id, LocalDateTime trxChargeDate, long accruedRewardCents) {
+        return RewardTransaction.builder()
+                .id(id)
+                .status(SyncTrxStatus.INVOICED.name())
+                .merchantId("MERCHANT1")
+                .pointOfSaleId("POS1")
+                .trxChargeDate(trxChargeDate)
+                .initiatives(List.of("initiative1"))
+                .rewards(Map.of("initiative1", Reward.builder().accruedRewardCents(accruedRewardCents).build()))
+                .build();
+    }
 }
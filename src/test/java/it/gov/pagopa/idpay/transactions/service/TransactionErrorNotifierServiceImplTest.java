@@ -10,6 +10,7 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Mono;
 
 import java.util.Map;
 
@@ -114,6 +115,6 @@ class TransactionErrorNotifierServiceImplTest {
 
     private void errorNotifyMock(KafkaConfiguration.BaseKafkaInfoDTO baseKafkaInfoDTO,boolean retryable, boolean resendApplication) {
         when(errorNotifierServiceMock.notify(eq(baseKafkaInfoDTO), eq(dummyMessage), eq(DUMMY_MESSAGE), eq(retryable), eq(resendApplication), any()))
-                .thenReturn(true);
+                .thenReturn(Mono.just(true));
     }
 }
\ No newline at end of file
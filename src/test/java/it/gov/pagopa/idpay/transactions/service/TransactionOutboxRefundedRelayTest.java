@@ -0,0 +1,138 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.kafka.utils.KafkaPayloadFormat;
+import it.gov.pagopa.common.reactive.kafka.consumer.EmbeddedKafkaConsumerHarness;
+import it.gov.pagopa.common.reactive.kafka.consumer.UncommittableErrorRetryPolicy;
+import it.gov.pagopa.common.reactive.kafka.producer.KafkaBatchPublisher;
+import it.gov.pagopa.common.utils.TestUtils;
+import it.gov.pagopa.idpay.transactions.dto.RewardTransactionDTO;
+import it.gov.pagopa.idpay.transactions.dto.RewardTransactionKafkaDTO;
+import it.gov.pagopa.idpay.transactions.dto.mapper.RewardTransactionMapper;
+import it.gov.pagopa.idpay.transactions.enums.TransactionOutboxStatus;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.model.TransactionOutbox;
+import it.gov.pagopa.idpay.transactions.notifier.TransactionNotifierServiceImpl;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.repository.TransactionOutboxRepository;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * It will relay through an embedded broker the outbox entries of a REFUNDED transaction and of a REWARDED one,
+ * checking that the <i>rewardTrxConsumer</i> flow consuming them skips the REFUNDED one, thus not ingesting again the reversal
+ */
+class TransactionOutboxRefundedRelayTest {
+
+    private static final String TOPIC = "idpay-transaction-refunded";
+
+    private static EmbeddedKafkaBroker kafkaBroker;
+
+    @BeforeAll
+    static void startBroker() {
+        kafkaBroker = new EmbeddedKafkaKraftBroker(1, 1, TOPIC);
+        kafkaBroker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        kafkaBroker.destroy();
+    }
+
+    @Test
+    void testRefundedRelayedNotIngested() {
+        TransactionOutboxRepository transactionOutboxRepositoryMock = Mockito.mock(TransactionOutboxRepository.class);
+        RewardTransactionRepository rewardTransactionRepositoryMock = Mockito.mock(RewardTransactionRepository.class);
+        Mockito.when(transactionOutboxRepositoryMock.claimPending(Mockito.anyString(), Mockito.anyInt(), Mockito.any()))
+                .thenReturn(Flux.just(buildEntry("TRXID_REFUNDED", "REFUNDED"), buildEntry("TRXID_REWARDED", "REWARDED")));
+        Mockito.when(rewardTransactionRepositoryMock.findStatusesByIds(Mockito.anyCollection()))
+                .thenAnswer(i -> Flux.fromIterable(i.<Collection<String>>getArgument(0))
+                        .map(trxId -> RewardTransaction.builder().id(trxId).status(trxId.substring("TRXID_".length())).build()));
+        Mockito.when(transactionOutboxRepositoryMock.markDelivered(Mockito.any())).thenAnswer(i -> Mono.just((long) ((List<?>) i.getArgument(0)).size()));
+
+        try (KafkaBatchPublisher publisher = new KafkaBatchPublisher(
+                () -> new KafkaProducer<>(KafkaTestUtils.producerProps(kafkaBroker), new StringSerializer(), new ByteArraySerializer()),
+                TOPIC, 10, Duration.ofMillis(10), 1, 16)) {
+            TransactionOutboxService transactionOutboxService = new TransactionOutboxServiceImpl(
+                    transactionOutboxRepositoryMock,
+                    rewardTransactionRepositoryMock,
+                    new TransactionNotifierServiceImpl(Mockito.mock(StreamBridge.class), "transaction-outcome", KafkaPayloadFormat.JSON, TestUtils.objectMapper, publisher),
+                    TestUtils.objectMapper,
+                    100, 300, 0, 300);
+
+            Assertions.assertEquals(2L, transactionOutboxService.relayPending().block(Duration.ofSeconds(30)));
+        }
+
+        RewardTransactionMapper rewardTransactionMapperMock = Mockito.mock(RewardTransactionMapper.class);
+        Mockito.when(rewardTransactionMapperMock.mapFromDTO(Mockito.any())).thenAnswer(i -> RewardTransaction.builder().id(i.<RewardTransactionDTO>getArgument(0).getId()).build());
+        RewardTransactionFingerprintService rewardTransactionFingerprintServiceMock = Mockito.mock(RewardTransactionFingerprintService.class);
+        Mockito.when(rewardTransactionFingerprintServiceMock.filterChanged(Mockito.any())).thenReturn(Mono.empty());
+
+        try (EmbeddedKafkaConsumerHarness ignored = new EmbeddedKafkaConsumerHarness(kafkaBroker, TOPIC, "refunded-relay",
+                buildMediator(rewardTransactionMapperMock, rewardTransactionFingerprintServiceMock), Duration.ofSeconds(10)).start()) {
+            // the records are consumed in order, thus once the REWARDED transaction is ingested the REFUNDED one has been already handled
+            Mockito.verify(rewardTransactionMapperMock, Mockito.timeout(30_000))
+                    .mapFromDTO(Mockito.argThat(trx -> "TRXID_REWARDED".equals(trx.getId())));
+        }
+
+        Mockito.verify(rewardTransactionMapperMock, Mockito.never())
+                .mapFromDTO(Mockito.argThat(trx -> "TRXID_REFUNDED".equals(trx.getId())));
+    }
+
+    private static PersistenceTransactionMediatorImpl buildMediator(RewardTransactionMapper rewardTransactionMapper, RewardTransactionFingerprintService rewardTransactionFingerprintService) {
+        return new PersistenceTransactionMediatorImpl(
+                "appName",
+                Mockito.mock(RewardTransactionService.class),
+                Mockito.mock(RewardTransactionBulkSaveService.class),
+                rewardTransactionFingerprintService,
+                Mockito.mock(RewardBatchService.class),
+                Mockito.mock(TransactionErrorNotifierService.class),
+                rewardTransactionMapper,
+                500,
+                0,
+                Optional.empty(),
+                UncommittableErrorRetryPolicy.DEFAULT,
+                null,
+                null,
+                Optional.empty(),
+                30000,
+                TestUtils.objectMapper);
+    }
+
+    private static TransactionOutbox buildEntry(String trxId, String status) {
+        RewardTransactionKafkaDTO trx = new RewardTransactionKafkaDTO();
+        trx.setId(trxId);
+        trx.setUserId("USERID");
+        trx.setStatus(status);
+        try {
+            return TransactionOutbox.builder()
+                    .id(TransactionOutbox.buildId(trx.getId(), trx.getStatus()))
+                    .trxId(trx.getId())
+                    .trxStatus(trx.getStatus())
+                    .messageKey(trx.getUserId())
+                    .payload(TestUtils.objectMapper.writeValueAsString(trx))
+                    .status(TransactionOutboxStatus.PENDING)
+                    .creationDate(LocalDateTime.now())
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionOutboxRelaySchedulerTest {
+
+    @Mock
+    private TransactionOutboxService transactionOutboxServiceMock;
+
+    private TransactionOutboxRelayScheduler scheduler;
+
+    @BeforeEach
+    void init() {
+        scheduler = new TransactionOutboxRelayScheduler(transactionOutboxServiceMock);
+    }
+
+    @Test
+    void testRelayPending() {
+        Mockito.when(transactionOutboxServiceMock.relayPending()).thenReturn(Mono.just(3L));
+
+        scheduler.relayPending();
+
+        Mockito.verify(transactionOutboxServiceMock).relayPending();
+    }
+
+    @Test
+    void testRelayPendingError() {
+        Mockito.when(transactionOutboxServiceMock.relayPending()).thenReturn(Mono.error(new IllegalStateException("DUMMY")));
+
+        Assertions.assertDoesNotThrow(() -> scheduler.relayPending());
+    }
+}
@@ -0,0 +1,189 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.reactive.kafka.producer.KafkaBatchPublisher;
+import it.gov.pagopa.common.utils.TestUtils;
+import it.gov.pagopa.idpay.transactions.dto.RewardTransactionKafkaDTO;
+import it.gov.pagopa.idpay.transactions.enums.TransactionOutboxStatus;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.model.TransactionOutbox;
+import it.gov.pagopa.idpay.transactions.notifier.TransactionNotifierService;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.repository.TransactionOutboxRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionOutboxServiceImplTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Mock
+    private TransactionOutboxRepository transactionOutboxRepositoryMock;
+    @Mock
+    private RewardTransactionRepository rewardTransactionRepositoryMock;
+    @Mock
+    private TransactionNotifierService transactionNotifierServiceMock;
+
+    private TransactionOutboxService service;
+
+    @BeforeEach
+    void init() {
+        service = new TransactionOutboxServiceImpl(transactionOutboxRepositoryMock, rewardTransactionRepositoryMock, transactionNotifierServiceMock, TestUtils.objectMapper, BATCH_SIZE, 300, 10, 300);
+    }
+
+    @Test
+    void testEnqueue() throws Exception {
+        RewardTransactionKafkaDTO trx = buildTrx(0);
+        Mockito.when(transactionOutboxRepositoryMock.insert(Mockito.any(TransactionOutbox.class))).thenAnswer(i -> Mono.just(i.getArgument(0)));
+
+        StepVerifier.create(service.enqueue(trx, "USERID")).verifyComplete();
+
+        ArgumentCaptor<TransactionOutbox> entryCaptor = ArgumentCaptor.forClass(TransactionOutbox.class);
+        Mockito.verify(transactionOutboxRepositoryMock).insert(entryCaptor.capture());
+        TransactionOutbox entry = entryCaptor.getValue();
+        Assertions.assertEquals("TRXID_0_REFUNDED", entry.getId());
+        Assertions.assertEquals("TRXID_0", entry.getTrxId());
+        Assertions.assertEquals("REFUNDED", entry.getTrxStatus());
+        Assertions.assertEquals("USERID", entry.getMessageKey());
+        Assertions.assertEquals(TransactionOutboxStatus.PENDING, entry.getStatus());
+        Assertions.assertNotNull(entry.getAvailableDate());
+        Assertions.assertEquals(trx, TestUtils.objectMapper.readValue(entry.getPayload(), RewardTransactionKafkaDTO.class));
+    }
+
+    @Test
+    void testEnqueueAlreadyStored() {
+        Mockito.when(transactionOutboxRepositoryMock.insert(Mockito.any(TransactionOutbox.class))).thenReturn(Mono.error(new DuplicateKeyException("DUMMY")));
+
+        StepVerifier.create(service.enqueue(buildTrx(0), "USERID")).verifyComplete();
+    }
+
+    @Test
+    void testEnqueueError() {
+        Mockito.when(transactionOutboxRepositoryMock.insert(Mockito.any(TransactionOutbox.class))).thenReturn(Mono.error(new IllegalStateException("DUMMY")));
+
+        StepVerifier.create(service.enqueue(buildTrx(0), "USERID")).verifyError(IllegalStateException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void testRelayPending() {
+        List<TransactionOutbox> entries = IntStream.range(0, 3).mapToObj(TransactionOutboxServiceImplTest::buildEntry).toList();
+        Mockito.when(transactionOutboxRepositoryMock.claimPending(Mockito.anyString(), Mockito.eq(BATCH_SIZE), Mockito.any()))
+                .thenReturn(Flux.fromIterable(entries.subList(0, 2)), Flux.fromIterable(entries.subList(2, 3)));
+        stubTransactionStatuses("REFUNDED");
+        stubBuildMessage();
+        Mockito.when(transactionNotifierServiceMock.publishAll(Mockito.any()))
+                .thenAnswer(i -> ((Flux<Message<RewardTransactionKafkaDTO>>) i.getArgument(0))
+                        .map(m -> new KafkaBatchPublisher.SendResult<>(m, null,
+                                "TRXID_1".equals(m.getPayload().getId()) ? new IllegalStateException("DUMMY_SEND_ERROR") : null)));
+        Mockito.when(transactionOutboxRepositoryMock.markDelivered(Mockito.any())).thenAnswer(i -> Mono.just((long) ((List<?>) i.getArgument(0)).size()));
+        Mockito.when(transactionOutboxRepositoryMock.markFailed(Mockito.anyString(), Mockito.anyString(), Mockito.any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.relayPending()).expectNext(2L).verifyComplete();
+
+        Mockito.verify(transactionOutboxRepositoryMock).markDelivered(List.of("TRXID_0_REFUNDED"));
+        Mockito.verify(transactionOutboxRepositoryMock).markDelivered(List.of("TRXID_2_REFUNDED"));
+        Mockito.verify(transactionOutboxRepositoryMock).markFailed(Mockito.eq("TRXID_1_REFUNDED"), Mockito.eq("DUMMY_SEND_ERROR"), Mockito.any(LocalDateTime.class));
+    }
+
+    @Test
+    void testRelayPendingUnreadablePayload() {
+        TransactionOutbox corrupted = buildEntry(0);
+        corrupted.setPayload("{");
+        Mockito.when(transactionOutboxRepositoryMock.claimPending(Mockito.anyString(), Mockito.eq(BATCH_SIZE), Mockito.any()))
+                .thenReturn(Flux.just(corrupted));
+        stubTransactionStatuses("REFUNDED");
+        Mockito.when(transactionNotifierServiceMock.publishAll(Mockito.any())).thenReturn(Flux.empty());
+        Mockito.when(transactionOutboxRepositoryMock.markDelivered(List.of())).thenReturn(Mono.just(0L));
+        Mockito.when(transactionOutboxRepositoryMock.markFailed(Mockito.eq(corrupted.getId()), Mockito.anyString(), Mockito.any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.relayPending()).expectNext(0L).verifyComplete();
+
+        Mockito.verify(transactionOutboxRepositoryMock).markFailed(Mockito.eq(corrupted.getId()), Mockito.anyString(), Mockito.any(LocalDateTime.class));
+    }
+
+    @Test
+    void testRelayPendingStateNotApplied() {
+        TransactionOutbox recent = buildEntry(0);
+        TransactionOutbox expired = buildEntry(1);
+        expired.setCreationDate(LocalDateTime.now().minusMinutes(10));
+        Mockito.when(transactionOutboxRepositoryMock.claimPending(Mockito.anyString(), Mockito.eq(BATCH_SIZE), Mockito.any()))
+                .thenReturn(Flux.just(recent, expired), Flux.empty());
+        stubTransactionStatuses("INVOICED");
+        Mockito.when(transactionOutboxRepositoryMock.markFailed(Mockito.eq(recent.getId()), Mockito.anyString(), Mockito.any())).thenReturn(Mono.empty());
+        Mockito.when(transactionOutboxRepositoryMock.markDiscarded(Mockito.eq(expired.getId()), Mockito.anyString())).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.relayPending()).expectNext(0L).verifyComplete();
+
+        // the change of the recent entry could be still in progress, while the other one has not been applied in time
+        Mockito.verify(transactionOutboxRepositoryMock).markFailed(Mockito.eq(recent.getId()), Mockito.anyString(), Mockito.any(LocalDateTime.class));
+        Mockito.verify(transactionOutboxRepositoryMock).markDiscarded(Mockito.eq(expired.getId()), Mockito.anyString());
+        Mockito.verify(transactionOutboxRepositoryMock, Mockito.never()).markDelivered(Mockito.any());
+        Mockito.verifyNoInteractions(transactionNotifierServiceMock);
+    }
+
+    @Test
+    void testRelayPendingNothingToRelay() {
+        Mockito.when(transactionOutboxRepositoryMock.claimPending(Mockito.anyString(), Mockito.eq(BATCH_SIZE), Mockito.any())).thenReturn(Flux.empty());
+
+        StepVerifier.create(service.relayPending()).expectNext(0L).verifyComplete();
+
+        Mockito.verifyNoInteractions(transactionNotifierServiceMock);
+    }
+
+    private void stubTransactionStatuses(String status) {
+        Mockito.when(rewardTransactionRepositoryMock.findStatusesByIds(Mockito.anyCollection()))
+                .thenAnswer(i -> Flux.fromIterable(i.<Collection<String>>getArgument(0))
+                        .map(trxId -> RewardTransaction.builder().id(trxId).status(status).build()));
+    }
+
+    private void stubBuildMessage() {
+        Mockito.when(transactionNotifierServiceMock.buildMessage(Mockito.any(), Mockito.anyString()))
+                .thenAnswer(i -> MessageBuilder.withPayload(i.<RewardTransactionKafkaDTO>getArgument(0))
+                        .setHeader(KafkaHeaders.KEY, i.getArgument(1))
+                        .build());
+    }
+
+    private static RewardTransactionKafkaDTO buildTrx(int i) {
+        RewardTransactionKafkaDTO trx = new RewardTransactionKafkaDTO();
+        trx.setId("TRXID_%d".formatted(i));
+        trx.setUserId("USERID");
+        trx.setStatus("REFUNDED");
+        return trx;
+    }
+
+    private static TransactionOutbox buildEntry(int i) {
+        RewardTransactionKafkaDTO trx = buildTrx(i);
+        try {
+            return TransactionOutbox.builder()
+                    .id(TransactionOutbox.buildId(trx.getId(), trx.getStatus()))
+                    .trxId(trx.getId())
+                    .trxStatus(trx.getStatus())
+                    .messageKey(trx.getUserId())
+                    .payload(TestUtils.objectMapper.writeValueAsString(trx))
+                    .status(TransactionOutboxStatus.PENDING)
+                    .creationDate(LocalDateTime.now())
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
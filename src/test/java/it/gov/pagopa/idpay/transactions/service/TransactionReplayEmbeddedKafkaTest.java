@@ -0,0 +1,224 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaRangeReader;
+import it.gov.pagopa.common.reactive.kafka.consumer.UncommittableErrorRetryPolicy;
+import it.gov.pagopa.common.utils.TestUtils;
+import it.gov.pagopa.idpay.transactions.connector.rest.MerchantRestClient;
+import it.gov.pagopa.idpay.transactions.dto.RewardTransactionDTO;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayRequest;
+import it.gov.pagopa.idpay.transactions.dto.mapper.RewardTransactionMapper;
+import it.gov.pagopa.idpay.transactions.enums.PosType;
+import it.gov.pagopa.idpay.transactions.enums.RewardBatchStatus;
+import it.gov.pagopa.idpay.transactions.enums.RewardBatchTrxStatus;
+import it.gov.pagopa.idpay.transactions.enums.SyncTrxStatus;
+import it.gov.pagopa.idpay.transactions.model.Reward;
+import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.test.fakers.RewardTransactionDTOFaker;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * It will replay, from an embedded broker, a transaction topic whose transactions of the previous month are already assigned to a batch no more CREATED,
+ * checking that they keep their assignment, while the others are assigned to the current batch, and that the last version of each transaction is stored
+ */
+class TransactionReplayEmbeddedKafkaTest {
+
+    private static final String TOPIC = "idpay-transaction-replay";
+    private static final int TRANSACTIONS_PER_MONTH = 150;
+    private static final int UPDATED_TRANSACTIONS = 20;
+    private static final String MERCHANT_ID = "MERCHANT";
+    private static final String SENT_MONTH = "2025-10";
+    private static final String CREATED_MONTH = "2025-11";
+
+    private static EmbeddedKafkaBroker kafkaBroker;
+
+    @BeforeAll
+    static void startBroker() {
+        kafkaBroker = new EmbeddedKafkaKraftBroker(1, 2, TOPIC);
+        kafkaBroker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        kafkaBroker.destroy();
+    }
+
+    @Test
+    void testReplayKeepsStoredBatchAssignments() {
+        publishTopic();
+
+        // the stored transactions of the previous month are already assigned to a sent batch
+        Map<String, RewardTransaction> storedTransactions = new ConcurrentHashMap<>();
+        for (int i = 0; i < TRANSACTIONS_PER_MONTH; i++) {
+            String trxId = buildTrxId(SENT_MONTH, i);
+            storedTransactions.put(trxId, RewardTransaction.builder()
+                    .id(trxId)
+                    .rewardBatchId("SENT_BATCH")
+                    .rewardBatchTrxStatus(RewardBatchTrxStatus.APPROVED)
+                    .pointOfSaleType(PosType.PHYSICAL)
+                    .samplingKey(i)
+                    .build());
+        }
+
+        RewardTransactionRepository rewardTransactionRepositoryMock = Mockito.mock(RewardTransactionRepository.class);
+        Mockito.when(rewardTransactionRepositoryMock.findBatchDataByIds(Mockito.any())).thenAnswer(i -> Flux.fromIterable(i.<Collection<String>>getArgument(0))
+                .mapNotNull(storedTransactions::get));
+
+        RewardBatchService rewardBatchServiceMock = Mockito.mock(RewardBatchService.class);
+        Mockito.when(rewardBatchServiceMock.findOrCreateBatch(Mockito.eq(MERCHANT_ID), Mockito.eq(PosType.PHYSICAL), Mockito.anyString(), Mockito.any()))
+                .thenAnswer(i -> Mono.just(RewardBatch.builder()
+                        .id(SENT_MONTH.equals(i.getArgument(2)) ? "SENT_BATCH" : "CREATED_BATCH")
+                        .status(SENT_MONTH.equals(i.getArgument(2)) ? RewardBatchStatus.SENT : RewardBatchStatus.CREATED)
+                        .build()));
+        Mockito.when(rewardBatchServiceMock.recomputeTransactionTotals(Mockito.any())).thenAnswer(i -> Mono.just((long) i.<Set<String>>getArgument(0).size()));
+
+        RewardTransactionBulkSaveService rewardTransactionBulkSaveServiceMock = Mockito.mock(RewardTransactionBulkSaveService.class);
+        Mockito.when(rewardTransactionBulkSaveServiceMock.saveAll(Mockito.any())).thenAnswer(i -> {
+            i.<List<RewardTransaction>>getArgument(0).forEach(trx -> storedTransactions.put(trx.getId(), trx));
+            return Mono.just(Map.of());
+        });
+
+        RewardTransactionFingerprintService rewardTransactionFingerprintServiceMock = Mockito.mock(RewardTransactionFingerprintService.class);
+        Mockito.when(rewardTransactionFingerprintServiceMock.computeFingerprint(Mockito.any())).thenReturn("FINGERPRINT");
+
+        TransactionErrorNotifierService transactionErrorNotifierServiceMock = Mockito.mock(TransactionErrorNotifierService.class);
+        Mockito.when(transactionErrorNotifierServiceMock.notifyTransaction(Mockito.any(), Mockito.anyString(), Mockito.anyBoolean(), Mockito.any())).thenReturn(Mono.just(true));
+
+        RewardTransactionService rewardTransactionService = new RewardTransactionServiceImpl(
+                rewardTransactionRepositoryMock,
+                rewardBatchServiceMock,
+                Mockito.mock(MerchantRestClient.class),
+                0,
+                Mockito.mock(RewardBatchCountersWriteBehindService.class),
+                Mockito.mock(RewardBatchCounterStripeService.class));
+
+        PersistenceTransactionMediator persistenceTransactionMediator = new PersistenceTransactionMediatorImpl(
+                "appName",
+                rewardTransactionService,
+                rewardTransactionBulkSaveServiceMock,
+                rewardTransactionFingerprintServiceMock,
+                rewardBatchServiceMock,
+                transactionErrorNotifierServiceMock,
+                new RewardTransactionMapper(),
+                1000,
+                0,
+                Optional.empty(),
+                UncommittableErrorRetryPolicy.DEFAULT,
+                null,
+                null,
+                Optional.empty(),
+                30000,
+                TestUtils.objectMapper);
+
+        TransactionReplayService transactionReplayService = new TransactionReplayServiceImpl(
+                buildRangeReader(),
+                persistenceTransactionMediator,
+                TOPIC,
+                50,
+                10);
+
+        TransactionReplayReportDTO report = transactionReplayService.replay(new TransactionReplayRequest()).block(Duration.ofMinutes(1));
+
+        Assertions.assertNotNull(report);
+        Assertions.assertEquals(2L * TRANSACTIONS_PER_MONTH + UPDATED_TRANSACTIONS + 1, report.getRead());
+        Assertions.assertEquals(1, report.getErrors());
+        Assertions.assertEquals(2 * TRANSACTIONS_PER_MONTH, storedTransactions.size());
+
+        for (int i = 0; i < TRANSACTIONS_PER_MONTH; i++) {
+            RewardTransaction sentMonthTrx = storedTransactions.get(buildTrxId(SENT_MONTH, i));
+            Assertions.assertEquals("SENT_BATCH", sentMonthTrx.getRewardBatchId());
+            Assertions.assertEquals(RewardBatchTrxStatus.APPROVED, sentMonthTrx.getRewardBatchTrxStatus());
+            Assertions.assertEquals(i, sentMonthTrx.getSamplingKey());
+            Assertions.assertEquals("FINGERPRINT", sentMonthTrx.getContentFingerprint());
+            Assertions.assertEquals(i < UPDATED_TRANSACTIONS ? 2_000L : 1_000L, sentMonthTrx.getAmountCents());
+
+            RewardTransaction createdMonthTrx = storedTransactions.get(buildTrxId(CREATED_MONTH, i));
+            Assertions.assertEquals("CREATED_BATCH", createdMonthTrx.getRewardBatchId());
+            Assertions.assertEquals(RewardBatchTrxStatus.CONSULTABLE, createdMonthTrx.getRewardBatchTrxStatus());
+        }
+
+        Mockito.verify(rewardBatchServiceMock, Mockito.never()).findOrCreateBatch(Mockito.any(), Mockito.any(), Mockito.eq(SENT_MONTH), Mockito.any());
+        Mockito.verify(rewardBatchServiceMock).recomputeTransactionTotals(Set.of("SENT_BATCH", "CREATED_BATCH"));
+        Mockito.verify(transactionErrorNotifierServiceMock).notifyTransaction(Mockito.any(), Mockito.anyString(), Mockito.anyBoolean(), Mockito.any());
+    }
+
+    private static void publishTopic() {
+        Map<String, Object> props = KafkaTestUtils.producerProps(kafkaBroker);
+        try (KafkaProducer<String, byte[]> producer = new KafkaProducer<>(props, new StringSerializer(), new ByteArraySerializer())) {
+            for (int i = 0; i < TRANSACTIONS_PER_MONTH; i++) {
+                send(producer, buildTrx(SENT_MONTH, i, 1_000L));
+                send(producer, buildTrx(CREATED_MONTH, i, 1_000L));
+            }
+            producer.send(new ProducerRecord<>(TOPIC, "NOT_A_JSON", "NOT A JSON".getBytes(StandardCharsets.UTF_8)));
+            for (int i = 0; i < UPDATED_TRANSACTIONS; i++) {
+                send(producer, buildTrx(SENT_MONTH, i, 2_000L));
+            }
+            producer.flush();
+        }
+    }
+
+    private static void send(KafkaProducer<String, byte[]> producer, RewardTransactionDTO trx) {
+        producer.send(new ProducerRecord<>(TOPIC, trx.getId(), TestUtils.jsonSerializer(trx).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static RewardTransactionDTO buildTrx(String month, int i, long amountCents) {
+        OffsetDateTime chargeDate = OffsetDateTime.of(LocalDateTime.parse(month + "-10T10:00:00"), ZoneOffset.UTC);
+        return RewardTransactionDTOFaker.mockInstanceBuilder(i)
+                .id(buildTrxId(month, i))
+                .status(SyncTrxStatus.INVOICED.name())
+                .amountCents(amountCents)
+                .merchantId(MERCHANT_ID)
+                .pointOfSaleType(PosType.PHYSICAL)
+                .businessName("BUSINESS")
+                .trxChargeDate(chargeDate)
+                .updateDate(chargeDate.toLocalDateTime())
+                .initiatives(List.of("INITIATIVE"))
+                .rewards(Map.of("INITIATIVE", Reward.builder().initiativeId("INITIATIVE").accruedRewardCents(100L).build()))
+                .build();
+    }
+
+    private static String buildTrxId(String month, int i) {
+        return "TRX_%s_%d".formatted(month, i);
+    }
+
+    private static KafkaRangeReader buildRangeReader() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaBroker.getBrokersAsString());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 40);
+        return new KafkaRangeReader(
+                () -> new KafkaConsumer<>(props, new ByteArrayDeserializer(), new ByteArrayDeserializer()),
+                Duration.ofMillis(500));
+    }
+}
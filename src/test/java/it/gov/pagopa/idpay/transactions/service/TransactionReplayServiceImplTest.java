@@ -0,0 +1,59 @@
+package it.gov.pagopa.idpay.transactions.service;
+
+import it.gov.pagopa.common.reactive.kafka.consumer.KafkaRangeReader;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayReportDTO;
+import it.gov.pagopa.idpay.transactions.dto.TransactionReplayRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionReplayServiceImplTest {
+
+    private static final String TOPIC = "idpay-transaction";
+
+    @Mock
+    private KafkaRangeReader rangeReaderMock;
+    @Mock
+    private PersistenceTransactionMediator persistenceTransactionMediatorMock;
+
+    private TransactionReplayService service;
+
+    @BeforeEach
+    void init() {
+        service = new TransactionReplayServiceImpl(rangeReaderMock, persistenceTransactionMediatorMock, TOPIC, 500, 10);
+    }
+
+    @Test
+    void testReplay() {
+        OffsetDateTime from = OffsetDateTime.of(2025, 11, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        TransactionReplayRequest request = TransactionReplayRequest.builder()
+                .toOffsets(Map.of(0, 100L))
+                .fromTimestamp(from)
+                .build();
+
+        Flux<Message<byte[]>> records = Flux.empty();
+        TransactionReplayReportDTO report = TransactionReplayReportDTO.builder().read(0).build();
+        Mockito.when(rangeReaderMock.read(Mockito.any())).thenReturn(records);
+        Mockito.when(persistenceTransactionMediatorMock.replay(Mockito.eq(records), Mockito.eq(500), Mockito.eq(Duration.ofSeconds(10)), Mockito.any())).thenReturn(Mono.just(report));
+
+        Assertions.assertSame(report, service.replay(request).block());
+
+        ArgumentCaptor<KafkaRangeReader.Range> rangeCaptor = ArgumentCaptor.forClass(KafkaRangeReader.Range.class);
+        Mockito.verify(rangeReaderMock).read(rangeCaptor.capture());
+        Assertions.assertEquals(new KafkaRangeReader.Range(TOPIC, null, Map.of(0, 100L), from.toInstant().toEpochMilli(), null), rangeCaptor.getValue());
+    }
+}
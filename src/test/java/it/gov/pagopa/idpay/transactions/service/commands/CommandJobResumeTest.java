@@ -0,0 +1,151 @@
+package it.gov.pagopa.idpay.transactions.service.commands;
+
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.idpay.transactions.dto.QueueCommandOperationDTO;
+import it.gov.pagopa.idpay.transactions.enums.CommandJobStatus;
+import it.gov.pagopa.idpay.transactions.model.CommandJob;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.CommandJobRepository;
+import it.gov.pagopa.idpay.transactions.repository.ReportRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.service.TransactionErrorNotifierService;
+import it.gov.pagopa.idpay.transactions.service.commands.ops.DeleteInitiativeService;
+import it.gov.pagopa.idpay.transactions.service.commands.ops.DeleteInitiativeServiceImpl;
+import it.gov.pagopa.idpay.transactions.utils.AuditUtilities;
+import it.gov.pagopa.idpay.transactions.utils.CommandsConstants;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * It will terminate a worker in the middle of an initiative deletion, verifying that the next worker will complete it resuming from the last checkpoint
+ */
+@DirtiesContext
+@MongoTest
+class CommandJobResumeTest {
+
+    private static final String INITIATIVE_ID = "INITIATIVEID";
+    private static final int TRANSACTIONS = 1_000;
+    private static final int CHUNK_SIZE = 100;
+    private static final int CHECKPOINTS_BEFORE_KILL = 3;
+
+    @Autowired
+    private CommandJobRepository commandJobRepository;
+    @Autowired
+    private RewardTransactionRepository rewardTransactionRepository;
+    @Autowired
+    private RewardBatchRepository rewardBatchRepository;
+    @Autowired
+    private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository;
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @AfterEach
+    void clearData() {
+        commandJobRepository.deleteAll().block();
+        rewardTransactionRepository.deleteAll().block();
+    }
+
+    @Test
+    void testResumeAfterWorkerTermination() {
+        rewardTransactionRepository.saveAll(Flux.range(0, TRANSACTIONS)
+                        .map(i -> RewardTransaction.builder()
+                                .id("TRXID_%05d".formatted(i))
+                                .channel("QRCODE")
+                                .initiatives(List.of(INITIATIVE_ID))
+                                .build()))
+                .blockLast();
+
+        QueueCommandOperationDTO command = QueueCommandOperationDTO.builder()
+                .operationType(CommandsConstants.COMMANDS_OPERATION_TYPE_DELETE_INITIATIVE)
+                .entityId(INITIATIVE_ID)
+                .operationTime(LocalDateTime.now())
+                .build();
+
+        // first worker: terminated after some checkpoints
+        RecordingDeleteInitiativeService killedRun = new RecordingDeleteInitiativeService(CHECKPOINTS_BEFORE_KILL);
+        CommandJobService killedWorker = buildCommandJobService(killedRun);
+        Assertions.assertEquals(true, killedWorker.enqueue(command).block());
+        Assertions.assertEquals(false, killedWorker.enqueue(command).block());
+
+        Disposable killedExecution = killedWorker.processPending().subscribe();
+        Awaitility.await().atMost(Duration.ofSeconds(30)).until(() -> killedRun.checkpoints.size() == CHECKPOINTS_BEFORE_KILL);
+        killedExecution.dispose();
+
+        CommandCheckpoint lastCheckpoint = killedRun.checkpoints.getLast();
+        Assertions.assertEquals(new CommandCheckpoint(DeleteInitiativeServiceImpl.STEP_TRANSACTIONS, "TRXID_%05d".formatted(CHUNK_SIZE * CHECKPOINTS_BEFORE_KILL - 1), (long) CHUNK_SIZE * CHECKPOINTS_BEFORE_KILL), lastCheckpoint);
+        Assertions.assertEquals(TRANSACTIONS - lastCheckpoint.processed(), rewardTransactionRepository.count().block());
+
+        // the same command received again while the job is still claimed by the terminated worker
+        Assertions.assertEquals(false, killedWorker.enqueue(command).block());
+
+        // second worker: it will claim the job once the previous claim expired
+        RecordingDeleteInitiativeService resumedRun = new RecordingDeleteInitiativeService(Integer.MAX_VALUE);
+        CommandJobService resumingWorker = buildCommandJobService(resumedRun);
+        Awaitility.await().atMost(Duration.ofSeconds(30)).pollInterval(Duration.ofMillis(200))
+                .until(() -> resumingWorker.processPending().block() == 1L);
+
+        Assertions.assertEquals(List.of(lastCheckpoint), resumedRun.startingCheckpoints);
+        List<CommandCheckpoint> resumedTransactionCheckpoints = resumedRun.checkpoints.stream()
+                .filter(c -> DeleteInitiativeServiceImpl.STEP_TRANSACTIONS.equals(c.step()))
+                .toList();
+        // without rescanning the already deleted chunks
+        Assertions.assertEquals(lastCheckpoint.processed() + CHUNK_SIZE, resumedTransactionCheckpoints.getFirst().processed());
+        Assertions.assertEquals(TRANSACTIONS, resumedTransactionCheckpoints.getLast().processed());
+        Assertions.assertEquals((TRANSACTIONS - lastCheckpoint.processed()) / CHUNK_SIZE + 1, resumedTransactionCheckpoints.size());
+
+        Assertions.assertEquals(0L, rewardTransactionRepository.count().block());
+        CommandJob job = commandJobRepository.findById(CommandJob.buildId(command.getOperationType(), command.getEntityId())).block();
+        Assertions.assertNotNull(job);
+        Assertions.assertEquals(CommandJobStatus.COMPLETED, job.getStatus());
+        Assertions.assertEquals(0, job.getAttempts());
+    }
+
+    private CommandJobService buildCommandJobService(DeleteInitiativeService deleteInitiativeService) {
+        return new CommandJobServiceImpl(commandJobRepository, deleteInitiativeService, Mockito.mock(TransactionErrorNotifierService.class), 1, 1, 3);
+    }
+
+    /** It will record the checkpoints of the deletion, hanging after the configured number of them as a terminated worker */
+    private class RecordingDeleteInitiativeService implements DeleteInitiativeService {
+        private final DeleteInitiativeService delegate = new DeleteInitiativeServiceImpl(
+                rewardTransactionRepository, rewardBatchRepository, rewardBatchCounterStripeRepository, reportRepository, new AuditUtilities(),
+                CHUNK_SIZE, 0, CHUNK_SIZE, CHUNK_SIZE, 0, 0.5, 0, 0);
+        private final int checkpointsBeforeHanging;
+        private final List<CommandCheckpoint> startingCheckpoints = new CopyOnWriteArrayList<>();
+        private final List<CommandCheckpoint> checkpoints = new CopyOnWriteArrayList<>();
+
+        private RecordingDeleteInitiativeService(int checkpointsBeforeHanging) {
+            this.checkpointsBeforeHanging = checkpointsBeforeHanging;
+        }
+
+        @Override
+        public Mono<String> execute(String initiativeId) {
+            return execute(initiativeId, null, c -> Mono.empty());
+        }
+
+        @Override
+        public Mono<String> execute(String initiativeId, CommandCheckpoint checkpoint, Function<CommandCheckpoint, Mono<Void>> onCheckpoint) {
+            startingCheckpoints.add(checkpoint);
+            return delegate.execute(initiativeId, checkpoint, c -> onCheckpoint.apply(c)
+                    .then(Mono.defer(() -> {
+                        checkpoints.add(c);
+                        return checkpoints.size() >= checkpointsBeforeHanging ? Mono.never() : Mono.empty();
+                    })));
+        }
+    }
+}
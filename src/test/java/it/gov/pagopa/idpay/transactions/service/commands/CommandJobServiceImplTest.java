@@ -0,0 +1,176 @@
+package it.gov.pagopa.idpay.transactions.service.commands;
+
+import it.gov.pagopa.idpay.transactions.dto.QueueCommandOperationDTO;
+import it.gov.pagopa.idpay.transactions.enums.CommandJobStatus;
+import it.gov.pagopa.idpay.transactions.model.CommandJob;
+import it.gov.pagopa.idpay.transactions.repository.CommandJobRepository;
+import it.gov.pagopa.idpay.transactions.service.TransactionErrorNotifierService;
+import it.gov.pagopa.idpay.transactions.service.commands.ops.DeleteInitiativeService;
+import it.gov.pagopa.idpay.transactions.service.commands.ops.DeleteInitiativeServiceImpl;
+import it.gov.pagopa.idpay.transactions.utils.CommandsConstants;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+
+@ExtendWith(MockitoExtension.class)
+class CommandJobServiceImplTest {
+
+    private static final String INITIATIVE_ID = "INITIATIVEID";
+    private static final String JOB_ID = CommandJob.buildId(CommandsConstants.COMMANDS_OPERATION_TYPE_DELETE_INITIATIVE, INITIATIVE_ID);
+    private static final String CLAIM_ID = "CLAIMID";
+
+    @Mock
+    private CommandJobRepository commandJobRepositoryMock;
+    @Mock
+    private DeleteInitiativeService deleteInitiativeServiceMock;
+    @Mock
+    private TransactionErrorNotifierService transactionErrorNotifierServiceMock;
+
+    private CommandJobService commandJobService;
+
+    @BeforeEach
+    void init() {
+        commandJobService = new CommandJobServiceImpl(commandJobRepositoryMock, deleteInitiativeServiceMock, transactionErrorNotifierServiceMock, 120, 60, 2);
+    }
+
+    @Test
+    void testEnqueue() {
+        LocalDateTime operationTime = LocalDateTime.now();
+        QueueCommandOperationDTO command = QueueCommandOperationDTO.builder()
+                .operationType(CommandsConstants.COMMANDS_OPERATION_TYPE_DELETE_INITIATIVE)
+                .entityId(INITIATIVE_ID)
+                .operationTime(operationTime)
+                .build();
+        Mockito.when(commandJobRepositoryMock.enqueue(any())).thenReturn(Mono.just(true), Mono.just(false));
+
+        Assertions.assertEquals(true, commandJobService.enqueue(command).block());
+        Assertions.assertEquals(false, commandJobService.enqueue(command).block());
+
+        ArgumentCaptor<CommandJob> jobCaptor = ArgumentCaptor.forClass(CommandJob.class);
+        Mockito.verify(commandJobRepositoryMock, Mockito.times(2)).enqueue(jobCaptor.capture());
+        CommandJob job = jobCaptor.getValue();
+        Assertions.assertEquals(JOB_ID, job.getId());
+        Assertions.assertEquals(INITIATIVE_ID, job.getEntityId());
+        Assertions.assertEquals(operationTime, job.getOperationTime());
+        Assertions.assertEquals(CommandJobStatus.PENDING, job.getStatus());
+        Assertions.assertNotNull(job.getAvailableDate());
+        Mockito.verifyNoInteractions(deleteInitiativeServiceMock);
+    }
+
+    @Test
+    void testProcessPending() {
+        CommandJob job = buildClaimedJob(null, null, 0L);
+        Mockito.when(commandJobRepositoryMock.claimNext(anyString(), any())).thenReturn(Mono.just(job), Mono.empty());
+        Mockito.when(deleteInitiativeServiceMock.execute(eq(INITIATIVE_ID), isNull(), any())).thenReturn(Mono.just(INITIATIVE_ID));
+        Mockito.when(commandJobRepositoryMock.complete(JOB_ID, CLAIM_ID)).thenReturn(Mono.just(job));
+
+        Assertions.assertEquals(1L, commandJobService.processPending().block());
+
+        Mockito.verify(commandJobRepositoryMock).complete(JOB_ID, CLAIM_ID);
+        Mockito.verify(commandJobRepositoryMock, Mockito.never()).fail(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void testProcessPendingResumingFromCheckpoint() {
+        CommandJob job = buildClaimedJob(DeleteInitiativeServiceImpl.STEP_TRANSACTIONS, "TRX_100", 100L);
+        CommandCheckpoint storedCheckpoint = new CommandCheckpoint(DeleteInitiativeServiceImpl.STEP_TRANSACTIONS, "TRX_100", 100L);
+        CommandCheckpoint nextCheckpoint = new CommandCheckpoint(DeleteInitiativeServiceImpl.STEP_TRANSACTIONS, "TRX_200", 200L);
+
+        Mockito.when(commandJobRepositoryMock.claimNext(anyString(), any())).thenReturn(Mono.just(job), Mono.empty());
+        Mockito.when(deleteInitiativeServiceMock.execute(eq(INITIATIVE_ID), eq(storedCheckpoint), any()))
+                .thenAnswer(i -> i.<Function<CommandCheckpoint, Mono<Void>>>getArgument(2).apply(nextCheckpoint).then(Mono.just(INITIATIVE_ID)));
+        Mockito.when(commandJobRepositoryMock.checkpoint(eq(JOB_ID), eq(CLAIM_ID), eq(DeleteInitiativeServiceImpl.STEP_TRANSACTIONS), eq("TRX_200"), eq(200L), any()))
+                .thenReturn(Mono.just(job));
+        Mockito.when(commandJobRepositoryMock.complete(JOB_ID, CLAIM_ID)).thenReturn(Mono.just(job));
+
+        Assertions.assertEquals(1L, commandJobService.processPending().block());
+
+        Mockito.verify(commandJobRepositoryMock).complete(JOB_ID, CLAIM_ID);
+    }
+
+    @Test
+    void testProcessPendingClaimLost() {
+        CommandJob job = buildClaimedJob(null, null, 0L);
+        CommandCheckpoint nextCheckpoint = new CommandCheckpoint(DeleteInitiativeServiceImpl.STEP_TRANSACTIONS, "TRX_100", 100L);
+
+        Mockito.when(commandJobRepositoryMock.claimNext(anyString(), any())).thenReturn(Mono.just(job), Mono.empty());
+        Mockito.when(deleteInitiativeServiceMock.execute(eq(INITIATIVE_ID), isNull(), any()))
+                .thenAnswer(i -> i.<Function<CommandCheckpoint, Mono<Void>>>getArgument(2).apply(nextCheckpoint).then(Mono.just(INITIATIVE_ID)));
+        Mockito.when(commandJobRepositoryMock.checkpoint(anyString(), anyString(), anyString(), anyString(), anyLong(), any()))
+                .thenReturn(Mono.empty());
+        Mockito.when(commandJobRepositoryMock.fail(eq(JOB_ID), eq(CLAIM_ID), anyString(), Mockito.notNull())).thenReturn(Mono.empty());
+
+        Assertions.assertEquals(1L, commandJobService.processPending().block());
+
+        Mockito.verify(commandJobRepositoryMock, Mockito.never()).complete(anyString(), anyString());
+        Mockito.verifyNoInteractions(transactionErrorNotifierServiceMock);
+    }
+
+    @Test
+    void testProcessPendingFailures() {
+        CommandJob retriedJob = buildClaimedJob(null, null, 0L);
+        CommandJob exhaustedJob = buildClaimedJob(null, null, 0L);
+        exhaustedJob.setAttempts(1);
+
+        Mockito.when(commandJobRepositoryMock.claimNext(anyString(), any())).thenReturn(Mono.just(retriedJob), Mono.just(exhaustedJob), Mono.empty());
+        Mockito.when(deleteInitiativeServiceMock.execute(eq(INITIATIVE_ID), isNull(), any())).thenReturn(Mono.error(new IllegalStateException("DUMMY")));
+        Mockito.when(commandJobRepositoryMock.fail(eq(JOB_ID), eq(CLAIM_ID), eq("DUMMY"), any())).thenReturn(Mono.just(retriedJob));
+        Mockito.when(transactionErrorNotifierServiceMock.notifyTransactionCommands(any(), anyString(), eq(false), any())).thenReturn(Mono.just(true));
+
+        Assertions.assertEquals(2L, commandJobService.processPending().block());
+
+        Mockito.verify(commandJobRepositoryMock).fail(eq(JOB_ID), eq(CLAIM_ID), eq("DUMMY"), Mockito.notNull());
+        Mockito.verify(commandJobRepositoryMock).fail(JOB_ID, CLAIM_ID, "DUMMY", null);
+        Mockito.verify(commandJobRepositoryMock, Mockito.never()).complete(anyString(), anyString());
+
+        // just the exhausted job is published on the error topic
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<QueueCommandOperationDTO>> messageCaptor = ArgumentCaptor.forClass(Message.class);
+        Mockito.verify(transactionErrorNotifierServiceMock).notifyTransactionCommands(messageCaptor.capture(), anyString(), eq(false), Mockito.isA(IllegalStateException.class));
+        Assertions.assertEquals(INITIATIVE_ID, messageCaptor.getValue().getPayload().getEntityId());
+        Assertions.assertEquals(CommandsConstants.COMMANDS_OPERATION_TYPE_DELETE_INITIATIVE, messageCaptor.getValue().getPayload().getOperationType());
+        Assertions.assertEquals(INITIATIVE_ID, messageCaptor.getValue().getHeaders().get(KafkaHeaders.KEY));
+    }
+
+    @Test
+    void testProcessPendingNotHandledOperation() {
+        CommandJob job = buildClaimedJob(null, null, 0L);
+        job.setOperationType("OTHER_OPERATION_TYPE");
+        Mockito.when(commandJobRepositoryMock.claimNext(anyString(), any())).thenReturn(Mono.just(job), Mono.empty());
+        Mockito.when(commandJobRepositoryMock.fail(eq(JOB_ID), eq(CLAIM_ID), anyString(), any())).thenReturn(Mono.just(job));
+
+        Assertions.assertEquals(1L, commandJobService.processPending().block());
+
+        Mockito.verifyNoInteractions(deleteInitiativeServiceMock);
+    }
+
+    private static CommandJob buildClaimedJob(String step, String checkpoint, long processed) {
+        return CommandJob.builder()
+                .id(JOB_ID)
+                .operationType(CommandsConstants.COMMANDS_OPERATION_TYPE_DELETE_INITIATIVE)
+                .entityId(INITIATIVE_ID)
+                .status(CommandJobStatus.RUNNING)
+                .claimId(CLAIM_ID)
+                .step(step)
+                .checkpoint(checkpoint)
+                .processed(processed)
+                .build();
+    }
+}
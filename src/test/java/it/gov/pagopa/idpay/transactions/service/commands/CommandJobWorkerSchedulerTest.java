@@ -0,0 +1,56 @@
+package it.gov.pagopa.idpay.transactions.service.commands;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.publisher.PublisherProbe;
+
+@ExtendWith(MockitoExtension.class)
+class CommandJobWorkerSchedulerTest {
+
+    @Mock
+    private CommandJobService commandJobServiceMock;
+
+    private CommandJobWorkerScheduler scheduler;
+
+    @BeforeEach
+    void init() {
+        scheduler = new CommandJobWorkerScheduler(commandJobServiceMock);
+    }
+
+    @Test
+    void testProcessPending() {
+        Mockito.when(commandJobServiceMock.processPending()).thenReturn(Mono.just(3L));
+
+        scheduler.processPending();
+        scheduler.processPending();
+
+        Mockito.verify(commandJobServiceMock, Mockito.times(2)).processPending();
+    }
+
+    @Test
+    void testProcessPendingStillRunning() {
+        PublisherProbe<Long> execution = PublisherProbe.of(Mono.never());
+        Mockito.when(commandJobServiceMock.processPending()).thenReturn(execution.mono());
+
+        scheduler.processPending();
+        scheduler.processPending();
+
+        Mockito.verify(commandJobServiceMock).processPending();
+
+        scheduler.stop();
+        execution.assertWasCancelled();
+    }
+
+    @Test
+    void testProcessPendingError() {
+        Mockito.when(commandJobServiceMock.processPending()).thenReturn(Mono.error(new IllegalStateException("DUMMY")));
+
+        Assertions.assertDoesNotThrow(() -> scheduler.processPending());
+    }
+}
@@ -2,11 +2,13 @@ package it.gov.pagopa.idpay.transactions.service.commands;
 
 import ch.qos.logback.classic.LoggerContext;
 import com.fasterxml.jackson.databind.ObjectReader;
+import it.gov.pagopa.common.reactive.kafka.consumer.BaseKafkaConsumer;
+import it.gov.pagopa.common.reactive.kafka.consumer.UncommittableErrorRetryPolicy;
+import it.gov.pagopa.common.reactive.kafka.exception.UncommittableError;
 import it.gov.pagopa.common.utils.MemoryAppender;
 import it.gov.pagopa.common.utils.TestUtils;
 import it.gov.pagopa.idpay.transactions.dto.QueueCommandOperationDTO;
 import it.gov.pagopa.idpay.transactions.service.TransactionErrorNotifierServiceImpl;
-import it.gov.pagopa.idpay.transactions.service.commands.ops.DeleteInitiativeService;
 import it.gov.pagopa.idpay.transactions.utils.CommandsConstants;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -21,14 +23,12 @@ import org.springframework.messaging.support.MessageBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.anyString;
 
 @ExtendWith(MockitoExtension.class)
 class CommandsMediatorServiceImplTest {
@@ -36,9 +36,9 @@ class CommandsMediatorServiceImplTest {
     @Mock
     private TransactionErrorNotifierServiceImpl transactionErrorNotifierServiceMock;
     @Mock
-    private DeleteInitiativeService deleteInitiativeServiceMock;
+    private CommandJobService commandJobServiceMock;
     @Mock
-    private Message<String> messageMock;
+    private Message<byte[]> messageMock;
     private CommandsMediatorServiceImpl commandMediatorService;
     private MemoryAppender memoryAppender;
 
@@ -48,8 +48,10 @@ class CommandsMediatorServiceImplTest {
                 new CommandsMediatorServiceImpl(
                         "Application Name",
                         100L,
-                        deleteInitiativeServiceMock,
+                        commandJobServiceMock,
                         transactionErrorNotifierServiceMock,
+                        UncommittableErrorRetryPolicy.DEFAULT,
+                        null,
                         TestUtils.objectMapper);
 
         ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("it.gov.pagopa.idpay.transactions.service.commands.CommandsMediatorServiceImpl");
@@ -98,7 +100,9 @@ class CommandsMediatorServiceImplTest {
     @Test
     void givenDeserializationErrorWhenOnDeserializationErrorThenCallNotifierService() {
         Throwable error = new RuntimeException("Test error");
-        commandMediatorService.onDeserializationError(messageMock).accept(error);
+        Mockito.when(transactionErrorNotifierServiceMock.notifyTransactionCommands(messageMock, "[TRANSACTIONS_COMMANDS] Unexpected JSON", false, error))
+                .thenReturn(Mono.just(true));
+        Assertions.assertEquals(Boolean.TRUE, commandMediatorService.onDeserializationError(messageMock, error).block());
         Mockito.verify(transactionErrorNotifierServiceMock).notifyTransactionCommands(
                 messageMock,
                 "[TRANSACTIONS_COMMANDS] Unexpected JSON",
@@ -106,6 +110,16 @@ class CommandsMediatorServiceImplTest {
                 error
         );
     }
+
+    @Test
+    void givenDeserializationErrorNotNotifiedWhenReprocessThenUncommittable() {
+        Message<byte[]> message = MessageBuilder.withPayload("INVALID_JSON".getBytes(StandardCharsets.UTF_8)).build();
+        Mockito.when(transactionErrorNotifierServiceMock.notifyTransactionCommands(Mockito.any(), Mockito.anyString(), Mockito.anyBoolean(), Mockito.any()))
+                .thenReturn(Mono.just(false));
+
+        Mono<String> reprocess = commandMediatorService.reprocess(message);
+        Assertions.assertThrows(UncommittableError.class, reprocess::block);
+    }
     @Test
     void getObjectReader() {
         ObjectReader objectReader = commandMediatorService.getObjectReader();
@@ -121,17 +135,17 @@ class CommandsMediatorServiceImplTest {
                 .operationType(CommandsConstants.COMMANDS_OPERATION_TYPE_DELETE_INITIATIVE)
                 .build();
 
-        Message<String> message = MessageBuilder.withPayload("INITIATIVE").setHeader("HEADER","DUMMY_HEADER").build();
-        Map<String, Object> ctx = new HashMap<>();
+        Message<byte[]> message = MessageBuilder.withPayload("INITIATIVE".getBytes(StandardCharsets.UTF_8)).setHeader("HEADER","DUMMY_HEADER").build();
+        BaseKafkaConsumer.ProcessingContext ctx = new BaseKafkaConsumer.ProcessingContext(message);
 
-        Mockito.when(deleteInitiativeServiceMock.execute(payload.getEntityId())).thenReturn(Mono.just(anyString()));
+        Mockito.when(commandJobServiceMock.enqueue(payload)).thenReturn(Mono.just(true));
 
         //when
         String result = commandMediatorService.execute(payload, message, ctx).block();
 
         //then
-        Assertions.assertNotNull(result);
-        Mockito.verify(deleteInitiativeServiceMock).execute(anyString());
+        Assertions.assertEquals(payload.getEntityId(), result);
+        Mockito.verify(commandJobServiceMock).enqueue(payload);
     }
 
     @Test
@@ -143,14 +157,14 @@ class CommandsMediatorServiceImplTest {
                 .operationType("OTHER_OPERATION_TYPE")
                 .build();
 
-        Message<String> message = MessageBuilder.withPayload("INITIATIVE").setHeader("HEADER","DUMMY_HEADER").build();
-        Map<String, Object> ctx = new HashMap<>();
+        Message<byte[]> message = MessageBuilder.withPayload("INITIATIVE".getBytes(StandardCharsets.UTF_8)).setHeader("HEADER","DUMMY_HEADER").build();
+        BaseKafkaConsumer.ProcessingContext ctx = new BaseKafkaConsumer.ProcessingContext(message);
         //when
         Mono<String> result= commandMediatorService.execute(payload, message, ctx);
 
         //then
         assertEquals(result,Mono.empty());
-        Mockito.verify(deleteInitiativeServiceMock,Mockito.never()).execute(anyString());
+        Mockito.verify(commandJobServiceMock,Mockito.never()).enqueue(Mockito.any());
     }
     @Test
     void getFlowName() {
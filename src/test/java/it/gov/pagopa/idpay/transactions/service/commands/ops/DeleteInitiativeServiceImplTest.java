@@ -1,8 +1,13 @@
 package it.gov.pagopa.idpay.transactions.service.commands.ops;
 
 import com.mongodb.MongoException;
+import it.gov.pagopa.common.reactive.mongo.retry.exception.MongoRequestRateTooLargeRetryExpiredException;
 import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.ReportRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
 import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.service.commands.CommandCheckpoint;
 import it.gov.pagopa.idpay.transactions.test.fakers.RewardTransactionFaker;
 import it.gov.pagopa.idpay.transactions.utils.AuditUtilities;
 import org.junit.jupiter.api.Assertions;
@@ -12,101 +17,291 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 class DeleteInitiativeServiceImplTest {
     @Mock private RewardTransactionRepository rewardTransactionRepository;
+    @Mock private RewardBatchRepository rewardBatchRepositoryMock;
+    @Mock private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepositoryMock;
+    @Mock private ReportRepository reportRepositoryMock;
     @Mock private AuditUtilities auditUtilitiesMock;
 
     private DeleteInitiativeService deleteInitiativeService;
 
     private static final String INITIATIVE_ID = "INITIATIVEID";
     private static final int PAGE_SIZE = 100;
-    private static final long DELAY = 1500;
+    private static final long DELAY = 1;
     private static final String TRANSACTION_ID = "TRANSACTION_ID";
 
     @BeforeEach
     void setUp() {
         deleteInitiativeService = new DeleteInitiativeServiceImpl(
                 rewardTransactionRepository,
+                rewardBatchRepositoryMock,
+                rewardBatchCounterStripeRepositoryMock,
+                reportRepositoryMock,
                 auditUtilitiesMock,
                 PAGE_SIZE,
-                DELAY);
+                DELAY,
+                10,
+                1000,
+                10_000,
+                0.5,
+                1,
+                2);
+
+        Mockito.lenient().when(rewardTransactionRepository.findDistinctRewardBatchIdsByInitiative(INITIATIVE_ID))
+                .thenReturn(Flux.empty());
+        Mockito.lenient().when(reportRepositoryMock.findInitiativeChunkUpperBound(eq(INITIATIVE_ID), isNull(), anyInt()))
+                .thenReturn(Mono.empty());
+        Mockito.lenient().when(reportRepositoryMock.deleteByInitiativeIdInRange(INITIATIVE_ID, null, null))
+                .thenReturn(Mono.just(0L));
     }
 
     @Test
     void executeOK_delete() {
-        RewardTransaction trx = RewardTransactionFaker.mockInstance(1);
-        trx.setId(TRANSACTION_ID);
-        trx.setInitiatives(List.of(INITIATIVE_ID));
-        trx.setChannel("QRCODE");
+        RewardTransaction trx = buildTrx("QRCODE");
 
         Mockito.when(rewardTransactionRepository.findOneByInitiativeId(INITIATIVE_ID))
                 .thenReturn(Mono.just(trx));
-        Mockito.when(rewardTransactionRepository.findByInitiativesWithBatch(INITIATIVE_ID, 100))
-                .thenReturn(Flux.fromIterable(List.of(trx)));
-        Mockito.when(rewardTransactionRepository.deleteById(anyString()))
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, null, PAGE_SIZE))
+                .thenReturn(Mono.just("TRX_100"));
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, "TRX_100", 125))
                 .thenReturn(Mono.empty());
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, null, "TRX_100"))
+                .thenReturn(Mono.just(100L));
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, "TRX_100", null))
+                .thenReturn(Mono.just(20L));
 
         String result = deleteInitiativeService.execute(INITIATIVE_ID).block();
 
-        Assertions.assertNotNull(result);
-        verify(rewardTransactionRepository, Mockito.times(1)).findOneByInitiativeId(anyString());
-        verify(rewardTransactionRepository, Mockito.times(1)).deleteById(anyString());
-        verify(rewardTransactionRepository, Mockito.times(0)).removeInitiativeOnTransaction(anyString(), eq(INITIATIVE_ID));
+        Assertions.assertEquals(INITIATIVE_ID, result);
+        verify(rewardTransactionRepository, Mockito.times(2)).findOneByInitiativeId(anyString());
+        verify(rewardTransactionRepository, Mockito.times(2)).deleteByInitiativeIdInRange(eq(INITIATIVE_ID), Mockito.any(), Mockito.any());
+        verify(rewardTransactionRepository, Mockito.never()).removeInitiativeInRange(anyString(), Mockito.any(), Mockito.any());
+        verify(auditUtilitiesMock).logTransactionsDeleted(120L, INITIATIVE_ID);
+        verify(reportRepositoryMock).deleteByInitiativeIdInRange(INITIATIVE_ID, null, null);
+        Mockito.verifyNoInteractions(rewardBatchRepositoryMock, rewardBatchCounterStripeRepositoryMock);
     }
 
     @Test
     void executeOK_findAndRemove() {
-        RewardTransaction trx = RewardTransactionFaker.mockInstance(1);
-        trx.setId(TRANSACTION_ID);
-        trx.setInitiatives(List.of(INITIATIVE_ID));
-        trx.setChannel("RTD");
+        RewardTransaction trx = buildTrx("RTD");
 
         Mockito.when(rewardTransactionRepository.findOneByInitiativeId(INITIATIVE_ID))
                 .thenReturn(Mono.just(trx));
-        Mockito.when(rewardTransactionRepository.findByInitiativesWithBatch(INITIATIVE_ID, 100))
-                .thenReturn(Flux.fromIterable(List.of(trx)));
-        Mockito.when(rewardTransactionRepository.removeInitiativeOnTransaction(anyString(), anyString()))
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, null, PAGE_SIZE))
                 .thenReturn(Mono.empty());
+        Mockito.when(rewardTransactionRepository.removeInitiativeInRange(INITIATIVE_ID, null, null))
+                .thenReturn(Mono.just(1L));
 
         String result = deleteInitiativeService.execute(INITIATIVE_ID).block();
 
-        Assertions.assertNotNull(result);
-        verify(rewardTransactionRepository, Mockito.times(1)).findOneByInitiativeId(anyString());
-        verify(rewardTransactionRepository, Mockito.times(0)).deleteById(anyString());
-        verify(rewardTransactionRepository, Mockito.times(1)).removeInitiativeOnTransaction(anyString(), eq(INITIATIVE_ID));
+        Assertions.assertEquals(INITIATIVE_ID, result);
+        verify(rewardTransactionRepository, Mockito.times(2)).findOneByInitiativeId(anyString());
+        verify(rewardTransactionRepository, Mockito.never()).deleteByInitiativeIdInRange(anyString(), Mockito.any(), Mockito.any());
+        verify(rewardTransactionRepository, Mockito.times(1)).removeInitiativeInRange(INITIATIVE_ID, null, null);
+        verify(auditUtilitiesMock).logTransactionsDeleted(1L, INITIATIVE_ID);
+        // the transactions are kept, thus their reward batches too
+        verify(rewardTransactionRepository, Mockito.never()).findDistinctRewardBatchIdsByInitiative(anyString());
+        Mockito.verifyNoInteractions(rewardBatchRepositoryMock, rewardBatchCounterStripeRepositoryMock);
     }
 
     @Test
-    void executeError() {
-        String initiativeId = "INITIATIVEID";
-        RewardTransaction trx = RewardTransactionFaker.mockInstance(1);
-        trx.setInitiatives(List.of(initiativeId));
-        trx.setChannel("QRCODE");
+    void executeOK_rewardBatchesAndReports() {
+        Mockito.when(rewardTransactionRepository.findDistinctRewardBatchIdsByInitiative(INITIATIVE_ID))
+                .thenReturn(Flux.just("BATCH_1", "BATCH_2", "BATCH_3"));
+        Mockito.when(rewardTransactionRepository.findRewardBatchIdsSharedOutsideInitiative(List.of("BATCH_1", "BATCH_2", "BATCH_3"), INITIATIVE_ID))
+                .thenReturn(Flux.just("BATCH_2"));
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.deleteByRewardBatchIds(List.of("BATCH_1", "BATCH_3")))
+                .thenReturn(Mono.just(4L));
+        Mockito.when(rewardBatchRepositoryMock.deleteByIds(List.of("BATCH_1", "BATCH_3")))
+                .thenReturn(Mono.just(2L));
+        Mockito.when(rewardTransactionRepository.findOneByInitiativeId(INITIATIVE_ID))
+                .thenReturn(Mono.just(buildTrx("QRCODE")));
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, null, PAGE_SIZE))
+                .thenReturn(Mono.empty());
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, null, null))
+                .thenReturn(Mono.just(0L));
+        Mockito.when(reportRepositoryMock.findInitiativeChunkUpperBound(INITIATIVE_ID, null, 125))
+                .thenReturn(Mono.just("REPORT_100"));
+        Mockito.when(reportRepositoryMock.findInitiativeChunkUpperBound(INITIATIVE_ID, "REPORT_100", 156))
+                .thenReturn(Mono.empty());
+        Mockito.when(reportRepositoryMock.deleteByInitiativeIdInRange(INITIATIVE_ID, null, "REPORT_100"))
+                .thenReturn(Mono.just(100L));
+        Mockito.when(reportRepositoryMock.deleteByInitiativeIdInRange(INITIATIVE_ID, "REPORT_100", null))
+                .thenReturn(Mono.just(3L));
 
-        Mockito.when(rewardTransactionRepository.findOneByInitiativeId(initiativeId))
+        String result = deleteInitiativeService.execute(INITIATIVE_ID).block();
+
+        Assertions.assertEquals(INITIATIVE_ID, result);
+        // the batch containing transactions of other initiatives is kept
+        verify(rewardBatchRepositoryMock).deleteByIds(List.of("BATCH_1", "BATCH_3"));
+        verify(rewardBatchCounterStripeRepositoryMock).deleteByRewardBatchIds(List.of("BATCH_1", "BATCH_3"));
+        verify(reportRepositoryMock, Mockito.times(2)).deleteByInitiativeIdInRange(eq(INITIATIVE_ID), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void executeOK_throttled() {
+        RewardTransaction trx = buildTrx("QRCODE");
+
+        Mockito.when(rewardTransactionRepository.findOneByInitiativeId(INITIATIVE_ID))
                 .thenReturn(Mono.just(trx));
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, null, PAGE_SIZE))
+                .thenReturn(Mono.just("TRX_100"));
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, null, 50))
+                .thenReturn(Mono.just("TRX_50"));
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, "TRX_50", 50))
+                .thenReturn(Mono.empty());
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, null, "TRX_100"))
+                .thenReturn(Mono.error(buildRequestRateTooLargeException()));
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, null, "TRX_50"))
+                .thenReturn(Mono.just(50L));
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, "TRX_50", null))
+                .thenReturn(Mono.just(10L));
+
+        String result = deleteInitiativeService.execute(INITIATIVE_ID).block();
+
+        Assertions.assertEquals(INITIATIVE_ID, result);
+        verify(auditUtilitiesMock).logTransactionsDeleted(60L, INITIATIVE_ID);
+    }
+
+    @Test
+    void executeOK_checkpoints() {
+        RewardTransaction trx = buildTrx("QRCODE");
 
-        Mockito.when(rewardTransactionRepository.findByInitiativesWithBatch(eq(initiativeId), Mockito.anyInt()))
-                .thenReturn(Flux.just(trx));
+        Mockito.when(rewardTransactionRepository.findDistinctRewardBatchIdsByInitiative(INITIATIVE_ID))
+                .thenReturn(Flux.just("BATCH_2", "BATCH_1"));
+        Mockito.when(rewardTransactionRepository.findRewardBatchIdsSharedOutsideInitiative(List.of("BATCH_1", "BATCH_2"), INITIATIVE_ID))
+                .thenReturn(Flux.empty());
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.deleteByRewardBatchIds(List.of("BATCH_1", "BATCH_2")))
+                .thenReturn(Mono.just(4L));
+        Mockito.when(rewardBatchRepositoryMock.deleteByIds(List.of("BATCH_1", "BATCH_2")))
+                .thenReturn(Mono.just(2L));
+        Mockito.when(rewardTransactionRepository.findOneByInitiativeId(INITIATIVE_ID))
+                .thenReturn(Mono.just(trx));
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, null, PAGE_SIZE))
+                .thenReturn(Mono.just("TRX_100"));
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, "TRX_100", 125))
+                .thenReturn(Mono.empty());
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, null, "TRX_100"))
+                .thenReturn(Mono.just(100L));
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, "TRX_100", null))
+                .thenReturn(Mono.just(20L));
+
+        List<CommandCheckpoint> checkpoints = new ArrayList<>();
+        String result = deleteInitiativeService.execute(INITIATIVE_ID, null, c -> Mono.fromRunnable(() -> checkpoints.add(c))).block();
+
+        Assertions.assertEquals(INITIATIVE_ID, result);
+        Assertions.assertEquals(List.of(
+                        new CommandCheckpoint(DeleteInitiativeServiceImpl.STEP_REWARD_BATCHES, "BATCH_2", 2L),
+                        new CommandCheckpoint(DeleteInitiativeServiceImpl.STEP_TRANSACTIONS, "TRX_100", 100L),
+                        new CommandCheckpoint(DeleteInitiativeServiceImpl.STEP_TRANSACTIONS, "TRX_100", 120L),
+                        new CommandCheckpoint(DeleteInitiativeServiceImpl.STEP_REPORTS, null, 0L)),
+                checkpoints);
+    }
+
+    @Test
+    void executeOK_resumeFromCheckpoint() {
+        RewardTransaction trx = buildTrx("QRCODE");
 
-        Mockito.when(rewardTransactionRepository.deleteById(trx.getId()))
+        Mockito.when(rewardTransactionRepository.findOneByInitiativeId(INITIATIVE_ID))
+                .thenReturn(Mono.just(trx));
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, "TRX_100", PAGE_SIZE))
+                .thenReturn(Mono.empty());
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, "TRX_100", null))
+                .thenReturn(Mono.just(20L));
+
+        String result = deleteInitiativeService.execute(INITIATIVE_ID,
+                        new CommandCheckpoint(DeleteInitiativeServiceImpl.STEP_TRANSACTIONS, "TRX_100", 100L),
+                        c -> Mono.empty())
+                .block();
+
+        Assertions.assertEquals(INITIATIVE_ID, result);
+        verify(rewardTransactionRepository, Mockito.never()).findDistinctRewardBatchIdsByInitiative(anyString());
+        verify(rewardTransactionRepository, Mockito.times(1)).deleteByInitiativeIdInRange(eq(INITIATIVE_ID), Mockito.any(), Mockito.any());
+        verify(auditUtilitiesMock).logTransactionsDeleted(120L, INITIATIVE_ID);
+        verify(reportRepositoryMock).deleteByInitiativeIdInRange(INITIATIVE_ID, null, null);
+    }
+
+    @Test
+    void executeError_checkpointFailed() {
+        Mockito.when(rewardTransactionRepository.findOneByInitiativeId(INITIATIVE_ID))
+                .thenReturn(Mono.just(buildTrx("QRCODE")));
+        Mockito.when(rewardTransactionRepository.findDistinctRewardBatchIdsByInitiative(INITIATIVE_ID))
+                .thenReturn(Flux.just("BATCH_1"));
+        Mockito.when(rewardTransactionRepository.findRewardBatchIdsSharedOutsideInitiative(List.of("BATCH_1"), INITIATIVE_ID))
+                .thenReturn(Flux.empty());
+        Mockito.when(rewardBatchCounterStripeRepositoryMock.deleteByRewardBatchIds(List.of("BATCH_1")))
+                .thenReturn(Mono.just(1L));
+        Mockito.when(rewardBatchRepositoryMock.deleteByIds(List.of("BATCH_1")))
+                .thenReturn(Mono.just(1L));
+
+        Mono<String> result = deleteInitiativeService.execute(INITIATIVE_ID, null, c -> Mono.error(new IllegalStateException("DUMMY_EXCEPTION")));
+        Assertions.assertThrows(IllegalStateException.class, result::block);
+
+        verify(rewardTransactionRepository, Mockito.never()).deleteByInitiativeIdInRange(anyString(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void executeError_throttledRetriesExhausted() {
+        RewardTransaction trx = buildTrx("QRCODE");
+
+        Mockito.when(rewardTransactionRepository.findOneByInitiativeId(INITIATIVE_ID))
+                .thenReturn(Mono.just(trx));
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(eq(INITIATIVE_ID), isNull(), anyInt()))
+                .thenReturn(Mono.just("TRX_100"));
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, null, "TRX_100"))
+                .thenReturn(Mono.error(buildRequestRateTooLargeException()));
+
+        Mono<String> result = deleteInitiativeService.execute(INITIATIVE_ID);
+        Assertions.assertThrows(MongoRequestRateTooLargeRetryExpiredException.class, result::block);
+
+        verify(rewardTransactionRepository, Mockito.times(3)).deleteByInitiativeIdInRange(INITIATIVE_ID, null, "TRX_100");
+        Mockito.verifyNoInteractions(auditUtilitiesMock);
+    }
+
+    @Test
+    void executeError() {
+        RewardTransaction trx = buildTrx("QRCODE");
+
+        Mockito.when(rewardTransactionRepository.findOneByInitiativeId(INITIATIVE_ID))
+                .thenReturn(Mono.just(trx));
+        Mockito.when(rewardTransactionRepository.findInitiativeChunkUpperBound(INITIATIVE_ID, null, PAGE_SIZE))
+                .thenReturn(Mono.empty());
+        Mockito.when(rewardTransactionRepository.deleteByInitiativeIdInRange(INITIATIVE_ID, null, null))
                 .thenThrow(new MongoException("DUMMY_EXCEPTION"));
 
         try{
-            deleteInitiativeService.execute(initiativeId).block();
+            deleteInitiativeService.execute(INITIATIVE_ID).block();
             Assertions.fail();
         }catch (Throwable t){
             Assertions.assertTrue(t instanceof  MongoException);
         }
     }
-}
\ No newline at end of file
+
+    private static RewardTransaction buildTrx(String channel) {
+        RewardTransaction trx = RewardTransactionFaker.mockInstance(1);
+        trx.setId(TRANSACTION_ID);
+        trx.setInitiatives(List.of(INITIATIVE_ID));
+        trx.setChannel(channel);
+        return trx;
+    }
+
+    private static MongoRequestRateTooLargeRetryExpiredException buildRequestRateTooLargeException() {
+        return new MongoRequestRateTooLargeRetryExpiredException("FLOW", 5, 6, 0, 100, 1L,
+                new DataAccessResourceFailureException("Command failed with error 16500 (TooManyRequests): 'Error=16500, RetryAfterMs=1'"));
+    }
+}
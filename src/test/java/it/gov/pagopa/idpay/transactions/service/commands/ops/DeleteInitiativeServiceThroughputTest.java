@@ -0,0 +1,114 @@
+package it.gov.pagopa.idpay.transactions.service.commands.ops;
+
+import it.gov.pagopa.common.reactive.mongo.MongoTest;
+import it.gov.pagopa.idpay.transactions.model.Report;
+import it.gov.pagopa.idpay.transactions.model.RewardBatch;
+import it.gov.pagopa.idpay.transactions.model.RewardTransaction;
+import it.gov.pagopa.idpay.transactions.repository.ReportRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchCounterStripeRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardBatchRepository;
+import it.gov.pagopa.idpay.transactions.repository.RewardTransactionRepository;
+import it.gov.pagopa.idpay.transactions.utils.AuditUtilities;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * It will delete, on an embedded Mongo, an initiative having many QRCODE transactions, together with its reward batches and reports, logging the achieved throughput.<br />
+ * Being tagged as <i>benchmark</i>, it is executed just when enabling the <i>benchmark</i> profile.
+ * The number of transactions is configurable through the system property <i>benchmark.delete-initiative.transactions</i> (e.g. 1000000)
+ */
+@Slf4j
+@DirtiesContext
+@MongoTest
+@Tag("benchmark")
+class DeleteInitiativeServiceThroughputTest {
+
+    private static final int TRANSACTIONS = Integer.getInteger("benchmark.delete-initiative.transactions", 10_000);
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final int REWARD_BATCHES = 100;
+    private static final String INITIATIVE_ID = "INITIATIVEID_TO_DELETE";
+    private static final String OTHER_INITIATIVE_ID = "INITIATIVEID_TO_KEEP";
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+    @Autowired
+    private RewardTransactionRepository rewardTransactionRepository;
+    @Autowired
+    private RewardBatchRepository rewardBatchRepository;
+    @Autowired
+    private RewardBatchCounterStripeRepository rewardBatchCounterStripeRepository;
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @AfterEach
+    void clearData() {
+        rewardTransactionRepository.deleteAll().block();
+        rewardBatchRepository.deleteAll().block();
+        rewardBatchCounterStripeRepository.deleteAll().block();
+        reportRepository.deleteAll().block();
+    }
+
+    @Test
+    void testDeleteInitiativeThroughput() {
+        storeTransactions();
+        rewardBatchRepository.saveAll(IntStream.range(0, REWARD_BATCHES)
+                        .mapToObj(i -> RewardBatch.builder().id(buildRewardBatchId(i)).merchantId("MERCHANTID_%d".formatted(i)).build())
+                        .toList())
+                .blockLast();
+        reportRepository.saveAll(List.of(
+                        Report.builder().initiativeId(INITIATIVE_ID).build(),
+                        Report.builder().initiativeId(INITIATIVE_ID).build(),
+                        Report.builder().initiativeId(OTHER_INITIATIVE_ID).build()))
+                .blockLast();
+
+        DeleteInitiativeService deleteInitiativeService = new DeleteInitiativeServiceImpl(
+                rewardTransactionRepository, rewardBatchRepository, rewardBatchCounterStripeRepository, reportRepository, new AuditUtilities(),
+                1_000, 0, 100, 50_000, 5_000, 0.5, 1_000, 10);
+
+        long startTime = System.currentTimeMillis();
+        Assertions.assertEquals(INITIATIVE_ID, deleteInitiativeService.execute(INITIATIVE_ID).block(Duration.ofMinutes(30)));
+        long elapsedMillis = System.currentTimeMillis() - startTime;
+
+        log.info("[DELETE_INITIATIVE_BENCHMARK] Deleted initiative having {} transactions in {} ms: {} trx/s",
+                TRANSACTIONS, elapsedMillis, TRANSACTIONS * 1000L / Math.max(1, elapsedMillis));
+
+        Assertions.assertEquals(1L, rewardTransactionRepository.count().block());
+        Assertions.assertEquals(0L, rewardBatchRepository.count().block());
+        Assertions.assertEquals(1L, reportRepository.count().block());
+    }
+
+    private void storeTransactions() {
+        String collectionName = mongoTemplate.getCollectionName(RewardTransaction.class);
+        Flux.range(0, TRANSACTIONS)
+                .map(i -> new Document("_id", "TRXID_%08d".formatted(i))
+                        .append(RewardTransaction.Fields.channel, "QRCODE")
+                        .append(RewardTransaction.Fields.initiatives, List.of(INITIATIVE_ID))
+                        .append(RewardTransaction.Fields.rewardBatchId, buildRewardBatchId(i % REWARD_BATCHES)))
+                .buffer(INSERT_BATCH_SIZE)
+                .concatMap(documents -> mongoTemplate.insert(documents, collectionName))
+                .blockLast();
+
+        rewardTransactionRepository.save(RewardTransaction.builder()
+                        .id("TRXID_OTHER_INITIATIVE")
+                        .channel("QRCODE")
+                        .initiatives(List.of(OTHER_INITIATIVE_ID))
+                        .build())
+                .block();
+    }
+
+    private static String buildRewardBatchId(int i) {
+        return "REWARDBATCHID_%d".formatted(i);
+    }
+}